@@ -226,6 +226,52 @@ public class CassandraCacheStore extends AbstractCacheStore {
       return load(Integer.MAX_VALUE);
    }
 
+   /**
+    * Fetches the keys in SLICE_SIZE blocks, each block being a single multiget_slice call.
+    */
+   @Override
+   public Map<Object, InternalCacheEntry> loadAll(Set<Object> keys) throws CacheLoaderException {
+      Map<ByteBuffer, Object> hashedKeys = new HashMap<ByteBuffer, Object>(keys.size());
+      for (Object key : keys) {
+         hashedKeys.put(ByteBufferUtil.bytes(hashKey(key)), key);
+      }
+      Map<Object, InternalCacheEntry> result = new HashMap<Object, InternalCacheEntry>(keys.size());
+      List<Object> expired = new ArrayList<Object>();
+      Cassandra.Client cassandraClient = null;
+      try {
+         cassandraClient = dataSource.getConnection();
+         SlicePredicate slicePredicate = new SlicePredicate();
+         slicePredicate.setColumn_names(Collections.singletonList(ByteBuffer.wrap(entryColumnPath.getColumn())));
+         List<ByteBuffer> rowKeys = new ArrayList<ByteBuffer>(hashedKeys.keySet());
+         for (int start = 0; start < rowKeys.size(); start += SLICE_SIZE) {
+            List<ByteBuffer> slice = rowKeys.subList(start, Math.min(start + SLICE_SIZE, rowKeys.size()));
+            Map<ByteBuffer, List<ColumnOrSuperColumn>> rows = cassandraClient.multiget_slice(slice,
+                     entryColumnParent, slicePredicate, readConsistencyLevel);
+            for (Map.Entry<ByteBuffer, List<ColumnOrSuperColumn>> row : rows.entrySet()) {
+               List<ColumnOrSuperColumn> columns = row.getValue();
+               Object key = hashedKeys.get(row.getKey());
+               if (key == null || columns.isEmpty())
+                  continue;
+               InternalCacheEntry ice = unmarshall(columns.get(0).getColumn().getValue(), key);
+               if (ice == null)
+                  continue;
+               if (ice.isExpired())
+                  expired.add(key);
+               else
+                  result.put(key, ice);
+            }
+         }
+      } catch (Exception e) {
+         throw new CacheLoaderException(e);
+      } finally {
+         dataSource.releaseConnection(cassandraClient);
+      }
+      for (Object key : expired) {
+         remove(key);
+      }
+      return result;
+   }
+
    @Override
    public Set<InternalCacheEntry> load(int numEntries) throws CacheLoaderException {
       Cassandra.Client cassandraClient = null;
@@ -165,6 +165,21 @@ public abstract class AbstractNonDelegatingJdbcCacheStoreConfig extends Abstract
       return this.tableManipulation.getBatchSize();
    }
 
+   /**
+    * @see org.infinispan.loaders.jdbc.TableManipulation#isUseUpsert()
+    */
+   public void setUseUpsert(boolean useUpsert) {
+      testImmutability("tableManipulation");
+      this.tableManipulation.setUseUpsert(useUpsert);
+   }
+
+   /**
+    * @see org.infinispan.loaders.jdbc.TableManipulation#isUseUpsert()
+    */
+   public boolean isUseUpsert() {
+      return this.tableManipulation.isUseUpsert();
+   }
+
    public String getDatabaseType() {
       return this.tableManipulation.databaseType == null ? "" : this.tableManipulation.databaseType.toString();
    }
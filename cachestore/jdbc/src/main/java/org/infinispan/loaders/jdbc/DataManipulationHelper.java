@@ -30,10 +30,17 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.infinispan.container.entries.InternalCacheEntry;
+import org.infinispan.io.ByteBuffer;
 import org.infinispan.loaders.CacheLoaderException;
 import org.infinispan.loaders.jdbc.connectionfactory.ConnectionFactory;
 import org.infinispan.marshall.StreamingMarshaller;
@@ -259,6 +266,151 @@ public abstract class DataManipulationHelper {
       }
    }
 
+   /**
+    * Writes the rows and deletes the rows with the given ids, as JDBC batches of at most {@link
+    * TableManipulation#getBatchSize()} statements, all run on the same connection. Unless the connection already takes
+    * part in a transaction, i.e. it is not in auto-commit mode, this is done within a transaction of its own.
+    * <p/>
+    * The rows are written with {@link TableManipulation#getUpsertRowSql()} or, if the database has no such statement,
+    * updated and then inserted if the update did not find them.
+    *
+    * @param rows       rows to write, none of them having one of the deleted ids
+    * @param deletedIds ids of the rows to delete
+    */
+   public final void writeRows(List<Row> rows, Collection<String> deletedIds) throws CacheLoaderException {
+      if (rows.isEmpty() && deletedIds.isEmpty()) return;
+      Connection conn = null;
+      boolean ownTransaction = false;
+      try {
+         conn = connectionFactory.getConnection();
+         ownTransaction = conn.getAutoCommit();
+         if (ownTransaction) conn.setAutoCommit(false);
+         if (!deletedIds.isEmpty()) {
+            deleteRows(conn, new ArrayList<String>(deletedIds));
+         }
+         if (!rows.isEmpty()) {
+            String sql = tableManipulation.getUpsertRowSql();
+            if (sql != null) {
+               executeBatches(conn, sql, rows);
+            } else {
+               updateOrInsertRows(conn, rows);
+            }
+         }
+         if (ownTransaction) conn.commit();
+         if (log.isTraceEnabled()) {
+            log.tracef("Successfully wrote %d rows and deleted %d rows.", rows.size(), deletedIds.size());
+         }
+      } catch (SQLException e) {
+         if (ownTransaction) JdbcUtil.safeRollback(conn);
+         log.sqlFailureWritingRows(rows.size(), deletedIds.size(), e);
+         throw new CacheLoaderException(String.format(
+               "SQL error while writing %d rows and deleting %d rows", rows.size(), deletedIds.size()), e);
+      } finally {
+         if (ownTransaction) restoreAutoCommit(conn);
+         connectionFactory.releaseConnection(conn);
+      }
+   }
+
+   private void updateOrInsertRows(Connection conn, List<Row> rows) throws SQLException {
+      int[] updateCounts = executeBatches(conn, tableManipulation.getUpdateRowSql(), rows);
+      List<Row> missing = new ArrayList<Row>();
+      Map<String, Row> unknown = new HashMap<String, Row>();
+      for (int i = 0; i < updateCounts.length; i++) {
+         if (updateCounts[i] == 0) {
+            missing.add(rows.get(i));
+         } else if (updateCounts[i] == Statement.SUCCESS_NO_INFO) {
+            unknown.put(rows.get(i).id, rows.get(i));
+         }
+      }
+      if (!unknown.isEmpty()) {
+         // the driver did not tell which rows were updated, so look for them
+         unknown.keySet().removeAll(selectExistingIds(conn, new ArrayList<String>(unknown.keySet())));
+         missing.addAll(unknown.values());
+      }
+      if (!missing.isEmpty()) {
+         executeBatches(conn, tableManipulation.getInsertRowSql(), missing);
+      }
+   }
+
+   private int[] executeBatches(Connection conn, String sql, List<Row> rows) throws SQLException {
+      int[] counts = new int[rows.size()];
+      int batchSize = tableManipulation.getBatchSize();
+      PreparedStatement ps = null;
+      try {
+         ps = conn.prepareStatement(sql);
+         for (int start = 0; start < rows.size(); start += batchSize) {
+            int end = Math.min(start + batchSize, rows.size());
+            for (int i = start; i < end; i++) {
+               Row row = rows.get(i);
+               ps.setBinaryStream(1, row.data.getStream(), row.data.getLength());
+               ps.setLong(2, row.timestamp);
+               ps.setString(3, row.id);
+               ps.addBatch();
+            }
+            int[] batchCounts = ps.executeBatch();
+            System.arraycopy(batchCounts, 0, counts, start, Math.min(batchCounts.length, end - start));
+            if (log.isTraceEnabled()) {
+               log.tracef("Executed batch of %d statements '%s'", end - start, sql);
+            }
+         }
+      } finally {
+         JdbcUtil.safeClose(ps);
+      }
+      return counts;
+   }
+
+   private void deleteRows(Connection conn, List<String> ids) throws SQLException {
+      int batchSize = tableManipulation.getBatchSize();
+      PreparedStatement ps = null;
+      try {
+         ps = conn.prepareStatement(tableManipulation.getDeleteRowSql());
+         for (int start = 0; start < ids.size(); start += batchSize) {
+            int end = Math.min(start + batchSize, ids.size());
+            for (int i = start; i < end; i++) {
+               ps.setString(1, ids.get(i));
+               ps.addBatch();
+            }
+            ps.executeBatch();
+         }
+      } finally {
+         JdbcUtil.safeClose(ps);
+      }
+   }
+
+   private Set<String> selectExistingIds(Connection conn, List<String> ids) throws SQLException {
+      Set<String> existing = new HashSet<String>();
+      int batchSize = tableManipulation.getBatchSize();
+      PreparedStatement ps = null;
+      ResultSet rs = null;
+      try {
+         for (int start = 0; start < ids.size(); start += batchSize) {
+            List<String> batch = ids.subList(start, Math.min(start + batchSize, ids.size()));
+            ps = conn.prepareStatement(tableManipulation.getSelectMultipleRowsSql(batch.size()));
+            for (int i = 0; i < batch.size(); i++) ps.setString(i + 1, batch.get(i));
+            rs = ps.executeQuery();
+            while (rs.next()) {
+               existing.add(rs.getString(1));
+            }
+            JdbcUtil.safeClose(rs);
+            rs = null;
+            JdbcUtil.safeClose(ps);
+            ps = null;
+         }
+      } finally {
+         JdbcUtil.safeClose(rs);
+         JdbcUtil.safeClose(ps);
+      }
+      return existing;
+   }
+
+   private void restoreAutoCommit(Connection conn) {
+      try {
+         conn.setAutoCommit(true);
+      } catch (SQLException e) {
+         log.sqlFailureUnexpected(e);
+      }
+   }
+
    protected boolean includeKey(Object key, Set<Object> keysToExclude) {
       return keysToExclude == null || !keysToExclude.contains(key);
    }
@@ -274,4 +426,29 @@ public abstract class DataManipulationHelper {
    protected abstract boolean fromStreamProcess(Object objFromStream, PreparedStatement ps, ObjectInput objectInput)
          throws SQLException, CacheLoaderException, IOException, ClassNotFoundException, InterruptedException;
 
+   /**
+    * A row to be written by {@link DataManipulationHelper#writeRows(java.util.List, java.util.Collection)}.
+    */
+   public static final class Row {
+      private final String id;
+      private final ByteBuffer data;
+      private final long timestamp;
+
+      /**
+       * @param id        the value of the id column
+       * @param data      the marshalled value of the data column
+       * @param timestamp the value of the timestamp column, i.e. when the row expires
+       */
+      public Row(String id, ByteBuffer data, long timestamp) {
+         this.id = id;
+         this.data = data;
+         this.timestamp = timestamp;
+      }
+
+      @Override
+      public String toString() {
+         return "Row{id='" + id + "', size=" + data.getLength() + ", timestamp=" + timestamp + '}';
+      }
+   }
+
 }
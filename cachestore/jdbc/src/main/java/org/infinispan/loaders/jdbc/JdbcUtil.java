@@ -74,6 +74,16 @@ public class JdbcUtil {
       }
    }
 
+   public static void safeRollback(Connection connection) {
+      if (connection != null) {
+         try {
+            connection.rollback();
+         } catch (SQLException e) {
+            log.failedRollingBack(connection, e);
+         }
+      }
+   }
+
    public static ByteBuffer marshall(StreamingMarshaller marshaller, Object bucket) throws CacheLoaderException, InterruptedException {
       try {
          return marshaller.objectToBuffer(bucket);
@@ -61,6 +61,7 @@ public class TableManipulation implements Cloneable {
    private String timestampColumnType;
    private int fetchSize = DEFAULT_FETCH_SIZE;
    private int batchSize = DEFAULT_BATCH_SIZE;
+   private boolean useUpsert;
 
    /*
    * following two params manage creation and destruction during start up/shutdown.
@@ -72,7 +73,10 @@ public class TableManipulation implements Cloneable {
    /* Cache the sql for managing data */
    private String insertRowSql;
    private String updateRowSql;
+   private String upsertRowSql;
+   private boolean upsertRowSqlBuilt;
    private String selectRowSql;
+   private String selectMultipleRowsSql;
    private String deleteRowSql;
    private String loadAllRowsSql;
    private String loadAllNonExpiredRowsSql;
@@ -291,6 +295,68 @@ public class TableManipulation implements Cloneable {
       return updateRowSql;
    }
 
+   /**
+    * Returns the statement inserting a row or, if a row with the same id already exists, updating it, using the same
+    * parameters as {@link #getInsertRowSql()}. Returns null unless {@link #isUseUpsert()} is enabled and the database
+    * has such a statement, in which case rows need to be selected, or updated, before being inserted.
+    */
+   public String getUpsertRowSql() {
+      if (!upsertRowSqlBuilt) {
+         upsertRowSql = useUpsert ? buildUpsertRowSql() : null;
+         if (useUpsert && upsertRowSql == null) {
+            log.debugf("No upsert statement is available for database type %s, rows will be updated or inserted instead", getDatabaseType());
+         }
+         upsertRowSqlBuilt = true;
+      }
+      return upsertRowSql;
+   }
+
+   private String buildUpsertRowSql() {
+      String columns = dataColumnName + ", " + timestampColumnName + ", " + idColumnName;
+      switch (getDatabaseType()) {
+         case MYSQL:
+            return String.format("INSERT INTO %s (%s) VALUES(?,?,?) ON DUPLICATE KEY UPDATE %s = VALUES(%s), %s = VALUES(%s)",
+                                 getTableName(), columns, dataColumnName, dataColumnName, timestampColumnName, timestampColumnName);
+         case POSTGRES:
+            // ON CONFLICT only exists as of PostgreSQL 9.5
+            if (!isDatabaseVersionAtLeast(9, 5)) return null;
+            return String.format("INSERT INTO %s (%s) VALUES(?,?,?) ON CONFLICT (%s) DO UPDATE SET %s = EXCLUDED.%s, %s = EXCLUDED.%s",
+                                 getTableName(), columns, idColumnName, dataColumnName, dataColumnName, timestampColumnName, timestampColumnName);
+         case H2:
+            return String.format("MERGE INTO %s (%s) KEY(%s) VALUES(?,?,?)", getTableName(), columns, idColumnName);
+         case SQLITE:
+            return String.format("INSERT OR REPLACE INTO %s (%s) VALUES(?,?,?)", getTableName(), columns);
+         case SQL_SERVER:
+            // MERGE only exists as of SQL Server 2008, i.e. version 10
+            if (!isDatabaseVersionAtLeast(10, 0)) return null;
+            return String.format("MERGE %s AS t USING (VALUES(?,?,?)) AS s (%s) ON t.%s = s.%s " +
+                                       "WHEN MATCHED THEN UPDATE SET %s = s.%s, %s = s.%s " +
+                                       "WHEN NOT MATCHED THEN INSERT (%s) VALUES (s.%s, s.%s, s.%s);",
+                                 getTableName(), columns, idColumnName, idColumnName,
+                                 dataColumnName, dataColumnName, timestampColumnName, timestampColumnName,
+                                 columns, dataColumnName, timestampColumnName, idColumnName);
+         default:
+            // Oracle cannot bind a BLOB in the SELECT FROM dual a MERGE would need, and DB2, Derby, HSQL and the others
+            // would need the parameter types spelled out in a MERGE, if they have one
+            return null;
+      }
+   }
+
+   private boolean isDatabaseVersionAtLeast(int major, int minor) {
+      Connection conn = null;
+      try {
+         conn = connectionFactory.getConnection();
+         DatabaseMetaData dmd = conn.getMetaData();
+         int dbMajor = dmd.getDatabaseMajorVersion();
+         return dbMajor > major || (dbMajor == major && dmd.getDatabaseMinorVersion() >= minor);
+      } catch (Exception e) {
+         log.debug("Unable to read the database version from JDBC metadata.", e);
+         return false;
+      } finally {
+         connectionFactory.releaseConnection(conn);
+      }
+   }
+
    public String getSelectRowSql() {
       if (selectRowSql == null) {
          selectRowSql = "SELECT " + idColumnName + ", " + dataColumnName + " FROM " + getTableName() + " WHERE " + idColumnName + " = ?";
@@ -298,6 +364,29 @@ public class TableManipulation implements Cloneable {
       return selectRowSql;
    }
 
+   /**
+    * @return a query selecting the rows of <tt>numberOfIds</tt> ids at once, through an IN clause.  The query for
+    *         {@link #getBatchSize()} ids is cached, as it is the one used for all but the last batch of a bulk load.
+    */
+   public String getSelectMultipleRowsSql(int numberOfIds) {
+      if (numberOfIds == batchSize) {
+         if (selectMultipleRowsSql == null) {
+            selectMultipleRowsSql = buildSelectMultipleRowsSql(numberOfIds);
+         }
+         return selectMultipleRowsSql;
+      }
+      return buildSelectMultipleRowsSql(numberOfIds);
+   }
+
+   private String buildSelectMultipleRowsSql(int numberOfIds) {
+      StringBuilder sql = new StringBuilder("SELECT ").append(idColumnName).append(", ").append(dataColumnName)
+            .append(" FROM ").append(getTableName()).append(" WHERE ").append(idColumnName).append(" IN (");
+      for (int i = 0; i < numberOfIds; i++) {
+         sql.append(i == 0 ? "?" : ", ?");
+      }
+      return sql.append(')').toString();
+   }
+
    public String getDeleteRowSql() {
       if (deleteRowSql == null) {
          deleteRowSql = "DELETE FROM " + getTableName() + " WHERE " + idColumnName + " = ?";
@@ -424,6 +513,25 @@ public class TableManipulation implements Cloneable {
       this.batchSize = batchSize;
    }
 
+   /**
+    * If enabled, rows are written with a single statement inserting them or updating them if they already exist, on
+    * the databases having one, instead of being selected, or updated, before being inserted. Disabled by default, as
+    * not all the versions of a database support the same statements.
+    *
+    * @see #getUpsertRowSql()
+    */
+   public boolean isUseUpsert() {
+      return useUpsert;
+   }
+
+   /**
+    * @see #isUseUpsert()
+    */
+   public void setUseUpsert(boolean useUpsert) {
+      this.useUpsert = useUpsert;
+      upsertRowSqlBuilt = false;
+   }
+
    public void setCacheName(String cacheName) {
       this.cacheName = cacheName;
       tableName = null;
@@ -30,9 +30,13 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.infinispan.Cache;
@@ -44,10 +48,13 @@ import org.infinispan.loaders.CacheLoaderMetadata;
 import org.infinispan.loaders.bucket.Bucket;
 import org.infinispan.loaders.bucket.BucketBasedCacheStore;
 import org.infinispan.loaders.jdbc.DataManipulationHelper;
+import org.infinispan.loaders.jdbc.DataManipulationHelper.Row;
 import org.infinispan.loaders.jdbc.JdbcUtil;
 import org.infinispan.loaders.jdbc.TableManipulation;
 import org.infinispan.loaders.jdbc.connectionfactory.ConnectionFactory;
 import org.infinispan.loaders.jdbc.logging.Log;
+import org.infinispan.loaders.modifications.Modification;
+import org.infinispan.loaders.modifications.Store;
 import org.infinispan.marshall.StreamingMarshaller;
 import org.infinispan.util.logging.LogFactory;
 
@@ -263,6 +270,102 @@ public class JdbcBinaryCacheStore extends BucketBasedCacheStore {
       }
    }
 
+   /**
+    * Loads the buckets in batches of {@link TableManipulation#getBatchSize()}, each batch being a single query with an
+    * IN clause, all run on the same connection.
+    */
+   @Override
+   protected Map<Integer, Bucket> loadBuckets(Set<Integer> keyHashCodes) throws CacheLoaderException {
+      List<Integer> hashes = new ArrayList<Integer>(keyHashCodes);
+      Map<Integer, Bucket> buckets = new HashMap<Integer, Bucket>(hashes.size());
+      if (hashes.isEmpty()) return buckets;
+
+      int batchSize = tableManipulation.getBatchSize();
+      Connection conn = null;
+      PreparedStatement ps = null;
+      ResultSet rs = null;
+      try {
+         conn = connectionFactory.getConnection();
+         for (int start = 0; start < hashes.size(); start += batchSize) {
+            List<Integer> batch = hashes.subList(start, Math.min(start + batchSize, hashes.size()));
+            String sql = tableManipulation.getSelectMultipleRowsSql(batch.size());
+            if (log.isTraceEnabled()) {
+               log.tracef("Running loadBuckets. Sql: '%s', on %d keys", sql, batch.size());
+            }
+            ps = conn.prepareStatement(sql);
+            for (int i = 0; i < batch.size(); i++) ps.setInt(i + 1, batch.get(i));
+            rs = ps.executeQuery();
+            while (rs.next()) {
+               String bucketName = rs.getString(1);
+               InputStream inputStream = rs.getBinaryStream(2);
+               Bucket bucket = (Bucket) JdbcUtil.unmarshall(getMarshaller(), inputStream);
+               bucket.setBucketId(bucketName);//bucket name is volatile, so not persisted.
+               buckets.put(bucket.getBucketId(), bucket);
+            }
+            JdbcUtil.safeClose(rs);
+            rs = null;
+            JdbcUtil.safeClose(ps);
+            ps = null;
+         }
+      } catch (SQLException e) {
+         log.sqlFailureLoadingKey(String.valueOf(keyHashCodes), e);
+         throw new CacheLoaderException(String.format(
+               "Sql failure while loading keys: %s", keyHashCodes), e);
+      } finally {
+         JdbcUtil.safeClose(rs);
+         JdbcUtil.safeClose(ps);
+         connectionFactory.releaseConnection(conn);
+      }
+      return buckets;
+   }
+
+   /**
+    * Loads all the buckets involved at once, applies the modifications to them and writes them back through {@link
+    * DataManipulationHelper#writeRows(java.util.List, java.util.Collection)}, i.e. as JDBC batches run in a single
+    * transaction. The buckets left empty are deleted.
+    */
+   @Override
+   protected void applyModificationsLockSafe(List<? extends Modification> mods, Map<Object, Integer> lockingKeys) throws CacheLoaderException {
+      Map<Integer, Bucket> buckets = loadBuckets(new HashSet<Integer>(lockingKeys.values()));
+      Map<Integer, Bucket> modified = new HashMap<Integer, Bucket>();
+      for (Modification m : mods) {
+         Object key = getModifiedKey(m);
+         Integer bucketId = lockingKeys.get(key);
+         Bucket bucket = buckets.get(bucketId);
+         InternalCacheEntry ice = m.getType() == Modification.Type.STORE ? ((Store) m).getStoredEntry() : null;
+         if (ice != null && !ice.isExpired()) {
+            if (bucket == null) {
+               bucket = new Bucket();
+               bucket.setBucketId(bucketId);
+               buckets.put(bucketId, bucket);
+            }
+            bucket.addEntry(ice);
+            modified.put(bucketId, bucket);
+         } else if (bucket != null && bucket.removeEntry(key)) {
+            modified.put(bucketId, bucket);
+         }
+      }
+      List<Row> rows = new ArrayList<Row>(modified.size());
+      List<String> emptyBuckets = new ArrayList<String>();
+      try {
+         for (Bucket bucket : modified.values()) {
+            if (bucket.isEmpty()) {
+               emptyBuckets.add(bucket.getBucketIdAsString());
+            } else {
+               ByteBuffer byteBuffer = JdbcUtil.marshall(getMarshaller(), bucket);
+               rows.add(new Row(bucket.getBucketIdAsString(), byteBuffer, bucket.timestampOfFirstEntryToExpire()));
+            }
+         }
+      } catch (InterruptedException ie) {
+         if (log.isTraceEnabled()) {
+            log.trace("Interrupted while marshalling to update buckets");
+         }
+         Thread.currentThread().interrupt();
+         return;
+      }
+      dmHelper.writeRows(rows, emptyBuckets);
+   }
+
    @Override
    public Set<InternalCacheEntry> loadAllLockSafe() throws CacheLoaderException {
       return dmHelper.loadAllSupport(false);
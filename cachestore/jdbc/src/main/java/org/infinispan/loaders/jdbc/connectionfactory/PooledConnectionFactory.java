@@ -41,13 +41,21 @@ import java.util.Properties;
  * href="http://www.mchange.com/projects/c3p0/index.html#configuration">here</a>. The connection pool can be configured
  * in various ways, as described <a href="http://www.mchange.com/projects/c3p0/index.html#configuration_files">here</a>.
  * The simplest way is by having an <tt>c3p0.properties</tt> file in the classpath. If no such file is found, default,
- * hardcoded values will be used.
+ * hardcoded values will be used. Unless c3p0 is configured to cache prepared statements, each connection caches up to
+ * {@link #DEFAULT_MAX_STATEMENTS_PER_CONNECTION} of them.
  *
  * @author Mircea.Markus@jboss.com
  */
 public class PooledConnectionFactory extends ConnectionFactory {
 
    private static final Log log = LogFactory.getLog(PooledConnectionFactory.class, Log.class);
+
+   /**
+    * The number of prepared statements cached by each pooled connection, unless c3p0 is configured otherwise. The
+    * stores only use a few statements per table, so they all stay prepared.
+    */
+   public static final int DEFAULT_MAX_STATEMENTS_PER_CONNECTION = 32;
+
    private ComboPooledDataSource pooledDataSource;
 
    @Override
@@ -65,6 +73,9 @@ public class PooledConnectionFactory extends ConnectionFactory {
       pooledDataSource.setJdbcUrl(config.getConnectionUrl());
       pooledDataSource.setUser(config.getUserName());
       pooledDataSource.setPassword(config.getPassword());
+      if (pooledDataSource.getMaxStatements() == 0 && pooledDataSource.getMaxStatementsPerConnection() == 0) {
+         pooledDataSource.setMaxStatementsPerConnection(DEFAULT_MAX_STATEMENTS_PER_CONNECTION);
+      }
       if (log.isTraceEnabled()) {
          log.tracef("Started connection factory with config: %s", config);
       }
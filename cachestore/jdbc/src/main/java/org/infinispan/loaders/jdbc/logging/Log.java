@@ -158,4 +158,16 @@ public interface Log extends org.infinispan.util.logging.Log {
    @Message(value = "SQL error while fetching stored entry with key: %s, lockingKey: %s", id = 8027)
    void sqlFailureReadingKey(Object key, String lockingKey, @Cause SQLException e);
 
+   @LogMessage(level = ERROR)
+   @Message(value = "SQL error while fetching %d stored entries", id = 8028)
+   void sqlFailureReadingKeys(int numberOfKeys, @Cause SQLException e);
+
+   @LogMessage(level = ERROR)
+   @Message(value = "SQL error while writing %d rows and deleting %d rows", id = 8029)
+   void sqlFailureWritingRows(int rowsWritten, int rowsDeleted, @Cause SQLException e);
+
+   @LogMessage(level = WARN)
+   @Message(value = "Failed rolling back transaction of connection %s", id = 8030)
+   void failedRollingBack(Connection connection, @Cause SQLException e);
+
 }
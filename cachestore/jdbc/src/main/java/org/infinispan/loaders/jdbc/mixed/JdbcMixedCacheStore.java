@@ -33,12 +33,19 @@ import org.infinispan.loaders.jdbc.binary.JdbcBinaryCacheStore;
 import org.infinispan.loaders.jdbc.connectionfactory.ConnectionFactory;
 import org.infinispan.loaders.jdbc.connectionfactory.ConnectionFactoryConfig;
 import org.infinispan.loaders.jdbc.stringbased.JdbcStringBasedCacheStore;
+import org.infinispan.loaders.modifications.Modification;
+import org.infinispan.loaders.modifications.Remove;
+import org.infinispan.loaders.modifications.Store;
 import org.infinispan.marshall.StreamingMarshaller;
 import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
 
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -114,6 +121,18 @@ public class JdbcMixedCacheStore extends AbstractCacheStore {
       return getCacheStore(key).load(key);
    }
 
+   @Override
+   public Map<Object, InternalCacheEntry> loadAll(Set<Object> keys) throws CacheLoaderException {
+      Set<Object> stringKeys = new HashSet<Object>();
+      Set<Object> binaryKeys = new HashSet<Object>();
+      for (Object key : keys) {
+         if (getCacheStore(key) == stringBasedCacheStore) stringKeys.add(key); else binaryKeys.add(key);
+      }
+      Map<Object, InternalCacheEntry> result = stringBasedCacheStore.loadAll(stringKeys);
+      if (!binaryKeys.isEmpty()) result.putAll(binaryCacheStore.loadAll(binaryKeys));
+      return result;
+   }
+
    public Set<InternalCacheEntry> loadAll() throws CacheLoaderException {
       Set<InternalCacheEntry> fromBuckets = binaryCacheStore.loadAll();
       Set<InternalCacheEntry> fromStrings = stringBasedCacheStore.loadAll();
@@ -150,6 +169,36 @@ public class JdbcMixedCacheStore extends AbstractCacheStore {
       getCacheStore(ed.getKey()).store(ed);
    }
 
+   /**
+    * Splits the modifications between the two stores, so that each of them applies its share at once.
+    */
+   @Override
+   protected void applyModifications(List<? extends Modification> mods) throws CacheLoaderException {
+      List<Modification> stringMods = new ArrayList<Modification>(mods.size());
+      List<Modification> binaryMods = new ArrayList<Modification>();
+      for (Modification m : mods) {
+         switch (m.getType()) {
+            case STORE:
+               InternalCacheEntry ice = ((Store) m).getStoredEntry();
+               if (ice != null) {
+                  (getCacheStore(ice.getKey()) == stringBasedCacheStore ? stringMods : binaryMods).add(m);
+               }
+               break;
+            case REMOVE:
+               (getCacheStore(((Remove) m).getKey()) == stringBasedCacheStore ? stringMods : binaryMods).add(m);
+               break;
+            case CLEAR:
+               stringMods.add(m);
+               binaryMods.add(m);
+               break;
+            default:
+               throw new IllegalArgumentException("Unknown modification type " + m.getType());
+         }
+      }
+      if (!stringMods.isEmpty()) stringBasedCacheStore.prepare(stringMods, null, true);
+      if (!binaryMods.isEmpty()) binaryCacheStore.prepare(binaryMods, null, true);
+   }
+
    public void fromStream(ObjectInput inputStream) throws CacheLoaderException {
       binaryCacheStore.fromStream(inputStream);
       stringBasedCacheStore.fromStream(inputStream);
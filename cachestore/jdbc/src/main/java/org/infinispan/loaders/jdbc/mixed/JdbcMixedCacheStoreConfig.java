@@ -231,6 +231,15 @@ public class JdbcMixedCacheStoreConfig extends AbstractJdbcCacheStoreConfig {
       stringsTableManipulation.setBatchSize(batchSize);
    }
 
+   /**
+    * @see org.infinispan.loaders.jdbc.TableManipulation#isUseUpsert()
+    */
+   public void setUseUpsert(boolean useUpsert) {
+      testImmutability("tableManipulation");
+      binaryTableManipulation.setUseUpsert(useUpsert);
+      stringsTableManipulation.setUseUpsert(useUpsert);
+   }
+
    public String getDatabaseType() {
       return binaryTableManipulation.databaseType == null ? "" : binaryTableManipulation.databaseType.toString();
    }
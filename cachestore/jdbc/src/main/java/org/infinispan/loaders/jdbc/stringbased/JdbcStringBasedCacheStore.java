@@ -30,6 +30,12 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.infinispan.Cache;
@@ -41,6 +47,7 @@ import org.infinispan.loaders.CacheLoaderException;
 import org.infinispan.loaders.CacheLoaderMetadata;
 import org.infinispan.loaders.LockSupportCacheStore;
 import org.infinispan.loaders.jdbc.DataManipulationHelper;
+import org.infinispan.loaders.jdbc.DataManipulationHelper.Row;
 import org.infinispan.loaders.jdbc.JdbcUtil;
 import org.infinispan.loaders.jdbc.TableManipulation;
 import org.infinispan.loaders.jdbc.connectionfactory.ConnectionFactory;
@@ -48,6 +55,8 @@ import org.infinispan.loaders.jdbc.logging.Log;
 import org.infinispan.loaders.keymappers.Key2StringMapper;
 import org.infinispan.loaders.keymappers.TwoWayKey2StringMapper;
 import org.infinispan.loaders.keymappers.UnsupportedKeyTypeException;
+import org.infinispan.loaders.modifications.Modification;
+import org.infinispan.loaders.modifications.Store;
 import org.infinispan.marshall.StreamingMarshaller;
 import org.infinispan.util.logging.LogFactory;
 
@@ -199,12 +208,14 @@ public class JdbcStringBasedCacheStore extends LockSupportCacheStore<String> {
 
    @Override
    public void storeLockSafe(InternalCacheEntry ed, String lockingKey) throws CacheLoaderException {
-      InternalCacheEntry existingOne = readStoredEntry(ed, lockingKey);
-      String sql;
-      if (existingOne == null) {
-         sql = tableManipulation.getInsertRowSql();
-      } else {
-         sql = tableManipulation.getUpdateRowSql();
+      String sql = tableManipulation.getUpsertRowSql();
+      if (sql == null) {
+         InternalCacheEntry existingOne = readStoredEntry(ed, lockingKey);
+         if (existingOne == null) {
+            sql = tableManipulation.getInsertRowSql();
+         } else {
+            sql = tableManipulation.getUpdateRowSql();
+         }
       }
       Connection connection = null;
       PreparedStatement ps = null;
@@ -236,6 +247,42 @@ public class JdbcStringBasedCacheStore extends LockSupportCacheStore<String> {
       }
    }
 
+   /**
+    * Writes the modifications through {@link DataManipulationHelper#writeRows(java.util.List, java.util.Collection)},
+    * i.e. as JDBC batches run in a single transaction. As the rows to delete and to write are sent in different
+    * batches, only the last modification of each key is applied.
+    */
+   @Override
+   protected void applyModificationsLockSafe(List<? extends Modification> mods, Map<Object, String> lockingKeys) throws CacheLoaderException {
+      Map<String, InternalCacheEntry> stored = new LinkedHashMap<String, InternalCacheEntry>(mods.size());
+      Set<String> removed = new LinkedHashSet<String>();
+      for (Modification m : mods) {
+         String keyStr = lockingKeys.get(getModifiedKey(m));
+         InternalCacheEntry ice = m.getType() == Modification.Type.STORE ? ((Store) m).getStoredEntry() : null;
+         if (ice != null && !ice.isExpired()) {
+            removed.remove(keyStr);
+            stored.put(keyStr, ice);
+         } else {
+            stored.remove(keyStr);
+            removed.add(keyStr);
+         }
+      }
+      List<Row> rows = new ArrayList<Row>(stored.size());
+      try {
+         for (Map.Entry<String, InternalCacheEntry> e : stored.entrySet()) {
+            ByteBuffer byteBuffer = JdbcUtil.marshall(getMarshaller(), e.getValue().toInternalCacheValue());
+            rows.add(new Row(e.getKey(), byteBuffer, e.getValue().getExpiryTime()));
+         }
+      } catch (InterruptedException ie) {
+         if (log.isTraceEnabled()) {
+            log.trace("Interrupted while marshalling to store");
+         }
+         Thread.currentThread().interrupt();
+         return;
+      }
+      dmHelper.writeRows(rows, removed);
+   }
+
    @Override
    public boolean removeLockSafe(Object key, String keyStr) throws CacheLoaderException {
       Connection connection = null;
@@ -323,6 +370,56 @@ public class JdbcStringBasedCacheStore extends LockSupportCacheStore<String> {
       return storedEntry;
    }
 
+   /**
+    * Loads the keys in batches of {@link TableManipulation#getBatchSize()}, each batch being a single query with an IN
+    * clause, all run on the same connection.
+    */
+   @Override
+   protected Map<Object, InternalCacheEntry> loadAllLockSafe(Map<Object, String> keys) throws CacheLoaderException {
+      Map<String, Object> keysByString = new HashMap<String, Object>(keys.size());
+      for (Map.Entry<Object, String> e : keys.entrySet()) keysByString.put(e.getValue(), e.getKey());
+      List<String> keyStrings = new ArrayList<String>(keysByString.keySet());
+      Map<Object, InternalCacheEntry> result = new HashMap<Object, InternalCacheEntry>(keys.size());
+      if (keyStrings.isEmpty()) return result;
+
+      int batchSize = tableManipulation.getBatchSize();
+      Connection conn = null;
+      PreparedStatement ps = null;
+      ResultSet rs = null;
+      try {
+         conn = connectionFactory.getConnection();
+         for (int start = 0; start < keyStrings.size(); start += batchSize) {
+            List<String> batch = keyStrings.subList(start, Math.min(start + batchSize, keyStrings.size()));
+            String sql = tableManipulation.getSelectMultipleRowsSql(batch.size());
+            if (log.isTraceEnabled()) {
+               log.tracef("Running sql '%s' on %d keys", sql, batch.size());
+            }
+            ps = conn.prepareStatement(sql);
+            for (int i = 0; i < batch.size(); i++) ps.setString(i + 1, batch.get(i));
+            rs = ps.executeQuery();
+            while (rs.next()) {
+               Object key = keysByString.get(rs.getString(1));
+               InputStream inputStream = rs.getBinaryStream(2);
+               InternalCacheValue icv = (InternalCacheValue) JdbcUtil.unmarshall(getMarshaller(), inputStream);
+               if (key != null && !icv.isExpired()) result.put(key, icv.toInternalCacheEntry(key));
+            }
+            JdbcUtil.safeClose(rs);
+            rs = null;
+            JdbcUtil.safeClose(ps);
+            ps = null;
+         }
+      } catch (SQLException e) {
+         log.sqlFailureReadingKeys(keyStrings.size(), e);
+         throw new CacheLoaderException(String.format(
+               "SQL error while fetching %d stored entries", keyStrings.size()), e);
+      } finally {
+         JdbcUtil.safeClose(rs);
+         JdbcUtil.safeClose(ps);
+         connectionFactory.releaseConnection(conn);
+      }
+      return result;
+   }
+
    public Class<? extends CacheLoaderConfig> getConfigurationClass() {
       return JdbcStringBasedCacheStoreConfig.class;
    }
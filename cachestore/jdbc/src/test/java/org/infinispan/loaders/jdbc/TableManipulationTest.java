@@ -24,6 +24,7 @@ package org.infinispan.loaders.jdbc;
 
 import static org.easymock.EasyMock.*;
 import org.infinispan.loaders.CacheLoaderException;
+import org.infinispan.loaders.jdbc.connectionfactory.ConnectionFactory;
 import org.infinispan.loaders.jdbc.connectionfactory.ConnectionFactoryConfig;
 import org.infinispan.test.fwk.UnitTestDatabaseManager;
 import org.testng.annotations.AfterTest;
@@ -31,6 +32,7 @@ import org.testng.annotations.BeforeTest;
 import org.testng.annotations.Test;
 
 import java.sql.Connection;
+import java.sql.DatabaseMetaData;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -158,6 +160,51 @@ public class TableManipulationTest {
       assert !tableManipulation.tableExists(connection);
    }
 
+   public void testUpsertIsOptIn() throws Exception {
+      TableManipulation other = tableManipulation.clone();
+      other.databaseType = DatabaseType.H2;
+      assert other.getUpsertRowSql() == null;
+      other.setUseUpsert(true);
+      assert other.getUpsertRowSql() != null;
+   }
+
+   public void testUpsertDependsOnDatabaseVersion() throws Exception {
+      assert upsertRowSql(DatabaseType.POSTGRES, 9, 4) == null;
+      assert upsertRowSql(DatabaseType.POSTGRES, 9, 5) != null;
+      assert upsertRowSql(DatabaseType.SQL_SERVER, 9, 0) == null;
+      assert upsertRowSql(DatabaseType.SQL_SERVER, 10, 0) != null;
+      assert upsertRowSql(DatabaseType.ORACLE, 11, 2) == null;
+   }
+
+   private String upsertRowSql(DatabaseType databaseType, int majorVersion, int minorVersion) throws Exception {
+      DatabaseMetaData mockMetaData = createNiceMock(DatabaseMetaData.class);
+      expect(mockMetaData.getDatabaseMajorVersion()).andReturn(majorVersion).anyTimes();
+      expect(mockMetaData.getDatabaseMinorVersion()).andReturn(minorVersion).anyTimes();
+      final Connection mockConnection = createNiceMock(Connection.class);
+      expect(mockConnection.getMetaData()).andReturn(mockMetaData).anyTimes();
+      replay(mockMetaData, mockConnection);
+
+      TableManipulation other = tableManipulation.clone();
+      other.databaseType = databaseType;
+      other.setUseUpsert(true);
+      other.setCreateTableOnStart(false);
+      other.start(new ConnectionFactory() {
+         public void start(ConnectionFactoryConfig config, ClassLoader classLoader) {
+         }
+
+         public void stop() {
+         }
+
+         public Connection getConnection() {
+            return mockConnection;
+         }
+
+         public void releaseConnection(Connection conn) {
+         }
+      });
+      return other.getUpsertRowSql();
+   }
+
    static boolean existsTable(Connection connection, String tableName) throws Exception {
       Statement st = connection.createStatement();
       ResultSet rs = null;
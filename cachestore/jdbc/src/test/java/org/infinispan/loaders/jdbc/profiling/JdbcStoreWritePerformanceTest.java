@@ -0,0 +1,120 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.loaders.jdbc.profiling;
+
+import org.infinispan.CacheImpl;
+import org.infinispan.container.entries.InternalEntryFactory;
+import org.infinispan.loaders.CacheLoaderConfig;
+import org.infinispan.loaders.CacheLoaderException;
+import org.infinispan.loaders.CacheStore;
+import org.infinispan.loaders.decorators.AsyncStore;
+import org.infinispan.loaders.decorators.AsyncStoreConfig;
+import org.infinispan.loaders.jdbc.binary.JdbcBinaryCacheStore;
+import org.infinispan.loaders.jdbc.binary.JdbcBinaryCacheStoreConfig;
+import org.infinispan.loaders.jdbc.stringbased.JdbcStringBasedCacheStore;
+import org.infinispan.loaders.jdbc.stringbased.JdbcStringBasedCacheStoreConfig;
+import org.infinispan.marshall.TestObjectStreamMarshaller;
+import org.infinispan.test.fwk.UnitTestDatabaseManager;
+import org.testng.annotations.Test;
+
+/**
+ * Measures how many entries per second the JDBC stores write into an embedded H2 database, either one at a time or
+ * through an {@link AsyncStore}, which hands the modifications it coalesced over to the store as a single list, written
+ * in JDBC batches. Each run writes new entries first and then overwrites all of them.
+ *
+ * @since 5.1
+ */
+@Test(groups = "profiling", testName = "loaders.jdbc.profiling.JdbcStoreWritePerformanceTest", sequential = true)
+public class JdbcStoreWritePerformanceTest {
+
+   private static final int NUM_ENTRIES = 20000;
+
+   private static final String VALUE = "0123456789abcdef0123456789abcdef0123456789abcdef0123456789abcdef";
+
+   public void testStringBasedStoreDirect() throws Exception {
+      profile("String based store", createStringBasedStore(), false);
+   }
+
+   public void testStringBasedStoreAsync() throws Exception {
+      profile("String based store, async", createStringBasedStore(), true);
+   }
+
+   public void testBinaryStoreDirect() throws Exception {
+      profile("Binary store", createBinaryStore(), false);
+   }
+
+   public void testBinaryStoreAsync() throws Exception {
+      profile("Binary store, async", createBinaryStore(), true);
+   }
+
+   private CacheStore createStringBasedStore() {
+      return new JdbcStringBasedCacheStore();
+   }
+
+   private CacheStore createBinaryStore() {
+      return new JdbcBinaryCacheStore();
+   }
+
+   private CacheLoaderConfig createConfig(CacheStore store) {
+      if (store instanceof JdbcStringBasedCacheStore) {
+         return new JdbcStringBasedCacheStoreConfig(UnitTestDatabaseManager.getUniqueConnectionFactoryConfig(),
+                                                    UnitTestDatabaseManager.buildDefaultTableManipulation());
+      }
+      return new JdbcBinaryCacheStoreConfig(UnitTestDatabaseManager.getUniqueConnectionFactoryConfig(),
+                                            UnitTestDatabaseManager.buildDefaultTableManipulation());
+   }
+
+   private void profile(String testLabel, CacheStore jdbcStore, boolean async) throws CacheLoaderException {
+      CacheLoaderConfig config = createConfig(jdbcStore);
+      long inserts = write(jdbcStore, config, async, "v1");
+      long updates = write(jdbcStore, config, async, "v2");
+      jdbcStore.init(config, new CacheImpl("profiledCache"), new TestObjectStreamMarshaller(false));
+      jdbcStore.start();
+      try {
+         assert jdbcStore.load("key" + (NUM_ENTRIES - 1)).getValue().equals(VALUE + "v2");
+      } finally {
+         jdbcStore.stop();
+      }
+      System.out.printf("Test %s:%n\tinserts: %d writes/s%n\tupdates: %d writes/s%n", testLabel, inserts, updates);
+   }
+
+   /**
+    * Writes all the entries, and returns the number written per second, including the time taken by an AsyncStore to
+    * flush them on stop.
+    */
+   private long write(CacheStore jdbcStore, CacheLoaderConfig config, boolean async, String version) throws CacheLoaderException {
+      CacheStore store = async ? new AsyncStore(jdbcStore, new AsyncStoreConfig()) : jdbcStore;
+      store.init(config, new CacheImpl("profiledCache"), new TestObjectStreamMarshaller(false));
+      store.start();
+      long start = System.nanoTime();
+      try {
+         for (int i = 0; i < NUM_ENTRIES; i++) {
+            store.store(InternalEntryFactory.create("key" + i, VALUE + version));
+         }
+      } finally {
+         // stopping the AsyncStore waits for the pending modifications to be written
+         store.stop();
+      }
+      return NUM_ENTRIES * 1000000000L / (System.nanoTime() - start);
+   }
+}
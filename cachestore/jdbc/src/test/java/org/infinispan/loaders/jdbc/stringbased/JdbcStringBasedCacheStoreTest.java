@@ -23,15 +23,22 @@
 package org.infinispan.loaders.jdbc.stringbased;
 
 import static org.easymock.classextension.EasyMock.*;
+import org.infinispan.container.entries.InternalEntryFactory;
 import org.infinispan.loaders.BaseCacheStoreTest;
+import org.infinispan.loaders.CacheLoaderException;
 import org.infinispan.loaders.CacheStore;
 import org.infinispan.loaders.jdbc.TableManipulation;
 import org.infinispan.loaders.jdbc.connectionfactory.ConnectionFactory;
 import org.infinispan.loaders.jdbc.connectionfactory.ConnectionFactoryConfig;
+import org.infinispan.loaders.modifications.Modification;
+import org.infinispan.loaders.modifications.Store;
 import org.infinispan.test.fwk.UnitTestDatabaseManager;
 import org.infinispan.CacheImpl;
 import org.testng.annotations.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Tester class  for {@link org.infinispan.loaders.jdbc.stringbased.JdbcStringBasedCacheStore}.
  *
@@ -43,6 +50,7 @@ public class JdbcStringBasedCacheStoreTest extends BaseCacheStoreTest {
    protected CacheStore createCacheStore() throws Exception {
       ConnectionFactoryConfig connectionFactoryConfig = UnitTestDatabaseManager.getUniqueConnectionFactoryConfig();
       TableManipulation tm = UnitTestDatabaseManager.buildDefaultTableManipulation();
+      tm.setUseUpsert(isUseUpsert());
       JdbcStringBasedCacheStoreConfig config = new JdbcStringBasedCacheStoreConfig(connectionFactoryConfig, tm);
       JdbcStringBasedCacheStore stringBasedCacheStore = new JdbcStringBasedCacheStore();
       CacheImpl cache = new CacheImpl("aName");
@@ -51,6 +59,26 @@ public class JdbcStringBasedCacheStoreTest extends BaseCacheStoreTest {
       return stringBasedCacheStore;
    }
 
+   protected boolean isUseUpsert() {
+      return false;
+   }
+
+   public void testOverwrite() throws CacheLoaderException {
+      TableManipulation tm = ((JdbcStringBasedCacheStore) cs).getTableManipulation();
+      assert (tm.getUpsertRowSql() != null) == isUseUpsert();
+
+      cs.store(InternalEntryFactory.create("k1", "v1"));
+      cs.store(InternalEntryFactory.create("k1", "v2"));
+      assert cs.load("k1").getValue().equals("v2");
+
+      List<Modification> mods = new ArrayList<Modification>();
+      mods.add(new Store(InternalEntryFactory.create("k1", "v3")));
+      mods.add(new Store(InternalEntryFactory.create("k2", "v1")));
+      cs.prepare(mods, gtf.newGlobalTransaction(null, true), true);
+      assert cs.load("k1").getValue().equals("v3");
+      assert cs.load("k2").getValue().equals("v1");
+   }
+
    public void testNotCreateConnectionFactory() throws Exception {
       JdbcStringBasedCacheStore stringBasedCacheStore = new JdbcStringBasedCacheStore();
       JdbcStringBasedCacheStoreConfig config = new JdbcStringBasedCacheStoreConfig(false);
@@ -39,6 +39,7 @@ import org.infinispan.util.logging.LogFactory;
 import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
@@ -76,6 +77,19 @@ public class RemoteCacheStore extends AbstractCacheStore {
       return (InternalCacheEntry) remoteCache.get(key);
    }
 
+   /**
+    * Loads the keys with {@link RemoteCache#getAll(Set)}, i.e. with a single request per server owning some of them.
+    */
+   @Override
+   public Map<Object, InternalCacheEntry> loadAll(Set<Object> keys) throws CacheLoaderException {
+      Map<Object, Object> found = remoteCache.getAll(keys);
+      Map<Object, InternalCacheEntry> result = new HashMap<Object, InternalCacheEntry>(found.size());
+      for (Map.Entry<Object, Object> e : found.entrySet()) {
+         result.put(e.getKey(), (InternalCacheEntry) e.getValue());
+      }
+      return result;
+   }
+
    @Override
    protected void purgeInternal() throws CacheLoaderException {
       if (log.isTraceEnabled()) {
@@ -341,9 +341,10 @@ public interface RemoteCache<K, V> extends Cache<K, V> {
    void putForExternalRead(K key, V value);
 
    /**
-    * Synthetic operation. The client iterates over the set of keys and calls put for each one of them. This results in
-    * operation not being atomic (if a failure happens after few puts it is not rolled back) and costly (for each key in
-    * the parameter map a remote call is performed).
+    * The entries are grouped by the server owning them and a single request is sent to each of those servers, all in
+    * parallel. The operation is not atomic: if a failure happens after some of the servers stored their entries, these
+    * are not rolled back. If the client or any of these servers only speaks version 1.0 of the Hot Rod protocol, the
+    * entries are stored one at a time instead.
     */
    @Override
    void putAll(Map<? extends K, ? extends V> map, long lifespan, TimeUnit unit);
@@ -422,4 +423,21 @@ public interface RemoteCache<K, V> extends Cache<K, V> {
     * guarantee that "size" elements are returned( e.g. if the number of elements in the back-end server is smaller that "size")
     */
    Map<K, V> getBulk(int size);
+
+   /**
+    * Retrieves the values of several keys at once. The keys are grouped by the server owning them and a single request
+    * is sent to each of those servers, all in parallel. Like {@link #putAll(java.util.Map)}, this falls back to one
+    * request per key when version 1.1 of the Hot Rod protocol is not spoken by both ends.
+    *
+    * @return the entries for the keys that exist in the remote cache. The returned Map is unmodifiable.
+    */
+   Map<K, V> getAll(Set<? extends K> keys);
+
+   /**
+    * Removes several keys at once, sending a single request to each server owning some of them, all in parallel. The
+    * previous values are never returned, regardless of {@link Flag#FORCE_RETURN_VALUE}, and the operation is not
+    * atomic. Like {@link #putAll(java.util.Map)}, this falls back to one request per key when version 1.1 of the Hot Rod
+    * protocol is not spoken by both ends.
+    */
+   void removeAll(Set<? extends K> keys);
 }
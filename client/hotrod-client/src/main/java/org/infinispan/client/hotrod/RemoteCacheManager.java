@@ -25,6 +25,7 @@ package org.infinispan.client.hotrod;
 import org.infinispan.client.hotrod.exceptions.HotRodClientException;
 import org.infinispan.client.hotrod.impl.ConfigurationProperties;
 import org.infinispan.client.hotrod.impl.operations.OperationsFactory;
+import org.infinispan.client.hotrod.impl.operations.ProtocolVersionNegotiator;
 import org.infinispan.client.hotrod.impl.RemoteCacheImpl;
 import org.infinispan.client.hotrod.impl.operations.PingOperation.PingResult;
 import org.infinispan.client.hotrod.impl.transport.Transport;
@@ -79,7 +80,9 @@ import static org.infinispan.util.Util.getInstance;
  * <li><tt>infinispan.client.hotrod.force_return_values</tt>, default = false.  Whether or not to implicitly {@link org.infinispan.client.hotrod.Flag#FORCE_RETURN_VALUE} for all calls.</li>
  * <li><tt>infinispan.client.hotrod.tcp_no_delay</tt>, default = true.  Affects TCP NODELAY on the TCP stack.</li>
  * <li><tt>infinispan.client.hotrod.ping_on_startup</tt>, default = true.  If true, a ping request is sent to a back end server in order to fetch cluster's topology.</li>
- * <li><tt>infinispan.client.hotrod.transport_factory</tt>, default = org.infinispan.client.hotrod.impl.transport.tcp.TcpTransportFactory - controls which transport to use.  Currently only the TcpTransport is supported.</li>
+ * <li><tt>infinispan.client.hotrod.transport_factory</tt>, default = org.infinispan.client.hotrod.impl.transport.tcp.TcpTransportFactory - controls which transport to use.  Either the TcpTransportFactory, which pools one connection per concurrent request, or org.infinispan.client.hotrod.impl.transport.tcp.MultiplexedTransportFactory, which pipelines all requests over a few connections per server.</li>
+ * <li><tt>infinispan.client.hotrod.connections_per_server</tt>, default = 2.  The number of connections the MultiplexedTransportFactory opens to each server.</li>
+ * <li><tt>infinispan.client.hotrod.connect_timeout</tt>, default = 60000 (60 seconds).  The time the MultiplexedTransportFactory waits for a connection to a server to be established.</li>
  * <li><tt>infinispan.client.hotrod.marshaller</tt>, default = org.infinispan.marshall.jboss.GenericJBossMarshaller.  Allows you to specify a custom {@link org.infinispan.marshall.Marshaller} implementation to serialize and deserialize user objects. For portable serialization payloads, you should configure the marshaller to be {@link org.infinispan.client.hotrod.marshall.ApacheAvroMarshaller}</li>
  * <li><tt>infinispan.client.hotrod.async_executor_factory</tt>, default = org.infinispan.client.hotrod.impl.async.DefaultAsyncExecutorFactory.  Allows you to specify a custom asynchroous executor for async calls.</li>
  * <li><tt>infinispan.client.hotrod.default_executor_factory.pool_size</tt>, default = 10.  If the default executor is used, this configures the number of threads to initialize the executor with.</li>
@@ -88,6 +91,7 @@ import static org.infinispan.util.Util.getInstance;
  * <li><tt>infinispan.client.hotrod.key_size_estimate</tt>, default = 64.  This hint allows sizing of byte buffers when serializing and deserializing keys, to minimize array resizing.</li>
  * <li><tt>infinispan.client.hotrod.value_size_estimate</tt>, default = 512.  This hint allows sizing of byte buffers when serializing and deserializing values, to minimize array resizing.</li>
  * <li><tt>infinispan.client.hotrod.socket_timeout</tt>, default = 60000 (60 seconds).  This property defines the maximum socket read timeout before giving up waiting for bytes from the server.</li>
+ * <li><tt>infinispan.client.hotrod.protocol_version</tt>, default = 1.1.  The highest version of the Hot Rod protocol the client speaks.  With 1.1, the client finds out which servers speak 1.1 too and sends them a single request for {@link RemoteCache#putAll(java.util.Map)}, {@link RemoteCache#getAll(java.util.Set)} and {@link RemoteCache#removeAll(java.util.Set)}; with 1.0, or against 1.0 servers, these operate on one key at a time.</li>
  * </ul>
  * <br/>
  * <i>The following properties are related to connection pooling</i>:
@@ -158,6 +162,7 @@ public class RemoteCacheManager implements CacheContainer {
    private ExecutorService asyncExecutorService;
    private final Map<String, RemoteCacheImpl> cacheName2RemoteCache = new HashMap<String, RemoteCacheImpl>();
    private AtomicInteger topologyId = new AtomicInteger();
+   private ProtocolVersionNegotiator versionNegotiator;
    private ClassLoader classLoader;
 
 
@@ -441,6 +446,7 @@ public class RemoteCacheManager implements CacheContainer {
       transportFactory = (TransportFactory) getInstance(factory, classLoader);
       Collection<SocketAddress> servers = config.getServerList();
       transportFactory.start(config, servers, topologyId, classLoader);
+      versionNegotiator = new ProtocolVersionNegotiator(transportFactory, topologyId, config.getProtocolVersion());
       if (marshaller == null) {
          String marshallerName = config.getMarshaller();
          setMarshaller((Marshaller) getInstance(marshallerName, classLoader));
@@ -517,7 +523,7 @@ public class RemoteCacheManager implements CacheContainer {
    }
 
    private <K, V> void startRemoteCache(RemoteCacheImpl<K, V> result) {
-      OperationsFactory operationsFactory = new OperationsFactory(transportFactory, result.getName(), topologyId, forceReturnValueDefault);
+      OperationsFactory operationsFactory = new OperationsFactory(transportFactory, result.getName(), topologyId, forceReturnValueDefault, versionNegotiator);
       result.init(marshaller, asyncExecutorService, operationsFactory, config.getKeySizeEstimate(), config.getValueSizeEstimate());
    }
 
@@ -56,6 +56,9 @@ public class ConfigurationProperties {
    public static final String HASH_FUNCTION_PREFIX = "infinispan.client.hotrod.hash_function_impl";
    public static final String DEFAULT_EXECUTOR_FACTORY_QUEUE_SIZE ="infinispan.client.hotrod.default_executor_factory.queue_size";
    public static final String SO_TIMEOUT = "infinispan.client.hotrod.socket_timeout";
+   public static final String CONNECT_TIMEOUT = "infinispan.client.hotrod.connect_timeout";
+   public static final String CONNECTIONS_PER_SERVER = "infinispan.client.hotrod.connections_per_server";
+   public static final String PROTOCOL_VERSION = "infinispan.client.hotrod.protocol_version";
 
    // defaults
 
@@ -63,6 +66,9 @@ public class ConfigurationProperties {
    private static final int DEFAULT_VALUE_SIZE = 512;
    private static final int DEFAULT_HOTROD_PORT = 11222;
    private static final int DEFAULT_SO_TIMEOUT = 60000;
+   private static final int DEFAULT_CONNECT_TIMEOUT = 60000;
+   private static final int DEFAULT_CONNECTIONS_PER_SERVER = 2;
+   private static final String DEFAULT_PROTOCOL_VERSION = "1.1";
 
    private final TypedProperties props;
 
@@ -143,4 +149,16 @@ public class ConfigurationProperties {
    public int getSoTimeout() {
       return props.getIntProperty(SO_TIMEOUT, DEFAULT_SO_TIMEOUT);
    }
+
+   public int getConnectTimeout() {
+      return props.getIntProperty(CONNECT_TIMEOUT, DEFAULT_CONNECT_TIMEOUT);
+   }
+
+   public int getConnectionsPerServer() {
+      return props.getIntProperty(CONNECTIONS_PER_SERVER, DEFAULT_CONNECTIONS_PER_SERVER);
+   }
+
+   public String getProtocolVersion() {
+      return props.getProperty(PROTOCOL_VERSION, DEFAULT_PROTOCOL_VERSION);
+   }
 }
@@ -33,6 +33,7 @@ import org.infinispan.client.hotrod.VersionedValue;
 import org.infinispan.client.hotrod.exceptions.RemoteCacheManagerNotStartedException;
 import org.infinispan.client.hotrod.exceptions.TransportException;
 import org.infinispan.client.hotrod.impl.async.NotifyingFutureImpl;
+import org.infinispan.client.hotrod.impl.async.ResponseFuture;
 import org.infinispan.client.hotrod.impl.operations.*;
 import org.infinispan.client.hotrod.impl.transport.Transport;
 import org.infinispan.marshall.Marshaller;
@@ -41,10 +42,14 @@ import org.infinispan.client.hotrod.logging.Log;
 import org.infinispan.util.logging.LogFactory;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
@@ -97,6 +102,10 @@ public class RemoteCacheImpl<K, V> extends RemoteCacheSupport<K, V> {
    @Override
    public NotifyingFuture<Boolean> removeWithVersionAsync(final K key, final long version) {
       assertRemoteCacheManagerIsStarted();
+      if (operationsFactory.isPipelined()) {
+         RemoveIfUnmodifiedOperation op = operationsFactory.newRemoveIfUnmodifiedOperation(obj2bytes(key, true), version);
+         return executeAsync(op, new VersionedOperationFuture(executorService));
+      }
       final NotifyingFutureImpl<Boolean> result = new NotifyingFutureImpl<Boolean>();
       Future future = executorService.submit(new Callable() {
          @Override
@@ -121,6 +130,10 @@ public class RemoteCacheImpl<K, V> extends RemoteCacheSupport<K, V> {
    @Override
    public NotifyingFuture<Boolean> replaceWithVersionAsync(final K key, final V newValue, final long version, final int lifespanSeconds, final int maxIdleSeconds) {
       assertRemoteCacheManagerIsStarted();
+      if (operationsFactory.isPipelined()) {
+         ReplaceIfUnmodifiedOperation op = operationsFactory.newReplaceIfUnmodifiedOperation(obj2bytes(key, true), obj2bytes(newValue, false), lifespanSeconds, maxIdleSeconds, version);
+         return executeAsync(op, new VersionedOperationFuture(executorService));
+      }
       final NotifyingFutureImpl<Boolean> result = new NotifyingFutureImpl<Boolean>();
       Future future = executorService.submit(new Callable() {
          @Override
@@ -145,11 +158,66 @@ public class RemoteCacheImpl<K, V> extends RemoteCacheSupport<K, V> {
    @Override
    public void putAll(Map<? extends K, ? extends V> map, long lifespan, TimeUnit lifespanUnit, long maxIdleTime, TimeUnit maxIdleTimeUnit) {
       assertRemoteCacheManagerIsStarted();
+      if (map.isEmpty()) return;
+      int lifespanSecs = toSeconds(lifespan, lifespanUnit);
+      int maxIdleSecs = toSeconds(maxIdleTime, maxIdleTimeUnit);
+      Map<byte[], byte[]> entries = new HashMap<byte[], byte[]>();
       for (Entry<? extends K, ? extends V> entry : map.entrySet()) {
-         put(entry.getKey(), entry.getValue(), lifespan, lifespanUnit, maxIdleTime, maxIdleTimeUnit);
+         entries.put(obj2bytes(entry.getKey(), true), obj2bytes(entry.getValue(), false));
+      }
+      List<PutAllOperation> ops = operationsFactory.newPutAllOperations(entries, lifespanSecs, maxIdleSecs);
+      if (operationsFactory.isSupported(ops)) {
+         RetryOnFailureOperation.executeAll(ops);
+      } else {
+         for (Entry<? extends K, ? extends V> entry : map.entrySet()) {
+            put(entry.getKey(), entry.getValue(), lifespan, lifespanUnit, maxIdleTime, maxIdleTimeUnit);
+         }
+      }
+   }
+
+   @Override
+   public Map<K, V> getAll(Set<? extends K> keys) {
+      assertRemoteCacheManagerIsStarted();
+      if (keys.isEmpty()) return Collections.emptyMap();
+      List<GetAllOperation> ops = operationsFactory.newGetAllOperations(keys2bytes(keys));
+      Map<K, V> toReturn = new HashMap<K, V>();
+      if (operationsFactory.isSupported(ops)) {
+         for (Object result : RetryOnFailureOperation.executeAll(ops)) {
+            for (Map.Entry<byte[], byte[]> entry : ((Map<byte[], byte[]>) result).entrySet()) {
+               toReturn.put((K) bytes2obj(entry.getKey()), (V) bytes2obj(entry.getValue()));
+            }
+         }
+      } else {
+         for (K key : keys) {
+            V value = get(key);
+            if (value != null) toReturn.put(key, value);
+         }
+      }
+      return Collections.unmodifiableMap(toReturn);
+   }
+
+   @Override
+   public void removeAll(Set<? extends K> keys) {
+      assertRemoteCacheManagerIsStarted();
+      if (keys.isEmpty()) return;
+      List<RemoveAllOperation> ops = operationsFactory.newRemoveAllOperations(keys2bytes(keys));
+      if (operationsFactory.isSupported(ops)) {
+         RetryOnFailureOperation.executeAll(ops);
+      } else {
+         for (K key : keys) {
+            remove(key);
+         }
       }
    }
 
+   private List<byte[]> keys2bytes(Set<? extends K> keys) {
+      List<byte[]> keyBytes = new ArrayList<byte[]>(keys.size());
+      for (K key : keys) {
+         keyBytes.add(obj2bytes(key, true));
+      }
+      return keyBytes;
+   }
+
    @Override
    public NotifyingFuture<Void> putAllAsync(final Map<? extends K, ? extends V> data, final long lifespan, final TimeUnit lifespanUnit, final long maxIdle, final TimeUnit maxIdleUnit) {
       assertRemoteCacheManagerIsStarted();
@@ -228,6 +296,10 @@ public class RemoteCacheImpl<K, V> extends RemoteCacheSupport<K, V> {
    @Override
    public NotifyingFuture<V> putAsync(final K key, final V value, final long lifespan, final TimeUnit lifespanUnit, final long maxIdle, final TimeUnit maxIdleUnit) {
       assertRemoteCacheManagerIsStarted();
+      if (operationsFactory.isPipelined()) {
+         PutOperation op = operationsFactory.newPutKeyValueOperation(obj2bytes(key, true), obj2bytes(value, false), toSeconds(lifespan, lifespanUnit), toSeconds(maxIdle, maxIdleUnit));
+         return executeAsync(op, new ValueFuture(executorService));
+      }
       final NotifyingFutureImpl<V> result = new NotifyingFutureImpl<V>();
       Future future = executorService.submit(new Callable() {
          @Override
@@ -244,6 +316,9 @@ public class RemoteCacheImpl<K, V> extends RemoteCacheSupport<K, V> {
    @Override
    public NotifyingFuture<Void> clearAsync() {
       assertRemoteCacheManagerIsStarted();
+      if (operationsFactory.isPipelined()) {
+         return executeAsync(operationsFactory.newClearOperation(), new ResponseFuture<Void>(executorService));
+      }
       final NotifyingFutureImpl<Void> result = new NotifyingFutureImpl<Void>();
       Future future = executorService.submit(new Callable() {
          @Override
@@ -260,6 +335,10 @@ public class RemoteCacheImpl<K, V> extends RemoteCacheSupport<K, V> {
    @Override
    public NotifyingFuture<V> putIfAbsentAsync(final K key,final V value,final long lifespan,final TimeUnit lifespanUnit,final long maxIdle,final TimeUnit maxIdleUnit) {
       assertRemoteCacheManagerIsStarted();
+      if (operationsFactory.isPipelined()) {
+         PutIfAbsentOperation op = operationsFactory.newPutIfAbsentOperation(obj2bytes(key, true), obj2bytes(value, false), toSeconds(lifespan, lifespanUnit), toSeconds(maxIdle, maxIdleUnit));
+         return executeAsync(op, new ValueFuture(executorService));
+      }
       final NotifyingFutureImpl<V> result = new NotifyingFutureImpl<V>();
       Future future = executorService.submit(new Callable() {
          @Override
@@ -276,6 +355,9 @@ public class RemoteCacheImpl<K, V> extends RemoteCacheSupport<K, V> {
    @Override
    public NotifyingFuture<V> removeAsync(final Object key) {
       assertRemoteCacheManagerIsStarted();
+      if (operationsFactory.isPipelined()) {
+         return executeAsync(operationsFactory.newRemoveOperation(obj2bytes(key, true)), new ValueFuture(executorService));
+      }
       final NotifyingFutureImpl<V> result = new NotifyingFutureImpl<V>();
       Future future = executorService.submit(new Callable() {
          @Override
@@ -292,6 +374,10 @@ public class RemoteCacheImpl<K, V> extends RemoteCacheSupport<K, V> {
    @Override
    public NotifyingFuture<V> replaceAsync(final K key,final V value,final long lifespan,final TimeUnit lifespanUnit,final long maxIdle,final TimeUnit maxIdleUnit) {
       assertRemoteCacheManagerIsStarted();
+      if (operationsFactory.isPipelined()) {
+         ReplaceOperation op = operationsFactory.newReplaceOperation(obj2bytes(key, true), obj2bytes(value, false), toSeconds(lifespan, lifespanUnit), toSeconds(maxIdle, maxIdleUnit));
+         return executeAsync(op, new ValueFuture(executorService));
+      }
       final NotifyingFutureImpl<V> result = new NotifyingFutureImpl<V>();
       Future future = executorService.submit(new Callable() {
          @Override
@@ -392,6 +478,9 @@ public class RemoteCacheImpl<K, V> extends RemoteCacheSupport<K, V> {
    @Override
    public NotifyingFuture<V> getAsync(final K key) {
       assertRemoteCacheManagerIsStarted();
+      if (operationsFactory.isPipelined()) {
+         return executeAsync(operationsFactory.newGetKeyOperation(obj2bytes(key, true)), new ValueFuture(executorService));
+      }
       final NotifyingFutureImpl<V> result = new NotifyingFutureImpl<V>();
       Future future = executorService.submit(new Callable() {
          @Override
@@ -440,6 +529,11 @@ public class RemoteCacheImpl<K, V> extends RemoteCacheSupport<K, V> {
       return (int) timeUnit.toSeconds(duration);
    }
 
+   private <T> NotifyingFuture<T> executeAsync(RetryOnFailureOperation op, ResponseFuture<T> future) {
+      op.executeAsync(future, executorService);
+      return future;
+   }
+
    private void assertRemoteCacheManagerIsStarted() {
       if (!remoteCacheManager.isStarted()) {
          String message = "Cannot perform operations on a cache associated with an unstarted RemoteCacheManager. Use RemoteCacheManager.start before using the remote cache.";
@@ -458,4 +552,31 @@ public class RemoteCacheImpl<K, V> extends RemoteCacheSupport<K, V> {
       put(key, value, defaultLifespan, MILLISECONDS, defaultMaxIdleTime, MILLISECONDS);
    }
 
+   /**
+    * Completes with the unmarshalled value returned by the operation
+    */
+   private class ValueFuture extends ResponseFuture<V> {
+      ValueFuture(Executor executor) {
+         super(executor);
+      }
+
+      @Override
+      protected V convert(Object response) {
+         return (V) bytes2obj((byte[]) response);
+      }
+   }
+
+   /**
+    * Completes with whether the conditional operation was applied
+    */
+   private static class VersionedOperationFuture extends ResponseFuture<Boolean> {
+      VersionedOperationFuture(Executor executor) {
+         super(executor);
+      }
+
+      @Override
+      protected Boolean convert(Object response) {
+         return ((VersionedOperationResponse) response).getCode().isUpdated();
+      }
+   }
 }
@@ -0,0 +1,186 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.client.hotrod.impl.async;
+
+import org.infinispan.util.concurrent.FutureListener;
+import org.infinispan.util.concurrent.NotifyingFuture;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Notifying future completed with the response of an operation read by the connection's reader, rather than by a
+ * thread executing the whole operation. {@link #convert(Object)} turns the response of the operation into the result of
+ * the future. If the future has an executor, the conversion and the listeners run on it, so that neither holds up the
+ * reader.
+ *
+ * @since 5.1
+ */
+public class ResponseFuture<T> implements NotifyingFuture<T> {
+
+   private final Executor executor;
+   private final AtomicBoolean completed = new AtomicBoolean();
+   private final CountDownLatch done = new CountDownLatch(1);
+   private final CopyOnWriteArraySet<FutureListener<T>> listeners = new CopyOnWriteArraySet<FutureListener<T>>();
+   private volatile T result;
+   private volatile Throwable failure;
+   private volatile boolean cancelled;
+
+   /**
+    * A future completed on the thread calling {@link #complete(Object)} or {@link #fail(Throwable)}
+    */
+   public ResponseFuture() {
+      this(null);
+   }
+
+   /**
+    * @param executor the executor completing the future, or null to complete it on the calling thread
+    */
+   public ResponseFuture(Executor executor) {
+      this.executor = executor;
+   }
+
+   /**
+    * Completes the future with the response of the operation.
+    */
+   public void complete(final Object response) {
+      if (executor == null) {
+         doComplete(response);
+      } else {
+         execute(new Runnable() {
+            @Override
+            public void run() {
+               doComplete(response);
+            }
+         });
+      }
+   }
+
+   public void fail(final Throwable t) {
+      if (executor == null) {
+         doFail(t);
+      } else {
+         execute(new Runnable() {
+            @Override
+            public void run() {
+               doFail(t);
+            }
+         });
+      }
+   }
+
+   private void execute(Runnable task) {
+      try {
+         executor.execute(task);
+      } catch (RejectedExecutionException e) {
+         // the executor is shutting down, and the caller still has to learn about the outcome
+         task.run();
+      }
+   }
+
+   private void doComplete(Object response) {
+      T converted;
+      try {
+         converted = convert(response);
+      } catch (Throwable t) {
+         doFail(t);
+         return;
+      }
+      if (completed.compareAndSet(false, true)) {
+         result = converted;
+         finish();
+      }
+   }
+
+   private void doFail(Throwable t) {
+      if (completed.compareAndSet(false, true)) {
+         failure = t;
+         finish();
+      }
+   }
+
+   @SuppressWarnings("unchecked")
+   protected T convert(Object response) {
+      return (T) response;
+   }
+
+   private void finish() {
+      done.countDown();
+      for (FutureListener<T> listener : listeners) {
+         // a listener being attached concurrently might be notified by attachListener() instead
+         if (listeners.remove(listener)) listener.futureDone(this);
+      }
+   }
+
+   @Override
+   public NotifyingFuture<T> attachListener(FutureListener<T> futureListener) {
+      listeners.add(futureListener);
+      if (isDone() && listeners.remove(futureListener)) futureListener.futureDone(this);
+      return this;
+   }
+
+   @Override
+   public boolean cancel(boolean mayInterruptIfRunning) {
+      // the request has already been sent, so all that can be done is to stop waiting for the response
+      if (!completed.compareAndSet(false, true)) return false;
+      cancelled = true;
+      finish();
+      return true;
+   }
+
+   @Override
+   public boolean isCancelled() {
+      return cancelled;
+   }
+
+   @Override
+   public boolean isDone() {
+      return done.getCount() == 0;
+   }
+
+   @Override
+   public T get() throws InterruptedException, ExecutionException {
+      done.await();
+      return getResult();
+   }
+
+   @Override
+   public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+      if (!done.await(timeout, unit))
+         throw new TimeoutException("No response received after " + unit.toMillis(timeout) + " milliseconds");
+      return getResult();
+   }
+
+   private T getResult() throws ExecutionException {
+      if (cancelled) throw new CancellationException();
+      if (failure != null) throw new ExecutionException(failure);
+      return result;
+   }
+}
@@ -60,14 +60,12 @@ public abstract class AbstractKeyOperation extends RetryOnFailureOperation {
       }
    }
 
-   protected short sendKeyOperation(byte[] key, Transport transport, byte opCode, byte opRespCode) {
-      // 1) write [header][key length][key]
+   protected long sendKeyRequest(byte[] key, Transport transport, byte opCode) {
+      // write [header][key length][key]
       long messageId = writeHeader(transport, opCode);
       transport.writeArray(key);
       transport.flush();
-
-      // 2) now read the header
-      return readHeaderAndValidate(transport, messageId, opRespCode);
+      return messageId;
    }
 
    protected byte[] returnPossiblePrevValue(Transport transport) {
@@ -53,7 +53,7 @@ public abstract class AbstractKeyValueOperation extends AbstractKeyOperation {
    }
 
    //[header][key length][key][lifespan][max idle][value length][value]
-   protected short sendPutOperation(Transport transport, short opCode, byte opRespCode) {
+   protected long sendPutRequest(Transport transport, short opCode) {
       // 1) write header
       long messageId = writeHeader(transport, opCode);
 
@@ -63,10 +63,6 @@ public abstract class AbstractKeyValueOperation extends AbstractKeyOperation {
       transport.writeVInt(maxIdle);
       transport.writeArray(value);
       transport.flush();
-
-      // 3) now read header
-
-      //return status (not error status for sure)
-      return readHeaderAndValidate(transport, messageId, opRespCode);
+      return messageId;
    }
 }
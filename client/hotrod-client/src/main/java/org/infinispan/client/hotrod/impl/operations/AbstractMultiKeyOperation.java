@@ -0,0 +1,59 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.client.hotrod.impl.operations;
+
+import net.jcip.annotations.Immutable;
+import org.infinispan.client.hotrod.Flag;
+import org.infinispan.client.hotrod.impl.transport.Transport;
+import org.infinispan.client.hotrod.impl.transport.TransportFactory;
+
+import java.net.SocketAddress;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Base class for operations on several keys that were grouped by the server owning them, see
+ * {@link TransportFactory#getServer(byte[])}. The request goes to that server first; retries go to any server, which
+ * then fetches or updates the keys it does not own itself.
+ *
+ * @since 5.1
+ */
+@Immutable
+public abstract class AbstractMultiKeyOperation extends RetryOnFailureOperation {
+
+   protected final SocketAddress server;
+
+   protected AbstractMultiKeyOperation(TransportFactory transportFactory, byte[] cacheName, AtomicInteger topologyId,
+                                       Flag[] flags, SocketAddress server) {
+      super(transportFactory, cacheName, topologyId, flags);
+      this.server = server;
+   }
+
+   @Override
+   protected Transport getTransport(int retryCount) {
+      if (retryCount == 0 && server != null) {
+         return transportFactory.getTransport(server);
+      } else {
+         return transportFactory.getTransport();
+      }
+   }
+}
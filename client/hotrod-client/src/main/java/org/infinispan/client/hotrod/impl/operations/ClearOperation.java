@@ -48,10 +48,14 @@ public class ClearOperation extends RetryOnFailureOperation {
    }
 
    @Override
-   protected Object executeOperation(Transport transport) {
+   protected long writeRequest(Transport transport) {
       long messageId = writeHeader(transport, CLEAR_REQUEST);
       transport.flush();
+      return messageId;
+   }
 
+   @Override
+   protected Object readResponse(Transport transport, long messageId) {
       readHeaderAndValidate(transport, messageId, CLEAR_RESPONSE);
       return null;
    }
@@ -43,9 +43,14 @@ public class ContainsKeyOperation extends AbstractKeyOperation {
    }
 
    @Override
-   protected Object executeOperation(Transport transport) {
+   protected long writeRequest(Transport transport) {
+      return sendKeyRequest(key, transport, CONTAINS_KEY_REQUEST);
+   }
+
+   @Override
+   protected Object readResponse(Transport transport, long messageId) {
       boolean containsKey = false;
-      short status = sendKeyOperation(key, transport, CONTAINS_KEY_REQUEST, CONTAINS_KEY_RESPONSE);
+      short status = readHeaderAndValidate(transport, messageId, CONTAINS_KEY_RESPONSE);
       if (status == KEY_DOES_NOT_EXIST_STATUS) {
          containsKey = false;
       } else if (status == NO_ERROR_STATUS) {
@@ -27,7 +27,11 @@ import org.infinispan.client.hotrod.Flag;
 import org.infinispan.client.hotrod.exceptions.HotRodClientException;
 import org.infinispan.client.hotrod.exceptions.InvalidResponseException;
 import org.infinispan.client.hotrod.exceptions.RemoteNodeSuspecException;
+import org.infinispan.client.hotrod.exceptions.TransportException;
+import org.infinispan.client.hotrod.impl.async.ResponseFuture;
 import org.infinispan.client.hotrod.impl.protocol.HotRodConstants;
+import org.infinispan.client.hotrod.impl.transport.PipelinedTransport;
+import org.infinispan.client.hotrod.impl.transport.ResponseListener;
 import org.infinispan.client.hotrod.impl.transport.Transport;
 import org.infinispan.client.hotrod.logging.Log;
 import org.infinispan.util.logging.LogFactory;
@@ -38,6 +42,7 @@ import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -76,11 +81,88 @@ public abstract class HotRodOperation implements HotRodConstants {
 
    public abstract Object execute();
 
+   /**
+    * Writes the request and reads its response. Over a {@link PipelinedTransport} the response is read by the
+    * connection's reader as soon as it arrives, while this thread waits for it.
+    */
+   protected Object executeOperation(Transport transport) {
+      if (transport instanceof PipelinedTransport) {
+         return awaitResponse(sendRequest((PipelinedTransport) transport));
+      }
+      long messageId = writeRequest(transport);
+      return readResponse(transport, messageId);
+   }
+
+   /**
+    * Writes and flushes the request
+    *
+    * @return the message id of the request
+    */
+   protected abstract long writeRequest(Transport transport);
+
+   /**
+    * Reads the response to the request sent with <code>messageId</code>
+    */
+   protected abstract Object readResponse(Transport transport, long messageId);
+
+   /**
+    * Writes the request to a {@link PipelinedTransport}, whose connection reads the response into the returned future
+    * as soon as it arrives.
+    */
+   protected final ResponseFuture<Object> sendRequest(PipelinedTransport transport) {
+      final ResponseFuture<Object> response = new ResponseFuture<Object>();
+      transport.setResponseListener(new ResponseListener() {
+         @Override
+         public void responseReceived(Transport transport, long messageId) {
+            try {
+               response.complete(readResponse(transport, messageId));
+            } catch (TransportException te) {
+               response.fail(te);
+               throw te;
+            } catch (RuntimeException e) {
+               response.fail(e);
+            }
+         }
+
+         @Override
+         public void requestFailed(TransportException e) {
+            response.fail(e);
+         }
+      });
+      writeRequest(transport);
+      return response;
+   }
+
+   /**
+    * Waits for the response read into a future returned by {@link #sendRequest(PipelinedTransport)}, throwing the
+    * exception reading it failed with, if any. The transport fails the request if no response arrives in time.
+    */
+   protected static Object awaitResponse(ResponseFuture<Object> response) {
+      try {
+         return response.get();
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         throw new TransportException("Interrupted while waiting for a response", e);
+      } catch (ExecutionException e) {
+         Throwable cause = e.getCause();
+         if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+         throw new HotRodClientException(cause);
+      }
+   }
+
    protected final long writeHeader(Transport transport, short operationCode) {
+      return writeHeader(transport, operationCode, VERSION_10);
+   }
+
+   /**
+    * Operations only defined by later versions of the protocol write those versions, the others keep writing 1.0 so that
+    * they work against every server.
+    */
+   protected final long writeHeader(Transport transport, short operationCode, byte version) {
       transport.writeByte(HotRodConstants.REQUEST_MAGIC);
       long messageId = MSG_ID.incrementAndGet();
       transport.writeVLong(messageId);
-      transport.writeByte(HotRodConstants.HOTROD_VERSION);
+      transport.writeByte(version);
       transport.writeByte(operationCode);
       transport.writeArray(cacheName);
 
@@ -96,8 +178,8 @@ public abstract class HotRodOperation implements HotRodConstants {
       //todo change once TX support is added
       transport.writeByte(NO_TX);
       if (log.isTraceEnabled()) {
-         log.tracef("wrote header for message %d. Operation code: %#04x. Flags: %#x",
-                    messageId, operationCode, flagInt);
+         log.tracef("wrote header for message %d. Version: %d. Operation code: %#04x. Flags: %#x",
+                    messageId, version, operationCode, flagInt);
       }
       return messageId;
    }
@@ -27,8 +27,15 @@ import org.infinispan.client.hotrod.Flag;
 import org.infinispan.client.hotrod.impl.protocol.HotRodConstants;
 import org.infinispan.client.hotrod.impl.transport.Transport;
 import org.infinispan.client.hotrod.impl.transport.TransportFactory;
+import org.infinispan.client.hotrod.impl.transport.tcp.MultiplexedTransportFactory;
 import org.infinispan.manager.CacheContainer;
 
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -52,11 +59,15 @@ public class OperationsFactory implements HotRodConstants {
 
    private final boolean forceReturnValue;
 
-   public OperationsFactory(TransportFactory transportFactory, String cacheName, AtomicInteger topologyId, boolean forceReturnValue) {
+   private final ProtocolVersionNegotiator versionNegotiator;
+
+   public OperationsFactory(TransportFactory transportFactory, String cacheName, AtomicInteger topologyId, boolean forceReturnValue,
+                            ProtocolVersionNegotiator versionNegotiator) {
       this.transportFactory = transportFactory;
       this.cacheNameBytes = cacheName.equals(CacheContainer.DEFAULT_CACHE_NAME) ? DEFAULT_CACHE_NAME_BYTES : cacheName.getBytes(HOTROD_STRING_CHARSET);
       this.topologyId = topologyId;
       this.forceReturnValue = forceReturnValue;
+      this.versionNegotiator = versionNegotiator;
    }
 
    public GetOperation newGetKeyOperation(byte[] key) {
@@ -107,10 +118,88 @@ public class OperationsFactory implements HotRodConstants {
       return new BulkGetOperation(transportFactory, cacheNameBytes, topologyId, flags(), size);
    }
 
+   /**
+    * @return one operation per server owning some of the <code>keys</code>, to be run with
+    *         {@link RetryOnFailureOperation#executeAll(java.util.List)}
+    */
+   public List<GetAllOperation> newGetAllOperations(Collection<byte[]> keys) {
+      Flag[] flags = flags();
+      List<GetAllOperation> ops = new ArrayList<GetAllOperation>();
+      for (Map.Entry<SocketAddress, List<byte[]>> e : groupByServer(keys).entrySet()) {
+         ops.add(new GetAllOperation(transportFactory, cacheNameBytes, topologyId, flags, e.getKey(), e.getValue()));
+      }
+      return ops;
+   }
+
+   public List<PutAllOperation> newPutAllOperations(Map<byte[], byte[]> entries, int lifespanSecs, int maxIdleSecs) {
+      Flag[] flags = flags();
+      Map<SocketAddress, Map<byte[], byte[]>> entriesByServer = new HashMap<SocketAddress, Map<byte[], byte[]>>();
+      for (Map.Entry<byte[], byte[]> entry : entries.entrySet()) {
+         SocketAddress server = transportFactory.getServer(entry.getKey());
+         Map<byte[], byte[]> serverEntries = entriesByServer.get(server);
+         if (serverEntries == null) {
+            serverEntries = new HashMap<byte[], byte[]>();
+            entriesByServer.put(server, serverEntries);
+         }
+         serverEntries.put(entry.getKey(), entry.getValue());
+      }
+      List<PutAllOperation> ops = new ArrayList<PutAllOperation>(entriesByServer.size());
+      for (Map.Entry<SocketAddress, Map<byte[], byte[]>> e : entriesByServer.entrySet()) {
+         ops.add(new PutAllOperation(transportFactory, cacheNameBytes, topologyId, flags, e.getKey(), e.getValue(), lifespanSecs, maxIdleSecs));
+      }
+      return ops;
+   }
+
+   public List<RemoveAllOperation> newRemoveAllOperations(Collection<byte[]> keys) {
+      Flag[] flags = flags();
+      List<RemoveAllOperation> ops = new ArrayList<RemoveAllOperation>();
+      for (Map.Entry<SocketAddress, List<byte[]>> e : groupByServer(keys).entrySet()) {
+         ops.add(new RemoveAllOperation(transportFactory, cacheNameBytes, topologyId, flags, e.getKey(), e.getValue()));
+      }
+      return ops;
+   }
+
+   /**
+    * Operations on several keys are only defined by version 1.1 of the protocol, so they can only be sent if every
+    * server they go to speaks it. Otherwise, the keys have to be operated on one at a time.
+    *
+    * @return true if the <code>operations</code> can be executed
+    */
+   public boolean isSupported(List<? extends AbstractMultiKeyOperation> operations) {
+      List<SocketAddress> servers = new ArrayList<SocketAddress>(operations.size());
+      for (AbstractMultiKeyOperation op : operations) {
+         servers.add(op.server);
+      }
+      return versionNegotiator.supportsVersion11(servers);
+   }
+
+   private Map<SocketAddress, List<byte[]>> groupByServer(Collection<byte[]> keys) {
+      Map<SocketAddress, List<byte[]>> keysByServer = new HashMap<SocketAddress, List<byte[]>>();
+      for (byte[] key : keys) {
+         SocketAddress server = transportFactory.getServer(key);
+         List<byte[]> serverKeys = keysByServer.get(server);
+         if (serverKeys == null) {
+            serverKeys = new ArrayList<byte[]>();
+            keysByServer.put(server, serverKeys);
+         }
+         serverKeys.add(key);
+      }
+      return keysByServer;
+   }
+
    public PingOperation newPingOperation(Transport transport) {
       return new PingOperation(topologyId, transport, cacheNameBytes);
    }
 
+   /**
+    * @return true if requests are pipelined, in which case async operations are best run with
+    *         {@link RetryOnFailureOperation#executeAsync(org.infinispan.client.hotrod.impl.async.ResponseFuture)} rather
+    *         than on a thread of their own
+    */
+   public boolean isPipelined() {
+      return transportFactory instanceof MultiplexedTransportFactory;
+   }
+
    private Flag[] flags() {
       Flag[] flags = this.flagsMap.get();
       this.flagsMap.remove();
@@ -45,34 +45,34 @@ public class PingOperation extends HotRodOperation {
 
    private final Transport transport;
 
+   private final byte version;
+
    public PingOperation(AtomicInteger topologyId, Transport transport) {
       this(topologyId, transport, DEFAULT_CACHE_NAME_BYTES);
    }
 
    public PingOperation(AtomicInteger topologyId, Transport transport, byte[] cacheName) {
+      this(topologyId, transport, cacheName, VERSION_10);
+   }
+
+   /**
+    * @param version the protocol version written in the request, which servers not speaking it reject
+    */
+   public PingOperation(AtomicInteger topologyId, Transport transport, byte[] cacheName, byte version) {
       super(null, cacheName, topologyId);
       this.transport = transport;
+      this.version = version;
    }
 
    @Override
    public PingResult execute() {
       try {
-         long messageId = writeHeader(transport, HotRodConstants.PING_REQUEST);
-         transport.flush();
-
-         short respStatus = readHeaderAndValidate(transport, messageId, HotRodConstants.PING_RESPONSE);
-         if (respStatus == HotRodConstants.NO_ERROR_STATUS) {
-            if (log.isTraceEnabled())
-               log.tracef("Successfully validated transport: %s", transport);
-            return PingResult.SUCCESS;
-         } else {
-            if (log.isTraceEnabled())
-               log.tracef("Unknown response status: %s", respStatus);
-            return PingResult.FAIL;
-         }
+         return (PingResult) executeOperation(transport);
       } catch (HotRodClientException e) {
          if (e.getMessage().contains("CacheNotFoundException"))
             return PingResult.CACHE_DOES_NOT_EXIST;
+         else if (e.getMessage().contains("UnknownVersionException"))
+            return PingResult.UNKNOWN_VERSION;
          else
             return PingResult.FAIL;
       } catch (Exception e) {
@@ -82,11 +82,34 @@ public class PingOperation extends HotRodOperation {
       }
    }
 
+   @Override
+   protected long writeRequest(Transport transport) {
+      long messageId = writeHeader(transport, HotRodConstants.PING_REQUEST, version);
+      transport.flush();
+      return messageId;
+   }
+
+   @Override
+   protected Object readResponse(Transport transport, long messageId) {
+      short respStatus = readHeaderAndValidate(transport, messageId, HotRodConstants.PING_RESPONSE);
+      if (respStatus == HotRodConstants.NO_ERROR_STATUS) {
+         if (log.isTraceEnabled())
+            log.tracef("Successfully validated transport: %s", transport);
+         return PingResult.SUCCESS;
+      } else {
+         if (log.isTraceEnabled())
+            log.tracef("Unknown response status: %s", respStatus);
+         return PingResult.FAIL;
+      }
+   }
+
    public static enum PingResult {
       // Success if the ping request was responded correctly
       SUCCESS,
       // When the ping request fails due to non-existing cache
       CACHE_DOES_NOT_EXIST,
+      // When the server does not speak the protocol version of the ping request
+      UNKNOWN_VERSION,
       // For any other type of failures
       FAIL,
    }
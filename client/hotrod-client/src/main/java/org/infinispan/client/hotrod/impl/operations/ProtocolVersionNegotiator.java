@@ -0,0 +1,115 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.client.hotrod.impl.operations;
+
+import net.jcip.annotations.ThreadSafe;
+import org.infinispan.client.hotrod.impl.operations.PingOperation.PingResult;
+import org.infinispan.client.hotrod.impl.protocol.HotRodConstants;
+import org.infinispan.client.hotrod.impl.transport.Transport;
+import org.infinispan.client.hotrod.impl.transport.TransportFactory;
+import org.infinispan.util.logging.Log;
+import org.infinispan.util.logging.LogFactory;
+
+import java.net.SocketAddress;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Finds out which servers speak version 1.1 of the Hot Rod protocol, which added the operations on several keys. Each
+ * server is pinged once with a 1.1 request, which servers only speaking 1.0 reject as being of an unknown version. Pings
+ * that fail for any other reason are tried again the next time.
+ * <p/>
+ * Every other operation keeps sending 1.0 requests, so only the operations on several keys need to check for it.
+ *
+ * @since 5.1
+ */
+@ThreadSafe
+public class ProtocolVersionNegotiator implements HotRodConstants {
+
+   private static final Log log = LogFactory.getLog(ProtocolVersionNegotiator.class);
+
+   private final TransportFactory transportFactory;
+
+   private final AtomicInteger topologyId;
+
+   private final byte clientVersion;
+
+   private final ConcurrentMap<SocketAddress, Byte> serverVersions = new ConcurrentHashMap<SocketAddress, Byte>();
+
+   /**
+    * @param clientVersion the highest version the client was configured to speak, either "1.0" or "1.1"
+    */
+   public ProtocolVersionNegotiator(TransportFactory transportFactory, AtomicInteger topologyId, String clientVersion) {
+      this.transportFactory = transportFactory;
+      this.topologyId = topologyId;
+      if ("1.0".equals(clientVersion)) {
+         this.clientVersion = VERSION_10;
+      } else if ("1.1".equals(clientVersion)) {
+         this.clientVersion = VERSION_11;
+      } else {
+         throw new IllegalArgumentException("Unsupported Hot Rod protocol version: " + clientVersion);
+      }
+   }
+
+   /**
+    * @return true if both the client and every one of the <code>servers</code> speak version 1.1
+    */
+   public boolean supportsVersion11(Collection<SocketAddress> servers) {
+      if (clientVersion < VERSION_11) return false;
+      for (SocketAddress server : servers) {
+         if (getServerVersion(server) < VERSION_11) return false;
+      }
+      return true;
+   }
+
+   private byte getServerVersion(SocketAddress server) {
+      Byte version = serverVersions.get(server);
+      if (version != null) return version;
+
+      Transport transport = server == null ? transportFactory.getTransport() : transportFactory.getTransport(server);
+      PingResult result;
+      try {
+         result = new PingOperation(topologyId, transport, DEFAULT_CACHE_NAME_BYTES, VERSION_11).execute();
+      } finally {
+         transportFactory.releaseTransport(transport);
+      }
+      if (log.isTraceEnabled()) log.tracef("Pinging %s with a version 1.1 request returned %s", server, result);
+      switch (result) {
+         case SUCCESS:
+         case CACHE_DOES_NOT_EXIST:
+            version = VERSION_11;
+            break;
+         case UNKNOWN_VERSION:
+            version = VERSION_10;
+            break;
+         default:
+            // don't remember anything, the server may have been unreachable
+            return VERSION_10;
+      }
+      // without an address, any server may have answered
+      if (server != null) serverVersions.put(server, version);
+      return version;
+   }
+}
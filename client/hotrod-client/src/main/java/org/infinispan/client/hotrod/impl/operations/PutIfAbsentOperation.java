@@ -50,8 +50,13 @@ public class PutIfAbsentOperation extends AbstractKeyValueOperation {
    }
 
    @Override
-   protected Object executeOperation(Transport transport) {
-      short status = sendPutOperation(transport, PUT_IF_ABSENT_REQUEST, PUT_IF_ABSENT_RESPONSE);
+   protected long writeRequest(Transport transport) {
+      return sendPutRequest(transport, PUT_IF_ABSENT_REQUEST);
+   }
+
+   @Override
+   protected Object readResponse(Transport transport, long messageId) {
+      short status = readHeaderAndValidate(transport, messageId, PUT_IF_ABSENT_RESPONSE);
       byte[] previousValue = null;
       if (status == NO_ERROR_STATUS || status == NOT_PUT_REMOVED_REPLACED_STATUS) {
          previousValue = returnPossiblePrevValue(transport);
@@ -45,8 +45,13 @@ public class PutOperation extends AbstractKeyValueOperation {
    }
 
    @Override
-   protected Object executeOperation(Transport transport) {
-      short status = sendPutOperation(transport, PUT_REQUEST, PUT_RESPONSE);
+   protected long writeRequest(Transport transport) {
+      return sendPutRequest(transport, PUT_REQUEST);
+   }
+
+   @Override
+   protected Object readResponse(Transport transport, long messageId) {
+      short status = readHeaderAndValidate(transport, messageId, PUT_RESPONSE);
       if (status != NO_ERROR_STATUS) {
          throw new InvalidResponseException("Unexpected response status: " + Integer.toHexString(status));
       }
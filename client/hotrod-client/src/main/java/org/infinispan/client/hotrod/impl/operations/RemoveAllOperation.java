@@ -0,0 +1,66 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.client.hotrod.impl.operations;
+
+import net.jcip.annotations.Immutable;
+import org.infinispan.client.hotrod.Flag;
+import org.infinispan.client.hotrod.impl.transport.Transport;
+import org.infinispan.client.hotrod.impl.transport.TransportFactory;
+
+import java.net.SocketAddress;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Removes several keys in one request. Unlike {@link RemoveOperation}, the previous values are never returned.
+ *
+ * @since 5.1
+ */
+@Immutable
+public class RemoveAllOperation extends AbstractMultiKeyOperation {
+
+   private final Collection<byte[]> keys;
+
+   public RemoveAllOperation(TransportFactory transportFactory, byte[] cacheName, AtomicInteger topologyId, Flag[] flags,
+                             SocketAddress server, Collection<byte[]> keys) {
+      super(transportFactory, cacheName, topologyId, flags, server);
+      this.keys = keys;
+   }
+
+   @Override
+   protected long writeRequest(Transport transport) {
+      long messageId = writeHeader(transport, REMOVE_ALL_REQUEST, VERSION_11);
+      transport.writeVInt(keys.size());
+      for (byte[] key : keys) {
+         transport.writeArray(key);
+      }
+      transport.flush();
+      return messageId;
+   }
+
+   @Override
+   protected Object readResponse(Transport transport, long messageId) {
+      readHeaderAndValidate(transport, messageId, REMOVE_ALL_RESPONSE);
+      return null;
+   }
+}
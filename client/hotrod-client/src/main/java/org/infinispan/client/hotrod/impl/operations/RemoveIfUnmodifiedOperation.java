@@ -47,7 +47,7 @@ public class RemoveIfUnmodifiedOperation extends AbstractKeyOperation {
    }
 
    @Override
-   protected Object executeOperation(Transport transport) {
+   protected long writeRequest(Transport transport) {
       // 1) write header
       long messageId = writeHeader(transport, REMOVE_IF_UNMODIFIED_REQUEST);
 
@@ -55,7 +55,11 @@ public class RemoveIfUnmodifiedOperation extends AbstractKeyOperation {
       transport.writeArray(key);
       transport.writeLong(version);
       transport.flush();
+      return messageId;
+   }
 
+   @Override
+   protected Object readResponse(Transport transport, long messageId) {
       //process response and return
       return returnVersionedOperationResponse(transport, messageId, REMOVE_IF_UNMODIFIED_RESPONSE);
    }
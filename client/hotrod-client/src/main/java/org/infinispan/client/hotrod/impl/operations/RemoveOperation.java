@@ -44,9 +44,14 @@ public class RemoveOperation extends AbstractKeyOperation {
    }
 
    @Override
-   public Object executeOperation(Transport transport) {
+   protected long writeRequest(Transport transport) {
+      return sendKeyRequest(key, transport, REMOVE_REQUEST);
+   }
+
+   @Override
+   protected Object readResponse(Transport transport, long messageId) {
       byte[] result = null;
-      short status = sendKeyOperation(key, transport, REMOVE_REQUEST, REMOVE_RESPONSE);
+      short status = readHeaderAndValidate(transport, messageId, REMOVE_RESPONSE);
       if (status == KEY_DOES_NOT_EXIST_STATUS) {
          result = null;
       } else if (status == NO_ERROR_STATUS) {
@@ -47,7 +47,7 @@ public class ReplaceIfUnmodifiedOperation extends AbstractKeyValueOperation {
    }
 
    @Override
-   protected Object executeOperation(Transport transport) {
+   protected long writeRequest(Transport transport) {
       // 1) write header
       long messageId = writeHeader(transport, REPLACE_IF_UNMODIFIED_REQUEST);
 
@@ -58,7 +58,11 @@ public class ReplaceIfUnmodifiedOperation extends AbstractKeyValueOperation {
       transport.writeLong(version);
       transport.writeArray(value);
       transport.flush();
+      return messageId;
+   }
 
+   @Override
+   protected Object readResponse(Transport transport, long messageId) {
       return returnVersionedOperationResponse(transport, messageId, REPLACE_IF_UNMODIFIED_RESPONSE);
    }
 }
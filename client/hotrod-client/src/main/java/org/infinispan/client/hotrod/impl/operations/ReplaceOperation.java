@@ -45,9 +45,14 @@ public class ReplaceOperation extends AbstractKeyValueOperation {
    }
 
    @Override
-   protected Object executeOperation(Transport transport) {
+   protected long writeRequest(Transport transport) {
+      return sendPutRequest(transport, REPLACE_REQUEST);
+   }
+
+   @Override
+   protected Object readResponse(Transport transport, long messageId) {
       byte[] result = null;
-      short status = sendPutOperation(transport, REPLACE_REQUEST, REPLACE_RESPONSE);
+      short status = readHeaderAndValidate(transport, messageId, REPLACE_RESPONSE);
       if (status == NO_ERROR_STATUS || status == NOT_PUT_REMOVED_REPLACED_STATUS) {
          result = returnPossiblePrevValue(transport);
       }
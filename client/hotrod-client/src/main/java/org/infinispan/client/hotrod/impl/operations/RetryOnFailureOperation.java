@@ -27,16 +27,29 @@ import org.infinispan.client.hotrod.Flag;
 import org.infinispan.client.hotrod.exceptions.HotRodClientException;
 import org.infinispan.client.hotrod.exceptions.RemoteNodeSuspecException;
 import org.infinispan.client.hotrod.exceptions.TransportException;
+import org.infinispan.client.hotrod.impl.async.ResponseFuture;
+import org.infinispan.client.hotrod.impl.transport.PipelinedTransport;
+import org.infinispan.client.hotrod.impl.transport.ResponseListener;
 import org.infinispan.client.hotrod.impl.transport.Transport;
 import org.infinispan.client.hotrod.impl.transport.TransportFactory;
 import org.infinispan.client.hotrod.logging.Log;
 import org.infinispan.util.logging.LogFactory;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Base class for all the operations that need retry logic: if the operation fails due to connection problems, try with 
  * another available connection.
+ * <p/>
+ * Operations are written as a request and a response half, so that over a {@link PipelinedTransport} the response can
+ * be read by the connection's reader as soon as it arrives, see {@link #executeAsync(ResponseFuture, Executor)}, and so that
+ * several operations can be in progress at the same time, see {@link #executeAll(List)}.
  *
  * @author Mircea.Markus@jboss.com
  * @since 4.1
@@ -73,6 +86,137 @@ public abstract class RetryOnFailureOperation extends HotRodOperation {
       throw new IllegalStateException("We should not reach here!");
    }
 
+   /**
+    * Sends the request and reads the response through a {@link PipelinedTransport} without blocking the calling thread,
+    * retrying on another connection if the operation fails due to connection problems. The connection's reader only
+    * decodes the response: <code>future</code> is completed, and retries are sent, on <code>executor</code>.
+    */
+   public void executeAsync(ResponseFuture<?> future, Executor executor) {
+      executeAsync(future, executor, 0);
+   }
+
+   private void executeAsync(final ResponseFuture<?> future, final Executor executor, final int retryCount) {
+      PipelinedTransport transport;
+      try {
+         transport = (PipelinedTransport) getTransport(retryCount);
+      } catch (TransportException te) {
+         retryAsyncIfPossible(future, executor, retryCount, te);
+         return;
+      }
+      transport.setResponseListener(new ResponseListener() {
+         @Override
+         public void responseReceived(Transport transport, long messageId) {
+            try {
+               future.complete(readResponse(transport, messageId));
+            } catch (TransportException te) {
+               retryAsyncIfPossible(future, executor, retryCount, te);
+               throw te;
+            } catch (RemoteNodeSuspecException e) {
+               retryAsyncIfPossible(future, executor, retryCount, e);
+            } catch (RuntimeException e) {
+               future.fail(e);
+            }
+         }
+
+         @Override
+         public void requestFailed(TransportException te) {
+            retryAsyncIfPossible(future, executor, retryCount, te);
+         }
+      });
+      try {
+         writeRequest(transport);
+      } catch (TransportException te) {
+         retryAsyncIfPossible(future, executor, retryCount, te);
+      } finally {
+         releaseTransport(transport);
+      }
+   }
+
+   private void retryAsyncIfPossible(final ResponseFuture<?> future, final Executor executor, final int retryCount,
+                                     HotRodClientException e) {
+      try {
+         logErrorAndThrowExceptionIfNeeded(retryCount, e);
+      } catch (HotRodClientException noRetriesLeft) {
+         future.fail(noRetriesLeft);
+         return;
+      }
+      // a retry might have to open a connection, which must not hold up the thread reading responses
+      try {
+         executor.execute(new Runnable() {
+            @Override
+            public void run() {
+               executeAsync(future, executor, retryCount + 1);
+            }
+         });
+      } catch (RejectedExecutionException ree) {
+         future.fail(e);
+      }
+   }
+
+   /**
+    * Executes the operations in parallel, by sending all the requests before reading any response. Each operation
+    * borrows a transport of its own, so the servers process the requests concurrently and the caller waits for roughly
+    * the slowest of them. Operations whose first attempt fails because of the connection are executed again, with the
+    * usual retries, once the other responses were read.
+    *
+    * @return the results of the operations, in the same order as <code>operations</code>
+    */
+   public static List<Object> executeAll(List<? extends RetryOnFailureOperation> operations) {
+      int count = operations.size();
+      Transport[] transports = new Transport[count];
+      long[] messageIds = new long[count];
+      List<ResponseFuture<Object>> responses = new ArrayList<ResponseFuture<Object>>(Collections.<ResponseFuture<Object>>nCopies(count, null));
+      Object[] results = new Object[count];
+      RuntimeException failure = null;
+      try {
+         for (int i = 0; i < count; i++) {
+            RetryOnFailureOperation op = operations.get(i);
+            try {
+               transports[i] = op.getTransport(0);
+               if (transports[i] instanceof PipelinedTransport) {
+                  responses.set(i, op.sendRequest((PipelinedTransport) transports[i]));
+               } else {
+                  messageIds[i] = op.writeRequest(transports[i]);
+               }
+            } catch (TransportException te) {
+               log.tracef(te, "Could not send request, it will be retried");
+               op.releaseTransport(transports[i]);
+               transports[i] = null;
+            }
+         }
+         for (int i = 0; i < count; i++) {
+            RetryOnFailureOperation op = operations.get(i);
+            // every response is read, even after a failure, so that no transport goes back to the pool with unread data
+            try {
+               boolean done = false;
+               if (transports[i] != null) {
+                  try {
+                     results[i] = responses.get(i) != null ?
+                           awaitResponse(responses.get(i)) : op.readResponse(transports[i], messageIds[i]);
+                     done = true;
+                  } catch (TransportException te) {
+                     log.tracef(te, "Failed reading response, the operation will be retried");
+                  } catch (RemoteNodeSuspecException e) {
+                     log.tracef(e, "Failed reading response, the operation will be retried");
+                  } finally {
+                     op.releaseTransport(transports[i]);
+                     transports[i] = null;
+                  }
+               }
+               if (!done) results[i] = op.execute();
+            } catch (RuntimeException e) {
+               if (failure == null) failure = e;
+            }
+         }
+      } finally {
+         for (int i = 0; i < count; i++) {
+            operations.get(i).releaseTransport(transports[i]);
+         }
+      }
+      if (failure != null) throw failure;
+      return Arrays.asList(results);
+   }
+
    protected boolean shouldRetry(int retryCount) {
       return retryCount < transportFactory.getTransportCount();
    }
@@ -93,6 +237,4 @@ public abstract class RetryOnFailureOperation extends HotRodOperation {
    }
 
    protected abstract Transport getTransport(int retryCount);
-
-   protected abstract Object executeOperation(Transport transport);
 }
@@ -0,0 +1,48 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.client.hotrod.impl.transport;
+
+import org.infinispan.client.hotrod.exceptions.TransportException;
+
+/**
+ * Callback through which a {@link PipelinedTransport} hands the response to a request over to whoever sent it, on the
+ * thread that reads responses from the connection.
+ *
+ * @since 5.1
+ */
+public interface ResponseListener {
+
+   /**
+    * Invoked when the response to the request sent with <code>messageId</code> starts to arrive. The listener must read
+    * the whole response from <code>transport</code> before returning, and hand what it read over without waiting for
+    * anybody, as no other response of the connection is read meanwhile. A {@link TransportException} thrown from here
+    * means the connection can no longer be read from, and fails all the other requests in flight on it.
+    */
+   void responseReceived(Transport transport, long messageId);
+
+   /**
+    * Invoked instead of {@link #responseReceived(Transport, long)} if the connection failed, or the request timed out,
+    * before the response arrived.
+    */
+   void requestFailed(TransportException e);
+}
@@ -52,6 +52,14 @@ public interface TransportFactory {
 
    Transport getTransport(byte[] key);
 
+   /**
+    * @return the server <code>key</code> maps to according to the consistent hash or, if the servers did not send one,
+    *         the next server chosen by the balancer. Used to group the keys of bulk operations by server.
+    */
+   SocketAddress getServer(byte[] key);
+
+   Transport getTransport(SocketAddress server);
+
    boolean isTcpNoDelay();
 
    int getTransportCount();
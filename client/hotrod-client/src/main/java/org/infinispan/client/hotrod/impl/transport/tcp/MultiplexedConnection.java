@@ -0,0 +1,263 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.client.hotrod.impl.transport.tcp;
+
+import net.jcip.annotations.ThreadSafe;
+import org.infinispan.client.hotrod.exceptions.TransportException;
+import org.infinispan.client.hotrod.impl.transport.ResponseListener;
+import org.infinispan.client.hotrod.logging.Log;
+import org.infinispan.util.Util;
+import org.infinispan.util.logging.LogFactory;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.infinispan.io.UnsignedNumeric.*;
+
+/**
+ * A single TCP connection to a Hot Rod server shared by any number of concurrent requests. Requests are written as
+ * soon as they are flushed, without waiting for the responses to previous requests, and a dedicated reader thread
+ * correlates the responses with the requests through the message id echoed back in every response header.
+ * <p/>
+ * The server answers the requests of a connection in order, so the reader only ever has to look at the head of the
+ * stream: it hands each response to the {@link ResponseListener} of the request, which decodes the whole response
+ * frame on the reader thread and passes the result on without waiting for the thread that sent the request. The
+ * connection is closed, failing all the requests in flight on it, once a request goes without a response for longer
+ * than the socket time out, see {@link #failOverdueRequests(long)}.
+ *
+ * @since 5.1
+ */
+@ThreadSafe
+public class MultiplexedConnection {
+
+   private static final Log log = LogFactory.getLog(MultiplexedConnection.class, Log.class);
+   private static final boolean trace = log.isTraceEnabled();
+
+   private static final AtomicLong ID_COUNTER = new AtomicLong(0);
+
+   private final InetSocketAddress serverAddress;
+   private final MultiplexedTransportFactory transportFactory;
+   private final SocketChannel socketChannel;
+   private final Socket socket;
+   private final InputStream socketInputStream;
+   private final Object writeLock = new Object();
+   private final ConcurrentMap<Long, MultiplexedTransport> pending = new ConcurrentHashMap<Long, MultiplexedTransport>();
+   private final long id = ID_COUNTER.incrementAndGet();
+   private final Thread reader;
+
+   private volatile boolean closed;
+
+   public MultiplexedConnection(InetSocketAddress serverAddress, MultiplexedTransportFactory transportFactory) {
+      this.serverAddress = serverAddress;
+      this.transportFactory = transportFactory;
+      SocketChannel channel = null;
+      try {
+         channel = SocketChannel.open();
+         // connected through the socket, as only the socket takes a time out
+         channel.socket().connect(serverAddress, transportFactory.getConnectTimeout());
+         socketChannel = channel;
+         socket = socketChannel.socket();
+         socket.setTcpNoDelay(transportFactory.isTcpNoDelay());
+         // the reader blocks until the next response arrives, the time outs are enforced per request by the factory
+         socket.setSoTimeout(0);
+         socketInputStream = new BufferedInputStream(socket.getInputStream(), socket.getReceiveBufferSize());
+      } catch (IOException e) {
+         Util.close(channel);
+         String message = String.format("Could not connect to server: %s", serverAddress);
+         log.couldNotConnectToServer(serverAddress, e);
+         throw new TransportException(message, e);
+      }
+      reader = new Thread(new Runnable() {
+         @Override
+         public void run() {
+            readResponses();
+         }
+      }, "HotRod-client-" + serverAddress + "-" + id);
+      reader.setDaemon(true);
+      reader.start();
+   }
+
+   public InetSocketAddress getServerAddress() {
+      return serverAddress;
+   }
+
+   public boolean isClosed() {
+      return closed;
+   }
+
+   public int getPendingCount() {
+      return pending.size();
+   }
+
+   public MultiplexedTransport newTransport() {
+      if (closed) throw new TransportException("Connection to " + serverAddress + " is closed");
+      return new MultiplexedTransport(this, transportFactory);
+   }
+
+   void send(MultiplexedTransport transport, long messageId, byte[] request) {
+      pending.put(messageId, transport);
+      try {
+         // registered first, so that close() fails the request if it raced with us
+         if (closed) throw new IOException("Connection to " + serverAddress + " is closed");
+         ByteBuffer buffer = ByteBuffer.wrap(request);
+         // writes through the channel rather than the socket's output stream, which would block while the reader reads
+         synchronized (writeLock) {
+            while (buffer.hasRemaining()) socketChannel.write(buffer);
+         }
+      } catch (IOException e) {
+         boolean failedHere = pending.remove(messageId, transport);
+         close(e);
+         // otherwise close() already failed the request
+         if (failedHere) throw new TransportException(e);
+      }
+   }
+
+   /**
+    * Closes the connection if one of the requests in flight on it has been waiting for its response for longer than the
+    * socket time out: the response may still come, and the stream is only usable if it is read, so the connection has
+    * to go.
+    *
+    * @param now the current {@link System#nanoTime()}
+    */
+   void failOverdueRequests(long now) {
+      for (Map.Entry<Long, MultiplexedTransport> e : pending.entrySet()) {
+         if (e.getValue().isOverdue(now)) {
+            close(new TransportException("Timed out waiting for the response to message " + e.getKey() +
+                                               " from " + serverAddress));
+            return;
+         }
+      }
+   }
+
+   TransportException readFailed(IOException e) {
+      close(e);
+      return new TransportException(e);
+   }
+
+   private void readResponses() {
+      while (!closed) {
+         try {
+            int magic = socketInputStream.read();
+            if (magic == -1) throw new IOException("End of stream reached!");
+            long messageId = readUnsignedLong(socketInputStream);
+            MultiplexedTransport transport = pending.remove(messageId);
+            if (transport == null)
+               throw new IOException("Received a response to unknown message " + messageId + " from " + serverAddress);
+            if (trace) log.tracef("Received response to message %d from %s", messageId, serverAddress);
+
+            // the operation reads the response from the start of the header, so the bytes consumed here are put back
+            ByteArrayOutputStream header = new ByteArrayOutputStream(10);
+            header.write(magic);
+            writeUnsignedLong(header, messageId);
+            transport.responseArrived(new SequenceInputStream(new ByteArrayInputStream(header.toByteArray()), socketInputStream));
+
+            transport.getResponseListener().responseReceived(transport, messageId);
+         } catch (IOException e) {
+            close(e);
+         } catch (TransportException e) {
+            close(e);
+         } catch (Throwable t) {
+            // the response was not fully consumed, so the rest of the stream cannot be trusted
+            log.tracef(t, "Unexpected failure processing a response from %s", serverAddress);
+            close(t);
+         }
+      }
+   }
+
+   /**
+    * Closes the connection and fails all requests still waiting for a response. Safe to call more than once.
+    */
+   public void close(Throwable cause) {
+      synchronized (this) {
+         if (closed) return;
+         closed = true;
+      }
+      if (trace) log.tracef(cause, "Closing connection %s", this);
+      Util.close(socketInputStream, socketChannel);
+      Util.close(socket);
+      TransportException failure = cause instanceof TransportException ?
+            (TransportException) cause : new TransportException(cause);
+      for (Iterator<MultiplexedTransport> it = pending.values().iterator(); it.hasNext(); ) {
+         MultiplexedTransport transport = it.next();
+         it.remove();
+         transport.requestFailed(failure);
+      }
+      transportFactory.connectionClosed(this);
+   }
+
+   @Override
+   public String toString() {
+      return "MultiplexedConnection{" +
+            "serverAddress=" + serverAddress +
+            ", id=" + id +
+            ", pending=" + pending.size() +
+            ", closed=" + closed +
+            '}';
+   }
+
+   /**
+    * Like {@link java.io.SequenceInputStream}, but never closes the underlying streams.
+    */
+   private static final class SequenceInputStream extends InputStream {
+      private final InputStream first;
+      private final InputStream second;
+      private boolean firstDone;
+
+      SequenceInputStream(InputStream first, InputStream second) {
+         this.first = first;
+         this.second = second;
+      }
+
+      @Override
+      public int read() throws IOException {
+         if (!firstDone) {
+            int b = first.read();
+            if (b != -1) return b;
+            firstDone = true;
+         }
+         return second.read();
+      }
+
+      @Override
+      public int read(byte[] b, int off, int len) throws IOException {
+         if (!firstDone) {
+            int read = first.read(b, off, len);
+            if (read > 0) return read;
+            firstDone = true;
+         }
+         return second.read(b, off, len);
+      }
+   }
+}
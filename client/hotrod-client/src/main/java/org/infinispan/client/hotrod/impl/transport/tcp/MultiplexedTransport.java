@@ -0,0 +1,220 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.client.hotrod.impl.transport.tcp;
+
+import net.jcip.annotations.NotThreadSafe;
+import org.infinispan.client.hotrod.exceptions.TransportException;
+import org.infinispan.client.hotrod.impl.transport.AbstractTransport;
+import org.infinispan.client.hotrod.impl.transport.PipelinedTransport;
+import org.infinispan.client.hotrod.impl.transport.ResponseListener;
+import org.infinispan.client.hotrod.logging.Log;
+import org.infinispan.util.logging.LogFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+import static org.infinispan.io.UnsignedNumeric.*;
+
+/**
+ * A {@link PipelinedTransport} for a single request over a {@link MultiplexedConnection}. The request is buffered until
+ * it is flushed, and then written to the connection in one go. The response is always read by the connection's reader,
+ * which hands it to the {@link ResponseListener} set before the request was flushed, so the reader never waits for the
+ * thread that sent the request. The request fails if its response does not arrive within the socket time out.
+ *
+ * @since 5.1
+ */
+@NotThreadSafe
+public class MultiplexedTransport extends AbstractTransport implements PipelinedTransport {
+
+   private static final Log log = LogFactory.getLog(MultiplexedTransport.class, Log.class);
+   private static final boolean trace = log.isTraceEnabled();
+
+   private final MultiplexedConnection connection;
+   private final ByteArrayOutputStream request = new ByteArrayOutputStream(128);
+   private ResponseListener listener;
+   private long messageId = -1;
+   private volatile long deadline;
+   private InputStream response;
+
+   MultiplexedTransport(MultiplexedConnection connection, MultiplexedTransportFactory transportFactory) {
+      super(transportFactory);
+      this.connection = connection;
+   }
+
+   @Override
+   public void setResponseListener(ResponseListener listener) {
+      this.listener = listener;
+   }
+
+   ResponseListener getResponseListener() {
+      return listener;
+   }
+
+   // ------ request
+
+   @Override
+   public void writeByte(short toWrite) {
+      request.write(toWrite);
+   }
+
+   @Override
+   public void writeVInt(int vInt) {
+      try {
+         writeUnsignedInt(request, vInt);
+      } catch (IOException e) {
+         throw new TransportException(e);
+      }
+   }
+
+   @Override
+   public void writeVLong(long l) {
+      try {
+         writeUnsignedLong(request, l);
+      } catch (IOException e) {
+         throw new TransportException(e);
+      }
+   }
+
+   @Override
+   protected void writeBytes(byte[] toAppend) {
+      request.write(toAppend, 0, toAppend.length);
+   }
+
+   /**
+    * Sends the buffered request. The message id follows the magic byte at the start of every request header.
+    */
+   @Override
+   public void flush() {
+      if (listener == null) throw new IllegalStateException("No listener to hand the response to");
+      byte[] bytes = request.toByteArray();
+      request.reset();
+      messageId = readUnsignedLong(bytes, 1);
+      int soTimeout = getTransportFactory().getSoTimeout();
+      // 0 stands for no time out, as for the socket option
+      deadline = soTimeout > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(soTimeout) : 0;
+      connection.send(this, messageId, bytes);
+      if (trace) log.tracef("Sent message %d (%d bytes) to %s", messageId, bytes.length, connection);
+   }
+
+   // ------ response
+
+   /**
+    * Called by the connection's reader when the response to this request arrives, before the listener reads it
+    */
+   void responseArrived(InputStream response) {
+      this.response = response;
+   }
+
+   /**
+    * Called if the connection fails, or the request times out, before the response arrived
+    */
+   void requestFailed(TransportException e) {
+      listener.requestFailed(e);
+   }
+
+   /**
+    * @return whether the response should have arrived by <code>now</code>, a {@link System#nanoTime()} value
+    */
+   boolean isOverdue(long now) {
+      long deadline = this.deadline;
+      return deadline != 0 && now - deadline > 0;
+   }
+
+   private InputStream response() {
+      if (response == null) throw new IllegalStateException("The response can only be read by the response listener");
+      return response;
+   }
+
+   @Override
+   public short readByte() {
+      int b;
+      try {
+         b = response().read();
+      } catch (IOException e) {
+         throw connection.readFailed(e);
+      }
+      if (b == -1) throw connection.readFailed(new IOException("End of stream reached!"));
+      return (short) b;
+   }
+
+   @Override
+   public int readVInt() {
+      try {
+         return readUnsignedInt(response());
+      } catch (IOException e) {
+         throw connection.readFailed(e);
+      }
+   }
+
+   @Override
+   public long readVLong() {
+      try {
+         return readUnsignedLong(response());
+      } catch (IOException e) {
+         throw connection.readFailed(e);
+      }
+   }
+
+   @Override
+   public byte[] readByteArray(int size) {
+      byte[] result = new byte[size];
+      InputStream in = response();
+      int offset = 0;
+      while (offset < size) {
+         int read;
+         try {
+            read = in.read(result, offset, size - offset);
+         } catch (IOException e) {
+            throw connection.readFailed(e);
+         }
+         if (read == -1) throw connection.readFailed(new IOException("End of stream reached!"));
+         offset += read;
+      }
+      return result;
+   }
+
+   /**
+    * The response is read by the listener, on the connection's reader, so there is nothing to wait for or give back.
+    */
+   @Override
+   public void release() {
+   }
+
+   /**
+    * The connection is shared with other requests, so its stream cannot be dumped.
+    */
+   @Override
+   public byte[] dumpStream() {
+      return new byte[0];
+   }
+
+   @Override
+   public String toString() {
+      return "MultiplexedTransport{" +
+            "connection=" + connection +
+            ", messageId=" + messageId +
+            '}';
+   }
+}
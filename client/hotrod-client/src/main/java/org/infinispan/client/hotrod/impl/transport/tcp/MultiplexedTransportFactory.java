@@ -0,0 +1,378 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.client.hotrod.impl.transport.tcp;
+
+import net.jcip.annotations.ThreadSafe;
+import org.infinispan.client.hotrod.exceptions.TransportException;
+import org.infinispan.client.hotrod.impl.ConfigurationProperties;
+import org.infinispan.client.hotrod.impl.consistenthash.ConsistentHash;
+import org.infinispan.client.hotrod.impl.consistenthash.ConsistentHashFactory;
+import org.infinispan.client.hotrod.impl.operations.PingOperation;
+import org.infinispan.client.hotrod.impl.transport.Transport;
+import org.infinispan.client.hotrod.impl.transport.TransportFactory;
+import org.infinispan.client.hotrod.logging.Log;
+import org.infinispan.util.Util;
+import org.infinispan.util.logging.LogFactory;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A {@link TransportFactory} that, instead of pooling one connection per in-flight request like
+ * {@link TcpTransportFactory}, keeps a small fixed number of {@link MultiplexedConnection}s per server and pipelines all
+ * requests over them. The number of connections per server is configured through
+ * {@link ConfigurationProperties#CONNECTIONS_PER_SERVER}; connections are opened on first use and reopened after they
+ * fail. A single thread periodically closes the connections on which a request has been waiting for its response for
+ * longer than the socket time out.
+ *
+ * @since 5.1
+ */
+@ThreadSafe
+public class MultiplexedTransportFactory implements TransportFactory {
+
+   private static final Log log = LogFactory.getLog(MultiplexedTransportFactory.class, Log.class);
+
+   private final Object lock = new Object();
+   private final Map<SocketAddress, MultiplexedConnection[]> connections = new HashMap<SocketAddress, MultiplexedConnection[]>();
+   private final AtomicInteger nextConnection = new AtomicInteger();
+   private RequestBalancingStrategy balancer;
+   private Collection<SocketAddress> servers;
+   private ConsistentHash consistentHash;
+   private final ConsistentHashFactory hashFactory = new ConsistentHashFactory();
+   private int connectionsPerServer;
+
+   private volatile boolean tcpNoDelay;
+   private volatile int soTimeout;
+   private volatile int connectTimeout;
+   private ScheduledExecutorService timeoutChecker;
+
+   @Override
+   public void start(ConfigurationProperties cfg, Collection<SocketAddress> staticConfiguredServers, AtomicInteger topologyId, ClassLoader classLoader) {
+      boolean pingOnStartup;
+      synchronized (lock) {
+         hashFactory.init(cfg, classLoader);
+         pingOnStartup = cfg.getPingOnStartup();
+         servers = Collections.unmodifiableCollection(new ArrayList<SocketAddress>(staticConfiguredServers));
+         String balancerClass = cfg.getRequestBalancingStrategy();
+         balancer = (RequestBalancingStrategy) Util.getInstance(balancerClass, classLoader);
+         tcpNoDelay = cfg.getTcpNoDelay();
+         soTimeout = cfg.getSoTimeout();
+         connectTimeout = cfg.getConnectTimeout();
+         connectionsPerServer = cfg.getConnectionsPerServer();
+         if (log.isDebugEnabled()) {
+            log.debugf("Statically configured servers: %s", staticConfiguredServers);
+            log.debugf("Load balancer class: %s", balancerClass);
+            log.debugf("Tcp no delay = %b; client socket timeout = %d ms; connect timeout = %d ms; connections per server = %d",
+                       tcpNoDelay, soTimeout, connectTimeout, connectionsPerServer);
+         }
+         balancer.setServers(servers);
+         if (soTimeout > 0) startTimeoutChecker();
+      }
+      if (pingOnStartup) {
+         // also fetches the topology, if the servers are clustered
+         Transport transport = null;
+         try {
+            transport = getTransport();
+            new PingOperation(topologyId, transport).execute();
+         } catch (Exception e) {
+            log.tracef("Ignoring ping request failure during ping on startup: %s", e.getMessage());
+         } finally {
+            if (transport != null) releaseTransport(transport);
+         }
+      }
+   }
+
+   @Override
+   public void destroy() {
+      List<MultiplexedConnection> toClose = new ArrayList<MultiplexedConnection>();
+      synchronized (lock) {
+         if (timeoutChecker != null) {
+            timeoutChecker.shutdownNow();
+            timeoutChecker = null;
+         }
+         for (MultiplexedConnection[] serverConnections : connections.values()) {
+            for (MultiplexedConnection connection : serverConnections) {
+               if (connection != null) toClose.add(connection);
+            }
+         }
+         connections.clear();
+      }
+      closeAll(toClose, "Transport factory stopped");
+   }
+
+   @Override
+   public void updateHashFunction(Map<SocketAddress, Set<Integer>> servers2Hash, int numKeyOwners, short hashFunctionVersion, int hashSpace) {
+      synchronized (lock) {
+         ConsistentHash hash = hashFactory.newConsistentHash(hashFunctionVersion);
+         if (hash == null) {
+            log.noHasHFunctionConfigured(hashFunctionVersion);
+         } else {
+            hash.init(servers2Hash, numKeyOwners, hashSpace);
+         }
+         consistentHash = hash;
+      }
+   }
+
+   @Override
+   public Transport getTransport() {
+      SocketAddress server;
+      synchronized (lock) {
+         server = balancer.nextServer();
+      }
+      return getConnection(server).newTransport();
+   }
+
+   @Override
+   public SocketAddress getServer(byte[] key) {
+      SocketAddress server;
+      synchronized (lock) {
+         if (consistentHash != null) {
+            server = consistentHash.getServer(key);
+            if (log.isTraceEnabled()) {
+               log.tracef("Using consistent hash for determining the server: %s", server);
+            }
+         } else {
+            server = balancer.nextServer();
+            if (log.isTraceEnabled()) {
+               log.tracef("Using the balancer for determining the server: %s", server);
+            }
+         }
+      }
+      return server;
+   }
+
+   @Override
+   public Transport getTransport(byte[] key) {
+      SocketAddress server = getServer(key);
+      return getConnection(server).newTransport();
+   }
+
+   @Override
+   public Transport getTransport(SocketAddress server) {
+      return getConnection(server).newTransport();
+   }
+
+   @Override
+   public void releaseTransport(Transport transport) {
+      transport.release();
+   }
+
+   @Override
+   public void updateServers(Collection<SocketAddress> newServers) {
+      List<MultiplexedConnection> toClose = new ArrayList<MultiplexedConnection>();
+      synchronized (lock) {
+         Set<SocketAddress> failedServers = new HashSet<SocketAddress>(servers);
+         failedServers.removeAll(newServers);
+         if (log.isTraceEnabled()) {
+            log.tracef("Current list: %s", servers);
+            log.tracef("New list: %s", newServers);
+            log.tracef("Removed servers: %s", failedServers);
+         }
+         // connections to the new servers are opened when they are first used
+         balancer.setServers(newServers);
+         for (SocketAddress server : failedServers) {
+            log.removingServer(server);
+            MultiplexedConnection[] serverConnections = connections.remove(server);
+            if (serverConnections != null) {
+               for (MultiplexedConnection connection : serverConnections) {
+                  if (connection != null) toClose.add(connection);
+               }
+            }
+         }
+         servers = Collections.unmodifiableList(new ArrayList<SocketAddress>(newServers));
+      }
+      closeAll(toClose, "Server not in cluster anymore");
+   }
+
+   public Collection<SocketAddress> getServers() {
+      synchronized (lock) {
+         return servers;
+      }
+   }
+
+   /**
+    * Note that the returned <code>ConsistentHash</code> may not be thread-safe.
+    */
+   public ConsistentHash getConsistentHash() {
+      synchronized (lock) {
+         return consistentHash;
+      }
+   }
+
+   /**
+    * Note that the returned <code>RequestBalancingStrategy</code> may not be thread-safe.
+    */
+   public RequestBalancingStrategy getBalancer() {
+      synchronized (lock) {
+         return balancer;
+      }
+   }
+
+   @Override
+   public boolean isTcpNoDelay() {
+      return tcpNoDelay;
+   }
+
+   @Override
+   public int getSoTimeout() {
+      return soTimeout;
+   }
+
+   /**
+    * @return the time, in milliseconds, to wait for a connection to a server to be established
+    */
+   public int getConnectTimeout() {
+      return connectTimeout;
+   }
+
+   /**
+    * Connections are not an upper bound on the number of concurrent requests here, but this is still the number of
+    * different connections a request can be retried on.
+    */
+   @Override
+   public int getTransportCount() {
+      if (Thread.currentThread().isInterrupted()) {
+         return -1;
+      }
+      synchronized (lock) {
+         return Math.max(connectionsPerServer * servers.size(), 1);
+      }
+   }
+
+   public int getConnectionsPerServer() {
+      synchronized (lock) {
+         return connectionsPerServer;
+      }
+   }
+
+   /**
+    * Invoked by a connection once it is closed, so that it is replaced on next use
+    */
+   void connectionClosed(MultiplexedConnection connection) {
+      synchronized (lock) {
+         MultiplexedConnection[] serverConnections = connections.get(connection.getServerAddress());
+         if (serverConnections == null) return;
+         for (int i = 0; i < serverConnections.length; i++) {
+            if (serverConnections[i] == connection) serverConnections[i] = null;
+         }
+      }
+   }
+
+   private MultiplexedConnection getConnection(SocketAddress server) {
+      int index = (nextConnection.getAndIncrement() & Integer.MAX_VALUE) % getConnectionsPerServer();
+      MultiplexedConnection connection = connectionAt(server, index, null);
+      if (connection != null) return connection;
+
+      // connects outside of the lock, so that an unreachable server doesn't hold up the requests to the other servers
+      MultiplexedConnection created = new MultiplexedConnection((InetSocketAddress) server, this);
+      connection = connectionAt(server, index, created);
+      if (connection != created) {
+         // another thread connected first
+         created.close(new TransportException("Connection not needed"));
+      } else if (log.isTraceEnabled()) {
+         log.tracef("Created connection: %s", connection);
+      }
+      return connection;
+   }
+
+   /**
+    * Returns the open connection at the given index of the connections to a server, after installing the given
+    * connection there if there was none.
+    */
+   private MultiplexedConnection connectionAt(SocketAddress server, int index, MultiplexedConnection created) {
+      synchronized (lock) {
+         MultiplexedConnection[] serverConnections = connections.get(server);
+         if (serverConnections == null) {
+            if (created == null) return null;
+            serverConnections = new MultiplexedConnection[connectionsPerServer];
+            connections.put(server, serverConnections);
+         }
+         MultiplexedConnection connection = serverConnections[index];
+         if ((connection == null || connection.isClosed()) && created != null) {
+            serverConnections[index] = created;
+            connection = created;
+         }
+         return connection == null || connection.isClosed() ? null : connection;
+      }
+   }
+
+   /**
+    * Checks the requests in flight a few times per socket time out, so that they fail soon after their time out.
+    */
+   private void startTimeoutChecker() {
+      timeoutChecker = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+         @Override
+         public Thread newThread(Runnable r) {
+            Thread th = new Thread(r, "HotRod-client-timeout-checker");
+            th.setDaemon(true);
+            return th;
+         }
+      });
+      long period = Math.min(Math.max(soTimeout / 10, 10), 1000);
+      timeoutChecker.scheduleWithFixedDelay(new Runnable() {
+         @Override
+         public void run() {
+            failOverdueRequests();
+         }
+      }, period, period, TimeUnit.MILLISECONDS);
+   }
+
+   private void failOverdueRequests() {
+      List<MultiplexedConnection> toCheck = new ArrayList<MultiplexedConnection>();
+      synchronized (lock) {
+         for (MultiplexedConnection[] serverConnections : connections.values()) {
+            for (MultiplexedConnection connection : serverConnections) {
+               if (connection != null) toCheck.add(connection);
+            }
+         }
+      }
+      long now = System.nanoTime();
+      for (MultiplexedConnection connection : toCheck) {
+         try {
+            connection.failOverdueRequests(now);
+         } catch (RuntimeException e) {
+            // a failure must not cancel the periodic check
+            log.tracef(e, "Failed closing connection %s", connection);
+         }
+      }
+   }
+
+   private void closeAll(Collection<MultiplexedConnection> toClose, String reason) {
+      for (MultiplexedConnection connection : toClose) {
+         connection.close(new TransportException(reason));
+      }
+   }
+}
@@ -136,7 +136,7 @@ public class TcpTransportFactory implements TransportFactory {
       return borrowTransportFromPool(server);
    }
 
-   public Transport getTransport(byte[] key) {
+   public SocketAddress getServer(byte[] key) {
       SocketAddress server;
       synchronized (lock) {
          if (consistentHash != null) {
@@ -151,6 +151,17 @@ public class TcpTransportFactory implements TransportFactory {
             }
          }
       }
+      return server;
+   }
+
+   @Override
+   public Transport getTransport(byte[] key) {
+      SocketAddress server = getServer(key);
+      return borrowTransportFromPool(server);
+   }
+
+   @Override
+   public Transport getTransport(SocketAddress server) {
       return borrowTransportFromPool(server);
    }
 
@@ -0,0 +1,122 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.client.hotrod;
+
+import org.infinispan.manager.EmbeddedCacheManager;
+import org.infinispan.server.hotrod.HotRodServer;
+import org.infinispan.test.SingleCacheManagerTest;
+import org.infinispan.test.fwk.TestCacheManagerFactory;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNull;
+
+/**
+ * Tests the operations that read, store or remove several entries with a single request.
+ *
+ * @since 5.1
+ */
+@Test(testName = "client.hotrod.MultiKeyOperationsTest", groups = "functional")
+public class MultiKeyOperationsTest extends SingleCacheManagerTest {
+   private HotRodServer hotRodServer;
+   private RemoteCacheManager remoteCacheManager;
+   private RemoteCache<Object, Object> remoteCache;
+
+   @Override
+   protected EmbeddedCacheManager createCacheManager() throws Exception {
+      cacheManager = TestCacheManagerFactory.createLocalCacheManager();
+      cache = cacheManager.getCache();
+
+      hotRodServer = TestHelper.startHotRodServer(cacheManager);
+
+      Properties hotrodClientConf = new Properties();
+      hotrodClientConf.put("infinispan.client.hotrod.server_list", "localhost:" + hotRodServer.getPort());
+      configureClient(hotrodClientConf);
+      remoteCacheManager = new RemoteCacheManager(hotrodClientConf);
+      remoteCache = remoteCacheManager.getCache();
+      return cacheManager;
+   }
+
+   protected void configureClient(Properties hotrodClientConf) {
+   }
+
+   @AfterClass
+   @Override
+   protected void destroyAfterClass() {
+      super.destroyAfterClass();
+      remoteCacheManager.stop();
+      hotRodServer.stop();
+   }
+
+   public void testPutAllGetAll() {
+      Map<Object, Object> data = new HashMap<Object, Object>();
+      for (int i = 0; i < 50; i++) {
+         data.put("k" + i, "v" + i);
+      }
+      remoteCache.putAll(data);
+      for (int i = 0; i < 50; i++) {
+         assertEquals("v" + i, remoteCache.get("k" + i));
+      }
+
+      Set<Object> keys = new HashSet<Object>(data.keySet());
+      keys.add("missing");
+      Map<Object, Object> found = remoteCache.getAll(keys);
+      assertEquals(data, found);
+      assertFalse(found.containsKey("missing"));
+   }
+
+   public void testRemoveAll() {
+      Map<Object, Object> data = new HashMap<Object, Object>();
+      for (int i = 0; i < 10; i++) {
+         data.put(i, i);
+      }
+      remoteCache.putAll(data);
+      Set<Object> toRemove = new HashSet<Object>();
+      for (int i = 0; i < 5; i++) {
+         toRemove.add(i);
+      }
+      toRemove.add("missing");
+      remoteCache.removeAll(toRemove);
+
+      for (int i = 0; i < 10; i++) {
+         if (i < 5)
+            assertNull(remoteCache.get(i));
+         else
+            assertEquals(i, remoteCache.get(i));
+      }
+   }
+
+   public void testEmptyKeys() {
+      assertEquals(0, remoteCache.getAll(new HashSet<Object>()).size());
+      remoteCache.removeAll(new HashSet<Object>());
+      remoteCache.putAll(new HashMap<Object, Object>());
+   }
+}
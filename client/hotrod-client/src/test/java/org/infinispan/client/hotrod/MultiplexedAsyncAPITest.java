@@ -0,0 +1,116 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.client.hotrod;
+
+import org.infinispan.client.hotrod.exceptions.TransportException;
+import org.infinispan.client.hotrod.impl.ConfigurationProperties;
+import org.infinispan.client.hotrod.impl.async.DefaultAsyncExecutorFactory;
+import org.infinispan.client.hotrod.impl.transport.tcp.MultiplexedTransportFactory;
+import org.infinispan.util.concurrent.FutureListener;
+import org.infinispan.util.concurrent.NotifyingFuture;
+import org.testng.annotations.Test;
+
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static junit.framework.Assert.assertEquals;
+
+/**
+ * Runs the async API tests over the {@link MultiplexedTransportFactory}, which completes async operations as their
+ * responses arrive rather than on a thread per operation, and fails them once the socket time out elapses.
+ *
+ * @since 5.1
+ */
+@Test(groups = "functional", testName = "client.hotrod.MultiplexedAsyncAPITest")
+public class MultiplexedAsyncAPITest extends RemoteAsyncAPITest {
+
+   @Override
+   protected void amendProperties(Properties props) {
+      props.put(ConfigurationProperties.TRANSPORT_FACTORY, MultiplexedTransportFactory.class.getName());
+      props.put(ConfigurationProperties.CONNECTIONS_PER_SERVER, "1");
+   }
+
+   public void testManyPipelinedRequests() throws Exception {
+      List<NotifyingFuture<String>> puts = new ArrayList<NotifyingFuture<String>>();
+      for (int i = 0; i < 200; i++) {
+         puts.add(c.putAsync("pipelined" + i, "v" + i));
+      }
+      for (NotifyingFuture<String> put : puts) put.get();
+
+      List<NotifyingFuture<String>> gets = new ArrayList<NotifyingFuture<String>>();
+      for (int i = 0; i < 200; i++) {
+         gets.add(c.getAsync("pipelined" + i));
+      }
+      for (int i = 0; i < 200; i++) {
+         assertEquals("v" + i, gets.get(i).get());
+         // sync operations share the connection with the async ones
+         assertEquals("v" + i, c.get("pipelined" + i));
+      }
+   }
+
+   public void testListenersDoNotRunOnTheReader() throws Exception {
+      c.put("listened", "v");
+      final AtomicReference<String> listenerThread = new AtomicReference<String>();
+      final CountDownLatch notified = new CountDownLatch(1);
+      c.getAsync("listened").attachListener(new FutureListener<String>() {
+         @Override
+         public void futureDone(Future<String> future) {
+            listenerThread.set(Thread.currentThread().getName());
+            notified.countDown();
+         }
+      });
+      assert notified.await(10, TimeUnit.SECONDS);
+      assert listenerThread.get().startsWith(DefaultAsyncExecutorFactory.THREAD_NAME) : listenerThread.get();
+   }
+
+   public void testAsyncRequestTimesOut() throws Exception {
+      // accepts connections through its backlog, but never answers
+      ServerSocket silentServer = new ServerSocket(0, 10, InetAddress.getByName("127.0.0.1"));
+      Properties props = new Properties();
+      props.put(ConfigurationProperties.SERVER_LIST, "127.0.0.1:" + silentServer.getLocalPort());
+      props.put(ConfigurationProperties.TRANSPORT_FACTORY, MultiplexedTransportFactory.class.getName());
+      props.put(ConfigurationProperties.SO_TIMEOUT, "500");
+      props.put(ConfigurationProperties.PING_ON_STARTUP, "false");
+      RemoteCacheManager silentRcm = new RemoteCacheManager(props);
+      try {
+         NotifyingFuture<String> get = silentRcm.<String, String>getCache().getAsync("k");
+         try {
+            get.get(30, TimeUnit.SECONDS);
+            assert false : "The request should have timed out";
+         } catch (ExecutionException e) {
+            assert e.getCause() instanceof TransportException : e.getCause();
+         }
+      } finally {
+         silentRcm.stop();
+         silentServer.close();
+      }
+   }
+}
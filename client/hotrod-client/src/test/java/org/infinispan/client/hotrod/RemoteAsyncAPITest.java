@@ -44,7 +44,7 @@ import static junit.framework.Assert.assertEquals;
 public class RemoteAsyncAPITest extends SingleCacheManagerTest {
    private HotRodServer hotrodServer;
    private RemoteCacheManager rcm;
-   private RemoteCache<String, String> c;
+   protected RemoteCache<String, String> c;
 
    @Override
    protected EmbeddedCacheManager createCacheManager() throws Exception {
@@ -55,11 +55,15 @@ public class RemoteAsyncAPITest extends SingleCacheManagerTest {
       props.put("infinispan.client.hotrod.server_list", "127.0.0.1:" + hotrodServer.getPort());
       props.put("infinispan.client.hotrod.force_return_values","true");
       props.put("testOnBorrow", "false");
+      amendProperties(props);
       rcm = new RemoteCacheManager(props);
       c = rcm.getCache(true);
       return cm;
    }
 
+   protected void amendProperties(Properties props) {
+   }
+
    @AfterClass
    @Override
    protected void destroyAfterClass() {
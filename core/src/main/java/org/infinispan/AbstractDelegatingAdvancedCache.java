@@ -30,7 +30,9 @@ import org.infinispan.distribution.DistributionManager;
 import org.infinispan.eviction.EvictionManager;
 import org.infinispan.factories.ComponentRegistry;
 import org.infinispan.interceptors.base.CommandInterceptor;
+import org.infinispan.notifications.KeyValueFilter;
 import org.infinispan.remoting.rpc.RpcManager;
+import org.infinispan.util.concurrent.NotifyingFuture;
 import org.infinispan.util.concurrent.locks.LockManager;
 import org.infinispan.stats.Stats;
 
@@ -38,6 +40,7 @@ import javax.transaction.TransactionManager;
 import javax.transaction.xa.XAResource;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Similar to {@link org.infinispan.AbstractDelegatingCache}, but for {@link AdvancedCache}.
@@ -149,6 +152,16 @@ public abstract class AbstractDelegatingAdvancedCache<K, V> extends AbstractDele
    public boolean lock(Collection<? extends K> keys) {
       return cache.lock(keys);
    }
+
+   @Override
+   public Map<K, V> getAll(Collection<? extends K> keys) {
+      return cache.getAll(keys);
+   }
+
+   @Override
+   public NotifyingFuture<Map<K, V>> getAllAsync(Collection<? extends K> keys) {
+      return cache.getAllAsync(keys);
+   }
    
    @Override
    public Stats getStats() {
@@ -164,4 +177,9 @@ public abstract class AbstractDelegatingAdvancedCache<K, V> extends AbstractDele
    public AdvancedCache<K, V> with(ClassLoader classLoader) {
       return cache.with(classLoader);
    }
+
+   @Override
+   public void addListener(Object listener, KeyValueFilter<? super K, ? super V> filter) {
+      cache.addListener(listener, filter);
+   }
 }
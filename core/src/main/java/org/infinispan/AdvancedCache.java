@@ -30,14 +30,17 @@ import org.infinispan.distribution.DistributionManager;
 import org.infinispan.eviction.EvictionManager;
 import org.infinispan.factories.ComponentRegistry;
 import org.infinispan.interceptors.base.CommandInterceptor;
+import org.infinispan.notifications.KeyValueFilter;
 import org.infinispan.remoting.rpc.RpcManager;
 import org.infinispan.stats.Stats;
+import org.infinispan.util.concurrent.NotifyingFuture;
 import org.infinispan.util.concurrent.locks.LockManager;
 
 import javax.transaction.TransactionManager;
 import javax.transaction.xa.XAResource;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 /**
  * An advanced interface that exposes additional methods not available on {@link Cache}.
@@ -238,4 +241,39 @@ public interface AdvancedCache<K, V> extends Cache<K, V> {
     * with a particular cache loader.
     */
    AdvancedCache<K, V> with(ClassLoader classLoader);
+
+   /**
+    * Retrieves the values mapped to several keys in a single invocation.  This is equivalent to calling {@link
+    * #get(Object)} for each key, except that the keys are looked up with a single pass through the interceptor chain,
+    * bulk loaded from any configured cache loader, and - in distributed mode - keys not present locally are retrieved
+    * with a single remote call per owning node, with all owners being queried in parallel.
+    *
+    * @param keys keys to retrieve, none of which may be null
+    * @return a map containing the keys that are mapped to a value, along with their values.  Keys that are not mapped
+    *         are not present in the returned map.
+    */
+   Map<K, V> getAll(Collection<? extends K> keys);
+
+   /**
+    * Asynchronous version of {@link #getAll(java.util.Collection)}.  As with {@link #getAsync(Object)}, the call is
+    * executed on the calling thread, and the returned future is already complete, when all the keys can be read
+    * locally.
+    *
+    * @param keys keys to retrieve, none of which may be null
+    * @return a future containing the keys that are mapped to a value, along with their values
+    */
+   NotifyingFuture<Map<K, V>> getAllAsync(Collection<? extends K> keys);
+
+   /**
+    * Adds a listener which is only notified of the events concerning the cache entries accepted by the given filter.
+    * The filter is evaluated before the events are created, so listeners interested in a few keys only do not cause
+    * events to be built for every modification of the cache.  Events that do not concern entries, such as transaction
+    * or topology events, are not filtered.
+    * <p/>
+    * As with {@link #addListener(Object)}, the listener is removed using {@link #removeListener(Object)}.
+    *
+    * @param listener listener to add, must not be null
+    * @param filter filter to apply, or null to notify the listener of all events
+    */
+   void addListener(Object listener, KeyValueFilter<? super K, ? super V> filter);
 }
@@ -27,6 +27,7 @@ import org.infinispan.commands.CommandsFactory;
 import org.infinispan.commands.control.LockControlCommand;
 import org.infinispan.commands.read.EntrySetCommand;
 import org.infinispan.commands.read.GetKeyValueCommand;
+import org.infinispan.commands.read.GetManyCommand;
 import org.infinispan.commands.read.KeySetCommand;
 import org.infinispan.commands.read.SizeCommand;
 import org.infinispan.commands.read.ValuesCommand;
@@ -60,6 +61,7 @@ import org.infinispan.manager.CacheContainer;
 import org.infinispan.manager.EmbeddedCacheManager;
 import org.infinispan.marshall.MarshalledValue;
 import org.infinispan.marshall.StreamingMarshaller;
+import org.infinispan.notifications.KeyValueFilter;
 import org.infinispan.notifications.cachelistener.CacheNotifier;
 import org.infinispan.remoting.responses.ResponseGenerator;
 import org.infinispan.remoting.rpc.RpcManager;
@@ -243,6 +245,14 @@ public class CacheImpl<K, V> extends CacheSupport<K,V> implements AdvancedCache<
       return (V) invoker.invoke(ctx, command);
    }
 
+   @SuppressWarnings("unchecked")
+   public final Map<K, V> getAll(Collection<? extends K> keys) {
+      for (K key : keys) assertKeyNotNull(key);
+      InvocationContext ctx = getInvocationContext(false);
+      GetManyCommand command = commandsFactory.buildGetManyCommand(keys, ctx.getFlags());
+      return (Map<K, V>) invoker.invoke(ctx, command);
+   }
+
    @SuppressWarnings("unchecked")
    public final V remove(Object key) {
       assertKeyNotNull(key);
@@ -322,6 +332,10 @@ public class CacheImpl<K, V> extends CacheSupport<K,V> implements AdvancedCache<
       notifier.addListener(listener);
    }
 
+   public void addListener(Object listener, KeyValueFilter<? super K, ? super V> filter) {
+      notifier.addListener(listener, filter);
+   }
+
    public void removeListener(Object listener) {
       notifier.removeListener(listener);
    }
@@ -508,7 +522,7 @@ public class CacheImpl<K, V> extends CacheSupport<K,V> implements AdvancedCache<
    }
 
    public Stats getStats() {
-      return new StatsImpl(invoker);
+      return new StatsImpl(invoker, rpcManager);
    }
 
    @Override
@@ -684,6 +698,51 @@ public class CacheImpl<K, V> extends CacheSupport<K,V> implements AdvancedCache<
       }
    }
 
+   @Override
+   public NotifyingFuture<Map<K, V>> getAllAsync(final Collection<? extends K> keys) {
+      for (K key : keys) assertKeyNotNull(key);
+      final Transaction tx = getOngoingTransaction();
+      final NotifyingNotifiableFuture f = new DeferredReturnFuture();
+      final EnumSet<Flag> flags = flagHolder.get() == null ? null : flagHolder.get().flags;
+
+      // Same as getAsync: no thread is needed if all the keys can be read locally
+      if (asyncSkipsThread(flags, keys)) {
+         return wrapInFuture(getAll(keys));
+      } else {
+         // Make sure the flags are cleared
+         final EnumSet<Flag> appliedFlags;
+         if (flags == null) {
+            appliedFlags = null;
+         }
+         else {
+            appliedFlags = flags.clone();
+            flags.clear();
+         }
+         Callable<Map<K, V>> c = new Callable<Map<K, V>>() {
+            @Override
+            public Map<K, V> call() throws Exception {
+               InvocationContext ctx = getInvocationContext(tx);
+               if (appliedFlags != null)
+                  ctx.setFlags(appliedFlags);
+
+               GetManyCommand command = commandsFactory.buildGetManyCommand(keys, appliedFlags);
+               Object ret = invoker.invoke(ctx, command);
+               f.notifyDone();
+               return (Map<K, V>) ret;
+            }
+         };
+         f.setNetworkFuture(asyncExecutor.submit(c));
+         return f;
+      }
+   }
+
+   private boolean asyncSkipsThread(EnumSet<Flag> flags, Collection<? extends K> keys) {
+      for (K key : keys) {
+         if (!asyncSkipsThread(flags, key)) return false;
+      }
+      return true;
+   }
+
    /**
     * Encodes the cases for an asyncGet operation in which it makes sense to actually
     * perform the operation in sync.
@@ -29,6 +29,7 @@ import org.infinispan.context.InvocationContextContainer;
 import org.infinispan.marshall.AbstractExternalizer;
 import org.infinispan.marshall.Ids;
 import org.infinispan.util.FastCopyHashMap;
+import org.infinispan.util.HashTrieMap;
 import org.infinispan.util.Util;
 
 import java.io.IOException;
@@ -50,6 +51,9 @@ import java.util.Set;
  * Note that for replication to work properly, AtomicHashMap updates <b><i>must always</i></b> take place within the
  * scope of an ongoing JTA transaction or batch (see {@link Cache#startBatch()}).
  * <p/>
+ * Entries are held in a {@link HashTrieMap}, so that the copy each transaction writes to only costs copying the paths
+ * to the entries it modifies, rather than the whole map.
+ * <p/>
  *
  * @author (various)
  * @param <K> the type of keys maintained by this map
@@ -60,7 +64,7 @@ import java.util.Set;
  */
 @NotThreadSafe
 public class AtomicHashMap<K, V> implements AtomicMap<K, V>, DeltaAware, Cloneable {
-   FastCopyHashMap<K, V> delegate;
+   HashTrieMap<K, V> delegate;
    private AtomicHashMapDelta delta = null;
    private volatile AtomicHashMapProxy<K, V> proxy;
    volatile boolean copied = false;
@@ -79,10 +83,10 @@ public class AtomicHashMap<K, V> implements AtomicMap<K, V>, DeltaAware, Cloneab
    }
 
    public AtomicHashMap() {
-      delegate = new FastCopyHashMap<K, V>();
+      delegate = new HashTrieMap<K, V>();
    }
 
-   private AtomicHashMap(FastCopyHashMap<K, V> delegate) {
+   private AtomicHashMap(HashTrieMap<K, V> delegate) {
       this.delegate = delegate;
    }
 
@@ -148,10 +152,8 @@ public class AtomicHashMap<K, V> implements AtomicMap<K, V>, DeltaAware, Cloneab
       for (Entry<? extends K, ? extends V> e : t.entrySet()) put(e.getKey(), e.getValue());
    }
 
-   @SuppressWarnings("unchecked")
    public void clear() {
-      FastCopyHashMap<K, V> originalEntries = (FastCopyHashMap<K, V>) delegate.clone();
-      ClearOperation<K, V> op = new ClearOperation<K, V>(originalEntries);
+      ClearOperation<K, V> op = new ClearOperation<K, V>(delegate.clone());
       if (delta != null) delta.addOperation(op);
       delegate.clear();
    }
@@ -187,7 +189,7 @@ public class AtomicHashMap<K, V> implements AtomicMap<K, V>, DeltaAware, Cloneab
    public AtomicHashMap<K, V> copyForWrite() {
       try {
          AtomicHashMap<K, V> clone = (AtomicHashMap<K, V>) super.clone();
-         clone.delegate = (FastCopyHashMap<K, V>) delegate.clone();
+         clone.delegate = delegate.clone();
          clone.proxy = proxy;
          clone.copied = true;
          return clone;
@@ -222,14 +224,15 @@ public class AtomicHashMap<K, V> implements AtomicMap<K, V>, DeltaAware, Cloneab
    public static class Externalizer extends AbstractExternalizer<AtomicHashMap> {
       @Override
       public void writeObject(ObjectOutput output, AtomicHashMap map) throws IOException {
-         output.writeObject(map.delegate);
+         // written as a FastCopyHashMap, as it always was, so that the wire format does not change
+         output.writeObject(new FastCopyHashMap<Object, Object>(map.delegate));
       }
 
       @Override
       @SuppressWarnings("unchecked")
       public AtomicHashMap readObject(ObjectInput input) throws IOException, ClassNotFoundException {
-         FastCopyHashMap delegate = (FastCopyHashMap) input.readObject();
-         return new AtomicHashMap(delegate);
+         Map delegate = (Map) input.readObject();
+         return new AtomicHashMap(new HashTrieMap(delegate));
       }
 
       @Override
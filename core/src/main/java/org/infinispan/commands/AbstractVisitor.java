@@ -26,6 +26,7 @@ import org.infinispan.commands.control.LockControlCommand;
 import org.infinispan.commands.read.DistributedExecuteCommand;
 import org.infinispan.commands.read.EntrySetCommand;
 import org.infinispan.commands.read.GetKeyValueCommand;
+import org.infinispan.commands.read.GetManyCommand;
 import org.infinispan.commands.read.KeySetCommand;
 import org.infinispan.commands.read.SizeCommand;
 import org.infinispan.commands.read.ValuesCommand;
@@ -90,6 +91,10 @@ public abstract class AbstractVisitor implements Visitor {
       return handleDefault(ctx, command);
    }
 
+   public Object visitGetManyCommand(InvocationContext ctx, GetManyCommand command) throws Throwable {
+      return handleDefault(ctx, command);
+   }
+
    public Object visitKeySetCommand(InvocationContext ctx, KeySetCommand command) throws Throwable {
       return handleDefault(ctx, command);
    }
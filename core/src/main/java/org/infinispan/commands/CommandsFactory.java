@@ -28,10 +28,12 @@ import org.infinispan.commands.control.StateTransferControlCommand;
 import org.infinispan.commands.read.DistributedExecuteCommand;
 import org.infinispan.commands.read.EntrySetCommand;
 import org.infinispan.commands.read.GetKeyValueCommand;
+import org.infinispan.commands.read.GetManyCommand;
 import org.infinispan.commands.read.KeySetCommand;
 import org.infinispan.commands.read.MapReduceCommand;
 import org.infinispan.commands.read.SizeCommand;
 import org.infinispan.commands.read.ValuesCommand;
+import org.infinispan.commands.remote.ClusteredGetAllCommand;
 import org.infinispan.commands.remote.ClusteredGetCommand;
 import org.infinispan.commands.remote.recovery.CompleteTransactionCommand;
 import org.infinispan.commands.remote.recovery.GetInDoubtTransactionsCommand;
@@ -145,6 +147,13 @@ public interface CommandsFactory {
     */
    GetKeyValueCommand buildGetKeyValueCommand(Object key, Set<Flag> flags);
 
+   /**
+    * Builds a GetManyCommand
+    * @param keys keys to get
+    * @return a GetManyCommand
+    */
+   GetManyCommand buildGetManyCommand(Collection<?> keys, Set<Flag> flags);
+
    /**
     * Builds a KeySetCommand
     * @return a KeySetCommand
@@ -249,6 +258,13 @@ public interface CommandsFactory {
     */
    ClusteredGetCommand buildClusteredGetCommand(Object key, Set<Flag> flags);
 
+   /**
+    * Builds a ClusteredGetAllCommand, which is a remote lookup command for several keys owned by the same node
+    * @param keys keys to look up
+    * @return a ClusteredGetAllCommand
+    */
+   ClusteredGetAllCommand buildClusteredGetAllCommand(Collection<Object> keys, Set<Flag> flags);
+
    /**
     * Builds a LockControlCommand to control explicit remote locking
     * @param keys keys to lock
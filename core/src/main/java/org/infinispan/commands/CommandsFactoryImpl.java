@@ -30,10 +30,12 @@ import org.infinispan.commands.module.ModuleCommandInitializer;
 import org.infinispan.commands.read.DistributedExecuteCommand;
 import org.infinispan.commands.read.EntrySetCommand;
 import org.infinispan.commands.read.GetKeyValueCommand;
+import org.infinispan.commands.read.GetManyCommand;
 import org.infinispan.commands.read.KeySetCommand;
 import org.infinispan.commands.read.MapReduceCommand;
 import org.infinispan.commands.read.SizeCommand;
 import org.infinispan.commands.read.ValuesCommand;
+import org.infinispan.commands.remote.ClusteredGetAllCommand;
 import org.infinispan.commands.remote.ClusteredGetCommand;
 import org.infinispan.commands.remote.recovery.CompleteTransactionCommand;
 import org.infinispan.commands.remote.recovery.GetInDoubtTransactionsCommand;
@@ -195,6 +197,10 @@ public class CommandsFactoryImpl implements CommandsFactory {
       return new GetKeyValueCommand(key, notifier, flags);
    }
 
+   public GetManyCommand buildGetManyCommand(Collection<?> keys, Set<Flag> flags) {
+      return new GetManyCommand(keys, notifier, flags);
+   }
+
    public PutMapCommand buildPutMapCommand(Map map, long lifespan, long maxIdleTimeMillis, Set<Flag> flags) {
       return new PutMapCommand(map, notifier, lifespan, maxIdleTimeMillis, flags);
    }
@@ -241,6 +247,10 @@ public class CommandsFactoryImpl implements CommandsFactory {
       return new ClusteredGetCommand(key, cacheName, flags);
    }
 
+   public ClusteredGetAllCommand buildClusteredGetAllCommand(Collection<Object> keys, Set<Flag> flags) {
+      return new ClusteredGetAllCommand(keys, cacheName, flags);
+   }
+
    /**
     * @param isRemote true if the command is deserialized and is executed remote.
     */
@@ -311,6 +321,10 @@ public class CommandsFactoryImpl implements CommandsFactory {
             ClusteredGetCommand clusteredGetCommand = (ClusteredGetCommand) c;
             clusteredGetCommand.initialize(icc, this, interceptorChain, distributionManager);
             break;
+         case ClusteredGetAllCommand.COMMAND_ID:
+            ClusteredGetAllCommand clusteredGetAllCommand = (ClusteredGetAllCommand) c;
+            clusteredGetAllCommand.initialize(icc, this, interceptorChain, distributionManager);
+            break;
          case LockControlCommand.COMMAND_ID:
             LockControlCommand lcc = (LockControlCommand) c;
             lcc.init(interceptorChain, icc, txTable);
@@ -30,6 +30,7 @@ import org.infinispan.commands.module.ModuleCommandFactory;
 import org.infinispan.commands.read.DistributedExecuteCommand;
 import org.infinispan.commands.read.GetKeyValueCommand;
 import org.infinispan.commands.read.MapReduceCommand;
+import org.infinispan.commands.remote.ClusteredGetAllCommand;
 import org.infinispan.commands.remote.ClusteredGetCommand;
 import org.infinispan.commands.remote.recovery.CompleteTransactionCommand;
 import org.infinispan.commands.remote.recovery.GetInDoubtTxInfoCommand;
@@ -153,6 +154,9 @@ public class RemoteCommandsFactory {
             case ClusteredGetCommand.COMMAND_ID:
                command = new ClusteredGetCommand();
                break;
+            case ClusteredGetAllCommand.COMMAND_ID:
+               command = new ClusteredGetAllCommand();
+               break;
             case RehashControlCommand.COMMAND_ID:
                command = new RehashControlCommand(transport);
                break;
@@ -0,0 +1,131 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.commands.read;
+
+import org.infinispan.commands.FlagAffectedCommand;
+import org.infinispan.commands.VisitableCommand;
+import org.infinispan.commands.Visitor;
+import org.infinispan.container.entries.CacheEntry;
+import org.infinispan.context.Flag;
+import org.infinispan.context.InvocationContext;
+import org.infinispan.notifications.cachelistener.CacheNotifier;
+import org.infinispan.util.logging.Log;
+import org.infinispan.util.logging.LogFactory;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Implements functionality defined by {@link org.infinispan.AdvancedCache#getAll(java.util.Collection)}, looking up
+ * several keys in a single pass through the interceptor chain.
+ * <p/>
+ * The result of {@link #perform(InvocationContext)} is a mutable map holding an entry for each key that was found;
+ * keys that are not mapped are simply absent from the map.
+ *
+ * @since 5.1
+ */
+public class GetManyCommand extends AbstractLocalCommand implements VisitableCommand, FlagAffectedCommand {
+   private static final Log log = LogFactory.getLog(GetManyCommand.class);
+   private static final boolean trace = log.isTraceEnabled();
+
+   private Collection<?> keys;
+   private Set<Flag> flags;
+   private final CacheNotifier notifier;
+   private boolean returnCacheEntries;
+
+   public GetManyCommand(Collection<?> keys, CacheNotifier notifier, Set<Flag> flags) {
+      this.keys = keys;
+      this.notifier = notifier;
+      this.flags = flags;
+   }
+
+   @Override
+   public Object acceptVisitor(InvocationContext ctx, Visitor visitor) throws Throwable {
+      return visitor.visitGetManyCommand(ctx, this);
+   }
+
+   /**
+    * Will make this method to return {@link CacheEntry} instances instead of the corresponding values associated with
+    * the keys.
+    */
+   public void setReturnCacheEntries(boolean returnCacheEntries) {
+      this.returnCacheEntries = returnCacheEntries;
+   }
+
+   public boolean isReturnCacheEntries() {
+      return returnCacheEntries;
+   }
+
+   @Override
+   public Map<Object, Object> perform(InvocationContext ctx) throws Throwable {
+      Map<Object, Object> result = new HashMap<Object, Object>(keys.size());
+      for (Object key : keys) {
+         CacheEntry entry = ctx.lookupEntry(key);
+         if (entry == null || entry.isNull() || entry.isRemoved()) {
+            if (trace) log.tracef("Entry for key %s not found", key);
+            continue;
+         }
+         final Object value = entry.getValue();
+         notifier.notifyCacheEntryVisited(key, value, true, ctx);
+         result.put(key, returnCacheEntries ? entry : value);
+         notifier.notifyCacheEntryVisited(key, value, false, ctx);
+      }
+      if (trace) log.tracef("Found %d of %d keys", result.size(), keys.size());
+      return result;
+   }
+
+   public Collection<?> getKeys() {
+      return keys;
+   }
+
+   public void setKeys(Collection<?> keys) {
+      this.keys = keys;
+   }
+
+   @Override
+   public Set<Flag> getFlags() {
+      return flags;
+   }
+
+   @Override
+   public void setFlags(Set<Flag> flags) {
+      this.flags = flags;
+   }
+
+   @Override
+   public boolean shouldInvoke(InvocationContext ctx) {
+      return true;
+   }
+
+   @Override
+   public String toString() {
+      return new StringBuilder()
+         .append("GetManyCommand{keys=")
+         .append(keys)
+         .append(", flags=").append(flags)
+         .append("}")
+         .toString();
+   }
+}
@@ -66,6 +66,8 @@ public class ClusteredGetCommand extends BaseRpcCommand implements FlagAffectedC
 
    private DistributionManager distributionManager;
 
+   private boolean affectedByRehash;
+
    public ClusteredGetCommand() {
    }
 
@@ -94,7 +96,11 @@ public class ClusteredGetCommand extends BaseRpcCommand implements FlagAffectedC
     * @return returns an <code>CacheEntry</code> or null, if no entry is found.
     */
    public InternalCacheValue perform(InvocationContext context) throws Throwable {
-      if (distributionManager != null && distributionManager.isAffectedByRehash(key)) return null;
+      if (distributionManager != null && distributionManager.isAffectedByRehash(key)) {
+         // remembered so that the response is an UnsureResponse even if the rehash completes before it is generated
+         affectedByRehash = true;
+         return null;
+      }
       // make sure the get command doesn't perform a remote call
       // as our caller is already calling the ClusteredGetCommand on all the relevant nodes
       Set<Flag> commandFlags = EnumSet.of(Flag.SKIP_REMOTE_LOOKUP);
@@ -169,6 +175,13 @@ public class ClusteredGetCommand extends BaseRpcCommand implements FlagAffectedC
       return key;
    }
 
+   /**
+    * @return true if {@link #perform(InvocationContext)} did not look the key up because it was affected by a rehash
+    */
+   public boolean isAffectedByRehash() {
+      return affectedByRehash;
+   }
+
    @Override
    public Set<Flag> getFlags() {
       return flags;
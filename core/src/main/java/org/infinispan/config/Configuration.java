@@ -313,6 +313,47 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
       return clustering.hash.rehashRpcTimeout;
    }
 
+   /**
+    * Maximum number of entries pushed to another node in a single chunk of state when rehashing
+    */
+   public int getRehashChunkSize() {
+      return clustering.hash.rehashChunkSize;
+   }
+
+   /**
+    * Maximum estimated size, in bytes, of a single chunk of state pushed to another node when rehashing, or -1 if
+    * chunks are only bounded by their number of entries
+    */
+   public long getRehashChunkMaxBytes() {
+      return clustering.hash.rehashChunkMaxBytes;
+   }
+
+   /**
+    * Maximum number of chunks of state that may be pushed to the same node, without having been applied, at any time
+    * when rehashing
+    */
+   public int getRehashMaxChunksInFlight() {
+      return clustering.hash.rehashMaxChunksInFlight;
+   }
+
+   /**
+    * Number of fixed hash segments the data container of a distributed cache is partitioned into, so that a rehash
+    * only needs to visit the segments whose owners changed. 0 means the data container is not partitioned.
+    */
+   public int getNumHashSegments() {
+      return clustering.hash.numSegments;
+   }
+
+   /**
+    * Delay, in milliseconds, after which a remote get sent to the best owner of a key is also sent to the other owners,
+    * if the best owner has not answered yet.  The best owner is picked by topology and by observed response times.
+    * Remote gets are sent to the other owners straight away if the best owner fails or does not have the entry.  0 means
+    * that remote gets are sent to all owners at once.
+    */
+   public long getRemoteGetStaggerDelay() {
+      return clustering.hash.remoteGetStaggerDelay;
+   }
+
    public boolean isWriteSkewCheck() {
       return locking.writeSkewCheck;
    }
@@ -636,6 +677,14 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
       this.eviction.setMaxEntries(evictionMaxEntries);
    }
 
+   /**
+    * Maximum estimated memory size, in bytes, of the entries in a cache instance, or -1 if the cache is only bounded by
+    * its number of entries.
+    */
+   public long getEvictionMaxMemorySize() {
+      return eviction.maxMemorySize;
+   }
+
    /**
     * Expiration lifespan, in milliseconds
     */
@@ -1269,6 +1318,23 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
       return clustering.l1.onRehash;
    }
 
+   /**
+    * Maximum number of entries held in L1.  If greater than 0, L1 entries are kept apart from the entries owned by this
+    * node, so that they do not count against the {@link #getEvictionMaxEntries() eviction} limit of the cache, and are
+    * evicted according to {@link #getL1EvictionStrategy()}.  Otherwise, L1 entries are held together with the owned
+    * entries.
+    */
+   public int getL1MaxEntries() {
+      return clustering.l1.maxEntries;
+   }
+
+   /**
+    * Eviction strategy of L1, used if {@link #getL1MaxEntries()} is greater than 0
+    */
+   public EvictionStrategy getL1EvictionStrategy() {
+      return clustering.l1.evictionStrategy;
+   }
+
    public String getConsistentHashClass() {
       if (clustering.hash.consistentHashClass == null) {
          clustering.hash.consistentHashClass = globalConfiguration == null || globalConfiguration.hasTopologyInfo() ? TopologyAwareConsistentHash.class.getName() : DefaultConsistentHash.class.getName();
@@ -2620,6 +2686,9 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
       @ConfigurationDocRef(bean = Configuration.class, targetElement = "setEvictionThreadPolicy")
       protected EvictionThreadPolicy threadPolicy = EvictionThreadPolicy.DEFAULT;
 
+      @ConfigurationDocRef(bean = Configuration.class, targetElement = "getEvictionMaxMemorySize")
+      protected Long maxMemorySize = -1L;
+
       public void accept(ConfigurationBeanVisitor v) {
          v.visitEvictionType(this);
       }
@@ -2705,6 +2774,26 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
          return this;
       }
 
+      @XmlAttribute
+      public Long getMaxMemorySize() {
+         return maxMemorySize;
+      }
+
+      /**
+       * @deprecated The visibility of this will be reduced, use {@link #maxMemorySize(Long)}
+       */
+      @Deprecated
+      public void setMaxMemorySize(Long maxMemorySize) {
+         testImmutability("maxMemorySize");
+         this.maxMemorySize = maxMemorySize;
+      }
+
+      @Override
+      public EvictionConfig maxMemorySize(Long maxMemorySize) {
+         setMaxMemorySize(maxMemorySize);
+         return this;
+      }
+
       @Override
       protected EvictionType setConfiguration(Configuration config) {
          super.setConfiguration(config);
@@ -2719,6 +2808,7 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
          EvictionType that = (EvictionType) o;
 
          if (maxEntries != null ? !maxEntries.equals(that.maxEntries) : that.maxEntries != null) return false;
+         if (maxMemorySize != null ? !maxMemorySize.equals(that.maxMemorySize) : that.maxMemorySize != null) return false;
          if (strategy != that.strategy) return false;
          if (threadPolicy != that.threadPolicy) return false;
 
@@ -2730,6 +2820,7 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
          int result = strategy != null ? strategy.hashCode() : 0;
          result = 31 * result + (threadPolicy != null ? threadPolicy.hashCode() : 0);
          result = 31 * result + (maxEntries != null ? maxEntries.hashCode() : 0);
+         result = 31 * result + (maxMemorySize != null ? maxMemorySize.hashCode() : 0);
          return result;
       }
    }
@@ -3176,6 +3267,21 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
 
       @ConfigurationDocRef(bean = Configuration.class, targetElement = "setRehashEnabled")
       protected Boolean rehashEnabled = true;
+
+      @ConfigurationDocRef(bean = Configuration.class, targetElement = "getRehashChunkSize")
+      protected Integer rehashChunkSize = 1000;
+
+      @ConfigurationDocRef(bean = Configuration.class, targetElement = "getRehashChunkMaxBytes")
+      protected Long rehashChunkMaxBytes = 4L * 1024 * 1024;
+
+      @ConfigurationDocRef(bean = Configuration.class, targetElement = "getRehashMaxChunksInFlight")
+      protected Integer rehashMaxChunksInFlight = 2;
+
+      @ConfigurationDocRef(bean = Configuration.class, targetElement = "getNumHashSegments")
+      protected Integer numSegments = 0;
+
+      @ConfigurationDocRef(bean = Configuration.class, targetElement = "getRemoteGetStaggerDelay")
+      protected Long remoteGetStaggerDelay = 0L;
       
       @ConfigurationDocRef(bean = HashConfig.class, targetElement = "numVirtualNodes")
       protected Integer numVirtualNodes = 1;
@@ -3332,6 +3438,111 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
          setRehashEnabled(rehashEnabled);
          return this;
       }
+
+
+      @XmlAttribute
+      public Integer getRehashChunkSize() {
+         return rehashChunkSize;
+      }
+
+      /**
+       * @deprecated The visibility of this will be reduced, use {@link #rehashChunkSize(Integer)}
+       */
+      @Deprecated
+      public void setRehashChunkSize(Integer rehashChunkSize) {
+         testImmutability("rehashChunkSize");
+         this.rehashChunkSize = rehashChunkSize;
+      }
+
+      @Override
+      public HashConfig rehashChunkSize(Integer rehashChunkSize) {
+         setRehashChunkSize(rehashChunkSize);
+         return this;
+      }
+
+
+      @XmlAttribute
+      public Long getRehashChunkMaxBytes() {
+         return rehashChunkMaxBytes;
+      }
+
+      /**
+       * @deprecated The visibility of this will be reduced, use {@link #rehashChunkMaxBytes(Long)}
+       */
+      @Deprecated
+      public void setRehashChunkMaxBytes(Long rehashChunkMaxBytes) {
+         testImmutability("rehashChunkMaxBytes");
+         this.rehashChunkMaxBytes = rehashChunkMaxBytes;
+      }
+
+      @Override
+      public HashConfig rehashChunkMaxBytes(Long rehashChunkMaxBytes) {
+         setRehashChunkMaxBytes(rehashChunkMaxBytes);
+         return this;
+      }
+
+
+      @XmlAttribute
+      public Integer getRehashMaxChunksInFlight() {
+         return rehashMaxChunksInFlight;
+      }
+
+      /**
+       * @deprecated The visibility of this will be reduced, use {@link #rehashMaxChunksInFlight(Integer)}
+       */
+      @Deprecated
+      public void setRehashMaxChunksInFlight(Integer rehashMaxChunksInFlight) {
+         testImmutability("rehashMaxChunksInFlight");
+         this.rehashMaxChunksInFlight = rehashMaxChunksInFlight;
+      }
+
+      @Override
+      public HashConfig rehashMaxChunksInFlight(Integer rehashMaxChunksInFlight) {
+         setRehashMaxChunksInFlight(rehashMaxChunksInFlight);
+         return this;
+      }
+
+
+      @XmlAttribute
+      public Integer getNumSegments() {
+         return numSegments;
+      }
+
+      /**
+       * @deprecated The visibility of this will be reduced, use {@link #numSegments(Integer)}
+       */
+      @Deprecated
+      public void setNumSegments(Integer numSegments) {
+         testImmutability("numSegments");
+         this.numSegments = numSegments;
+      }
+
+      @Override
+      public HashConfig numSegments(Integer numSegments) {
+         setNumSegments(numSegments);
+         return this;
+      }
+
+
+      @XmlAttribute
+      public Long getRemoteGetStaggerDelay() {
+         return remoteGetStaggerDelay;
+      }
+
+      /**
+       * @deprecated The visibility of this will be reduced, use {@link #remoteGetStaggerDelay(Long)}
+       */
+      @Deprecated
+      public void setRemoteGetStaggerDelay(Long remoteGetStaggerDelay) {
+         testImmutability("remoteGetStaggerDelay");
+         this.remoteGetStaggerDelay = remoteGetStaggerDelay;
+      }
+
+      @Override
+      public HashConfig remoteGetStaggerDelay(Long remoteGetStaggerDelay) {
+         setRemoteGetStaggerDelay(remoteGetStaggerDelay);
+         return this;
+      }
       
       public GroupsConfiguration groups() {
          groups.setConfiguration(config);
@@ -3367,6 +3578,15 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
             return false;
          if (rehashWait != null ? !rehashWait.equals(hashType.rehashWait) : hashType.rehashWait != null) return false;
          if (rehashEnabled != hashType.rehashEnabled) return false;
+         if (rehashChunkSize != null ? !rehashChunkSize.equals(hashType.rehashChunkSize) : hashType.rehashChunkSize != null)
+            return false;
+         if (rehashChunkMaxBytes != null ? !rehashChunkMaxBytes.equals(hashType.rehashChunkMaxBytes) : hashType.rehashChunkMaxBytes != null)
+            return false;
+         if (rehashMaxChunksInFlight != null ? !rehashMaxChunksInFlight.equals(hashType.rehashMaxChunksInFlight) : hashType.rehashMaxChunksInFlight != null)
+            return false;
+         if (numSegments != null ? !numSegments.equals(hashType.numSegments) : hashType.numSegments != null) return false;
+         if (remoteGetStaggerDelay != null ? !remoteGetStaggerDelay.equals(hashType.remoteGetStaggerDelay) : hashType.remoteGetStaggerDelay != null)
+            return false;
 
          return true;
       }
@@ -3381,6 +3601,11 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
          result = 31 * result + (rehashWait != null ? rehashWait.hashCode() : 0);
          result = 31 * result + (rehashRpcTimeout != null ? rehashRpcTimeout.hashCode() : 0);
          result = 31 * result + (rehashEnabled ? 0 : 1);
+         result = 31 * result + (rehashChunkSize != null ? rehashChunkSize.hashCode() : 0);
+         result = 31 * result + (rehashChunkMaxBytes != null ? rehashChunkMaxBytes.hashCode() : 0);
+         result = 31 * result + (rehashMaxChunksInFlight != null ? rehashMaxChunksInFlight.hashCode() : 0);
+         result = 31 * result + (numSegments != null ? numSegments.hashCode() : 0);
+         result = 31 * result + (remoteGetStaggerDelay != null ? remoteGetStaggerDelay.hashCode() : 0);
          return result;
       }
       
@@ -3394,6 +3619,11 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
          dolly.rehashEnabled = rehashEnabled;
          dolly.rehashRpcTimeout = rehashRpcTimeout;
          dolly.rehashWait = rehashWait;
+         dolly.rehashChunkSize = rehashChunkSize;
+         dolly.rehashChunkMaxBytes = rehashChunkMaxBytes;
+         dolly.rehashMaxChunksInFlight = rehashMaxChunksInFlight;
+         dolly.numSegments = numSegments;
+         dolly.remoteGetStaggerDelay = remoteGetStaggerDelay;
          dolly.groups = (GroupsConfiguration) groups.clone();
          return dolly;
       }
@@ -3425,6 +3655,12 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
       
       @ConfigurationDocRef(bean = Configuration.class, targetElement = "setL1InvalidationThreshold")
       protected Integer invalidationThreshold = 0;
+
+      @ConfigurationDocRef(bean = Configuration.class, targetElement = "getL1MaxEntries")
+      protected Integer maxEntries = -1;
+
+      @ConfigurationDocRef(bean = Configuration.class, targetElement = "getL1EvictionStrategy")
+      protected EvictionStrategy evictionStrategy = EvictionStrategy.LRU;
       
       public void accept(ConfigurationBeanVisitor v) {
          v.visitL1Type(this);
@@ -3505,6 +3741,46 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
 	      return invalidationThreshold;
       }
 
+      @XmlAttribute
+      public Integer getMaxEntries() {
+         return maxEntries;
+      }
+
+      /**
+       * @deprecated The visibility of this will be reduced, use {@link #maxEntries(Integer)}
+       */
+      @Deprecated
+      public void setMaxEntries(Integer maxEntries) {
+         testImmutability("maxEntries");
+         this.maxEntries = maxEntries;
+      }
+
+      @Override
+      public L1Config maxEntries(Integer maxEntries) {
+         setMaxEntries(maxEntries);
+         return this;
+      }
+
+      @XmlAttribute
+      public EvictionStrategy getEvictionStrategy() {
+         return evictionStrategy;
+      }
+
+      /**
+       * @deprecated The visibility of this will be reduced, use {@link #evictionStrategy(EvictionStrategy)}
+       */
+      @Deprecated
+      public void setEvictionStrategy(EvictionStrategy evictionStrategy) {
+         testImmutability("evictionStrategy");
+         this.evictionStrategy = evictionStrategy;
+      }
+
+      @Override
+      public L1Config evictionStrategy(EvictionStrategy evictionStrategy) {
+         setEvictionStrategy(evictionStrategy);
+         return this;
+      }
+
       @Override
       public L1Config disable() {
          return setEnabled(false);
@@ -3521,6 +3797,8 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
          if (lifespan != null ? !lifespan.equals(l1Type.lifespan) : l1Type.lifespan != null) return false;
          if (onRehash != null ? !onRehash.equals(l1Type.onRehash) : l1Type.onRehash != null) return false;
          if (invalidationThreshold != null ? !invalidationThreshold.equals(l1Type.invalidationThreshold) : l1Type.invalidationThreshold != null) return false;
+         if (maxEntries != null ? !maxEntries.equals(l1Type.maxEntries) : l1Type.maxEntries != null) return false;
+         if (evictionStrategy != l1Type.evictionStrategy) return false;
          
          return true;
       }
@@ -3531,6 +3809,8 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
          result = 31 * result + (lifespan != null ? lifespan.hashCode() : 0);
          result = 31 * result + (onRehash != null ? onRehash.hashCode() : 0);
          result = 31 * result + (invalidationThreshold != null ? invalidationThreshold.hashCode() : 0);
+         result = 31 * result + (maxEntries != null ? maxEntries.hashCode() : 0);
+         result = 31 * result + (evictionStrategy != null ? evictionStrategy.hashCode() : 0);
          return result;
       }
    }
@@ -23,7 +23,9 @@
 package org.infinispan.config;
 
 import org.infinispan.config.Configuration.EvictionType;
+import org.infinispan.config.Configuration.HashType;
 import org.infinispan.config.GlobalConfiguration.TransportType;
+import org.infinispan.eviction.EvictionStrategy;
 import org.infinispan.loaders.CacheLoaderConfig;
 import org.infinispan.loaders.CacheStoreConfig;
 import org.infinispan.loaders.decorators.SingletonStoreConfig;
@@ -102,6 +104,9 @@ public class ConfigurationValidatingVisitor extends AbstractConfigurationBeanVis
             l1Type.onRehash(false);
          }
       }
+
+      if (l1Type.maxEntries > 0 && l1Type.evictionStrategy == EvictionStrategy.NONE)
+         throw new ConfigurationException("L1 needs an eviction strategy when its maxEntries is set");
    }
 
    @Override
@@ -129,6 +134,22 @@ public class ConfigurationValidatingVisitor extends AbstractConfigurationBeanVis
       evictionEnabled = et.strategy.isEnabled();
       if (et.strategy.isEnabled() && et.maxEntries <= 0)
          throw new ConfigurationException("Eviction maxEntries value cannot be less than or equal to zero if eviction is enabled");
+      if (et.strategy.isEnabled() && et.maxMemorySize == 0)
+         throw new ConfigurationException("Eviction maxMemorySize value cannot be zero if eviction is enabled");
+   }
+
+   @Override
+   public void visitHashType(HashType ht) {
+      if (ht.rehashChunkSize <= 0)
+         throw new ConfigurationException("Hash rehashChunkSize value must be greater than zero");
+      if (ht.rehashChunkMaxBytes == 0)
+         throw new ConfigurationException("Hash rehashChunkMaxBytes value cannot be zero");
+      if (ht.rehashMaxChunksInFlight <= 0)
+         throw new ConfigurationException("Hash rehashMaxChunksInFlight value must be greater than zero");
+      if (ht.numSegments < 0)
+         throw new ConfigurationException("Hash numSegments value cannot be negative");
+      if (ht.remoteGetStaggerDelay < 0)
+         throw new ConfigurationException("Hash remoteGetStaggerDelay value cannot be negative");
    }
 
    @Override
@@ -336,6 +336,15 @@ public class FluentConfiguration extends AbstractFluentConfigurationBean {
        * @param maxEntries
        */
       EvictionConfig maxEntries(Integer maxEntries);
+
+      /**
+       * Maximum estimated memory size, in bytes, of the entries in a cache instance. Entries are evicted, following
+       * the configured eviction strategy, whenever their estimated size exceeds this value, even if there are fewer
+       * than maxEntries entries. -1 means entries are only bounded by maxEntries.
+       *
+       * @param maxMemorySize
+       */
+      EvictionConfig maxMemorySize(Long maxMemorySize);
    }
 
    /**
@@ -595,6 +604,22 @@ public class FluentConfiguration extends AbstractFluentConfigurationBean {
        * 
        */
       L1Config invalidationThreshold(Integer threshold);
+
+      /**
+       * Maximum number of entries held in L1.  If greater than 0, L1 entries are held apart from the entries owned by
+       * this node and are evicted independently of them.  By default L1 entries are held together with owned entries
+       * and count against the eviction limit of the cache.
+       *
+       * @param maxEntries
+       */
+      L1Config maxEntries(Integer maxEntries);
+
+      /**
+       * Eviction strategy used once L1 holds {@link #maxEntries(Integer)} entries.  Defaults to LRU.
+       *
+       * @param evictionStrategy
+       */
+      L1Config evictionStrategy(EvictionStrategy evictionStrategy);
    }
 
    /**
@@ -640,6 +665,48 @@ public class FluentConfiguration extends AbstractFluentConfigurationBean {
        * @param rehashEnabled
        */
       HashConfig rehashEnabled(Boolean rehashEnabled);
+
+      /**
+       * Maximum number of entries pushed to another node in a single chunk of state when rehashing. State is streamed
+       * in chunks so that the whole state to be pushed never needs to be held in memory at once.
+       *
+       * @param rehashChunkSize
+       */
+      HashConfig rehashChunkSize(Integer rehashChunkSize);
+
+      /**
+       * Maximum estimated size, in bytes, of a single chunk of state pushed to another node when rehashing. -1 means
+       * chunks are only bounded by rehashChunkSize.
+       *
+       * @param rehashChunkMaxBytes
+       */
+      HashConfig rehashChunkMaxBytes(Long rehashChunkMaxBytes);
+
+      /**
+       * Maximum number of chunks of state pushed to the same node that may be awaiting acknowledgement at any time
+       * when rehashing. Pushing further state blocks until an earlier chunk has been applied.
+       *
+       * @param rehashMaxChunksInFlight
+       */
+      HashConfig rehashMaxChunksInFlight(Integer rehashMaxChunksInFlight);
+
+      /**
+       * Number of fixed hash segments the data container is partitioned into. Keys are mapped to segments by their
+       * position on the hash wheel, so on a topology change only the segments whose owners changed are visited
+       * instead of every key. 0, the default, disables partitioning.
+       *
+       * @param numSegments
+       */
+      HashConfig numSegments(Integer numSegments);
+
+      /**
+       * Delay, in milliseconds, after which a remote get is sent to all the owners of the key, if the best owner,
+       * picked by topology and observed response times, has not answered yet.  Staggering remote gets this way
+       * spares the other owners from serving every read.  0, the default, sends remote gets to all owners at once.
+       *
+       * @param remoteGetStaggerDelay
+       */
+      HashConfig remoteGetStaggerDelay(Long remoteGetStaggerDelay);
       
       /**
        * Controls the number of virtual nodes per "real" node. You can read more about virtual nodes
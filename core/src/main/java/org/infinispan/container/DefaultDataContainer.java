@@ -44,9 +44,14 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * DefaultDataContainer is both eviction and non-eviction based data container.
+ * <p/>
+ * Entries which can expire are tracked in an {@link ExpirationIndex}, so that {@link #purgeExpired()} only inspects
+ * entries that are due to expire rather than scanning the whole container.
  *
  *
  * @author Manik Surtani
@@ -62,16 +67,29 @@ public class DefaultDataContainer implements DataContainer {
    final ConcurrentMap<Object, InternalCacheEntry> entries;
    final InternalEntryFactory entryFactory;
    final DefaultEvictionListener evictionListener;
+   final ExpirationIndex expirationIndex;
+   final boolean boundedByMemory;
    private EvictionManager evictionManager;
    private PassivationManager passivator;
 
+   private final AtomicLong purgeInspected = new AtomicLong(0);
+   private final AtomicLong purgeRemoved = new AtomicLong(0);
+   private final AtomicLong purgeTimeNanos = new AtomicLong(0);
+   private final AtomicLong purges = new AtomicLong(0);
+
    protected DefaultDataContainer(int concurrencyLevel) {
       entries = new ConcurrentHashMap<Object, InternalCacheEntry>(128, 0.75f,concurrencyLevel);
       entryFactory = new InternalEntryFactory();
       evictionListener = null;
+      expirationIndex = new ExpirationIndex(concurrencyLevel);
+      boundedByMemory = false;
    }
 
    protected DefaultDataContainer(int concurrencyLevel, int maxEntries, EvictionStrategy strategy, EvictionThreadPolicy policy) {
+      this(concurrencyLevel, maxEntries, -1, strategy, policy);
+   }
+
+   protected DefaultDataContainer(int concurrencyLevel, int maxEntries, long maxMemorySize, EvictionStrategy strategy, EvictionThreadPolicy policy) {
 
       // translate eviction policy and strategy
       switch (policy) {
@@ -99,8 +117,12 @@ public class DefaultDataContainer implements DataContainer {
          default:
             throw new IllegalArgumentException("No such eviction strategy " + strategy);
       }
-      entries = new BoundedConcurrentHashMap<Object, InternalCacheEntry>(maxEntries, concurrencyLevel, eviction, evictionListener);
+      // sizing every entry is only worth its cost when the container is bounded by memory size
+      boundedByMemory = maxMemorySize >= 0;
+      entries = new BoundedConcurrentHashMap<Object, InternalCacheEntry>(maxEntries, concurrencyLevel, eviction, evictionListener,
+                                                                         maxMemorySize, boundedByMemory ? new InternalCacheEntrySizeCalculator() : null);
       entryFactory = new InternalEntryFactory();
+      expirationIndex = new ExpirationIndex(concurrencyLevel);
    }
 
    @Inject
@@ -114,6 +136,11 @@ public class DefaultDataContainer implements DataContainer {
       return new DefaultDataContainer(concurrencyLevel, maxEntries, strategy, policy);
    }
 
+   public static DataContainer boundedDataContainer(int concurrencyLevel, int maxEntries, long maxMemorySize,
+            EvictionStrategy strategy, EvictionThreadPolicy policy) {
+      return new DefaultDataContainer(concurrencyLevel, maxEntries, maxMemorySize, strategy, policy);
+   }
+
    public static DataContainer unBoundedDataContainer(int concurrencyLevel) {
       return new DefaultDataContainer(concurrencyLevel);
    }
@@ -124,10 +151,11 @@ public class DefaultDataContainer implements DataContainer {
    }
 
    public InternalCacheEntry get(Object k) {
-      InternalCacheEntry e = peek(k);
+      InternalCacheEntry e = entries.get(k);
       if (e != null) {
          if (e.isExpired()) {
             entries.remove(k);
+            removed(k);
             e = null;
          } else {
             e.touch();
@@ -138,6 +166,7 @@ public class DefaultDataContainer implements DataContainer {
 
    public void put(Object k, Object v, long lifespan, long maxIdle) {
       InternalCacheEntry e = entries.get(k);
+      boolean indexed = e != null && e.canExpire();
       if (e != null) {
          e.setValue(v);
          InternalCacheEntry original = e;
@@ -151,12 +180,15 @@ public class DefaultDataContainer implements DataContainer {
          e = entryFactory.createNewEntry(k, v, lifespan, maxIdle);
       }
       entries.put(k, e);
+      // moves the key out of the bucket it was indexed in before, or out of the index if it became immortal
+      if (indexed || e.canExpire()) expirationIndex.add(k, e.getExpiryTime());
    }
 
    public boolean containsKey(Object k) {
-      InternalCacheEntry ice = peek(k);
+      InternalCacheEntry ice = entries.get(k);
       if (ice != null && ice.isExpired()) {
          entries.remove(k);
+         removed(k);
          ice = null;
       }
       return ice != null;
@@ -164,15 +196,41 @@ public class DefaultDataContainer implements DataContainer {
 
    public InternalCacheEntry remove(Object k) {
       InternalCacheEntry e = entries.remove(k);
+      if (e != null) removed(k);
       return e == null || e.isExpired() ? null : e;
    }
 
+   private void removed(Object key) {
+      // the key may have been put again before we removed it from the index
+      if (expirationIndex.remove(key) && entries.containsKey(key)) {
+         InternalCacheEntry e = entries.get(key);
+         if (e != null) expirationIndex.add(key, e.getExpiryTime());
+      }
+      entryRemoved(key);
+   }
+
+   /**
+    * Invoked after the entry mapped to <code>key</code> was removed from the container, whether it was explicitly
+    * removed, expired or evicted. Does nothing by default.
+    */
+   protected void entryRemoved(Object key) {
+   }
+
+   /**
+    * Invoked when an entry has been chosen for eviction, before it is removed from the container.  Passivates the entry
+    * by default.
+    */
+   protected void entryChosenForEviction(InternalCacheEntry entry) {
+      passivator.passivate(entry);
+   }
+
    public int size() {
       return entries.size();
    }
 
    public void clear() {
       entries.clear();
+      expirationIndex.clear();
    }
 
    public Set<Object> keySet() {
@@ -188,12 +246,78 @@ public class DefaultDataContainer implements DataContainer {
    }
 
    public void purgeExpired() {
-      for (Iterator<InternalCacheEntry> purgeCandidates = entries.values().iterator(); purgeCandidates.hasNext();) {
-         InternalCacheEntry e = purgeCandidates.next();
-         if (e.isExpired()) {
-            purgeCandidates.remove();
+      long start = System.nanoTime();
+      long inspected = 0, removed = 0;
+      for (Map.Entry<Long, Set<Object>> dueKeys : expirationIndex.pollDue(System.currentTimeMillis()).entrySet()) {
+         long bucket = dueKeys.getKey();
+         for (Object key : dueKeys.getValue()) {
+            // the key was moved to another bucket after it was placed in this one
+            if (!expirationIndex.detach(key, bucket)) continue;
+            InternalCacheEntry e = entries.get(key);
+            // the key was removed, evicted or already purged since it was indexed
+            if (e == null) continue;
+            inspected++;
+            if (e.isExpired()) {
+               if (entries.remove(key, e)) {
+                  removed++;
+                  entryRemoved(key);
+               }
+            } else if (e.canExpire()) {
+               // expiry has been pushed back, e.g. a transient entry touched since it was indexed
+               expirationIndex.add(key, e.getExpiryTime());
+            }
          }
       }
+      purgeInspected.addAndGet(inspected);
+      purgeRemoved.addAndGet(removed);
+      purgeTimeNanos.addAndGet(System.nanoTime() - start);
+      purges.incrementAndGet();
+   }
+
+   /**
+    * @return number of entries inspected by {@link #purgeExpired()} since the statistics were last reset
+    */
+   public long getPurgeInspectedCount() {
+      return purgeInspected.get();
+   }
+
+   /**
+    * @return number of expired entries removed by {@link #purgeExpired()} since the statistics were last reset
+    */
+   public long getPurgeRemovedCount() {
+      return purgeRemoved.get();
+   }
+
+   /**
+    * @return average time, in milliseconds, spent in each {@link #purgeExpired()} call
+    */
+   public double getAveragePurgeTime() {
+      long count = purges.get();
+      if (count == 0) return 0;
+      return (double) purgeTimeNanos.get() / count / TimeUnit.MILLISECONDS.toNanos(1);
+   }
+
+   public void resetPurgeStatistics() {
+      purgeInspected.set(0);
+      purgeRemoved.set(0);
+      purgeTimeNanos.set(0);
+      purges.set(0);
+   }
+
+   /**
+    * @return estimated memory size, in bytes, of the entries in this container, or -1 if the container is not bounded
+    *         by memory size
+    */
+   public long getMemorySize() {
+      return boundedByMemory ? ((BoundedConcurrentHashMap<Object, InternalCacheEntry>) entries).memorySize() : -1;
+   }
+
+   /**
+    * @return estimated memory size, in bytes, of the entries held by each segment of this container, or an empty
+    *         array if the container is not bounded by memory size
+    */
+   public long[] getSegmentMemorySizes() {
+      return boundedByMemory ? ((BoundedConcurrentHashMap<Object, InternalCacheEntry>) entries).segmentMemorySizes() : new long[0];
    }
 
    public Iterator<InternalCacheEntry> iterator() {
@@ -203,12 +327,13 @@ public class DefaultDataContainer implements DataContainer {
    private final class DefaultEvictionListener implements EvictionListener<Object, InternalCacheEntry> {
       @Override
       public void onEntryEviction(Map<Object, InternalCacheEntry> evicted) {
+         for (Object key : evicted.keySet()) removed(key);
          evictionManager.onEntryEviction(evicted);
       }
 
       @Override
       public void onEntryChosenForEviction(InternalCacheEntry internalCacheEntry) {
-         passivator.passivate(internalCacheEntry);
+         entryChosenForEviction(internalCacheEntry);
       }
    }
 
@@ -0,0 +1,172 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.container;
+
+import net.jcip.annotations.ThreadSafe;
+import org.infinispan.util.concurrent.ConcurrentHashSet;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * An index of keys ordered by the time at which they are due to expire.  Keys are grouped into buckets of a fixed
+ * time resolution, so that purging expired entries only needs to visit the buckets whose time has come rather than
+ * every entry in the container.  Immortal entries are never added to the index.
+ * <p/>
+ * The index remembers the bucket each key is currently placed in, so that updates move the key out of its previous
+ * bucket and {@link #remove(Object) removals} take it out of the index altogether, keeping the index no bigger than
+ * the number of expirable entries.  A key may still linger in a bucket it was moved out of when it is updated
+ * concurrently, in which case {@link #detach(Object, long)} tells it apart when the bucket falls due.
+ * <p/>
+ * Expiry times of transient entries move forward every time they are touched, which is not reflected by the index.
+ * Instead, when a bucket falls due the caller is expected to check the current state of each key, and to
+ * {@link #add(Object, long) re-add} keys whose expiry time has moved forward.
+ *
+ * @since 5.1
+ */
+@ThreadSafe
+final class ExpirationIndex {
+
+   static final long DEFAULT_RESOLUTION = 1000;
+
+   private final ConcurrentSkipListMap<Long, Set<Object>> buckets = new ConcurrentSkipListMap<Long, Set<Object>>();
+   private final ConcurrentMap<Object, Long> keyBuckets;
+   private final long resolution;
+   private final int concurrencyLevel;
+
+   ExpirationIndex(int concurrencyLevel) {
+      this(DEFAULT_RESOLUTION, concurrencyLevel);
+   }
+
+   ExpirationIndex(long resolution, int concurrencyLevel) {
+      if (resolution <= 0) throw new IllegalArgumentException("Resolution must be positive");
+      this.resolution = resolution;
+      this.concurrencyLevel = concurrencyLevel;
+      this.keyBuckets = new ConcurrentHashMap<Object, Long>(128, 0.75f, concurrencyLevel);
+   }
+
+   /**
+    * Registers a key as expiring at a given time, moving it out of the bucket it was previously placed in.
+    *
+    * @param key        key to index
+    * @param expiryTime timestamp at which the key is due to expire, or -1 if the key never expires, in which case the
+    *                   key is removed from the index
+    */
+   void add(Object key, long expiryTime) {
+      if (expiryTime < 0) {
+         remove(key);
+         return;
+      }
+      Long bucket = expiryTime / resolution;
+      Long previous = keyBuckets.put(key, bucket);
+      if (previous != null && !previous.equals(bucket)) removeFromBucket(key, previous);
+      addToBucket(key, bucket);
+   }
+
+   /**
+    * Removes a key from the index, e.g. because its entry was removed or evicted.
+    *
+    * @return true if the key was indexed
+    */
+   boolean remove(Object key) {
+      Long bucket = keyBuckets.remove(key);
+      if (bucket == null) return false;
+      removeFromBucket(key, bucket);
+      return true;
+   }
+
+   /**
+    * Removes a key found in a bucket returned by {@link #pollDue(long)} from the index, unless it has been moved to
+    * another bucket since.
+    *
+    * @return true if the key was still placed in the given bucket, false if it has to be ignored
+    */
+   boolean detach(Object key, long bucket) {
+      return keyBuckets.remove(key, bucket);
+   }
+
+   private void addToBucket(Object key, Long bucket) {
+      while (true) {
+         Set<Object> keys = buckets.get(bucket);
+         if (keys == null) {
+            keys = new ConcurrentHashSet<Object>(concurrencyLevel);
+            Set<Object> existing = buckets.putIfAbsent(bucket, keys);
+            if (existing != null) keys = existing;
+         }
+         keys.add(key);
+         // if the bucket was drained concurrently by a purge, retry so the key isn't lost in a detached set
+         if (buckets.get(bucket) == keys) return;
+      }
+   }
+
+   private void removeFromBucket(Object key, Long bucket) {
+      Set<Object> keys = buckets.get(bucket);
+      if (keys == null) return;
+      keys.remove(key);
+      // keys added concurrently notice the set was dropped, see addToBucket()
+      if (keys.isEmpty()) buckets.remove(bucket, keys);
+   }
+
+   /**
+    * Detaches and returns every bucket which may contain keys due to expire at or before the given time.  Returned
+    * buckets are no longer part of the index, so each of their keys has to be {@link #detach(Object, long) detached},
+    * and keys that turn out not to have expired need to be re-added.
+    *
+    * @param now current time
+    * @return the key sets, by bucket, possibly empty
+    */
+   Map<Long, Set<Object>> pollDue(long now) {
+      ConcurrentNavigableMap<Long, Set<Object>> due = buckets.headMap(now / resolution, true);
+      if (due.isEmpty()) return Collections.emptyMap();
+      Map<Long, Set<Object>> polled = new LinkedHashMap<Long, Set<Object>>(due.size() * 2);
+      for (Map.Entry<Long, Set<Object>> bucket : due.entrySet()) {
+         if (buckets.remove(bucket.getKey(), bucket.getValue())) polled.put(bucket.getKey(), bucket.getValue());
+      }
+      return polled;
+   }
+
+   /**
+    * @return the number of buckets currently held by the index
+    */
+   int bucketCount() {
+      return buckets.size();
+   }
+
+   /**
+    * @return the number of keys currently held by the index
+    */
+   int size() {
+      return keyBuckets.size();
+   }
+
+   void clear() {
+      buckets.clear();
+      keyBuckets.clear();
+   }
+}
@@ -0,0 +1,70 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.container;
+
+import org.infinispan.container.entries.InternalCacheEntry;
+import org.infinispan.marshall.MarshalledValue;
+import org.infinispan.util.ByteArrayKey;
+import org.infinispan.util.concurrent.BoundedConcurrentHashMap.EntrySizeCalculator;
+
+/**
+ * Estimates the heap footprint of an entry held by {@link DefaultDataContainer}, so that the container can be bounded
+ * by memory size rather than by number of entries.
+ * <p/>
+ * Estimates are exact for byte arrays, {@link ByteArrayKey}s and {@link MarshalledValue}s that have been serialized,
+ * which makes storing keys and values as binary the most accurate option.  Strings and boxed primitives are sized
+ * from their contents, while any other object is assumed to take {@link #DEFAULT_OBJECT_SIZE} bytes.
+ *
+ * @since 5.1
+ */
+public class InternalCacheEntrySizeCalculator implements EntrySizeCalculator<Object, InternalCacheEntry> {
+
+   /**
+    * Approximate size of the map entry, internal cache entry and cache value objects holding each key/value pair.
+    */
+   static final int ENTRY_OVERHEAD = 96;
+
+   /**
+    * Size assumed for objects whose footprint cannot be estimated cheaply.
+    */
+   static final int DEFAULT_OBJECT_SIZE = 128;
+
+   private static final int OBJECT_HEADER = 16;
+   private static final int ARRAY_HEADER = 16;
+
+   @Override
+   public long getSize(Object key, InternalCacheEntry entry) {
+      return ENTRY_OVERHEAD + estimate(key) + (entry == null ? 0 : estimate(entry.getValue()));
+   }
+
+   static long estimate(Object o) {
+      if (o == null) return 0;
+      if (o instanceof MarshalledValue) return OBJECT_HEADER + 16 + ARRAY_HEADER + ((MarshalledValue) o).getSerialisedSize();
+      if (o instanceof ByteArrayKey) return OBJECT_HEADER + 8 + ARRAY_HEADER + ((ByteArrayKey) o).getData().length;
+      if (o instanceof byte[]) return ARRAY_HEADER + ((byte[]) o).length;
+      if (o instanceof String) return OBJECT_HEADER + 16 + ARRAY_HEADER + 2L * ((String) o).length();
+      if (o instanceof Long || o instanceof Double) return OBJECT_HEADER + 8;
+      if (o instanceof Number || o instanceof Boolean || o instanceof Character) return OBJECT_HEADER;
+      return DEFAULT_OBJECT_SIZE;
+   }
+}
@@ -0,0 +1,363 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.container;
+
+import net.jcip.annotations.ThreadSafe;
+import org.infinispan.container.entries.InternalCacheEntry;
+import org.infinispan.distribution.ch.HashSegments;
+import org.infinispan.eviction.EvictionManager;
+import org.infinispan.eviction.EvictionStrategy;
+import org.infinispan.eviction.EvictionThreadPolicy;
+import org.infinispan.eviction.PassivationManager;
+import org.infinispan.factories.annotations.Inject;
+
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link SegmentedDataContainer} that holds L1 entries apart from the entries owned by this node, in a container of
+ * their own with its own size limit and eviction strategy.  L1 entries thus never cause owned entries to be evicted,
+ * are never passivated, and are not visited when iterating over the segments of the container.
+ * <p/>
+ * Entries are stored in L1 through the container returned by {@link #getL1Container()}, everything else stores owned
+ * entries.  Storing a key in one part removes it from the other one, while lookups and removals cover both parts.  As
+ * the two parts are not updated atomically, a key being moved from one part to the other may briefly be seen twice
+ * when iterating over the container.
+ *
+ * @since 5.1
+ */
+@ThreadSafe
+public class L1SegregatedDataContainer extends SegmentedDataContainer {
+
+   private final L1EntryContainer l1;
+   private final DataContainer l1Container = new L1Container();
+   private final AtomicLong l1Hits = new AtomicLong(0);
+   private final AtomicLong l1Misses = new AtomicLong(0);
+
+   protected L1SegregatedDataContainer(int concurrencyLevel, HashSegments segments, int l1MaxEntries,
+                                       EvictionStrategy l1Strategy) {
+      super(concurrencyLevel, segments);
+      l1 = new L1EntryContainer(concurrencyLevel, l1MaxEntries, l1Strategy);
+   }
+
+   protected L1SegregatedDataContainer(int concurrencyLevel, int maxEntries, long maxMemorySize, EvictionStrategy strategy,
+                                       EvictionThreadPolicy policy, HashSegments segments, int l1MaxEntries,
+                                       EvictionStrategy l1Strategy) {
+      super(concurrencyLevel, maxEntries, maxMemorySize, strategy, policy, segments);
+      l1 = new L1EntryContainer(concurrencyLevel, l1MaxEntries, l1Strategy);
+   }
+
+   public static DataContainer boundedDataContainer(int concurrencyLevel, int maxEntries, long maxMemorySize,
+                                                    EvictionStrategy strategy, EvictionThreadPolicy policy,
+                                                    HashSegments segments, int l1MaxEntries,
+                                                    EvictionStrategy l1Strategy) {
+      return new L1SegregatedDataContainer(concurrencyLevel, maxEntries, maxMemorySize, strategy, policy, segments,
+                                           l1MaxEntries, l1Strategy);
+   }
+
+   public static DataContainer unBoundedDataContainer(int concurrencyLevel, HashSegments segments, int l1MaxEntries,
+                                                      EvictionStrategy l1Strategy) {
+      return new L1SegregatedDataContainer(concurrencyLevel, segments, l1MaxEntries, l1Strategy);
+   }
+
+   @Inject
+   @Override
+   public void initialize(EvictionManager evictionManager, PassivationManager passivator) {
+      super.initialize(evictionManager, passivator);
+      l1.initialize(evictionManager, passivator);
+   }
+
+   /**
+    * @return a view of this container that stores entries in L1 rather than as owned entries
+    */
+   public DataContainer getL1Container() {
+      return l1Container;
+   }
+
+   @Override
+   public InternalCacheEntry peek(Object key) {
+      InternalCacheEntry e = super.peek(key);
+      return e != null ? e : l1.peek(key);
+   }
+
+   @Override
+   public InternalCacheEntry get(Object k) {
+      InternalCacheEntry e = super.get(k);
+      if (e == null) {
+         e = l1.get(k);
+         if (e != null) l1Hits.incrementAndGet();
+      }
+      return e;
+   }
+
+   @Override
+   public void put(Object k, Object v, long lifespan, long maxIdle) {
+      super.put(k, v, lifespan, maxIdle);
+      if (l1.peek(k) != null) l1.remove(k);
+   }
+
+   private void putInL1(Object k, Object v, long lifespan, long maxIdle) {
+      if (entries.containsKey(k)) super.remove(k);
+      l1.put(k, v, lifespan, maxIdle);
+   }
+
+   /**
+    * Records an entry that was not found in L1 and had to be retrieved from its owners.  Entries written to L1 by
+    * non-owners are not misses, so this is not counted by the L1 container itself.
+    */
+   public void recordL1Miss() {
+      l1Misses.incrementAndGet();
+   }
+
+   @Override
+   public boolean containsKey(Object k) {
+      return super.containsKey(k) || l1.containsKey(k);
+   }
+
+   @Override
+   public InternalCacheEntry remove(Object k) {
+      InternalCacheEntry e = super.remove(k);
+      if (l1.peek(k) != null) {
+         InternalCacheEntry l1Entry = l1.remove(k);
+         if (e == null) e = l1Entry;
+      }
+      return e;
+   }
+
+   @Override
+   public int size() {
+      return super.size() + l1.size();
+   }
+
+   @Override
+   public void clear() {
+      super.clear();
+      l1.clear();
+   }
+
+   @Override
+   public Set<Object> keySet() {
+      final Set<Object> owned = super.keySet();
+      return new AbstractSet<Object>() {
+         @Override
+         public Iterator<Object> iterator() {
+            return new ConcatIterator<Object>(owned.iterator(), l1.keySet().iterator());
+         }
+
+         @Override
+         public boolean contains(Object o) {
+            return owned.contains(o) || l1.entries.containsKey(o);
+         }
+
+         @Override
+         public int size() {
+            return L1SegregatedDataContainer.this.size();
+         }
+      };
+   }
+
+   @Override
+   public Collection<Object> values() {
+      final Collection<Object> owned = super.values();
+      return new AbstractCollection<Object>() {
+         @Override
+         public Iterator<Object> iterator() {
+            return new ConcatIterator<Object>(owned.iterator(), l1.values().iterator());
+         }
+
+         @Override
+         public int size() {
+            return L1SegregatedDataContainer.this.size();
+         }
+      };
+   }
+
+   @Override
+   public Set<InternalCacheEntry> entrySet() {
+      final Set<InternalCacheEntry> owned = super.entrySet();
+      return new AbstractSet<InternalCacheEntry>() {
+         @Override
+         public Iterator<InternalCacheEntry> iterator() {
+            return new ConcatIterator<InternalCacheEntry>(owned.iterator(), l1.entrySet().iterator());
+         }
+
+         @Override
+         public boolean contains(Object o) {
+            return owned.contains(o) || l1.entrySet().contains(o);
+         }
+
+         @Override
+         public int size() {
+            return L1SegregatedDataContainer.this.size();
+         }
+      };
+   }
+
+   @Override
+   public Iterator<InternalCacheEntry> iterator() {
+      return new ConcatIterator<InternalCacheEntry>(super.iterator(), l1.iterator());
+   }
+
+   @Override
+   public void purgeExpired() {
+      super.purgeExpired();
+      l1.purgeExpired();
+   }
+
+   /**
+    * @return number of entries held in L1
+    */
+   public int getL1Size() {
+      return l1.size();
+   }
+
+   /**
+    * @return number of lookups served by L1
+    */
+   public long getL1Hits() {
+      return l1Hits.get();
+   }
+
+   /**
+    * @return number of entries retrieved from their owners because they were not in L1
+    */
+   public long getL1Misses() {
+      return l1Misses.get();
+   }
+
+   public void resetL1Statistics() {
+      l1Hits.set(0);
+      l1Misses.set(0);
+   }
+
+   /**
+    * Holds the L1 entries.  Evicted L1 entries are not passivated, as they are only copies of entries owned by other
+    * nodes.
+    */
+   private static final class L1EntryContainer extends DefaultDataContainer {
+      L1EntryContainer(int concurrencyLevel, int maxEntries, EvictionStrategy strategy) {
+         super(concurrencyLevel, maxEntries, strategy, EvictionThreadPolicy.DEFAULT);
+      }
+
+      @Override
+      protected void entryChosenForEviction(InternalCacheEntry entry) {
+      }
+   }
+
+   /**
+    * Stores entries in L1, and otherwise behaves as the container it is a view of
+    */
+   private final class L1Container implements DataContainer {
+      @Override
+      public InternalCacheEntry get(Object k) {
+         return L1SegregatedDataContainer.this.get(k);
+      }
+
+      @Override
+      public InternalCacheEntry peek(Object k) {
+         return L1SegregatedDataContainer.this.peek(k);
+      }
+
+      @Override
+      public void put(Object k, Object v, long lifespan, long maxIdle) {
+         putInL1(k, v, lifespan, maxIdle);
+      }
+
+      @Override
+      public boolean containsKey(Object k) {
+         return L1SegregatedDataContainer.this.containsKey(k);
+      }
+
+      @Override
+      public InternalCacheEntry remove(Object k) {
+         return L1SegregatedDataContainer.this.remove(k);
+      }
+
+      @Override
+      public int size() {
+         return L1SegregatedDataContainer.this.size();
+      }
+
+      @Override
+      public void clear() {
+         L1SegregatedDataContainer.this.clear();
+      }
+
+      @Override
+      public Set<Object> keySet() {
+         return L1SegregatedDataContainer.this.keySet();
+      }
+
+      @Override
+      public Collection<Object> values() {
+         return L1SegregatedDataContainer.this.values();
+      }
+
+      @Override
+      public Set<InternalCacheEntry> entrySet() {
+         return L1SegregatedDataContainer.this.entrySet();
+      }
+
+      @Override
+      public void purgeExpired() {
+         L1SegregatedDataContainer.this.purgeExpired();
+      }
+
+      @Override
+      public Iterator<InternalCacheEntry> iterator() {
+         return L1SegregatedDataContainer.this.iterator();
+      }
+   }
+
+   private static final class ConcatIterator<E> implements Iterator<E> {
+      private final Iterator<E> first;
+      private final Iterator<E> second;
+
+      ConcatIterator(Iterator<E> first, Iterator<E> second) {
+         this.first = first;
+         this.second = second;
+      }
+
+      @Override
+      public boolean hasNext() {
+         return first.hasNext() || second.hasNext();
+      }
+
+      @Override
+      public E next() {
+         if (first.hasNext()) return first.next();
+         if (second.hasNext()) return second.next();
+         throw new NoSuchElementException();
+      }
+
+      @Override
+      public void remove() {
+         throw new UnsupportedOperationException();
+      }
+   }
+}
@@ -0,0 +1,727 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.container;
+
+import net.jcip.annotations.ThreadSafe;
+import org.infinispan.CacheException;
+import org.infinispan.container.entries.InternalCacheEntry;
+import org.infinispan.container.entries.InternalEntryFactory;
+import org.infinispan.eviction.EvictionManager;
+import org.infinispan.eviction.PassivationManager;
+import org.infinispan.factories.annotations.ComponentName;
+import org.infinispan.factories.annotations.Inject;
+import org.infinispan.factories.annotations.Stop;
+import org.infinispan.jmx.annotations.MBean;
+import org.infinispan.jmx.annotations.ManagedAttribute;
+import org.infinispan.marshall.StreamingMarshaller;
+import org.infinispan.util.Immutables;
+import org.rhq.helpers.pluginAnnotations.agent.DisplayType;
+import org.rhq.helpers.pluginAnnotations.agent.Metric;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static org.infinispan.factories.KnownComponentNames.CACHE_MARSHALLER;
+
+/**
+ * A data container that stores marshalled keys and values, along with their expiration metadata, in native memory
+ * rather than on the Java heap.  This keeps the number of long lived heap objects independent of the number of
+ * entries, which avoids long old generation garbage collection pauses with very large data sets.
+ * <p/>
+ * The container is split into segments, each guarded by its own read-write lock, holding a chained hash index whose
+ * entries live entirely in native memory.  Each native entry is laid out as follows:
+ * <pre>
+ *   next bucket entry (8) | LRU previous (8) | LRU next (8) | created (8) | last used (8) | lifespan (8) |
+ *   max idle (8) | hash (4) | key length (4) | value length (4) | state (4) | key bytes | padding | value bytes
+ * </pre>
+ * Entries are hashed using the key's {@link Object#hashCode()}, so that reads can check the key's bucket before
+ * marshalling the key, and are then compared using their marshalled form, so keys which are equal must marshall to
+ * identical byte streams.
+ * <p/>
+ * Reads only take the segment's read lock, so they don't reorder the entries but merely mark them as accessed.  When
+ * bounded, each segment keeps its entries in insertion order and, once its share of <tt>maxEntries</tt> is exceeded,
+ * evicts them the way the CLOCK approximation of LRU does: entries accessed since they were last considered are given
+ * a second chance and moved to the end of the queue, the others are passivated through the {@link PassivationManager}
+ * and then removed, notifying the {@link EvictionManager} just like {@link DefaultDataContainer} does.  Passivation
+ * happens outside the segment lock, and the entries remain readable until they have been passivated.  Both the LRU and
+ * LIRS strategies map onto this ordering.
+ * <p/>
+ * The native memory is released when the container is cleared or its cache is stopped.
+ * <p/>
+ * Since entries are held in marshalled form, {@link InternalCacheEntry} instances returned by this container are
+ * detached copies: changes to them are not reflected in the container until they are written back with
+ * {@link #put(Object, Object, long, long)}.  Likewise, {@link #keySet()}, {@link #values()}, {@link #entrySet()} and
+ * iterators work on a per-segment snapshot of the container.
+ *
+ * @since 5.1
+ */
+@ThreadSafe
+@MBean(objectName = "OffHeapDataContainer", description = "Data container storing entries in native memory")
+public class OffHeapDataContainer implements DataContainer {
+
+   private static final int NEXT = 0;
+   private static final int LRU_PREV = 8;
+   private static final int LRU_NEXT = 16;
+   private static final int CREATED = 24;
+   private static final int LAST_USED = 32;
+   private static final int LIFESPAN = 40;
+   private static final int MAX_IDLE = 48;
+   private static final int HASH = 56;
+   private static final int KEY_LENGTH = 60;
+   private static final int VALUE_LENGTH = 64;
+   private static final int STATE = 68;
+   private static final int HEADER_SIZE = 72;
+
+   // values of the state field
+   private static final int NOT_ACCESSED = 0;
+   private static final int ACCESSED = 1;
+   private static final int EVICTING = 2;
+
+   private static final int MAX_SEGMENTS = 1 << 16;
+   private static final int INITIAL_SEGMENT_CAPACITY = 16;
+
+   private final Segment[] segments;
+   private final int segmentShift;
+   private final int segmentMask;
+   private final AtomicLong memoryUsed = new AtomicLong(0);
+
+   private StreamingMarshaller marshaller;
+   private EvictionManager evictionManager;
+   private PassivationManager passivator;
+
+   protected OffHeapDataContainer(int concurrencyLevel, int maxEntries) {
+      if (concurrencyLevel <= 0) throw new IllegalArgumentException("Concurrency level must be positive");
+      if (concurrencyLevel > MAX_SEGMENTS) concurrencyLevel = MAX_SEGMENTS;
+      int shift = 0;
+      int ssize = 1;
+      while (ssize < concurrencyLevel) {
+         ++shift;
+         ssize <<= 1;
+      }
+      segmentShift = 32 - shift;
+      segmentMask = ssize - 1;
+      segments = new Segment[ssize];
+      int perSegment = maxEntries < 0 ? -1 : Math.max(1, (maxEntries + ssize - 1) / ssize);
+      for (int i = 0; i < ssize; i++) segments[i] = new Segment(perSegment);
+   }
+
+   public static DataContainer boundedDataContainer(int concurrencyLevel, int maxEntries) {
+      return new OffHeapDataContainer(concurrencyLevel, maxEntries);
+   }
+
+   public static DataContainer unBoundedDataContainer(int concurrencyLevel) {
+      return new OffHeapDataContainer(concurrencyLevel, -1);
+   }
+
+   @Inject
+   public void initialize(@ComponentName(CACHE_MARSHALLER) StreamingMarshaller marshaller,
+                          EvictionManager evictionManager, PassivationManager passivator) {
+      this.marshaller = marshaller;
+      this.evictionManager = evictionManager;
+      this.passivator = passivator;
+   }
+
+   public InternalCacheEntry get(Object k) {
+      int hash = hash(k);
+      Segment s = segmentFor(hash);
+      if (!s.mayContain(hash)) return null;
+      byte[] keyBytes = marshall(k);
+      byte[] valueBytes;
+      long created, lastUsed, lifespan, maxIdle;
+      long now = System.currentTimeMillis();
+      s.readLock().lock();
+      try {
+         long address = s.find(keyBytes, hash);
+         if (address == 0) return null;
+         if (isExpired(address, now)) {
+            valueBytes = null;
+            created = lastUsed = lifespan = maxIdle = 0;
+         } else {
+            // racing readers all write the same kind of values, and writers are excluded by the read lock
+            OffHeapMemory.putLong(address + LAST_USED, now);
+            if (OffHeapMemory.getInt(address + STATE) == NOT_ACCESSED) OffHeapMemory.putInt(address + STATE, ACCESSED);
+            created = OffHeapMemory.getLong(address + CREATED);
+            lastUsed = now;
+            lifespan = OffHeapMemory.getLong(address + LIFESPAN);
+            maxIdle = OffHeapMemory.getLong(address + MAX_IDLE);
+            valueBytes = readValue(address);
+         }
+      } finally {
+         s.readLock().unlock();
+      }
+      if (valueBytes == null) {
+         removeIfExpired(s, keyBytes, hash, now);
+         return null;
+      }
+      return InternalEntryFactory.create(k, unmarshall(valueBytes), created, lifespan, lastUsed, maxIdle);
+   }
+
+   public InternalCacheEntry peek(Object k) {
+      int hash = hash(k);
+      Segment s = segmentFor(hash);
+      if (!s.mayContain(hash)) return null;
+      byte[] keyBytes = marshall(k);
+      byte[] valueBytes;
+      long created, lastUsed, lifespan, maxIdle;
+      s.readLock().lock();
+      try {
+         long address = s.find(keyBytes, hash);
+         if (address == 0) return null;
+         created = OffHeapMemory.getLong(address + CREATED);
+         lastUsed = OffHeapMemory.getLong(address + LAST_USED);
+         lifespan = OffHeapMemory.getLong(address + LIFESPAN);
+         maxIdle = OffHeapMemory.getLong(address + MAX_IDLE);
+         valueBytes = readValue(address);
+      } finally {
+         s.readLock().unlock();
+      }
+      return InternalEntryFactory.create(k, unmarshall(valueBytes), created, lifespan, lastUsed, maxIdle);
+   }
+
+   public void put(Object k, Object v, long lifespan, long maxIdle) {
+      int hash = hash(k);
+      byte[] keyBytes = marshall(k);
+      byte[] valueBytes = marshall(v);
+      List<Victim> victims;
+      Segment s = segmentFor(hash);
+      s.writeLock().lock();
+      try {
+         long existing = s.find(keyBytes, hash);
+         if (existing != 0) s.remove(existing);
+         s.insert(allocateEntry(keyBytes, valueBytes, hash, lifespan, maxIdle));
+         victims = s.chooseVictims();
+      } finally {
+         s.writeLock().unlock();
+      }
+      if (victims != null) evict(s, victims);
+   }
+
+   public boolean containsKey(Object k) {
+      int hash = hash(k);
+      Segment s = segmentFor(hash);
+      if (!s.mayContain(hash)) return false;
+      byte[] keyBytes = marshall(k);
+      long now = System.currentTimeMillis();
+      s.readLock().lock();
+      try {
+         long address = s.find(keyBytes, hash);
+         if (address == 0) return false;
+         if (!isExpired(address, now)) return true;
+      } finally {
+         s.readLock().unlock();
+      }
+      removeIfExpired(s, keyBytes, hash, now);
+      return false;
+   }
+
+   public InternalCacheEntry remove(Object k) {
+      int hash = hash(k);
+      byte[] keyBytes = marshall(k);
+      byte[] valueBytes;
+      long created, lastUsed, lifespan, maxIdle;
+      Segment s = segmentFor(hash);
+      s.writeLock().lock();
+      try {
+         long address = s.find(keyBytes, hash);
+         if (address == 0) return null;
+         if (isExpired(address, System.currentTimeMillis())) {
+            s.remove(address);
+            return null;
+         }
+         created = OffHeapMemory.getLong(address + CREATED);
+         lastUsed = OffHeapMemory.getLong(address + LAST_USED);
+         lifespan = OffHeapMemory.getLong(address + LIFESPAN);
+         maxIdle = OffHeapMemory.getLong(address + MAX_IDLE);
+         valueBytes = readValue(address);
+         s.remove(address);
+      } finally {
+         s.writeLock().unlock();
+      }
+      return InternalEntryFactory.create(k, unmarshall(valueBytes), created, lifespan, lastUsed, maxIdle);
+   }
+
+   public int size() {
+      long size = 0;
+      for (Segment s : segments) size += s.count;
+      return size > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) size;
+   }
+
+   public void clear() {
+      for (Segment s : segments) {
+         s.writeLock().lock();
+         try {
+            s.clear();
+         } finally {
+            s.writeLock().unlock();
+         }
+      }
+   }
+
+   /**
+    * Releases the native memory held by the entries, which would otherwise leak once the cache is stopped.  Runs after
+    * the {@link PassivationManager} has passivated the entries on shutdown.
+    */
+   @Stop(priority = 999)
+   public void stop() {
+      clear();
+   }
+
+   public Set<Object> keySet() {
+      Set<Object> keys = new HashSet<Object>();
+      for (InternalCacheEntry ice : this) keys.add(ice.getKey());
+      return Collections.unmodifiableSet(keys);
+   }
+
+   public Collection<Object> values() {
+      List<Object> values = new ArrayList<Object>();
+      for (InternalCacheEntry ice : this) values.add(ice.getValue());
+      return Collections.unmodifiableList(values);
+   }
+
+   public Set<InternalCacheEntry> entrySet() {
+      Set<InternalCacheEntry> entries = new HashSet<InternalCacheEntry>();
+      for (InternalCacheEntry ice : this) entries.add(Immutables.immutableInternalCacheEntry(ice));
+      return entries;
+   }
+
+   public void purgeExpired() {
+      long now = System.currentTimeMillis();
+      for (Segment s : segments) {
+         s.writeLock().lock();
+         try {
+            s.purgeExpired(now);
+         } finally {
+            s.writeLock().unlock();
+         }
+      }
+   }
+
+   public Iterator<InternalCacheEntry> iterator() {
+      return new SegmentSnapshotIterator();
+   }
+
+   @ManagedAttribute(description = "Number of bytes of native memory used by entries in this container")
+   @Metric(displayName = "Native memory used", displayType = DisplayType.SUMMARY)
+   public long getMemoryUsed() {
+      return memoryUsed.get();
+   }
+
+   @ManagedAttribute(description = "Number of entries held in this container")
+   @Metric(displayName = "Number of entries held in native memory", displayType = DisplayType.SUMMARY)
+   public int getNumberOfEntries() {
+      return size();
+   }
+
+   private Segment segmentFor(int hash) {
+      return segments[(hash >>> segmentShift) & segmentMask];
+   }
+
+   private static int hash(Object k) {
+      // spread bits the way BoundedConcurrentHashMap does, as both the segment and the bucket are picked from the hash
+      int h = k.hashCode();
+      h += h << 15 ^ 0xffffcd7d;
+      h ^= h >>> 10;
+      h += h << 3;
+      h ^= h >>> 6;
+      h += (h << 2) + (h << 14);
+      return h ^ h >>> 16;
+   }
+
+   private void removeIfExpired(Segment s, byte[] keyBytes, int hash, long now) {
+      s.writeLock().lock();
+      try {
+         long address = s.find(keyBytes, hash);
+         if (address != 0 && isExpired(address, now)) s.remove(address);
+      } finally {
+         s.writeLock().unlock();
+      }
+   }
+
+   /**
+    * Passivates the entries chosen for eviction and then removes them, unless they have been replaced or removed in the
+    * meantime.  Passivation does I/O, so it happens without holding the segment lock.
+    */
+   private void evict(Segment s, List<Victim> victims) {
+      Map<Object, InternalCacheEntry> evicted = new HashMap<Object, InternalCacheEntry>(victims.size() * 2);
+      for (Victim victim : victims) {
+         InternalCacheEntry ice = toInternalCacheEntry(victim.entry);
+         passivator.passivate(ice);
+         boolean removed;
+         s.writeLock().lock();
+         try {
+            removed = s.removeVictim(victim);
+         } finally {
+            s.writeLock().unlock();
+         }
+         if (removed) evicted.put(ice.getKey(), ice);
+      }
+      if (!evicted.isEmpty()) evictionManager.onEntryEviction(evicted);
+   }
+
+   private static int align(int length) {
+      return (length + 7) & ~7;
+   }
+
+   private static boolean isExpired(long address, long now) {
+      long lifespan = OffHeapMemory.getLong(address + LIFESPAN);
+      if (lifespan > -1 && now > OffHeapMemory.getLong(address + CREATED) + lifespan) return true;
+      long maxIdle = OffHeapMemory.getLong(address + MAX_IDLE);
+      return maxIdle > -1 && now > OffHeapMemory.getLong(address + LAST_USED) + maxIdle;
+   }
+
+   private static int entrySize(int keyLength, int valueLength) {
+      return HEADER_SIZE + align(keyLength) + valueLength;
+   }
+
+   private long allocateEntry(byte[] keyBytes, byte[] valueBytes, int hash, long lifespan, long maxIdle) {
+      int size = entrySize(keyBytes.length, valueBytes.length);
+      long address = OffHeapMemory.allocate(size);
+      memoryUsed.addAndGet(size);
+      long now = System.currentTimeMillis();
+      OffHeapMemory.putLong(address + NEXT, 0);
+      OffHeapMemory.putLong(address + LRU_PREV, 0);
+      OffHeapMemory.putLong(address + LRU_NEXT, 0);
+      OffHeapMemory.putLong(address + CREATED, now);
+      OffHeapMemory.putLong(address + LAST_USED, now);
+      OffHeapMemory.putLong(address + LIFESPAN, lifespan);
+      OffHeapMemory.putLong(address + MAX_IDLE, maxIdle);
+      OffHeapMemory.putInt(address + HASH, hash);
+      OffHeapMemory.putInt(address + KEY_LENGTH, keyBytes.length);
+      OffHeapMemory.putInt(address + VALUE_LENGTH, valueBytes.length);
+      OffHeapMemory.putInt(address + STATE, NOT_ACCESSED);
+      OffHeapMemory.write(keyBytes, address + HEADER_SIZE);
+      OffHeapMemory.write(valueBytes, address + HEADER_SIZE + align(keyBytes.length));
+      return address;
+   }
+
+   private void freeEntry(long address) {
+      memoryUsed.addAndGet(-entrySize(OffHeapMemory.getInt(address + KEY_LENGTH), OffHeapMemory.getInt(address + VALUE_LENGTH)));
+      OffHeapMemory.free(address);
+   }
+
+   private static byte[] readKey(long address) {
+      return OffHeapMemory.read(address + HEADER_SIZE, OffHeapMemory.getInt(address + KEY_LENGTH));
+   }
+
+   private static byte[] readValue(long address) {
+      int keyLength = OffHeapMemory.getInt(address + KEY_LENGTH);
+      return OffHeapMemory.read(address + HEADER_SIZE + align(keyLength), OffHeapMemory.getInt(address + VALUE_LENGTH));
+   }
+
+   private byte[] marshall(Object o) {
+      try {
+         return marshaller.objectToByteBuffer(o);
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         throw new CacheException("Interrupted while marshalling " + o, e);
+      } catch (IOException e) {
+         throw new CacheException("Unable to marshall " + o, e);
+      }
+   }
+
+   private Object unmarshall(byte[] bytes) {
+      try {
+         return marshaller.objectFromByteBuffer(bytes);
+      } catch (IOException e) {
+         throw new CacheException("Unable to unmarshall entry stored in native memory", e);
+      } catch (ClassNotFoundException e) {
+         throw new CacheException("Unable to unmarshall entry stored in native memory", e);
+      }
+   }
+
+   private InternalCacheEntry toInternalCacheEntry(RawEntry raw) {
+      return InternalEntryFactory.create(unmarshall(raw.key), unmarshall(raw.value), raw.created, raw.lifespan,
+                                         raw.lastUsed, raw.maxIdle);
+   }
+
+   /**
+    * Heap copy of a native entry, taken while holding the segment lock so that it can be unmarshalled after the lock
+    * has been released.
+    */
+   private static final class RawEntry {
+      final byte[] key;
+      final byte[] value;
+      final long created;
+      final long lastUsed;
+      final long lifespan;
+      final long maxIdle;
+
+      RawEntry(long address) {
+         key = readKey(address);
+         value = readValue(address);
+         created = OffHeapMemory.getLong(address + CREATED);
+         lastUsed = OffHeapMemory.getLong(address + LAST_USED);
+         lifespan = OffHeapMemory.getLong(address + LIFESPAN);
+         maxIdle = OffHeapMemory.getLong(address + MAX_IDLE);
+      }
+   }
+
+   /**
+    * An entry chosen for eviction, along with its native address, which is only ever compared with the addresses of
+    * the entries still held by the segment as the entry may have been freed in the meantime.
+    */
+   private static final class Victim {
+      final long address;
+      final int hash;
+      final RawEntry entry;
+
+      Victim(long address) {
+         this.address = address;
+         this.hash = OffHeapMemory.getInt(address + HASH);
+         this.entry = new RawEntry(address);
+      }
+   }
+
+   /**
+    * A segment of the container.  Apart from {@link #mayContain(int)}, methods must be called while holding the
+    * segment's write lock, or its read lock for those which don't modify the segment.
+    */
+   private final class Segment extends ReentrantReadWriteLock {
+
+      private static final long serialVersionUID = 4390211385315406447L;
+
+      final int maxEntries;
+      volatile long[] table = new long[INITIAL_SEGMENT_CAPACITY];
+      volatile int count;
+      // number of entries being passivated before they are removed
+      int evicting;
+      // the oldest entry is at the head, the most recently inserted or given a second chance at the tail
+      long lruHead;
+      long lruTail;
+
+      Segment(int maxEntries) {
+         this.maxEntries = maxEntries;
+      }
+
+      /**
+       * Checks the bucket for the given hash without locking, so that reads of absent keys can skip marshalling the
+       * key.  Like any read racing with a write, it may miss an entry being inserted concurrently.
+       */
+      boolean mayContain(int hash) {
+         long[] t = table;
+         return count != 0 && t[hash & (t.length - 1)] != 0;
+      }
+
+      long find(byte[] keyBytes, int hash) {
+         long address = table[hash & (table.length - 1)];
+         while (address != 0) {
+            if (OffHeapMemory.getInt(address + HASH) == hash
+                  && OffHeapMemory.getInt(address + KEY_LENGTH) == keyBytes.length
+                  && OffHeapMemory.equals(address + HEADER_SIZE, keyBytes))
+               return address;
+            address = OffHeapMemory.getLong(address + NEXT);
+         }
+         return 0;
+      }
+
+      void insert(long address) {
+         if (count + 1 > table.length * 3 / 4) resize();
+         int index = OffHeapMemory.getInt(address + HASH) & (table.length - 1);
+         OffHeapMemory.putLong(address + NEXT, table[index]);
+         table[index] = address;
+         linkLast(address);
+         count++;
+      }
+
+      void remove(long address) {
+         int index = OffHeapMemory.getInt(address + HASH) & (table.length - 1);
+         long previous = 0;
+         long current = table[index];
+         while (current != 0 && current != address) {
+            previous = current;
+            current = OffHeapMemory.getLong(current + NEXT);
+         }
+         if (current == 0) return;
+         long next = OffHeapMemory.getLong(address + NEXT);
+         if (previous == 0)
+            table[index] = next;
+         else
+            OffHeapMemory.putLong(previous + NEXT, next);
+         unlink(address);
+         if (OffHeapMemory.getInt(address + STATE) == EVICTING) evicting--;
+         count--;
+         freeEntry(address);
+      }
+
+      void moveToTail(long address) {
+         if (address == lruTail) return;
+         unlink(address);
+         linkLast(address);
+      }
+
+      /**
+       * Picks the entries to evict for the segment to get back to its share of <tt>maxEntries</tt>, once those already
+       * being evicted are gone, and marks them so that they are not picked again.
+       *
+       * @return the entries to passivate and remove, or null if there are none
+       */
+      List<Victim> chooseVictims() {
+         if (maxEntries < 0 || count - evicting <= maxEntries) return null;
+         List<Victim> victims = new ArrayList<Victim>(4);
+         // every entry gets at most one second chance, so two passes are enough
+         long address = lruHead;
+         for (int visited = 0, max = count * 2; count - evicting > maxEntries && address != 0 && visited < max; visited++) {
+            long next = OffHeapMemory.getLong(address + LRU_NEXT);
+            int state = OffHeapMemory.getInt(address + STATE);
+            if (state == ACCESSED) {
+               OffHeapMemory.putInt(address + STATE, NOT_ACCESSED);
+               moveToTail(address);
+               if (next == 0) next = address;
+            } else if (state == NOT_ACCESSED) {
+               OffHeapMemory.putInt(address + STATE, EVICTING);
+               evicting++;
+               victims.add(new Victim(address));
+            }
+            address = next;
+         }
+         return victims.isEmpty() ? null : victims;
+      }
+
+      /**
+       * Removes an entry returned by {@link #chooseVictims()} once it has been passivated, provided it is still held by
+       * the segment.
+       *
+       * @return true if the entry was removed
+       */
+      boolean removeVictim(Victim victim) {
+         long address = find(victim.entry.key, victim.hash);
+         if (address != victim.address || OffHeapMemory.getInt(address + STATE) != EVICTING
+               || OffHeapMemory.getLong(address + CREATED) != victim.entry.created)
+            return false;
+         remove(address);
+         return true;
+      }
+
+      void purgeExpired(long now) {
+         long address = lruHead;
+         while (address != 0) {
+            long next = OffHeapMemory.getLong(address + LRU_NEXT);
+            if (isExpired(address, now)) remove(address);
+            address = next;
+         }
+      }
+
+      List<RawEntry> snapshot() {
+         List<RawEntry> entries = new ArrayList<RawEntry>(count);
+         for (long address = lruHead; address != 0; address = OffHeapMemory.getLong(address + LRU_NEXT))
+            entries.add(new RawEntry(address));
+         return entries;
+      }
+
+      void clear() {
+         long address = lruHead;
+         while (address != 0) {
+            long next = OffHeapMemory.getLong(address + LRU_NEXT);
+            freeEntry(address);
+            address = next;
+         }
+         table = new long[INITIAL_SEGMENT_CAPACITY];
+         lruHead = lruTail = 0;
+         evicting = 0;
+         count = 0;
+      }
+
+      private void resize() {
+         long[] table = this.table;
+         long[] newTable = new long[table.length << 1];
+         int mask = newTable.length - 1;
+         for (long head : table) {
+            long address = head;
+            while (address != 0) {
+               long next = OffHeapMemory.getLong(address + NEXT);
+               int index = OffHeapMemory.getInt(address + HASH) & mask;
+               OffHeapMemory.putLong(address + NEXT, newTable[index]);
+               newTable[index] = address;
+               address = next;
+            }
+         }
+         table = newTable;
+      }
+
+      private void linkLast(long address) {
+         OffHeapMemory.putLong(address + LRU_PREV, lruTail);
+         OffHeapMemory.putLong(address + LRU_NEXT, 0);
+         if (lruTail == 0)
+            lruHead = address;
+         else
+            OffHeapMemory.putLong(lruTail + LRU_NEXT, address);
+         lruTail = address;
+      }
+
+      private void unlink(long address) {
+         long prev = OffHeapMemory.getLong(address + LRU_PREV);
+         long next = OffHeapMemory.getLong(address + LRU_NEXT);
+         if (prev == 0)
+            lruHead = next;
+         else
+            OffHeapMemory.putLong(prev + LRU_NEXT, next);
+         if (next == 0)
+            lruTail = prev;
+         else
+            OffHeapMemory.putLong(next + LRU_PREV, prev);
+      }
+   }
+
+   /**
+    * Iterates over the container one segment at a time, copying each segment's entries to the heap under the segment's
+    * read lock and unmarshalling them lazily as the iteration proceeds.
+    */
+   private final class SegmentSnapshotIterator implements Iterator<InternalCacheEntry> {
+      int nextSegment = 0;
+      Iterator<RawEntry> current = Collections.<RawEntry>emptyList().iterator();
+
+      public boolean hasNext() {
+         while (!current.hasNext()) {
+            if (nextSegment >= segments.length) return false;
+            Segment s = segments[nextSegment++];
+            s.readLock().lock();
+            try {
+               current = s.snapshot().iterator();
+            } finally {
+               s.readLock().unlock();
+            }
+         }
+         return true;
+      }
+
+      public InternalCacheEntry next() {
+         if (!hasNext()) throw new NoSuchElementException();
+         return toInternalCacheEntry(current.next());
+      }
+
+      public void remove() {
+         throw new UnsupportedOperationException();
+      }
+   }
+}
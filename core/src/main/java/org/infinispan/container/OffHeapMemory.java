@@ -0,0 +1,116 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.container;
+
+import sun.misc.Unsafe;
+
+import java.lang.reflect.Field;
+
+/**
+ * Thin wrapper around {@link sun.misc.Unsafe} used by {@link OffHeapDataContainer} to allocate, access and release
+ * native memory.  Byte arrays are copied to and from native memory a word at a time, so callers should keep native
+ * addresses 8-byte aligned.
+ *
+ * @since 5.1
+ */
+final class OffHeapMemory {
+
+   private static final Unsafe UNSAFE;
+   private static final long BYTE_ARRAY_BASE_OFFSET;
+
+   static {
+      try {
+         Field f = Unsafe.class.getDeclaredField("theUnsafe");
+         f.setAccessible(true);
+         UNSAFE = (Unsafe) f.get(null);
+      } catch (Exception e) {
+         throw new ExceptionInInitializerError(e);
+      }
+      BYTE_ARRAY_BASE_OFFSET = UNSAFE.arrayBaseOffset(byte[].class);
+   }
+
+   private OffHeapMemory() {
+   }
+
+   static long allocate(long bytes) {
+      return UNSAFE.allocateMemory(bytes);
+   }
+
+   static void free(long address) {
+      UNSAFE.freeMemory(address);
+   }
+
+   static long getLong(long address) {
+      return UNSAFE.getLong(address);
+   }
+
+   static void putLong(long address, long value) {
+      UNSAFE.putLong(address, value);
+   }
+
+   static int getInt(long address) {
+      return UNSAFE.getInt(address);
+   }
+
+   static void putInt(long address, int value) {
+      UNSAFE.putInt(address, value);
+   }
+
+   /**
+    * Copies the whole of <tt>src</tt> into native memory starting at <tt>address</tt>.
+    */
+   static void write(byte[] src, long address) {
+      int length = src.length;
+      int i = 0;
+      for (; i + 8 <= length; i += 8)
+         UNSAFE.putLong(address + i, UNSAFE.getLong(src, BYTE_ARRAY_BASE_OFFSET + i));
+      for (; i < length; i++)
+         UNSAFE.putByte(address + i, src[i]);
+   }
+
+   /**
+    * Reads <tt>length</tt> bytes of native memory starting at <tt>address</tt> into a new byte array.
+    */
+   static byte[] read(long address, int length) {
+      byte[] dst = new byte[length];
+      int i = 0;
+      for (; i + 8 <= length; i += 8)
+         UNSAFE.putLong(dst, BYTE_ARRAY_BASE_OFFSET + i, UNSAFE.getLong(address + i));
+      for (; i < length; i++)
+         dst[i] = UNSAFE.getByte(address + i);
+      return dst;
+   }
+
+   /**
+    * @return true if the native memory starting at <tt>address</tt> holds exactly the contents of <tt>bytes</tt>
+    */
+   static boolean equals(long address, byte[] bytes) {
+      int length = bytes.length;
+      int i = 0;
+      for (; i + 8 <= length; i += 8)
+         if (UNSAFE.getLong(address + i) != UNSAFE.getLong(bytes, BYTE_ARRAY_BASE_OFFSET + i)) return false;
+      for (; i < length; i++)
+         if (UNSAFE.getByte(address + i) != bytes[i]) return false;
+      return true;
+   }
+}
@@ -0,0 +1,60 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.container;
+
+import org.infinispan.container.entries.InternalCacheEntry;
+import org.infinispan.distribution.ch.HashSegments;
+
+import java.util.Iterator;
+import java.util.Set;
+
+/**
+ * A {@link DataContainer} whose keys are partitioned into a fixed number of {@link HashSegments hash segments}, so
+ * that the keys of a single segment can be iterated over without visiting the whole container. Segments are aligned
+ * with the hash wheel of the consistent hash, which allows state transfer to only visit the segments whose owners
+ * changed on a topology change.
+ *
+ * @since 5.1
+ */
+public interface SegmentAwareDataContainer extends DataContainer {
+
+   /**
+    * @return the segments the keys of this container are partitioned into
+    */
+   HashSegments getHashSegments();
+
+   /**
+    * Returns the keys in the container that belong to a segment. As with {@link #keySet()}, clients iterating over the
+    * returned set should use {@link #peek(Object)} rather than {@link #get(Object)}.
+    *
+    * @param segment a segment, between 0 and {@link HashSegments#getNumSegments()} - 1
+    * @return an unmodifiable view of the keys of the segment
+    */
+   Set<Object> keySet(int segment);
+
+   /**
+    * @param segment a segment, between 0 and {@link HashSegments#getNumSegments()} - 1
+    * @return an iterator over the entries in the container that belong to the segment
+    */
+   Iterator<InternalCacheEntry> iterator(int segment);
+}
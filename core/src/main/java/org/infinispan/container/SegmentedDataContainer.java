@@ -0,0 +1,206 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.container;
+
+import net.jcip.annotations.ThreadSafe;
+import org.infinispan.container.entries.InternalCacheEntry;
+import org.infinispan.distribution.ch.HashSegments;
+import org.infinispan.eviction.EvictionStrategy;
+import org.infinispan.eviction.EvictionThreadPolicy;
+import org.infinispan.util.concurrent.ConcurrentHashSet;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A {@link DefaultDataContainer} that additionally keeps track of the keys of each {@link HashSegments hash segment}.
+ * Entries are still stored in and looked up from a single map, so reads cost the same as in the default container;
+ * writes of a new key and removals also update the key set of the key's segment.
+ * <p/>
+ * A key is added to its segment before being put in the container, so that the key set of a segment never misses a key
+ * of the container. After every write of a key, the key set of its segment is brought in line with the container
+ * under a lock of that key set, so that a concurrent put and removal cannot leave a removed key behind. A key set may
+ * still briefly contain a key that was just removed: such keys are skipped when iterating.
+ *
+ * @since 5.1
+ */
+@ThreadSafe
+public class SegmentedDataContainer extends DefaultDataContainer implements SegmentAwareDataContainer {
+
+   private final HashSegments segments;
+   private final ConcurrentHashSet<Object>[] segmentKeys;
+
+   protected SegmentedDataContainer(int concurrencyLevel, HashSegments segments) {
+      super(concurrencyLevel);
+      this.segments = segments;
+      this.segmentKeys = createSegmentKeys(segments, concurrencyLevel);
+   }
+
+   protected SegmentedDataContainer(int concurrencyLevel, int maxEntries, long maxMemorySize, EvictionStrategy strategy,
+                                    EvictionThreadPolicy policy, HashSegments segments) {
+      super(concurrencyLevel, maxEntries, maxMemorySize, strategy, policy);
+      this.segments = segments;
+      this.segmentKeys = createSegmentKeys(segments, concurrencyLevel);
+   }
+
+   public static DataContainer boundedDataContainer(int concurrencyLevel, int maxEntries, long maxMemorySize,
+                                                    EvictionStrategy strategy, EvictionThreadPolicy policy,
+                                                    HashSegments segments) {
+      return new SegmentedDataContainer(concurrencyLevel, maxEntries, maxMemorySize, strategy, policy, segments);
+   }
+
+   public static DataContainer unBoundedDataContainer(int concurrencyLevel, HashSegments segments) {
+      return new SegmentedDataContainer(concurrencyLevel, segments);
+   }
+
+   @SuppressWarnings("unchecked")
+   private static ConcurrentHashSet<Object>[] createSegmentKeys(HashSegments segments, int concurrencyLevel) {
+      ConcurrentHashSet<Object>[] keys = new ConcurrentHashSet[segments.getNumSegments()];
+      for (int i = 0; i < keys.length; i++) keys[i] = new ConcurrentHashSet<Object>(concurrencyLevel);
+      return keys;
+   }
+
+   @Override
+   public HashSegments getHashSegments() {
+      return segments;
+   }
+
+   @Override
+   public void put(Object k, Object v, long lifespan, long maxIdle) {
+      Set<Object> keys = segmentKeys[segments.getSegment(k)];
+      keys.add(k);
+      super.put(k, v, lifespan, maxIdle);
+      // a concurrent removal may have dropped the key from its segment before the entry was published
+      updateSegment(keys, k);
+   }
+
+   @Override
+   protected void entryRemoved(Object key) {
+      updateSegment(segmentKeys[segments.getSegment(key)], key);
+   }
+
+   /**
+    * Adds the key to, or removes it from, the key set of its segment depending on whether the container holds it. As
+    * this is done under the lock of the key set after every write of the key, the last update sees the last write.
+    * The container itself is never written while holding the lock, as writing it can evict other keys.
+    */
+   private void updateSegment(Set<Object> keys, Object key) {
+      synchronized (keys) {
+         if (entries.containsKey(key))
+            keys.add(key);
+         else
+            keys.remove(key);
+      }
+   }
+
+   @Override
+   public void clear() {
+      super.clear();
+      for (ConcurrentHashSet<Object> keys : segmentKeys) keys.clear();
+   }
+
+   @Override
+   public Set<Object> keySet(final int segment) {
+      return new AbstractSet<Object>() {
+         @Override
+         public Iterator<Object> iterator() {
+            return new SegmentKeyIterator(segmentKeys[segment].iterator());
+         }
+
+         @Override
+         public boolean contains(Object o) {
+            return segmentKeys[segment].contains(o) && entries.containsKey(o);
+         }
+
+         @Override
+         public int size() {
+            int size = 0;
+            for (Iterator<Object> it = iterator(); it.hasNext(); it.next()) size++;
+            return size;
+         }
+      };
+   }
+
+   @Override
+   public Iterator<InternalCacheEntry> iterator(int segment) {
+      final Iterator<Object> keys = segmentKeys[segment].iterator();
+      return new Iterator<InternalCacheEntry>() {
+         InternalCacheEntry next;
+
+         @Override
+         public boolean hasNext() {
+            while (next == null && keys.hasNext()) next = entries.get(keys.next());
+            return next != null;
+         }
+
+         @Override
+         public InternalCacheEntry next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            InternalCacheEntry e = next;
+            next = null;
+            return e;
+         }
+
+         @Override
+         public void remove() {
+            throw new UnsupportedOperationException();
+         }
+      };
+   }
+
+   /**
+    * Skips the keys that were removed from the container but not yet from their segment
+    */
+   private class SegmentKeyIterator implements Iterator<Object> {
+      private final Iterator<Object> it;
+      private Object next;
+
+      SegmentKeyIterator(Iterator<Object> it) {
+         this.it = it;
+      }
+
+      @Override
+      public boolean hasNext() {
+         while (next == null && it.hasNext()) {
+            Object key = it.next();
+            if (entries.containsKey(key)) next = key;
+         }
+         return next != null;
+      }
+
+      @Override
+      public Object next() {
+         if (!hasNext()) throw new NoSuchElementException();
+         Object key = next;
+         next = null;
+         return key;
+      }
+
+      @Override
+      public void remove() {
+         throw new UnsupportedOperationException();
+      }
+   }
+}
@@ -0,0 +1,170 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.distribution;
+
+import org.infinispan.commands.CommandsFactory;
+import org.infinispan.commands.control.RehashControlCommand;
+import org.infinispan.container.InternalCacheEntrySizeCalculator;
+import org.infinispan.container.entries.InternalCacheEntry;
+import org.infinispan.container.entries.InternalCacheValue;
+import org.infinispan.distribution.ch.ConsistentHash;
+import org.infinispan.remoting.rpc.RpcManager;
+import org.infinispan.remoting.transport.Address;
+import org.infinispan.util.concurrent.NotifyingFutureImpl;
+import org.infinispan.util.concurrent.NotifyingNotifiableFuture;
+import org.infinispan.util.logging.Log;
+import org.infinispan.util.logging.LogFactory;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Streams the state pushed by a {@link RebalanceTask} to the new owners of its keys in bounded chunks, rather than
+ * accumulating the whole state for every target before pushing it.
+ * <p/>
+ * Entries are buffered per target until the buffer holds <tt>chunkSize</tt> entries or an estimated
+ * <tt>chunkMaxBytes</tt> bytes, at which point it is sent as a {@link RehashControlCommand} of type
+ * <tt>APPLY_STATE</tt>.  At most <tt>maxChunksInFlight</tt> chunks may be awaiting acknowledgement from the same target:
+ * once that limit is reached, pushing further state to the target blocks until its oldest chunk has been applied.  The
+ * memory used by a rehash is therefore bounded by the chunk size, the number of chunks in flight and the number of
+ * targets, regardless of the amount of data held by this node.
+ * <p/>
+ * This class is not thread safe, it is only meant to be used by the rehash thread.
+ *
+ * @since 5.1
+ */
+class ChunkedStatePusher {
+   private static final Log log = LogFactory.getLog(ChunkedStatePusher.class);
+   private static final boolean trace = log.isTraceEnabled();
+
+   private final RpcManager rpcManager;
+   private final CommandsFactory cf;
+   private final Address self;
+   private final int viewId;
+   private final ConsistentHash chOld;
+   private final ConsistentHash chNew;
+   private final int chunkSize;
+   private final long chunkMaxBytes;
+   private final int maxChunksInFlight;
+   private final long timeout;
+   private final RehashProgress progress;
+   private final InternalCacheEntrySizeCalculator sizeCalculator = new InternalCacheEntrySizeCalculator();
+   private final Map<Address, TargetState> targets = new LinkedHashMap<Address, TargetState>();
+
+   ChunkedStatePusher(RpcManager rpcManager, CommandsFactory cf, Address self, int viewId, ConsistentHash chOld,
+                      ConsistentHash chNew, int chunkSize, long chunkMaxBytes, int maxChunksInFlight, long timeout,
+                      RehashProgress progress) {
+      this.rpcManager = rpcManager;
+      this.cf = cf;
+      this.self = self;
+      this.viewId = viewId;
+      this.chOld = chOld;
+      this.chNew = chNew;
+      this.chunkSize = chunkSize;
+      this.chunkMaxBytes = chunkMaxBytes;
+      this.maxChunksInFlight = maxChunksInFlight;
+      this.timeout = timeout;
+      this.progress = progress;
+   }
+
+   /**
+    * Adds an entry to the state to be pushed to a target, sending the target's current chunk if it is full.
+    */
+   void push(Address target, Object key, InternalCacheEntry entry) throws InterruptedException, ExecutionException {
+      TargetState state = targets.get(target);
+      if (state == null) {
+         state = new TargetState();
+         targets.put(target, state);
+      }
+      state.chunk.put(key, entry.toInternalCacheValue());
+      state.chunkBytes += sizeCalculator.getSize(key, entry);
+      progress.keyQueued();
+      if (state.chunk.size() >= chunkSize || (chunkMaxBytes > 0 && state.chunkBytes >= chunkMaxBytes)) {
+         send(target, state);
+      }
+   }
+
+   /**
+    * Sends any partially filled chunks and waits until every chunk sent has been applied by its target.
+    */
+   void finish() throws InterruptedException, ExecutionException {
+      for (Map.Entry<Address, TargetState> e : targets.entrySet()) {
+         if (!e.getValue().chunk.isEmpty()) send(e.getKey(), e.getValue());
+      }
+      for (Map.Entry<Address, TargetState> e : targets.entrySet()) {
+         while (!e.getValue().inFlight.isEmpty()) awaitOldest(e.getValue());
+      }
+      log.debugf("Pushed %d keys in %d chunks to %d nodes", progress.getKeysPushed(), progress.getChunksPushed(), targets.size());
+   }
+
+   private void send(Address target, TargetState state) throws InterruptedException, ExecutionException {
+      while (state.inFlight.size() >= maxChunksInFlight) awaitOldest(state);
+
+      Map<Object, InternalCacheValue> chunk = state.chunk;
+      log.debugf("Pushing to node %s a chunk of %d keys", target, chunk.size());
+      if (trace) log.tracef("Pushing to node %s keys: %s", target, chunk.keySet());
+
+      RehashControlCommand cmd = cf.buildRehashControlCommand(RehashControlCommand.Type.APPLY_STATE, self, viewId,
+                                                              chunk, chOld, chNew);
+      NotifyingNotifiableFuture<Object> future = new NotifyingFutureImpl(null);
+      rpcManager.invokeRemotelyInFuture(Collections.singleton(target), cmd, false, future, timeout);
+      progress.chunkSent();
+      state.inFlight.add(new SentChunk(future, chunk.size(), state.chunkBytes));
+
+      state.chunk = new HashMap<Object, InternalCacheValue>();
+      state.chunkBytes = 0;
+   }
+
+   private void awaitOldest(TargetState state) throws InterruptedException, ExecutionException {
+      SentChunk sent = state.inFlight.removeFirst();
+      try {
+         sent.future.get();
+      } catch (ExecutionException e) {
+         progress.chunkFailed();
+         throw e;
+      }
+      progress.chunkApplied(sent.keys, sent.bytes);
+   }
+
+   private static class TargetState {
+      Map<Object, InternalCacheValue> chunk = new HashMap<Object, InternalCacheValue>();
+      long chunkBytes;
+      final LinkedList<SentChunk> inFlight = new LinkedList<SentChunk>();
+   }
+
+   private static class SentChunk {
+      final NotifyingNotifiableFuture<Object> future;
+      final int keys;
+      final long bytes;
+
+      SentChunk(NotifyingNotifiableFuture<Object> future, int keys, long bytes) {
+         this.future = future;
+         this.keys = keys;
+         this.bytes = bytes;
+      }
+   }
+}
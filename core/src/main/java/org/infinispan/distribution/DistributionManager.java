@@ -113,6 +113,19 @@ public interface DistributionManager {
     */
    InternalCacheEntry retrieveFromRemoteSource(Object key, InvocationContext ctx) throws Exception;
 
+   /**
+    * Retrieves several cache entries from remote sources.  Keys are grouped by the first owner other than the current
+    * node and a single {@link org.infinispan.commands.remote.ClusteredGetAllCommand} is sent to each such owner, with
+    * all owners being queried in parallel.  Keys an owner cannot vouch for, typically because a rehash is in progress,
+    * are retrieved individually as per {@link #retrieveFromRemoteSource(Object, InvocationContext)}.
+    *
+    * @param keys keys to look up
+    * @param ctx
+    * @return a map of the keys that could be located to their internal cache entries
+    * @throws Exception if something bad happens
+    */
+   Map<Object, InternalCacheEntry> retrieveFromRemoteSources(Collection<Object> keys, InvocationContext ctx) throws Exception;
+
    /**
     * Retrieves the consistent hash instance currently in use, an instance of the configured ConsistentHash
     * class (which defaults to {@link org.infinispan.distribution.ch.DefaultConsistentHash}.
@@ -22,8 +22,10 @@
  */
 package org.infinispan.distribution;
 
+import org.infinispan.CacheException;
 import org.infinispan.commands.CommandsFactory;
 import org.infinispan.commands.control.RehashControlCommand;
+import org.infinispan.commands.remote.ClusteredGetAllCommand;
 import org.infinispan.commands.remote.ClusteredGetCommand;
 import org.infinispan.commands.write.PutKeyValueCommand;
 import org.infinispan.commands.write.WriteCommand;
@@ -55,14 +57,18 @@ import org.infinispan.remoting.InboundInvocationHandler;
 import org.infinispan.remoting.responses.ClusteredGetResponseValidityFilter;
 import org.infinispan.remoting.responses.Response;
 import org.infinispan.remoting.responses.SuccessfulResponse;
-import org.infinispan.remoting.rpc.ResponseFilter;
+import org.infinispan.remoting.responses.UnsureResponse;
 import org.infinispan.remoting.rpc.ResponseMode;
 import org.infinispan.remoting.rpc.RpcManager;
 import org.infinispan.remoting.transport.Address;
 import org.infinispan.remoting.transport.Transport;
+import org.infinispan.util.concurrent.DeferredReturnFuture;
+import org.infinispan.util.concurrent.FutureListener;
+import org.infinispan.util.concurrent.NotifyingNotifiableFuture;
 import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
 import org.rhq.helpers.pluginAnnotations.agent.DataType;
+import org.rhq.helpers.pluginAnnotations.agent.MeasurementType;
 import org.rhq.helpers.pluginAnnotations.agent.Metric;
 import org.rhq.helpers.pluginAnnotations.agent.Operation;
 import org.rhq.helpers.pluginAnnotations.agent.Parameter;
@@ -77,12 +83,15 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.infinispan.context.Flag.*;
 
@@ -141,6 +150,12 @@ public class DistributionManagerImpl implements DistributionManager {
    private int lastViewIdFromPushConfirmation = -1;
    private final Map<Address, Integer> pushConfirmations = new HashMap<Address, Integer>(1);
 
+   private final RehashProgress rehashProgress = new RehashProgress();
+
+   private final OwnerLatencyTracker ownerLatencies = new OwnerLatencyTracker();
+   private final AtomicLong remoteGetsServedByFirstOwner = new AtomicLong(0);
+   private final AtomicLong remoteGetsFannedOut = new AtomicLong(0);
+
    @ManagedAttribute(description = "If true, the node has successfully joined the grid and is considered to hold state.  If false, the join process is still in progress.")
    @Metric(displayName = "Is join completed?", dataType = DataType.TRAIT)
    private volatile boolean joinComplete = false;
@@ -314,22 +329,204 @@ public class DistributionManagerImpl implements DistributionManager {
 
       List<Address> targets = locate(key);
       targets.remove(getSelf());
-      ResponseFilter filter = new ClusteredGetResponseValidityFilter(targets);
+      long staggerDelay = configuration.getRemoteGetStaggerDelay();
+      if (staggerDelay > 0 && targets.size() > 1)
+         return retrieveFromBestOwnerFirst(key, get, targets, staggerDelay);
+
       Map<Address, Response> responses = rpcManager.invokeRemotely(targets, get, ResponseMode.SYNCHRONOUS,
-                                                                   configuration.getSyncReplTimeout(), false, filter);
+                                                                   configuration.getSyncReplTimeout(), false,
+                                                                   new LatencyRecordingFilter(targets));
+      return toInternalCacheEntry(key, responses);
+   }
+
+   /**
+    * Sends the remote get to the best owner only, and to the other owners if the best owner does not answer within the
+    * stagger delay, fails, or does not have the entry while it or this node may be rehashing.  If the best owner answers
+    * late, its answer is still used if the other owners could not provide the entry; if the other owners provide it
+    * first, the request to the best owner is cancelled.
+    */
+   @SuppressWarnings("unchecked")
+   private InternalCacheEntry retrieveFromBestOwnerFirst(Object key, ClusteredGetCommand get, List<Address> targets, long staggerDelay) throws Exception {
+      long timeout = configuration.getSyncReplTimeout();
+      long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+      final Address best = ownerLatencies.selectBest(targets, getSelf());
+      final long sent = System.nanoTime();
+      NotifyingNotifiableFuture<Object> future = new DeferredReturnFuture();
+      future.attachListener(new FutureListener<Object>() {
+         @Override
+         public void futureDone(Future<Object> f) {
+            ownerLatencies.record(best, System.nanoTime() - sent);
+         }
+      });
+      rpcManager.invokeRemotelyInFuture(Collections.singleton(best), get, false, future, timeout);
+
+      try {
+         Map<Address, Response> responses = (Map<Address, Response>) future.get(staggerDelay, TimeUnit.MILLISECONDS);
+         InternalCacheEntry ice = toInternalCacheEntry(key, responses);
+         if (ice != null || (!isUnsure(responses) && !isRehashInProgress() && isJoinComplete())) {
+            // unless either side is rehashing the best owner is authoritative, so a null answer means the entry does not exist
+            remoteGetsServedByFirstOwner.incrementAndGet();
+            return ice;
+         }
+         // the best owner may not have received the entry yet because of a rehash
+         future = null;
+      } catch (TimeoutException e) {
+         if (trace) log.tracef("%s did not answer the remote get for %s within %d millis, asking the other owners", best, key, staggerDelay);
+      } catch (ExecutionException e) {
+         if (trace) log.tracef(e.getCause(), "Remote get for %s from %s failed, asking the other owners", key, best);
+         future = null;
+      }
 
-      if (!responses.isEmpty()) {
+      remoteGetsFannedOut.incrementAndGet();
+      List<Address> others = new ArrayList<Address>(targets);
+      others.remove(best);
+      long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+      Exception failure = null;
+      if (remaining > 0) {
+         try {
+            Map<Address, Response> responses = rpcManager.invokeRemotely(others, get, ResponseMode.SYNCHRONOUS, remaining,
+                                                                         false, new LatencyRecordingFilter(others));
+            InternalCacheEntry ice = toInternalCacheEntry(key, responses);
+            if (future != null && ice != null) future.cancel(true);
+            if (ice != null || future == null) return ice;
+         } catch (Exception e) {
+            if (future == null) throw e;
+            failure = e;
+         }
+      }
+
+      if (future != null) {
+         try {
+            return toInternalCacheEntry(key, (Map<Address, Response>) future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+         } catch (TimeoutException e) {
+            future.cancel(true);
+            if (failure != null) throw failure;
+            throw new org.infinispan.util.concurrent.TimeoutException("Timed out retrieving " + key + " from " + targets);
+         } catch (ExecutionException e) {
+            if (failure != null) throw failure;
+            Throwable cause = e.getCause();
+            throw cause instanceof Exception ? (Exception) cause : new CacheException(cause);
+         }
+      }
+      return null;
+   }
+
+   /**
+    * Checks whether a responder answered a remote get with an {@link UnsureResponse}, i.e. it could not tell whether it
+    * has the entry because the key is affected by a rehash it is taking part in.
+    */
+   private boolean isUnsure(Map<Address, Response> responses) {
+      if (responses != null) {
+         for (Response r : responses.values()) {
+            if (r instanceof UnsureResponse) return true;
+         }
+      }
+      return false;
+   }
+
+   private InternalCacheEntry toInternalCacheEntry(Object key, Map<Address, Response> responses) {
+      if (responses != null && !responses.isEmpty()) {
          for (Response r : responses.values()) {
             if (r instanceof SuccessfulResponse) {
                InternalCacheValue cacheValue = (InternalCacheValue) ((SuccessfulResponse) r).getResponseValue();
-               return cacheValue.toInternalCacheEntry(key);
+               if (cacheValue != null) return cacheValue.toInternalCacheEntry(key);
             }
          }
       }
-
       return null;
    }
 
+   /**
+    * Records how long each owner took to answer a remote get, before handing the response to the usual validity filter.
+    */
+   private class LatencyRecordingFilter extends ClusteredGetResponseValidityFilter {
+      private final long sent = System.nanoTime();
+
+      LatencyRecordingFilter(Collection<Address> pendingResponders) {
+         super(pendingResponders);
+      }
+
+      @Override
+      public boolean isAcceptable(Response response, Address address) {
+         ownerLatencies.record(address, System.nanoTime() - sent);
+         return super.isAcceptable(response, address);
+      }
+   }
+
+   @SuppressWarnings("unchecked")
+   public Map<Object, InternalCacheEntry> retrieveFromRemoteSources(Collection<Object> keys, InvocationContext ctx) throws Exception {
+      Map<Object, InternalCacheEntry> result = new HashMap<Object, InternalCacheEntry>(keys.size());
+      Map<Address, List<Object>> keysByTarget = new HashMap<Address, List<Object>>();
+      for (Map.Entry<Object, List<Address>> e : locateAll(keys).entrySet()) {
+         for (Address owner : e.getValue()) {
+            if (owner.equals(getSelf())) continue;
+            List<Object> targetKeys = keysByTarget.get(owner);
+            if (targetKeys == null) {
+               targetKeys = new ArrayList<Object>();
+               keysByTarget.put(owner, targetKeys);
+            }
+            targetKeys.add(e.getKey());
+            break;
+         }
+      }
+      if (keysByTarget.isEmpty()) return result;
+
+      // the first target is queried on the calling thread, while the others are in flight
+      long timeout = configuration.getSyncReplTimeout();
+      List<Address> targets = new ArrayList<Address>(keysByTarget.keySet());
+      List<NotifyingNotifiableFuture<Object>> futures = new ArrayList<NotifyingNotifiableFuture<Object>>(targets.size() - 1);
+      for (Address target : targets.subList(1, targets.size())) {
+         ClusteredGetAllCommand get = cf.buildClusteredGetAllCommand(keysByTarget.get(target), ctx.getFlags());
+         NotifyingNotifiableFuture<Object> future = new DeferredReturnFuture();
+         rpcManager.invokeRemotelyInFuture(Collections.singleton(target), get, false, future, timeout);
+         futures.add(future);
+      }
+
+      List<Object> unsureKeys = new ArrayList<Object>();
+      Address first = targets.get(0);
+      try {
+         ClusteredGetAllCommand get = cf.buildClusteredGetAllCommand(keysByTarget.get(first), ctx.getFlags());
+         Map<Address, Response> responses = rpcManager.invokeRemotely(Collections.singleton(first), get, ResponseMode.SYNCHRONOUS, timeout, false);
+         addRemoteEntries(responses.get(first), keysByTarget.get(first), result, unsureKeys);
+      } catch (Exception e) {
+         if (trace) log.tracef(e, "Bulk remote get from %s failed, retrieving its keys individually", first);
+         unsureKeys.addAll(keysByTarget.get(first));
+      }
+      for (int i = 0; i < futures.size(); i++) {
+         Address target = targets.get(i + 1);
+         try {
+            Map<Address, Response> responses = (Map<Address, Response>) futures.get(i).get();
+            addRemoteEntries(responses.get(target), keysByTarget.get(target), result, unsureKeys);
+         } catch (ExecutionException e) {
+            if (trace) log.tracef(e.getCause(), "Bulk remote get from %s failed, retrieving its keys individually", target);
+            unsureKeys.addAll(keysByTarget.get(target));
+         }
+      }
+
+      for (Object key : unsureKeys) {
+         InternalCacheEntry ice = retrieveFromRemoteSource(key, ctx);
+         if (ice != null) result.put(key, ice);
+      }
+      return result;
+   }
+
+   @SuppressWarnings("unchecked")
+   private void addRemoteEntries(Response response, List<Object> requested, Map<Object, InternalCacheEntry> result, List<Object> unsureKeys) {
+      if (!(response instanceof SuccessfulResponse)) {
+         unsureKeys.addAll(requested);
+         return;
+      }
+      Map<Object, InternalCacheValue> values = (Map<Object, InternalCacheValue>) ((SuccessfulResponse) response).getResponseValue();
+      for (Object key : requested) {
+         if (!values.containsKey(key)) continue;
+         InternalCacheValue value = values.get(key);
+         if (value == null)
+            unsureKeys.add(key);
+         else
+            result.put(key, value.toInternalCacheEntry(key));
+      }
+   }
+
    public Address getSelf() {
       return self;
    }
@@ -513,6 +710,7 @@ public class DistributionManagerImpl implements DistributionManager {
             lastViewId = e.getViewId();
             rehashInProgressMonitor.notifyAll();
          }
+         ownerLatencies.retain(e.getNewMembers());
 
          // make sure the pushConfirmations map has one entry for each cluster member
          // we will always have
@@ -555,6 +753,60 @@ public class DistributionManagerImpl implements DistributionManager {
       return rehashInProgress;
    }
 
+   public RehashProgress getRehashProgress() {
+      return rehashProgress;
+   }
+
+   @ManagedAttribute(description = "Number of entries this node has pushed to other nodes, and that were applied, during the current or last rehash")
+   @Metric(displayName = "Number of entries pushed by rehash", measurementType = MeasurementType.TRENDSUP)
+   public long getRehashKeysPushed() {
+      return rehashProgress.getKeysPushed();
+   }
+
+   @ManagedAttribute(description = "Estimated size, in bytes, of the entries this node has pushed to other nodes during the current or last rehash")
+   @Metric(displayName = "Bytes pushed by rehash", measurementType = MeasurementType.TRENDSUP)
+   public long getRehashBytesPushed() {
+      return rehashProgress.getBytesPushed();
+   }
+
+   @ManagedAttribute(description = "Number of entries this node has found it needs to push to other nodes during the current rehash that have not been applied yet")
+   @Metric(displayName = "Number of entries remaining to be pushed by rehash")
+   public long getRehashKeysRemaining() {
+      return rehashProgress.getKeysRemaining();
+   }
+
+   @ManagedAttribute(description = "Number of chunks of state pushed by this node that are awaiting acknowledgement")
+   @Metric(displayName = "Number of rehash chunks in flight")
+   public int getRehashChunksInFlight() {
+      return rehashProgress.getChunksInFlight();
+   }
+
+   public OwnerLatencyTracker getOwnerLatencies() {
+      return ownerLatencies;
+   }
+
+   @ManagedAttribute(description = "Average time, in microseconds, each owner took to answer the remote gets sent to it")
+   @Metric(displayName = "Remote get latency per owner", dataType = DataType.TRAIT)
+   public String getRemoteGetOwnerLatencies() {
+      Map<Address, Long> averages = ownerLatencies.getAverageNanos();
+      Map<Address, Long> micros = new HashMap<Address, Long>(averages.size());
+      for (Map.Entry<Address, Long> e : averages.entrySet())
+         micros.put(e.getKey(), TimeUnit.NANOSECONDS.toMicros(e.getValue()));
+      return micros.toString();
+   }
+
+   @ManagedAttribute(description = "Number of staggered remote gets answered by the first owner they were sent to")
+   @Metric(displayName = "Remote gets served by the first owner", measurementType = MeasurementType.TRENDSUP)
+   public long getRemoteGetsServedByFirstOwner() {
+      return remoteGetsServedByFirstOwner.get();
+   }
+
+   @ManagedAttribute(description = "Number of staggered remote gets that had to be sent to the other owners as well")
+   @Metric(displayName = "Remote gets sent to all owners", measurementType = MeasurementType.TRENDSUP)
+   public long getRemoteGetsFannedOut() {
+      return remoteGetsFannedOut.get();
+   }
+
    @Override
    public void markRehashTaskCompleted() {
       synchronized (rehashInProgressMonitor) {
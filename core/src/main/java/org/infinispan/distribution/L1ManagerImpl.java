@@ -22,23 +22,49 @@
  */
 package org.infinispan.distribution;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 import org.infinispan.commands.CommandsFactory;
 import org.infinispan.commands.write.InvalidateCommand;
 import org.infinispan.config.Configuration;
+import org.infinispan.container.DataContainer;
+import org.infinispan.container.L1SegregatedDataContainer;
+import org.infinispan.factories.KnownComponentNames;
+import org.infinispan.factories.annotations.ComponentName;
 import org.infinispan.factories.annotations.Inject;
+import org.infinispan.factories.annotations.Start;
+import org.infinispan.factories.annotations.Stop;
+import org.infinispan.jmx.annotations.MBean;
+import org.infinispan.jmx.annotations.ManagedAttribute;
+import org.infinispan.jmx.annotations.ManagedOperation;
 import org.infinispan.remoting.rpc.RpcManager;
 import org.infinispan.remoting.transport.Address;
 import org.infinispan.util.concurrent.AggregatingNotifyingFutureImpl;
-import org.infinispan.util.concurrent.ConcurrentHashSet;
 import org.infinispan.util.concurrent.NotifyingNotifiableFuture;
 import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
+import org.rhq.helpers.pluginAnnotations.agent.DisplayType;
+import org.rhq.helpers.pluginAnnotations.agent.MeasurementType;
+import org.rhq.helpers.pluginAnnotations.agent.Metric;
+import org.rhq.helpers.pluginAnnotations.agent.Operation;
+import org.rhq.helpers.pluginAnnotations.agent.Units;
 
+/**
+ * Keeps track, for each key, of the nodes that may hold it in their L1.  The nodes are recorded as bits of a mask,
+ * each node being given a bit the first time it requests a key, rather than as a set of addresses per key.  The record
+ * of a key expires once the L1 lifespan has elapsed since the key was last requested, as the entry has then expired
+ * from the L1 of the nodes that requested it, and expired records are purged periodically.
+ */
+@MBean(objectName = "L1Manager", description = "Component that manages the L1 cache")
 public class L1ManagerImpl implements L1Manager {
 	
 	private final Log log = LogFactory.getLog(L1ManagerImpl.class);
@@ -46,36 +72,89 @@ public class L1ManagerImpl implements L1Manager {
 	
 	private RpcManager rpcManager;
 	private CommandsFactory commandsFactory;
+	private Configuration configuration;
+	private DataContainer dataContainer;
+	private ScheduledExecutorService executor;
+	private ScheduledFuture<?> purgeTask;
 	private int threshold;
+	private long requestorLifespan;
 
-	private final ConcurrentMap<Object, Collection<Address>> requestors;
+	private final ConcurrentMap<Object, Requestors> requestors;
+	// nodes are never given back their bit, so that a record never needs to be updated when a node leaves
+	private final Map<Address, Integer> nodeBits = new ConcurrentHashMap<Address, Integer>();
+	private volatile Address[] nodes = new Address[0];
 	
 	public L1ManagerImpl() {
-	   requestors = new ConcurrentHashMap<Object, Collection<Address>>();
+	   requestors = new ConcurrentHashMap<Object, Requestors>();
    }
 	
    @Inject
-   public void init(Configuration configuration, RpcManager rpcManager, CommandsFactory commandsFactory) {
+   public void init(Configuration configuration, RpcManager rpcManager, CommandsFactory commandsFactory,
+                    DataContainer dataContainer,
+                    @ComponentName(KnownComponentNames.EVICTION_SCHEDULED_EXECUTOR) ScheduledExecutorService executor) {
    	this.rpcManager = rpcManager;
    	this.commandsFactory = commandsFactory;
+   	this.configuration = configuration;
+   	this.dataContainer = dataContainer;
+   	this.executor = executor;
    	this.threshold = configuration.getL1InvalidationThreshold();
    }
+
+   @Start
+   public void start() {
+      long l1Lifespan = configuration.getL1Lifespan();
+      // a requestor stores the entry in L1 at most a replication timeout after it asked for it
+      requestorLifespan = l1Lifespan > 0 ? l1Lifespan + configuration.getSyncReplTimeout() : -1;
+      long wakeUpInterval = configuration.getExpirationWakeUpInterval();
+      if (requestorLifespan > 0 && wakeUpInterval > 0) {
+         purgeTask = executor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+               purgeExpiredRequestors();
+            }
+         }, wakeUpInterval, wakeUpInterval, TimeUnit.MILLISECONDS);
+      }
+   }
+
+   @Stop
+   public void stop() {
+      if (purgeTask != null) purgeTask.cancel(true);
+      requestors.clear();
+   }
    
    public void addRequestor(Object key, Address origin) {
+      int bit = bitOf(origin);
+      long now = System.currentTimeMillis();
+      long expiry = requestorLifespan > 0 ? now + requestorLifespan : Long.MAX_VALUE;
       //we do a plain get first as that's likely to be enough
-      Collection<Address> as = requestors.get(key);
-      
-      if (as == null) {
-         // only if needed we create a new HashSet, but make sure we don't replace another one being created
-         as = new ConcurrentHashSet<Address>();
-         as.add(origin);
-         Collection<Address> previousAs = requestors.putIfAbsent(key, as);
-         if (previousAs != null) {
-            //another thread added it already, so use his copy and discard our proposed instance
-            previousAs.add(origin);
+      Requestors rs = requestors.get(key);
+      while (true) {
+         if (rs == null) {
+            // only if needed we create a new record, but make sure we don't replace another one being created
+            rs = new Requestors(bit, expiry);
+            Requestors previous = requestors.putIfAbsent(key, rs);
+            if (previous == null) return;
+            rs = previous;
+         }
+         if (rs.add(bit, expiry, now)) return;
+         // the record was removed while we were updating it, so start a new one
+         rs = requestors.get(key);
+      }
+   }
+
+   private int bitOf(Address node) {
+      Integer bit = nodeBits.get(node);
+      if (bit != null) return bit;
+      synchronized (nodeBits) {
+         bit = nodeBits.get(node);
+         if (bit == null) {
+            bit = nodes.length;
+            Address[] grown = Arrays.copyOf(nodes, bit + 1);
+            grown[bit] = node;
+            nodes = grown;
+            nodeBits.put(node, bit);
          }
-      } else {
-         as.add(origin);
+         return bit;
       }
    }
    
@@ -113,16 +192,28 @@ public class L1ManagerImpl implements L1Manager {
    
    private Collection<Address> buildInvalidationAddressList(Collection<Object> keys, Address origin) {
    	Collection<Address> addresses = new HashSet<Address>();
+   	long now = System.currentTimeMillis();
    	
    	for (Object key : keys) {
-   	   Collection<Address> as = requestors.remove(key);
-   	   if (as != null)
-   		   addresses.addAll(as);
+   	   Requestors rs = requestors.remove(key);
+   	   if (rs != null)
+   		   rs.collect(this, addresses, now);
    	}
    	if (origin != null)
    		addresses.remove(origin);
    	return addresses;
    }
+
+   /**
+    * Forgets the nodes that requested a key if the key has since expired from their L1
+    */
+   public void purgeExpiredRequestors() {
+      long now = System.currentTimeMillis();
+      for (Iterator<Map.Entry<Object, Requestors>> it = requestors.entrySet().iterator(); it.hasNext();) {
+         Map.Entry<Object, Requestors> e = it.next();
+         if (e.getValue().expire(now)) requestors.remove(e.getKey(), e.getValue());
+      }
+   }
    
    private boolean isUseMulticast(int nodes) {
    	// User has requested unicast or multicast only
@@ -133,4 +224,107 @@ public class L1ManagerImpl implements L1Manager {
    	return nodes > threshold;
    }
 
+   @ManagedAttribute(description = "Number of keys for which the nodes holding them in L1 are tracked")
+   @Metric(displayName = "Number of keys with L1 requestors", displayType = DisplayType.SUMMARY)
+   public int getNumberOfTrackedKeys() {
+      return requestors.size();
+   }
+
+   @ManagedAttribute(description = "Number of entries held in L1, or -1 if L1 entries are held together with owned entries")
+   @Metric(displayName = "Number of L1 entries", displayType = DisplayType.SUMMARY)
+   public int getNumberOfL1Entries() {
+      return dataContainer instanceof L1SegregatedDataContainer ? ((L1SegregatedDataContainer) dataContainer).getL1Size() : -1;
+   }
+
+   @ManagedAttribute(description = "Number of lookups served by L1, or -1 if L1 entries are held together with owned entries")
+   @Metric(displayName = "L1 hits", measurementType = MeasurementType.TRENDSUP, displayType = DisplayType.SUMMARY)
+   public long getL1Hits() {
+      return dataContainer instanceof L1SegregatedDataContainer ? ((L1SegregatedDataContainer) dataContainer).getL1Hits() : -1;
+   }
+
+   @ManagedAttribute(description = "Number of entries retrieved from their owners and stored in L1, or -1 if L1 entries are held together with owned entries")
+   @Metric(displayName = "L1 misses", measurementType = MeasurementType.TRENDSUP, displayType = DisplayType.SUMMARY)
+   public long getL1Misses() {
+      return dataContainer instanceof L1SegregatedDataContainer ? ((L1SegregatedDataContainer) dataContainer).getL1Misses() : -1;
+   }
+
+   @ManagedAttribute(description = "Percentage hit/(hit+miss) ratio for L1, or -1 if L1 entries are held together with owned entries")
+   @Metric(displayName = "L1 hit ratio", units = Units.PERCENTAGE, displayType = DisplayType.SUMMARY)
+   public double getL1HitRatio() {
+      long hits = getL1Hits();
+      if (hits < 0) return -1;
+      double total = hits + getL1Misses();
+      if (total <= 0)
+         return 0;
+      return hits / total;
+   }
+
+   @ManagedOperation(description = "Resets the L1 statistics")
+   @Operation(displayName = "Reset L1 statistics")
+   public void resetStatistics() {
+      if (dataContainer instanceof L1SegregatedDataContainer) ((L1SegregatedDataContainer) dataContainer).resetL1Statistics();
+   }
+
+   /**
+    * The nodes that requested a key, as a mask of their bits, and the time at which the key expires from their L1
+    */
+   private static final class Requestors {
+      private long mask;
+      // masks of the nodes beyond the first 64, only needed in larger clusters
+      private long[] moreMasks;
+      private long expiry;
+      private boolean removed;
+
+      Requestors(int bit, long expiry) {
+         set(bit);
+         this.expiry = expiry;
+      }
+
+      synchronized boolean add(int bit, long expiry, long now) {
+         if (removed) return false;
+         if (this.expiry < now) {
+            // every node that requested the key has since dropped it from its L1
+            mask = 0;
+            moreMasks = null;
+         }
+         set(bit);
+         this.expiry = Math.max(this.expiry, expiry);
+         return true;
+      }
+
+      private void set(int bit) {
+         if (bit < 64) {
+            mask |= 1L << bit;
+         } else {
+            int index = (bit >> 6) - 1;
+            if (moreMasks == null) moreMasks = new long[index + 1];
+            else if (moreMasks.length <= index) moreMasks = Arrays.copyOf(moreMasks, index + 1);
+            moreMasks[index] |= 1L << bit;
+         }
+      }
+
+      synchronized void collect(L1ManagerImpl manager, Collection<Address> addresses, long now) {
+         removed = true;
+         if (expiry < now) return;
+         // read after the bits, so that it knows every node in the masks
+         Address[] nodes = manager.nodes;
+         collect(mask, 0, nodes, addresses);
+         if (moreMasks != null) {
+            for (int i = 0; i < moreMasks.length; i++) collect(moreMasks[i], (i + 1) << 6, nodes, addresses);
+         }
+      }
+
+      private static void collect(long mask, int offset, Address[] nodes, Collection<Address> addresses) {
+         while (mask != 0) {
+            int bit = Long.numberOfTrailingZeros(mask);
+            addresses.add(nodes[offset + bit]);
+            mask &= mask - 1;
+         }
+      }
+
+      synchronized boolean expire(long now) {
+         if (expiry < now) removed = true;
+         return removed;
+      }
+   }
 }
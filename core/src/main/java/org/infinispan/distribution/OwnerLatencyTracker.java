@@ -0,0 +1,116 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.distribution;
+
+import org.infinispan.remoting.transport.Address;
+import org.infinispan.remoting.transport.TopologyAwareAddress;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps a moving average of the time each owner took to answer the remote gets sent to it, and uses it to pick the
+ * owner a remote get is sent to first.  Owners closer to this node in the cluster topology are preferred, and among
+ * owners that are equally close the fastest one is picked.  An owner no remote get has been sent to yet counts as the
+ * fastest, so that every owner ends up with an average.
+ *
+ * @since 5.1
+ */
+public class OwnerLatencyTracker {
+   // each new sample accounts for 1/2^WEIGHT_SHIFT of the average
+   private static final int WEIGHT_SHIFT = 3;
+
+   private final ConcurrentMap<Address, AtomicLong> averages = new ConcurrentHashMap<Address, AtomicLong>();
+
+   void record(Address owner, long nanos) {
+      AtomicLong average = averages.get(owner);
+      if (average == null) {
+         AtomicLong existing = averages.putIfAbsent(owner, average = new AtomicLong(nanos));
+         if (existing == null) return;
+         average = existing;
+      }
+      long current;
+      do {
+         current = average.get();
+      } while (!average.compareAndSet(current, current + ((nanos - current) >> WEIGHT_SHIFT)));
+   }
+
+   /**
+    * Forgets the owners that have left the cluster
+    */
+   void retain(Collection<Address> members) {
+      averages.keySet().retainAll(members);
+   }
+
+   /**
+    * @return the average response time of the owner, in nanoseconds, or -1 if no remote get has been sent to it
+    */
+   public long getAverageNanos(Address owner) {
+      AtomicLong average = averages.get(owner);
+      return average == null ? -1 : average.get();
+   }
+
+   public Map<Address, Long> getAverageNanos() {
+      Map<Address, Long> copy = new HashMap<Address, Long>(averages.size());
+      for (Map.Entry<Address, AtomicLong> e : averages.entrySet()) copy.put(e.getKey(), e.getValue().get());
+      return copy;
+   }
+
+   /**
+    * Picks the owner a remote get should be sent to first.  Owners are assumed to be listed in the order the consistent
+    * hash returned them, so the primary owner is picked when nothing else tells the owners apart.
+    *
+    * @param owners the owners to pick from, not including this node
+    * @param self the address of this node
+    */
+   Address selectBest(List<Address> owners, Address self) {
+      Address best = null;
+      int bestDistance = Integer.MAX_VALUE;
+      long bestLatency = Long.MAX_VALUE;
+      for (Address owner : owners) {
+         int distance = distance(self, owner);
+         long latency = Math.max(0, getAverageNanos(owner));
+         if (distance < bestDistance || (distance == bestDistance && latency < bestLatency)) {
+            best = owner;
+            bestDistance = distance;
+            bestLatency = latency;
+         }
+      }
+      return best;
+   }
+
+   private static int distance(Address self, Address owner) {
+      if (!(self instanceof TopologyAwareAddress) || !(owner instanceof TopologyAwareAddress)) return 0;
+      TopologyAwareAddress local = (TopologyAwareAddress) self;
+      TopologyAwareAddress remote = (TopologyAwareAddress) owner;
+      if (local.isSameMachine(remote)) return 0;
+      if (local.isSameRack(remote)) return 1;
+      if (local.isSameSite(remote)) return 2;
+      return 3;
+   }
+}
@@ -25,14 +25,17 @@ import org.infinispan.commands.control.RehashControlCommand;
 import org.infinispan.commands.write.InvalidateCommand;
 import org.infinispan.config.Configuration;
 import org.infinispan.container.DataContainer;
+import org.infinispan.container.SegmentAwareDataContainer;
 import org.infinispan.container.entries.InternalCacheEntry;
-import org.infinispan.container.entries.InternalCacheValue;
 import org.infinispan.context.Flag;
 import org.infinispan.context.InvocationContext;
 import org.infinispan.context.InvocationContextContainer;
+import org.infinispan.distribution.ch.AbstractWheelConsistentHash;
 import org.infinispan.distribution.ch.ConsistentHash;
 import org.infinispan.distribution.ch.ConsistentHashHelper;
+import org.infinispan.distribution.ch.HashSegments;
 import org.infinispan.interceptors.InterceptorChain;
+import org.infinispan.loaders.AbstractCacheLoader;
 import org.infinispan.loaders.CacheLoaderException;
 import org.infinispan.loaders.CacheStore;
 import org.infinispan.notifications.cachelistener.CacheNotifier;
@@ -41,13 +44,12 @@ import org.infinispan.remoting.transport.Address;
 import org.infinispan.util.Immutables;
 import org.infinispan.util.ReadOnlyDataContainerBackedKeySet;
 import org.infinispan.util.Util;
-import org.infinispan.util.concurrent.AggregatingNotifyingFutureImpl;
-import org.infinispan.util.concurrent.NotifyingNotifiableFuture;
 
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutionException;
@@ -67,16 +69,28 @@ import java.util.concurrent.ExecutionException;
  * - For K2, the old CH is A,B and the new CH is B,C
  * - B (since it is the backup owner and A left) pushes K2 to C
  * </pre>
+ * State is streamed to the new owners in bounded chunks by a {@link ChunkedStatePusher} while the data container and
+ * the cache store are being scanned, so the whole state never needs to be held in memory at once.
+ * <p/>
+ * If the data container is a {@link SegmentAwareDataContainer}, the old and new owners are computed once per hash
+ * segment rather than once per key, and only the keys of the segments whose owners changed are visited. Segments
+ * that a position of either hash wheel falls into are still rebalanced key by key.
  *
  * @author Bela Ban
  * @since 4.2
  */
 public class RebalanceTask extends RehashTask {
+   /**
+    * Number of stored entries to push that are loaded from the cache store at once
+    */
+   private static final int STORE_LOAD_BATCH_SIZE = 100;
+
    private final InvocationContextContainer icc;
    private final CacheNotifier notifier;
    private final InterceptorChain interceptorChain;
    private final int newViewId;
    private final boolean previousRehashWasInterrupted;
+   private final RehashProgress progress;
 
    public RebalanceTask(RpcManager rpcManager, CommandsFactory commandsFactory, Configuration conf,
                         DataContainer dataContainer, DistributionManagerImpl dmi,
@@ -88,6 +102,7 @@ public class RebalanceTask extends RehashTask {
       this.interceptorChain = interceptorChain;
       this.newViewId = newViewId;
       this.previousRehashWasInterrupted = rehashInterrupted;
+      this.progress = dmi.getRehashProgress();
    }
 
 
@@ -130,25 +145,63 @@ public class RebalanceTask extends RehashTask {
 
             int numOwners = configuration.getNumOwners();
 
-            // Contains the state to be pushed to various servers. The state is a hashmap of keys and values
-            final Map<Address, Map<Object, InternalCacheValue>> states = new HashMap<Address, Map<Object, InternalCacheValue>>();
-
-            for (InternalCacheEntry ice : dataContainer) {
-               rebalance(ice.getKey(), ice, numOwners, chOld, chNew, null, states, keysToRemove);
+            // Streams the state to be pushed to the various servers in chunks, as it is found
+            progress.reset();
+            ChunkedStatePusher pusher = new ChunkedStatePusher(rpcManager, cf, self, newViewId, chOld, chNew,
+                  configuration.getRehashChunkSize(), configuration.getRehashChunkMaxBytes(),
+                  configuration.getRehashMaxChunksInFlight(), configuration.getRehashRpcTimeout(), progress);
+
+            // Owners of each hash segment, if the data container is partitioned into segments; null for the
+            // segments whose keys don't all have the same owners
+            HashSegments segments = null;
+            List<Address>[] oldSegmentOwners = null, newSegmentOwners = null;
+            if (dataContainer instanceof SegmentAwareDataContainer && chOld instanceof AbstractWheelConsistentHash
+                  && chNew instanceof AbstractWheelConsistentHash) {
+               segments = ((SegmentAwareDataContainer) dataContainer).getHashSegments();
+               oldSegmentOwners = locateSegments((AbstractWheelConsistentHash) chOld, segments, numOwners);
+               newSegmentOwners = locateSegments((AbstractWheelConsistentHash) chNew, segments, numOwners);
             }
 
-            // Only fetch the data from the cache store if the cache store is not shared
-            CacheStore cacheStore = distributionManager.getCacheStoreForRehashing();
-            if (cacheStore != null) {
-               for (Object key : cacheStore.loadAllKeys(new ReadOnlyDataContainerBackedKeySet(dataContainer))) {
-                  rebalance(key, null, numOwners, chOld, chNew, cacheStore, states, keysToRemove);
+            try {
+               if (segments != null) {
+                  rebalanceSegments((SegmentAwareDataContainer) dataContainer, oldSegmentOwners, newSegmentOwners,
+                        numOwners, chOld, chNew, pusher, keysToRemove);
+               } else {
+                  for (InternalCacheEntry ice : dataContainer) {
+                     rebalance(ice.getKey(), ice, numOwners, chOld, chNew, null, pusher, keysToRemove);
+                  }
                }
-            } else {
-               if (trace) log.trace("No cache store or cache store is shared, not rebalancing stored keys");
-            }
 
-            // Now for each server S in states.keys(): push states.get(S) to S via RPC
-            pushState(chOld, chNew, states);
+               // Only fetch the data from the cache store if the cache store is not shared
+               CacheStore cacheStore = distributionManager.getCacheStoreForRehashing();
+               if (cacheStore != null) {
+                  List<Object> keysToLoad = new ArrayList<Object>(STORE_LOAD_BATCH_SIZE);
+                  for (Object key : cacheStore.loadAllKeys(new ReadOnlyDataContainerBackedKeySet(dataContainer))) {
+                     int segment = segments != null ? segments.getSegment(key) : -1;
+                     if (segment >= 0 && oldSegmentOwners[segment] != null && newSegmentOwners[segment] != null) {
+                        rebalance(key, null, oldSegmentOwners[segment], newSegmentOwners[segment], chNew, keysToLoad,
+                              pusher, keysToRemove);
+                     } else {
+                        rebalance(key, null, numOwners, chOld, chNew, keysToLoad, pusher, keysToRemove);
+                     }
+                     if (keysToLoad.size() >= STORE_LOAD_BATCH_SIZE) {
+                        loadStoredState(cacheStore, keysToLoad, numOwners, chOld, chNew, pusher);
+                        keysToLoad.clear();
+                     }
+                  }
+                  loadStoredState(cacheStore, keysToLoad, numOwners, chOld, chNew, pusher);
+               } else {
+                  if (trace) log.trace("No cache store or cache store is shared, not rebalancing stored keys");
+               }
+
+               // wait to see if all servers received the new state
+               // TODO we might want to retry the state transfer operation if it failed on some of the nodes and the view hasn't changed
+               pusher.finish();
+            } catch (ExecutionException e) {
+               log.errorTransferringState(e);
+               throw e;
+            }
+            log.debugf("Node finished pushing data for rehash %d.", newViewId);
          } else {
             if (trace) log.trace("Rehash not enabled, so not pushing state");
          }
@@ -202,33 +255,6 @@ public class RebalanceTask extends RehashTask {
       }
    }
 
-   private void pushState(ConsistentHash chOld, ConsistentHash chNew, Map<Address, Map<Object, InternalCacheValue>> states) throws InterruptedException, ExecutionException {
-      NotifyingNotifiableFuture<Object> stateTransferFuture = new AggregatingNotifyingFutureImpl(null, states.size());
-      for (Map.Entry<Address, Map<Object, InternalCacheValue>> entry : states.entrySet()) {
-         final Address target = entry.getKey();
-         Map<Object, InternalCacheValue> state = entry.getValue();
-         log.debugf("Pushing to node %s %d keys", target, state.size());
-         log.tracef("Pushing to node %s keys: %s", target, state.keySet());
-
-         final RehashControlCommand cmd = cf.buildRehashControlCommand(RehashControlCommand.Type.APPLY_STATE, self,
-                                                                       newViewId, state, chOld, chNew);
-
-         rpcManager.invokeRemotelyInFuture(Collections.singleton(target), cmd,
-                                           false, stateTransferFuture, configuration.getRehashRpcTimeout());
-      }
-
-      // wait to see if all servers received the new state
-      // TODO we might want to retry the state transfer operation if it failed on some of the nodes and the view hasn't changed
-      try {
-         stateTransferFuture.get();
-      } catch (ExecutionException e) {
-         log.errorTransferringState(e);
-         throw e;
-      }
-      log.debugf("Node finished pushing data for rehash %d.", newViewId);
-   }
-
-
    /**
     * Computes the list of old and new servers for a given key K and value V. Adds (K, V) to the <code>states</code> map
     * if K should be pushed to other servers. Adds K to the <code>keysToRemove</code> list if this node is no longer an
@@ -239,16 +265,28 @@ public class RebalanceTask extends RehashTask {
     * @param numOwners    The number of owners (grabbed from the configuration)
     * @param chOld        The old (current) consistent hash
     * @param chNew        The new consistent hash
-    * @param cacheStore   If the value is <code>null</code>, try to load it from this cache store
-    * @param states       The result hashmap. Keys are servers, values are states (hashmaps) to be pushed to them
+    * @param keysToLoad   If the value is <code>null</code> and K should be pushed by this node, K is added to this list
+    *                     so that its value is loaded from the cache store in bulk, see {@link #loadStoredState}
+    * @param pusher       The pusher that (K, V) is handed to for each server it should be pushed to
     * @param keysToRemove A list that the keys that we need to remove will be added to
     */
    protected void rebalance(Object key, InternalCacheEntry value, int numOwners, ConsistentHash chOld, ConsistentHash chNew,
-                            CacheStore cacheStore, Map<Address, Map<Object, InternalCacheValue>> states, List<Object> keysToRemove) {
+                            List<Object> keysToLoad, ChunkedStatePusher pusher, List<Object> keysToRemove)
+         throws InterruptedException, ExecutionException {
       // 1. Get the old and new servers for key K
       List<Address> oldOwners = chOld.locate(key, numOwners);
       List<Address> newOwners = chNew.locate(key, numOwners);
 
+      rebalance(key, value, oldOwners, newOwners, chNew, keysToLoad, pusher, keysToRemove);
+   }
+
+   /**
+    * Same as {@link #rebalance(Object, InternalCacheEntry, int, ConsistentHash, ConsistentHash, List, ChunkedStatePusher, List)},
+    * with the old and new servers for K already located.
+    */
+   private void rebalance(Object key, InternalCacheEntry value, List<Address> oldOwners, List<Address> newOwners,
+                          ConsistentHash chNew, List<Object> keysToLoad, ChunkedStatePusher pusher,
+                          List<Object> keysToRemove) throws InterruptedException, ExecutionException {
       // 2. If the target set for K hasn't changed --> no-op
       if (oldOwners.equals(newOwners))
          return;
@@ -269,24 +307,10 @@ public class RebalanceTask extends RehashTask {
 
       // 4. Push K to all the new servers which are *not* in the old servers list
       if (self.equals(pushingOwner)) {
-         if (value == null) {
-            try {
-               value = cacheStore.load(key);
-            } catch (CacheLoaderException e) {
-               log.failedLoadingValueFromCacheStore(key);
-            }
-         }
-
-         for (Address server : newOwners) {
-            if (!oldOwners.contains(server)) { // server doesn't have K
-               Map<Object, InternalCacheValue> map = states.get(server);
-               if (map == null) {
-                  map = new HashMap<Object, InternalCacheValue>();
-                  states.put(server, map);
-               }
-               if (value != null)
-                  map.put(key, value.toInternalCacheValue());
-            }
+         if (value == null && keysToLoad != null) {
+            keysToLoad.add(key);
+         } else {
+            addState(key, value, oldOwners, newOwners, pusher);
          }
       }
 
@@ -296,6 +320,81 @@ public class RebalanceTask extends RehashTask {
       }
    }
 
+   /**
+    * Locates the owners of each hash segment, see {@link AbstractWheelConsistentHash#locateSegment(HashSegments, int, int)}.
+    */
+   @SuppressWarnings("unchecked")
+   private List<Address>[] locateSegments(AbstractWheelConsistentHash ch, HashSegments segments, int numOwners) {
+      List<Address>[] owners = new List[segments.getNumSegments()];
+      for (int i = 0; i < owners.length; i++) owners[i] = ch.locateSegment(segments, i, numOwners);
+      return owners;
+   }
+
+   /**
+    * Rebalances the entries of the data container segment by segment, skipping the segments whose owners haven't
+    * changed.
+    */
+   private void rebalanceSegments(SegmentAwareDataContainer container, List<Address>[] oldSegmentOwners,
+                                  List<Address>[] newSegmentOwners, int numOwners, ConsistentHash chOld,
+                                  ConsistentHash chNew, ChunkedStatePusher pusher, List<Object> keysToRemove)
+         throws InterruptedException, ExecutionException {
+      int moved = 0, split = 0;
+      for (int segment = 0; segment < oldSegmentOwners.length; segment++) {
+         List<Address> oldOwners = oldSegmentOwners[segment];
+         List<Address> newOwners = newSegmentOwners[segment];
+         if (oldOwners == null || newOwners == null) {
+            // the keys of the segment don't all have the same owners
+            split++;
+            for (Iterator<InternalCacheEntry> it = container.iterator(segment); it.hasNext();) {
+               InternalCacheEntry ice = it.next();
+               rebalance(ice.getKey(), ice, numOwners, chOld, chNew, null, pusher, keysToRemove);
+            }
+         } else if (!oldOwners.equals(newOwners)) {
+            moved++;
+            for (Iterator<InternalCacheEntry> it = container.iterator(segment); it.hasNext();) {
+               InternalCacheEntry ice = it.next();
+               rebalance(ice.getKey(), ice, oldOwners, newOwners, chNew, null, pusher, keysToRemove);
+            }
+         }
+      }
+      log.debugf("Rehash %d visited %d moved and %d split segments out of %d", newViewId, moved, split,
+            oldSegmentOwners.length);
+   }
+
+   /**
+    * Pushes (K, V) to each of the new owners of K that is not an old owner of K.
+    */
+   private void addState(Object key, InternalCacheEntry value, List<Address> oldOwners, List<Address> newOwners,
+                         ChunkedStatePusher pusher) throws InterruptedException, ExecutionException {
+      if (value == null) return;
+      for (Address server : newOwners) {
+         if (!oldOwners.contains(server)) { // server doesn't have K
+            pusher.push(server, key, value);
+         }
+      }
+   }
+
+   /**
+    * Loads the values of a batch of at most {@link #STORE_LOAD_BATCH_SIZE} stored keys this node has to push, using a
+    * single {@link AbstractCacheLoader#loadAll(org.infinispan.loaders.CacheLoader, java.util.Set)} call, and hands them to the <code>pusher</code>.
+    */
+   private void loadStoredState(CacheStore cacheStore, List<Object> batch, int numOwners, ConsistentHash chOld,
+                                ConsistentHash chNew, ChunkedStatePusher pusher) throws InterruptedException, ExecutionException {
+      if (batch.isEmpty()) return;
+      Map<Object, InternalCacheEntry> loaded;
+      try {
+         loaded = AbstractCacheLoader.loadAll(cacheStore, new HashSet<Object>(batch));
+      } catch (CacheLoaderException e) {
+         log.failedLoadingValueFromCacheStore(batch);
+         return;
+      }
+      if (trace) log.tracef("Loaded %d of %d stored keys to push", loaded.size(), batch.size());
+      for (Map.Entry<Object, InternalCacheEntry> e : loaded.entrySet()) {
+         Object key = e.getKey();
+         addState(key, e.getValue(), chOld.locate(key, numOwners), chNew.locate(key, numOwners), pusher);
+      }
+   }
+
 
    public Address getMyAddress() {
       return rpcManager != null && rpcManager.getTransport() != null ? rpcManager.getTransport().getAddress() : null;
@@ -0,0 +1,95 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.distribution;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks the progress of the state pushed by this node during the current, or last, rehash.  A key is <i>queued</i>
+ * once it has been found to need pushing to another node and <i>pushed</i> once the chunk containing it has been
+ * applied by that node, so the difference between the two is the number of keys remaining.
+ *
+ * @since 5.1
+ */
+public class RehashProgress {
+   private final AtomicLong keysQueued = new AtomicLong(0);
+   private final AtomicLong keysPushed = new AtomicLong(0);
+   private final AtomicLong bytesPushed = new AtomicLong(0);
+   private final AtomicLong chunksPushed = new AtomicLong(0);
+   private final AtomicInteger chunksInFlight = new AtomicInteger(0);
+
+   void reset() {
+      keysQueued.set(0);
+      keysPushed.set(0);
+      bytesPushed.set(0);
+      chunksPushed.set(0);
+      chunksInFlight.set(0);
+   }
+
+   void keyQueued() {
+      keysQueued.incrementAndGet();
+   }
+
+   void chunkSent() {
+      chunksInFlight.incrementAndGet();
+   }
+
+   void chunkApplied(int keys, long bytes) {
+      chunksInFlight.decrementAndGet();
+      chunksPushed.incrementAndGet();
+      keysPushed.addAndGet(keys);
+      bytesPushed.addAndGet(bytes);
+   }
+
+   void chunkFailed() {
+      chunksInFlight.decrementAndGet();
+   }
+
+   public long getKeysQueued() {
+      return keysQueued.get();
+   }
+
+   public long getKeysPushed() {
+      return keysPushed.get();
+   }
+
+   public long getKeysRemaining() {
+      return Math.max(0, keysQueued.get() - keysPushed.get());
+   }
+
+   /**
+    * @return the estimated size, in bytes, of the keys and values pushed
+    */
+   public long getBytesPushed() {
+      return bytesPushed.get();
+   }
+
+   public long getChunksPushed() {
+      return chunksPushed.get();
+   }
+
+   public int getChunksInFlight() {
+      return chunksInFlight.get();
+   }
+}
@@ -225,6 +225,26 @@ public abstract class AbstractWheelConsistentHash extends AbstractConsistentHash
          return hashIds;
    }
 
+   /**
+    * Locates the owners of all the keys whose normalized hash is <code>normalizedHash</code>.
+    */
+   protected abstract List<Address> locateHash(int normalizedHash, int replCount);
+
+   /**
+    * Locates the owners shared by all the keys of a hash segment, without hashing any key.
+    *
+    * @return the owners of every key in <code>segment</code>, or <code>null</code> if a position on the wheel falls
+    *         into the segment, in which case its keys don't all have the same owners and have to be located one by one
+    */
+   public List<Address> locateSegment(HashSegments segments, int segment, int replCount) {
+      int start = segments.getSegmentStart(segment);
+      // a key is owned by the first position on the wheel greater than or equal to its hash, so the segment is
+      // only split if there is a position in [start, end)
+      if (getPositionIndex(start) != getPositionIndex(segments.getSegmentEnd(segment)))
+         return null;
+      return locateHash(start, replCount);
+   }
+
    public int getNormalizedHash(Object key) {
       // more efficient impl
       return hashFunction.hash(key) & Integer.MAX_VALUE; // make sure no negative numbers are involved.
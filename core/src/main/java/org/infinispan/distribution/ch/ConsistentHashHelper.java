@@ -123,6 +123,20 @@ public class ConsistentHashHelper {
       return ch;
    }
 
+   /**
+    * Creates the hash segments that the data container is partitioned into, hashing keys with the hash function and
+    * groupers of the user's configuration, just like the consistent hash does.
+    *
+    * @param c configuration
+    * @return the hash segments, or <code>null</code> if the configuration doesn't partition the data container
+    */
+   public static HashSegments createHashSegments(Configuration c) {
+      if (c.getNumHashSegments() <= 0) return null;
+      Hash h = (Hash) Util.getInstance(c.getHashFunctionClass(), c.getClassLoader());
+      GroupManager groupManager = c.isGroupsEnabled() ? new GroupManagerImpl(c.getGroupers()) : null;
+      return new HashSegments(h, groupManager, c.getNumHashSegments());
+   }
+
    /**
     * Creates a new consistent hash instance based on the user's configuration, and populates the consistent hash
     * with the collection of addresses passed in.
@@ -43,21 +43,25 @@ public class DefaultConsistentHash extends AbstractWheelConsistentHash {
    }
 
    public List<Address> locate(Object key, int replCount) {
-      return locateInternal(key, replCount, null);
+      return locateInternal(getNormalizedHash(getGrouping(key)), replCount, null);
    }
 
    @Override
    public boolean isKeyLocalToAddress(Address target, Object key, int replCount) {
-      return locateInternal(key, replCount, target).contains(target);
+      return locateInternal(getNormalizedHash(getGrouping(key)), replCount, target).contains(target);
+   }
+
+   @Override
+   protected List<Address> locateHash(int normalizedHash, int replCount) {
+      return locateInternal(normalizedHash, replCount, null);
    }
 
    /**
-    * Locate <code>replCount</code> owners for key <code>key</code> and return the list.
+    * Locate <code>replCount</code> owners for the normalized hash of a key and return the list.
     * If one of the owners is identical to <code>target</code>, return <code>null</code> instead.
     */
-   private List<Address> locateInternal(Object key, int replCount, Address target) {
+   private List<Address> locateInternal(int normalizedHash, int replCount, Address target) {
       int actualReplCount = Math.min(replCount, caches.size());
-      int normalizedHash = getNormalizedHash(getGrouping(key));
       List<Address> owners = new ArrayList<Address>(replCount);
 
       for (Iterator<Map.Entry<Integer, Address>> it = getPositionsIterator(normalizedHash); it.hasNext();) {
@@ -0,0 +1,100 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.distribution.ch;
+
+import org.infinispan.distribution.group.GroupManager;
+import org.infinispan.util.hash.Hash;
+
+/**
+ * Partitions the hash space used by the wheel-based consistent hashes into a fixed number of contiguous, equally sized
+ * segments. A key belongs to the segment its normalized hash falls into, computed exactly as
+ * {@link AbstractWheelConsistentHash} does when locating the key (including key grouping), so all the keys of a segment
+ * that no wheel position falls into share the same owners, see {@link AbstractWheelConsistentHash#locateSegment(HashSegments, int, int)}.
+ * <p />
+ * Unlike the positions on the wheel, segments never change with the cluster membership, which is what allows data
+ * containers to keep their keys partitioned by segment.
+ *
+ * @since 5.1
+ */
+public final class HashSegments {
+
+   private final Hash hashFunction;
+   private final GroupManager groupManager;
+   private final int numSegments;
+   private final long segmentSize;
+
+   public HashSegments(Hash hashFunction, GroupManager groupManager, int numSegments) {
+      if (numSegments <= 0)
+         throw new IllegalArgumentException("The number of segments must be greater than zero: " + numSegments);
+      this.hashFunction = hashFunction;
+      this.groupManager = groupManager;
+      this.numSegments = numSegments;
+      // the normalized hash space is [0, Integer.MAX_VALUE]
+      this.segmentSize = (Integer.MAX_VALUE + (long) numSegments) / numSegments;
+   }
+
+   public int getNumSegments() {
+      return numSegments;
+   }
+
+   /**
+    * @return the segment that <code>key</code> belongs to
+    */
+   public int getSegment(Object key) {
+      return getSegmentForHash(getNormalizedHash(key));
+   }
+
+   /**
+    * @return the segment that a normalized hash falls into
+    */
+   public int getSegmentForHash(int normalizedHash) {
+      return (int) (normalizedHash / segmentSize);
+   }
+
+   /**
+    * @return the lowest normalized hash belonging to <code>segment</code>
+    */
+   public int getSegmentStart(int segment) {
+      return (int) (segment * segmentSize);
+   }
+
+   /**
+    * @return the highest normalized hash belonging to <code>segment</code>
+    */
+   public int getSegmentEnd(int segment) {
+      return (int) Math.min(segment * segmentSize + segmentSize - 1, Integer.MAX_VALUE);
+   }
+
+   int getNormalizedHash(Object key) {
+      String group = groupManager != null ? groupManager.getGroup(key) : null;
+      return hashFunction.hash(group != null ? group : key) & Integer.MAX_VALUE;
+   }
+
+   @Override
+   public String toString() {
+      return "HashSegments{" +
+            "numSegments=" + numSegments +
+            ", hashFunction=" + hashFunction +
+            '}';
+   }
+}
@@ -95,21 +95,25 @@ public class TopologyAwareConsistentHash extends AbstractWheelConsistentHash {
 
    @Override
    public List<Address> locate(Object key, int replCount) {
-      return locateInternal(key, replCount, null);
+      return locateInternal(getNormalizedHash(getGrouping(key)), replCount, null);
    }
 
    @Override
    public boolean isKeyLocalToAddress(Address target, Object key, int replCount) {
-      return locateInternal(key, replCount, target).contains(target);
+      return locateInternal(getNormalizedHash(getGrouping(key)), replCount, target).contains(target);
+   }
+
+   @Override
+   protected List<Address> locateHash(int normalizedHash, int replCount) {
+      return locateInternal(normalizedHash, replCount, null);
    }
 
    /**
-    * Locate <code>replCount</code> owners for key <code>key</code> and return the list.
+    * Locate <code>replCount</code> owners for the normalized hash of a key and return the list.
     * If one of the owners is identical to <code>target</code>, return after adding <code>target</code> to the list.
     */
-   private List<Address> locateInternal(Object key, int replCount, Address target) {
+   private List<Address> locateInternal(int keyNormalizedHash, int replCount, Address target) {
       int actualReplCount = Math.min(replCount, caches.size());
-      int keyNormalizedHash = getNormalizedHash(getGrouping(key));
       int firstOwnerIndex = getPositionIndex(keyNormalizedHash);
       Address firstOwner = positionValues[firstOwnerIndex];
 
@@ -26,6 +26,11 @@ import org.infinispan.config.ConfigurationException;
 import org.infinispan.config.parsing.XmlConfigHelper;
 import org.infinispan.container.DataContainer;
 import org.infinispan.container.DefaultDataContainer;
+import org.infinispan.container.L1SegregatedDataContainer;
+import org.infinispan.container.OffHeapDataContainer;
+import org.infinispan.container.SegmentedDataContainer;
+import org.infinispan.distribution.ch.ConsistentHashHelper;
+import org.infinispan.distribution.ch.HashSegments;
 import org.infinispan.eviction.EvictionStrategy;
 import org.infinispan.eviction.EvictionThreadPolicy;
 import org.infinispan.factories.annotations.DefaultFactoryFor;
@@ -49,9 +54,17 @@ public class DataContainerFactory extends AbstractNamedCacheComponentFactory imp
       } else if (DefaultDataContainer.class.getName().equals(configuration.getDataContainerClass())) {
          EvictionStrategy st = configuration.getEvictionStrategy();
          int level = configuration.getConcurrencyLevel();
+         // only distributed caches partition their keys by hash segment, as only they rehash
+         HashSegments segments = configuration.getCacheMode().isDistributed() ?
+               ConsistentHashHelper.createHashSegments(configuration) : null;
+         // L1 entries only get a container of their own if it is given a size
+         int l1MaxEntries = segments != null && configuration.isL1CacheEnabled() ? configuration.getL1MaxEntries() : -1;
+         EvictionStrategy l1Strategy = configuration.getL1EvictionStrategy();
         
          switch (st) {
             case NONE:         
+               if (l1MaxEntries > 0) return (T) L1SegregatedDataContainer.unBoundedDataContainer(level, segments, l1MaxEntries, l1Strategy);
+               if (segments != null) return (T) SegmentedDataContainer.unBoundedDataContainer(level, segments);
                return (T) DefaultDataContainer.unBoundedDataContainer(level);
             case UNORDERED:   
             case LRU:
@@ -60,14 +73,29 @@ public class DataContainerFactory extends AbstractNamedCacheComponentFactory imp
                int maxEntries = configuration.getEvictionMaxEntries();
                //handle case when < 0 value signifies unbounded container 
                if(maxEntries < 0) {
+                   if (l1MaxEntries > 0) return (T) L1SegregatedDataContainer.unBoundedDataContainer(level, segments, l1MaxEntries, l1Strategy);
+                   if (segments != null) return (T) SegmentedDataContainer.unBoundedDataContainer(level, segments);
                    return (T) DefaultDataContainer.unBoundedDataContainer(level);
                }
                EvictionThreadPolicy policy = configuration.getEvictionThreadPolicy();
-               return (T) DefaultDataContainer.boundedDataContainer(level, maxEntries, st, policy);
+               long maxMemorySize = configuration.getEvictionMaxMemorySize();
+               if (l1MaxEntries > 0)
+                  return (T) L1SegregatedDataContainer.boundedDataContainer(level, maxEntries, maxMemorySize, st, policy, segments, l1MaxEntries, l1Strategy);
+               if (segments != null)
+                  return (T) SegmentedDataContainer.boundedDataContainer(level, maxEntries, maxMemorySize, st, policy, segments);
+               return (T) DefaultDataContainer.boundedDataContainer(level, maxEntries, maxMemorySize, st, policy);
             default:
                throw new ConfigurationException("Unknown eviction strategy "
                         + configuration.getEvictionStrategy());
          }
+      } else if (OffHeapDataContainer.class.getName().equals(configuration.getDataContainerClass())) {
+         int level = configuration.getConcurrencyLevel();
+         int maxEntries = configuration.getEvictionMaxEntries();
+         // LRU and LIRS are both approximated by the off-heap container's per-segment LRU ordering
+         if (configuration.getEvictionStrategy() == EvictionStrategy.NONE || maxEntries < 0) {
+            return (T) OffHeapDataContainer.unBoundedDataContainer(level);
+         }
+         return (T) OffHeapDataContainer.boundedDataContainer(level, maxEntries);
       } else {
          DataContainer dataContainer = DataContainer.class.cast(Util.getInstance(configuration.getDataContainerClass(), configuration.getClassLoader()));
          XmlConfigHelper.setValues(dataContainer, configuration.getDataContainerProperties(), false, true);
@@ -23,6 +23,7 @@
 package org.infinispan.interceptors;
 
 import org.infinispan.commands.read.GetKeyValueCommand;
+import org.infinispan.commands.read.GetManyCommand;
 import org.infinispan.commands.write.PutKeyValueCommand;
 import org.infinispan.commands.write.PutMapCommand;
 import org.infinispan.commands.write.RemoveCommand;
@@ -93,6 +94,13 @@ public class ActivationInterceptor extends CacheLoaderInterceptor {
       return retval;
    }
 
+   @Override
+   public Object visitGetManyCommand(InvocationContext ctx, GetManyCommand command) throws Throwable {
+      Object retval = super.visitGetManyCommand(ctx, command);
+      removeFromStore(command.getKeys().toArray());
+      return retval;
+   }
+
    private void removeFromStore(Object... keys) throws CacheLoaderException {
       if (!clm.isShared()) {
          for (Object k : keys) {
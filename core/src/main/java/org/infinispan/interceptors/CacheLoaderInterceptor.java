@@ -22,9 +22,12 @@
  */
 package org.infinispan.interceptors;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.infinispan.commands.read.GetKeyValueCommand;
+import org.infinispan.commands.read.GetManyCommand;
 import org.infinispan.commands.write.InvalidateCommand;
 import org.infinispan.commands.write.PutKeyValueCommand;
 import org.infinispan.commands.write.RemoveCommand;
@@ -42,6 +45,7 @@ import org.infinispan.interceptors.base.JmxStatsCommandInterceptor;
 import org.infinispan.jmx.annotations.MBean;
 import org.infinispan.jmx.annotations.ManagedAttribute;
 import org.infinispan.jmx.annotations.ManagedOperation;
+import org.infinispan.loaders.AbstractCacheLoader;
 import org.infinispan.loaders.CacheLoader;
 import org.infinispan.loaders.CacheLoaderManager;
 import org.infinispan.notifications.cachelistener.CacheNotifier;
@@ -92,13 +96,19 @@ public class CacheLoaderInterceptor extends JmxStatsCommandInterceptor {
       return invokeNextInterceptor(ctx, command);
    }
 
+   @Override
+   public Object visitGetManyCommand(InvocationContext ctx, GetManyCommand command) throws Throwable {
+      if (!command.getKeys().isEmpty()) {
+         loadAllIfNeeded(ctx, command.getKeys().toArray(), true);
+      }
+      return invokeNextInterceptor(ctx, command);
+   }
+
    @Override
    public Object visitInvalidateCommand(InvocationContext ctx, InvalidateCommand command) throws Throwable {
       Object[] keys;
       if ((keys = command.getKeys()) != null && keys.length > 0) {
-         for (Object key : command.getKeys()) {
-            loadIfNeeded(ctx, key);
-         }
+         loadAllIfNeeded(ctx, keys, false);
       }
       return invokeNextInterceptor(ctx, command);
    }
@@ -166,6 +176,59 @@ public class CacheLoaderInterceptor extends JmxStatsCommandInterceptor {
       }
    }
 
+   /**
+    * Same as {@link #loadIfNeeded(InvocationContext, Object)} for several keys, except that the keys missing from the
+    * data container are loaded with a single {@link CacheLoader#loadAll(java.util.Set)} call.
+    *
+    * @param updateStats whether keys not found in the loader count as cache loader misses
+    */
+   protected void loadAllIfNeeded(InvocationContext ctx, Object[] keys, boolean updateStats) throws Throwable {
+      if (ctx.hasFlag(Flag.SKIP_CACHE_STORE) || ctx.hasFlag(Flag.SKIP_CACHE_LOAD)) {
+         return; //skip operation
+      }
+      // keys that we *may* need to load, mapped to whether we hold a temporary lock on them
+      Map<Object, Boolean> toLoad = new LinkedHashMap<Object, Boolean>();
+      for (Object key : keys) {
+         CacheEntry e = entryFactory.wrapEntryForReading(ctx, key);
+         if (e != null && !e.isNull()) continue;
+
+         // Obtain a temporary lock to verify the key is not being concurrently added
+         boolean keyLocked = entryFactory.acquireLock(ctx, key);
+         // check again, in case there is a concurrent addition
+         if (dataContainer.containsKey(key)) {
+            log.trace("No need to load.  Key exists in the data container.");
+            if (keyLocked) {
+               entryFactory.releaseLock(key);
+            }
+         } else {
+            toLoad.put(key, keyLocked);
+         }
+      }
+      if (toLoad.isEmpty()) return;
+
+      Map<Object, InternalCacheEntry> loaded = AbstractCacheLoader.loadAll(loader, toLoad.keySet());
+      for (Map.Entry<Object, Boolean> e : toLoad.entrySet()) {
+         Object key = e.getKey();
+         boolean keyLocked = e.getValue();
+         InternalCacheEntry loadedEntry = loaded.get(key);
+         if (loadedEntry == null) {
+            if (log.isTraceEnabled()) {
+               log.tracef("No need to load %s.  Key doesn't exist in the loader.", key);
+            }
+            if (keyLocked) {
+               entryFactory.releaseLock(key);
+            }
+            if (updateStats && getStatisticsEnabled()) {
+               cacheMisses.incrementAndGet();
+            }
+         } else {
+            // Reuse the lock and create a new entry for loading
+            MVCCEntry n = entryFactory.wrapEntryForWriting(ctx, key, true, false, keyLocked, false, true);
+            recordLoadedEntry(ctx, key, n, loadedEntry);
+         }
+      }
+   }
+
    /**
     * This method records a loaded entry, performing the following steps:
     * <ol>
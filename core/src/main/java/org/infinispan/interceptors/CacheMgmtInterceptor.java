@@ -23,17 +23,22 @@
 package org.infinispan.interceptors;
 
 import org.infinispan.commands.read.GetKeyValueCommand;
+import org.infinispan.commands.read.GetManyCommand;
 import org.infinispan.commands.write.EvictCommand;
 import org.infinispan.commands.write.PutKeyValueCommand;
 import org.infinispan.commands.write.PutMapCommand;
 import org.infinispan.commands.write.RemoveCommand;
 import org.infinispan.container.DataContainer;
+import org.infinispan.container.DefaultDataContainer;
 import org.infinispan.context.InvocationContext;
 import org.infinispan.factories.annotations.Inject;
 import org.infinispan.interceptors.base.JmxStatsCommandInterceptor;
 import org.infinispan.jmx.annotations.MBean;
 import org.infinispan.jmx.annotations.ManagedAttribute;
 import org.infinispan.jmx.annotations.ManagedOperation;
+import org.infinispan.stats.LatencyHistogram;
+import org.infinispan.stats.LatencyType;
+import org.infinispan.util.concurrent.StripedCounter;
 import org.rhq.helpers.pluginAnnotations.agent.DisplayType;
 import org.rhq.helpers.pluginAnnotations.agent.MeasurementType;
 import org.rhq.helpers.pluginAnnotations.agent.Metric;
@@ -46,23 +51,25 @@ import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Captures cache management statistics
+ * <p/>
+ * Counters are striped and latencies are recorded in nanoseconds into {@link LatencyHistogram}s, so that threads
+ * updating the statistics concurrently seldom contend; nothing is recorded while statistics are disabled.
  *
  * @author Jerry Gauthier
  * @since 4.0
  */
 @MBean(objectName = "Statistics", description = "General statistics such as timings, hit/miss ratio, etc.")
 public class CacheMgmtInterceptor extends JmxStatsCommandInterceptor {
-   private AtomicLong hitTimes = new AtomicLong(0);
-   private AtomicLong missTimes = new AtomicLong(0);
-   private AtomicLong storeTimes = new AtomicLong(0);
-   private AtomicLong hits = new AtomicLong(0);
-   private AtomicLong misses = new AtomicLong(0);
-   private AtomicLong stores = new AtomicLong(0);
-   private AtomicLong evictions = new AtomicLong(0);
-   private AtomicLong start = new AtomicLong(System.currentTimeMillis());
-   private AtomicLong reset = new AtomicLong(start.get());
-   private AtomicLong removeHits = new AtomicLong(0);
-   private AtomicLong removeMisses = new AtomicLong(0);
+   // the number of hits, misses and stores is the number of latencies recorded
+   private final LatencyHistogram hitTimes = new LatencyHistogram();
+   private final LatencyHistogram missTimes = new LatencyHistogram();
+   private final LatencyHistogram storeTimes = new LatencyHistogram();
+   private final LatencyHistogram removeTimes = new LatencyHistogram();
+   private final StripedCounter evictions = new StripedCounter();
+   private final StripedCounter removeHits = new StripedCounter();
+   private final StripedCounter removeMisses = new StripedCounter();
+   private final AtomicLong start = new AtomicLong(System.currentTimeMillis());
+   private final AtomicLong reset = new AtomicLong(start.get());
 
    private DataContainer dataContainer;
 
@@ -74,35 +81,51 @@ public class CacheMgmtInterceptor extends JmxStatsCommandInterceptor {
    @Override
    public Object visitEvictCommand(InvocationContext ctx, EvictCommand command) throws Throwable {
       Object returnValue = invokeNextInterceptor(ctx, command);
-      evictions.incrementAndGet();
+      if (getStatisticsEnabled()) evictions.increment();
       return returnValue;
    }
 
    @Override
    public Object visitGetKeyValueCommand(InvocationContext ctx, GetKeyValueCommand command) throws Throwable {
-      long t1 = System.currentTimeMillis();
+      if (!getStatisticsEnabled()) return invokeNextInterceptor(ctx, command);
+      long t1 = System.nanoTime();
       Object retval = invokeNextInterceptor(ctx, command);
-      long t2 = System.currentTimeMillis();
+      long t2 = System.nanoTime();
       if (retval == null) {
-         missTimes.getAndAdd(t2 - t1);
-         misses.incrementAndGet();
+         missTimes.record(t2 - t1);
       } else {
-         hitTimes.getAndAdd(t2 - t1);
-         hits.incrementAndGet();
+         hitTimes.record(t2 - t1);
+      }
+      return retval;
+   }
+
+   @Override
+   public Object visitGetManyCommand(InvocationContext ctx, GetManyCommand command) throws Throwable {
+      if (!getStatisticsEnabled()) return invokeNextInterceptor(ctx, command);
+      long t1 = System.nanoTime();
+      Map retval = (Map) invokeNextInterceptor(ctx, command);
+      long t2 = System.nanoTime();
+      int requested = command.getKeys().size();
+      if (requested > 0) {
+         // account each key as a read of its own, sharing the time of the bulk read between them
+         int found = retval == null ? 0 : retval.size();
+         long timePerKey = (t2 - t1) / requested;
+         hitTimes.record(timePerKey, found);
+         missTimes.record(timePerKey, requested - found);
       }
       return retval;
    }
 
    @Override
    public Object visitPutMapCommand(InvocationContext ctx, PutMapCommand command) throws Throwable {
+      if (!getStatisticsEnabled()) return invokeNextInterceptor(ctx, command);
       Map data = command.getMap();
-      long t1 = System.currentTimeMillis();
+      long t1 = System.nanoTime();
       Object retval = invokeNextInterceptor(ctx, command);
-      long t2 = System.currentTimeMillis();
+      long t2 = System.nanoTime();
 
       if (data != null && !data.isEmpty()) {
-         storeTimes.getAndAdd(t2 - t1);
-         stores.getAndAdd(data.size());
+         storeTimes.record((t2 - t1) / data.size(), data.size());
       }
       return retval;
    }
@@ -110,21 +133,25 @@ public class CacheMgmtInterceptor extends JmxStatsCommandInterceptor {
    @Override
    //Map.put(key,value) :: oldValue
    public Object visitPutKeyValueCommand(InvocationContext ctx, PutKeyValueCommand command) throws Throwable {
-      long t1 = System.currentTimeMillis();
+      if (!getStatisticsEnabled()) return invokeNextInterceptor(ctx, command);
+      long t1 = System.nanoTime();
       Object retval = invokeNextInterceptor(ctx, command);
-      long t2 = System.currentTimeMillis();
-      storeTimes.getAndAdd(t2 - t1);
-      stores.incrementAndGet();
+      long t2 = System.nanoTime();
+      storeTimes.record(t2 - t1);
       return retval;
    }
 
    @Override
    public Object visitRemoveCommand(InvocationContext ctx, RemoveCommand command) throws Throwable {
+      if (!getStatisticsEnabled()) return invokeNextInterceptor(ctx, command);
+      long t1 = System.nanoTime();
       Object retval = invokeNextInterceptor(ctx, command);
+      long t2 = System.nanoTime();
+      removeTimes.record(t2 - t1);
       if (retval == null) {
-         removeMisses.incrementAndGet();
+         removeMisses.increment();
       } else {
-         removeHits.incrementAndGet();
+         removeHits.increment();
       }
       return retval;
    }
@@ -132,44 +159,44 @@ public class CacheMgmtInterceptor extends JmxStatsCommandInterceptor {
    @ManagedAttribute(description = "Number of cache attribute hits")
    @Metric(displayName = "Number of cache hits", measurementType = MeasurementType.TRENDSUP, displayType = DisplayType.SUMMARY)
    public long getHits() {
-      return hits.get();
+      return hitTimes.getCount();
    }
 
    @ManagedAttribute(description = "Number of cache attribute misses")
    @Metric(displayName = "Number of cache misses", measurementType = MeasurementType.TRENDSUP, displayType = DisplayType.SUMMARY)
    public long getMisses() {
-      return misses.get();
+      return missTimes.getCount();
    }
 
    @ManagedAttribute(description = "Number of cache removal hits")
    @Metric(displayName = "Number of cache removal hits", measurementType = MeasurementType.TRENDSUP, displayType = DisplayType.SUMMARY)
    public long getRemoveHits() {
-      return removeHits.get();
+      return removeHits.sum();
    }
 
    @ManagedAttribute(description = "Number of cache removals where keys were not found")
    @Metric(displayName = "Number of cache removal misses", measurementType = MeasurementType.TRENDSUP, displayType = DisplayType.SUMMARY)
    public long getRemoveMisses() {
-      return removeMisses.get();
+      return removeMisses.sum();
    }
 
    @ManagedAttribute(description = "number of cache attribute put operations")
    @Metric(displayName = "Number of cache puts" , measurementType = MeasurementType.TRENDSUP, displayType = DisplayType.SUMMARY)
    public long getStores() {
-      return stores.get();
+      return storeTimes.getCount();
    }
 
    @ManagedAttribute(description = "Number of cache eviction operations")
    @Metric(displayName = "Number of cache evictions", measurementType = MeasurementType.TRENDSUP, displayType = DisplayType.SUMMARY)
    public long getEvictions() {
-      return evictions.get();
+      return evictions.sum();
    }
 
    @ManagedAttribute(description = "Percentage hit/(hit+miss) ratio for the cache")
    @Metric(displayName = "Hit ratio", units = Units.PERCENTAGE, displayType = DisplayType.SUMMARY)
    public double getHitRatio() {
-      long hitsL = hits.get();
-      double total = hitsL + misses.get();
+      long hitsL = getHits();
+      double total = hitsL + getMisses();
       // The reason for <= is that equality checks
       // should be avoided for floating point numbers.
       if (total <= 0)
@@ -180,26 +207,136 @@ public class CacheMgmtInterceptor extends JmxStatsCommandInterceptor {
    @ManagedAttribute(description = "read/writes ratio for the cache")
    @Metric(displayName = "Read/write ratio", units = Units.PERCENTAGE, displayType = DisplayType.SUMMARY)
    public double getReadWriteRatio() {
-      if (stores.get() == 0)
+      long stores = getStores();
+      if (stores == 0)
          return 0;
-      return (((double) (hits.get() + misses.get()) / (double) stores.get()));
+      return (((double) (getHits() + getMisses()) / (double) stores));
    }
 
    @ManagedAttribute(description = "Average number of milliseconds for a read operation on the cache")
    @Metric(displayName = "Average read time", units = Units.MILLISECONDS, displayType = DisplayType.SUMMARY)
    public long getAverageReadTime() {
-      long total = hits.get() + misses.get();
+      return TimeUnit.NANOSECONDS.toMillis(getAverageReadTimeNanos());
+   }
+
+   @ManagedAttribute(description = "Average number of nanoseconds for a read operation on the cache")
+   @Metric(displayName = "Average read time in nanoseconds", units = Units.NANOSECONDS, displayType = DisplayType.SUMMARY)
+   public long getAverageReadTimeNanos() {
+      long total = getHits() + getMisses();
       if (total == 0)
          return 0;
-      return (hitTimes.get() + missTimes.get()) / total;
+      return (hitTimes.getTotalNanos() + missTimes.getTotalNanos()) / total;
    }
 
    @ManagedAttribute(description = "Average number of milliseconds for a write operation in the cache")
    @Metric(displayName = "Average write time", units = Units.MILLISECONDS, displayType = DisplayType.SUMMARY)
    public long getAverageWriteTime() {
-      if (stores.get() == 0)
-         return 0;
-      return (storeTimes.get()) / stores.get();
+      return TimeUnit.NANOSECONDS.toMillis(getAverageWriteTimeNanos());
+   }
+
+   @ManagedAttribute(description = "Average number of nanoseconds for a write operation in the cache")
+   @Metric(displayName = "Average write time in nanoseconds", units = Units.NANOSECONDS, displayType = DisplayType.SUMMARY)
+   public long getAverageWriteTimeNanos() {
+      return storeTimes.getAverageNanos();
+   }
+
+   @ManagedAttribute(description = "Average number of nanoseconds for a remove operation in the cache")
+   @Metric(displayName = "Average remove time in nanoseconds", units = Units.NANOSECONDS, displayType = DisplayType.SUMMARY)
+   public long getAverageRemoveTimeNanos() {
+      return removeTimes.getAverageNanos();
+   }
+
+   @ManagedAttribute(description = "Median number of nanoseconds for a read operation finding its key")
+   @Metric(displayName = "Median read hit time", units = Units.NANOSECONDS)
+   public long getHitTimeP50() {
+      return hitTimes.getPercentile(50);
+   }
+
+   @ManagedAttribute(description = "99th percentile of the number of nanoseconds for a read operation finding its key")
+   @Metric(displayName = "99th percentile read hit time", units = Units.NANOSECONDS)
+   public long getHitTimeP99() {
+      return hitTimes.getPercentile(99);
+   }
+
+   @ManagedAttribute(description = "99.9th percentile of the number of nanoseconds for a read operation finding its key")
+   @Metric(displayName = "99.9th percentile read hit time", units = Units.NANOSECONDS)
+   public long getHitTimeP999() {
+      return hitTimes.getPercentile(99.9);
+   }
+
+   @ManagedAttribute(description = "Median number of nanoseconds for a read operation not finding its key")
+   @Metric(displayName = "Median read miss time", units = Units.NANOSECONDS)
+   public long getMissTimeP50() {
+      return missTimes.getPercentile(50);
+   }
+
+   @ManagedAttribute(description = "99th percentile of the number of nanoseconds for a read operation not finding its key")
+   @Metric(displayName = "99th percentile read miss time", units = Units.NANOSECONDS)
+   public long getMissTimeP99() {
+      return missTimes.getPercentile(99);
+   }
+
+   @ManagedAttribute(description = "99.9th percentile of the number of nanoseconds for a read operation not finding its key")
+   @Metric(displayName = "99.9th percentile read miss time", units = Units.NANOSECONDS)
+   public long getMissTimeP999() {
+      return missTimes.getPercentile(99.9);
+   }
+
+   @ManagedAttribute(description = "Median number of nanoseconds for a write operation")
+   @Metric(displayName = "Median write time", units = Units.NANOSECONDS)
+   public long getStoreTimeP50() {
+      return storeTimes.getPercentile(50);
+   }
+
+   @ManagedAttribute(description = "99th percentile of the number of nanoseconds for a write operation")
+   @Metric(displayName = "99th percentile write time", units = Units.NANOSECONDS)
+   public long getStoreTimeP99() {
+      return storeTimes.getPercentile(99);
+   }
+
+   @ManagedAttribute(description = "99.9th percentile of the number of nanoseconds for a write operation")
+   @Metric(displayName = "99.9th percentile write time", units = Units.NANOSECONDS)
+   public long getStoreTimeP999() {
+      return storeTimes.getPercentile(99.9);
+   }
+
+   @ManagedAttribute(description = "Median number of nanoseconds for a remove operation")
+   @Metric(displayName = "Median remove time", units = Units.NANOSECONDS)
+   public long getRemoveTimeP50() {
+      return removeTimes.getPercentile(50);
+   }
+
+   @ManagedAttribute(description = "99th percentile of the number of nanoseconds for a remove operation")
+   @Metric(displayName = "99th percentile remove time", units = Units.NANOSECONDS)
+   public long getRemoveTimeP99() {
+      return removeTimes.getPercentile(99);
+   }
+
+   @ManagedAttribute(description = "99.9th percentile of the number of nanoseconds for a remove operation")
+   @Metric(displayName = "99.9th percentile remove time", units = Units.NANOSECONDS)
+   public long getRemoveTimeP999() {
+      return removeTimes.getPercentile(99.9);
+   }
+
+   /**
+    * Returns the histogram the latencies of the given operations are recorded into.
+    *
+    * @throws IllegalArgumentException for remote calls, which are recorded by the
+    *         {@link org.infinispan.remoting.rpc.RpcManagerImpl}
+    */
+   public LatencyHistogram getLatencyHistogram(LatencyType type) {
+      switch (type) {
+         case HIT:
+            return hitTimes;
+         case MISS:
+            return missTimes;
+         case STORE:
+            return storeTimes;
+         case REMOVE:
+            return removeTimes;
+         default:
+            throw new IllegalArgumentException("Latencies of type " + type + " are not recorded by this component");
+      }
    }
 
    @ManagedAttribute(description = "Number of entries currently in the cache")
@@ -208,6 +345,35 @@ public class CacheMgmtInterceptor extends JmxStatsCommandInterceptor {
       return dataContainer.size();
    }
 
+   @ManagedAttribute(description = "Number of entries inspected while purging expired entries from the data container")
+   @Metric(displayName = "Number of entries inspected by expiration purges", measurementType = MeasurementType.TRENDSUP)
+   public long getPurgeInspectedEntries() {
+      return dataContainer instanceof DefaultDataContainer ? ((DefaultDataContainer) dataContainer).getPurgeInspectedCount() : -1;
+   }
+
+   @ManagedAttribute(description = "Number of expired entries removed while purging the data container")
+   @Metric(displayName = "Number of entries removed by expiration purges", measurementType = MeasurementType.TRENDSUP)
+   public long getPurgeRemovedEntries() {
+      return dataContainer instanceof DefaultDataContainer ? ((DefaultDataContainer) dataContainer).getPurgeRemovedCount() : -1;
+   }
+
+   @ManagedAttribute(description = "Average number of milliseconds taken to purge expired entries from the data container")
+   @Metric(displayName = "Average expiration purge time", units = Units.MILLISECONDS)
+   public double getAveragePurgeTime() {
+      return dataContainer instanceof DefaultDataContainer ? ((DefaultDataContainer) dataContainer).getAveragePurgeTime() : -1;
+   }
+
+   @ManagedAttribute(description = "Estimated memory size, in bytes, of the entries held by a data container bounded by memory size")
+   @Metric(displayName = "Estimated memory size of cache entries", displayType = DisplayType.SUMMARY)
+   public long getEstimatedMemorySize() {
+      return dataContainer instanceof DefaultDataContainer ? ((DefaultDataContainer) dataContainer).getMemorySize() : -1;
+   }
+
+   @ManagedAttribute(description = "Estimated memory size, in bytes, of the entries held by each segment of a data container bounded by memory size")
+   public long[] getEstimatedSegmentMemorySizes() {
+      return dataContainer instanceof DefaultDataContainer ? ((DefaultDataContainer) dataContainer).getSegmentMemorySizes() : new long[0];
+   }
+
    @ManagedAttribute(description = "Number of seconds since cache started")
    @Metric(displayName = "Seconds since cache started", units = Units.SECONDS, measurementType = MeasurementType.TRENDSUP, displayType = DisplayType.SUMMARY)
    public long getElapsedTime() {
@@ -223,15 +389,15 @@ public class CacheMgmtInterceptor extends JmxStatsCommandInterceptor {
    @ManagedOperation(description = "Resets statistics gathered by this component")
    @Operation(displayName = "Reset Statistics (Statistics)")
    public void resetStatistics() {
-      hits.set(0);
-      misses.set(0);
-      stores.set(0);
-      evictions.set(0);
-      hitTimes.set(0);
-      missTimes.set(0);
-      storeTimes.set(0);
-      removeHits.set(0);
-      removeMisses.set(0);
+      evictions.reset();
+      hitTimes.reset();
+      missTimes.reset();
+      storeTimes.reset();
+      removeTimes.reset();
+      removeHits.reset();
+      removeMisses.reset();
+      if (dataContainer instanceof DefaultDataContainer)
+         ((DefaultDataContainer) dataContainer).resetPurgeStatistics();
       reset.set(System.currentTimeMillis());
    }
 }
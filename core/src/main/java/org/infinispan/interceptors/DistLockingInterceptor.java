@@ -22,9 +22,12 @@
  */
 package org.infinispan.interceptors;
 
+import org.infinispan.container.DataContainer;
+import org.infinispan.container.L1SegregatedDataContainer;
 import org.infinispan.container.entries.CacheEntry;
 import org.infinispan.distribution.DistributionManager;
 import org.infinispan.factories.annotations.Inject;
+import org.infinispan.factories.annotations.Start;
 
 /**
  * A subclass of the locking interceptor that is able to differentiate committing changes on a ReadCommittedEntry for
@@ -35,24 +38,33 @@ import org.infinispan.factories.annotations.Inject;
  */
 public class DistLockingInterceptor extends LockingInterceptor {
    DistributionManager dm;
+   DataContainer l1Container;
 
    @Inject
    public void injectDistributionManager(DistributionManager dm) {
       this.dm = dm;
    }
 
+   @Start
+   private void findL1Container() {
+      l1Container = dataContainer instanceof L1SegregatedDataContainer ?
+            ((L1SegregatedDataContainer) dataContainer).getL1Container() : dataContainer;
+   }
+
    protected void commitEntry(CacheEntry entry, boolean skipOwnershipCheck) {
       boolean doCommit = true;
+      DataContainer container = dataContainer;
       // ignore locality for removals, even if skipOwnershipCheck is not true
       if (!skipOwnershipCheck && !entry.isRemoved() && !dm.getLocality(entry.getKey()).isLocal()) {
          if (configuration.isL1CacheEnabled()) {
             dm.transformForL1(entry);
+            container = l1Container;
          } else {
             doCommit = false;
          }
       }
       if (doCommit)
-         entry.commit(dataContainer);
+         entry.commit(container);
       else
          entry.rollback();
    }
@@ -25,6 +25,7 @@ package org.infinispan.interceptors;
 import org.infinispan.commands.CommandsFactory;
 import org.infinispan.commands.control.LockControlCommand;
 import org.infinispan.commands.read.GetKeyValueCommand;
+import org.infinispan.commands.read.GetManyCommand;
 import org.infinispan.commands.tx.CommitCommand;
 import org.infinispan.commands.tx.PrepareCommand;
 import org.infinispan.commands.tx.RollbackCommand;
@@ -36,6 +37,7 @@ import org.infinispan.commands.write.ReplaceCommand;
 import org.infinispan.commands.write.WriteCommand;
 import org.infinispan.container.DataContainer;
 import org.infinispan.container.EntryFactory;
+import org.infinispan.container.L1SegregatedDataContainer;
 import org.infinispan.container.entries.CacheEntry;
 import org.infinispan.container.entries.InternalCacheEntry;
 import org.infinispan.context.Flag;
@@ -56,6 +58,7 @@ import org.infinispan.util.Immutables;
 import org.infinispan.util.concurrent.NotifyingFutureImpl;
 import org.infinispan.util.concurrent.NotifyingNotifiableFuture;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
@@ -134,6 +137,37 @@ public class DistributionInterceptor extends BaseRpcInterceptor {
       return returnValue;
    }
 
+   @Override
+   @SuppressWarnings("unchecked")
+   public Object visitGetManyCommand(InvocationContext ctx, GetManyCommand command) throws Throwable {
+      boolean isRehashInProgress = !dm.isJoinComplete() || dm.isRehashInProgress();
+      Map<Object, Object> returnValue = (Map<Object, Object>) invokeNextInterceptor(ctx, command);
+
+      if (isL1CacheEnabled && !ctx.isOriginLocal()) {
+         for (Object key : returnValue.keySet()) l1Manager.addRequestor(key, ctx.getOrigin());
+      }
+
+      // keys owned elsewhere are fetched in bulk, one RPC per owner; anything else follows the single key path
+      List<Object> remoteKeys = new ArrayList<Object>();
+      for (Object key : command.getKeys()) {
+         if (!needsRemoteGet(ctx, key, !returnValue.containsKey(key))) continue;
+         if (ctx.isOriginLocal() && !dm.getLocality(key).isLocal() && isNotInL1(key)) {
+            remoteKeys.add(key);
+         } else {
+            Object value = remoteGetAndStoreInL1(ctx, key, isRehashInProgress, false);
+            if (value != null) returnValue.put(key, value);
+         }
+      }
+      if (!remoteKeys.isEmpty()) {
+         if (trace) log.tracef("Doing a remote get for keys %s", remoteKeys);
+         Map<Object, InternalCacheEntry> entries = dm.retrieveFromRemoteSources(remoteKeys, ctx);
+         for (Map.Entry<Object, InternalCacheEntry> e : entries.entrySet()) {
+            returnValue.put(e.getKey(), storeRemoteEntry(ctx, e.getKey(), e.getValue(), true, false));
+         }
+      }
+      return returnValue;
+   }
+
    private boolean needsRemoteGet(InvocationContext ctx, Object key, boolean retvalCheck) {
       final CacheEntry entry;
       return retvalCheck
@@ -180,34 +214,35 @@ public class DistributionInterceptor extends BaseRpcInterceptor {
       if (trace) log.tracef("Doing a remote get for key %s", key);
       // attempt a remote lookup
       InternalCacheEntry ice = dm.retrieveFromRemoteSource(key, ctx);
+      return ice == null ? null : storeRemoteEntry(ctx, key, ice, storeInL1, isWrite);
+   }
 
-      if (ice != null) {
-         if (storeInL1) {
-            if (isL1CacheEnabled) {
-               if (trace) log.tracef("Caching remotely retrieved entry for key %s in L1", key);
-               long lifespan = ice.getLifespan() < 0 ? configuration.getL1Lifespan() : Math.min(ice.getLifespan(), configuration.getL1Lifespan());
-               PutKeyValueCommand put = cf.buildPutKeyValueCommand(ice.getKey(), ice.getValue(), lifespan, -1, ctx.getFlags());
-               entryFactory.wrapEntryForWriting(ctx, key, true, false, ctx.hasLockedKey(key), false, false);
-               invokeNextInterceptor(ctx, put);
-            } else {
-               CacheEntry ce = ctx.lookupEntry(key);
-               if (ce == null || ce.isNull() || ce.isLockPlaceholder() || ce.getValue() == null) {
-                  if (ce != null && ce.isChanged()) {
-                     ce.setValue(ice.getValue());
-                  } else {
-                     if (isWrite)
-                        entryFactory.wrapEntryForWriting(ctx, ice, true, false, ctx.hasLockedKey(key), false, false);
-                     else
-                        ctx.putLookedUpEntry(key, ice);
-                  }
+   private Object storeRemoteEntry(InvocationContext ctx, Object key, InternalCacheEntry ice, boolean storeInL1, boolean isWrite) throws Throwable {
+      if (storeInL1) {
+         if (isL1CacheEnabled) {
+            if (trace) log.tracef("Caching remotely retrieved entry for key %s in L1", key);
+            if (dataContainer instanceof L1SegregatedDataContainer) ((L1SegregatedDataContainer) dataContainer).recordL1Miss();
+            long lifespan = ice.getLifespan() < 0 ? configuration.getL1Lifespan() : Math.min(ice.getLifespan(), configuration.getL1Lifespan());
+            PutKeyValueCommand put = cf.buildPutKeyValueCommand(ice.getKey(), ice.getValue(), lifespan, -1, ctx.getFlags());
+            entryFactory.wrapEntryForWriting(ctx, key, true, false, ctx.hasLockedKey(key), false, false);
+            invokeNextInterceptor(ctx, put);
+         } else {
+            CacheEntry ce = ctx.lookupEntry(key);
+            if (ce == null || ce.isNull() || ce.isLockPlaceholder() || ce.getValue() == null) {
+               if (ce != null && ce.isChanged()) {
+                  ce.setValue(ice.getValue());
+               } else {
+                  if (isWrite)
+                     entryFactory.wrapEntryForWriting(ctx, ice, true, false, ctx.hasLockedKey(key), false, false);
+                  else
+                     ctx.putLookedUpEntry(key, ice);
                }
             }
-         } else {
-            if (trace) log.tracef("Not caching remotely retrieved entry for key %s in L1", key);
          }
-         return ice.getValue();
+      } else {
+         if (trace) log.tracef("Not caching remotely retrieved entry for key %s in L1", key);
       }
-      return null;
+      return ice.getValue();
    }
 
    /**
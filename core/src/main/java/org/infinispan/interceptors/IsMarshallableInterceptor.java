@@ -25,6 +25,7 @@ package org.infinispan.interceptors;
 
 import org.infinispan.commands.control.LockControlCommand;
 import org.infinispan.commands.read.GetKeyValueCommand;
+import org.infinispan.commands.read.GetManyCommand;
 import org.infinispan.commands.write.PutKeyValueCommand;
 import org.infinispan.commands.write.PutMapCommand;
 import org.infinispan.commands.write.RemoveCommand;
@@ -84,6 +85,15 @@ public class IsMarshallableInterceptor extends CommandInterceptor {
       return super.visitGetKeyValueCommand(ctx, command);
    }
 
+   @Override
+   public Object visitGetManyCommand(InvocationContext ctx, GetManyCommand command) throws Throwable {
+      for (Object key : command.getKeys()) {
+         if (isStoreAsBinary() || getMightGoRemote(ctx, key))
+            checkMarshallable(key);
+      }
+      return super.visitGetManyCommand(ctx, command);
+   }
+
    @Override
    public Object visitLockControlCommand(TxInvocationContext ctx, LockControlCommand command) throws Throwable {
       if (isStoreAsBinary() || isClusterInvocation(ctx))
@@ -25,6 +25,7 @@ package org.infinispan.interceptors;
 import org.infinispan.commands.control.LockControlCommand;
 import org.infinispan.commands.read.EntrySetCommand;
 import org.infinispan.commands.read.GetKeyValueCommand;
+import org.infinispan.commands.read.GetManyCommand;
 import org.infinispan.commands.read.KeySetCommand;
 import org.infinispan.commands.read.ValuesCommand;
 import org.infinispan.commands.write.InvalidateCommand;
@@ -40,6 +41,8 @@ import org.infinispan.factories.annotations.ComponentName;
 import org.infinispan.factories.annotations.Inject;
 import org.infinispan.factories.annotations.Start;
 import org.infinispan.interceptors.base.CommandInterceptor;
+import org.infinispan.loaders.CacheLoaderConfig;
+import org.infinispan.loaders.CacheStoreConfig;
 import org.infinispan.marshall.MarshalledValue;
 import org.infinispan.marshall.StreamingMarshaller;
 import org.infinispan.util.Immutables;
@@ -73,6 +76,7 @@ public class MarshalledValueInterceptor extends CommandInterceptor {
    private StreamingMarshaller marshaller;
    private boolean wrapKeys = true;
    private boolean wrapValues = true;
+   private boolean retainSerializedForm;
 
    @Inject
    protected void injectMarshaller(@ComponentName(CACHE_MARSHALLER) StreamingMarshaller marshaller) {
@@ -83,6 +87,17 @@ public class MarshalledValueInterceptor extends CommandInterceptor {
    protected void start() {
       wrapKeys = configuration.isStoreKeysAsBinary();
       wrapValues = configuration.isStoreValuesAsBinary();
+      // in these cases the wrapped data is marshalled once again after the call returns, so keeping the serialized
+      // form computed for the cache store or for replication spares marshalling it twice
+      retainSerializedForm = configuration.isUseAsyncMarshalling() || configuration.isUseReplQueue() || hasAsyncStore();
+   }
+
+   private boolean hasAsyncStore() {
+      for (CacheLoaderConfig loaderConfig : configuration.getCacheLoaderManagerConfig().getCacheLoaderConfigs()) {
+         if (loaderConfig instanceof CacheStoreConfig && ((CacheStoreConfig) loaderConfig).getAsyncStoreConfig().isEnabled())
+            return true;
+      }
+      return false;
    }
 
    @Override
@@ -193,6 +208,33 @@ public class MarshalledValueInterceptor extends CommandInterceptor {
       return processRetVal(retVal, ctx);
    }
 
+   @Override
+   @SuppressWarnings("unchecked")
+   public Object visitGetManyCommand(InvocationContext ctx, GetManyCommand command) throws Throwable {
+      Set<MarshalledValue> marshalledValues = new HashSet<MarshalledValue>();
+      if (wrapKeys) {
+         Collection<Object> keys = new ArrayList<Object>(command.getKeys().size());
+         for (Object key : command.getKeys()) {
+            if (!isTypeExcluded(key.getClass())) {
+               MarshalledValue mv = createMarshalledValue(key, ctx);
+               marshalledValues.add(mv);
+               key = mv;
+            }
+            keys.add(key);
+         }
+         command.setKeys(keys);
+      }
+      Map<Object, Object> retVal = (Map<Object, Object>) invokeNextInterceptor(ctx, command);
+      for (MarshalledValue mv : marshalledValues) compact(mv);
+      // remote callers (ClusteredGetAllCommand) look results up by their own marshalled keys
+      if (!ctx.isOriginLocal() || retVal == null) return retVal;
+      Map<Object, Object> copy = new HashMap<Object, Object>(retVal.size());
+      for (Map.Entry<Object, Object> e : retVal.entrySet()) {
+         copy.put(processRetVal(e.getKey(), ctx), processRetVal(e.getValue(), ctx));
+      }
+      return copy;
+   }
+
    @Override
    @SuppressWarnings("unchecked")
    public Object visitKeySetCommand(InvocationContext ctx, KeySetCommand command) throws Throwable {
@@ -305,7 +347,7 @@ public class MarshalledValueInterceptor extends CommandInterceptor {
 
    private void compact(MarshalledValue mv) {
       if (mv == null) return;
-      mv.compact(false, false);
+      mv.compact(false, false, retainSerializedForm);
    }
 
    private Object processRetVal(Object retVal, InvocationContext ctx) {
@@ -24,6 +24,7 @@ package org.infinispan.interceptors.base;
 
 import org.infinispan.commands.VisitableCommand;
 import org.infinispan.commands.read.GetKeyValueCommand;
+import org.infinispan.commands.read.GetManyCommand;
 import org.infinispan.commands.read.SizeCommand;
 import org.infinispan.commands.tx.CommitCommand;
 import org.infinispan.commands.tx.PrepareCommand;
@@ -168,6 +169,20 @@ public abstract class PrePostProcessingCommandInterceptor extends CommandInterce
       return handleDefault(ctx, command);
    }
 
+   @Override
+   public Object visitGetManyCommand(InvocationContext ctx, GetManyCommand command) throws Throwable {
+      try {
+         return (doBeforeCall(ctx, command)) ? handleGetManyCommand(ctx, command) : null;
+      }
+      finally {
+         doAfterCall(ctx, command);
+      }
+   }
+
+   protected Object handleGetManyCommand(InvocationContext ctx, GetManyCommand command) throws Throwable {
+      return handleDefault(ctx, command);
+   }
+
    // tx commands
 
    @Override
@@ -23,8 +23,13 @@
 package org.infinispan.loaders;
 
 import org.infinispan.Cache;
+import org.infinispan.container.entries.InternalCacheEntry;
 import org.infinispan.marshall.StreamingMarshaller;
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
 /**
  * An abstract {@link org.infinispan.loaders.CacheLoader} that holds common implementations for some methods
  *
@@ -32,7 +37,7 @@ import org.infinispan.marshall.StreamingMarshaller;
  * @author Mircea.Markus@jboss.com
  * @since 4.0
  */
-public abstract class AbstractCacheLoader implements CacheLoader {
+public abstract class AbstractCacheLoader implements BulkCacheLoader {
 
    protected volatile StreamingMarshaller marshaller;
    protected volatile Cache cache;
@@ -45,6 +50,36 @@ public abstract class AbstractCacheLoader implements CacheLoader {
       return load(key) != null;
    }
 
+   /**
+    * {@inheritDoc} This implementation delegates to {@link CacheLoader#load(Object)} for each key.
+    */
+   @Override
+   public Map<Object, InternalCacheEntry> loadAll(Set<Object> keys) throws CacheLoaderException {
+      return loadEach(this, keys);
+   }
+
+   /**
+    * Loads several keys from any loader, at once if it is a {@link BulkCacheLoader}, and through {@link
+    * CacheLoader#load(Object)} for each key otherwise.
+    *
+    * @param loader loader to load the keys from
+    * @param keys keys to load
+    * @return a map of the keys found to their entries
+    * @throws CacheLoaderException in the event of problems reading from source
+    */
+   public static Map<Object, InternalCacheEntry> loadAll(CacheLoader loader, Set<Object> keys) throws CacheLoaderException {
+      return loader instanceof BulkCacheLoader ? ((BulkCacheLoader) loader).loadAll(keys) : loadEach(loader, keys);
+   }
+
+   private static Map<Object, InternalCacheEntry> loadEach(CacheLoader loader, Set<Object> keys) throws CacheLoaderException {
+      Map<Object, InternalCacheEntry> result = new HashMap<Object, InternalCacheEntry>(keys.size());
+      for (Object key : keys) {
+         InternalCacheEntry ice = loader.load(key);
+         if (ice != null) result.put(key, ice);
+      }
+      return result;
+   }
+
    @Override
    public void init(CacheLoaderConfig config, Cache<?, ?> cache, StreamingMarshaller m) throws CacheLoaderException {
       this.marshaller = m;
@@ -0,0 +1,50 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.loaders;
+
+import org.infinispan.container.entries.InternalCacheEntry;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A {@link CacheLoader} able to load several keys at once.  Loaders extending {@link AbstractCacheLoader} implement it,
+ * by default by loading each key in turn.  Loaders implementing {@link CacheLoader} directly may implement it when they
+ * can fetch several keys more efficiently than one by one; callers use {@link AbstractCacheLoader#loadAll(CacheLoader,
+ * java.util.Set)}, which falls back to {@link CacheLoader#load(Object)} for the other loaders.
+ *
+ * @since 5.1
+ */
+public interface BulkCacheLoader extends CacheLoader {
+
+   /**
+    * Loads the entries mapped to by a set of keys.  Keys that do not exist, or whose entries have expired, are not
+    * present in the returned map.  Implementations backed by a remote source should fetch the keys in as few round
+    * trips as possible rather than calling {@link #load(Object)} for each key.
+    *
+    * @param keys keys to load
+    * @return a map of the keys found to their entries, or an empty map if none of the keys exist.
+    * @throws CacheLoaderException in the event of problems reading from source
+    */
+   Map<Object, InternalCacheEntry> loadAll(Set<Object> keys) throws CacheLoaderException;
+}
@@ -24,10 +24,18 @@ package org.infinispan.loaders;
 
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.infinispan.Cache;
 import org.infinispan.container.entries.InternalCacheEntry;
+import org.infinispan.loaders.modifications.Modification;
+import org.infinispan.loaders.modifications.Remove;
+import org.infinispan.loaders.modifications.Store;
 import org.infinispan.marshall.StreamingMarshaller;
 import org.infinispan.util.concurrent.locks.StripedLock;
 import org.infinispan.util.logging.Log;
@@ -156,6 +164,24 @@ public abstract class LockSupportCacheStore<L> extends AbstractCacheStore {
       }
    }
 
+   /**
+    * {@inheritDoc} Read locks are held on all the keys for the duration of the load, so that {@link
+    * #loadAllLockSafe(java.util.Map)} can fetch them together.
+    */
+   @Override
+   public final Map<Object, InternalCacheEntry> loadAll(Set<Object> keys) throws CacheLoaderException {
+      Map<Object, L> lockingKeys = new HashMap<Object, L>(keys.size());
+      for (Object key : keys) lockingKeys.put(key, getLockFromKey(key));
+      Set<L> locked = new HashSet<L>(lockingKeys.values());
+      // in stripe order, like the write locks taken by applyModifications(), so that the two cannot deadlock
+      locks.acquireAllLocks(locked, false);
+      try {
+         return loadAllLockSafe(lockingKeys);
+      } finally {
+         locks.releaseAllLocks(locked);
+      }
+   }
+
    @Override
    public Set<Object> loadAllKeys(Set<Object> keysToExclude) throws CacheLoaderException {
       acquireGlobalLock(false);
@@ -218,6 +244,59 @@ public abstract class LockSupportCacheStore<L> extends AbstractCacheStore {
       }
    }
 
+   /**
+    * {@inheritDoc} Write locks are held on all the keys modified between two clears, so that {@link
+    * #applyModificationsLockSafe(java.util.List, java.util.Map)} can write them together.
+    */
+   @Override
+   protected void applyModifications(List<? extends Modification> mods) throws CacheLoaderException {
+      List<Modification> batch = new ArrayList<Modification>(mods.size());
+      for (Modification m : mods) {
+         switch (m.getType()) {
+            case STORE:
+               if (((Store) m).getStoredEntry() != null) batch.add(m);
+               break;
+            case REMOVE:
+               batch.add(m);
+               break;
+            case CLEAR:
+               applyModificationsLocked(batch);
+               batch.clear();
+               clear();
+               break;
+            default:
+               throw new IllegalArgumentException("Unknown modification type " + m.getType());
+         }
+      }
+      applyModificationsLocked(batch);
+   }
+
+   private void applyModificationsLocked(List<Modification> mods) throws CacheLoaderException {
+      if (mods.isEmpty()) return;
+      Map<Object, L> lockingKeys = new HashMap<Object, L>(mods.size());
+      for (Modification m : mods) {
+         Object key = getModifiedKey(m);
+         if (!lockingKeys.containsKey(key)) lockingKeys.put(key, getLockFromKey(key));
+      }
+      Set<L> locked = new HashSet<L>(lockingKeys.values());
+      if (trace) {
+         log.tracef("Applying %d modifications on %d keys", mods.size(), lockingKeys.size());
+      }
+      locks.acquireAllLocks(locked, true);
+      try {
+         applyModificationsLockSafe(mods, lockingKeys);
+      } finally {
+         locks.releaseAllLocks(locked);
+      }
+   }
+
+   /**
+    * Returns the key a {@link Modification.Type#STORE} or {@link Modification.Type#REMOVE} modification applies to.
+    */
+   protected static Object getModifiedKey(Modification m) {
+      return m.getType() == Modification.Type.STORE ? ((Store) m).getStoredEntry().getKey() : ((Remove) m).getKey();
+   }
+
    @Override
    public final void fromStream(ObjectInput objectInput) throws CacheLoaderException {
       try {
@@ -273,5 +352,41 @@ public abstract class LockSupportCacheStore<L> extends AbstractCacheStore {
 
    protected abstract InternalCacheEntry loadLockSafe(Object key, L lockingKey) throws CacheLoaderException;
 
+   /**
+    * Loads several keys at once, with read locks held on all of them.  This default implementation delegates to {@link
+    * #loadLockSafe(Object, Object)} for each key; stores able to fetch several keys in a single round trip should
+    * override it.
+    *
+    * @param keys keys to load, mapped to their locking keys as returned by {@link #getLockFromKey(Object)}
+    */
+   protected Map<Object, InternalCacheEntry> loadAllLockSafe(Map<Object, L> keys) throws CacheLoaderException {
+      Map<Object, InternalCacheEntry> result = new HashMap<Object, InternalCacheEntry>(keys.size());
+      for (Map.Entry<Object, L> e : keys.entrySet()) {
+         InternalCacheEntry ice = loadLockSafe(e.getKey(), e.getValue());
+         if (ice != null) result.put(e.getKey(), ice);
+      }
+      return result;
+   }
+
+   /**
+    * Applies STORE and REMOVE modifications, in order, with write locks held on all their keys.  This default
+    * implementation delegates to {@link #storeLockSafe(InternalCacheEntry, Object)} and {@link
+    * #removeLockSafe(Object, Object)} for each modification, removing the expired entries being stored as {@link
+    * #store(InternalCacheEntry)} does; stores able to write several entries in a single round trip should override it.
+    *
+    * @param mods        modifications to apply, none of them a CLEAR
+    * @param lockingKeys the keys modified, mapped to their locking keys as returned by {@link #getLockFromKey(Object)}
+    */
+   protected void applyModificationsLockSafe(List<? extends Modification> mods, Map<Object, L> lockingKeys) throws CacheLoaderException {
+      for (Modification m : mods) {
+         Object key = getModifiedKey(m);
+         if (m.getType() == Modification.Type.STORE && !((Store) m).getStoredEntry().isExpired()) {
+            storeLockSafe(((Store) m).getStoredEntry(), lockingKeys.get(key));
+         } else {
+            removeLockSafe(key, lockingKeys.get(key));
+         }
+      }
+   }
+
    protected abstract L getLockFromKey(Object key) throws CacheLoaderException;
 }
@@ -27,8 +27,10 @@ import org.infinispan.loaders.CacheLoaderException;
 import org.infinispan.loaders.LockSupportCacheStore;
 
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -73,6 +75,22 @@ public abstract class BucketBasedCacheStore extends LockSupportCacheStore<Intege
       }
    }
 
+   /**
+    * Loads several entries, loading each Bucket involved only once through {@link #loadBuckets(java.util.Set)}.
+    */
+   @Override
+   protected Map<Object, InternalCacheEntry> loadAllLockSafe(Map<Object, Integer> keys) throws CacheLoaderException {
+      Map<Integer, Bucket> buckets = loadBuckets(new HashSet<Integer>(keys.values()));
+      Map<Object, InternalCacheEntry> result = new HashMap<Object, InternalCacheEntry>(keys.size());
+      for (Map.Entry<Object, Integer> e : keys.entrySet()) {
+         Bucket bucket = buckets.get(e.getValue());
+         if (bucket == null) continue;
+         InternalCacheEntry se = bucket.getEntry(e.getKey());
+         if (se != null && !se.isExpired()) result.put(e.getKey(), se);
+      }
+      return result;
+   }
+
    /**
     * Stores an entry in an appropriate Bucket, based on the key's hash code.  If the Bucket does not exist in the
     * underlying store, a new one is created.
@@ -248,4 +266,20 @@ public abstract class BucketBasedCacheStore extends LockSupportCacheStore<Intege
     * @throws CacheLoaderException in case of problems with the store.
     */
    protected abstract Bucket loadBucket(Integer hash) throws CacheLoaderException;
+
+   /**
+    * Loads several Buckets from the store.  This default implementation delegates to {@link #loadBucket(Integer)} for
+    * each hash; stores able to fetch several Buckets in a single round trip should override it.
+    * @param hashes the Buckets' hashes
+    * @return a map of the hashes of the Buckets that exist to the Buckets themselves.
+    * @throws CacheLoaderException in case of problems with the store.
+    */
+   protected Map<Integer, Bucket> loadBuckets(Set<Integer> hashes) throws CacheLoaderException {
+      Map<Integer, Bucket> buckets = new HashMap<Integer, Bucket>(hashes.size());
+      for (Integer hash : hashes) {
+         Bucket bucket = loadBucket(hash);
+         if (bucket != null) buckets.put(hash, bucket);
+      }
+      return buckets;
+   }
 }
@@ -26,6 +26,8 @@ import org.infinispan.Cache;
 import org.infinispan.marshall.StreamingMarshaller;
 import org.infinispan.transaction.xa.GlobalTransaction;
 import org.infinispan.container.entries.InternalCacheEntry;
+import org.infinispan.loaders.AbstractCacheLoader;
+import org.infinispan.loaders.BulkCacheLoader;
 import org.infinispan.loaders.CacheLoaderConfig;
 import org.infinispan.loaders.CacheLoaderException;
 import org.infinispan.loaders.CacheStore;
@@ -35,6 +37,7 @@ import org.infinispan.loaders.modifications.Modification;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -44,7 +47,7 @@ import java.util.Set;
  * @author Manik Surtani
  * @since 4.0
  */
-public class AbstractDelegatingStore implements CacheStore {
+public class AbstractDelegatingStore implements CacheStore, BulkCacheLoader {
 
    CacheStore delegate;
 
@@ -112,6 +115,11 @@ public class AbstractDelegatingStore implements CacheStore {
       return delegate.loadAll();
    }
 
+   @Override
+   public Map<Object, InternalCacheEntry> loadAll(Set<Object> keys) throws CacheLoaderException {
+      return AbstractCacheLoader.loadAll(delegate, keys);
+   }
+
    @Override
    public Set<InternalCacheEntry> load(int numEntries) throws CacheLoaderException {
       return delegate.load(numEntries);
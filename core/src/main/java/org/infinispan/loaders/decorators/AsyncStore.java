@@ -41,6 +41,7 @@ import org.infinispan.util.concurrent.locks.containers.ReentrantPerEntryLockCont
 import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
 
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -235,21 +236,24 @@ public class AsyncStore extends AbstractDelegatingStore {
       super.stop();
    }
 
+   /**
+    * Hands the modifications over to the delegate store as a single list, through {@link
+    * #prepare(java.util.List, org.infinispan.transaction.xa.GlobalTransaction, boolean)}, so that stores able to write
+    * several entries at once, i.e. in a single JDBC batch, can do so.
+    */
    protected void applyModificationsSync(ConcurrentMap<Object, Modification> mods) throws CacheLoaderException {
-      Set<Map.Entry<Object, Modification>> entries = mods.entrySet();
-      for (Map.Entry<Object, Modification> entry : entries) {
-         Modification mod = entry.getValue();
+      List<Modification> list = new ArrayList<Modification>(mods.size());
+      for (Modification mod : mods.values()) {
          switch (mod.getType()) {
             case STORE:
-               super.store(((Store) mod).getStoredEntry());
-               break;
             case REMOVE:
-               super.remove(entry.getKey());
+               list.add(mod);
                break;
             default:
                throw new IllegalArgumentException("Unexpected modification type " + mod.getType());
          }
       }
+      if (!list.isEmpty()) super.prepare(list, null, true);
    }
    
    protected boolean applyClear() {
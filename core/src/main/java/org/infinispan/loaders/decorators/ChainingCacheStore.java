@@ -26,6 +26,8 @@ import org.infinispan.Cache;
 import org.infinispan.marshall.StreamingMarshaller;
 import org.infinispan.transaction.xa.GlobalTransaction;
 import org.infinispan.container.entries.InternalCacheEntry;
+import org.infinispan.loaders.AbstractCacheLoader;
+import org.infinispan.loaders.BulkCacheLoader;
 import org.infinispan.loaders.CacheLoader;
 import org.infinispan.loaders.CacheLoaderConfig;
 import org.infinispan.loaders.CacheLoaderException;
@@ -35,6 +37,7 @@ import org.infinispan.loaders.modifications.Modification;
 
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
@@ -55,7 +58,7 @@ import java.util.Set;
  * @author Manik Surtani
  * @since 4.0
  */
-public class ChainingCacheStore implements CacheStore {
+public class ChainingCacheStore implements CacheStore, BulkCacheLoader {
 
    // linked hash sets used since it provides fast (O(1)) iteration, maintains order and provides O(1) lookups to values as well.
    LinkedHashMap<CacheLoader, CacheLoaderConfig> loaders = new LinkedHashMap<CacheLoader, CacheLoaderConfig>();
@@ -140,6 +143,19 @@ public class ChainingCacheStore implements CacheStore {
       return set;
    }
 
+   @Override
+   public Map<Object, InternalCacheEntry> loadAll(Set<Object> keys) throws CacheLoaderException {
+      Map<Object, InternalCacheEntry> result = new HashMap<Object, InternalCacheEntry>(keys.size());
+      Set<Object> remaining = keys;
+      for (CacheLoader l : loaders.keySet()) {
+         result.putAll(AbstractCacheLoader.loadAll(l, remaining));
+         if (result.size() == keys.size()) break;
+         if (remaining == keys) remaining = new HashSet<Object>(keys);
+         remaining.removeAll(result.keySet());
+      }
+      return result;
+   }
+
    @Override
    public Set<InternalCacheEntry> load(int numEntries) throws CacheLoaderException {
       if (numEntries < 0) return loadAll();
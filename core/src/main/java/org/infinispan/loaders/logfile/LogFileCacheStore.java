@@ -0,0 +1,748 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.loaders.logfile;
+
+import org.infinispan.Cache;
+import org.infinispan.config.ConfigurationException;
+import org.infinispan.container.entries.InternalCacheEntry;
+import org.infinispan.container.entries.InternalCacheValue;
+import org.infinispan.loaders.AbstractCacheStore;
+import org.infinispan.loaders.CacheLoaderConfig;
+import org.infinispan.loaders.CacheLoaderException;
+import org.infinispan.loaders.CacheLoaderMetadata;
+import org.infinispan.marshall.StreamingMarshaller;
+import org.infinispan.util.logging.Log;
+import org.infinispan.util.logging.LogFactory;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A log-structured, append-only filesystem-based {@link org.infinispan.loaders.CacheStore}.  Unlike
+ * {@link org.infinispan.loaders.file.FileCacheStore}, which rewrites a whole bucket file on every modification, this
+ * store only ever appends records to the end of the current log file, in the following layout:
+ * <tt>/{location}/cache name/file_number.log</tt>
+ * <p/>
+ * The location of the most recent record of each key is kept in an in-memory index, so a read is a single positional
+ * read of the value bytes.  Once the current log file reaches {@link LogFileCacheStoreConfig#getMaxFileSize()} a new
+ * one is started.  Overwritten, removed and expired records are reclaimed by a background compaction which copies the
+ * live records of the oldest log file to the end of the current one and then deletes it.  Compacting the oldest file
+ * first means removal records found in it can be dropped, since no older record they shadow can still exist.
+ * <p/>
+ * Each record is laid out as: <tt>[int record length][byte type][int key length][int value length][long expiry
+ * time][marshalled key][marshalled {@link InternalCacheValue}]</tt>.  The index is rebuilt on startup by scanning all
+ * log files in order; an incomplete record at the tail of a file, e.g. after a crash, is truncated away.
+ *
+ * @since 5.1
+ */
+@CacheLoaderMetadata(configurationClass = LogFileCacheStoreConfig.class)
+public class LogFileCacheStore extends AbstractCacheStore {
+
+   private static final Log log = LogFactory.getLog(LogFileCacheStore.class);
+   private static final boolean trace = log.isTraceEnabled();
+
+   static final String FILE_SUFFIX = ".log";
+   static final int MAGIC = 0x494C4631; // "ILF1"
+   static final int FILE_HEADER_SIZE = 4;
+   static final int RECORD_HEADER_SIZE = 4 + 1 + 4 + 4 + 8;
+   static final byte TYPE_PUT = 1;
+   static final byte TYPE_REMOVE = 2;
+
+   private LogFileCacheStoreConfig config;
+   private File root;
+
+   private final ConcurrentMap<Object, EntryLocation> index = new ConcurrentHashMap<Object, EntryLocation>();
+   /**
+    * Log files ordered from oldest to newest, the last one being the one appended to.  Guarded by {@link #writeLock}.
+    */
+   private final List<LogFile> files = new ArrayList<LogFile>();
+   /**
+    * Serializes appends, index updates and changes to the list of files.
+    */
+   private final ReentrantLock writeLock = new ReentrantLock();
+   /**
+    * Readers hold the read lock while reading from a log file, compaction and clear hold the write lock while closing
+    * and deleting files.
+    */
+   private final ReadWriteLock fileLock = new ReentrantReadWriteLock();
+   private LogFile activeFile;
+   private int nextFileId;
+
+   private ExecutorService compactionExecutor;
+   private final AtomicBoolean compactionScheduled = new AtomicBoolean(false);
+
+   @Override
+   public void init(CacheLoaderConfig config, Cache<?, ?> cache, StreamingMarshaller m) throws CacheLoaderException {
+      super.init(config, cache, m);
+      this.config = (LogFileCacheStoreConfig) config;
+   }
+
+   @Override
+   public void start() throws CacheLoaderException {
+      super.start();
+      String location = config.getLocation();
+      if (location == null || location.trim().length() == 0) {
+         location = "Infinispan-LogFileCacheStore"; // use relative path!
+      }
+      location += File.separator + cache.getName();
+      root = new File(location);
+      if (!root.exists()) {
+         if (!root.mkdirs()) {
+            log.problemsCreatingDirectory(root);
+         }
+      }
+      if (!root.exists()) {
+         throw new ConfigurationException("Directory " + root.getAbsolutePath() + " does not exist and cannot be created!");
+      }
+
+      writeLock.lock();
+      try {
+         index.clear();
+         files.clear();
+         nextFileId = 0;
+         rebuildIndex();
+         LogFile last = files.isEmpty() ? null : files.get(files.size() - 1);
+         if (last != null && last.size < config.getMaxFileSize()) {
+            activeFile = last;
+         } else {
+            activeFile = createLogFile();
+         }
+      } catch (IOException e) {
+         throw new CacheLoaderException("Unable to open log files in " + root.getAbsolutePath(), e);
+      } finally {
+         writeLock.unlock();
+      }
+
+      final String threadName = "LogFileCacheStore-Compactor-" + cache.getName();
+      compactionExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+         @Override
+         public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, threadName);
+            t.setDaemon(true);
+            return t;
+         }
+      });
+   }
+
+   @Override
+   public void stop() throws CacheLoaderException {
+      super.stop();
+      compactionExecutor.shutdown();
+      try {
+         compactionExecutor.awaitTermination(60, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+      }
+      writeLock.lock();
+      fileLock.writeLock().lock();
+      try {
+         for (LogFile f : files) f.close();
+         files.clear();
+         index.clear();
+         activeFile = null;
+      } finally {
+         fileLock.writeLock().unlock();
+         writeLock.unlock();
+      }
+   }
+
+   @Override
+   public void store(InternalCacheEntry entry) throws CacheLoaderException {
+      Object key = entry.getKey();
+      byte[] keyBytes = marshall(key);
+      byte[] valueBytes = marshall(entry.toInternalCacheValue());
+      long expiryTime = entry.canExpire() ? entry.getExpiryTime() : -1;
+      ByteBuffer record = createRecord(TYPE_PUT, keyBytes, valueBytes, expiryTime);
+
+      writeLock.lock();
+      try {
+         EntryLocation location = append(record, valueBytes.length, expiryTime);
+         EntryLocation old = index.put(key, location);
+         if (old != null) old.file.deadBytes += old.length;
+      } finally {
+         writeLock.unlock();
+      }
+      if (trace) log.tracef("Stored %s", key);
+      compactIfNeeded();
+   }
+
+   @Override
+   public boolean remove(Object key) throws CacheLoaderException {
+      if (!index.containsKey(key)) return false;
+      ByteBuffer record = createRecord(TYPE_REMOVE, marshall(key), new byte[0], -1);
+      boolean removed;
+      writeLock.lock();
+      try {
+         EntryLocation old = index.remove(key);
+         removed = old != null;
+         if (removed) {
+            old.file.deadBytes += old.length;
+            EntryLocation tombstone = append(record, 0, -1);
+            // a removal record never holds data, it is reclaimed as soon as its file is compacted
+            tombstone.file.deadBytes += tombstone.length;
+         }
+      } finally {
+         writeLock.unlock();
+      }
+      if (removed) compactIfNeeded();
+      return removed;
+   }
+
+   @Override
+   public InternalCacheEntry load(Object key) throws CacheLoaderException {
+      while (true) {
+         EntryLocation location = index.get(key);
+         if (location == null) return null;
+         if (location.isExpired(System.currentTimeMillis())) return null;
+         byte[] valueBytes = readValue(location);
+         if (valueBytes == null) continue; // the record was moved by compaction, look it up again
+         InternalCacheValue icv = (InternalCacheValue) unmarshall(valueBytes);
+         if (icv.isExpired()) return null;
+         return icv.toInternalCacheEntry(key);
+      }
+   }
+
+   @Override
+   public boolean containsKey(Object key) throws CacheLoaderException {
+      EntryLocation location = index.get(key);
+      return location != null && !location.isExpired(System.currentTimeMillis());
+   }
+
+   @Override
+   public Set<InternalCacheEntry> loadAll() throws CacheLoaderException {
+      return load(Integer.MAX_VALUE);
+   }
+
+   @Override
+   public Set<InternalCacheEntry> load(int numEntries) throws CacheLoaderException {
+      if (numEntries < 0) return loadAll();
+      Set<InternalCacheEntry> result = new HashSet<InternalCacheEntry>();
+      for (Iterator<Object> it = index.keySet().iterator(); it.hasNext() && result.size() < numEntries; ) {
+         InternalCacheEntry ice = load(it.next());
+         if (ice != null) result.add(ice);
+      }
+      return result;
+   }
+
+   @Override
+   public Set<Object> loadAllKeys(Set<Object> keysToExclude) throws CacheLoaderException {
+      long now = System.currentTimeMillis();
+      Set<Object> result = new HashSet<Object>();
+      for (Map.Entry<Object, EntryLocation> e : index.entrySet()) {
+         Object key = e.getKey();
+         if (!e.getValue().isExpired(now) && (keysToExclude == null || !keysToExclude.contains(key)))
+            result.add(key);
+      }
+      return result;
+   }
+
+   @Override
+   public void clear() throws CacheLoaderException {
+      writeLock.lock();
+      fileLock.writeLock().lock();
+      try {
+         index.clear();
+         for (LogFile f : files) {
+            f.close();
+            if (!f.file.delete()) log.problemsRemovingFile(f.file);
+         }
+         files.clear();
+         activeFile = createLogFile();
+      } catch (IOException e) {
+         throw new CacheLoaderException("Unable to create log file in " + root.getAbsolutePath(), e);
+      } finally {
+         fileLock.writeLock().unlock();
+         writeLock.unlock();
+      }
+   }
+
+   @Override
+   public void toStream(ObjectOutput outputStream) throws CacheLoaderException {
+      try {
+         Set<InternalCacheEntry> entries = loadAll();
+         marshaller.objectToObjectStream(entries.size(), outputStream);
+         for (InternalCacheEntry ice : entries) marshaller.objectToObjectStream(ice, outputStream);
+      } catch (IOException e) {
+         throw new CacheLoaderException("I/O exception while generating stream", e);
+      }
+   }
+
+   @Override
+   public void fromStream(ObjectInput inputStream) throws CacheLoaderException {
+      try {
+         int numEntries = (Integer) marshaller.objectFromObjectStream(inputStream);
+         for (int i = 0; i < numEntries; i++) {
+            store((InternalCacheEntry) marshaller.objectFromObjectStream(inputStream));
+         }
+      } catch (IOException e) {
+         throw new CacheLoaderException("I/O error", e);
+      } catch (ClassNotFoundException e) {
+         throw new CacheLoaderException("Unexpected exception", e);
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         throw new CacheLoaderException("Interrupted while reading from stream", e);
+      }
+   }
+
+   @Override
+   protected void purgeInternal() throws CacheLoaderException {
+      if (trace) log.trace("purgeInternal()");
+      long now = System.currentTimeMillis();
+      for (Map.Entry<Object, EntryLocation> e : index.entrySet()) {
+         EntryLocation location = e.getValue();
+         if (location.isExpired(now)) {
+            writeLock.lock();
+            try {
+               // expired records stay expired when the index is rebuilt, so no removal record is needed
+               if (index.remove(e.getKey(), location)) location.file.deadBytes += location.length;
+            } finally {
+               writeLock.unlock();
+            }
+         }
+      }
+      compactIfNeeded();
+   }
+
+   @Override
+   public Class<? extends CacheLoaderConfig> getConfigurationClass() {
+      return LogFileCacheStoreConfig.class;
+   }
+
+   /**
+    * @return root directory where all log files for this {@link org.infinispan.loaders.CacheStore CacheStore} are
+    *         written.
+    */
+   public File getRoot() {
+      return root;
+   }
+
+   /**
+    * @return the number of log files currently in use
+    */
+   public int getLogFileCount() {
+      writeLock.lock();
+      try {
+         return files.size();
+      } finally {
+         writeLock.unlock();
+      }
+   }
+
+   /**
+    * @return the fraction of bytes in all log files taken up by overwritten, removed or expired records
+    */
+   public double getDeadBytesRatio() {
+      writeLock.lock();
+      try {
+         return deadBytesRatio();
+      } finally {
+         writeLock.unlock();
+      }
+   }
+
+   /**
+    * Compacts log files, oldest first, until the proportion of dead bytes falls below the configured threshold.  Each
+    * file present when compaction starts is compacted at most once, and the file currently being appended to is never
+    * compacted.
+    */
+   public synchronized void compact() throws CacheLoaderException {
+      List<LogFile> candidates;
+      writeLock.lock();
+      try {
+         candidates = new ArrayList<LogFile>(files);
+         candidates.remove(activeFile);
+      } finally {
+         writeLock.unlock();
+      }
+      for (LogFile f : candidates) {
+         writeLock.lock();
+         try {
+            if (files.isEmpty() || files.get(0) != f || deadBytesRatio() < config.getCompactionThreshold()) return;
+         } finally {
+            writeLock.unlock();
+         }
+         try {
+            compact(f);
+         } catch (IOException e) {
+            throw new CacheLoaderException("Unable to compact log file " + f.file, e);
+         }
+      }
+   }
+
+   private void compactIfNeeded() {
+      if (compactionExecutor == null || compactionScheduled.get()) return;
+      writeLock.lock();
+      try {
+         if (files.size() < 2 || deadBytesRatio() < config.getCompactionThreshold()) return;
+      } finally {
+         writeLock.unlock();
+      }
+      if (compactionScheduled.compareAndSet(false, true)) {
+         try {
+            compactionExecutor.execute(new Runnable() {
+               @Override
+               public void run() {
+                  try {
+                     compact();
+                  } catch (Exception e) {
+                     log.warnf(e, "Problems compacting log files in %s", root);
+                  } finally {
+                     compactionScheduled.set(false);
+                  }
+               }
+            });
+         } catch (RuntimeException e) {
+            // the store is being stopped
+            compactionScheduled.set(false);
+         }
+      }
+   }
+
+   /**
+    * Copies the records of the given (oldest) file that the index still points to onto the end of the active file, then
+    * deletes it.  Appends and index updates happen one record at a time under the write lock so that writers are never
+    * blocked for the duration of a whole file.
+    */
+   private void compact(LogFile f) throws IOException, CacheLoaderException {
+      if (log.isDebugEnabled()) log.debugf("Compacting log file %s", f.file);
+      int copied = 0;
+      DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(f.file), config.getStreamBufferSize()));
+      try {
+         long offset = FILE_HEADER_SIZE;
+         long end = f.size;
+         in.skipBytes(FILE_HEADER_SIZE);
+         while (offset < end) {
+            int length = in.readInt();
+            byte[] record = new byte[length];
+            ByteBuffer.wrap(record).putInt(length);
+            in.readFully(record, 4, length - 4);
+            ByteBuffer header = ByteBuffer.wrap(record, 4, RECORD_HEADER_SIZE - 4);
+            byte type = header.get();
+            int keyLength = header.getInt();
+            int valueLength = header.getInt();
+            long expiryTime = header.getLong();
+            if (type == TYPE_PUT) {
+               Object key = unmarshall(record, RECORD_HEADER_SIZE, keyLength);
+               writeLock.lock();
+               try {
+                  EntryLocation current = index.get(key);
+                  if (current != null && current.file == f && current.offset == offset) {
+                     EntryLocation moved = append(ByteBuffer.wrap(record), valueLength, expiryTime);
+                     index.put(key, moved);
+                     copied++;
+                  }
+               } finally {
+                  writeLock.unlock();
+               }
+            }
+            offset += length;
+         }
+      } finally {
+         in.close();
+      }
+
+      writeLock.lock();
+      fileLock.writeLock().lock();
+      try {
+         files.remove(f);
+         f.close();
+         if (!f.file.delete()) log.problemsRemovingFile(f.file);
+      } finally {
+         fileLock.writeLock().unlock();
+         writeLock.unlock();
+      }
+      if (log.isDebugEnabled()) log.debugf("Compacted log file %s, %d live records copied", f.file, copied);
+   }
+
+   /**
+    * Must be called with the write lock held.
+    */
+   private double deadBytesRatio() {
+      long total = 0, dead = 0;
+      for (LogFile f : files) {
+         total += f.size - FILE_HEADER_SIZE;
+         dead += f.deadBytes;
+      }
+      return total <= 0 ? 0 : (double) dead / total;
+   }
+
+   /**
+    * Appends a record to the active file, starting a new one first if the record would not fit.  Must be called with
+    * the write lock held.
+    */
+   private EntryLocation append(ByteBuffer record, int valueLength, long expiryTime) throws CacheLoaderException {
+      int length = record.remaining();
+      try {
+         if (activeFile.size > FILE_HEADER_SIZE && activeFile.size + length > config.getMaxFileSize()) {
+            activeFile = createLogFile();
+         }
+         LogFile f = activeFile;
+         long offset = f.size;
+         long position = offset;
+         while (record.hasRemaining()) position += f.channel.write(record, position);
+         if (config.isSyncWrites()) f.channel.force(false);
+         f.size = position;
+         return new EntryLocation(f, offset, length, valueLength, expiryTime);
+      } catch (IOException e) {
+         throw new CacheLoaderException("Unable to write to log file " + activeFile.file, e);
+      }
+   }
+
+   /**
+    * @return the value bytes of the record, or null if the file holding it has been compacted away in the meantime
+    */
+   private byte[] readValue(EntryLocation location) throws CacheLoaderException {
+      fileLock.readLock().lock();
+      try {
+         LogFile f = location.file;
+         if (f.closed) return null;
+         byte[] value = new byte[location.valueLength];
+         ByteBuffer buf = ByteBuffer.wrap(value);
+         long position = location.offset + location.length - location.valueLength;
+         while (buf.hasRemaining()) {
+            int read = f.channel.read(buf, position);
+            if (read < 0) throw new EOFException("Unexpected end of log file " + f.file);
+            position += read;
+         }
+         return value;
+      } catch (IOException e) {
+         throw new CacheLoaderException("Unable to read from log file " + location.file.file, e);
+      } finally {
+         fileLock.readLock().unlock();
+      }
+   }
+
+   /**
+    * Scans all log files, oldest first, rebuilding the index and the dead byte counters.  Must be called with the
+    * write lock held.
+    */
+   private void rebuildIndex() throws IOException {
+      File[] logFiles = root.listFiles();
+      if (logFiles == null) return;
+      List<Integer> ids = new ArrayList<Integer>();
+      for (File file : logFiles) {
+         String name = file.getName();
+         if (!name.endsWith(FILE_SUFFIX)) continue;
+         try {
+            ids.add(Integer.valueOf(name.substring(0, name.length() - FILE_SUFFIX.length())));
+         } catch (NumberFormatException e) {
+            log.debugf("Ignoring unexpected file %s", file);
+         }
+      }
+      Integer[] sorted = ids.toArray(new Integer[ids.size()]);
+      Arrays.sort(sorted);
+      long now = System.currentTimeMillis();
+      for (Integer id : sorted) {
+         LogFile f = new LogFile(id, new File(root, id + FILE_SUFFIX));
+         nextFileId = id + 1;
+         if (!scan(f, now)) {
+            f.close();
+            if (!f.file.delete()) log.problemsRemovingFile(f.file);
+            continue;
+         }
+         files.add(f);
+      }
+   }
+
+   /**
+    * @return false if the file is not a log file written by this store and should be discarded
+    */
+   private boolean scan(LogFile f, long now) throws IOException {
+      long fileLength = f.channel.size();
+      DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(f.file), config.getStreamBufferSize()));
+      long offset = 0;
+      try {
+         if (fileLength < FILE_HEADER_SIZE || in.readInt() != MAGIC) {
+            log.warnf("Discarding %s, it is not a valid log file", f.file);
+            return false;
+         }
+         offset = FILE_HEADER_SIZE;
+         while (offset + RECORD_HEADER_SIZE <= fileLength) {
+            int length = in.readInt();
+            byte type = in.readByte();
+            int keyLength = in.readInt();
+            int valueLength = in.readInt();
+            long expiryTime = in.readLong();
+            if (length < RECORD_HEADER_SIZE || offset + length > fileLength
+                  || (type != TYPE_PUT && type != TYPE_REMOVE) || keyLength + valueLength != length - RECORD_HEADER_SIZE)
+               break;
+            byte[] keyBytes = new byte[keyLength];
+            in.readFully(keyBytes);
+            in.skipBytes(valueLength);
+            Object key;
+            try {
+               key = unmarshall(keyBytes, 0, keyLength);
+            } catch (CacheLoaderException e) {
+               log.warnf(e, "Unable to read key at offset %d of %s", offset, f.file);
+               break;
+            }
+            EntryLocation old;
+            if (type == TYPE_PUT) {
+               EntryLocation location = new EntryLocation(f, offset, length, valueLength, expiryTime);
+               if (location.isExpired(now)) {
+                  old = index.remove(key);
+                  f.deadBytes += length;
+               } else {
+                  old = index.put(key, location);
+               }
+            } else {
+               old = index.remove(key);
+               f.deadBytes += length;
+            }
+            if (old != null) old.file.deadBytes += old.length;
+            offset += length;
+         }
+      } finally {
+         in.close();
+      }
+      if (offset < fileLength) {
+         log.warnf("Truncating incomplete record at offset %d of %s", offset, f.file);
+         f.channel.truncate(offset);
+      }
+      f.size = offset;
+      return true;
+   }
+
+   private LogFile createLogFile() throws IOException {
+      int id = nextFileId++;
+      LogFile f = new LogFile(id, new File(root, id + FILE_SUFFIX));
+      ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+      header.putInt(MAGIC).flip();
+      f.channel.truncate(0);
+      while (header.hasRemaining()) f.channel.write(header, FILE_HEADER_SIZE - header.remaining());
+      f.size = FILE_HEADER_SIZE;
+      files.add(f);
+      if (trace) log.tracef("Created log file %s", f.file);
+      return f;
+   }
+
+   private static ByteBuffer createRecord(byte type, byte[] keyBytes, byte[] valueBytes, long expiryTime) {
+      int length = RECORD_HEADER_SIZE + keyBytes.length + valueBytes.length;
+      ByteBuffer record = ByteBuffer.allocate(length);
+      record.putInt(length).put(type).putInt(keyBytes.length).putInt(valueBytes.length).putLong(expiryTime);
+      record.put(keyBytes).put(valueBytes);
+      record.flip();
+      return record;
+   }
+
+   private byte[] marshall(Object o) throws CacheLoaderException {
+      try {
+         return marshaller.objectToByteBuffer(o);
+      } catch (IOException e) {
+         throw new CacheLoaderException("Unable to marshall " + o, e);
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         throw new CacheLoaderException("Interrupted while marshalling " + o, e);
+      }
+   }
+
+   private Object unmarshall(byte[] bytes) throws CacheLoaderException {
+      return unmarshall(bytes, 0, bytes.length);
+   }
+
+   private Object unmarshall(byte[] bytes, int offset, int length) throws CacheLoaderException {
+      try {
+         return marshaller.objectFromByteBuffer(bytes, offset, length);
+      } catch (IOException e) {
+         throw new CacheLoaderException("Unable to unmarshall record", e);
+      } catch (ClassNotFoundException e) {
+         throw new CacheLoaderException("Unable to unmarshall record", e);
+      }
+   }
+
+   /**
+    * A log file and its bookkeeping.  {@link #size} and {@link #deadBytes} are only modified under the write lock.
+    */
+   static final class LogFile {
+      final int id;
+      final File file;
+      final FileChannel channel;
+      volatile long size;
+      long deadBytes;
+      volatile boolean closed;
+
+      LogFile(int id, File file) throws IOException {
+         this.id = id;
+         this.file = file;
+         this.channel = new RandomAccessFile(file, "rw").getChannel();
+      }
+
+      void close() {
+         closed = true;
+         try {
+            channel.close();
+         } catch (IOException e) {
+            log.debugf(e, "Problems closing %s", file);
+         }
+      }
+   }
+
+   /**
+    * Where the most recent record of a key lives.
+    */
+   static final class EntryLocation {
+      final LogFile file;
+      final long offset;
+      final int length;
+      final int valueLength;
+      final long expiryTime;
+
+      EntryLocation(LogFile file, long offset, int length, int valueLength, long expiryTime) {
+         this.file = file;
+         this.offset = offset;
+         this.length = length;
+         this.valueLength = valueLength;
+         this.expiryTime = expiryTime;
+      }
+
+      boolean isExpired(long now) {
+         return expiryTime >= 0 && expiryTime <= now;
+      }
+   }
+}
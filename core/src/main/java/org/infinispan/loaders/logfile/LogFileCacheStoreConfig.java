@@ -0,0 +1,156 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.loaders.logfile;
+
+import org.infinispan.loaders.AbstractCacheStoreConfig;
+
+/**
+ * Configures {@link LogFileCacheStore}.
+ * <p/>
+ *    <ul>
+ *       <li><tt>location</tt> - a location on disk where the store writes its log files.  This defaults to
+ * <tt>Infinispan-LogFileCacheStore</tt> in the current working directory.</li>
+ *       <li><tt>maxFileSize</tt> - size, in bytes, after which the store stops appending to the current log file and
+ * starts a new one.  Only whole files are ever compacted, so smaller files reclaim space sooner at the cost of more
+ * open files.  By default, this is set to <tt>16777216</tt> (16MB).</li>
+ *       <li><tt>compactionThreshold</tt> - fraction of the bytes held in log files that may be taken up by
+ * overwritten, removed or expired records before the oldest log file is compacted.  By default, this is set to
+ * <tt>0.5</tt>.</li>
+ *       <li><tt>syncWrites</tt> - whether each write is forced to disk before returning.  By default, this is set to
+ * <tt>false</tt>.</li>
+ *       <li><tt>streamBufferSize</tt> - size of the buffer used to read log files when rebuilding the index on
+ * startup.  By default, this is set to <tt>65536</tt>.</li>
+ *    </ul>
+ *
+ * @since 5.1
+ */
+public class LogFileCacheStoreConfig extends AbstractCacheStoreConfig {
+
+   private static final long serialVersionUID = -6209232487543367155L;
+
+   private String location = "Infinispan-LogFileCacheStore";
+   private long maxFileSize = 16 * 1024 * 1024;
+   private double compactionThreshold = 0.5;
+   private boolean syncWrites = false;
+   private int streamBufferSize = 65536;
+
+   public LogFileCacheStoreConfig() {
+      setCacheLoaderClassName(LogFileCacheStore.class.getName());
+   }
+
+   public String getLocation() {
+      return location;
+   }
+
+   public void setLocation(String location) {
+      testImmutability("location");
+      this.location = location;
+   }
+
+   public LogFileCacheStoreConfig location(String location) {
+      setLocation(location);
+      return this;
+   }
+
+   public long getMaxFileSize() {
+      return maxFileSize;
+   }
+
+   public void setMaxFileSize(long maxFileSize) {
+      testImmutability("maxFileSize");
+      this.maxFileSize = maxFileSize;
+   }
+
+   public LogFileCacheStoreConfig maxFileSize(long maxFileSize) {
+      setMaxFileSize(maxFileSize);
+      return this;
+   }
+
+   public double getCompactionThreshold() {
+      return compactionThreshold;
+   }
+
+   public void setCompactionThreshold(double compactionThreshold) {
+      testImmutability("compactionThreshold");
+      this.compactionThreshold = compactionThreshold;
+   }
+
+   public LogFileCacheStoreConfig compactionThreshold(double compactionThreshold) {
+      setCompactionThreshold(compactionThreshold);
+      return this;
+   }
+
+   public boolean isSyncWrites() {
+      return syncWrites;
+   }
+
+   public void setSyncWrites(boolean syncWrites) {
+      testImmutability("syncWrites");
+      this.syncWrites = syncWrites;
+   }
+
+   public LogFileCacheStoreConfig syncWrites(boolean syncWrites) {
+      setSyncWrites(syncWrites);
+      return this;
+   }
+
+   public int getStreamBufferSize() {
+      return streamBufferSize;
+   }
+
+   public void setStreamBufferSize(int streamBufferSize) {
+      testImmutability("streamBufferSize");
+      this.streamBufferSize = streamBufferSize;
+   }
+
+   public LogFileCacheStoreConfig streamBufferSize(int streamBufferSize) {
+      setStreamBufferSize(streamBufferSize);
+      return this;
+   }
+
+   // Method overrides below are used to make configuration more fluent.
+
+   @Override
+   public LogFileCacheStoreConfig purgeOnStartup(Boolean purgeOnStartup) {
+      super.purgeOnStartup(purgeOnStartup);
+      return this;
+   }
+
+   @Override
+   public LogFileCacheStoreConfig purgeSynchronously(Boolean purgeSynchronously) {
+      super.purgeSynchronously(purgeSynchronously);
+      return this;
+   }
+
+   @Override
+   public LogFileCacheStoreConfig fetchPersistentState(Boolean fetchPersistentState) {
+      super.fetchPersistentState(fetchPersistentState);
+      return this;
+   }
+
+   @Override
+   public LogFileCacheStoreConfig ignoreModifications(Boolean ignoreModifications) {
+      super.ignoreModifications(ignoreModifications);
+      return this;
+   }
+}
@@ -36,8 +36,10 @@ import org.infinispan.util.Util;
 import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
+import java.lang.ref.SoftReference;
 import java.util.Arrays;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 /**
  * Wrapper that wraps cached data, providing lazy deserialization using the calling thread's context class loader.
@@ -64,8 +66,15 @@ import java.util.Set;
  * @since 4.0
  */
 public class MarshalledValue {
-   volatile protected Object instance;
-   volatile protected byte[] raw;
+   private static final AtomicReferenceFieldUpdater<MarshalledValue, Object> stateUpdater =
+         AtomicReferenceFieldUpdater.newUpdater(MarshalledValue.class, Object.class, "state");
+
+   // Either the instance alone, the serialized form alone as a byte[], or a Representations holding both.  Only ever
+   // replaced atomically, which is what makes serialize(), deserialize() and compact() safe without locking.
+   private volatile Object state;
+   // serialized form dropped by compact() although it was asked to be retained, reused if serialized again unless the
+   // instance has been handed out since, as it may have been modified
+   private volatile SoftReference<byte[]> releasedRaw;
    volatile protected int serialisedSize = 128; //size of serialized representation: initial value is a guess
    volatile private int cachedHashCode = 0;
    // by default equals() will test on the instance rather than the byte array if conversion is required.
@@ -76,7 +85,7 @@ public class MarshalledValue {
    public MarshalledValue(Object instance, boolean equalityPreferenceForInstance, StreamingMarshaller marshaller) {
       if (instance == null) throw new NullPointerException("Null values cannot be wrapped as MarshalledValues!");
 
-      this.instance = instance;
+      this.state = stateOf(instance, null);
       this.equalityPreferenceForInstance = equalityPreferenceForInstance;
       this.marshaller = marshaller;
    }
@@ -88,69 +97,78 @@ public class MarshalledValue {
 
    private void init(byte[] raw, int cachedHashCode) {
       // for unmarshalling
-      this.raw = raw;
+      this.state = raw;
       this.serialisedSize = raw.length;
       this.cachedHashCode = cachedHashCode;
    }
 
-   public synchronized byte[] serialize() {
-      return serialize0();
+   public byte[] serialize() {
+      Object current = state;
+      byte[] rawValue = rawOf(current);
+      if (rawValue != null) return rawValue;
+
+      // Do NOT drop the instance over here, since it may be used elsewhere (e.g., in a cache listener).
+      // this will be compacted by the MarshalledValueInterceptor when the call returns.
+      Object instanceValue = instanceOf(current);
+      rawValue = marshall(instanceValue);
+      while (!stateUpdater.compareAndSet(this, current, stateOf(instanceValue, rawValue))) {
+         current = state;
+         byte[] published = rawOf(current);
+         // another thread got there first, share its serialized form
+         if (published != null) return published;
+      }
+      releasedRaw = null;
+      return rawValue;
    }
 
-   /**
-    * Should only be called from a synchronized method
-    */
-   private byte[] serialize0() {
-      byte[] rawValue = raw;
-      if (rawValue == null) {
+   private byte[] marshall(Object instanceValue) {
+      SoftReference<byte[]> released = releasedRaw;
+      if (released != null) {
+         byte[] rawValue = released.get();
+         if (rawValue != null) return rawValue;
+      }
+      try {
+         ExposedByteArrayOutputStream baos = new ExposedByteArrayOutputStream(this.serialisedSize);
+         ObjectOutput out = marshaller.startObjectOutput(baos, true);
          try {
-            // Do NOT set instance to null over here, since it may be used elsewhere (e.g., in a cache listener).
-            // this will be compacted by the MarshalledValueInterceptor when the call returns.
-            ExposedByteArrayOutputStream baos = new ExposedByteArrayOutputStream(this.serialisedSize);
-            ObjectOutput out = marshaller.startObjectOutput(baos, true);
-            try {
-               marshaller.objectToObjectStream(instance, out);
-            } finally {
-               marshaller.finishObjectOutput(out);
-            }
-            final byte[] buf = baos.getRawBuffer();
-            final int length = baos.size();
-            if (buf.length == length) {
-               // in this case we can avoid duplicating the buffer
-               rawValue = buf;
-            }
-            else {
-               serialisedSize = length;
-               rawValue = new byte[length];
-               System.arraycopy(buf, 0, rawValue, 0, length);
-            }
-            raw = rawValue;
-         } catch (Exception e) {
-            throw new CacheException("Unable to marshall value " + instance, e);
+            marshaller.objectToObjectStream(instanceValue, out);
+         } finally {
+            marshaller.finishObjectOutput(out);
+         }
+         final byte[] buf = baos.getRawBuffer();
+         final int length = baos.size();
+         if (buf.length == length) {
+            // in this case we can avoid duplicating the buffer
+            return buf;
          }
+         serialisedSize = length;
+         byte[] rawValue = new byte[length];
+         System.arraycopy(buf, 0, rawValue, 0, length);
+         return rawValue;
+      } catch (Exception e) {
+         throw new CacheException("Unable to marshall value " + instanceValue, e);
       }
-      return rawValue;
    }
 
-   public synchronized Object deserialize() {
-      return deserialize0();
-   }
+   public Object deserialize() {
+      if (releasedRaw != null) releasedRaw = null;
+      Object current = state;
+      Object instanceValue = instanceOf(current);
+      if (instanceValue != null) return instanceValue;
 
-   /**
-    * Should only be called from a synchronized method
-    */
-   private Object deserialize0() {
-      Object instanceValue = instance;
-      if (instanceValue == null) {
-         try {
-            // StreamingMarshaller underneath deals with making sure the right classloader is set.
-            instanceValue = marshaller.objectFromByteBuffer(raw);
-            instance = instanceValue;
-            return instanceValue;
-         }
-         catch (Exception e) {
-            throw new CacheException("Unable to unmarshall value", e);
-         }
+      byte[] rawValue = rawOf(current);
+      try {
+         // StreamingMarshaller underneath deals with making sure the right classloader is set.
+         instanceValue = marshaller.objectFromByteBuffer(rawValue);
+      }
+      catch (Exception e) {
+         throw new CacheException("Unable to unmarshall value", e);
+      }
+      while (!stateUpdater.compareAndSet(this, current, stateOf(instanceValue, rawValue))) {
+         current = state;
+         Object published = instanceOf(current);
+         // another thread got there first, make sure all callers see the same instance
+         if (published != null) return published;
       }
       return instanceValue;
    }
@@ -168,55 +186,76 @@ public class MarshalledValue {
     * @param force                          ensures the preferred representation is maintained and the other released,
     *                                       even if this means serializing or deserializing.
     */
-   public synchronized void compact(boolean preferSerializedRepresentation, boolean force) {
+   public void compact(boolean preferSerializedRepresentation, boolean force) {
+      compact(preferSerializedRepresentation, force, false);
+   }
+
+   /**
+    * Same as {@link #compact(boolean, boolean)}, except that when the serialized representation is released, it can be
+    * retained through a soft reference, so that it is reused rather than recomputed if this value is serialized again
+    * before the memory is needed, e.g. when it is written to an asynchronous cache store after the call returns.  The
+    * retained form is discarded as soon as the instance is handed out by {@link #get()} or {@link #deserialize()},
+    * since the caller may modify it.
+    *
+    * @param retainSerializedForm whether a released serialized representation should be softly retained
+    */
+   public void compact(boolean preferSerializedRepresentation, boolean force, boolean retainSerializedForm) {
       // reset the equalityPreference
       equalityPreferenceForInstance = true;
-      Object thisInstance = this.instance;
-      byte[] thisRaw = this.raw;
       if (force) {
-         if (preferSerializedRepresentation && thisRaw == null) {
-            // Accessing a synchronized method from an already synchronized
-            // method is expensive, so delegate to a private not synched method.
-            thisRaw = serialize0();
-         }
-         else if (!preferSerializedRepresentation && thisInstance == null){
-            // Accessing a synchronized method from an already synchronized
-            // method is expensive, so delegate to a private not synched method.
-            thisInstance = deserialize0();
-         }
+         if (preferSerializedRepresentation)
+            serialize();
+         else
+            deserialize();
       }
 
-      if (thisInstance != null && thisRaw != null) {
+      while (true) {
+         Object current = state;
+         Object thisInstance = instanceOf(current);
+         byte[] thisRaw = rawOf(current);
          // need to loose one representation!
-         if (preferSerializedRepresentation) {
-            //in both branches we first set one then null the other, so that there's always one available
-            //to read from those methods not being synchronized
-            raw = thisRaw;
-            instance = null;
-         } else {
-            instance = thisInstance;
-            raw = null;
+         if (thisInstance == null || thisRaw == null) return;
+         Object compacted = preferSerializedRepresentation ? thisRaw : stateOf(thisInstance, null);
+         if (stateUpdater.compareAndSet(this, current, compacted)) {
+            if (!preferSerializedRepresentation && retainSerializedForm)
+               releasedRaw = new SoftReference<byte[]>(thisRaw);
+            return;
          }
       }
    }
 
    public byte[] getRaw() {
-      byte[] rawValue = raw;
-      if (rawValue == null){
-         rawValue = serialize();
-      }
-      return rawValue;
+      return serialize();
+   }
+
+   /**
+    * @return the size, in bytes, of the serialized form of this value, or an estimate of it if the value has not been
+    *         serialized yet
+    */
+   public int getSerialisedSize() {
+      byte[] rawValue = rawOf(state);
+      return rawValue == null ? serialisedSize : rawValue.length;
    }
 
    /**
     * Returns the 'cached' instance
     */
    public Object get() {
-      Object value = instance;
-      if (value == null) {
-         value = deserialize();
-      }
-      return value;
+      return deserialize();
+   }
+
+   /**
+    * @return the deserialized representation if currently held, null otherwise
+    */
+   Object getInstanceIfPresent() {
+      return instanceOf(state);
+   }
+
+   /**
+    * @return the serialized representation if currently held, null otherwise
+    */
+   byte[] getRawIfPresent() {
+      return rawOf(state);
    }
 
    StreamingMarshaller getMarshaller() {
@@ -233,13 +272,15 @@ public class MarshalledValue {
 
       // if both versions are serialized or deserialized, just compare the relevant representations,
       // but attempt the operations in order to respect the value of equalityPreferenceForInstance
-      Object thisInstance = this.instance;
-      Object thatInstance = that.instance;
+      Object thisState = this.state;
+      Object thatState = that.state;
+      Object thisInstance = instanceOf(thisState);
+      Object thatInstance = instanceOf(thatState);
       //test the default equality first so we might skip some work:
       if (preferInstanceEquality && thisInstance != null && thatInstance != null) return thisInstance.equals(thatInstance);
       
-      byte[] thisRaw = this.raw;
-      byte[] thatRaw = that.raw;
+      byte[] thisRaw = rawOf(thisState);
+      byte[] thatRaw = rawOf(thatState);
       if (thisRaw != null && thatRaw != null) return Arrays.equals(thisRaw, thatRaw);
       if (thisInstance != null && thatInstance != null) return thisInstance.equals(thatInstance);
 
@@ -281,15 +322,47 @@ public class MarshalledValue {
 
    @Override
    public String toString() {
+      Object current = state;
+      Object instanceValue = instanceOf(current);
+      byte[] rawValue = rawOf(current);
       StringBuilder sb = new StringBuilder()
          .append("MarshalledValue{")
-         .append("instance=").append(instance != null ? instance.toString() : "<serialized>")
-         .append(", serialized=").append(raw != null ?  Util.printArray(raw, false) : "false")
+         .append("instance=").append(instanceValue != null ? instanceValue.toString() : "<serialized>")
+         .append(", serialized=").append(rawValue != null ?  Util.printArray(rawValue, false) : "false")
          .append(", cachedHashCode=").append(cachedHashCode)
          .append("}@").append(Util.hexIdHashCode(this));
       return sb.toString();
    }
 
+   private static Object stateOf(Object instance, byte[] raw) {
+      if (instance == null) return raw;
+      // an instance which is itself a byte[] must not be mistaken for a serialized form
+      if (raw == null && !(instance instanceof byte[])) return instance;
+      return new Representations(instance, raw);
+   }
+
+   private static Object instanceOf(Object state) {
+      if (state instanceof byte[]) return null;
+      if (state instanceof Representations) return ((Representations) state).instance;
+      return state;
+   }
+
+   private static byte[] rawOf(Object state) {
+      if (state instanceof byte[]) return (byte[]) state;
+      if (state instanceof Representations) return ((Representations) state).raw;
+      return null;
+   }
+
+   private static final class Representations {
+      final Object instance;
+      final byte[] raw;
+
+      Representations(Object instance, byte[] raw) {
+         this.instance = instance;
+         this.raw = raw;
+      }
+   }
+
    public MarshalledValue setEqualityPreferenceForInstance(boolean equalityPreferenceForInstance) {
       this.equalityPreferenceForInstance = equalityPreferenceForInstance;
       return this;
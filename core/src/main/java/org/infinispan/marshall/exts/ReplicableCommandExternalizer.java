@@ -32,6 +32,7 @@ import org.infinispan.commands.control.StateTransferControlCommand;
 import org.infinispan.commands.read.DistributedExecuteCommand;
 import org.infinispan.commands.read.GetKeyValueCommand;
 import org.infinispan.commands.read.MapReduceCommand;
+import org.infinispan.commands.remote.ClusteredGetAllCommand;
 import org.infinispan.commands.remote.ClusteredGetCommand;
 import org.infinispan.commands.remote.recovery.CompleteTransactionCommand;
 import org.infinispan.commands.remote.recovery.GetInDoubtTransactionsCommand;
@@ -137,7 +138,7 @@ public class ReplicableCommandExternalizer extends AbstractExternalizer<Replicab
             PutKeyValueCommand.class, PutMapCommand.class,
             RemoveCommand.class, ReplaceCommand.class,
             RemoveCacheCommand.class, RemoveRecoveryInfoCommand.class, GetInDoubtTransactionsCommand.class,
-            GetInDoubtTxInfoCommand.class, CompleteTransactionCommand.class);
+            GetInDoubtTxInfoCommand.class, CompleteTransactionCommand.class, ClusteredGetAllCommand.class);
       Collection<Class<? extends ReplicableCommand>> moduleCommands = getModuleCommands();
       if (moduleCommands != null && !moduleCommands.isEmpty()) coreCommands.addAll(moduleCommands);
       return coreCommands;
@@ -109,7 +109,18 @@ public abstract class AbstractListenerImpl {
    }
 
    public void addListener(Object listener) {
-      validateAndAddListenerInvocation(listener);
+      validateAndAddListenerInvocation(listener, null);
+   }
+
+   /**
+    * Adds a listener which is only notified of the entry events accepted by the given filter.  Subclasses exposing
+    * events that do not concern entries are expected to ignore the filter for those events.
+    *
+    * @param listener listener to add, must not be null
+    * @param filter filter to apply, or null to notify the listener of all events
+    */
+   protected void addListener(Object listener, KeyValueFilter<?, ?> filter) {
+      validateAndAddListenerInvocation(listener, filter);
    }
 
    public Set<Object> getListeners() {
@@ -122,12 +133,14 @@ public abstract class AbstractListenerImpl {
 
    /**
     * Loops through all valid methods on the object passed in, and caches the relevant methods as {@link
-    * ListenerInvocation} for invocation by reflection.
+    * ListenerInvocation} for invocation, by a generated {@link ListenerInvoker} when possible and by reflection
+    * otherwise.
     *
     * @param listener object to be considered as a listener.
+    * @param filter filter applied to the entry events of the listener, may be null.
     */
    @SuppressWarnings("unchecked")
-   private void validateAndAddListenerInvocation(Object listener) {
+   private void validateAndAddListenerInvocation(Object listener, KeyValueFilter<?, ?> filter) {
       boolean sync = testListenerClassValidity(listener.getClass());
       boolean foundMethods = false;
       Map<Class<? extends Annotation>, Class> allowedListeners = getAllowedMethodAnnotations();
@@ -139,7 +152,7 @@ public abstract class AbstractListenerImpl {
             Class value = annotationEntry.getValue();
             if (m.isAnnotationPresent(key)) {
                testListenerMethodValidity(m, value, key.getName());
-               addListenerInvocation(key, new ListenerInvocation(listener, m, sync));
+               addListenerInvocation(key, new ListenerInvocation(listener, m, sync, filter));
                foundMethods = true;
             }
          }
@@ -185,38 +198,75 @@ public abstract class AbstractListenerImpl {
       public final Object target;
       public final Method method;
       public final boolean sync;
+      public final KeyValueFilter<Object, Object> filter;
+      // null if the method has to be invoked by reflection
+      private final ListenerInvoker invoker;
 
       public ListenerInvocation(Object target, Method method, boolean sync) {
+         this(target, method, sync, null);
+      }
+
+      @SuppressWarnings("unchecked")
+      public ListenerInvocation(Object target, Method method, boolean sync, KeyValueFilter<?, ?> filter) {
          this.target = target;
          this.method = method;
          this.sync = sync;
+         this.filter = (KeyValueFilter<Object, Object>) filter;
+         this.invoker = ListenerInvokerGenerator.generate(target.getClass(), method);
+         if (invoker == null)
+            getLog().debugf("Unable to generate an invoker for %s, invoking it by reflection", method);
       }
 
-      public void invoke(final Object event) {
-         Runnable r = new Runnable() {
+      /**
+       * @return true if the listener is interested in events concerning the given entry, false otherwise
+       */
+      public boolean accept(Object key, Object value) {
+         return filter == null || filter.accept(key, value);
+      }
 
-            public void run() {
-               try {
-                  method.invoke(target, event);
-               }
-               catch (InvocationTargetException exception) {
-                  Throwable cause = getRealException(exception);
-                  throw new CacheException(String.format(
-                     "Caught exception [%s] while invoking method [%s] on listener instance: %s"
-                     , cause.getClass().getName(), method, target
-                  ), cause);
-               }
-               catch (IllegalAccessException exception) {
-                  getLog().unableToInvokeListenerMethod(method, target, exception);
-                  removeListener(target);
+      public void invoke(final Object event) {
+         // synchronous listeners are called directly, sparing a Runnable per event
+         if (sync) {
+            invokeListener(event);
+         } else {
+            asyncProcessor.execute(new Runnable() {
+               public void run() {
+                  invokeListener(event);
                }
+            });
+         }
+      }
+
+      private void invokeListener(Object event) {
+         if (invoker != null) {
+            try {
+               invoker.invoke(target, event);
+            }
+            catch (Exception exception) {
+               throw listenerException(exception);
             }
-         };
+         } else {
+            try {
+               method.invoke(target, event);
+            }
+            catch (InvocationTargetException exception) {
+               // errors are not wrapped, as with the generated invokers
+               if (exception.getCause() instanceof Error) throw (Error) exception.getCause();
+               throw listenerException(exception);
+            }
+            catch (IllegalAccessException exception) {
+               getLog().unableToInvokeListenerMethod(method, target, exception);
+               removeListener(target);
+            }
+         }
+      }
 
-         if (sync)
-            syncProcessor.execute(r);
-         else
-            asyncProcessor.execute(r);
+      private CacheException listenerException(Throwable throwable) {
+         Throwable cause = getRealException(throwable);
+         return new CacheException(String.format(
+            "Caught exception [%s] while invoking method [%s] on listener instance: %s"
+            , cause.getClass().getName(), method, target
+         ), cause);
       }
    }
 
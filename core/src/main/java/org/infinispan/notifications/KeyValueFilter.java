@@ -0,0 +1,48 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.notifications;
+
+/**
+ * Filter restricting the cache entry events a listener receives to the entries it is interested in.  Registered along
+ * with a listener using {@link org.infinispan.AdvancedCache#addListener(Object, KeyValueFilter)}.
+ * <p/>
+ * The filter is evaluated before the event is created, so that events no listener is interested in are never built.
+ * It is called once per listener and entry, on the thread performing the cache operation, whether the listener is
+ * synchronous or not.  Implementations must therefore be thread safe, quick, and must not call the cache.
+ * <p/>
+ * Only events concerning cache entries are filtered.  A listener registered with a filter is still notified of every
+ * transaction, rehash and topology event it has methods for.
+ *
+ * @since 5.1
+ */
+public interface KeyValueFilter<K, V> {
+
+   /**
+    * @param key key of the entry the event is about
+    * @param value value of the entry, as it would be passed to the listener through the event.  This is null when the
+    *              event does not carry a value, i.e. for {@link org.infinispan.notifications.cachelistener.annotation.CacheEntryCreated}
+    *              events.
+    * @return true if the listener should be notified, false otherwise
+    */
+   boolean accept(K key, V value);
+}
@@ -0,0 +1,46 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.notifications;
+
+/**
+ * Calls a single listener method on a listener instance.  Implementations are generated at registration time by {@link
+ * ListenerInvokerGenerator}, so that events are delivered with a plain virtual call rather than through {@link
+ * java.lang.reflect.Method#invoke(Object, Object...)}.
+ * <p/>
+ * This interface is public only so that generated classes, which are defined by their own class loader, can implement
+ * it.  It is not meant to be used or implemented outside of the notification framework.
+ *
+ * @since 5.1
+ */
+public interface ListenerInvoker {
+
+   /**
+    * Invokes the listener method on the given target.  Whatever the listener method throws is propagated as is,
+    * without being wrapped.  Although only exceptions are declared, errors thrown by the listener method are
+    * propagated too.
+    *
+    * @param target listener instance
+    * @param event event to pass to the listener method
+    */
+   void invoke(Object target, Object event) throws Exception;
+}
@@ -0,0 +1,250 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.notifications;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Generates {@link ListenerInvoker} implementations calling a given listener method directly.  For a method
+ * <tt>void entryCreated(CacheEntryCreatedEvent e)</tt> declared by listener class <tt>L</tt>, the generated class is
+ * equivalent to:
+ * <pre>
+ * public final class ListenerInvoker$n implements ListenerInvoker {
+ *    public void invoke(Object target, Object event) {
+ *       ((L) target).entryCreated((CacheEntryCreatedEvent) event);
+ *    }
+ * }
+ * </pre>
+ * Each class is defined by a class loader of its own, a child of the listener's class loader, so that it can be
+ * unloaded as soon as the listener is unregistered.  Until then, registering other instances of the same listener class
+ * reuses the invokers already generated, as they do not hold any state.
+ *
+ * @since 5.1
+ */
+final class ListenerInvokerGenerator {
+
+   private static final String GENERATED_PACKAGE = "org.infinispan.notifications.generated.";
+   private static final AtomicInteger counter = new AtomicInteger();
+   // invokers are only weakly referenced, as they reference their listener class through their class loader
+   private static final Map<Class<?>, Map<String, WeakReference<ListenerInvoker>>> invokers =
+         new WeakHashMap<Class<?>, Map<String, WeakReference<ListenerInvoker>>>();
+
+   // constant pool indexes, see generateClass()
+   private static final int THIS_CLASS = 2;
+   private static final int OBJECT_CLASS = 4;
+   private static final int INVOKER_CLASS = 6;
+   private static final int INIT_NAME = 7;
+   private static final int VOID_DESCRIPTOR = 8;
+   private static final int OBJECT_INIT = 10;
+   private static final int INVOKE_NAME = 11;
+   private static final int INVOKE_DESCRIPTOR = 12;
+   private static final int CODE = 13;
+   private static final int TARGET_CLASS = 15;
+   private static final int EVENT_CLASS = 17;
+   private static final int LISTENER_METHOD = 21;
+   private static final int CONSTANT_POOL_COUNT = 22;
+
+   private ListenerInvokerGenerator() {
+   }
+
+   /**
+    * Generates an invoker calling the given method on instances of the given listener class.
+    *
+    * @param listenerClass class of the listener instances the invoker is used with
+    * @param method public, non-static listener method taking a single parameter
+    * @return an invoker, or null if no invoker can be generated for that method, in which case the method has to be
+    *         invoked by reflection
+    */
+   static ListenerInvoker generate(Class<?> listenerClass, Method method) {
+      if (Modifier.isStatic(method.getModifiers()) || !Modifier.isPublic(listenerClass.getModifiers()))
+         return null;
+      synchronized (invokers) {
+         Map<String, WeakReference<ListenerInvoker>> classInvokers = invokers.get(listenerClass);
+         if (classInvokers == null) {
+            classInvokers = new HashMap<String, WeakReference<ListenerInvoker>>();
+            invokers.put(listenerClass, classInvokers);
+         }
+         // keyed by signature, as a Method would strongly reference its class
+         String signature = method.getName() + '(' + method.getParameterTypes()[0].getName() + ')';
+         WeakReference<ListenerInvoker> ref = classInvokers.get(signature);
+         ListenerInvoker invoker = ref == null ? null : ref.get();
+         if (invoker == null) {
+            invoker = generateInvoker(listenerClass, method);
+            if (invoker != null) classInvokers.put(signature, new WeakReference<ListenerInvoker>(invoker));
+         }
+         return invoker;
+      }
+   }
+
+   private static ListenerInvoker generateInvoker(Class<?> listenerClass, Method method) {
+      Class<?> eventClass = method.getParameterTypes()[0];
+      String name = GENERATED_PACKAGE + "ListenerInvoker$" + counter.incrementAndGet();
+      try {
+         InvokerClassLoader loader = new InvokerClassLoader(listenerClass.getClassLoader());
+         // the generated class refers to both classes by name, so they must resolve to the very same classes
+         if (loader.loadClass(listenerClass.getName()) != listenerClass || loader.loadClass(eventClass.getName()) != eventClass)
+            return null;
+         byte[] bytes = generateClass(name, listenerClass, method.getName(), eventClass);
+         return (ListenerInvoker) loader.define(name, bytes).newInstance();
+      } catch (Throwable t) {
+         // i.e. class loaders that cannot be extended or a security manager forbidding it
+         return null;
+      }
+   }
+
+   private static byte[] generateClass(String name, Class<?> listenerClass, String methodName, Class<?> eventClass) throws IOException {
+      String eventName = internalName(eventClass);
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream(512);
+      DataOutputStream out = new DataOutputStream(bytes);
+      out.writeInt(0xCAFEBABE);
+      out.writeShort(0); // minor version
+      out.writeShort(49); // Java 5, no stack map frames needed
+
+      out.writeShort(CONSTANT_POOL_COUNT);
+      utf8(out, internalName(name));                                // 1
+      classRef(out, 1);                                             // 2  THIS_CLASS
+      utf8(out, "java/lang/Object");                                // 3
+      classRef(out, 3);                                             // 4  OBJECT_CLASS
+      utf8(out, internalName(ListenerInvoker.class));               // 5
+      classRef(out, 5);                                             // 6  INVOKER_CLASS
+      utf8(out, "<init>");                                          // 7  INIT_NAME
+      utf8(out, "()V");                                             // 8  VOID_DESCRIPTOR
+      nameAndType(out, INIT_NAME, VOID_DESCRIPTOR);                 // 9
+      methodRef(out, OBJECT_CLASS, 9);                              // 10 OBJECT_INIT
+      utf8(out, "invoke");                                          // 11 INVOKE_NAME
+      utf8(out, "(Ljava/lang/Object;Ljava/lang/Object;)V");         // 12 INVOKE_DESCRIPTOR
+      utf8(out, "Code");                                            // 13 CODE
+      utf8(out, internalName(listenerClass));                       // 14
+      classRef(out, 14);                                            // 15 TARGET_CLASS
+      utf8(out, eventName);                                         // 16
+      classRef(out, 16);                                            // 17 EVENT_CLASS
+      utf8(out, methodName);                                        // 18
+      utf8(out, "(L" + eventName + ";)V");                          // 19
+      nameAndType(out, 18, 19);                                     // 20
+      methodRef(out, TARGET_CLASS, 20);                             // 21 LISTENER_METHOD
+
+      out.writeShort(Modifier.PUBLIC | Modifier.FINAL | 0x0020); // ACC_SUPER
+      out.writeShort(THIS_CLASS);
+      out.writeShort(OBJECT_CLASS);
+      out.writeShort(1);
+      out.writeShort(INVOKER_CLASS);
+      out.writeShort(0); // fields
+      out.writeShort(2); // methods
+
+      // public <init>() { super(); }
+      method(out, INIT_NAME, VOID_DESCRIPTOR, 1, 1, new byte[]{
+            0x2a,                                                    // aload_0
+            (byte) 0xb7, 0, OBJECT_INIT,                             // invokespecial Object.<init>
+            (byte) 0xb1                                              // return
+      });
+
+      // public void invoke(Object target, Object event) { ((L) target).method((E) event); }
+      method(out, INVOKE_NAME, INVOKE_DESCRIPTOR, 2, 3, new byte[]{
+            0x2b,                                                    // aload_1
+            (byte) 0xc0, 0, TARGET_CLASS,                            // checkcast L
+            0x2c,                                                    // aload_2
+            (byte) 0xc0, 0, EVENT_CLASS,                             // checkcast E
+            (byte) 0xb6, 0, LISTENER_METHOD,                         // invokevirtual L.method(E)
+            (byte) 0xb1                                              // return
+      });
+
+      out.writeShort(0); // class attributes
+      out.flush();
+      return bytes.toByteArray();
+   }
+
+   private static void method(DataOutputStream out, int name, int descriptor, int maxStack, int maxLocals, byte[] code) throws IOException {
+      out.writeShort(Modifier.PUBLIC);
+      out.writeShort(name);
+      out.writeShort(descriptor);
+      out.writeShort(1);
+      out.writeShort(CODE);
+      out.writeInt(12 + code.length);
+      out.writeShort(maxStack);
+      out.writeShort(maxLocals);
+      out.writeInt(code.length);
+      out.write(code);
+      out.writeShort(0); // exception table
+      out.writeShort(0); // code attributes
+   }
+
+   private static void utf8(DataOutputStream out, String value) throws IOException {
+      out.writeByte(1);
+      out.writeUTF(value);
+   }
+
+   private static void classRef(DataOutputStream out, int name) throws IOException {
+      out.writeByte(7);
+      out.writeShort(name);
+   }
+
+   private static void nameAndType(DataOutputStream out, int name, int descriptor) throws IOException {
+      out.writeByte(12);
+      out.writeShort(name);
+      out.writeShort(descriptor);
+   }
+
+   private static void methodRef(DataOutputStream out, int owner, int nameAndType) throws IOException {
+      out.writeByte(10);
+      out.writeShort(owner);
+      out.writeShort(nameAndType);
+   }
+
+   private static String internalName(Class<?> clazz) {
+      return internalName(clazz.getName());
+   }
+
+   private static String internalName(String className) {
+      return className.replace('.', '/');
+   }
+
+   /**
+    * Sees the classes of the listener's class loader, along with {@link ListenerInvoker} itself, which that class loader
+    * does not necessarily see.
+    */
+   private static final class InvokerClassLoader extends ClassLoader {
+
+      InvokerClassLoader(ClassLoader parent) {
+         super(parent);
+      }
+
+      @Override
+      protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+         if (name.equals(ListenerInvoker.class.getName())) return ListenerInvoker.class;
+         return super.loadClass(name, resolve);
+      }
+
+      Class<?> define(String name, byte[] bytes) {
+         return defineClass(name, bytes, 0, bytes.length);
+      }
+   }
+}
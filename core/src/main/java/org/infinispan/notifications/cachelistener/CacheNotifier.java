@@ -27,6 +27,7 @@ import org.infinispan.context.InvocationContext;
 import org.infinispan.distribution.ch.ConsistentHash;
 import org.infinispan.factories.scopes.Scope;
 import org.infinispan.factories.scopes.Scopes;
+import org.infinispan.notifications.KeyValueFilter;
 import org.infinispan.notifications.Listenable;
 import org.infinispan.remoting.transport.Address;
 import org.infinispan.transaction.xa.GlobalTransaction;
@@ -41,6 +42,16 @@ import java.util.Collection;
  */
 @Scope(Scopes.NAMED_CACHE)
 public interface CacheNotifier extends Listenable {
+
+   /**
+    * Adds a listener which is only notified of the cache entry events accepted by the given filter.
+    *
+    * @param listener listener to add, must not be null
+    * @param filter filter to apply, or null to notify the listener of all events
+    * @see org.infinispan.AdvancedCache#addListener(Object, KeyValueFilter)
+    */
+   void addListener(Object listener, KeyValueFilter<?, ?> filter);
+
    /**
     * Notifies all registered listeners of a CacheEntryCreated event.
     */
@@ -30,6 +30,7 @@ import org.infinispan.context.impl.TxInvocationContext;
 import org.infinispan.distribution.ch.ConsistentHash;
 import org.infinispan.factories.annotations.Inject;
 import org.infinispan.notifications.AbstractListenerImpl;
+import org.infinispan.notifications.KeyValueFilter;
 import org.infinispan.notifications.cachelistener.annotation.*;
 import org.infinispan.notifications.cachelistener.event.*;
 import org.infinispan.remoting.transport.Address;
@@ -137,18 +138,37 @@ public class CacheNotifierImpl extends AbstractListenerImpl implements CacheNoti
       return allowedListeners;
    }
 
+   /**
+    * Adds a listener which is only notified of the cache entry events accepted by the given filter.  The filter is
+    * evaluated before the event is created, so that no event is built unless at least one listener is interested in
+    * it.  Like the listeners themselves, filters are evaluated with the invocation context suspended.
+    *
+    * @param listener listener to add, must not be null
+    * @param filter filter to apply, or null to notify the listener of all events
+    */
+   @Override
+   public void addListener(Object listener, KeyValueFilter<?, ?> filter) {
+      super.addListener(listener, filter);
+   }
+
    @Override
    public void notifyCacheEntryCreated(Object key, boolean pre, InvocationContext ctx) {
       if (!cacheEntryCreatedListeners.isEmpty()) {
          boolean originLocal = ctx.isOriginLocal();
+         EventImpl<Object, Object> e = null;
          InvocationContext contexts = icc.suspend();
          try {
-            EventImpl<Object, Object> e = EventImpl.createEvent(cache, CACHE_ENTRY_CREATED);
-            e.setOriginLocal(originLocal);
-            e.setPre(pre);
-            e.setKey(key);
-            setTx(ctx, e);
-            for (ListenerInvocation listener : cacheEntryCreatedListeners) listener.invoke(e);
+            for (ListenerInvocation listener : cacheEntryCreatedListeners) {
+               if (!listener.accept(key, null)) continue;
+               if (e == null) {
+                  e = EventImpl.createEvent(cache, CACHE_ENTRY_CREATED);
+                  e.setOriginLocal(originLocal);
+                  e.setPre(pre);
+                  e.setKey(key);
+                  setTx(ctx, e);
+               }
+               listener.invoke(e);
+            }
          } finally {
             icc.resume(contexts);
          }
@@ -159,15 +179,21 @@ public class CacheNotifierImpl extends AbstractListenerImpl implements CacheNoti
    public void notifyCacheEntryModified(Object key, Object value, boolean pre, InvocationContext ctx) {
       if (!cacheEntryModifiedListeners.isEmpty()) {
          boolean originLocal = ctx.isOriginLocal();
+         EventImpl<Object, Object> e = null;
          InvocationContext contexts = icc.suspend();
          try {
-            EventImpl<Object, Object> e = EventImpl.createEvent(cache, CACHE_ENTRY_MODIFIED);
-            e.setOriginLocal(originLocal);
-            e.setValue(value);
-            e.setPre(pre);
-            e.setKey(key);
-            setTx(ctx, e);
-            for (ListenerInvocation listener : cacheEntryModifiedListeners) listener.invoke(e);
+            for (ListenerInvocation listener : cacheEntryModifiedListeners) {
+               if (!listener.accept(key, value)) continue;
+               if (e == null) {
+                  e = EventImpl.createEvent(cache, CACHE_ENTRY_MODIFIED);
+                  e.setOriginLocal(originLocal);
+                  e.setValue(value);
+                  e.setPre(pre);
+                  e.setKey(key);
+                  setTx(ctx, e);
+               }
+               listener.invoke(e);
+            }
          } finally {
             icc.resume(contexts);
          }
@@ -178,15 +204,21 @@ public class CacheNotifierImpl extends AbstractListenerImpl implements CacheNoti
    public void notifyCacheEntryRemoved(Object key, Object value, boolean pre, InvocationContext ctx) {
       if (!cacheEntryRemovedListeners.isEmpty()) {
          boolean originLocal = ctx.isOriginLocal();
+         EventImpl<Object, Object> e = null;
          InvocationContext contexts = icc.suspend();
          try {
-            EventImpl<Object, Object> e = EventImpl.createEvent(cache, CACHE_ENTRY_REMOVED);
-            e.setOriginLocal(originLocal);
-            e.setValue(value);
-            e.setPre(pre);
-            e.setKey(key);
-            setTx(ctx, e);
-            for (ListenerInvocation listener : cacheEntryRemovedListeners) listener.invoke(e);
+            for (ListenerInvocation listener : cacheEntryRemovedListeners) {
+               if (!listener.accept(key, value)) continue;
+               if (e == null) {
+                  e = EventImpl.createEvent(cache, CACHE_ENTRY_REMOVED);
+                  e.setOriginLocal(originLocal);
+                  e.setValue(value);
+                  e.setPre(pre);
+                  e.setKey(key);
+                  setTx(ctx, e);
+               }
+               listener.invoke(e);
+            }
          } finally {
             icc.resume(contexts);
          }
@@ -196,14 +228,20 @@ public class CacheNotifierImpl extends AbstractListenerImpl implements CacheNoti
    @Override
    public void notifyCacheEntryVisited(Object key, Object value, boolean pre, InvocationContext ctx) {
       if (!cacheEntryVisitedListeners.isEmpty()) {
+         EventImpl<Object, Object> e = null;
          InvocationContext contexts = icc.suspend();
          try {
-            EventImpl<Object, Object> e = EventImpl.createEvent(cache, CACHE_ENTRY_VISITED);
-            e.setPre(pre);
-            e.setKey(key);
-            e.setValue(value);
-            setTx(ctx, e);
-            for (ListenerInvocation listener : cacheEntryVisitedListeners) listener.invoke(e);
+            for (ListenerInvocation listener : cacheEntryVisitedListeners) {
+               if (!listener.accept(key, value)) continue;
+               if (e == null) {
+                  e = EventImpl.createEvent(cache, CACHE_ENTRY_VISITED);
+                  e.setPre(pre);
+                  e.setKey(key);
+                  e.setValue(value);
+                  setTx(ctx, e);
+               }
+               listener.invoke(e);
+            }
          } finally {
             icc.resume(contexts);
          }
@@ -216,33 +254,24 @@ public class CacheNotifierImpl extends AbstractListenerImpl implements CacheNoti
          if (!cacheEntriesEvictedListeners.isEmpty()) {
             InvocationContext contexts = icc.suspend();
             try {
-               EventImpl<Object, Object> e = EventImpl.createEvent(cache, CACHE_ENTRY_EVICTED);
-               Map<Object, Object> evictedKeysAndValues = transformCollectionToMap(entries,
-                                                                                   new InfinispanCollections.MapMakerFunction<Object, Object, InternalCacheEntry>() {
-                                                                                      public Map.Entry<Object, Object> transform(final InternalCacheEntry input) {
-                                                                                         return new Map.Entry<Object, Object>() {
-
-                                                                                            @Override
-                                                                                            public Object getKey() {
-                                                                                               return input.getKey();
-                                                                                            }
-
-                                                                                            @Override
-                                                                                            public Object getValue() {
-                                                                                               return input.getValue();
-                                                                                            }
-
-                                                                                            @Override
-                                                                                            public Object setValue(Object value) {
-                                                                                               throw new UnsupportedOperationException();
-                                                                                            }
-                                                                                         };
-                                                                                      }
-                                                                                   }
-               );
-
-               e.setEntries(evictedKeysAndValues);
-               for (ListenerInvocation listener : cacheEntriesEvictedListeners) listener.invoke(e);
+               // shared by all the listeners registered without a filter
+               EventImpl<Object, Object> e = null;
+               for (ListenerInvocation listener : cacheEntriesEvictedListeners) {
+                  if (listener.filter == null) {
+                     if (e == null) {
+                        e = EventImpl.createEvent(cache, CACHE_ENTRY_EVICTED);
+                        e.setEntries(evictedEntries(entries));
+                     }
+                     listener.invoke(e);
+                  } else {
+                     Map<Object, Object> accepted = acceptedEntries(listener, entries);
+                     if (!accepted.isEmpty()) {
+                        EventImpl<Object, Object> filtered = EventImpl.createEvent(cache, CACHE_ENTRY_EVICTED);
+                        filtered.setEntries(accepted);
+                        listener.invoke(filtered);
+                     }
+                  }
+               }
             } finally {
                icc.resume(contexts);
             }
@@ -251,28 +280,74 @@ public class CacheNotifierImpl extends AbstractListenerImpl implements CacheNoti
          // For backward compat
          if (!cacheEntryEvictedListeners.isEmpty()) {
             InvocationContext contexts = icc.suspend();
-            for (InternalCacheEntry ice : entries) {
-               try {
-                  EventImpl<Object, Object> e = EventImpl.createEvent(cache, CACHE_ENTRY_EVICTED);
-                  e.setKey(ice.getKey());
-                  e.setValue(ice.getValue());
-                  for (ListenerInvocation listener : cacheEntryEvictedListeners) listener.invoke(e);
-               } finally {
-                  icc.resume(contexts);
+            try {
+               for (InternalCacheEntry ice : entries) {
+                  EventImpl<Object, Object> e = null;
+                  for (ListenerInvocation listener : cacheEntryEvictedListeners) {
+                     if (!listener.accept(ice.getKey(), ice.getValue())) continue;
+                     if (e == null) {
+                        e = EventImpl.createEvent(cache, CACHE_ENTRY_EVICTED);
+                        e.setKey(ice.getKey());
+                        e.setValue(ice.getValue());
+                     }
+                     listener.invoke(e);
+                  }
                }
+            } finally {
+               icc.resume(contexts);
             }
          }
       }
    }
 
+   private Map<Object, Object> evictedEntries(Collection<InternalCacheEntry> entries) {
+      return transformCollectionToMap(entries,
+                                      new InfinispanCollections.MapMakerFunction<Object, Object, InternalCacheEntry>() {
+                                         public Map.Entry<Object, Object> transform(final InternalCacheEntry input) {
+                                            return new Map.Entry<Object, Object>() {
+
+                                               @Override
+                                               public Object getKey() {
+                                                  return input.getKey();
+                                               }
+
+                                               @Override
+                                               public Object getValue() {
+                                                  return input.getValue();
+                                               }
+
+                                               @Override
+                                               public Object setValue(Object value) {
+                                                  throw new UnsupportedOperationException();
+                                               }
+                                            };
+                                         }
+                                      }
+      );
+   }
+
+   private Map<Object, Object> acceptedEntries(ListenerInvocation listener, Collection<InternalCacheEntry> entries) {
+      Map<Object, Object> accepted = new HashMap<Object, Object>();
+      for (InternalCacheEntry ice : entries) {
+         if (listener.accept(ice.getKey(), ice.getValue())) accepted.put(ice.getKey(), ice.getValue());
+      }
+      return accepted;
+   }
+
    @Override
    public void notifyCacheEntryEvicted(Object key, Object value, InvocationContext ctx) {
       if (!cacheEntriesEvictedListeners.isEmpty()) {
+         EventImpl<Object, Object> e = null;
          InvocationContext contexts = icc.suspend();
          try {
-            EventImpl<Object, Object> e = EventImpl.createEvent(cache, CACHE_ENTRY_EVICTED);
-            e.setEntries(Collections.singletonMap(key, value));
-            for (ListenerInvocation listener : cacheEntriesEvictedListeners) listener.invoke(e);
+            for (ListenerInvocation listener : cacheEntriesEvictedListeners) {
+               if (!listener.accept(key, value)) continue;
+               if (e == null) {
+                  e = EventImpl.createEvent(cache, CACHE_ENTRY_EVICTED);
+                  e.setEntries(Collections.singletonMap(key, value));
+               }
+               listener.invoke(e);
+            }
          } finally {
             icc.resume(contexts);
          }
@@ -280,12 +355,18 @@ public class CacheNotifierImpl extends AbstractListenerImpl implements CacheNoti
 
       // For backward compat
       if (!cacheEntryEvictedListeners.isEmpty()) {
+         EventImpl<Object, Object> e = null;
          InvocationContext contexts = icc.suspend();
          try {
-            EventImpl<Object, Object> e = EventImpl.createEvent(cache, CACHE_ENTRY_EVICTED);
-            e.setKey(key);
-            e.setValue(value);
-            for (ListenerInvocation listener : cacheEntryEvictedListeners) listener.invoke(e);
+            for (ListenerInvocation listener : cacheEntryEvictedListeners) {
+               if (!listener.accept(key, value)) continue;
+               if (e == null) {
+                  e = EventImpl.createEvent(cache, CACHE_ENTRY_EVICTED);
+                  e.setKey(key);
+                  e.setValue(value);
+               }
+               listener.invoke(e);
+            }
          } finally {
             icc.resume(contexts);
          }
@@ -296,15 +377,21 @@ public class CacheNotifierImpl extends AbstractListenerImpl implements CacheNoti
    public void notifyCacheEntryInvalidated(final Object key, Object value, final boolean pre, InvocationContext ctx) {
       if (!cacheEntryInvalidatedListeners.isEmpty()) {
          final boolean originLocal = ctx.isOriginLocal();
+         EventImpl<Object, Object> e = null;
          InvocationContext contexts = icc.suspend();
          try {
-            EventImpl<Object, Object> e = EventImpl.createEvent(cache, CACHE_ENTRY_INVALIDATED);
-            e.setOriginLocal(originLocal);
-            e.setPre(pre);
-            e.setKey(key);
-            e.setValue(value);
-            setTx(ctx, e);
-            for (ListenerInvocation listener : cacheEntryInvalidatedListeners) listener.invoke(e);
+            for (ListenerInvocation listener : cacheEntryInvalidatedListeners) {
+               if (!listener.accept(key, value)) continue;
+               if (e == null) {
+                  e = EventImpl.createEvent(cache, CACHE_ENTRY_INVALIDATED);
+                  e.setOriginLocal(originLocal);
+                  e.setPre(pre);
+                  e.setKey(key);
+                  e.setValue(value);
+                  setTx(ctx, e);
+               }
+               listener.invoke(e);
+            }
          } finally {
             icc.resume(contexts);
          }
@@ -315,15 +402,21 @@ public class CacheNotifierImpl extends AbstractListenerImpl implements CacheNoti
    public void notifyCacheEntryLoaded(Object key, Object value, boolean pre, InvocationContext ctx) {
       if (!cacheEntryLoadedListeners.isEmpty()) {
          boolean originLocal = ctx.isOriginLocal();
+         EventImpl<Object, Object> e = null;
          InvocationContext contexts = icc.suspend();
          try {
-            EventImpl<Object, Object> e = EventImpl.createEvent(cache, CACHE_ENTRY_LOADED);
-            e.setOriginLocal(originLocal);
-            e.setPre(pre);
-            e.setKey(key);
-            e.setValue(value);
-            setTx(ctx, e);
-            for (ListenerInvocation listener : cacheEntryLoadedListeners) listener.invoke(e);
+            for (ListenerInvocation listener : cacheEntryLoadedListeners) {
+               if (!listener.accept(key, value)) continue;
+               if (e == null) {
+                  e = EventImpl.createEvent(cache, CACHE_ENTRY_LOADED);
+                  e.setOriginLocal(originLocal);
+                  e.setPre(pre);
+                  e.setKey(key);
+                  e.setValue(value);
+                  setTx(ctx, e);
+               }
+               listener.invoke(e);
+            }
          } finally {
             icc.resume(contexts);
          }
@@ -334,15 +427,21 @@ public class CacheNotifierImpl extends AbstractListenerImpl implements CacheNoti
    public void notifyCacheEntryActivated(Object key, Object value, boolean pre, InvocationContext ctx) {
       if (!cacheEntryActivatedListeners.isEmpty()) {
          boolean originLocal = ctx.isOriginLocal();
+         EventImpl<Object, Object> e = null;
          InvocationContext contexts = icc.suspend();
          try {
-            EventImpl<Object, Object> e = EventImpl.createEvent(cache, CACHE_ENTRY_ACTIVATED);
-            e.setOriginLocal(originLocal);
-            e.setPre(pre);
-            e.setKey(key);
-            e.setValue(value);
-            setTx(ctx, e);
-            for (ListenerInvocation listener : cacheEntryActivatedListeners) listener.invoke(e);
+            for (ListenerInvocation listener : cacheEntryActivatedListeners) {
+               if (!listener.accept(key, value)) continue;
+               if (e == null) {
+                  e = EventImpl.createEvent(cache, CACHE_ENTRY_ACTIVATED);
+                  e.setOriginLocal(originLocal);
+                  e.setPre(pre);
+                  e.setKey(key);
+                  e.setValue(value);
+                  setTx(ctx, e);
+               }
+               listener.invoke(e);
+            }
          } finally {
             icc.resume(contexts);
          }
@@ -359,13 +458,19 @@ public class CacheNotifierImpl extends AbstractListenerImpl implements CacheNoti
    @Override
    public void notifyCacheEntryPassivated(Object key, Object value, boolean pre, InvocationContext ctx) {
       if (!cacheEntryPassivatedListeners.isEmpty()) {
+         EventImpl<Object, Object> e = null;
          InvocationContext contexts = icc.suspend();
          try {
-            EventImpl<Object, Object> e = EventImpl.createEvent(cache, CACHE_ENTRY_PASSIVATED);
-            e.setPre(pre);
-            e.setKey(key);
-            e.setValue(value);
-            for (ListenerInvocation listener : cacheEntryPassivatedListeners) listener.invoke(e);
+            for (ListenerInvocation listener : cacheEntryPassivatedListeners) {
+               if (!listener.accept(key, value)) continue;
+               if (e == null) {
+                  e = EventImpl.createEvent(cache, CACHE_ENTRY_PASSIVATED);
+                  e.setPre(pre);
+                  e.setKey(key);
+                  e.setValue(value);
+               }
+               listener.invoke(e);
+            }
          } finally {
             icc.resume(contexts);
          }
@@ -47,7 +47,7 @@ public class DistributionResponseGenerator implements ResponseGenerator {
    public Response getResponse(CacheRpcCommand command, Object returnValue) {
       if (command.getCommandId() == ClusteredGetCommand.COMMAND_ID) {
          ClusteredGetCommand clusteredGet = (ClusteredGetCommand) command;
-         if (distributionManager.isAffectedByRehash(clusteredGet.getKey()))
+         if (clusteredGet.isAffectedByRehash() || distributionManager.isAffectedByRehash(clusteredGet.getKey()))
             return UnsureResponse.INSTANCE;
          return returnValue == null ? null : new SuccessfulResponse(returnValue);
       } else if (command instanceof SingleRpcCommand) {
@@ -42,7 +42,9 @@ import org.infinispan.remoting.responses.Response;
 import org.infinispan.remoting.transport.Address;
 import org.infinispan.remoting.transport.Transport;
 import org.infinispan.statetransfer.StateTransferException;
+import org.infinispan.stats.LatencyHistogram;
 import org.infinispan.util.concurrent.NotifyingNotifiableFuture;
+import org.infinispan.util.concurrent.StripedCounter;
 import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
 import org.rhq.helpers.pluginAnnotations.agent.DataType;
@@ -61,7 +63,7 @@ import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.TimeUnit;
 
 import static org.infinispan.factories.KnownComponentNames.*;
 
@@ -82,9 +84,9 @@ public class RpcManagerImpl implements RpcManager {
    private static final boolean trace = log.isTraceEnabled();
 
    private Transport t;
-   private final AtomicLong replicationCount = new AtomicLong(0);
-   private final AtomicLong replicationFailures = new AtomicLong(0);
-   private final AtomicLong totalReplicationTime = new AtomicLong(0);
+   // the number of successful replications is the number of latencies recorded
+   private final LatencyHistogram replicationLatencies = new LatencyHistogram();
+   private final StripedCounter replicationFailures = new StripedCounter();
 
    @ManagedAttribute(description = "Enables or disables the gathering of statistics by this component", writable = true)
    boolean statisticsEnabled = false; // by default, don't gather statistics.
@@ -132,27 +134,22 @@ public class RpcManagerImpl implements RpcManager {
          return Collections.emptyMap();
       } else {
          long startTime = 0;
-         if (statisticsEnabled) startTime = System.currentTimeMillis();
+         if (statisticsEnabled) startTime = System.nanoTime();
          try {
             Map<Address, Response> result = t.invokeRemotely(recipients, rpcCommand, mode, timeout, usePriorityQueue, responseFilter, stateTransferEnabled);
-            if (isStatisticsEnabled()) replicationCount.incrementAndGet();
+            if (statisticsEnabled && startTime != 0) replicationLatencies.record(System.nanoTime() - startTime);
             return result;
          } catch (CacheException e) {
             if (log.isTraceEnabled()) {
                log.trace("replication exception: ", e);
             }
 
-            if (isStatisticsEnabled()) replicationFailures.incrementAndGet();
+            if (isStatisticsEnabled()) replicationFailures.increment();
             throw e;
          } catch (Throwable th) {
             log.unexpectedErrorReplicating(th);
-            if (isStatisticsEnabled()) replicationFailures.incrementAndGet();
+            if (isStatisticsEnabled()) replicationFailures.increment();
             throw new CacheException(th);
-         } finally {
-            if (statisticsEnabled) {
-               long timeTaken = System.currentTimeMillis() - startTime;
-               totalReplicationTime.getAndAdd(timeTaken);
-            }
          }
       }
    }
@@ -363,9 +360,8 @@ public class RpcManagerImpl implements RpcManager {
    @ManagedOperation(description = "Resets statistics gathered by this component")
    @Operation(displayName = "Reset statistics")
    public void resetStatistics() {
-      replicationCount.set(0);
-      replicationFailures.set(0);
-      totalReplicationTime.set(0);
+      replicationLatencies.reset();
+      replicationFailures.reset();
    }
 
    @ManagedAttribute(description = "Number of successful replications")
@@ -374,7 +370,7 @@ public class RpcManagerImpl implements RpcManager {
       if (!isStatisticsEnabled()) {
          return -1;
       }
-      return replicationCount.get();
+      return replicationLatencies.getCount();
    }
 
    @ManagedAttribute(description = "Number of failed replications")
@@ -383,7 +379,7 @@ public class RpcManagerImpl implements RpcManager {
       if (!isStatisticsEnabled()) {
          return -1;
       }
-      return replicationFailures.get();
+      return replicationFailures.sum();
    }
 
    @Metric(displayName = "Statistics enabled", dataType = DataType.TRAIT)
@@ -398,7 +394,7 @@ public class RpcManagerImpl implements RpcManager {
 
    @ManagedAttribute(description = "Successful replications as a ratio of total replications")
    public String getSuccessRatio() {
-      if (replicationCount.get() == 0 || !statisticsEnabled) {
+      if (replicationLatencies.getCount() == 0 || !statisticsEnabled) {
          return "N/A";
       }
       double ration = calculateSuccessRatio() * 100d;
@@ -408,22 +404,45 @@ public class RpcManagerImpl implements RpcManager {
    @ManagedAttribute(description = "Successful replications as a ratio of total replications in numeric double format")
    @Metric(displayName = "Successful replication ratio", units = Units.PERCENTAGE, displayType = DisplayType.SUMMARY)
    public double getSuccessRatioFloatingPoint() {
-      if (replicationCount.get() == 0 || !statisticsEnabled) return 0;
+      if (replicationLatencies.getCount() == 0 || !statisticsEnabled) return 0;
       return calculateSuccessRatio();
    }
 
    private double calculateSuccessRatio() {
-      double totalCount = replicationCount.get() + replicationFailures.get();
-      return replicationCount.get() / totalCount;
+      long replicationCount = replicationLatencies.getCount();
+      double totalCount = replicationCount + replicationFailures.sum();
+      return replicationCount / totalCount;
    }
 
    @ManagedAttribute(description = "The average time spent in the transport layer, in milliseconds")
    @Metric(displayName = "Average time spent in the transport layer", units = Units.MILLISECONDS, displayType = DisplayType.SUMMARY)
    public long getAverageReplicationTime() {
-      if (replicationCount.get() == 0) {
-         return 0;
-      }
-      return totalReplicationTime.get() / replicationCount.get();
+      return TimeUnit.NANOSECONDS.toMillis(replicationLatencies.getAverageNanos());
+   }
+
+   @ManagedAttribute(description = "Median time spent in the transport layer by successful replications, in nanoseconds")
+   @Metric(displayName = "Median replication time", units = Units.NANOSECONDS)
+   public long getReplicationTimeP50() {
+      return replicationLatencies.getPercentile(50);
+   }
+
+   @ManagedAttribute(description = "99th percentile of the time spent in the transport layer by successful replications, in nanoseconds")
+   @Metric(displayName = "99th percentile replication time", units = Units.NANOSECONDS)
+   public long getReplicationTimeP99() {
+      return replicationLatencies.getPercentile(99);
+   }
+
+   @ManagedAttribute(description = "99.9th percentile of the time spent in the transport layer by successful replications, in nanoseconds")
+   @Metric(displayName = "99.9th percentile replication time", units = Units.NANOSECONDS)
+   public long getReplicationTimeP999() {
+      return replicationLatencies.getPercentile(99.9);
+   }
+
+   /**
+    * Returns the histogram the latencies of successful replications are recorded into.
+    */
+   public LatencyHistogram getReplicationLatencies() {
+      return replicationLatencies;
    }
 
    // mainly for unit testing
@@ -0,0 +1,197 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.stats;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.infinispan.util.concurrent.StripedCounter;
+
+/**
+ * Records latencies, in nanoseconds, into buckets whose width grows with the latency, so that percentiles can be
+ * estimated with a bounded relative error and a fixed amount of memory.
+ * <p/>
+ * Every power of two is split into 8 buckets, so a percentile is known within 1/16 of its value. Latencies over 2^44
+ * nanoseconds, about 5 hours, are accounted as 2^44 nanoseconds.
+ * <p/>
+ * Recording a latency updates two counters. As the same few buckets are hit over and over again, the buckets are
+ * striped, like {@link StripedCounter}, so that concurrent threads mostly update different cache lines; reading a
+ * percentile merges the stripes.
+ *
+ * @since 5.1
+ */
+public final class LatencyHistogram {
+
+   private static final int SUB_BUCKET_BITS = 3;
+   private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+   private static final long MAX_VALUE = (1L << 44) - 1;
+   static final int BUCKETS = bucketOf(MAX_VALUE) + 1;
+   private static final int MAX_STRIPES = 8;
+
+   private final int stripes;
+   private final AtomicLongArray counts;
+   private final StripedCounter totalNanos;
+
+   public LatencyHistogram() {
+      this(stripesFor(Runtime.getRuntime().availableProcessors()));
+   }
+
+   private LatencyHistogram(int stripes) {
+      this.stripes = stripes;
+      this.counts = new AtomicLongArray(stripes * BUCKETS);
+      this.totalNanos = new StripedCounter();
+   }
+
+   /**
+    * Records a latency.
+    */
+   public void record(long nanos) {
+      record(nanos, 1);
+   }
+
+   /**
+    * Records the same latency several times, i.e. the share of each key of a bulk operation.
+    */
+   public void record(long nanos, int times) {
+      if (times <= 0) return;
+      if (nanos < 0) nanos = 0;
+      else if (nanos > MAX_VALUE) nanos = MAX_VALUE;
+      int stripe = (int) Thread.currentThread().getId() & (stripes - 1);
+      counts.getAndAdd(stripe * BUCKETS + bucketOf(nanos), times);
+      totalNanos.add(nanos * times);
+   }
+
+   /**
+    * Returns the number of latencies recorded.
+    */
+   public long getCount() {
+      long count = 0;
+      for (int i = 0; i < counts.length(); i++) {
+         count += counts.get(i);
+      }
+      return count;
+   }
+
+   /**
+    * Returns the sum of the latencies recorded, in nanoseconds.
+    */
+   public long getTotalNanos() {
+      return totalNanos.sum();
+   }
+
+   /**
+    * Returns the average latency in nanoseconds, 0 if none was recorded.
+    */
+   public long getAverageNanos() {
+      long count = getCount();
+      return count == 0 ? 0 : getTotalNanos() / count;
+   }
+
+   /**
+    * Estimates a percentile of the latencies recorded.
+    *
+    * @param percentile the percentile, between 0 and 100, i.e. 99.9
+    * @return the estimated latency in nanoseconds, 0 if none was recorded
+    */
+   public long getPercentile(double percentile) {
+      if (percentile < 0 || percentile > 100)
+         throw new IllegalArgumentException("percentile must be between 0 and 100, was " + percentile);
+      long[] merged = mergeStripes();
+      long count = 0;
+      for (long c : merged) count += c;
+      if (count == 0) return 0;
+
+      long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+      long seen = 0;
+      for (int i = 0; i < BUCKETS; i++) {
+         seen += merged[i];
+         if (seen >= rank) return midpointOf(i);
+      }
+      return midpointOf(BUCKETS - 1);
+   }
+
+   /**
+    * Returns a copy of this histogram, which further latencies are not recorded into.
+    */
+   public LatencyHistogram snapshot() {
+      LatencyHistogram copy = new LatencyHistogram(1);
+      long[] merged = mergeStripes();
+      for (int i = 0; i < BUCKETS; i++) {
+         copy.counts.set(i, merged[i]);
+      }
+      copy.totalNanos.add(getTotalNanos());
+      return copy;
+   }
+
+   public void reset() {
+      for (int i = 0; i < counts.length(); i++) {
+         counts.set(i, 0);
+      }
+      totalNanos.reset();
+   }
+
+   @Override
+   public String toString() {
+      return "LatencyHistogram{count=" + getCount() + ", average=" + getAverageNanos() + ", p50=" + getPercentile(50)
+            + ", p99=" + getPercentile(99) + ", p999=" + getPercentile(99.9) + "}";
+   }
+
+   private static int stripesFor(int processors) {
+      int stripes = 1;
+      while (stripes < processors && stripes < MAX_STRIPES) stripes <<= 1;
+      return stripes;
+   }
+
+   private long[] mergeStripes() {
+      long[] merged = new long[BUCKETS];
+      for (int s = 0; s < stripes; s++) {
+         for (int i = 0; i < BUCKETS; i++) {
+            merged[i] += counts.get(s * BUCKETS + i);
+         }
+      }
+      return merged;
+   }
+
+   /**
+    * Values below 8 get a bucket each; then each power of two gets 8 buckets.
+    */
+   static int bucketOf(long nanos) {
+      long value = Math.min(nanos, MAX_VALUE);
+      if (value < SUB_BUCKETS) return (int) Math.max(0, value);
+      int exponent = 63 - Long.numberOfLeadingZeros(value);
+      int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+      return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+   }
+
+   static long lowerBoundOf(int bucket) {
+      if (bucket < 2 * SUB_BUCKETS) return bucket;
+      int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+      long subBucket = bucket % SUB_BUCKETS;
+      return (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+   }
+
+   static long midpointOf(int bucket) {
+      if (bucket < 2 * SUB_BUCKETS) return bucket;
+      long width = 1L << (bucket / SUB_BUCKETS - 1);
+      return lowerBoundOf(bucket) + width / 2;
+   }
+}
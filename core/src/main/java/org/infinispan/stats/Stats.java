@@ -85,4 +85,18 @@ public interface Stats {
     * @return Number of cache eviction.
     */   
    long getEvictions();
+
+   /**
+    * @param type the kind of operations
+    * @param percentile the percentile, between 0 and 100, i.e. 99.9
+    * @return The estimated percentile of the latencies of the given operations, in nanoseconds, or -1 if they are
+    *         not recorded.
+    */
+   long getLatencyPercentile(LatencyType type, double percentile);
+
+   /**
+    * @param type the kind of operations
+    * @return The average latency of the given operations, in nanoseconds, or -1 if they are not recorded.
+    */
+   long getAverageLatency(LatencyType type);
 }
@@ -22,13 +22,17 @@
  */
 package org.infinispan.stats;
 
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 
 import net.jcip.annotations.Immutable;
 
 import org.infinispan.interceptors.CacheMgmtInterceptor;
 import org.infinispan.interceptors.InterceptorChain;
 import org.infinispan.interceptors.base.CommandInterceptor;
+import org.infinispan.remoting.rpc.RpcManager;
+import org.infinispan.remoting.rpc.RpcManagerImpl;
 
 /**
  * StatsImpl.
@@ -48,8 +52,14 @@ public class StatsImpl implements Stats {
    final long removeHits;
    final long removeMisses;
    final long evictions;
-   
+   // copies of the histograms, so that the latencies are consistent with the counters
+   final Map<LatencyType, LatencyHistogram> latencies = new EnumMap<LatencyType, LatencyHistogram>(LatencyType.class);
+
    public StatsImpl(InterceptorChain chain) {
+      this(chain, null);
+   }
+
+   public StatsImpl(InterceptorChain chain, RpcManager rpcManager) {
       List<CommandInterceptor> interceptors = chain.getInterceptorsWhichExtend(CacheMgmtInterceptor.class);
       if (!interceptors.isEmpty()) {
          CacheMgmtInterceptor mgmtInterceptor = (CacheMgmtInterceptor) interceptors.get(0);
@@ -63,6 +73,12 @@ public class StatsImpl implements Stats {
          removeHits = mgmtInterceptor.getRemoveHits();
          removeMisses = mgmtInterceptor.getRemoveMisses();
          evictions = mgmtInterceptor.getEvictions();
+         if (mgmtInterceptor.getStatisticsEnabled()) {
+            for (LatencyType type : LatencyType.values()) {
+               if (type != LatencyType.REMOTE)
+                  latencies.put(type, mgmtInterceptor.getLatencyHistogram(type).snapshot());
+            }
+         }
       } else {
          timeSinceStart = -1;
          currentNumberOfEntries = -1;
@@ -75,6 +91,8 @@ public class StatsImpl implements Stats {
          removeMisses = -1;
          evictions = -1;
       }
+      if (rpcManager instanceof RpcManagerImpl && ((RpcManagerImpl) rpcManager).isStatisticsEnabled())
+         latencies.put(LatencyType.REMOTE, ((RpcManagerImpl) rpcManager).getReplicationLatencies().snapshot());
    }
 
    public long getTimeSinceStart() {
@@ -117,4 +135,14 @@ public class StatsImpl implements Stats {
       return evictions;
    }
 
+   public long getLatencyPercentile(LatencyType type, double percentile) {
+      LatencyHistogram histogram = latencies.get(type);
+      return histogram == null ? -1 : histogram.getPercentile(percentile);
+   }
+
+   public long getAverageLatency(LatencyType type) {
+      LatencyHistogram histogram = latencies.get(type);
+      return histogram == null ? -1 : histogram.getAverageNanos();
+   }
+
 }
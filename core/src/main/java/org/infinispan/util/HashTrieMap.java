@@ -0,0 +1,557 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.util;
+
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A map backed by a hash array mapped trie, whose {@link #clone()} takes constant time: the clone shares all the nodes
+ * of the trie with the original map and, from then on, each of the two maps copies the nodes it needs to modify, i.e.
+ * the path from the root to the entry modified, before modifying them. A map keeps modifying the nodes it created or
+ * copied in place, so a map that is not shared costs about as much to write as an ordinary hash map.
+ * <p/>
+ * Iterators work on a snapshot of the map taken when they are created, so they never throw {@link
+ * java.util.ConcurrentModificationException}. Changes made through them are applied to the map.
+ * <p/>
+ * Null keys are <i>not</i> supported.
+ *
+ * @since 5.1
+ */
+public class HashTrieMap<K, V> extends AbstractMap<K, V> implements Map<K, V>, Cloneable {
+
+   private static final int BITS = 5;
+
+   private static final int MASK = (1 << BITS) - 1;
+
+   /**
+    * A bitmap node for each of the 7 fragments of a hash code, and a collision node
+    */
+   private static final int MAX_DEPTH = 8;
+
+   private static final Object[] EMPTY = new Object[0];
+
+   private static final Object NOT_FOUND = new Object();
+
+   private Node root;
+
+   private int size;
+
+   /**
+    * Owner of the nodes this map may modify in place, replaced whenever its nodes get shared
+    */
+   private Object edit = new Object();
+
+   public HashTrieMap() {
+   }
+
+   public HashTrieMap(Map<? extends K, ? extends V> map) {
+      putAll(map);
+   }
+
+   public int size() {
+      return size;
+   }
+
+   public boolean isEmpty() {
+      return size == 0;
+   }
+
+   @SuppressWarnings("unchecked")
+   public V get(Object key) {
+      assertKeyNotNull(key);
+      if (root == null) return null;
+      Object value = root.find(0, hash(key), key);
+      return value == NOT_FOUND ? null : (V) value;
+   }
+
+   public boolean containsKey(Object key) {
+      assertKeyNotNull(key);
+      return root != null && root.find(0, hash(key), key) != NOT_FOUND;
+   }
+
+   public boolean containsValue(Object value) {
+      for (V v : values()) {
+         if (eq(value, v)) return true;
+      }
+      return false;
+   }
+
+   @SuppressWarnings("unchecked")
+   public V put(K key, V value) {
+      assertKeyNotNull(key);
+      Result result = new Result();
+      Node node = root == null ? new BitmapNode(edit, 0, EMPTY) : root;
+      root = node.put(edit, 0, hash(key), key, value, result);
+      if (result.oldValue == NOT_FOUND) {
+         size++;
+         return null;
+      }
+      return (V) result.oldValue;
+   }
+
+   public void putAll(Map<? extends K, ? extends V> map) {
+      for (Map.Entry<? extends K, ? extends V> e : map.entrySet()) {
+         put(e.getKey(), e.getValue());
+      }
+   }
+
+   @SuppressWarnings("unchecked")
+   public V remove(Object key) {
+      assertKeyNotNull(key);
+      if (root == null) return null;
+      Result result = new Result();
+      root = root.remove(edit, 0, hash(key), key, result);
+      if (result.oldValue == NOT_FOUND) return null;
+      size--;
+      return (V) result.oldValue;
+   }
+
+   public void clear() {
+      root = null;
+      size = 0;
+   }
+
+   @Override
+   @SuppressWarnings("unchecked")
+   public HashTrieMap<K, V> clone() {
+      try {
+         HashTrieMap<K, V> clone = (HashTrieMap<K, V>) super.clone();
+         // the two maps share the nodes from now on, so neither may modify them in place
+         edit = new Object();
+         clone.edit = new Object();
+         clone.entrySet = null;
+         clone.values = null;
+         clone.keySet = null;
+         return clone;
+      }
+      catch (CloneNotSupportedException e) {
+         // should never happen
+         throw new IllegalStateException(e);
+      }
+   }
+
+   @Override
+   public boolean equals(Object o) {
+      if (o == this) return true;
+      if (!(o instanceof Map)) return false;
+      Map<?, ?> map = (Map<?, ?>) o;
+      if (map.size() != size) return false;
+      for (Map.Entry<K, V> e : entrySet()) {
+         Object value = map.get(e.getKey());
+         if (!eq(e.getValue(), value) || (value == null && !map.containsKey(e.getKey()))) return false;
+      }
+      return true;
+   }
+
+   @Override
+   public int hashCode() {
+      int h = 0;
+      for (Map.Entry<K, V> e : entrySet()) {
+         h += e.getKey().hashCode() ^ (e.getValue() == null ? 0 : e.getValue().hashCode());
+      }
+      return h;
+   }
+
+   @Override
+   public String toString() {
+      StringBuilder sb = new StringBuilder("{");
+      for (Map.Entry<K, V> e : entrySet()) {
+         if (sb.length() > 1) sb.append(", ");
+         sb.append(e.getKey()).append('=').append(e.getValue());
+      }
+      return sb.append('}').toString();
+   }
+
+   private static int bit(int hash, int shift) {
+      return 1 << ((hash >>> shift) & MASK);
+   }
+
+   private static Node createNode(Object edit, int shift, Object key1, Object value1, int hash2, Object key2, Object value2) {
+      int hash1 = hash(key1);
+      if (hash1 == hash2) return new CollisionNode(edit, hash1, new Object[]{key1, value1, key2, value2});
+      Result ignored = new Result();
+      return new BitmapNode(edit, 0, EMPTY).put(edit, shift, hash1, key1, value1, ignored)
+            .put(edit, shift, hash2, key2, value2, ignored);
+   }
+
+   /**
+    * Receives the value previously mapped to the key put or removed, if any
+    */
+   private static final class Result {
+      Object oldValue = NOT_FOUND;
+   }
+
+   /**
+    * A node of the trie. Its array holds key/value pairs, a null key meaning that the value is a child node. Nodes are
+    * only modified in place by the map owning them, i.e. whose edit is the same as theirs; the others modify copies.
+    */
+   private static abstract class Node {
+      final Object edit;
+      Object[] array;
+
+      Node(Object edit, Object[] array) {
+         this.edit = edit;
+         this.array = array;
+      }
+
+      abstract Object find(int shift, int hash, Object key);
+
+      abstract Node put(Object edit, int shift, int hash, Object key, Object value, Result result);
+
+      abstract Node remove(Object edit, int shift, int hash, Object key, Result result);
+   }
+
+   /**
+    * Holds a pair for each 5 bits fragment, at this node's depth, of the hash codes of the keys below it.
+    */
+   private static final class BitmapNode extends Node {
+      int bitmap;
+
+      BitmapNode(Object edit, int bitmap, Object[] array) {
+         super(edit, array);
+         this.bitmap = bitmap;
+      }
+
+      private int index(int bit) {
+         return 2 * Integer.bitCount(bitmap & (bit - 1));
+      }
+
+      Object find(int shift, int hash, Object key) {
+         int bit = bit(hash, shift);
+         if ((bitmap & bit) == 0) return NOT_FOUND;
+         int i = index(bit);
+         Object k = array[i];
+         if (k == null) return ((Node) array[i + 1]).find(shift + BITS, hash, key);
+         return eq(key, k) ? array[i + 1] : NOT_FOUND;
+      }
+
+      Node put(Object edit, int shift, int hash, Object key, Object value, Result result) {
+         int bit = bit(hash, shift);
+         int i = index(bit);
+         if ((bitmap & bit) != 0) {
+            Object k = array[i];
+            Object v = array[i + 1];
+            if (k == null) {
+               Node child = ((Node) v).put(edit, shift + BITS, hash, key, value, result);
+               return child == v ? this : set(edit, i + 1, child);
+            }
+            if (eq(key, k)) {
+               result.oldValue = v;
+               return v == value ? this : set(edit, i + 1, value);
+            }
+            BitmapNode node = editable(edit);
+            node.array[i] = null;
+            node.array[i + 1] = createNode(edit, shift + BITS, k, v, hash, key, value);
+            return node;
+         }
+         Object[] newArray = new Object[array.length + 2];
+         System.arraycopy(array, 0, newArray, 0, i);
+         newArray[i] = key;
+         newArray[i + 1] = value;
+         System.arraycopy(array, i, newArray, i + 2, array.length - i);
+         if (this.edit != edit) return new BitmapNode(edit, bitmap | bit, newArray);
+         bitmap |= bit;
+         array = newArray;
+         return this;
+      }
+
+      Node remove(Object edit, int shift, int hash, Object key, Result result) {
+         int bit = bit(hash, shift);
+         if ((bitmap & bit) == 0) return this;
+         int i = index(bit);
+         Object k = array[i];
+         Object v = array[i + 1];
+         if (k == null) {
+            Node child = ((Node) v).remove(edit, shift + BITS, hash, key, result);
+            if (child == v) return this;
+            if (child != null) return set(edit, i + 1, child);
+         } else if (eq(key, k)) {
+            result.oldValue = v;
+         } else {
+            return this;
+         }
+         if (bitmap == bit) return null;
+         Object[] newArray = new Object[array.length - 2];
+         System.arraycopy(array, 0, newArray, 0, i);
+         System.arraycopy(array, i + 2, newArray, i, array.length - i - 2);
+         if (this.edit != edit) return new BitmapNode(edit, bitmap ^ bit, newArray);
+         bitmap ^= bit;
+         array = newArray;
+         return this;
+      }
+
+      private BitmapNode editable(Object edit) {
+         return this.edit == edit ? this : new BitmapNode(edit, bitmap, array.clone());
+      }
+
+      private BitmapNode set(Object edit, int i, Object o) {
+         BitmapNode node = editable(edit);
+         node.array[i] = o;
+         return node;
+      }
+   }
+
+   /**
+    * Holds the pairs whose keys have the same hash code.
+    */
+   private static final class CollisionNode extends Node {
+      final int hash;
+
+      CollisionNode(Object edit, int hash, Object[] array) {
+         super(edit, array);
+         this.hash = hash;
+      }
+
+      private int indexOf(Object key) {
+         for (int i = 0; i < array.length; i += 2) {
+            if (eq(key, array[i])) return i;
+         }
+         return -1;
+      }
+
+      Object find(int shift, int hash, Object key) {
+         if (hash != this.hash) return NOT_FOUND;
+         int i = indexOf(key);
+         return i < 0 ? NOT_FOUND : array[i + 1];
+      }
+
+      Node put(Object edit, int shift, int hash, Object key, Object value, Result result) {
+         if (hash != this.hash) {
+            // a bitmap node tells the two hash codes apart
+            return new BitmapNode(edit, bit(this.hash, shift), new Object[]{null, this})
+                  .put(edit, shift, hash, key, value, result);
+         }
+         int i = indexOf(key);
+         if (i >= 0) {
+            result.oldValue = array[i + 1];
+            if (array[i + 1] == value) return this;
+            CollisionNode node = this.edit == edit ? this : new CollisionNode(edit, hash, array.clone());
+            node.array[i + 1] = value;
+            return node;
+         }
+         Object[] newArray = new Object[array.length + 2];
+         System.arraycopy(array, 0, newArray, 0, array.length);
+         newArray[array.length] = key;
+         newArray[array.length + 1] = value;
+         if (this.edit != edit) return new CollisionNode(edit, hash, newArray);
+         array = newArray;
+         return this;
+      }
+
+      Node remove(Object edit, int shift, int hash, Object key, Result result) {
+         if (hash != this.hash) return this;
+         int i = indexOf(key);
+         if (i < 0) return this;
+         result.oldValue = array[i + 1];
+         if (array.length == 2) return null;
+         Object[] newArray = new Object[array.length - 2];
+         System.arraycopy(array, 0, newArray, 0, i);
+         System.arraycopy(array, i + 2, newArray, i, array.length - i - 2);
+         if (this.edit != edit) return new CollisionNode(edit, hash, newArray);
+         array = newArray;
+         return this;
+      }
+   }
+
+   private abstract class HashTrieMapIterator<E> implements Iterator<E> {
+      private final Object[][] arrays = new Object[MAX_DEPTH][];
+      private final int[] positions = new int[MAX_DEPTH];
+      private int depth = -1;
+      private Object nextKey;
+      private Object nextValue;
+      Object currentKey = NOT_FOUND;
+      Object currentValue;
+
+      HashTrieMapIterator() {
+         // the nodes seen by this iterator must not change anymore, so that later writes copy them
+         edit = new Object();
+         if (root != null) push(root.array);
+         advance();
+      }
+
+      private void push(Object[] array) {
+         arrays[++depth] = array;
+         positions[depth] = 0;
+      }
+
+      private void advance() {
+         nextKey = NOT_FOUND;
+         while (depth >= 0) {
+            Object[] array = arrays[depth];
+            int i = positions[depth];
+            if (i == array.length) {
+               arrays[depth--] = null;
+            } else {
+               positions[depth] = i + 2;
+               if (array[i] == null) {
+                  push(((Node) array[i + 1]).array);
+               } else {
+                  nextKey = array[i];
+                  nextValue = array[i + 1];
+                  return;
+               }
+            }
+         }
+      }
+
+      public boolean hasNext() {
+         return nextKey != NOT_FOUND;
+      }
+
+      protected void nextEntry() {
+         if (nextKey == NOT_FOUND) throw new NoSuchElementException();
+         currentKey = nextKey;
+         currentValue = nextValue;
+         advance();
+      }
+
+      public void remove() {
+         if (currentKey == NOT_FOUND) throw new IllegalStateException();
+         HashTrieMap.this.remove(currentKey);
+         currentKey = NOT_FOUND;
+      }
+   }
+
+   private class KeyIterator extends HashTrieMapIterator<K> {
+      @SuppressWarnings("unchecked")
+      public K next() {
+         nextEntry();
+         return (K) currentKey;
+      }
+   }
+
+   private class ValueIterator extends HashTrieMapIterator<V> {
+      @SuppressWarnings("unchecked")
+      public V next() {
+         nextEntry();
+         return (V) currentValue;
+      }
+   }
+
+   private class EntryIterator extends HashTrieMapIterator<Map.Entry<K, V>> {
+      private class WriteThroughEntry extends AbstractMap.SimpleEntry<K, V> {
+         WriteThroughEntry(K key, V value) {
+            super(key, value);
+         }
+
+         public V setValue(V value) {
+            HashTrieMap.this.put(getKey(), value);
+            return super.setValue(value);
+         }
+      }
+
+      @SuppressWarnings("unchecked")
+      public Map.Entry<K, V> next() {
+         nextEntry();
+         return new WriteThroughEntry((K) currentKey, (V) currentValue);
+      }
+   }
+
+   public Collection<V> values() {
+      if (values == null) values = new Values();
+      return values;
+   }
+
+   private final class Values extends AbstractCollection<V> {
+      public Iterator<V> iterator() {
+         return new ValueIterator();
+      }
+
+      public int size() {
+         return HashTrieMap.this.size();
+      }
+
+      public boolean contains(Object o) {
+         return containsValue(o);
+      }
+
+      public void clear() {
+         HashTrieMap.this.clear();
+      }
+   }
+
+   public Set<K> keySet() {
+      if (keySet == null) keySet = new KeySet();
+      return keySet;
+   }
+
+   private final class KeySet extends AbstractSet<K> {
+      public Iterator<K> iterator() {
+         return new KeyIterator();
+      }
+
+      public void clear() {
+         HashTrieMap.this.clear();
+      }
+
+      public boolean contains(Object o) {
+         return containsKey(o);
+      }
+
+      public boolean remove(Object o) {
+         int size = size();
+         HashTrieMap.this.remove(o);
+         return size() < size;
+      }
+
+      public int size() {
+         return HashTrieMap.this.size();
+      }
+   }
+
+   public Set<Map.Entry<K, V>> entrySet() {
+      if (entrySet == null) entrySet = new EntrySet();
+      return entrySet;
+   }
+
+   private final class EntrySet extends AbstractSet<Map.Entry<K, V>> {
+      public Iterator<Map.Entry<K, V>> iterator() {
+         return new EntryIterator();
+      }
+
+      public boolean contains(Object o) {
+         if (!(o instanceof Map.Entry)) return false;
+         Map.Entry<?, ?> entry = (Map.Entry<?, ?>) o;
+         Object key = entry.getKey();
+         return key != null && containsKey(key) && eq(entry.getValue(), get(key));
+      }
+
+      public void clear() {
+         HashTrieMap.this.clear();
+      }
+
+      public boolean isEmpty() {
+         return HashTrieMap.this.isEmpty();
+      }
+
+      public int size() {
+         return HashTrieMap.this.size();
+      }
+   }
+}
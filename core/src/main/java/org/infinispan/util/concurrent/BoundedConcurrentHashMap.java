@@ -222,6 +222,11 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
       volatile V value;
       final HashEntry<K, V> next;
       volatile Recency state;
+      /**
+       * Estimated size of this entry, only maintained when the map is bounded by
+       * size through an {@link EntrySizeCalculator}. Guarded by the segment lock.
+       */
+      long size;
 
       HashEntry(K key, int hash, HashEntry<K, V> next, V value) {
          this.key = key;
@@ -231,6 +236,11 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
          this.state = Recency.HIR_RESIDENT;
       }
 
+      HashEntry(K key, int hash, HashEntry<K, V> next, V value, long size) {
+         this(key, hash, next, value);
+         this.size = size;
+      }
+
       @Override
       public int hashCode() {
          int result = 17;
@@ -312,6 +322,15 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
       void onEntryChosenForEviction(V internalCacheEntry);
    }
 
+   /**
+    * Estimates the memory footprint of a map entry. When a map is created with an
+    * EntrySizeCalculator and a maximum memory size, each segment evicts entries until the
+    * sum of the estimated sizes of its entries fits within its share of that maximum.
+    */
+   public interface EntrySizeCalculator<K, V> {
+      long getSize(K key, V value);
+   }
+
    static final class NullEvictionListener<K, V> implements EvictionListener<K, V> {
       @Override
       public void onEntryEviction(Map<K, V> evicted) {
@@ -392,6 +411,16 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
        * @return true if batching threshold has expired, false otherwise.
        */
       boolean thresholdExpired();
+
+      /**
+       * Returns the entry this policy would evict next, without evicting it. Used to
+       * evict further entries when a Segment exceeds its maximum memory size.
+       * <p>
+       * Invoked while holding a lock on Segment.
+       *
+       * @return the next eviction candidate, or null if there is none
+       */
+      HashEntry<K, V> nextVictim();
    }
 
    static class NullEvictionPolicy<K, V> implements EvictionPolicy<K, V> {
@@ -426,6 +455,11 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
          return false;
       }
 
+      @Override
+      public HashEntry<K, V> nextVictim() {
+         return null;
+      }
+
       @Override
       public Eviction strategy() {
          return Eviction.NONE;
@@ -456,11 +490,7 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
             evicted = new HashSet<HashEntry<K, V>>();
          }
          try {
-            for (HashEntry<K, V> e : accessQueue) {
-               if (lruQueue.remove(e)) {
-                  lruQueue.addFirst(e);
-               }
-            }
+            applyAccesses();
             while (isOverflow()) {
                HashEntry<K, V> first = lruQueue.getLast();
                segment.evictionListener.onEntryChosenForEviction(first.value);
@@ -477,6 +507,17 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
          return lruQueue.size() > trimDownSize;
       }
 
+      /**
+       * Moves the entries hit since the last call to the head of the LRU queue. Call only while holding lock.
+       */
+      private void applyAccesses() {
+         for (HashEntry<K, V> e : accessQueue) {
+            if (lruQueue.remove(e)) {
+               lruQueue.addFirst(e);
+            }
+         }
+      }
+
       @Override
       public Set<HashEntry<K, V>> onEntryMiss(HashEntry<K, V> e) {
          lruQueue.addFirst(e);
@@ -515,6 +556,14 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
          accessQueue.clear();
       }
 
+      @Override
+      public HashEntry<K, V> nextVictim() {
+         // otherwise an entry hit since the last batch could be chosen as the least recently used
+         applyAccesses();
+         accessQueue.clear();
+         return lruQueue.peekLast();
+      }
+
       @Override
       public Eviction strategy() {
          return Eviction.LRU_OLD;
@@ -600,6 +649,11 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
          accessQueue.clear();
       }
 
+      @Override
+      public HashEntry<K, V> nextVictim() {
+         return isEmpty() ? null : keySet().iterator().next();
+      }
+
       @Override
       public Eviction strategy() {
          return Eviction.LRU;
@@ -800,6 +854,16 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
          accessQueue.clear();
       }
 
+      @Override
+      public HashEntry<K, V> nextVictim() {
+         // resident HIR entries go first, then the bottom of the LIRS stack
+         HashEntry<K, V> victim = queue.peekFirst();
+         if (victim == null && !stack.isEmpty()) {
+            victim = stack.values().iterator().next();
+         }
+         return victim;
+      }
+
       @Override
       public Eviction strategy() {
          return Eviction.LIRS;
@@ -892,11 +956,32 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
 
       transient final EvictionListener<K, V> evictionListener;
 
+      /**
+       * Maximum estimated memory size of this segment, or -1 if the segment
+       * is only bounded by its number of entries.
+       */
+      final long maxMemorySize;
+
+      transient final EntrySizeCalculator<? super K, ? super V> sizeCalculator;
+
+      /**
+       * Estimated memory size of the entries in this segment. Only written
+       * while holding the segment lock.
+       */
+      transient volatile long memorySize;
+
       Segment(int cap, int evictCap, float lf, Eviction es, EvictionListener<K, V> listener) {
+         this(cap, evictCap, lf, es, listener, -1, null);
+      }
+
+      Segment(int cap, int evictCap, float lf, Eviction es, EvictionListener<K, V> listener,
+               long maxMemorySize, EntrySizeCalculator<? super K, ? super V> sizeCalculator) {
          loadFactor = lf;
          this.evictCap = evictCap;
          eviction = es.make(this, evictCap, lf);
          evictionListener = listener;
+         this.maxMemorySize = maxMemorySize;
+         this.sizeCalculator = sizeCalculator;
          setTable(HashEntry.<K, V> newArray(cap));
       }
 
@@ -1019,9 +1104,11 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
             if (e != null && oldValue.equals(e.value)) {
                replaced = true;
                e.value = newValue;
+               updateMemorySize(e);
                if (eviction.onEntryHit(e)) {
                   evicted = attemptEviction(true);
                }
+               evicted = evictToMemorySize(evicted);
             }
             return replaced;
          } finally {
@@ -1043,9 +1130,11 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
             if (e != null) {
                oldValue = e.value;
                e.value = newValue;
+               updateMemorySize(e);
                if (eviction.onEntryHit(e)) {
                   evicted = attemptEviction(true);
                }
+               evicted = evictToMemorySize(evicted);
             }
             return oldValue;
          } finally {
@@ -1075,6 +1164,7 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
                oldValue = e.value;
                if (!onlyIfAbsent) {
                   e.value = value;
+                  updateMemorySize(e);
                   eviction.onEntryHit(e);
                }
             } else {
@@ -1090,6 +1180,7 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
                   }
                   // add a new entry
                   tab[index] = new HashEntry<K, V>(key, hash, first, value);
+                  updateMemorySize(tab[index]);
                   // notify a miss
                   Set<HashEntry<K, V>> newlyEvicted = eviction.onEntryMiss(tab[index]);
                   if (!newlyEvicted.isEmpty()) {
@@ -1101,8 +1192,10 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
                   }
                } else {
                   tab[index] = new HashEntry<K, V>(key, hash, first, value);
+                  updateMemorySize(tab[index]);
                }
             }
+            evicted = evictToMemorySize(evicted);
             return oldValue;
          } finally {
             unlock();
@@ -1166,7 +1259,7 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
                      int k = p.hash & sizeMask;
                      HashEntry<K,V> n = newTable[k];
                      newTable[k] = new HashEntry<K,V>(p.key, p.hash,
-                           n, p.value);
+                           n, p.value, p.size);
                   }
                }
             }
@@ -1201,13 +1294,16 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
 
                   // e was removed
                   eviction.onEntryRemove(e);
+                  if (sizeCalculator != null) {
+                     memorySize -= e.size;
+                  }
 
                   HashEntry<K, V> newFirst = e.next;
                   for (HashEntry<K, V> p = first; p != e; p = p.next) {
                      // TODO A remove operation makes the map behave like all the other keys in the bucket were just added???
                      // allow p to be GC-ed
                      eviction.onEntryRemove(p);
-                     newFirst = new HashEntry<K, V>(p.key, p.hash, newFirst, p.value);
+                     newFirst = new HashEntry<K, V>(p.key, p.hash, newFirst, p.value, p.size);
                      // and notify eviction algorithm about new hash entries
                      eviction.onEntryMiss(newFirst);
                   }
@@ -1232,6 +1328,7 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
                }
                ++modCount;
                eviction.clear();
+               memorySize = 0;
                count = 0; // write-volatile
             } finally {
                unlock();
@@ -1239,6 +1336,49 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
          }
       }
 
+      /**
+       * Recomputes the estimated size of an entry whose value has just been set.
+       * Call only while holding lock.
+       */
+      private void updateMemorySize(HashEntry<K, V> e) {
+         if (sizeCalculator != null) {
+            long newSize = sizeCalculator.getSize(e.key, e.value);
+            memorySize += newSize - e.size;
+            e.size = newSize;
+         }
+      }
+
+      /**
+       * Evicts entries, in the order suggested by the eviction policy, until this
+       * segment fits within its maximum memory size. Call only while holding lock.
+       *
+       * @param evicted entries already evicted by the calling operation, possibly null
+       * @return all evicted entries, possibly null
+       */
+      private Set<HashEntry<K, V>> evictToMemorySize(Set<HashEntry<K, V>> evicted) {
+         if (maxMemorySize < 0 || memorySize <= maxMemorySize) {
+            return evicted;
+         }
+         Set<HashEntry<K, V>> allEvicted = evicted == null
+               ? new HashSet<HashEntry<K, V>>() : new HashSet<HashEntry<K, V>>(evicted);
+         // always keep at least one entry, even if it exceeds the segment's budget on its own
+         while (memorySize > maxMemorySize && count > 1) {
+            HashEntry<K, V> victim = eviction.nextVictim();
+            if (victim == null) {
+               break;
+            }
+            if (!containsKey(victim.key, victim.hash)) {
+               // stale entry left behind in the eviction policy
+               eviction.onEntryRemove(victim);
+               continue;
+            }
+            evictionListener.onEntryChosenForEviction(victim.value);
+            remove(victim.key, victim.hash, null);
+            allEvicted.add(victim);
+         }
+         return allEvicted.isEmpty() ? evicted : allEvicted;
+      }
+
       private Set<HashEntry<K, V>> attemptEviction(boolean lockedAlready) {
          Set<HashEntry<K, V>> evicted = null;
          boolean obtainedLock = !lockedAlready ? tryLock() : true;
@@ -1306,6 +1446,41 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
     */
    public BoundedConcurrentHashMap(int capacity, int concurrencyLevel,
          Eviction evictionStrategy, EvictionListener<K, V> evictionListener) {
+      this(capacity, concurrencyLevel, evictionStrategy, evictionListener, -1, null);
+   }
+
+   /**
+    * Creates a new, empty map with the specified maximum capacity, concurrency level and
+    * maximum memory size. Each segment is allotted an equal share of the maximum memory size
+    * and evicts entries, in the order chosen by the eviction strategy, whenever the estimated
+    * size of its entries exceeds that share.
+    *
+    * @param capacity
+    *            is the upper bound capacity for the number of elements in this map
+    *
+    * @param concurrencyLevel
+    *            the estimated number of concurrently updating threads. The implementation performs
+    *            internal sizing to try to accommodate this many threads.
+    *
+    * @param evictionStrategy
+    *            the algorithm used to evict elements from this map
+    *
+    * @param evictionListener
+    *            the evicton listener callback to be notified about evicted elements
+    *
+    * @param maxMemorySize
+    *            upper bound for the estimated memory size of all entries, or -1 for no bound
+    *
+    * @param sizeCalculator
+    *            estimates the memory size of each entry; required if maxMemorySize is not -1
+    *
+    * @throws IllegalArgumentException
+    *             if the initial capacity is negative or the load factor or concurrencyLevel are
+    *             nonpositive.
+    */
+   public BoundedConcurrentHashMap(int capacity, int concurrencyLevel,
+         Eviction evictionStrategy, EvictionListener<K, V> evictionListener,
+         long maxMemorySize, EntrySizeCalculator<? super K, ? super V> sizeCalculator) {
       if (capacity < 0 || concurrencyLevel <= 0) {
          throw new IllegalArgumentException();
       }
@@ -1322,6 +1497,10 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
          throw new IllegalArgumentException();
       }
 
+      if (maxMemorySize >= 0 && sizeCalculator == null) {
+         throw new IllegalArgumentException("A size calculator is needed to bound the map by memory size");
+      }
+
       if (concurrencyLevel > MAX_SEGMENTS) {
          concurrencyLevel = MAX_SEGMENTS;
       }
@@ -1349,8 +1528,17 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
          cap <<= 1;
       }
 
+      long segmentMemorySize = -1;
+      if (maxMemorySize >= 0) {
+         segmentMemorySize = maxMemorySize / ssize;
+         if (segmentMemorySize * ssize < maxMemorySize) {
+            ++segmentMemorySize;
+         }
+      }
+
       for (int i = 0; i < this.segments.length; ++i) {
-         this.segments[i] = new Segment<K, V>(cap, c, DEFAULT_LOAD_FACTOR, evictionStrategy, evictionListener);
+         this.segments[i] = new Segment<K, V>(cap, c, DEFAULT_LOAD_FACTOR, evictionStrategy, evictionListener,
+               segmentMemorySize, sizeCalculator);
       }
    }
 
@@ -1516,6 +1704,34 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
       }
    }
 
+   /**
+    * Returns the estimated memory size of all entries in this map, as computed by the
+    * map's {@link EntrySizeCalculator}, or 0 if the map has no size calculator.
+    *
+    * @return the estimated memory size of this map
+    */
+   public long memorySize() {
+      long sum = 0;
+      for (Segment<K, V> segment : segments) {
+         sum += segment.memorySize; // read-volatile
+      }
+      return sum;
+   }
+
+   /**
+    * Returns the estimated memory size of the entries held by each segment of this map, as
+    * computed by the map's {@link EntrySizeCalculator}.
+    *
+    * @return an array holding the estimated memory size of each segment
+    */
+   public long[] segmentMemorySizes() {
+      long[] sizes = new long[segments.length];
+      for (int i = 0; i < segments.length; i++) {
+         sizes[i] = segments[i].memorySize; // read-volatile
+      }
+      return sizes;
+   }
+
    /**
     * Returns the value to which the specified key is mapped,
     * or {@code null} if this map contains no mapping for the key.
@@ -0,0 +1,87 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.util.concurrent;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A counter spreading its updates over several cells, so that threads updating it concurrently seldom update the same
+ * cache line. Reading the counter sums the cells, which makes reads slower than those of an
+ * {@link java.util.concurrent.atomic.AtomicLong}: it suits statistics, which are updated much more often than read.
+ * <p/>
+ * The sum is not an atomic snapshot: updates happening while it is computed might or might not be accounted.
+ *
+ * @since 5.1
+ */
+public final class StripedCounter {
+
+   // cells are 8 longs apart, so that no two cells share a 64 bytes cache line
+   static final int PADDING = 8;
+   static final int CELLS = cellsFor(Runtime.getRuntime().availableProcessors());
+
+   private final AtomicLongArray cells = new AtomicLongArray(CELLS * PADDING);
+
+   public void increment() {
+      add(1);
+   }
+
+   public void add(long delta) {
+      cells.getAndAdd(cellIndex() * PADDING, delta);
+   }
+
+   public long sum() {
+      long sum = 0;
+      for (int i = 0; i < CELLS; i++) {
+         sum += cells.get(i * PADDING);
+      }
+      return sum;
+   }
+
+   public void reset() {
+      for (int i = 0; i < CELLS; i++) {
+         cells.set(i * PADDING, 0);
+      }
+   }
+
+   @Override
+   public String toString() {
+      return String.valueOf(sum());
+   }
+
+   /**
+    * Returns the cell of the current thread, between 0 and {@link #CELLS} excluded. Thread ids are sequential, so
+    * consecutive threads get different cells.
+    */
+   static int cellIndex() {
+      return (int) Thread.currentThread().getId() & (CELLS - 1);
+   }
+
+   /**
+    * Returns the smallest power of two greater than or equal to the number of processors.
+    */
+   static int cellsFor(int processors) {
+      int cells = 1;
+      while (cells < processors) cells <<= 1;
+      return cells;
+   }
+}
@@ -0,0 +1,130 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.container;
+
+import org.infinispan.config.Configuration;
+import org.infinispan.container.entries.InternalCacheEntry;
+import org.infinispan.eviction.EvictionStrategy;
+import org.infinispan.manager.EmbeddedCacheManager;
+import org.infinispan.test.SingleCacheManagerTest;
+import org.infinispan.test.fwk.TestCacheManagerFactory;
+import org.testng.annotations.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.testng.AssertJUnit.assertEquals;
+
+@Test(groups = "functional", testName = "container.OffHeapDataContainerTest")
+public class OffHeapDataContainerTest extends SingleCacheManagerTest {
+
+   private static final int MAX_ENTRIES = 64;
+
+   @Override
+   protected EmbeddedCacheManager createCacheManager() throws Exception {
+      Configuration cfg = new Configuration();
+      cfg.fluent().dataContainer().dataContainerClass(OffHeapDataContainer.class);
+      cfg.fluent().eviction().strategy(EvictionStrategy.LRU).maxEntries(MAX_ENTRIES)
+            .expiration().wakeUpInterval(-1L);
+      EmbeddedCacheManager cm = TestCacheManagerFactory.createCacheManager(cfg);
+      cache = cm.getCache();
+      return cm;
+   }
+
+   private DataContainer container() {
+      return cache.getAdvancedCache().getDataContainer();
+   }
+
+   public void testContainerSelected() {
+      assertEquals(OffHeapDataContainer.class, container().getClass());
+   }
+
+   public void testPutGetRemove() {
+      cache.put("k", "v");
+      assertEquals("v", cache.get("k"));
+      cache.put("k", "v2");
+      assertEquals("v2", cache.get("k"));
+      assertEquals(1, container().size());
+      assertEquals("v2", cache.remove("k"));
+      assert cache.get("k") == null;
+      assertEquals(0, container().size());
+      assertEquals(0, ((OffHeapDataContainer) container()).getMemoryUsed());
+   }
+
+   public void testExpiration() throws InterruptedException {
+      DataContainer dc = container();
+      dc.put("mortal", "v", 0, -1);
+      dc.put("transient", "v", -1, 0);
+      dc.put("immortal", "v", -1, -1);
+      Thread.sleep(10);
+      dc.purgeExpired();
+      assertEquals(1, dc.size());
+      InternalCacheEntry ice = dc.get("immortal");
+      assertEquals("v", ice.getValue());
+      assertEquals(-1, ice.getLifespan());
+   }
+
+   public void testEvictionBoundsSize() {
+      for (int i = 0; i < MAX_ENTRIES * 4; i++) cache.put(i, "value" + i);
+      assert container().size() <= MAX_ENTRIES : "Expected at most " + MAX_ENTRIES + " but was " + container().size();
+      // the most recently written entry must have survived
+      int last = MAX_ENTRIES * 4 - 1;
+      assertEquals("value" + last, cache.get(last));
+   }
+
+   public void testFrequentlyReadEntrySurvivesEviction() {
+      cache.put("hot", "v");
+      for (int i = 0; i < MAX_ENTRIES * 4; i++) {
+         cache.put(i, "value" + i);
+         assertEquals("v", cache.get("hot"));
+      }
+   }
+
+   public void testStopReleasesNativeMemory() {
+      OffHeapDataContainer dc = (OffHeapDataContainer) container();
+      for (int i = 0; i < 10; i++) cache.put(i, "value" + i);
+      assert dc.getMemoryUsed() > 0;
+      cache.stop();
+      try {
+         assertEquals(0, dc.getMemoryUsed());
+         assertEquals(0, dc.size());
+      } finally {
+         cache.start();
+      }
+   }
+
+   public void testIteration() {
+      Set<Object> expected = new HashSet<Object>();
+      for (int i = 0; i < 10; i++) {
+         cache.put("k" + i, "v" + i);
+         expected.add("k" + i);
+      }
+      for (InternalCacheEntry ice : container()) {
+         assert expected.remove(ice.getKey()) : "Unexpected key " + ice.getKey();
+         assertEquals("v" + ((String) ice.getKey()).substring(1), ice.getValue());
+      }
+      assert expected.isEmpty() : "Did not see keys " + expected;
+      assertEquals(10, container().keySet().size());
+      assertEquals(10, container().entrySet().size());
+   }
+}
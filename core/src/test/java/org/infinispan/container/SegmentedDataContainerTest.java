@@ -0,0 +1,80 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.container;
+
+import org.infinispan.config.Configuration;
+import org.infinispan.container.entries.InternalCacheEntry;
+import org.infinispan.distribution.ch.ConsistentHashHelper;
+import org.infinispan.distribution.ch.HashSegments;
+import org.testng.annotations.Test;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
+import static org.testng.AssertJUnit.assertEquals;
+
+@Test(groups = "unit", testName = "container.SegmentedDataContainerTest")
+public class SegmentedDataContainerTest extends SimpleDataContainerTest {
+
+   private static final int NUM_SEGMENTS = 16;
+
+   @Override
+   protected DataContainer createContainer() {
+      Configuration c = new Configuration().fluent().hash().numSegments(NUM_SEGMENTS).build();
+      return new SegmentedDataContainer(16, ConsistentHashHelper.createHashSegments(c));
+   }
+
+   public void testKeysPartitionedBySegment() {
+      SegmentAwareDataContainer sdc = (SegmentAwareDataContainer) dc;
+      HashSegments segments = sdc.getHashSegments();
+      for (int i = 0; i < 100; i++) sdc.put("k" + i, "v" + i, -1, -1);
+      sdc.remove("k0");
+
+      Set<Object> allKeys = new HashSet<Object>();
+      for (int segment = 0; segment < NUM_SEGMENTS; segment++) {
+         for (Object key : sdc.keySet(segment)) {
+            assertEquals(segment, segments.getSegment(key));
+            assert allKeys.add(key);
+         }
+         int entries = 0;
+         for (Iterator<InternalCacheEntry> it = sdc.iterator(segment); it.hasNext(); entries++) {
+            assertEquals(segment, segments.getSegment(it.next().getKey()));
+         }
+         assertEquals(sdc.keySet(segment).size(), entries);
+      }
+      assertEquals(sdc.keySet(), allKeys);
+      assert !allKeys.contains("k0");
+   }
+
+   public void testExpiredKeysLeaveSegment() throws InterruptedException {
+      SegmentAwareDataContainer sdc = (SegmentAwareDataContainer) dc;
+      sdc.put("k", "v", 100, -1);
+      int segment = sdc.getHashSegments().getSegment("k");
+      assert sdc.keySet(segment).contains("k");
+      Thread.sleep(200);
+      sdc.purgeExpired();
+      assert !sdc.keySet(segment).contains("k");
+      assert !sdc.iterator(segment).hasNext();
+   }
+}
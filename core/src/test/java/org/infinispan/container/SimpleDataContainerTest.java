@@ -272,4 +272,48 @@ public class SimpleDataContainerTest extends AbstractInfinispanTest {
 
       assert i == 10 : "Expected the loop to run 10 times, only ran " + i;
    }   
+
+   public void testPurgeOnlyInspectsExpirableEntries() throws InterruptedException {
+      DefaultDataContainer ddc = (DefaultDataContainer) dc;
+      for (int i = 0; i < 100; i++) dc.put("immortal" + i, "v", -1, -1);
+      for (int i = 0; i < 10; i++) dc.put("mortal" + i, "v", 0, -1);
+      Thread.sleep(10);
+      dc.purgeExpired();
+
+      assert dc.size() == 100;
+      assertEquals(10, ddc.getPurgeInspectedCount());
+      assertEquals(10, ddc.getPurgeRemovedCount());
+   }
+
+   public void testExpirationIndexFollowsContainer() {
+      DefaultDataContainer ddc = (DefaultDataContainer) dc;
+      // every put moves the key to a later bucket
+      for (int i = 1; i <= 100; i++) dc.put("hot", "v" + i, i * 60000L, -1);
+      assertEquals(1, ddc.expirationIndex.size());
+      assertEquals(1, ddc.expirationIndex.bucketCount());
+
+      dc.put("hot", "immortal", -1, -1);
+      assertEquals(0, ddc.expirationIndex.size());
+      assertEquals(0, ddc.expirationIndex.bucketCount());
+
+      for (int i = 0; i < 10; i++) dc.put("k" + i, "v", 60000, -1);
+      assertEquals(10, ddc.expirationIndex.size());
+      for (int i = 0; i < 10; i++) dc.remove("k" + i);
+      assertEquals(0, ddc.expirationIndex.size());
+      assertEquals(0, ddc.expirationIndex.bucketCount());
+   }
+
+   public void testPurgeKeepsTouchedTransientEntries() throws InterruptedException {
+      dc.put("k", "v", -1, 300);
+      for (int i = 0; i < 5; i++) {
+         Thread.sleep(100);
+         assert dc.get("k") != null;
+         dc.purgeExpired();
+      }
+      assert dc.containsKey("k");
+
+      Thread.sleep(400);
+      dc.purgeExpired();
+      assert dc.size() == 0;
+   }
 }
@@ -25,6 +25,7 @@ package org.infinispan.distribution;
 import org.infinispan.config.Configuration;
 import org.infinispan.distribution.ch.ConsistentHashHelper;
 import org.infinispan.distribution.ch.DefaultConsistentHash;
+import org.infinispan.distribution.ch.HashSegments;
 import org.infinispan.remoting.transport.Address;
 import org.infinispan.test.AbstractInfinispanTest;
 import org.testng.annotations.Test;
@@ -138,5 +139,24 @@ public class DefaultConsistentHashTest extends AbstractInfinispanTest {
          }
       }
    }
-}
 
+   public void testLocateSegment() {
+      List<Address> servers = Arrays.<Address>asList(new TestAddress(1), new TestAddress(2), new TestAddress(3), new TestAddress(4));
+      DefaultConsistentHash ch = createConsistentHash(servers);
+      Configuration c = new Configuration().fluent().hash().numSegments(64).build();
+      HashSegments segments = ConsistentHashHelper.createHashSegments(c);
+
+      int split = 0;
+      for (int i = 0; i < segments.getNumSegments(); i++) {
+         if (ch.locateSegment(segments, i, 2) == null) split++;
+      }
+      // only the segments that a position of the wheel falls into are split
+      assert split <= servers.size();
+
+      for (int i = 0; i < 1000; i++) {
+         Object key = "key" + i;
+         List<Address> segmentOwners = ch.locateSegment(segments, segments.getSegment(key), 2);
+         if (segmentOwners != null) assertEquals(segmentOwners, ch.locate(key, 2));
+      }
+   }
+}
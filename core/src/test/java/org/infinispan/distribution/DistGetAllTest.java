@@ -0,0 +1,84 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.distribution;
+
+import org.infinispan.context.Flag;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Map;
+
+@Test(groups = "functional", testName = "distribution.DistGetAllTest")
+public class DistGetAllTest extends BaseDistFunctionalTest {
+
+   public DistGetAllTest() {
+      cleanup = CleanupPhase.AFTER_METHOD;
+   }
+
+   public void testGetAllFromSeveralOwners() {
+      MagicKey k1 = new MagicKey(c1);
+      MagicKey k2 = new MagicKey(c2);
+      MagicKey k3 = new MagicKey(c3);
+      c1.put(k1, "v1");
+      c1.put(k2, "v2");
+      c1.put(k3, "v3");
+      assertIsNotInL1(c4, k1);
+      assertIsNotInL1(c4, k2);
+
+      Map<Object, String> values = c4.getAdvancedCache().getAll(Arrays.asList(k1, k2, k3));
+      assert values.size() == 3 : "Expected all keys to be found but got " + values;
+      assert "v1".equals(values.get(k1));
+      assert "v2".equals(values.get(k2));
+      assert "v3".equals(values.get(k3));
+
+      // entries retrieved from other owners are cached in L1, one entry per key
+      assertIsInL1(c4, k1);
+      assertIsInL1(c4, k2);
+      assertIsInContainerImmortal(c4, k3);
+   }
+
+   public void testGetAllOmitsMissingKeys() {
+      MagicKey k1 = new MagicKey(c1);
+      MagicKey missingRemote = new MagicKey(c2, "missing");
+      MagicKey missingLocal = new MagicKey(c3, "missing");
+      c1.put(k1, "v1");
+
+      Map<Object, String> values = c4.getAdvancedCache().getAll(Arrays.asList(k1, missingRemote, missingLocal));
+      assert values.size() == 1 : "Expected only one key to be found but got " + values;
+      assert "v1".equals(values.get(k1));
+      assert !values.containsKey(missingRemote);
+      assert !values.containsKey(missingLocal);
+   }
+
+   public void testGetAllWithSkipRemoteLookup() {
+      MagicKey k1 = new MagicKey(c1);
+      MagicKey k3 = new MagicKey(c3);
+      c1.put(k1, "v1");
+      c1.put(k3, "v3");
+
+      Map<Object, String> values = c4.getAdvancedCache().withFlags(Flag.SKIP_REMOTE_LOOKUP).getAll(Arrays.asList(k1, k3));
+      assert values.size() == 1 : "Expected only the local key to be found but got " + values;
+      assert "v3".equals(values.get(k3));
+      assertIsNotInL1(c4, k1);
+   }
+}
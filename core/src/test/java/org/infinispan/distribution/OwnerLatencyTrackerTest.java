@@ -0,0 +1,83 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.distribution;
+
+import org.infinispan.remoting.transport.Address;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+@Test(groups = "unit", testName = "distribution.OwnerLatencyTrackerTest")
+public class OwnerLatencyTrackerTest {
+
+   public void testPrimaryOwnerSelectedByDefault() {
+      OwnerLatencyTracker tracker = new OwnerLatencyTracker();
+      Address self = new TestAddress(0), a1 = new TestAddress(1), a2 = new TestAddress(2);
+      assert tracker.selectBest(Arrays.asList(a1, a2), self) == a1;
+   }
+
+   public void testFastestOwnerSelected() {
+      OwnerLatencyTracker tracker = new OwnerLatencyTracker();
+      Address self = new TestAddress(0), a1 = new TestAddress(1), a2 = new TestAddress(2);
+      tracker.record(a1, 5000000);
+      tracker.record(a2, 100000);
+      assert tracker.selectBest(Arrays.asList(a1, a2), self) == a2;
+
+      // the average moves slowly towards new samples
+      for (int i = 0; i < 100; i++) tracker.record(a1, 10000);
+      assert tracker.getAverageNanos(a1) < 100000 : tracker.getAverageNanos(a1);
+      assert tracker.selectBest(Arrays.asList(a1, a2), self) == a1;
+   }
+
+   public void testUnknownOwnerTriedBeforeSlowOwner() {
+      OwnerLatencyTracker tracker = new OwnerLatencyTracker();
+      Address self = new TestAddress(0), a1 = new TestAddress(1), a2 = new TestAddress(2);
+      tracker.record(a1, 100000);
+      assert tracker.getAverageNanos(a2) == -1;
+      assert tracker.selectBest(Arrays.asList(a1, a2), self) == a2;
+   }
+
+   public void testCloserOwnerPreferredOverFasterOwner() {
+      OwnerLatencyTracker tracker = new OwnerLatencyTracker();
+      Address self = new TestTopologyAwareAddress(0, "s1", "r1", "m1");
+      Address otherSite = new TestTopologyAwareAddress(1, "s2", "r1", "m2");
+      Address otherRack = new TestTopologyAwareAddress(2, "s1", "r2", "m3");
+      Address sameRack = new TestTopologyAwareAddress(3, "s1", "r1", "m4");
+      tracker.record(otherSite, 1000);
+      tracker.record(otherRack, 10000);
+      tracker.record(sameRack, 100000);
+      assert tracker.selectBest(Arrays.asList(otherSite, otherRack, sameRack), self) == sameRack;
+      assert tracker.selectBest(Arrays.asList(otherSite, otherRack), self) == otherRack;
+   }
+
+   public void testDepartedOwnersForgotten() {
+      OwnerLatencyTracker tracker = new OwnerLatencyTracker();
+      Address a1 = new TestAddress(1), a2 = new TestAddress(2);
+      tracker.record(a1, 1000);
+      tracker.record(a2, 1000);
+      tracker.retain(Collections.singletonList(a2));
+      assert tracker.getAverageNanos(a1) == -1;
+      assert tracker.getAverageNanos(a2) == 1000;
+   }
+}
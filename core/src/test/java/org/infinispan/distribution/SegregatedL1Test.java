@@ -0,0 +1,119 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.distribution;
+
+import org.infinispan.Cache;
+import org.infinispan.config.Configuration;
+import org.infinispan.container.DataContainer;
+import org.infinispan.container.L1SegregatedDataContainer;
+import org.infinispan.context.Flag;
+import org.infinispan.test.MultipleCacheManagersTest;
+import org.infinispan.test.TestingUtil;
+import org.testng.annotations.Test;
+
+/**
+ * Tests L1 entries held in a container of their own, apart from the entries owned by the node.
+ */
+@Test(groups = "functional", testName = "distribution.SegregatedL1Test")
+public class SegregatedL1Test extends MultipleCacheManagersTest {
+
+   private static final int L1_MAX_ENTRIES = 16;
+
+   public SegregatedL1Test() {
+      cleanup = CleanupPhase.AFTER_METHOD;
+   }
+
+   @Override
+   protected void createCacheManagers() throws Throwable {
+      Configuration c = getDefaultClusteredConfig(Configuration.CacheMode.DIST_SYNC);
+      c.setNumOwners(1);
+      c.fluent().l1().maxEntries(L1_MAX_ENTRIES);
+      createCluster(c, 2);
+      waitForClusterToForm();
+   }
+
+   private L1SegregatedDataContainer dataContainer(Cache<?, ?> c) {
+      DataContainer dc = TestingUtil.extractComponent(c, DataContainer.class);
+      assert dc instanceof L1SegregatedDataContainer : "Unexpected data container " + dc;
+      return (L1SegregatedDataContainer) dc;
+   }
+
+   private L1ManagerImpl l1Manager(Cache<?, ?> c) {
+      return (L1ManagerImpl) TestingUtil.extractComponent(c, L1Manager.class);
+   }
+
+   public void testRemoteEntriesStoredInL1() {
+      MagicKey k = new MagicKey(cache(0));
+      cache(0).put(k, "value");
+      L1SegregatedDataContainer dc = dataContainer(cache(1));
+      assert dc.getL1Size() == 0;
+
+      assert "value".equals(cache(1).get(k));
+      assert dc.getL1Size() == 1;
+      assert dc.size() == 1;
+      assert dc.containsKey(k);
+      assert l1Manager(cache(1)).getL1Misses() == 1;
+      assert l1Manager(cache(0)).getNumberOfTrackedKeys() == 1;
+
+      assert "value".equals(cache(1).get(k));
+      assert l1Manager(cache(1)).getL1Hits() >= 1;
+      assert l1Manager(cache(1)).getL1HitRatio() > 0;
+      // the owner holds the entry as an owned entry
+      assert dataContainer(cache(0)).getL1Size() == 0;
+      assert dataContainer(cache(0)).size() == 1;
+   }
+
+   public void testL1InvalidatedOnWrite() {
+      MagicKey k = new MagicKey(cache(0));
+      cache(0).put(k, "value");
+      assert "value".equals(cache(1).get(k));
+      assert dataContainer(cache(1)).getL1Size() == 1;
+
+      cache(0).put(k, "value2");
+      assert dataContainer(cache(1)).getL1Size() == 0;
+      assert l1Manager(cache(0)).getNumberOfTrackedKeys() == 0;
+      assert "value2".equals(cache(1).get(k));
+   }
+
+   public void testWriteByNonOwnerIsNotAMiss() {
+      MagicKey k = new MagicKey(cache(0));
+      cache(1).getAdvancedCache().withFlags(Flag.SKIP_REMOTE_LOOKUP).put(k, "value");
+      assert "value".equals(cache(0).get(k));
+      assert l1Manager(cache(1)).getL1Misses() == 0;
+   }
+
+   public void testL1BoundedIndependently() {
+      int numKeys = L1_MAX_ENTRIES * 4;
+      MagicKey[] keys = new MagicKey[numKeys];
+      for (int i = 0; i < numKeys; i++) {
+         keys[i] = new MagicKey(cache(0), "k" + i);
+         cache(0).put(keys[i], "v" + i);
+      }
+      for (int i = 0; i < numKeys; i++) assert ("v" + i).equals(cache(1).get(keys[i]));
+
+      L1SegregatedDataContainer dc = dataContainer(cache(1));
+      assert dc.getL1Size() <= L1_MAX_ENTRIES : "L1 holds " + dc.getL1Size() + " entries";
+      // the owner keeps all of its entries
+      assert dataContainer(cache(0)).size() == numKeys;
+   }
+}
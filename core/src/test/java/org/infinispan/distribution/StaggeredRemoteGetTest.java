@@ -0,0 +1,93 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.distribution;
+
+import org.infinispan.Cache;
+import org.infinispan.config.Configuration;
+import org.infinispan.remoting.transport.Address;
+import org.infinispan.test.MultipleCacheManagersTest;
+import org.testng.annotations.Test;
+
+import java.util.List;
+
+/**
+ * Tests remote gets sent to the best owner first, with a stagger delay long enough for the best owner to always answer
+ * before the other owners are asked.
+ */
+@Test(groups = "functional", testName = "distribution.StaggeredRemoteGetTest")
+public class StaggeredRemoteGetTest extends MultipleCacheManagersTest {
+
+   @Override
+   protected void createCacheManagers() throws Throwable {
+      Configuration c = getDefaultClusteredConfig(Configuration.CacheMode.DIST_SYNC);
+      // without L1 every get on a non owner goes remote
+      c.setL1CacheEnabled(false);
+      c.setNumOwners(2);
+      c.fluent().hash().remoteGetStaggerDelay(10000L);
+      createCluster(c, 3);
+      waitForClusterToForm();
+   }
+
+   private Cache<MagicKey, String> getNonOwner(List<Address> owners) {
+      for (Cache<MagicKey, String> c : this.<MagicKey, String>caches())
+         if (!owners.contains(address(c))) return c;
+      return null;
+   }
+
+   private DistributionManagerImpl distributionManager(Cache<?, ?> c) {
+      return (DistributionManagerImpl) c.getAdvancedCache().getDistributionManager();
+   }
+
+   public void testGetServedByFirstOwner() {
+      MagicKey k = new MagicKey(cache(0));
+      cache(0).put(k, "value");
+      List<Address> owners = distributionManager(cache(0)).locate(k);
+      Cache<MagicKey, String> nonOwner = getNonOwner(owners);
+      DistributionManagerImpl dm = distributionManager(nonOwner);
+      long servedBefore = dm.getRemoteGetsServedByFirstOwner();
+      long fannedOutBefore = dm.getRemoteGetsFannedOut();
+
+      for (int i = 0; i < 10; i++) assert "value".equals(nonOwner.get(k));
+
+      assert dm.getRemoteGetsServedByFirstOwner() == servedBefore + 10 : dm.getRemoteGetsServedByFirstOwner();
+      assert dm.getRemoteGetsFannedOut() == fannedOutBefore;
+      // every owner is tried first until it has an average response time
+      assert dm.getOwnerLatencies().getAverageNanos(owners.get(0)) >= 0;
+      assert dm.getOwnerLatencies().getAverageNanos(owners.get(1)) >= 0;
+      assert dm.getRemoteGetOwnerLatencies().contains(owners.get(0).toString());
+   }
+
+   public void testGetOfNonexistentKeyOnlyAsksFirstOwner() {
+      MagicKey k = new MagicKey(cache(1), "does not exist");
+      List<Address> owners = distributionManager(cache(1)).locate(k);
+      Cache<MagicKey, String> nonOwner = getNonOwner(owners);
+      DistributionManagerImpl dm = distributionManager(nonOwner);
+      long servedBefore = dm.getRemoteGetsServedByFirstOwner();
+      long fannedOutBefore = dm.getRemoteGetsFannedOut();
+
+      // no rehash is in progress, so the best owner's null answer is trusted
+      assert nonOwner.get(k) == null;
+      assert dm.getRemoteGetsServedByFirstOwner() == servedBefore + 1;
+      assert dm.getRemoteGetsFannedOut() == fannedOutBefore;
+   }
+}
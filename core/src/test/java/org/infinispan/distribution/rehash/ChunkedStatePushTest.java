@@ -0,0 +1,81 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.distribution.rehash;
+
+import org.infinispan.Cache;
+import org.infinispan.config.Configuration;
+import org.infinispan.distribution.DistributionManager;
+import org.infinispan.distribution.DistributionManagerImpl;
+import org.infinispan.distribution.RehashProgress;
+import org.infinispan.test.MultipleCacheManagersTest;
+import org.infinispan.test.TestingUtil;
+import org.testng.annotations.Test;
+
+/**
+ * Tests that state pushed in small chunks with a single chunk in flight still reaches every new owner.
+ *
+ * @since 5.1
+ */
+@Test(groups = "functional", testName = "distribution.rehash.ChunkedStatePushTest")
+public class ChunkedStatePushTest extends MultipleCacheManagersTest {
+
+   private static final int NUM_KEYS = 50;
+
+   private Configuration config;
+
+   @Override
+   protected void createCacheManagers() throws Throwable {
+      config = getDefaultClusteredConfig(Configuration.CacheMode.DIST_SYNC);
+      config.fluent().clustering().hash().numOwners(1).rehashChunkSize(2).rehashMaxChunksInFlight(1)
+            .clustering().l1().disable();
+      amendConfiguration(config);
+      createCluster(config, 2);
+      waitForClusterToForm();
+   }
+
+   protected void amendConfiguration(Configuration config) {
+   }
+
+   public void testChunkedPushOnJoin() {
+      for (int i = 0; i < NUM_KEYS; i++) cache(0).put("k" + i, "v" + i);
+
+      addClusterEnabledCacheManager(config);
+      Cache<Object, Object> joiner = cache(2);
+      TestingUtil.blockUntilViewsReceived(60000, cache(0), cache(1), joiner);
+      TestingUtil.waitForRehashToComplete(cache(0), cache(1), joiner);
+
+      long pushed = 0;
+      for (Cache<Object, Object> c : caches()) {
+         for (int i = 0; i < NUM_KEYS; i++) assert ("v" + i).equals(c.get("k" + i));
+         RehashProgress progress = progress(c);
+         assert progress.getKeysRemaining() == 0;
+         assert progress.getChunksInFlight() == 0;
+         pushed += progress.getKeysPushed();
+      }
+      assert pushed > 0 : "Expected some keys to be pushed to the joiner";
+   }
+
+   private RehashProgress progress(Cache<?, ?> c) {
+      return ((DistributionManagerImpl) TestingUtil.extractComponent(c, DistributionManager.class)).getRehashProgress();
+   }
+}
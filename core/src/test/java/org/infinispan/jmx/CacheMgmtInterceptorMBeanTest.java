@@ -26,12 +26,15 @@ import org.infinispan.AdvancedCache;
 import org.infinispan.config.Configuration;
 import org.infinispan.config.GlobalConfiguration;
 import org.infinispan.manager.EmbeddedCacheManager;
+import org.infinispan.stats.LatencyType;
+import org.infinispan.stats.Stats;
 import org.infinispan.test.SingleCacheManagerTest;
 import static org.infinispan.test.TestingUtil.*;
 import org.infinispan.test.fwk.TestCacheManagerFactory;
 import org.testng.annotations.AfterMethod;
 import org.testng.annotations.Test;
 
+import javax.management.Attribute;
 import javax.management.MBeanServer;
 import javax.management.ObjectName;
 import java.util.HashMap;
@@ -156,6 +159,54 @@ public class CacheMgmtInterceptorMBeanTest extends SingleCacheManagerTest {
       assertRemoveMisses(1);
    }
 
+   public void testLatencies() throws Exception {
+      for (int i = 0; i < 100; i++) {
+         cache.put("key" + i, "value" + i);
+         cache.get("key" + i);
+         cache.get("key_ne");
+      }
+      cache.remove("key0");
+      assertStores(100);
+      assertHits(100);
+      assertMisses(100);
+
+      for (String operation : new String[]{"Hit", "Miss", "Store", "Remove"}) {
+         long p50 = (Long) threadMBeanServer.getAttribute(mgmtInterceptor, operation + "TimeP50");
+         long p99 = (Long) threadMBeanServer.getAttribute(mgmtInterceptor, operation + "TimeP99");
+         long p999 = (Long) threadMBeanServer.getAttribute(mgmtInterceptor, operation + "TimeP999");
+         assert p50 > 0 : operation + " median latency not recorded";
+         assert p50 <= p99 && p99 <= p999 : operation + " percentiles out of order: " + p50 + ", " + p99 + ", " + p999;
+      }
+      assert (Long) threadMBeanServer.getAttribute(mgmtInterceptor, "AverageReadTimeNanos") > 0;
+      assert (Long) threadMBeanServer.getAttribute(mgmtInterceptor, "AverageWriteTimeNanos") > 0;
+
+      Stats stats = advanced.getStats();
+      assert stats.getLatencyPercentile(LatencyType.HIT, 99) > 0;
+      assert stats.getAverageLatency(LatencyType.STORE) > 0;
+      // a local cache makes no remote calls
+      assert stats.getLatencyPercentile(LatencyType.REMOTE, 50) == -1;
+
+      resetStats();
+      assert (Long) threadMBeanServer.getAttribute(mgmtInterceptor, "HitTimeP99") == 0;
+   }
+
+   public void testDisabledStatistics() throws Exception {
+      threadMBeanServer.setAttribute(mgmtInterceptor, new Attribute("StatisticsEnabled", Boolean.FALSE));
+      try {
+         cache.put("key", "value");
+         cache.get("key");
+         cache.remove("key");
+         cache.evict("key");
+         assertStores(0);
+         assertHits(0);
+         assertRemoveHits(0);
+         assertEvictions(0);
+         assert advanced.getStats().getLatencyPercentile(LatencyType.STORE, 50) == -1;
+      } finally {
+         threadMBeanServer.setAttribute(mgmtInterceptor, new Attribute("StatisticsEnabled", Boolean.TRUE));
+      }
+   }
+
    private void assertAttributeValue(String attrName, float expectedValue) throws Exception {
       String receivedVal = threadMBeanServer.getAttribute(mgmtInterceptor, attrName).toString();
       assert Float.parseFloat(receivedVal) == expectedValue : "expecting " + expectedValue + " for " + attrName + ", but received " + receivedVal;
@@ -527,6 +527,21 @@ public abstract class BaseCacheStoreTest extends AbstractInfinispanTest {
       assert !s.contains("k3");
    }
 
+   public void testLoadAllKeysInBulk() throws CacheLoaderException {
+      cs.store(InternalEntryFactory.create("k1", "v1"));
+      cs.store(InternalEntryFactory.create("k2", "v2"));
+      cs.store(InternalEntryFactory.create("k3", "v3"));
+
+      Set<Object> keys = new HashSet<Object>(Arrays.<Object>asList("k1", "k3", "k4"));
+      Map<Object, InternalCacheEntry> loaded = AbstractCacheLoader.loadAll(cs, keys);
+      assert loaded.size() == 2 : "Expected 2 entries, was " + loaded;
+      assert loaded.get("k1").getValue().equals("v1");
+      assert loaded.get("k3").getValue().equals("v3");
+      assert !loaded.containsKey("k4");
+
+      assert AbstractCacheLoader.loadAll(cs, Collections.<Object>emptySet()).isEmpty();
+   }
+
    public void testStreamingAPI() throws IOException, CacheLoaderException {
       cs.store(InternalEntryFactory.create("k1", "v1"));
       cs.store(InternalEntryFactory.create("k2", "v2"));
@@ -0,0 +1,137 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.loaders.logfile;
+
+import org.infinispan.container.entries.InternalEntryFactory;
+import org.infinispan.loaders.BaseCacheStoreTest;
+import org.infinispan.loaders.CacheLoaderException;
+import org.infinispan.loaders.CacheStore;
+import org.infinispan.test.TestingUtil;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Optional;
+import org.testng.annotations.Parameters;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+
+@Test(groups = "unit", testName = "loaders.logfile.LogFileCacheStoreTest")
+public class LogFileCacheStoreTest extends BaseCacheStoreTest {
+
+   LogFileCacheStore lfcs;
+   String tmpDirectory;
+
+   @BeforeClass
+   @Parameters({"basedir"})
+   protected void setUpTempDir(@Optional(value = "/tmp") String basedir) {
+      tmpDirectory = TestingUtil.tmpDirectory(basedir, this);
+   }
+
+   @AfterClass
+   protected void clearTempDir() {
+      TestingUtil.recursiveFileRemove(tmpDirectory);
+      new File(tmpDirectory).mkdirs();
+   }
+
+   @Override
+   protected CacheStore createCacheStore() throws CacheLoaderException {
+      clearTempDir();
+      lfcs = new LogFileCacheStore();
+      LogFileCacheStoreConfig cfg = new LogFileCacheStoreConfig()
+         .location(tmpDirectory)
+         .maxFileSize(4096)
+         .fetchPersistentState(true)
+         .purgeSynchronously(true); // for more accurate unit testing
+      lfcs.init(cfg, getCache(), getMarshaller());
+      lfcs.start();
+      return lfcs;
+   }
+
+   public void testIndexRebuiltOnRestart() throws Exception {
+      for (int i = 0; i < 50; i++) lfcs.store(InternalEntryFactory.create("k" + i, "v" + i));
+      for (int i = 0; i < 50; i += 2) lfcs.store(InternalEntryFactory.create("k" + i, "updated" + i));
+      for (int i = 0; i < 50; i += 5) lfcs.remove("k" + i);
+
+      lfcs.stop();
+      lfcs.start();
+
+      for (int i = 0; i < 50; i++) {
+         if (i % 5 == 0) {
+            assert lfcs.load("k" + i) == null : "k" + i + " should have been removed";
+         } else {
+            String expected = i % 2 == 0 ? "updated" + i : "v" + i;
+            assert expected.equals(lfcs.load("k" + i).getValue());
+         }
+      }
+      assert lfcs.loadAllKeys(null).size() == 40;
+   }
+
+   public void testCompactionReclaimsFiles() throws Exception {
+      for (int round = 0; round < 10; round++) {
+         for (int i = 0; i < 20; i++) lfcs.store(InternalEntryFactory.create("k" + i, "v" + round));
+      }
+      for (int i = 10; i < 20; i++) lfcs.remove("k" + i);
+
+      // may already have been started in the background, in which case this waits for it and carries on
+      lfcs.compact();
+
+      assert lfcs.getDeadBytesRatio() < 0.5;
+      for (int i = 0; i < 20; i++) {
+         if (i < 10)
+            assert "v9".equals(lfcs.load("k" + i).getValue());
+         else
+            assert lfcs.load("k" + i) == null;
+      }
+
+      // removal records dropped by compaction must not bring back older values
+      lfcs.stop();
+      lfcs.start();
+      assert lfcs.loadAllKeys(null).size() == 10;
+      for (int i = 10; i < 20; i++) assert lfcs.load("k" + i) == null;
+   }
+
+   public void testIncompleteRecordTruncatedOnRestart() throws Exception {
+      lfcs.store(InternalEntryFactory.create("k1", "v1"));
+      lfcs.store(InternalEntryFactory.create("k2", "v2"));
+      lfcs.stop();
+
+      File[] logFiles = lfcs.getRoot().listFiles();
+      assert logFiles != null && logFiles.length == 1;
+      RandomAccessFile raf = new RandomAccessFile(logFiles[0], "rw");
+      try {
+         raf.setLength(raf.length() - 3);
+      } finally {
+         raf.close();
+      }
+
+      lfcs.start();
+      assert "v1".equals(lfcs.load("k1").getValue());
+      assert lfcs.load("k2") == null;
+      lfcs.store(InternalEntryFactory.create("k3", "v3"));
+      lfcs.stop();
+      lfcs.start();
+      assert "v1".equals(lfcs.load("k1").getValue());
+      assert "v3".equals(lfcs.load("k3").getValue());
+   }
+}
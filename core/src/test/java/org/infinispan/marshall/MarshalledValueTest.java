@@ -55,12 +55,18 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutput;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.infinispan.test.TestingUtil.extractCacheMarshaller;
 
@@ -118,15 +124,15 @@ public class MarshalledValueTest extends MultipleCacheManagersTest {
    }
 
    private void assertOnlyOneRepresentationExists(MarshalledValue mv) {
-      assert (mv.instance != null && mv.raw == null) || (mv.instance == null && mv.raw != null) : "Only instance or raw representations should exist in a MarshalledValue; never both";
+      assert (mv.getInstanceIfPresent() != null && mv.getRawIfPresent() == null) || (mv.getInstanceIfPresent() == null && mv.getRawIfPresent() != null) : "Only instance or raw representations should exist in a MarshalledValue; never both";
    }
 
    private void assertSerialized(MarshalledValue mv) {
-      assert mv.raw != null : "Should be serialized";
+      assert mv.getRawIfPresent() != null : "Should be serialized";
    }
 
    private void assertDeserialized(MarshalledValue mv) {
-      assert mv.instance != null : "Should be deserialized";
+      assert mv.getInstanceIfPresent() != null : "Should be deserialized";
    }
 
    private void assertSerializationCounts(int serializationCount, int deserializationCount) {
@@ -349,6 +355,64 @@ public class MarshalledValueTest extends MultipleCacheManagersTest {
       assert mv.equals(mv2);
    }
 
+   public void testRetainedSerializedForm() {
+      MarshalledValue mv = new MarshalledValue(new Pojo(), true, extractCacheMarshaller(cache(0)));
+      byte[] raw = mv.serialize();
+      assertSerializationCounts(1, 0);
+
+      mv.compact(false, false, true);
+      assertOnlyOneRepresentationExists(mv);
+      assertDeserialized(mv);
+
+      // unless the garbage collector claimed it in between, the serialized form released is reused
+      byte[] again = mv.serialize();
+      assert Pojo.serializationCount == 1 || again != raw;
+      assert Arrays.equals(raw, again);
+
+      mv.compact(false, false);
+      mv.serialize();
+      assert Pojo.serializationCount >= 2 : "The serialized form should not be retained unless asked to";
+   }
+
+   public void testRetainedSerializedFormDiscardedOnceInstanceHandedOut() {
+      MarshalledValue mv = new MarshalledValue(new Pojo(1), true, extractCacheMarshaller(cache(0)));
+      byte[] raw = mv.serialize();
+      mv.compact(false, false, true);
+
+      ((Pojo) mv.get()).i = 2;
+      byte[] again = mv.serialize();
+      assert !Arrays.equals(raw, again) : "A stale serialized form was reused after the instance was modified";
+      assert Pojo.serializationCount == 2;
+   }
+
+   public void testConcurrentDeserialization() throws Exception {
+      final MarshalledValue mv = new MarshalledValue(new Pojo(7), true, extractCacheMarshaller(cache(0)));
+      mv.compact(true, true);
+      assertSerialized(mv);
+      final int threads = 8;
+      final CyclicBarrier barrier = new CyclicBarrier(threads);
+      List<Future<Object>> results = new ArrayList<Future<Object>>();
+      ExecutorService executor = Executors.newFixedThreadPool(threads);
+      try {
+         for (int i = 0; i < threads; i++) {
+            results.add(executor.submit(new Callable<Object>() {
+               @Override
+               public Object call() throws Exception {
+                  barrier.await();
+                  return mv.get();
+               }
+            }));
+         }
+         Object first = results.get(0).get();
+         // several threads may deserialize concurrently, but they must all end up with the instance published first
+         for (Future<Object> result : results) assert result.get() == first;
+         assert mv.get() == first;
+         assert new Pojo(7).equals(first);
+      } finally {
+         executor.shutdownNow();
+      }
+   }
+
    public void testMarshallValueWithCustomReadObjectMethod() {
       Cache cache1 = cache(0, "replSync");
       Cache cache2 = cache(1, "replSync");
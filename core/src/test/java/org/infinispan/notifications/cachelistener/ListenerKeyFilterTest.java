@@ -0,0 +1,192 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.notifications.cachelistener;
+
+import org.infinispan.CacheException;
+import org.infinispan.context.InvocationContextContainer;
+import org.infinispan.manager.EmbeddedCacheManager;
+import org.infinispan.notifications.KeyValueFilter;
+import org.infinispan.notifications.Listener;
+import org.infinispan.notifications.cachelistener.annotation.CacheEntryCreated;
+import org.infinispan.notifications.cachelistener.annotation.CacheEntryModified;
+import org.infinispan.notifications.cachelistener.annotation.CacheEntryRemoved;
+import org.infinispan.notifications.cachelistener.event.CacheEntryEvent;
+import org.infinispan.test.SingleCacheManagerTest;
+import org.infinispan.test.TestingUtil;
+import org.infinispan.test.fwk.TestCacheManagerFactory;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.testng.AssertJUnit.assertEquals;
+
+/**
+ * Tests listeners registered along with a {@link KeyValueFilter}.
+ *
+ * @since 5.1
+ */
+@Test(groups = "functional", testName = "notifications.cachelistener.ListenerKeyFilterTest")
+public class ListenerKeyFilterTest extends SingleCacheManagerTest {
+
+   @Override
+   protected EmbeddedCacheManager createCacheManager() throws Exception {
+      return TestCacheManagerFactory.createLocalCacheManager();
+   }
+
+   public void testKeyFilter() {
+      RecordingListener all = new RecordingListener();
+      RecordingListener filtered = new RecordingListener();
+      cache.addListener(all);
+      cache.getAdvancedCache().addListener(filtered, new PrefixFilter("a"));
+
+      cache.put("a1", "v1");
+      cache.put("b1", "v1");
+      cache.put("a1", "v2");
+      cache.put("b1", "v2");
+      cache.remove("a1");
+      cache.remove("b1");
+
+      assertEquals(list("created a1", "created b1", "modified a1", "modified b1", "modified a1", "modified b1",
+                        "removed a1", "removed b1"), all.events);
+      assertEquals(list("created a1", "modified a1", "modified a1", "removed a1"), filtered.events);
+   }
+
+   public void testValueFilter() {
+      RecordingListener filtered = new RecordingListener();
+      cache.getAdvancedCache().addListener(filtered, new KeyValueFilter<Object, Object>() {
+         @Override
+         public boolean accept(Object key, Object value) {
+            return "interesting".equals(value);
+         }
+      });
+
+      cache.put("k1", "boring");
+      cache.put("k2", "interesting");
+      cache.remove("k1");
+
+      assertEquals(list("modified k2"), filtered.events);
+   }
+
+   public void testRemoveFilteredListener() {
+      RecordingListener filtered = new RecordingListener();
+      cache.getAdvancedCache().addListener(filtered, new PrefixFilter("a"));
+      assert cache.getListeners().contains(filtered);
+
+      cache.removeListener(filtered);
+      assert !cache.getListeners().contains(filtered);
+      cache.put("a1", "v1");
+      assertEquals(Collections.<String>emptyList(), filtered.events);
+   }
+
+   public void testNullFilter() {
+      RecordingListener listener = new RecordingListener();
+      cache.getAdvancedCache().addListener(listener, null);
+      cache.put("b1", "v1");
+      assertEquals(list("created b1", "modified b1"), listener.events);
+   }
+
+   public void testFiltersRunWithSuspendedContext() {
+      final InvocationContextContainer icc = TestingUtil.extractComponent(cache, InvocationContextContainer.class);
+      final List<Boolean> contextSuspended = Collections.synchronizedList(new ArrayList<Boolean>());
+      KeyValueFilter<Object, Object> filter = new KeyValueFilter<Object, Object>() {
+         @Override
+         public boolean accept(Object key, Object value) {
+            contextSuspended.add(icc.peekInvocationContext() == null);
+            return true;
+         }
+      };
+      cache.getAdvancedCache().addListener(new RecordingListener(), filter);
+      cache.getAdvancedCache().addListener(new RecordingListener(), filter);
+
+      cache.put("k1", "v1");
+
+      assert !contextSuspended.isEmpty();
+      assert !contextSuspended.contains(false) : contextSuspended;
+   }
+
+   public void testListenerErrorIsNotWrapped() {
+      FailingListener listener = new FailingListener();
+      cache.addListener(listener);
+      try {
+         cache.put("k1", "v1");
+         assert false : "The listener error should have been propagated";
+      } catch (CacheException e) {
+         // the interceptor chain wraps whatever is not a runtime exception, but the listener does not
+         assert e.getCause() instanceof ListenerError : e.getCause();
+      } finally {
+         cache.removeListener(listener);
+      }
+   }
+
+   private static List<String> list(String... events) {
+      List<String> list = new ArrayList<String>();
+      Collections.addAll(list, events);
+      return list;
+   }
+
+   private static class PrefixFilter implements KeyValueFilter<Object, Object> {
+      private final String prefix;
+
+      PrefixFilter(String prefix) {
+         this.prefix = prefix;
+      }
+
+      @Override
+      public boolean accept(Object key, Object value) {
+         return key.toString().startsWith(prefix);
+      }
+   }
+
+   private static class ListenerError extends Error {
+   }
+
+   @Listener
+   public static class FailingListener {
+      @CacheEntryCreated
+      public void created(CacheEntryEvent e) {
+         throw new ListenerError();
+      }
+   }
+
+   @Listener
+   public static class RecordingListener {
+      final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+
+      @CacheEntryCreated
+      public void created(CacheEntryEvent e) {
+         if (!e.isPre()) events.add("created " + e.getKey());
+      }
+
+      @CacheEntryModified
+      public void modified(CacheEntryEvent e) {
+         if (!e.isPre()) events.add("modified " + e.getKey());
+      }
+
+      @CacheEntryRemoved
+      public void removed(CacheEntryEvent e) {
+         if (!e.isPre()) events.add("removed " + e.getKey());
+      }
+   }
+}
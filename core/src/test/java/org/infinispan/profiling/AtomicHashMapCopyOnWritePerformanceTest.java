@@ -0,0 +1,133 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.profiling;
+
+import org.infinispan.Cache;
+import org.infinispan.atomic.AtomicHashMap;
+import org.infinispan.atomic.AtomicMap;
+import org.infinispan.atomic.AtomicMapLookup;
+import org.infinispan.config.Configuration;
+import org.infinispan.manager.EmbeddedCacheManager;
+import org.infinispan.test.AbstractInfinispanTest;
+import org.infinispan.test.TestingUtil;
+import org.infinispan.test.fwk.TestCacheManagerFactory;
+import org.infinispan.util.FastCopyHashMap;
+import org.infinispan.util.logging.Log;
+import org.infinispan.util.logging.LogFactory;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+/**
+ * Measures the cost of a transaction writing a single entry of an {@link AtomicHashMap} holding 10, 1k and 100k
+ * entries: the copy-on-write of the map alone, compared with cloning the {@link FastCopyHashMap} that used to back it,
+ * and the whole transaction going through the cache.
+ *
+ * @since 5.1
+ */
+@Test(groups = "profiling", testName = "profiling.AtomicHashMapCopyOnWritePerformanceTest")
+public class AtomicHashMapCopyOnWritePerformanceTest extends AbstractInfinispanTest {
+
+   private static final Log log = LogFactory.getLog(AtomicHashMapCopyOnWritePerformanceTest.class);
+
+   private static final int[] SIZES = {10, 1000, 100000};
+   private static final long DURATION_MILLIS = 5000;
+
+   private EmbeddedCacheManager cacheManager;
+   private Cache<String, Object> cache;
+
+   @BeforeClass
+   public void setUp() {
+      Configuration cfg = new Configuration().fluent().invocationBatching().build();
+      cacheManager = TestCacheManagerFactory.createCacheManager(cfg, true);
+      cache = cacheManager.getCache();
+   }
+
+   @AfterClass(alwaysRun = true)
+   public void tearDown() {
+      TestingUtil.killCacheManagers(cacheManager);
+   }
+
+   public void testCopyForWrite() {
+      for (int size : SIZES) {
+         AtomicHashMap<Integer, Integer> map = new AtomicHashMap<Integer, Integer>();
+         for (int i = 0; i < size; i++) map.put(i, i);
+         map.commit();
+
+         long ops = 0;
+         long end = System.currentTimeMillis() + DURATION_MILLIS;
+         while (System.currentTimeMillis() < end) {
+            for (int i = 0; i < 100; i++, ops++) {
+               AtomicHashMap<Integer, Integer> copy = map.copyForWrite();
+               copy.initForWriting();
+               copy.put((int) (ops % size), (int) ops);
+               copy.delta();
+               copy.commit();
+               map = copy;
+            }
+         }
+         log.infof("AtomicHashMap copy-on-write, %d entries: %d writes/s", size, ops * 1000 / DURATION_MILLIS);
+      }
+   }
+
+   @SuppressWarnings("unchecked")
+   public void testFastCopyHashMapClone() {
+      for (int size : SIZES) {
+         FastCopyHashMap<Integer, Integer> map = new FastCopyHashMap<Integer, Integer>();
+         for (int i = 0; i < size; i++) map.put(i, i);
+
+         long ops = 0;
+         long end = System.currentTimeMillis() + DURATION_MILLIS;
+         while (System.currentTimeMillis() < end) {
+            for (int i = 0; i < 100; i++, ops++) {
+               FastCopyHashMap<Integer, Integer> copy = (FastCopyHashMap<Integer, Integer>) map.clone();
+               copy.put((int) (ops % size), (int) ops);
+               map = copy;
+            }
+         }
+         log.infof("FastCopyHashMap clone, %d entries: %d writes/s", size, ops * 1000 / DURATION_MILLIS);
+      }
+   }
+
+   public void testBatchedWrites() {
+      for (int size : SIZES) {
+         String key = "map" + size;
+         cache.startBatch();
+         AtomicMap<Integer, Integer> map = AtomicMapLookup.getAtomicMap(cache, key);
+         for (int i = 0; i < size; i++) map.put(i, i);
+         cache.endBatch(true);
+
+         long ops = 0;
+         long end = System.currentTimeMillis() + DURATION_MILLIS;
+         while (System.currentTimeMillis() < end) {
+            for (int i = 0; i < 100; i++, ops++) {
+               cache.startBatch();
+               AtomicMapLookup.<String, Integer, Integer>getAtomicMap(cache, key).put((int) (ops % size), (int) ops);
+               cache.endBatch(true);
+            }
+         }
+         log.infof("Batched AtomicMap writes, %d entries: %d writes/s", size, ops * 1000 / DURATION_MILLIS);
+         AtomicMapLookup.removeAtomicMap(cache, key);
+      }
+   }
+}
@@ -0,0 +1,171 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.profiling;
+
+import org.infinispan.Cache;
+import org.infinispan.config.Configuration;
+import org.infinispan.manager.EmbeddedCacheManager;
+import org.infinispan.marshall.MarshalledValue;
+import org.infinispan.marshall.StreamingMarshaller;
+import org.infinispan.test.AbstractInfinispanTest;
+import org.infinispan.test.TestingUtil;
+import org.infinispan.test.fwk.TestCacheManagerFactory;
+import org.infinispan.util.logging.Log;
+import org.infinispan.util.logging.LogFactory;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Measures the throughput of threads concurrently reading a few hot entries of a cache storing values as binary, which
+ * all contend on the same {@link MarshalledValue} instances, as well as the throughput of the marshalled values alone,
+ * when they are constantly compacted back to their serialized form while being read.
+ *
+ * @since 5.1
+ */
+@Test(groups = "profiling", testName = "profiling.MarshalledValueContentionTest")
+public class MarshalledValueContentionTest extends AbstractInfinispanTest {
+
+   private static final Log log = LogFactory.getLog(MarshalledValueContentionTest.class);
+
+   private static final int HOT_KEYS = 4;
+   private static final int[] THREAD_COUNTS = {1, 2, 4, 8, 16};
+   private static final long DURATION_MILLIS = 10000;
+
+   private EmbeddedCacheManager cacheManager;
+   private Cache<String, Value> cache;
+
+   @BeforeClass
+   public void setUp() {
+      Configuration cfg = new Configuration().fluent().storeAsBinary().build();
+      cacheManager = TestCacheManagerFactory.createCacheManager(cfg);
+      cache = cacheManager.getCache();
+      for (int i = 0; i < HOT_KEYS; i++) cache.put("key" + i, new Value(i));
+   }
+
+   @AfterClass(alwaysRun = true)
+   public void tearDown() {
+      TestingUtil.killCacheManagers(cacheManager);
+   }
+
+   public void testHotKeyReads() throws Exception {
+      for (int threads : THREAD_COUNTS) {
+         long ops = run(threads, new Operation() {
+            @Override
+            public void perform(int i) {
+               cache.get("key" + (i % HOT_KEYS));
+            }
+         });
+         log.infof("Hot key reads, %d threads: %d ops/s", threads, ops * 1000 / DURATION_MILLIS);
+      }
+   }
+
+   public void testCompactedValueReads() throws Exception {
+      StreamingMarshaller marshaller = TestingUtil.extractCacheMarshaller(cache);
+      final MarshalledValue[] values = new MarshalledValue[HOT_KEYS];
+      for (int i = 0; i < HOT_KEYS; i++) values[i] = new MarshalledValue(new Value(i), true, marshaller);
+
+      for (int threads : THREAD_COUNTS) {
+         long ops = run(threads, new Operation() {
+            @Override
+            public void perform(int i) {
+               MarshalledValue mv = values[i % HOT_KEYS];
+               mv.get();
+               mv.getRaw();
+               // every now and then, force the next reads to deserialize again
+               if (i % 64 == 0) mv.compact(true, false);
+            }
+         });
+         log.infof("Marshalled value reads with compaction, %d threads: %d ops/s", threads, ops * 1000 / DURATION_MILLIS);
+      }
+   }
+
+   private long run(int threads, final Operation operation) throws InterruptedException {
+      final AtomicBoolean running = new AtomicBoolean(true);
+      final CountDownLatch start = new CountDownLatch(1);
+      final long[] counts = new long[threads];
+      List<Thread> workers = new ArrayList<Thread>(threads);
+      for (int t = 0; t < threads; t++) {
+         final int index = t;
+         Thread worker = new Thread("MarshalledValueContention-" + t) {
+            @Override
+            public void run() {
+               try {
+                  start.await();
+               } catch (InterruptedException e) {
+                  return;
+               }
+               int i = index;
+               long count = 0;
+               while (running.get()) {
+                  operation.perform(i++);
+                  count++;
+               }
+               counts[index] = count;
+            }
+         };
+         worker.start();
+         workers.add(worker);
+      }
+      start.countDown();
+      TimeUnit.MILLISECONDS.sleep(DURATION_MILLIS);
+      running.set(false);
+      long total = 0;
+      for (int t = 0; t < threads; t++) {
+         workers.get(t).join();
+         total += counts[t];
+      }
+      return total;
+   }
+
+   private interface Operation {
+      void perform(int i);
+   }
+
+   public static class Value implements Serializable {
+      private static final long serialVersionUID = 5049316423548743411L;
+      final int id;
+      final byte[] payload = new byte[256];
+
+      Value(int id) {
+         this.id = id;
+      }
+
+      @Override
+      public boolean equals(Object o) {
+         return o instanceof Value && ((Value) o).id == id;
+      }
+
+      @Override
+      public int hashCode() {
+         return id;
+      }
+   }
+}
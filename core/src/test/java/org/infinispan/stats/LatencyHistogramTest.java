@@ -0,0 +1,105 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.stats;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.Test;
+
+/**
+ * Tests the percentiles estimated by {@link LatencyHistogram}.
+ *
+ * @since 5.1
+ */
+@Test(groups = "unit", testName = "stats.LatencyHistogramTest")
+public class LatencyHistogramTest {
+
+   public void testBucketsCoverAllValues() {
+      for (int bucket = 0; bucket < LatencyHistogram.BUCKETS; bucket++) {
+         long lowerBound = LatencyHistogram.lowerBoundOf(bucket);
+         assert LatencyHistogram.bucketOf(lowerBound) == bucket : "Bucket of " + lowerBound + " is not " + bucket;
+         if (bucket > 0)
+            assert LatencyHistogram.bucketOf(lowerBound - 1) == bucket - 1 : "Bucket " + bucket + " overlaps";
+      }
+      assert LatencyHistogram.bucketOf(Long.MAX_VALUE) == LatencyHistogram.BUCKETS - 1;
+   }
+
+   public void testPercentiles() {
+      LatencyHistogram histogram = new LatencyHistogram();
+      assert histogram.getPercentile(50) == 0;
+      for (long i = 1; i <= 100000; i++) {
+         histogram.record(i * 1000);
+      }
+      assert histogram.getCount() == 100000;
+      assert histogram.getAverageNanos() == 50000500;
+      assertClose(histogram.getPercentile(50), 50000000);
+      assertClose(histogram.getPercentile(99), 99000000);
+      assertClose(histogram.getPercentile(99.9), 99900000);
+      assertClose(histogram.getPercentile(100), 100000000);
+
+      LatencyHistogram snapshot = histogram.snapshot();
+      histogram.reset();
+      assert histogram.getCount() == 0;
+      assert snapshot.getCount() == 100000;
+      assertClose(snapshot.getPercentile(50), 50000000);
+   }
+
+   public void testRecordSeveralTimes() {
+      LatencyHistogram histogram = new LatencyHistogram();
+      histogram.record(7, 10);
+      histogram.record(1000, 0);
+      assert histogram.getCount() == 10;
+      assert histogram.getTotalNanos() == 70;
+      assert histogram.getPercentile(100) == 7;
+   }
+
+   public void testConcurrentRecording() throws Exception {
+      final LatencyHistogram histogram = new LatencyHistogram();
+      final int threads = 8;
+      final int recordsPerThread = 10000;
+      final CountDownLatch done = new CountDownLatch(threads);
+      ExecutorService executor = Executors.newFixedThreadPool(threads);
+      try {
+         for (int t = 0; t < threads; t++) {
+            executor.execute(new Runnable() {
+               @Override
+               public void run() {
+                  for (int i = 0; i < recordsPerThread; i++) histogram.record(i);
+                  done.countDown();
+               }
+            });
+         }
+         assert done.await(10, TimeUnit.SECONDS);
+      } finally {
+         executor.shutdownNow();
+      }
+      assert histogram.getCount() == threads * recordsPerThread;
+   }
+
+   private void assertClose(long estimated, long expected) {
+      assert Math.abs(estimated - expected) <= expected / 16 : "Estimated " + estimated + ", expected " + expected;
+   }
+}
@@ -0,0 +1,110 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.stress;
+
+import org.easymock.EasyMock;
+import org.infinispan.Cache;
+import org.infinispan.container.entries.InternalEntryFactory;
+import org.infinispan.loaders.CacheLoaderConfig;
+import org.infinispan.loaders.CacheStore;
+import org.infinispan.loaders.file.FileCacheStore;
+import org.infinispan.loaders.file.FileCacheStoreConfig;
+import org.infinispan.loaders.logfile.LogFileCacheStore;
+import org.infinispan.loaders.logfile.LogFileCacheStoreConfig;
+import org.infinispan.marshall.TestObjectStreamMarshaller;
+import org.infinispan.test.AbstractInfinispanTest;
+import org.infinispan.test.TestingUtil;
+import org.infinispan.util.logging.Log;
+import org.infinispan.util.logging.LogFactory;
+import org.testng.annotations.Test;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares throughput of the bucket-based {@link FileCacheStore} with the append-only {@link LogFileCacheStore} under
+ * a mixed workload of stores, loads and removes.
+ *
+ * @since 5.1
+ */
+@Test(testName = "stress.CacheStoreStressTest", groups = "stress", enabled = false,
+      description = "Disabled by default, designed to be run manually.")
+public class CacheStoreStressTest extends AbstractInfinispanTest {
+   final int NUM_KEYS = 10000;
+   final int NUM_OPS = 200000;
+   final int WARMUP_OPS = 50000;
+   final int VALUE_SIZE = 512;
+
+   private static final Log log = LogFactory.getLog(CacheStoreStressTest.class);
+
+   public void testFileCacheStore() throws Exception {
+      String location = TestingUtil.tmpDirectory("/tmp", this) + "/file";
+      doTest(new FileCacheStore(), new FileCacheStoreConfig().location(location).purgeSynchronously(true));
+   }
+
+   public void testLogFileCacheStore() throws Exception {
+      String location = TestingUtil.tmpDirectory("/tmp", this) + "/logfile";
+      doTest(new LogFileCacheStore(), new LogFileCacheStoreConfig().location(location).purgeSynchronously(true));
+   }
+
+   private void doTest(CacheStore store, CacheLoaderConfig cfg) throws Exception {
+      Cache cache = EasyMock.createNiceMock(Cache.class);
+      EasyMock.expect(cache.getName()).andReturn("CacheStoreStressTest").anyTimes();
+      EasyMock.replay(cache);
+      store.init(cfg, cache, new TestObjectStreamMarshaller());
+      store.start();
+      try {
+         store.clear();
+         for (int i = 0; i < NUM_KEYS; i++) store.store(InternalEntryFactory.create("key" + i, newValue()));
+         run(store, WARMUP_OPS);
+         long start = System.nanoTime();
+         run(store, NUM_OPS);
+         long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+         log.warnf("%s: Performance: %d ops in %d ms (%s ops/ms)", store.getClass().getSimpleName(), NUM_OPS, millis,
+                   millis > 0 ? String.valueOf(NUM_OPS / millis) : "NAN");
+      } finally {
+         store.clear();
+         store.stop();
+         TestingUtil.recursiveFileRemove(TestingUtil.tmpDirectory("/tmp", this));
+      }
+   }
+
+   private void run(CacheStore store, int ops) throws Exception {
+      Random r = new Random(42);
+      for (int i = 0; i < ops; i++) {
+         String key = "key" + r.nextInt(NUM_KEYS);
+         int op = r.nextInt(10);
+         if (op < 6) {
+            store.load(key);
+         } else if (op < 9) {
+            store.store(InternalEntryFactory.create(key, newValue()));
+         } else {
+            store.remove(key);
+         }
+      }
+   }
+
+   private byte[] newValue() {
+      return new byte[VALUE_SIZE];
+   }
+}
@@ -0,0 +1,158 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.util;
+
+import org.infinispan.test.AbstractInfinispanTest;
+import org.testng.annotations.Test;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+
+@Test(groups = "unit", testName = "util.HashTrieMapTest")
+public class HashTrieMapTest extends AbstractInfinispanTest {
+
+   public void testPutGetRemove() {
+      HashTrieMap<Integer, String> map = new HashTrieMap<Integer, String>();
+      for (int i = 0; i < 10000; i++) assert map.put(i, "v" + i) == null;
+      assert map.size() == 10000;
+      for (int i = 0; i < 10000; i++) assert map.get(i).equals("v" + i);
+      assert map.put(5, "five").equals("v5");
+      assert map.size() == 10000;
+      for (int i = 0; i < 10000; i += 2) assert map.remove(i) != null;
+      assert map.remove(0) == null;
+      assert map.size() == 5000;
+      for (int i = 0; i < 10000; i++) assert map.containsKey(i) == (i % 2 == 1);
+      assert map.containsValue("v9999");
+      assert !map.containsValue("v0");
+   }
+
+   public void testCollisions() {
+      HashTrieMap<CollidingKey, Integer> map = new HashTrieMap<CollidingKey, Integer>();
+      for (int i = 0; i < 100; i++) map.put(new CollidingKey(i), i);
+      assert map.size() == 100;
+      for (int i = 0; i < 100; i++) assert map.get(new CollidingKey(i)) == i;
+      for (int i = 0; i < 100; i += 2) assert map.remove(new CollidingKey(i)) == i;
+      assert map.size() == 50;
+      for (int i = 0; i < 100; i++) assert map.containsKey(new CollidingKey(i)) == (i % 2 == 1);
+   }
+
+   public void testCloneIsolation() {
+      HashTrieMap<Integer, Integer> map = new HashTrieMap<Integer, Integer>();
+      for (int i = 0; i < 1000; i++) map.put(i, i);
+      HashTrieMap<Integer, Integer> clone = map.clone();
+      clone.put(1, -1);
+      clone.remove(2);
+      clone.put(1000, 1000);
+      map.put(3, -3);
+      map.remove(4);
+
+      assert map.size() == 999;
+      assert map.get(1) == 1;
+      assert map.get(2) == 2;
+      assert map.get(3) == -3;
+      assert !map.containsKey(4);
+      assert !map.containsKey(1000);
+
+      assert clone.size() == 1000;
+      assert clone.get(1) == -1;
+      assert !clone.containsKey(2);
+      assert clone.get(3) == 3;
+      assert clone.get(4) == 4;
+      assert clone.get(1000) == 1000;
+
+      clone.clear();
+      assert clone.isEmpty();
+      assert map.size() == 999;
+   }
+
+   public void testAgainstHashMap() {
+      Random r = new Random(17);
+      HashTrieMap<Object, Integer> map = new HashTrieMap<Object, Integer>();
+      Map<Object, Integer> expected = new HashMap<Object, Integer>();
+      for (int i = 0; i < 100000; i++) {
+         int id = r.nextInt(2000);
+         Object key = r.nextBoolean() ? new CollidingKey(id) : (Object) id;
+         if (r.nextInt(3) == 0) {
+            assert Util.safeEquals(map.remove(key), expected.remove(key));
+         } else {
+            assert Util.safeEquals(map.put(key, i), expected.put(key, i));
+         }
+         if (i % 1000 == 0) {
+            HashTrieMap<Object, Integer> clone = map.clone();
+            assert clone.equals(expected);
+            map = r.nextBoolean() ? clone : map;
+         }
+      }
+      assert map.equals(expected);
+      assert expected.equals(map);
+      assert map.hashCode() == expected.hashCode();
+   }
+
+   public void testIterators() {
+      HashTrieMap<Integer, Integer> map = new HashTrieMap<Integer, Integer>();
+      for (int i = 0; i < 1000; i++) map.put(i, i);
+
+      int count = 0;
+      for (Iterator<Integer> it = map.keySet().iterator(); it.hasNext();) {
+         int key = it.next();
+         // writes must not disturb the iteration
+         map.put(key + 1000, key);
+         if (key % 2 == 0) it.remove();
+         count++;
+      }
+      assert count == 1000;
+      assert map.size() == 1500;
+
+      for (Map.Entry<Integer, Integer> e : map.entrySet()) e.setValue(-e.getKey());
+      for (Map.Entry<Integer, Integer> e : map.entrySet()) assert e.getValue() == -e.getKey();
+
+      map.values().clear();
+      assert map.isEmpty();
+      assert !map.keySet().iterator().hasNext();
+   }
+
+   @Test(expectedExceptions = NullPointerException.class)
+   public void testNullKey() {
+      new HashTrieMap<Object, Object>().put(null, "v");
+   }
+
+   static class CollidingKey {
+      final int id;
+
+      CollidingKey(int id) {
+         this.id = id;
+      }
+
+      @Override
+      public boolean equals(Object o) {
+         return o instanceof CollidingKey && ((CollidingKey) o).id == id;
+      }
+
+      @Override
+      public int hashCode() {
+         return id % 3;
+      }
+   }
+}
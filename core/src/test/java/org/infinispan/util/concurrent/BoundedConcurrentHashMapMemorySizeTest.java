@@ -0,0 +1,117 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.util.concurrent;
+
+import org.infinispan.test.AbstractInfinispanTest;
+import org.infinispan.util.concurrent.BoundedConcurrentHashMap.Eviction;
+import org.infinispan.util.concurrent.BoundedConcurrentHashMap.EvictionListener;
+import org.infinispan.util.concurrent.BoundedConcurrentHashMap.EntrySizeCalculator;
+import org.testng.annotations.Test;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.AssertJUnit.assertEquals;
+
+@Test(groups = "unit", testName = "util.concurrent.BoundedConcurrentHashMapMemorySizeTest")
+public class BoundedConcurrentHashMapMemorySizeTest extends AbstractInfinispanTest {
+
+   private static final EntrySizeCalculator<Integer, byte[]> VALUE_LENGTH = new EntrySizeCalculator<Integer, byte[]>() {
+      @Override
+      public long getSize(Integer key, byte[] value) {
+         return value.length;
+      }
+   };
+
+   public void testLRUEvictsToMemorySize() {
+      doTestEvictsToMemorySize(Eviction.LRU);
+   }
+
+   public void testLIRSEvictsToMemorySize() {
+      doTestEvictsToMemorySize(Eviction.LIRS);
+   }
+
+   public void testLRUOldEvictsEntryHitSinceLastBatchLast() {
+      BoundedConcurrentHashMap<Integer, byte[]> map = new BoundedConcurrentHashMap<Integer, byte[]>(
+            100, 1, Eviction.LRU_OLD, new CountingListener(), 30, VALUE_LENGTH);
+      map.put(1, new byte[10]);
+      map.put(2, new byte[10]);
+      map.put(3, new byte[10]);
+      // the hit is only queued, as the batch threshold is not reached
+      map.get(1);
+      map.put(4, new byte[10]);
+      assert map.containsKey(1) : "Entry hit before the put was evicted";
+      assert !map.containsKey(2) : "Least recently used entry was not evicted";
+      assertEquals(30, map.memorySize());
+   }
+
+   public void testMemorySizeTracksUpdatesAndRemovals() {
+      BoundedConcurrentHashMap<Integer, byte[]> map = new BoundedConcurrentHashMap<Integer, byte[]>(
+            100, 1, Eviction.LRU, new CountingListener(), -1, VALUE_LENGTH);
+      map.put(1, new byte[10]);
+      map.put(2, new byte[20]);
+      assertEquals(30, map.memorySize());
+      map.put(1, new byte[5]);
+      assertEquals(25, map.memorySize());
+      map.replace(2, new byte[1]);
+      assertEquals(6, map.memorySize());
+      map.remove(1);
+      assertEquals(1, map.memorySize());
+      map.clear();
+      assertEquals(0, map.memorySize());
+   }
+
+   private void doTestEvictsToMemorySize(Eviction eviction) {
+      CountingListener listener = new CountingListener();
+      int concurrencyLevel = 4;
+      long maxMemorySize = 4000;
+      BoundedConcurrentHashMap<Integer, byte[]> map = new BoundedConcurrentHashMap<Integer, byte[]>(
+            1000, concurrencyLevel, eviction, listener, maxMemorySize, VALUE_LENGTH);
+      for (int i = 0; i < 500; i++) {
+         map.put(i, new byte[50 + i % 100]);
+      }
+      long[] segmentSizes = map.segmentMemorySizes();
+      assertEquals(concurrencyLevel, segmentSizes.length);
+      long total = 0;
+      for (long segmentSize : segmentSizes) {
+         assert segmentSize <= maxMemorySize / concurrencyLevel : "Segment holds " + segmentSize + " bytes";
+         total += segmentSize;
+      }
+      assertEquals(total, map.memorySize());
+      assert map.size() < 500;
+      assert listener.evicted.get() > 0;
+   }
+
+   private static class CountingListener implements EvictionListener<Integer, byte[]> {
+      final AtomicInteger evicted = new AtomicInteger();
+
+      @Override
+      public void onEntryEviction(Map<Integer, byte[]> evictedEntries) {
+         evicted.addAndGet(evictedEntries.size());
+      }
+
+      @Override
+      public void onEntryChosenForEviction(byte[] value) {
+      }
+   }
+}
@@ -98,6 +98,9 @@ public class InfinispanDirectory extends Directory {
    private final FileListOperations fileOps;
    private final SegmentReadLocker readLocks;
 
+   private volatile int readAheadChunks = 0;
+   private volatile LocalChunkCache localChunkCache;
+
    /**
     * @param metadataCache the cache to be used for all smaller metadata: prefer replication over distribution, avoid eviction
     * @param chunksCache the cache to use for the space consuming segments: prefer distribution, enable eviction if needed
@@ -229,6 +232,7 @@ public class InfinispanDirectory extends Directory {
    public void deleteFile(String name) {
       checkIsOpen();
       fileOps.deleteFileName(name);
+      invalidateLocalChunks(name);
       readLocks.deleteOrReleaseReadLock(name);
       if (log.isDebugEnabled()) {
          log.debugf("Removed file: %s from index: %s", name, indexName);
@@ -263,6 +267,8 @@ public class InfinispanDirectory extends Directory {
       if (batching) metadataCache.endBatch(true);
       
       // now trigger deletion of old file chunks:
+      invalidateLocalChunks(from);
+      invalidateLocalChunks(to);
       readLocks.deleteOrReleaseReadLock(from);
       if (log.isTraceEnabled()) {
          log.tracef("Renamed file from: %s to: %s in index %s", from, to, indexName);
@@ -288,6 +294,8 @@ public class InfinispanDirectory extends Directory {
     */
    public IndexOutput createOutput(String name) {
       final FileCacheKey key = new FileCacheKey(indexName, name);
+      // the file might be overwritten, so the chunks cached for its previous content are stale
+      invalidateLocalChunks(name);
       // creating new file, metadata is added on flush() or close() of IndexOutPut
       return new InfinispanIndexOutput(metadataCache, chunksCache, key, chunkSize, fileOps);
    }
@@ -311,7 +319,7 @@ public class InfinispanDirectory extends Directory {
             // safest reaction is to tell this file doesn't exist anymore.
             throw new FileNotFoundException("Error loading medatada for index file: " + fileKey);
          }
-         return new InfinispanIndexInput(chunksCache, fileKey, fileMetadata, readLocks);
+         return new InfinispanIndexInput(chunksCache, fileKey, fileMetadata, readLocks, isLocallyCacheable(name) ? localChunkCache : null, readAheadChunks);
       }
    }
 
@@ -338,6 +346,54 @@ public class InfinispanDirectory extends Directory {
       return list();
    }
 
+   /**
+    * Sets how many chunks are fetched asynchronously ahead of sequential reads, so that the remote lookups of a
+    * distributed chunks cache overlap with the reads. Affects the inputs opened afterwards only.
+    *
+    * @param readAheadChunks the number of chunks to read ahead, 0 to disable read-ahead (the default)
+    */
+   public void setReadAheadChunks(int readAheadChunks) {
+      if (readAheadChunks < 0)
+         throw new IllegalArgumentException("readAheadChunks must not be negative");
+      this.readAheadChunks = readAheadChunks;
+   }
+
+   public int getReadAheadChunks() {
+      return readAheadChunks;
+   }
+
+   /**
+    * Enables a node-local LRU cache of the chunks read, shared by all the inputs of this directory: as segment files
+    * are never modified, chunks read once can be served from the heap until their file is deleted, renamed or
+    * overwritten by this directory. The segments_N and segments.gen files are never cached. Affects the inputs opened
+    * afterwards only.
+    *
+    * @param maxBytes the maximum amount of chunk data to keep in memory, 0 to disable the cache (the default)
+    */
+   public void setLocalChunkCacheSize(long maxBytes) {
+      if (maxBytes < 0)
+         throw new IllegalArgumentException("maxBytes must not be negative");
+      this.localChunkCache = maxBytes == 0 ? null : new LocalChunkCache(maxBytes, chunkSize);
+   }
+
+   LocalChunkCache getLocalChunkCache() {
+      return localChunkCache;
+   }
+
+   /**
+    * The segments files are rewritten in place (segments.gen), or written by other nodes under names a deleted one
+    * might have had (segments_N), so their chunks are always read from the chunks cache.
+    */
+   private static boolean isLocallyCacheable(String fileName) {
+      // IndexFileNames.SEGMENTS, which is not public in Lucene 2.9
+      return !fileName.startsWith("segments");
+   }
+
+   private void invalidateLocalChunks(String fileName) {
+      LocalChunkCache cache = localChunkCache;
+      if (cache != null) cache.invalidate(indexName, fileName);
+   }
+
    /**
     * @return The value of indexName, same constant as provided to the constructor.
     */
@@ -23,6 +23,11 @@
 package org.infinispan.lucene;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import org.apache.lucene.store.IndexInput;
 import org.infinispan.AdvancedCache;
@@ -33,6 +38,10 @@ import org.infinispan.util.logging.LogFactory;
 
 /**
  * Responsible for reading from <code>InfinispanDirectory</code>
+ * <p/>
+ * When reading sequentially past the end of a chunk, the next <tt>readAheadChunks</tt> chunks are fetched
+ * asynchronously, so that the lookups of a distributed chunks cache overlap with the reads. Chunks read are kept in
+ * the {@link LocalChunkCache} of the directory, if any, which is shared with the other inputs and their clones.
  * 
  * @since 4.0
  * @author Sanne Grinovero
@@ -52,6 +61,9 @@ final public class InfinispanIndexInput extends IndexInput {
    private final SegmentReadLocker readLocks;
    private final String filename;
    private final long fileLength;
+   private final LocalChunkCache localChunkCache;
+   private final int readAheadChunks;
+   private final int lastChunk;
 
    private int currentBufferSize;
    private byte[] buffer;
@@ -59,14 +71,29 @@ final public class InfinispanIndexInput extends IndexInput {
    private int currentLoadedChunk = -1;
 
    private boolean isClone;
+   // chunks being fetched ahead of the reads; each clone fetches its own
+   private Map<Integer, Future<Object>> readAhead;
 
    public InfinispanIndexInput(final AdvancedCache chunksCache, final FileCacheKey fileKey, final FileMetadata fileMetadata, final SegmentReadLocker readLocks) {
+      this(chunksCache, fileKey, fileMetadata, readLocks, null, 0);
+   }
+
+   /**
+    * @param localChunkCache node-local cache of the chunks, or null
+    * @param readAheadChunks the number of chunks to fetch ahead when reading sequentially, 0 to disable read-ahead
+    */
+   public InfinispanIndexInput(final AdvancedCache chunksCache, final FileCacheKey fileKey, final FileMetadata fileMetadata,
+            final SegmentReadLocker readLocks, final LocalChunkCache localChunkCache, final int readAheadChunks) {
       this.chunksCache = chunksCache;
       this.fileKey = fileKey;
       this.chunkSize = fileMetadata.getBufferSize();
       this.fileLength = fileMetadata.getSize();
       this.readLocks = readLocks;
       this.filename = fileKey.getFileName();
+      this.localChunkCache = localChunkCache;
+      this.readAheadChunks = readAheadChunks;
+      this.lastChunk = (int) ((fileLength - 1) / chunkSize);
+      this.readAhead = readAheadChunks > 0 ? new HashMap<Integer, Future<Object>>() : null;
       if (trace) {
          log.tracef("Opened new IndexInput for file:%s in index: %s", filename, fileKey.getIndexName());
       }
@@ -105,6 +132,7 @@ final public class InfinispanIndexInput extends IndexInput {
       bufferPosition = 0;
       currentLoadedChunk = -1;
       buffer = null;
+      if (readAhead != null) readAhead.clear();
       if (isClone) return;
       readLocks.deleteOrReleaseReadLock(filename);
       if (trace) {
@@ -129,11 +157,13 @@ final public class InfinispanIndexInput extends IndexInput {
    private void nextChunk() throws IOException {
       currentLoadedChunk++;
       setBufferToCurrentChunk();
+      // only sequential reads are worth reading ahead; a seek is often followed by a few bytes read only
+      readAhead();
    }
 
    private void setBufferToCurrentChunk() throws IOException {
       ChunkCacheKey key = new ChunkCacheKey(fileKey.getIndexName(), filename, currentLoadedChunk);
-      buffer = (byte[]) chunksCache.withFlags(Flag.SKIP_LOCKING).get(key);
+      buffer = loadChunk(key);
       if (buffer == null) {
          throw new IOException("Read past EOF: Chunk value could not be found for key " + key);
       }
@@ -143,8 +173,15 @@ final public class InfinispanIndexInput extends IndexInput {
    // Lucene might try seek(pos) using an illegal pos value
    // RAMDirectory teaches to position the cursor to the end of previous chunk in this case
    private void setBufferToCurrentChunkIfPossible() {
+      if (readAhead != null) readAhead.clear();
       ChunkCacheKey key = new ChunkCacheKey(fileKey.getIndexName(), filename, currentLoadedChunk);
-      buffer = (byte[]) chunksCache.withFlags(Flag.SKIP_LOCKING).get(key);
+      try {
+         buffer = loadChunk(key);
+      } catch (InterruptedIOException e) {
+         // seek can't throw IOException, keep the interruption for the next read
+         Thread.currentThread().interrupt();
+         buffer = null;
+      }
       if (buffer == null) {
          currentLoadedChunk--;
          bufferPosition = chunkSize;
@@ -154,6 +191,46 @@ final public class InfinispanIndexInput extends IndexInput {
       }
    }
 
+   /**
+    * Looks the chunk up in the local chunk cache first, then among the chunks being read ahead, and finally in the
+    * chunks cache.
+    */
+   private byte[] loadChunk(ChunkCacheKey key) throws InterruptedIOException {
+      byte[] chunk = localChunkCache == null ? null : localChunkCache.get(key);
+      if (chunk != null) return chunk;
+      Future<Object> future = readAhead == null ? null : readAhead.remove(key.getChunkId());
+      if (future != null) {
+         try {
+            chunk = (byte[]) future.get();
+         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while reading chunk " + key);
+         } catch (ExecutionException e) {
+            // try again synchronously, and let that fail if it has to
+            if (trace) log.tracef(e, "Could not read ahead chunk %s", key);
+            chunk = (byte[]) chunksCache.withFlags(Flag.SKIP_LOCKING).get(key);
+         }
+      } else {
+         chunk = (byte[]) chunksCache.withFlags(Flag.SKIP_LOCKING).get(key);
+      }
+      if (chunk != null && localChunkCache != null) localChunkCache.put(key, chunk);
+      return chunk;
+   }
+
+   /**
+    * Starts fetching the chunks following the current one which are neither being fetched already nor cached locally.
+    */
+   private void readAhead() {
+      if (readAhead == null) return;
+      int last = Math.min(lastChunk, currentLoadedChunk + readAheadChunks);
+      for (int i = currentLoadedChunk + 1; i <= last; i++) {
+         if (readAhead.containsKey(i)) continue;
+         ChunkCacheKey key = new ChunkCacheKey(fileKey.getIndexName(), filename, i);
+         if (localChunkCache != null && localChunkCache.contains(key)) continue;
+         readAhead.put(i, chunksCache.withFlags(Flag.SKIP_LOCKING).getAsync(key));
+      }
+   }
+
    @Override
    public long length() {
       return this.fileLength;
@@ -166,6 +243,7 @@ final public class InfinispanIndexInput extends IndexInput {
       // as in other Directory implementations. Apparently not all clones
       // are cleaned up, but the original is (especially .tis files)
       clone.isClone = true; 
+      if (readAhead != null) clone.readAhead = new HashMap<Integer, Future<Object>>();
       return clone;
     }
 
@@ -0,0 +1,109 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.lucene;
+
+import java.util.Iterator;
+import java.util.Map;
+
+import org.infinispan.util.concurrent.BoundedConcurrentHashMap;
+import org.infinispan.util.concurrent.BoundedConcurrentHashMap.EntrySizeCalculator;
+import org.infinispan.util.concurrent.BoundedConcurrentHashMap.Eviction;
+import org.infinispan.util.concurrent.BoundedConcurrentHashMap.EvictionListener;
+
+/**
+ * A bounded, node-local LRU cache of the chunks read by the {@link InfinispanIndexInput}s of an
+ * {@link InfinispanDirectory}, shared by all of them and by their clones.
+ * <p/>
+ * Once written Lucene never changes a segment file, so a chunk read once stays valid until its file is deleted;
+ * keeping the most recently read chunks in the heap of the reading node saves the remote lookups of a distributed
+ * chunks cache, and the deserialization of the chunks of a passivated one.
+ *
+ * @since 5.1
+ */
+public final class LocalChunkCache {
+
+   // rough size of a key and of the map entry holding it
+   private static final int ENTRY_OVERHEAD = 128;
+
+   private static final EntrySizeCalculator<ChunkCacheKey, byte[]> SIZE_CALCULATOR = new EntrySizeCalculator<ChunkCacheKey, byte[]>() {
+      @Override
+      public long getSize(ChunkCacheKey key, byte[] chunk) {
+         return chunk.length + ENTRY_OVERHEAD;
+      }
+   };
+
+   private static final EvictionListener<ChunkCacheKey, byte[]> NO_LISTENER = new EvictionListener<ChunkCacheKey, byte[]>() {
+      @Override
+      public void onEntryEviction(Map<ChunkCacheKey, byte[]> evicted) {
+      }
+
+      @Override
+      public void onEntryChosenForEviction(byte[] chunk) {
+      }
+   };
+
+   private final BoundedConcurrentHashMap<ChunkCacheKey, byte[]> chunks;
+
+   /**
+    * @param maxBytes the maximum amount of chunk data to keep; the least recently used chunks are evicted first
+    * @param chunkSize the chunk size of the directory, used to size the cache
+    */
+   public LocalChunkCache(long maxBytes, int chunkSize) {
+      if (maxBytes <= 0)
+         throw new IllegalArgumentException("maxBytes must be a positive number");
+      long fullChunks = maxBytes / chunkSize;
+      // the last chunk of each file is smaller, so there might be more chunks than fullChunks
+      int capacity = (int) Math.max(32, Math.min(Integer.MAX_VALUE / 10, fullChunks * 4));
+      // each segment gets an equal share of maxBytes, which must hold a few chunks
+      int concurrencyLevel = (int) Math.max(1, Math.min(16, fullChunks / 2));
+      this.chunks = new BoundedConcurrentHashMap<ChunkCacheKey, byte[]>(capacity, concurrencyLevel, Eviction.LRU,
+            NO_LISTENER, maxBytes, SIZE_CALCULATOR);
+   }
+
+   public byte[] get(ChunkCacheKey key) {
+      return chunks.get(key);
+   }
+
+   public boolean contains(ChunkCacheKey key) {
+      return chunks.containsKey(key);
+   }
+
+   public void put(ChunkCacheKey key, byte[] chunk) {
+      chunks.put(key, chunk);
+   }
+
+   /**
+    * Drops all the chunks of a file, which is being deleted or renamed.
+    */
+   public void invalidate(String indexName, String fileName) {
+      for (Iterator<ChunkCacheKey> it = chunks.keySet().iterator(); it.hasNext();) {
+         ChunkCacheKey key = it.next();
+         if (key.getFileName().equals(fileName) && key.getIndexName().equals(indexName))
+            it.remove();
+      }
+   }
+
+   public int size() {
+      return chunks.size();
+   }
+}
@@ -0,0 +1,147 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.lucene;
+
+import static org.infinispan.lucene.CacheTestSupport.assertTextIsFoundInIds;
+import static org.infinispan.lucene.CacheTestSupport.optimizeIndex;
+import static org.infinispan.lucene.CacheTestSupport.writeTextToIndex;
+
+import java.io.IOException;
+
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+import org.infinispan.config.Configuration;
+import org.infinispan.manager.EmbeddedCacheManager;
+import org.infinispan.test.SingleCacheManagerTest;
+import org.infinispan.test.fwk.TestCacheManagerFactory;
+import org.testng.annotations.Test;
+
+/**
+ * Verifies that reading chunks ahead and caching them locally doesn't change what is read.
+ *
+ * @since 5.1
+ */
+@Test(groups = "functional", testName = "lucene.ReadAheadTest")
+public class ReadAheadTest extends SingleCacheManagerTest {
+
+   private static final int CHUNK_SIZE = 7;
+
+   @Override
+   protected EmbeddedCacheManager createCacheManager() throws Exception {
+      Configuration configuration = new Configuration();
+      configuration.setCacheMode(Configuration.CacheMode.LOCAL);
+      configuration.setInvocationBatchingEnabled(true);
+      return TestCacheManagerFactory.createCacheManager(configuration);
+   }
+
+   private InfinispanDirectory createDirectory(String indexName) {
+      InfinispanDirectory dir = new InfinispanDirectory(cache, cache, cache, indexName, CHUNK_SIZE);
+      dir.setReadAheadChunks(3);
+      dir.setLocalChunkCacheSize(1024 * 1024);
+      return dir;
+   }
+
+   public void testSequentialAndRandomReads() throws IOException {
+      InfinispanDirectory dir = createDirectory("readAheadIndex");
+      IndexOutput output = dir.createOutput("file");
+      for (int i = 0; i < 100; i++) {
+         output.writeByte((byte) i);
+      }
+      output.close();
+
+      IndexInput input = dir.openInput("file");
+      assert input instanceof InfinispanIndexInput;
+      for (int i = 0; i < 100; i++) {
+         assert input.readByte() == (byte) i;
+      }
+      IndexInput clone = (IndexInput) input.clone();
+      input.seek(50);
+      assert input.readByte() == 50;
+      byte[] bytes = new byte[30];
+      input.readBytes(bytes, 0, bytes.length);
+      for (int i = 0; i < bytes.length; i++) {
+         assert bytes[i] == (byte) (51 + i);
+      }
+      clone.seek(3);
+      assert clone.readByte() == 3;
+      clone.close();
+      input.close();
+      assert dir.getLocalChunkCache().size() == 15 : "Unexpected number of chunks cached: " + dir.getLocalChunkCache().size();
+
+      dir.deleteFile("file");
+      assert dir.getLocalChunkCache().size() == 0;
+   }
+
+   public void testOverwrittenFileIsReadBack() throws IOException {
+      InfinispanDirectory dir = createDirectory("overwrittenIndex");
+      writeFile(dir, "file", 0);
+      assertFileContent(dir, "file", 0);
+      assert dir.getLocalChunkCache().size() > 0;
+
+      writeFile(dir, "file", 1);
+      assertFileContent(dir, "file", 1);
+
+      writeFile(dir, "other", 2);
+      assertFileContent(dir, "other", 2);
+      dir.renameFile("other", "file");
+      assertFileContent(dir, "file", 2);
+   }
+
+   public void testSegmentsFilesAreNotCachedLocally() throws IOException {
+      InfinispanDirectory dir = createDirectory("segmentsIndex");
+      writeFile(dir, "segments.gen", 0);
+      writeFile(dir, "segments_1", 0);
+      assertFileContent(dir, "segments.gen", 0);
+      assertFileContent(dir, "segments_1", 0);
+      assert dir.getLocalChunkCache().size() == 0 : "Unexpected number of chunks cached: " + dir.getLocalChunkCache().size();
+   }
+
+   private static void writeFile(InfinispanDirectory dir, String fileName, int offset) throws IOException {
+      IndexOutput output = dir.createOutput(fileName);
+      for (int i = 0; i < 100; i++) {
+         output.writeByte((byte) (i + offset));
+      }
+      output.close();
+   }
+
+   private static void assertFileContent(InfinispanDirectory dir, String fileName, int offset) throws IOException {
+      IndexInput input = dir.openInput(fileName);
+      for (int i = 0; i < 100; i++) {
+         byte b = input.readByte();
+         assert b == (byte) (i + offset) : "Unexpected byte " + b + " at position " + i + " of " + fileName;
+      }
+      input.close();
+   }
+
+   public void testSearchingWithReadAhead() throws IOException {
+      InfinispanDirectory dir = createDirectory("searchedIndex");
+      writeTextToIndex(dir, 0, "hi from node A");
+      writeTextToIndex(dir, 1, "reading chunks ahead of the searches");
+      assertTextIsFoundInIds(dir, "hi", 0);
+      assertTextIsFoundInIds(dir, "chunks", 1);
+      optimizeIndex(dir);
+      assertTextIsFoundInIds(dir, "ahead", 1);
+      writeTextToIndex(dir, 2, "more chunks");
+      assertTextIsFoundInIds(dir, "chunks", 1, 2);
+   }
+}
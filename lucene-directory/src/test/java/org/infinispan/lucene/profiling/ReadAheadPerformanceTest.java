@@ -0,0 +1,151 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.lucene.profiling;
+
+import java.io.IOException;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.Field.Index;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.PrefixQuery;
+import org.apache.lucene.search.TopDocs;
+import org.infinispan.Cache;
+import org.infinispan.config.Configuration;
+import org.infinispan.lucene.CacheTestSupport;
+import org.infinispan.lucene.InfinispanDirectory;
+import org.infinispan.lucene.testutils.ClusteredCacheFactory;
+import org.infinispan.lucene.testutils.LuceneSettings;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+/**
+ * Compares the search performance over a distributed chunks cache with and without reading chunks ahead and caching
+ * them locally. The index is written on one node and searched on another one, opening a new IndexReader for each
+ * search so that the segments are read again from the chunks cache; prefix queries scan large parts of the term
+ * dictionary sequentially. L1 is disabled, otherwise the searching node would cache the remote chunks anyway.
+ *
+ * @since 5.1
+ */
+@SuppressWarnings("unchecked")
+@Test(groups = "profiling", testName = "lucene.profiling.ReadAheadPerformanceTest", sequential = true)
+public class ReadAheadPerformanceTest {
+
+   /** Number of documents written in the index **/
+   private static final int TERMS_NUMBER = 200000;
+
+   /** Number of searches of each run **/
+   private static final int SEARCHES = 200;
+
+   /** Small chunks, so that reading a segment spans many of them **/
+   private static final int CHUNK_SIZE = 4 * 1024;
+
+   private static final String indexName = "readAheadIndex";
+
+   private static final ClusteredCacheFactory cacheFactory = new ClusteredCacheFactory(createConfiguration());
+
+   private static Cache writingCache;
+   private static Cache searchingCache;
+
+   private static Configuration createConfiguration() {
+      Configuration configuration = CacheTestSupport.createTestConfiguration();
+      configuration.setL1CacheEnabled(false);
+      return configuration;
+   }
+
+   @BeforeClass
+   public static void beforeTest() throws Exception {
+      cacheFactory.start();
+      writingCache = cacheFactory.createClusteredCache();
+      cacheFactory.createClusteredCache();
+      searchingCache = cacheFactory.createClusteredCacheWaitingForNodesView(3);
+      fillDirectory(new InfinispanDirectory(writingCache, writingCache, writingCache, indexName, CHUNK_SIZE));
+   }
+
+   @AfterClass
+   public static void afterTest() {
+      cacheFactory.stop();
+   }
+
+   @Test
+   public void profileWithoutReadAhead() throws IOException {
+      searchDirectory(createSearchingDirectory(), "Without read-ahead");
+   }
+
+   @Test
+   public void profileWithReadAhead() throws IOException {
+      InfinispanDirectory dir = createSearchingDirectory();
+      dir.setReadAheadChunks(8);
+      searchDirectory(dir, "Reading 8 chunks ahead");
+   }
+
+   @Test
+   public void profileWithReadAheadAndLocalChunkCache() throws IOException {
+      InfinispanDirectory dir = createSearchingDirectory();
+      dir.setReadAheadChunks(8);
+      dir.setLocalChunkCacheSize(64 * 1024 * 1024);
+      searchDirectory(dir, "Reading 8 chunks ahead, 64MB local chunk cache");
+   }
+
+   private InfinispanDirectory createSearchingDirectory() {
+      return new InfinispanDirectory(searchingCache, searchingCache, searchingCache, indexName, CHUNK_SIZE);
+   }
+
+   private static void fillDirectory(InfinispanDirectory directory) throws IOException {
+      CacheTestSupport.initializeDirectory(directory);
+      IndexWriter iwriter = LuceneSettings.openWriter(directory, 100000);
+      for (int i = 0; i < TERMS_NUMBER; i++) {
+         Document doc = new Document();
+         doc.add(new Field("main", String.valueOf(i), Store.YES, Index.NOT_ANALYZED));
+         iwriter.addDocument(doc);
+      }
+      iwriter.optimize();
+      iwriter.close();
+   }
+
+   private void searchDirectory(InfinispanDirectory dir, String testLabel) throws IOException {
+      long start = System.nanoTime();
+      for (int i = 0; i < SEARCHES; i++) {
+         IndexReader indexReader = IndexReader.open(dir, true);
+         IndexSearcher searcher = new IndexSearcher(indexReader);
+         try {
+            // each prefix matches about a tenth of the terms
+            TopDocs docs = searcher.search(new PrefixQuery(new Term("main", String.valueOf(i % 10))), null, 10);
+            if (docs.totalHits == 0) {
+               throw new RuntimeException("No match found for prefix " + (i % 10));
+            }
+            searcher.doc(docs.scoreDocs[0].doc);
+         } finally {
+            searcher.close();
+            indexReader.close();
+         }
+      }
+      long millis = (System.nanoTime() - start) / 1000000;
+      System.out.println("Test " + testLabel + ":\n\t" + SEARCHES + " searches in " + millis + "ms");
+   }
+}
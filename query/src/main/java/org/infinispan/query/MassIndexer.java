@@ -0,0 +1,84 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.query;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rebuilds the indexes of a cache from the entries it holds in memory and in its cache store, for instance after the
+ * index got corrupted or the mapping of the indexed types changed.
+ * <p/>
+ * Entries are indexed by several threads in parallel, in batches handed over to the Hibernate Search backend. In a
+ * distributed cache every node indexes the entries it owns, as they are indexed when written, so that the whole
+ * cluster takes part.  When the indexes are shared, i.e. only the node a write originates from indexes it, each node
+ * only indexes the entries it is the primary owner of.
+ * <p/>
+ * Entries written while the indexes are being rebuilt are indexed as usual, and might be indexed twice.
+ *
+ * @see SearchManager#getMassIndexer()
+ * @since 5.1
+ */
+public interface MassIndexer {
+
+   /**
+    * Sets the number of threads indexing entries on each node. Defaults to the number of processors.
+    */
+   MassIndexer threads(int threads);
+
+   /**
+    * Sets the number of entries handed over to the backend at once. Defaults to 100.
+    */
+   MassIndexer batchSize(int batchSize);
+
+   /**
+    * Removes all the documents of the indexed types from the indexes before rebuilding them, so that the documents of
+    * entries which are no longer in the cache do not linger. Defaults to true.
+    */
+   MassIndexer purgeAllOnStart(boolean purgeAllOnStart);
+
+   /**
+    * Sets how long to wait for the other nodes of a distributed cache to rebuild their indexes. Defaults to one hour.
+    */
+   MassIndexer timeout(long timeout, TimeUnit unit);
+
+   /**
+    * Rebuilds the indexes, waiting for all the nodes to be done.
+    *
+    * @return the number of entries indexed by the whole cluster, an entry indexed by several owners being counted once
+    *         per owner
+    * @throws InterruptedException if the calling thread was interrupted while waiting for the entries to be indexed
+    * @throws org.infinispan.CacheException if indexing an entry failed, on this node or on another one
+    */
+   long start() throws InterruptedException;
+
+   /**
+    * Returns the number of entries indexed by this node so far, to monitor the progress of {@link #start()} from
+    * another thread.
+    */
+   long getIndexedEntries();
+
+   /**
+    * Returns the number of entries indexed by this node per second since the indexing started.
+    */
+   long getThroughput();
+}
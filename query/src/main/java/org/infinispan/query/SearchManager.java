@@ -45,6 +45,26 @@ public interface SearchManager {
     */
    public CacheQuery getQuery(Query luceneQuery, Class<?>... classes);
 
+   /**
+    * Returns a {@link CacheQuery} which runs against the indexes of all the nodes of a distributed cache rather than
+    * against the local index only, for caches where each node only indexes the entries it owns. Each node returns its
+    * best hits, which are merged by this node before loading the entities of the requested page.
+    *
+    * @param luceneQuery - {@link org.apache.lucene.search.Query}
+    * @param classes - optionally only return results of type that matches this list of acceptable types
+    * @return the CacheQuery object which can be used to iterate through results
+    * @see org.infinispan.query.clustered.ClusteredCacheQueryImpl
+    */
+   public CacheQuery getClusteredQuery(Query luceneQuery, Class<?>... classes);
+
+   /**
+    * Returns a {@link MassIndexer} rebuilding the indexes of this cache from its contents, on all the nodes of a
+    * distributed cache.
+    *
+    * @return a new MassIndexer, to be configured and started
+    */
+   public MassIndexer getMassIndexer();
+
    /**
     * Experimental.
     * Provides Hibernate Search DSL to build full text queries
@@ -30,7 +30,9 @@ import org.infinispan.AdvancedCache;
 import org.infinispan.Cache;
 import org.infinispan.factories.ComponentRegistry;
 import org.infinispan.query.backend.QueryInterceptor;
+import org.infinispan.query.clustered.ClusteredCacheQueryImpl;
 import org.infinispan.query.impl.CacheQueryImpl;
+import org.infinispan.query.impl.massindex.MassIndexerImpl;
 
 /**
  * Class that is used to build {@link org.infinispan.query.CacheQuery}
@@ -72,6 +74,23 @@ class SearchManagerImpl implements SearchManager {
       return new CacheQueryImpl(luceneQuery, searchFactory, cache, classes);
    }
 
+   /* (non-Javadoc)
+    * @see org.infinispan.query.SearchManager#getClusteredQuery(org.apache.lucene.search.Query, java.lang.Class)
+    */
+   @Override
+   public CacheQuery getClusteredQuery(Query luceneQuery, Class<?>... classes) {
+      queryInterceptor.enableClasses(classes);
+      return new ClusteredCacheQueryImpl(luceneQuery, searchFactory, cache, classes);
+   }
+
+   /* (non-Javadoc)
+    * @see org.infinispan.query.SearchManager#getMassIndexer()
+    */
+   @Override
+   public MassIndexer getMassIndexer() {
+      return new MassIndexerImpl(cache);
+   }
+
    /* (non-Javadoc)
     * @see org.infinispan.query.SearchManager#buildQueryBuilderForClass(java.lang.Class)
     */
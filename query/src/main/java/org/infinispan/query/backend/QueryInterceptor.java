@@ -173,18 +173,26 @@ public class QueryInterceptor extends CommandInterceptor {
       if (shouldModifyIndexes(ctx)) {
          if (trace) log.trace("shouldModifyIndexes() is true and we can clear the indexes");
 
-         for (Class c : this.knownClasses.keySet()) {
-            DirectoryProvider[] providers = this.searchFactory.getDirectoryProviders(c);
-            Serializable id = null;
-            if (providers != null && providers.length > 0) { //check as not all known classes are indexed
-               searchFactory.getWorker().performWork(new Work<Object>(c, id, WorkType.PURGE_ALL),
-                                                  new TransactionalEventTransactionContext(transactionManager, transactionSynchronizationRegistry));
-            }
-         }
+         purgeAllIndexes(new TransactionalEventTransactionContext(transactionManager, transactionSynchronizationRegistry));
       }
       return returnValue;
    }
 
+   /**
+    * Removes all the documents of every known indexed type from the indexes.
+    *
+    * @param transactionContext the context the purge is performed within
+    */
+   public void purgeAllIndexes(TransactionContext transactionContext) {
+      for (Class c : this.knownClasses.keySet()) {
+         DirectoryProvider[] providers = this.searchFactory.getDirectoryProviders(c);
+         Serializable id = null;
+         if (providers != null && providers.length > 0) { //check as not all known classes are indexed
+            searchFactory.getWorker().performWork(new Work<Object>(c, id, WorkType.PURGE_ALL), transactionContext);
+         }
+      }
+   }
+
    // Method that will be called when data needs to be added into Lucene.
    protected void addToIndexes(Object value, Object key) {
       if (trace) log.tracef("Adding to indexes for key [%s] and value [%s]", key, value);
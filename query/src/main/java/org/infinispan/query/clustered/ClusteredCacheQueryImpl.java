@@ -0,0 +1,282 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.query.clustered;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import org.apache.lucene.search.Explanation;
+import org.apache.lucene.search.Filter;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Sort;
+import org.hibernate.search.FullTextFilter;
+import org.hibernate.search.query.engine.spi.FacetManager;
+import org.hibernate.search.spi.SearchFactoryIntegrator;
+import org.infinispan.AdvancedCache;
+import org.infinispan.CacheException;
+import org.infinispan.config.Configuration;
+import org.infinispan.query.CacheQuery;
+import org.infinispan.query.QueryIterator;
+import org.infinispan.query.backend.KeyTransformationHandler;
+import org.infinispan.query.impl.EagerIterator;
+import org.infinispan.query.impl.EntityLoader;
+import org.infinispan.remoting.responses.ExceptionResponse;
+import org.infinispan.remoting.responses.RequestIgnoredResponse;
+import org.infinispan.remoting.responses.Response;
+import org.infinispan.remoting.responses.SuccessfulResponse;
+import org.infinispan.remoting.rpc.ResponseMode;
+import org.infinispan.remoting.rpc.RpcManager;
+import org.infinispan.remoting.transport.Address;
+
+/**
+ * A {@link CacheQuery} running against the indexes of all the nodes of a distributed cache, for clusters where each
+ * node only indexes the entries it owns.
+ * <p/>
+ * The query is broadcast to the cluster and every node, the local one included, returns its best
+ * <tt>firstResult + maxResults</tt> hits along with their scores, sort values and projections. The originator merges
+ * these sorted lists and only then loads the entities of the requested page from the cache.
+ * <p/>
+ * When sorting on a field, the field must be stored in the index, as hits are merged on its projected values.
+ * Without a {@link Sort}, or when sorting by score, hits are merged on the scores each node computed against its own
+ * index.  Term statistics such as the inverse document frequency differ from one index to the other, so these scores
+ * are not globally comparable: the merged order only approximates the one a single index holding all the entries
+ * would give, and may change as entries move between nodes.  Sort on a field when a stable order is needed.
+ * {@link #list()} returns the projected values of each hit when a projection is set; the iterators always return the
+ * entities. Faceting, named full text filters and explanations depend on the local index and are not supported.
+ * <p/>
+ * In other cache modes the query only runs locally.
+ *
+ * @since 5.1
+ */
+public class ClusteredCacheQueryImpl implements CacheQuery {
+
+   private final AdvancedCache<?, ?> cache;
+   private final EntityLoader loader;
+   private final Query luceneQuery;
+   private final Class<?>[] classes;
+   private Filter filter;
+   private Sort sort;
+   private String[] projection;
+   private int firstResult = 0;
+   private int maxResults = -1;
+
+   public ClusteredCacheQueryImpl(Query luceneQuery, SearchFactoryIntegrator searchFactory, AdvancedCache<?, ?> cache,
+                                  Class<?>... classes) {
+      this.luceneQuery = luceneQuery;
+      this.cache = cache;
+      this.loader = new EntityLoader(cache, searchFactory);
+      this.classes = classes;
+   }
+
+   public CacheQuery filter(Filter filter) {
+      this.filter = filter;
+      return this;
+   }
+
+   public CacheQuery sort(Sort sort) {
+      this.sort = sort;
+      return this;
+   }
+
+   public CacheQuery projection(String... fields) {
+      this.projection = fields;
+      return this;
+   }
+
+   public CacheQuery firstResult(int firstResult) {
+      if (firstResult < 0) {
+         throw new IllegalArgumentException("'first' pagination parameter less than 0");
+      }
+      this.firstResult = firstResult;
+      return this;
+   }
+
+   public CacheQuery maxResults(int maxResults) {
+      this.maxResults = maxResults;
+      return this;
+   }
+
+   /**
+    * @return the number of hits in the whole cluster, ignoring pagination
+    */
+   public int getResultSize() {
+      int size = 0;
+      for (ClusteredQueryResult result : broadcast(createCommand(-1, true))) {
+         size += result.getResultSize();
+      }
+      return size;
+   }
+
+   public List<Object> list() {
+      List<ClusteredHit> page = fetchPage();
+      if (projection != null) {
+         List<Object> list = new ArrayList<Object>(page.size());
+         for (ClusteredHit hit : page) list.add(hit.getProjection());
+         return list;
+      }
+      return loader.loadKeys(toKeys(page));
+   }
+
+   public QueryIterator iterator() {
+      return iterator(1);
+   }
+
+   public QueryIterator iterator(int fetchSize) {
+      return new EagerIterator(toKeys(fetchPage()), loader, fetchSize);
+   }
+
+   public QueryIterator lazyIterator() {
+      return lazyIterator(1);
+   }
+
+   /**
+    * Same as {@link #iterator(int)}: only the keys of the page are fetched from the cluster, the entities being loaded
+    * as the iterator moves.
+    */
+   public QueryIterator lazyIterator(int fetchSize) {
+      return iterator(fetchSize);
+   }
+
+   public FacetManager getFacetManager() {
+      throw new UnsupportedOperationException("Faceting is not supported by clustered queries");
+   }
+
+   public Explanation explain(int documentId) {
+      throw new UnsupportedOperationException("Document ids are local to a node, explain is not supported by clustered queries");
+   }
+
+   public FullTextFilter enableFullTextFilter(String name) {
+      throw new UnsupportedOperationException("Full text filters are not supported by clustered queries");
+   }
+
+   public CacheQuery disableFullTextFilter(String name) {
+      throw new UnsupportedOperationException("Full text filters are not supported by clustered queries");
+   }
+
+   private ClusteredQueryCommand createCommand(int maxResults, boolean countOnly) {
+      return new ClusteredQueryCommand(cache.getName(), luceneQuery, filter, sort, classes, projection, maxResults, countOnly);
+   }
+
+   private List<ClusteredHit> fetchPage() {
+      int wanted = maxResults < 0 ? -1 : (int) Math.min(Integer.MAX_VALUE, (long) firstResult + maxResults);
+      return merge(broadcast(createCommand(wanted, false)));
+   }
+
+   /**
+    * Merges the sorted hits of all the nodes, keeping only those of the requested page.  Hits merged by score are only
+    * approximately ordered, as each node scored them against its own index.
+    */
+   private List<ClusteredHit> merge(List<ClusteredQueryResult> results) {
+      final ClusteredHitComparator comparator = new ClusteredHitComparator(sort);
+      PriorityQueue<NodeHits> queue = new PriorityQueue<NodeHits>(Math.max(1, results.size()), new Comparator<NodeHits>() {
+         @Override
+         public int compare(NodeHits o1, NodeHits o2) {
+            return comparator.compare(o1.head, o2.head);
+         }
+      });
+      for (ClusteredQueryResult result : results) {
+         Iterator<ClusteredHit> hits = result.getHits().iterator();
+         if (hits.hasNext()) queue.add(new NodeHits(hits));
+      }
+
+      List<ClusteredHit> page = new ArrayList<ClusteredHit>();
+      Set<String> seen = new HashSet<String>();
+      int skipped = 0;
+      while (!queue.isEmpty() && (maxResults < 0 || page.size() < maxResults)) {
+         NodeHits next = queue.poll();
+         ClusteredHit hit = next.head;
+         if (next.advance()) queue.add(next);
+         // while rehashing, two nodes might both consider themselves the primary owner of a key
+         if (!seen.add(hit.getId())) continue;
+         if (skipped < firstResult)
+            skipped++;
+         else
+            page.add(hit);
+      }
+      return page;
+   }
+
+   private List<ClusteredQueryResult> broadcast(ClusteredQueryCommand command) {
+      List<ClusteredQueryResult> results = new ArrayList<ClusteredQueryResult>();
+      Configuration configuration = cache.getConfiguration();
+      RpcManager rpcManager = cache.getRpcManager();
+      if (rpcManager != null && configuration.getCacheMode().isDistributed()) {
+         Map<Address, Response> responses = rpcManager.invokeRemotely(null, command, ResponseMode.SYNCHRONOUS,
+                                                                      configuration.getSyncReplTimeout());
+         for (Map.Entry<Address, Response> e : responses.entrySet()) {
+            Response response = e.getValue();
+            if (response instanceof SuccessfulResponse) {
+               results.add((ClusteredQueryResult) ((SuccessfulResponse) response).getResponseValue());
+            } else if (response instanceof ExceptionResponse) {
+               throw new CacheException("Query failed on node " + e.getKey(), ((ExceptionResponse) response).getException());
+            } else if (!(response instanceof RequestIgnoredResponse)) {
+               throw new CacheException("Unexpected response " + response + " from node " + e.getKey() + " to " + command);
+            }
+         }
+      }
+
+      command.injectComponents(configuration, cache.getComponentRegistry());
+      command.initialize(cache);
+      try {
+         results.add(command.perform(null));
+      } catch (RuntimeException e) {
+         throw e;
+      } catch (Throwable t) {
+         throw new CacheException("Query failed on the local node", t);
+      }
+      return results;
+   }
+
+   private List<Object> toKeys(List<ClusteredHit> hits) {
+      List<Object> keys = new ArrayList<Object>(hits.size());
+      for (ClusteredHit hit : hits) {
+         keys.add(KeyTransformationHandler.stringToKey(hit.getId(), cache.getClassLoader()));
+      }
+      return keys;
+   }
+
+   /**
+    * The hits of a node which have not been merged yet.
+    */
+   private static class NodeHits {
+      private final Iterator<ClusteredHit> rest;
+      private ClusteredHit head;
+
+      NodeHits(Iterator<ClusteredHit> hits) {
+         this.rest = hits;
+         this.head = hits.next();
+      }
+
+      boolean advance() {
+         if (!rest.hasNext()) return false;
+         head = rest.next();
+         return true;
+      }
+   }
+}
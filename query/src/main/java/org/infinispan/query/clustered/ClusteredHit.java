@@ -0,0 +1,80 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.query.clustered;
+
+import java.io.Serializable;
+
+/**
+ * A single hit of a {@link ClusteredQueryCommand}: the key of the matching entry in its string form, the score of the
+ * hit and the values needed by the originator to merge the hits of all the nodes, namely the values of the sort
+ * fields and of the projected fields.
+ *
+ * @since 5.1
+ */
+public class ClusteredHit implements Serializable {
+
+   private static final long serialVersionUID = -2817437105470812379L;
+
+   private final String id;
+   private final float score;
+   private final Object[] sortValues;
+   private final Object[] projection;
+
+   public ClusteredHit(String id, float score, Object[] sortValues, Object[] projection) {
+      this.id = id;
+      this.score = score;
+      this.sortValues = sortValues;
+      this.projection = projection;
+   }
+
+   /**
+    * @return the document id, that is the key of the entry as transformed by
+    *         {@link org.infinispan.query.backend.KeyTransformationHandler}
+    */
+   public String getId() {
+      return id;
+   }
+
+   public float getScore() {
+      return score;
+   }
+
+   /**
+    * @return the values of the sort fields, in the order of the {@link org.apache.lucene.search.SortField}s
+    */
+   public Object[] getSortValues() {
+      return sortValues;
+   }
+
+   /**
+    * @return the values of the projected fields, or null if the query had no projection
+    */
+   public Object[] getProjection() {
+      return projection;
+   }
+
+   @Override
+   public String toString() {
+      return "ClusteredHit{id='" + id + "', score=" + score + "}";
+   }
+}
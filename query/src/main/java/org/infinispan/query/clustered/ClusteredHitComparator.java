@@ -0,0 +1,89 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.query.clustered;
+
+import java.util.Comparator;
+
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+
+/**
+ * Orders {@link ClusteredHit}s coming from different nodes the way Lucene orders them within a node: by decreasing
+ * score when the query is not sorted, by the values of the sort fields otherwise.
+ * <p/>
+ * Hits are compared on the values projected from the sort fields, so these fields must be stored in the index. Sorting
+ * by document number is meaningless across nodes and leaves the hits in the order of the node they come from.
+ *
+ * @since 5.1
+ */
+class ClusteredHitComparator implements Comparator<ClusteredHit> {
+
+   private final SortField[] sortFields;
+
+   ClusteredHitComparator(Sort sort) {
+      this.sortFields = sort == null ? null : sort.getSort();
+   }
+
+   /**
+    * @return true if hits are sorted by the value of a field for this sort field, rather than by score or document
+    */
+   static boolean isValueSort(SortField sortField) {
+      return sortField.getField() != null && sortField.getType() != SortField.SCORE
+            && sortField.getType() != SortField.DOC;
+   }
+
+   @Override
+   public int compare(ClusteredHit o1, ClusteredHit o2) {
+      if (sortFields == null) return compareScores(o1, o2);
+
+      for (int i = 0; i < sortFields.length; i++) {
+         SortField sortField = sortFields[i];
+         int result;
+         if (sortField.getType() == SortField.SCORE)
+            result = compareScores(o1, o2);
+         else if (isValueSort(sortField))
+            result = compareValues(o1.getSortValues()[i], o2.getSortValues()[i]);
+         else
+            result = 0;
+         if (sortField.getReverse()) result = -result;
+         if (result != 0) return result;
+      }
+      return 0;
+   }
+
+   // scores of hits from different nodes were computed against different indexes, so this order is approximate
+   private static int compareScores(ClusteredHit o1, ClusteredHit o2) {
+      return Float.compare(o2.getScore(), o1.getScore());
+   }
+
+   @SuppressWarnings("unchecked")
+   private static int compareValues(Object v1, Object v2) {
+      // like Lucene, documents missing the field come first
+      if (v1 == v2) return 0;
+      if (v1 == null) return -1;
+      if (v2 == null) return 1;
+      if (v1 instanceof Comparable && v1.getClass() == v2.getClass())
+         return ((Comparable<Object>) v1).compareTo(v2);
+      return v1.toString().compareTo(v2.toString());
+   }
+}
@@ -0,0 +1,249 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.query.clustered;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.lucene.search.Filter;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.hibernate.search.ProjectionConstants;
+import org.hibernate.search.query.engine.spi.DocumentExtractor;
+import org.hibernate.search.query.engine.spi.HSQuery;
+import org.hibernate.search.spi.SearchFactoryIntegrator;
+import org.infinispan.AdvancedCache;
+import org.infinispan.CacheException;
+import org.infinispan.commands.remote.BaseRpcCommand;
+import org.infinispan.context.InvocationContext;
+import org.infinispan.distribution.DistributionManager;
+import org.infinispan.query.backend.KeyTransformationHandler;
+import org.infinispan.remoting.transport.Address;
+import org.infinispan.util.logging.Log;
+import org.infinispan.util.logging.LogFactory;
+
+/**
+ * Runs a query against the local index of a node, on behalf of a {@link ClusteredCacheQueryImpl}.
+ * <p/>
+ * The node returns its first <tt>maxResults</tt> hits, sorted, with the values the originator needs to merge them with
+ * the hits of the other nodes; the entities themselves are not loaded. As all the owners of a key index it, only the
+ * hits for keys this node is the primary owner of are returned, so that each entry is only found once in the cluster.
+ * <p/>
+ * When <tt>countOnly</tt> is set, the node only counts the hits it owns.
+ *
+ * @since 5.1
+ */
+public class ClusteredQueryCommand extends BaseRpcCommand {
+
+   public static final byte COMMAND_ID = 100;
+   private static final Log log = LogFactory.getLog(ClusteredQueryCommand.class);
+   private static final boolean trace = log.isTraceEnabled();
+
+   private Query luceneQuery;
+   private Filter filter;
+   private Sort sort;
+   private Class<?>[] classes;
+   private String[] projection;
+   private int maxResults;
+   private boolean countOnly;
+
+   private AdvancedCache<?, ?> cache;
+   private DistributionManager distributionManager;
+   private Address self;
+
+   public ClusteredQueryCommand() {
+   }
+
+   public ClusteredQueryCommand(String cacheName, Query luceneQuery, Filter filter, Sort sort, Class<?>[] classes,
+                                String[] projection, int maxResults, boolean countOnly) {
+      super(cacheName);
+      this.luceneQuery = luceneQuery;
+      this.filter = filter;
+      this.sort = sort;
+      this.classes = classes;
+      this.projection = projection;
+      this.maxResults = maxResults;
+      this.countOnly = countOnly;
+   }
+
+   public void initialize(AdvancedCache<?, ?> cache) {
+      this.cache = cache;
+   }
+
+   /**
+    * Runs the query against the local index.
+    *
+    * @param context invocation context, ignored.
+    * @return a {@link ClusteredQueryResult} with either the hits or the number of hits of this node
+    */
+   public ClusteredQueryResult perform(InvocationContext context) throws Throwable {
+      SearchFactoryIntegrator searchFactory = cache.getComponentRegistry().getComponent(SearchFactoryIntegrator.class);
+      if (searchFactory == null)
+         throw new CacheException("Indexing is not enabled on cache " + cacheName);
+      if (cache.getConfiguration().getCacheMode().isDistributed()) {
+         distributionManager = cache.getDistributionManager();
+         self = cache.getRpcManager().getAddress();
+      }
+
+      if (countOnly) {
+         int count = count(searchFactory);
+         if (trace) log.tracef("Counted %d hits for %s", count, luceneQuery);
+         return new ClusteredQueryResult(Collections.<ClusteredHit>emptyList(), count);
+      }
+      List<ClusteredHit> hits = collectHits(searchFactory);
+      if (trace) log.tracef("Returning %d hits for %s", hits.size(), luceneQuery);
+      return new ClusteredQueryResult(hits, -1);
+   }
+
+   private HSQuery createQuery(SearchFactoryIntegrator searchFactory) {
+      HSQuery query = searchFactory.createHSQuery();
+      query.luceneQuery(luceneQuery).targetedEntities(Arrays.asList(classes));
+      if (filter != null) query.filter(filter);
+      if (sort != null) query.sort(sort);
+      return query;
+   }
+
+   private int count(SearchFactoryIntegrator searchFactory) throws IOException {
+      HSQuery query = createQuery(searchFactory).projection(ProjectionConstants.ID);
+      if (distributionManager == null) return query.queryResultSize();
+
+      int count = 0;
+      DocumentExtractor extractor = query.queryDocumentExtractor();
+      try {
+         for (int i = extractor.getFirstIndex(); i <= extractor.getMaxIndex(); i++) {
+            if (isPrimaryOwner(extractor.extract(i).getProjection()[0])) count++;
+         }
+      } finally {
+         extractor.close();
+      }
+      return count;
+   }
+
+   private List<ClusteredHit> collectHits(SearchFactoryIntegrator searchFactory) throws IOException {
+      if (maxResults == 0) return Collections.emptyList();
+      if (distributionManager == null || maxResults < 0) {
+         HSQuery query = createHitQuery(searchFactory);
+         if (maxResults > 0) query.maxResults(maxResults);
+         return scan(query);
+      }
+
+      // as there is roughly one hit owned by this node every numOwners hits, only look at that many at first, and
+      // only go through all of them if it was not enough
+      int window = (int) Math.min(Integer.MAX_VALUE, (long) maxResults * cache.getConfiguration().getNumOwners());
+      HSQuery query = createHitQuery(searchFactory);
+      query.maxResults(window);
+      List<ClusteredHit> hits = scan(query);
+      if (hits.size() < maxResults && query.queryResultSize() > window)
+         hits = scan(createHitQuery(searchFactory));
+      return hits;
+   }
+
+   /**
+    * Projects the document id and the score, then the sort fields and finally the fields the caller asked for.
+    */
+   private HSQuery createHitQuery(SearchFactoryIntegrator searchFactory) {
+      List<String> fields = new ArrayList<String>();
+      fields.add(ProjectionConstants.ID);
+      fields.add(ProjectionConstants.SCORE);
+      for (SortField sortField : getSortFields()) {
+         if (ClusteredHitComparator.isValueSort(sortField)) fields.add(sortField.getField());
+      }
+      if (projection != null) fields.addAll(Arrays.asList(projection));
+      return createQuery(searchFactory).projection(fields.toArray(new String[fields.size()]));
+   }
+
+   private List<ClusteredHit> scan(HSQuery query) throws IOException {
+      SortField[] sortFields = getSortFields();
+      List<ClusteredHit> hits = new ArrayList<ClusteredHit>();
+      DocumentExtractor extractor = query.queryDocumentExtractor();
+      try {
+         for (int i = extractor.getFirstIndex(); i <= extractor.getMaxIndex(); i++) {
+            if (maxResults >= 0 && hits.size() == maxResults) break;
+            Object[] row = extractor.extract(i).getProjection();
+            if (!isPrimaryOwner(row[0])) continue;
+
+            int column = 2;
+            Object[] sortValues = new Object[sortFields.length];
+            for (int j = 0; j < sortFields.length; j++) {
+               if (ClusteredHitComparator.isValueSort(sortFields[j])) sortValues[j] = row[column++];
+            }
+            Object[] projected = null;
+            if (projection != null) {
+               projected = new Object[projection.length];
+               System.arraycopy(row, column, projected, 0, projection.length);
+            }
+            float score = row[1] == null ? 0 : (Float) row[1];
+            hits.add(new ClusteredHit(String.valueOf(row[0]), score, sortValues, projected));
+         }
+      } finally {
+         extractor.close();
+      }
+      return hits;
+   }
+
+   private SortField[] getSortFields() {
+      return sort == null ? new SortField[0] : sort.getSort();
+   }
+
+   private boolean isPrimaryOwner(Object documentId) {
+      if (distributionManager == null) return true;
+      Object key = KeyTransformationHandler.stringToKey(String.valueOf(documentId), cache.getClassLoader());
+      List<Address> owners = distributionManager.locate(key);
+      return owners.isEmpty() || owners.get(0).equals(self);
+   }
+
+   public byte getCommandId() {
+      return COMMAND_ID;
+   }
+
+   public Object[] getParameters() {
+      return new Object[]{cacheName, luceneQuery, filter, sort, classes, projection, maxResults, countOnly};
+   }
+
+   public void setParameters(int commandId, Object[] args) {
+      cacheName = (String) args[0];
+      luceneQuery = (Query) args[1];
+      filter = (Filter) args[2];
+      sort = (Sort) args[3];
+      classes = (Class<?>[]) args[4];
+      projection = (String[]) args[5];
+      maxResults = (Integer) args[6];
+      countOnly = (Boolean) args[7];
+   }
+
+   @Override
+   public String toString() {
+      return new StringBuilder()
+         .append("ClusteredQueryCommand{luceneQuery=").append(luceneQuery)
+         .append(", sort=").append(sort)
+         .append(", maxResults=").append(maxResults)
+         .append(", countOnly=").append(countOnly)
+         .append(", cacheName=").append(cacheName)
+         .append("}")
+         .toString();
+   }
+}
@@ -0,0 +1,58 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.query.clustered;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * What a node returns for a {@link ClusteredQueryCommand}: either its best hits, sorted, or the number of hits it owns.
+ *
+ * @since 5.1
+ */
+public class ClusteredQueryResult implements Serializable {
+
+   private static final long serialVersionUID = 4563810249617850376L;
+
+   private final List<ClusteredHit> hits;
+   private final int resultSize;
+
+   public ClusteredQueryResult(List<ClusteredHit> hits, int resultSize) {
+      this.hits = hits;
+      this.resultSize = resultSize;
+   }
+
+   /**
+    * @return the hits of the node, sorted as requested by the query
+    */
+   public List<ClusteredHit> getHits() {
+      return hits;
+   }
+
+   /**
+    * @return the number of hits of the node, or -1 if they were not counted
+    */
+   public int getResultSize() {
+      return resultSize;
+   }
+}
@@ -0,0 +1,63 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.query.clustered;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.infinispan.commands.ReplicableCommand;
+import org.infinispan.commands.module.ModuleCommandFactory;
+import org.infinispan.query.impl.massindex.MassIndexCommand;
+
+/**
+ * Creates the remote commands of the query module.
+ *
+ * @since 5.1
+ */
+public class QueryModuleCommandFactory implements ModuleCommandFactory {
+
+   @Override
+   public Map<Byte, Class<? extends ReplicableCommand>> getModuleCommands() {
+      Map<Byte, Class<? extends ReplicableCommand>> commands = new HashMap<Byte, Class<? extends ReplicableCommand>>(2);
+      commands.put(ClusteredQueryCommand.COMMAND_ID, ClusteredQueryCommand.class);
+      commands.put(MassIndexCommand.COMMAND_ID, MassIndexCommand.class);
+      return commands;
+   }
+
+   @Override
+   public ReplicableCommand fromStream(byte commandId, Object[] args) {
+      ReplicableCommand command;
+      switch (commandId) {
+         case ClusteredQueryCommand.COMMAND_ID:
+            command = new ClusteredQueryCommand();
+            break;
+         case MassIndexCommand.COMMAND_ID:
+            command = new MassIndexCommand();
+            break;
+         default:
+            throw new IllegalArgumentException("Not registered to handle command id " + commandId);
+      }
+      command.setParameters(commandId, args);
+      return command;
+   }
+}
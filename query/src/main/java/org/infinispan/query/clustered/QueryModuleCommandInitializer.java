@@ -0,0 +1,54 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.query.clustered;
+
+import org.infinispan.AdvancedCache;
+import org.infinispan.Cache;
+import org.infinispan.commands.ReplicableCommand;
+import org.infinispan.commands.module.ModuleCommandInitializer;
+import org.infinispan.factories.annotations.Inject;
+import org.infinispan.query.impl.massindex.MassIndexCommand;
+
+/**
+ * Initializes the remote commands of the query module with the cache they run against.
+ *
+ * @since 5.1
+ */
+public class QueryModuleCommandInitializer implements ModuleCommandInitializer {
+
+   private AdvancedCache<?, ?> cache;
+
+   @Inject
+   public void inject(Cache<?, ?> cache) {
+      this.cache = cache.getAdvancedCache();
+   }
+
+   @Override
+   public void initializeReplicableCommand(ReplicableCommand c, boolean isRemote) {
+      if (c instanceof ClusteredQueryCommand) {
+         ((ClusteredQueryCommand) c).initialize(cache);
+      } else if (c instanceof MassIndexCommand) {
+         ((MassIndexCommand) c).initialize(cache);
+      }
+   }
+}
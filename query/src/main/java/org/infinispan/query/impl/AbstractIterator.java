@@ -22,12 +22,17 @@
  */
 package org.infinispan.query.impl;
 
-import org.infinispan.AdvancedCache;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 import org.infinispan.query.QueryIterator;
 
 /**
  * This is the abstract superclass of the 2 iterators. Since some of the methods have the same implementations they have
  * been put onto a separate class.
+ * <p/>
+ * Entities are loaded <tt>fetchSize</tt> at a time, each window of results being loaded with a single bulk get.
  *
  * @author Navin Surtani
  * @see org.infinispan.query.impl.EagerIterator
@@ -37,7 +42,7 @@ import org.infinispan.query.QueryIterator;
 public abstract class AbstractIterator implements QueryIterator {
 
    protected Object[] buffer;
-   protected AdvancedCache<?, ?> cache;
+   protected EntityLoader loader;
 
    protected int index = 0;
    protected int bufferIndex = -1;
@@ -85,4 +90,44 @@ public abstract class AbstractIterator implements QueryIterator {
       return index <= max;
    }
 
+   /**
+    * @return the key of the entity of the result at the given index
+    */
+   protected abstract Object keyAt(int index);
+
+   /**
+    * Returns the entity of the result at the given index, loading the window of results containing it if it is not
+    * buffered yet. The window starts at that index when moving forward and ends there when moving backward.
+    */
+   protected Object loadEntity(int index, boolean forward) {
+      if (bufferIndex < 0 || index < bufferIndex || index >= bufferIndex + buffer.length) {
+         fillBuffer(forward ? index : Math.max(first, index - buffer.length + 1), forward);
+      }
+      return buffer[index - bufferIndex];
+   }
+
+   /**
+    * Loads the entities of the results starting at the given index into the buffer.
+    */
+   protected void fillBuffer(int from, boolean forward) {
+      setBuffer(from, loader.loadKeys(keysFrom(from)));
+   }
+
+   protected List<Object> keysFrom(int from) {
+      int to = Math.min(max, from + buffer.length - 1);
+      List<Object> keys = new ArrayList<Object>(to - from + 1);
+      for (int i = from; i <= to; i++) {
+         keys.add(keyAt(i));
+      }
+      return keys;
+   }
+
+   protected void setBuffer(int from, List<Object> entities) {
+      Arrays.fill(buffer, null);
+      for (int i = 0; i < entities.size(); i++) {
+         buffer[i] = entities.get(i);
+      }
+      bufferIndex = from;
+   }
+
 }
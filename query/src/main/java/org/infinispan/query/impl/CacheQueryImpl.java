@@ -53,10 +53,12 @@ import org.infinispan.query.backend.KeyTransformationHandler;
 public class CacheQueryImpl implements CacheQuery {
 
    private final AdvancedCache<?, ?> cache;
+   private final SearchFactoryIntegrator searchFactory;
    private final HSQuery hSearchQuery;
 
    public CacheQueryImpl(Query luceneQuery, SearchFactoryIntegrator searchFactory, AdvancedCache<?, ?> cache, Class<?>... classes) {
       this.cache = cache;
+      this.searchFactory = searchFactory;
       hSearchQuery = searchFactory.createHSQuery();
       hSearchQuery
          .luceneQuery( luceneQuery )
@@ -130,7 +132,7 @@ public class CacheQueryImpl implements CacheQuery {
       hSearchQuery.getTimeoutManager().start();
       List<EntityInfo> entityInfos = hSearchQuery.queryEntityInfos();
       List<Object> keyList = fromEntityInfosToKeys(entityInfos);
-      return new EagerIterator(keyList, cache, fetchSize);
+      return new EagerIterator(keyList, getLoader(), fetchSize);
    }
 
    public QueryIterator lazyIterator() {
@@ -138,7 +140,7 @@ public class CacheQueryImpl implements CacheQuery {
    }
 
    public QueryIterator lazyIterator(int fetchSize) {
-      return new LazyIterator(hSearchQuery, cache, fetchSize);
+      return new LazyIterator(hSearchQuery, getLoader(), fetchSize);
    }
 
    public List<Object> list() throws SearchException {
@@ -150,7 +152,7 @@ public class CacheQueryImpl implements CacheQuery {
    }
 
    private EntityLoader getLoader() {
-      return new EntityLoader(cache);
+      return new EntityLoader(cache, searchFactory);
    }
    
    private List<Object> fromEntityInfosToKeys(final List<EntityInfo> entityInfos) {
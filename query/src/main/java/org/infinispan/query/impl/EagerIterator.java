@@ -23,15 +23,12 @@
 
 package org.infinispan.query.impl;
 
-import java.util.Arrays;
 import java.util.List;
 import java.util.NoSuchElementException;
 
 import net.jcip.annotations.NotThreadSafe;
 
 import org.infinispan.AdvancedCache;
-import org.infinispan.util.logging.Log;
-import org.infinispan.util.logging.LogFactory;
 
 /**
  * This is the implementation class for the interface QueryResultIterator which extends ListIterator. It is what is
@@ -46,16 +43,17 @@ public class EagerIterator extends AbstractIterator {
    //private final int size;
    private List<Object> idList;
 
-   private static final Log log = LogFactory.getLog(EagerIterator.class);
-
-
    public EagerIterator(List<Object> idList, AdvancedCache<?, ?> cache, int fetchSize) {
+      this(idList, new EntityLoader(cache), fetchSize);
+   }
+
+   public EagerIterator(List<Object> idList, EntityLoader loader, int fetchSize) {
       if (fetchSize < 1) {
          throw new IllegalArgumentException("Incorrect value for fetchsize passed. Your fetchSize is less than 1");
       }
 
       this.idList = idList;
-      this.cache = cache;
+      this.loader = loader;
       this.fetchSize = fetchSize;
 
       // Set the values of first and max so that they can be used by the methods on the superclass.
@@ -89,6 +87,11 @@ public class EagerIterator extends AbstractIterator {
       // created, the iterator() method in CacheQueryImpl closes everything that needs to be closed.
    }
 
+   @Override
+   protected Object keyAt(int index) {
+      return idList.get(index);
+   }
+
    /**
     * Returns the next element in the list
     *
@@ -96,49 +99,9 @@ public class EagerIterator extends AbstractIterator {
     */
    public Object next() {
       if (!hasNext()) throw new IndexOutOfBoundsException("Out of boundaries. There is no next");
-
-      Object toReturn;
-      int bufferSize = buffer.length;
-
-      // make sure the index we are after is in the buffer.  If it is, then index >= bufferIndex and index <= (bufferIndex + bufferSize).
-      if (bufferIndex >= 0                                       // buffer init check
-            && index >= bufferIndex                           // lower boundary
-            && index < (bufferIndex + bufferSize))          // upper boundary
-      {
-         // now we can get this from the buffer.  Sweet!
-         int indexToReturn = index - bufferIndex;
-         toReturn = buffer[indexToReturn];
-      } else {
-         // We need to populate the buffer.
-
-         toReturn = cache.get(idList.get(index));
-
-         //Wiping bufferObjects and the bufferIndex so that there is no stale data.
-
-         Arrays.fill(buffer, null);
-         buffer[0] = toReturn;
-
-         // we now need to buffer item at index "index", as well as the next "fetchsize - 1" elements.  I.e., a total of fetchsize elements will be buffered.
-         //now loop through bufferSize times to add the rest of the objects into the list.
-
-         for (int i = 1; i < bufferSize; i++) {
-            if (index + i > max) {
-               log.debug("Your current index + bufferSize exceeds the size of your number of hits");
-               break;
-            }
-
-            Object toBuffer = cache.get(idList.get(index + i));
-            buffer[i] = toBuffer;
-         }
-         bufferIndex = index;
-
-      }
-
-      index++;
-      return toReturn;
+      return loadEntity(index++, true);
    }
 
-
    /**
     * Returns the previous element in the list.
     *
@@ -146,42 +109,7 @@ public class EagerIterator extends AbstractIterator {
     */
    public Object previous() {
       if (!hasPrevious()) throw new IndexOutOfBoundsException("Index is out of bounds. There is no previous");
-
-      Object toReturn;
-      int bufferSize = buffer.length;
-
-      // make sure the index we are after is in the buffer.  If it is, then index >= bufferIndex and index <= (bufferIndex + bufferSize).
-
-      if (bufferIndex >= 0 // buffer init check
-            && index <= bufferIndex // lower boundary
-            && index >= (bufferIndex + bufferSize)) // upper boundary
-      {
-         // now we can get this from the buffer.  Sweet!
-         int indexToReturn = bufferIndex - index;        // Unlike next() we have to make sure that we are subtracting index from bufferIndex
-         toReturn = buffer[indexToReturn];
-      } else {
-         toReturn = cache.get(idList.get(index));
-         // Wiping bufferObjects and the bufferIndex so that there is no stale data.
-
-         Arrays.fill(buffer, null);
-         buffer[0] = toReturn;
-
-         // we now need to buffer objects at index "index", as well as the next "fetchsize - 1" elements.
-         // I.e., a total of fetchsize elements will be buffered.
-         // now loop through bufferSize times to add the rest of the objects into the list.
-
-         for (int i = 1; i < bufferSize; i++) {
-            if (index - i < first) {
-               log.debug("Your current index - bufferSize exceeds the size of your number of hits");
-               break;
-            }
-            Object toBuffer = cache.get(idList.get(index - i));
-            buffer[i] = toBuffer;
-         }
-         bufferIndex = index;
-      }
-      index--;
-      return toReturn;
+      return loadEntity(index--, false);
    }
 
    /**
@@ -20,41 +20,113 @@
  * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
  * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
  */
-
 package org.infinispan.query.impl;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
 
 import org.hibernate.search.query.engine.spi.EntityInfo;
+import org.hibernate.search.spi.SearchFactoryIntegrator;
 import org.infinispan.AdvancedCache;
-import org.infinispan.Cache;
 import org.infinispan.query.backend.KeyTransformationHandler;
+import org.infinispan.util.concurrent.FutureListener;
+import org.infinispan.util.concurrent.NotifyingFuture;
 
 /**
+ * Loads the entities matching query results from the cache.
+ * <p/>
+ * Entities are loaded with a single bulk get per page of results, so that in distributed mode the keys are fetched from
+ * their owners in parallel rather than with one remote get per hit. When the statistics of the search factory are
+ * enabled, the number of entities loaded and the time spent loading them are recorded there.
+ *
  * @author Sanne Grinovero <sanne@hibernate.org> (C) 2011 Red Hat Inc.
  * @since 5.0
  */
 public class EntityLoader {
    
-   private final AdvancedCache<?, ?> cache;
-   
-   public EntityLoader(Cache<?, ?> cache) {
-      this.cache = cache.getAdvancedCache();
+   private final AdvancedCache<Object, Object> cache;
+   private final SearchFactoryIntegrator searchFactory;
+
+   public EntityLoader(AdvancedCache<?, ?> cache) {
+      this(cache, null);
+   }
+
+   @SuppressWarnings("unchecked")
+   public EntityLoader(AdvancedCache<?, ?> cache, SearchFactoryIntegrator searchFactory) {
+      this.cache = (AdvancedCache<Object, Object>) cache;
+      this.searchFactory = searchFactory;
+   }
+
+   public Object toKey(EntityInfo entityInfo) {
+      return KeyTransformationHandler.stringToKey(entityInfo.getId().toString(), cache.getClassLoader());
    }
 
    public Object load(EntityInfo entityInfo) {
-      Object cacheKey = KeyTransformationHandler.stringToKey(entityInfo.getId().toString(), cache.getClassLoader());
-      return cache.get(cacheKey);
+      long start = System.nanoTime();
+      Object entity = cache.get(toKey(entityInfo));
+      recordLoad(1, System.nanoTime() - start);
+      return entity;
    }
 
    public List<Object> load(EntityInfo... entityInfos) {
-      int size = entityInfos.length;
-      ArrayList<Object> list = new ArrayList<Object>(size);
+      List<Object> keys = new ArrayList<Object>(entityInfos.length);
       for (EntityInfo e : entityInfos) {
-         list.add(load(e));
+         keys.add(toKey(e));
+      }
+      return loadKeys(keys);
+   }
+
+   /**
+    * @return the entities mapped to the given keys, in the same order, with null for keys which are not mapped
+    */
+   public List<Object> loadKeys(List<Object> keys) {
+      long start = System.nanoTime();
+      Map<Object, Object> entities = cache.getAll(keys);
+      recordLoad(keys.size(), System.nanoTime() - start);
+      return inOrder(keys, entities);
+   }
+
+   /**
+    * Starts loading the entities mapped to the given keys in the background.
+    *
+    * @see #inOrder(java.util.List, java.util.Map)
+    */
+   public NotifyingFuture<Map<Object, Object>> loadKeysAsync(final Collection<Object> keys) {
+      final long start = System.nanoTime();
+      NotifyingFuture<Map<Object, Object>> future = cache.getAllAsync(keys);
+      if (isStatisticsEnabled()) {
+         future.attachListener(new FutureListener<Map<Object, Object>>() {
+            @Override
+            public void futureDone(Future<Map<Object, Object>> future) {
+               recordLoad(keys.size(), System.nanoTime() - start);
+            }
+         });
+      }
+      return future;
+   }
+
+   /**
+    * @return the entities of a bulk load, in the order of the given keys, with null for keys which are not mapped
+    */
+   public List<Object> inOrder(List<Object> keys, Map<Object, Object> entities) {
+      List<Object> list = new ArrayList<Object>(keys.size());
+      for (Object key : keys) {
+         list.add(entities.get(key));
       }
       return list;
    }
 
+   private boolean isStatisticsEnabled() {
+      return searchFactory != null && searchFactory.getStatistics().isStatisticsEnabled();
+   }
+
+   private void recordLoad(int count, long nanos) {
+      if (isStatisticsEnabled()) {
+         searchFactory.getStatisticsImplementor().objectLoadExecuted(count, nanos);
+      }
+   }
+
 }
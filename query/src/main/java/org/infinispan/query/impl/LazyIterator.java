@@ -24,8 +24,11 @@
 package org.infinispan.query.impl;
 
 import java.io.IOException;
-import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import net.jcip.annotations.NotThreadSafe;
 
@@ -33,12 +36,14 @@ import org.hibernate.search.query.engine.spi.DocumentExtractor;
 import org.hibernate.search.query.engine.spi.HSQuery;
 import org.infinispan.AdvancedCache;
 import org.infinispan.CacheException;
-import org.infinispan.query.backend.KeyTransformationHandler;
 
 /**
  * Implementation for {@link org.infinispan.query.QueryIterator}. This is what is returned when the {@link
  * org.infinispan.query.CacheQuery#lazyIterator()} method is called. This loads the results only when required and hence
  * differs from {@link EagerIterator} which is the other implementation of QueryResultIterator.
+ * <p/>
+ * While moving forward, the entities of the next <tt>fetchSize</tt> results are loaded in the background as soon as
+ * the current ones are returned.
  *
  * @author Navin Surtani
  */
@@ -47,14 +52,22 @@ public class LazyIterator extends AbstractIterator {
 
    private final DocumentExtractor extractor;
 
+   private Future<Map<Object, Object>> prefetch;
+   private List<Object> prefetchKeys;
+   private int prefetchIndex = -1;
+
    public LazyIterator(HSQuery hSearchQuery, AdvancedCache<?, ?> cache, int fetchSize) {
+      this(hSearchQuery, new EntityLoader(cache), fetchSize);
+   }
+
+   public LazyIterator(HSQuery hSearchQuery, EntityLoader loader, int fetchSize) {
       if (fetchSize < 1) {
          throw new IllegalArgumentException("Incorrect value for fetchsize passed. Your fetchSize is less than 1");
       }
       this.extractor = hSearchQuery.queryDocumentExtractor(); //triggers actual Lucene search
       this.index = 0;
       this.max = hSearchQuery.queryResultSize() - 1;
-      this.cache = cache;
+      this.loader = loader;
       this.fetchSize = fetchSize;
       //Create an buffer with size fetchSize (which is the size of the required buffer).
       buffer = new Object[this.fetchSize];
@@ -69,94 +82,59 @@ public class LazyIterator extends AbstractIterator {
 
    @Override
    public void close() {
+      if (prefetch != null) prefetch.cancel(false);
       extractor.close();
    }
 
-   public Object next() {
-      if (!hasNext()) throw new IndexOutOfBoundsException("Index is out of bounds. There is no next");
-
-      Object toReturn = null;
-      int bufferSize = buffer.length;
-
-      // make sure the index we are after is in the buffer.  If it is, then index >= bufferIndex and index <= (bufferIndex + bufferSize).
-      if (bufferIndex >= 0                                       // buffer init check
-            && index >= bufferIndex                           // lower boundary
-            && index < (bufferIndex + bufferSize))          // upper boundary
-      {
-         // now we can get this from the buffer.  Sweet!
-         int indexToReturn = index - bufferIndex;
-         toReturn = buffer[indexToReturn];
-      } else {
-         // else we need to populate the buffer and get what we need.
-
-         try {
-            String documentId = (String) extractor.extract(index).getId();
-            toReturn = cache.get(KeyTransformationHandler.stringToKey(documentId, cache.getClassLoader()));
-
-            //Wiping bufferObjects and the bufferIndex so that there is no stale data.
-            Arrays.fill(buffer, null);
-            buffer[0] = toReturn;
-
-            // we now need to buffer item at index "index", as well as the next "fetchsize - 1" elements.  I.e., a total of fetchsize elements will be buffered.
-            // ignore loop below, in needs fixing
-            //now loop through bufferSize times to add the rest of the objects into the list.
-
-            for (int i = 1; i < bufferSize; i++) {
-               String bufferDocumentId = (String) extractor.extract(index + i).getId();
-               Object toBuffer = cache.get(KeyTransformationHandler.stringToKey(bufferDocumentId, cache.getClassLoader()));
-               buffer[i] = toBuffer;
-            }
-            bufferIndex = index;
-         }
-         catch (IOException e) {
-            throw new CacheException();
-         }
+   @Override
+   protected Object keyAt(int index) {
+      try {
+         return loader.toKey(extractor.extract(index));
+      } catch (IOException e) {
+         throw new CacheException("Could not read result " + index + " from the index", e);
       }
-
-      index++;
-      return toReturn;
    }
 
-   public Object previous() {
-      if (!hasPrevious()) throw new IndexOutOfBoundsException("Index is out of bounds. There is no previous");
-
-      Object toReturn = null;
-      int bufferSize = buffer.length;
-
-      // make sure the index we are after is in the buffer.  If it is, then index >= bufferIndex and index <= (bufferIndex + bufferSize).
-
-      if (bufferIndex >= 0 // buffer init check
-            && index <= bufferIndex // lower boundary
-            && index >= (bufferIndex + bufferSize)) // upper boundary
-      {
-         // now we can get this from the buffer.  Sweet!
-         int indexToReturn = bufferIndex - index;        // Unlike next() we have to make sure that we are subtracting index from bufferIndex
-         toReturn = buffer[indexToReturn];
+   @Override
+   protected void fillBuffer(int from, boolean forward) {
+      List<Object> entities = null;
+      if (prefetch != null && prefetchIndex == from) {
+         entities = awaitPrefetch();
+      } else if (prefetch != null) {
+         prefetch.cancel(false);
       }
+      prefetch = null;
+      if (entities == null) entities = loader.loadKeys(keysFrom(from));
+      setBuffer(from, entities);
+
+      int next = from + buffer.length;
+      if (forward && next <= max) {
+         prefetchIndex = next;
+         prefetchKeys = keysFrom(next);
+         prefetch = loader.loadKeysAsync(prefetchKeys);
+      }
+   }
 
+   private List<Object> awaitPrefetch() {
       try {
-         //Wiping the buffer
-         Arrays.fill(buffer, null);
-
-         String documentId = (String) extractor.extract(index).getId();
-         toReturn = cache.get(KeyTransformationHandler.stringToKey(documentId, cache.getClassLoader()));
-
-         buffer[0] = toReturn;
+         return loader.inOrder(prefetchKeys, prefetch.get());
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         throw new CacheException("Interrupted while loading results", e);
+      } catch (ExecutionException e) {
+         // the entities are loaded again on this thread, which reports the failure if it happens again
+         return null;
+      }
+   }
 
-         //now loop through bufferSize times to add the rest of the objects into the list.
-         for (int i = 1; i < bufferSize; i++) {
-            String bufferDocumentId = (String) extractor.extract(index - i).getId();    //In this case it has to be index - i because previous() is called.
-            Object toBuffer = cache.get(KeyTransformationHandler.stringToKey(bufferDocumentId, cache.getClassLoader()));
-            buffer[i] = toBuffer;
-         }
+   public Object next() {
+      if (!hasNext()) throw new IndexOutOfBoundsException("Out of boundaries. There is no next");
+      return loadEntity(index++, true);
+   }
 
-         bufferIndex = index;
-      }
-      catch (IOException e) {
-         e.printStackTrace();
-      }
-      index--;
-      return toReturn;
+   public Object previous() {
+      if (!hasPrevious()) throw new IndexOutOfBoundsException("Index is out of bounds. There is no previous");
+      return loadEntity(index--, false);
    }
 
    public int nextIndex() {
@@ -0,0 +1,70 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.query.impl.massindex;
+
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+
+import org.hibernate.search.backend.TransactionContext;
+
+/**
+ * A {@link TransactionContext} pretending a transaction is in progress, so that the Hibernate Search worker queues
+ * the works it is given rather than applying them one by one, until {@link #flush()} hands them over to the backend
+ * at once, like a transaction commit would.
+ * <p/>
+ * Not thread safe; a context is meant to be used by a single thread for a single batch.
+ *
+ * @since 5.1
+ */
+class BatchTransactionContext implements TransactionContext {
+
+   private Synchronization synchronization;
+
+   @Override
+   public boolean isTransactionInProgress() {
+      return true;
+   }
+
+   @Override
+   public Object getTransactionIdentifier() {
+      return this;
+   }
+
+   @Override
+   public void registerSynchronization(Synchronization synchronization) {
+      if (synchronization == null) throw new NullPointerException("Synchronization passed in is null!");
+      this.synchronization = synchronization;
+   }
+
+   /**
+    * Builds the documents of the queued works, in the calling thread, and applies them to the indexes.
+    */
+   void flush() {
+      Synchronization queued = synchronization;
+      synchronization = null;
+      if (queued != null) {
+         queued.beforeCompletion();
+         queued.afterCompletion(Status.STATUS_COMMITTED);
+      }
+   }
+}
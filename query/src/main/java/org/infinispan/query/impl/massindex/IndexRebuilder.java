@@ -0,0 +1,314 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.query.impl.massindex;
+
+import static org.infinispan.query.backend.KeyTransformationHandler.keyToString;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.hibernate.search.backend.Work;
+import org.hibernate.search.backend.WorkType;
+import org.hibernate.search.spi.SearchFactoryIntegrator;
+import org.infinispan.AdvancedCache;
+import org.infinispan.CacheException;
+import org.infinispan.container.DataContainer;
+import org.infinispan.container.entries.InternalCacheEntry;
+import org.infinispan.distribution.DistributionManager;
+import org.infinispan.factories.ComponentRegistry;
+import org.infinispan.loaders.AbstractCacheLoader;
+import org.infinispan.loaders.CacheLoader;
+import org.infinispan.loaders.CacheLoaderException;
+import org.infinispan.loaders.CacheLoaderManager;
+import org.infinispan.marshall.MarshalledValue;
+import org.infinispan.query.backend.QueryInterceptor;
+import org.infinispan.query.logging.Log;
+import org.infinispan.remoting.transport.Address;
+import org.infinispan.util.logging.LogFactory;
+
+/**
+ * Rebuilds the indexes of the entries held by the local node, in memory and in the cache store.
+ * <p/>
+ * The calling thread goes through the keys and splits them into batches, which are indexed by a pool of threads: each
+ * batch is queued into the Hibernate Search worker, then flushed at once so that the documents are built by the
+ * indexing thread and applied to the indexes together. The number of batches waiting to be indexed is bounded, so
+ * that the whole content of the store is not loaded in memory at once.
+ * <p/>
+ * In a distributed cache, the entries this node owns are indexed, like the query interceptor indexes them on every
+ * owner. When only the node a modification originates from indexes it, which is meant for indexes shared by all the
+ * nodes, only the entries this node is the primary owner of are indexed, so that each entry is indexed once.
+ *
+ * @since 5.1
+ */
+public class IndexRebuilder {
+
+   private static final Log log = LogFactory.getLog(IndexRebuilder.class, Log.class);
+   private static final long REPORT_INTERVAL = TimeUnit.SECONDS.toNanos(10);
+
+   private final AdvancedCache<?, ?> cache;
+   private final SearchFactoryIntegrator searchFactory;
+   private final QueryInterceptor queryInterceptor;
+   private final CacheLoaderManager cacheLoaderManager;
+   private final DistributionManager distributionManager;
+   private final Address self;
+   private final boolean primaryOwnerOnly;
+   private final int threads;
+   private final int batchSize;
+
+   private final AtomicLong indexed = new AtomicLong();
+   private final AtomicLong lastReport = new AtomicLong();
+   private final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+   private volatile long startNanos;
+   private volatile long endNanos;
+
+   public IndexRebuilder(AdvancedCache<?, ?> cache, int threads, int batchSize) {
+      if (threads < 1) throw new IllegalArgumentException("threads must be at least 1, was " + threads);
+      if (batchSize < 1) throw new IllegalArgumentException("batchSize must be at least 1, was " + batchSize);
+      this.cache = cache;
+      this.threads = threads;
+      this.batchSize = batchSize;
+      ComponentRegistry componentRegistry = cache.getComponentRegistry();
+      this.searchFactory = componentRegistry.getComponent(SearchFactoryIntegrator.class);
+      this.queryInterceptor = componentRegistry.getComponent(QueryInterceptor.class);
+      if (searchFactory == null || queryInterceptor == null)
+         throw new CacheException("Indexing is not enabled on cache " + cache.getName());
+      this.cacheLoaderManager = componentRegistry.getComponent(CacheLoaderManager.class);
+      if (cache.getConfiguration().getCacheMode().isDistributed()) {
+         this.distributionManager = cache.getDistributionManager();
+         this.self = cache.getRpcManager().getAddress();
+      } else {
+         this.distributionManager = null;
+         this.self = null;
+      }
+      this.primaryOwnerOnly = cache.getConfiguration().isIndexLocalOnly();
+   }
+
+   /**
+    * Removes all the documents of every type indexed by the search factory from the indexes. The types of the entries
+    * in memory are registered first: a node which has just been restarted may not have registered them yet, although
+    * its indexes hold their documents.
+    */
+   public void purge() {
+      registerTypesInMemory();
+      BatchTransactionContext transactionContext = new BatchTransactionContext();
+      Serializable id = null;
+      for (Class type : searchFactory.getDocumentBuildersIndexedEntities().keySet()) {
+         searchFactory.getWorker().performWork(new Work<Object>(type, id, WorkType.PURGE_ALL), transactionContext);
+      }
+      transactionContext.flush();
+   }
+
+   private void registerTypesInMemory() {
+      Set<Class<?>> types = new HashSet<Class<?>>();
+      for (InternalCacheEntry entry : cache.getDataContainer()) {
+         Object value = extractValue(entry.getValue());
+         if (value != null) types.add(value.getClass());
+      }
+      if (!types.isEmpty()) queryInterceptor.enableClasses(types.toArray(new Class<?>[types.size()]));
+   }
+
+   /**
+    * Indexes all the entries of this node, waiting for them to be indexed.
+    *
+    * @return the number of entries indexed
+    */
+   public long rebuild() throws InterruptedException {
+      startNanos = System.nanoTime();
+      lastReport.set(startNanos);
+      ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+         private final AtomicInteger counter = new AtomicInteger();
+
+         @Override
+         public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "MassIndexer-" + cache.getName() + "-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+         }
+      });
+      int maxPending = threads * 2;
+      Semaphore pending = new Semaphore(maxPending);
+      try {
+         DataContainer dataContainer = cache.getDataContainer();
+         List<Object> batch = new ArrayList<Object>(batchSize);
+         for (InternalCacheEntry entry : dataContainer) {
+            batch.add(entry);
+            if (batch.size() == batchSize) {
+               submit(executor, pending, batch, null);
+               batch = new ArrayList<Object>(batchSize);
+            }
+         }
+         submit(executor, pending, batch, null);
+
+         if (cacheLoaderManager != null && cacheLoaderManager.isEnabled()) {
+            CacheLoader cacheLoader = cacheLoaderManager.getCacheLoader();
+            // entries which are also in memory have been indexed already
+            Set<Object> keys = cacheLoader.loadAllKeys(dataContainer.keySet());
+            batch = new ArrayList<Object>(batchSize);
+            for (Object key : keys) {
+               batch.add(key);
+               if (batch.size() == batchSize) {
+                  submit(executor, pending, batch, cacheLoader);
+                  batch = new ArrayList<Object>(batchSize);
+               }
+            }
+            submit(executor, pending, batch, cacheLoader);
+         }
+         // wait for the last batches to be indexed
+         pending.acquire(maxPending);
+      } catch (CacheLoaderException e) {
+         throw new CacheException("Could not load the keys of cache " + cache.getName() + " from the cache store", e);
+      } finally {
+         executor.shutdownNow();
+      }
+      endNanos = System.nanoTime();
+
+      Throwable t = failure.get();
+      if (t != null) throw new CacheException("Could not index the entries of cache " + cache.getName(), t);
+      long count = indexed.get();
+      log.massIndexingCompleted(count, cache.getName(), TimeUnit.NANOSECONDS.toMillis(endNanos - startNanos),
+                                getThroughput());
+      return count;
+   }
+
+   /**
+    * Returns the number of entries indexed so far.
+    */
+   public long getIndexedEntries() {
+      return indexed.get();
+   }
+
+   /**
+    * Returns the number of entries indexed per second since the indexing started.
+    */
+   public long getThroughput() {
+      long start = startNanos;
+      if (start == 0) return 0;
+      long end = endNanos == 0 ? System.nanoTime() : endNanos;
+      return throughput(indexed.get(), end - start);
+   }
+
+   private static long throughput(long count, long nanos) {
+      return nanos <= 0 ? 0 : count * TimeUnit.SECONDS.toNanos(1) / nanos;
+   }
+
+   /**
+    * Hands a batch over to the indexing threads, unless a previous batch failed already.
+    *
+    * @param cacheLoader the loader to load the entries from when the batch holds keys, null when it holds entries
+    */
+   private void submit(ExecutorService executor, Semaphore pending, List<Object> batch, CacheLoader cacheLoader)
+         throws InterruptedException {
+      if (batch.isEmpty() || failure.get() != null) return;
+      pending.acquire();
+      executor.execute(new IndexingTask(batch, cacheLoader, pending));
+   }
+
+   private void index(List<Object> batch, CacheLoader cacheLoader) throws CacheLoaderException {
+      Collection<?> entries;
+      if (cacheLoader == null) {
+         entries = batch;
+      } else {
+         Set<Object> keys = new HashSet<Object>(batch.size());
+         for (Object key : batch) {
+            if (isIndexedHere(key)) keys.add(key);
+         }
+         entries = keys.isEmpty() ? keys : AbstractCacheLoader.loadAll(cacheLoader, keys).values();
+      }
+      BatchTransactionContext transactionContext = new BatchTransactionContext();
+      int count = 0;
+      for (Object o : entries) {
+         InternalCacheEntry entry = (InternalCacheEntry) o;
+         if (entry.isExpired() || !isIndexedHere(entry.getKey())) continue;
+         Object value = extractValue(entry.getValue());
+         if (value == null) continue;
+         queryInterceptor.enableClasses(new Class[]{value.getClass()});
+         // an update rather than an add, as the indexes might not have been purged
+         searchFactory.getWorker().performWork(
+               new Work<Object>(value, keyToString(extractValue(entry.getKey())), WorkType.UPDATE), transactionContext);
+         count++;
+      }
+      transactionContext.flush();
+      reportProgress(count);
+   }
+
+   private void reportProgress(int count) {
+      long total = indexed.addAndGet(count);
+      long now = System.nanoTime();
+      long last = lastReport.get();
+      if (now - last >= REPORT_INTERVAL && lastReport.compareAndSet(last, now))
+         log.massIndexingProgress(total, cache.getName(), throughput(total, now - startNanos));
+   }
+
+   /**
+    * @return whether this node indexes the given key: any key it owns, or only those it is the primary owner of when
+    *         the indexes are shared
+    */
+   private boolean isIndexedHere(Object key) {
+      if (distributionManager == null) return true;
+      List<Address> owners = distributionManager.locate(key);
+      if (owners.isEmpty()) return true;
+      return primaryOwnerOnly ? owners.get(0).equals(self) : owners.contains(self);
+   }
+
+   private static Object extractValue(Object wrappedValue) {
+      if (wrappedValue instanceof MarshalledValue)
+         return ((MarshalledValue) wrappedValue).get();
+      else
+         return wrappedValue;
+   }
+
+   private class IndexingTask implements Runnable {
+      private final List<Object> batch;
+      private final CacheLoader cacheLoader;
+      private final Semaphore pending;
+
+      IndexingTask(List<Object> batch, CacheLoader cacheLoader, Semaphore pending) {
+         this.batch = batch;
+         this.cacheLoader = cacheLoader;
+         this.pending = pending;
+      }
+
+      @Override
+      public void run() {
+         try {
+            if (failure.get() == null) index(batch, cacheLoader);
+         } catch (Throwable t) {
+            failure.compareAndSet(null, t);
+         } finally {
+            pending.release();
+         }
+      }
+   }
+}
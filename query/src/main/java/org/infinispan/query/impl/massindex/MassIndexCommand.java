@@ -0,0 +1,101 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.query.impl.massindex;
+
+import org.infinispan.AdvancedCache;
+import org.infinispan.commands.remote.BaseRpcCommand;
+import org.infinispan.context.InvocationContext;
+
+/**
+ * Rebuilds the indexes of a node, on behalf of the {@link MassIndexerImpl} of another node.
+ * <p/>
+ * As all the nodes have to be done purging the indexes before any of them starts indexing, purging is requested by a
+ * command of its own, with <tt>purgeOnly</tt> set.
+ *
+ * @since 5.1
+ */
+public class MassIndexCommand extends BaseRpcCommand {
+
+   public static final byte COMMAND_ID = 101;
+
+   private int threads;
+   private int batchSize;
+   private boolean purgeOnly;
+
+   private AdvancedCache<?, ?> cache;
+
+   public MassIndexCommand() {
+   }
+
+   public MassIndexCommand(String cacheName, int threads, int batchSize, boolean purgeOnly) {
+      super(cacheName);
+      this.threads = threads;
+      this.batchSize = batchSize;
+      this.purgeOnly = purgeOnly;
+   }
+
+   public void initialize(AdvancedCache<?, ?> cache) {
+      this.cache = cache;
+   }
+
+   /**
+    * Purges or rebuilds the local indexes.
+    *
+    * @param context invocation context, ignored.
+    * @return the number of entries indexed by this node
+    */
+   public Long perform(InvocationContext context) throws Throwable {
+      IndexRebuilder rebuilder = new IndexRebuilder(cache, threads, batchSize);
+      if (purgeOnly) {
+         rebuilder.purge();
+         return 0L;
+      }
+      return rebuilder.rebuild();
+   }
+
+   public byte getCommandId() {
+      return COMMAND_ID;
+   }
+
+   public Object[] getParameters() {
+      return new Object[]{cacheName, threads, batchSize, purgeOnly};
+   }
+
+   public void setParameters(int commandId, Object[] args) {
+      cacheName = (String) args[0];
+      threads = (Integer) args[1];
+      batchSize = (Integer) args[2];
+      purgeOnly = (Boolean) args[3];
+   }
+
+   @Override
+   public String toString() {
+      return new StringBuilder()
+         .append("MassIndexCommand{threads=").append(threads)
+         .append(", batchSize=").append(batchSize)
+         .append(", purgeOnly=").append(purgeOnly)
+         .append(", cacheName=").append(cacheName)
+         .append("}")
+         .toString();
+   }
+}
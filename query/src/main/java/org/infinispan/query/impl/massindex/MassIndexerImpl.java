@@ -0,0 +1,161 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.query.impl.massindex;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import org.infinispan.AdvancedCache;
+import org.infinispan.CacheException;
+import org.infinispan.query.MassIndexer;
+import org.infinispan.remoting.responses.ExceptionResponse;
+import org.infinispan.remoting.responses.RequestIgnoredResponse;
+import org.infinispan.remoting.responses.Response;
+import org.infinispan.remoting.responses.SuccessfulResponse;
+import org.infinispan.remoting.rpc.ResponseMode;
+import org.infinispan.remoting.rpc.RpcManager;
+import org.infinispan.remoting.transport.Address;
+
+/**
+ * Rebuilds the indexes of all the nodes of a cache.
+ * <p/>
+ * In a distributed cache a {@link MassIndexCommand} is broadcast to the other nodes, and this node indexes its own
+ * entries while waiting for them. In other cache modes only the indexes of this node are rebuilt.
+ *
+ * @since 5.1
+ */
+public class MassIndexerImpl implements MassIndexer {
+
+   private final AdvancedCache<?, ?> cache;
+   private int threads = Runtime.getRuntime().availableProcessors();
+   private int batchSize = 100;
+   private boolean purgeAllOnStart = true;
+   private long timeoutMillis = TimeUnit.HOURS.toMillis(1);
+   private volatile IndexRebuilder rebuilder;
+
+   public MassIndexerImpl(AdvancedCache<?, ?> cache) {
+      this.cache = cache;
+   }
+
+   @Override
+   public MassIndexer threads(int threads) {
+      this.threads = threads;
+      return this;
+   }
+
+   @Override
+   public MassIndexer batchSize(int batchSize) {
+      this.batchSize = batchSize;
+      return this;
+   }
+
+   @Override
+   public MassIndexer purgeAllOnStart(boolean purgeAllOnStart) {
+      this.purgeAllOnStart = purgeAllOnStart;
+      return this;
+   }
+
+   @Override
+   public MassIndexer timeout(long timeout, TimeUnit unit) {
+      this.timeoutMillis = unit.toMillis(timeout);
+      return this;
+   }
+
+   @Override
+   public long start() throws InterruptedException {
+      IndexRebuilder local = new IndexRebuilder(cache, threads, batchSize);
+      rebuilder = local;
+      if (purgeAllOnStart) {
+         invokeRemotely(new MassIndexCommand(cache.getName(), threads, batchSize, true));
+         local.purge();
+      }
+
+      FutureTask<Long> remote = null;
+      if (isDistributed()) {
+         final MassIndexCommand command = new MassIndexCommand(cache.getName(), threads, batchSize, false);
+         remote = new FutureTask<Long>(new Callable<Long>() {
+            @Override
+            public Long call() {
+               return invokeRemotely(command);
+            }
+         });
+         Thread t = new Thread(remote, "MassIndexer-" + cache.getName() + "-remote");
+         t.setDaemon(true);
+         t.start();
+      }
+
+      long indexed = local.rebuild();
+      if (remote != null) {
+         try {
+            indexed += remote.get();
+         } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new CacheException("Could not index the entries of cache " + cache.getName(), cause);
+         }
+      }
+      return indexed;
+   }
+
+   @Override
+   public long getIndexedEntries() {
+      IndexRebuilder local = rebuilder;
+      return local == null ? 0 : local.getIndexedEntries();
+   }
+
+   @Override
+   public long getThroughput() {
+      IndexRebuilder local = rebuilder;
+      return local == null ? 0 : local.getThroughput();
+   }
+
+   private boolean isDistributed() {
+      return cache.getRpcManager() != null && cache.getConfiguration().getCacheMode().isDistributed();
+   }
+
+   /**
+    * Runs the command on all the other nodes, if the cache is distributed.
+    *
+    * @return the number of entries the other nodes indexed
+    */
+   private long invokeRemotely(MassIndexCommand command) {
+      if (!isDistributed()) return 0;
+      RpcManager rpcManager = cache.getRpcManager();
+      Map<Address, Response> responses = rpcManager.invokeRemotely(null, command, ResponseMode.SYNCHRONOUS, timeoutMillis);
+      long indexed = 0;
+      for (Map.Entry<Address, Response> e : responses.entrySet()) {
+         Response response = e.getValue();
+         if (response instanceof SuccessfulResponse) {
+            indexed += (Long) ((SuccessfulResponse) response).getResponseValue();
+         } else if (response instanceof ExceptionResponse) {
+            throw new CacheException("Indexing failed on node " + e.getKey(), ((ExceptionResponse) response).getException());
+         } else if (!(response instanceof RequestIgnoredResponse)) {
+            throw new CacheException("Unexpected response " + response + " from node " + e.getKey() + " to " + command);
+         }
+      }
+      return indexed;
+   }
+}
@@ -52,4 +52,12 @@ public interface Log extends org.infinispan.util.logging.Log {
    @Message(value = "Registering Query interceptor", id = 14003)
    void registeringQueryInterceptor();
 
+   @LogMessage(level = INFO)
+   @Message(value = "Indexed %d entries of cache %s so far, at %d entries per second", id = 14004)
+   void massIndexingProgress(long indexed, String cacheName, long throughput);
+
+   @LogMessage(level = INFO)
+   @Message(value = "Indexed %d entries of cache %s in %d milliseconds, at %d entries per second", id = 14005)
+   void massIndexingCompleted(long indexed, String cacheName, long millis, long throughput);
+
 }
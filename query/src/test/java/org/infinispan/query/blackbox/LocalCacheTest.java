@@ -34,6 +34,7 @@ import org.apache.lucene.search.TermQuery;
 import org.hibernate.search.engine.DocumentBuilderIndexedEntity;
 import org.hibernate.search.engine.SearchFactoryImplementor;
 import org.hibernate.search.spi.SearchFactoryIntegrator;
+import org.hibernate.search.stat.Statistics;
 import org.infinispan.Cache;
 import org.infinispan.config.FluentConfiguration;
 import org.infinispan.factories.ComponentRegistry;
@@ -278,6 +279,23 @@ public class LocalCacheTest extends SingleCacheManagerTest {
       assert cacheQuery.getResultSize() == 1;
    }
 
+   public void testLoadStatistics() throws ParseException {
+      loadTestingData();
+      Statistics statistics = Search.getSearchManager(cache).getSearchFactory().getStatistics();
+      statistics.setStatisticsEnabled(true);
+      try {
+         statistics.clear();
+         queryParser = createQueryParser("name");
+         Query luceneQuery = queryParser.parse("goat");
+         List<Object> found = Search.getSearchManager(cache).getQuery(luceneQuery).list();
+
+         assert found.size() == 2;
+         assert statistics.getObjectsLoadedCount() == 2 : "Loaded " + statistics.getObjectsLoadedCount();
+      } finally {
+         statistics.setStatisticsEnabled(false);
+      }
+   }
+
    public void testClear() {
       loadTestingData();
 
@@ -0,0 +1,139 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.query.clustered;
+
+import org.apache.lucene.queryParser.ParseException;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.infinispan.Cache;
+import org.infinispan.config.FluentConfiguration;
+import org.infinispan.query.CacheQuery;
+import org.infinispan.query.QueryIterator;
+import org.infinispan.query.Search;
+import org.infinispan.query.test.Person;
+import org.infinispan.test.MultipleCacheManagersTest;
+import org.testng.annotations.Test;
+
+import java.util.List;
+
+import static org.infinispan.config.Configuration.CacheMode.DIST_SYNC;
+import static org.infinispan.query.helper.TestQueryHelperFactory.createQueryParser;
+
+/**
+ * Tests queries spanning the indexes of all the nodes of a distributed cache.
+ *
+ * @since 5.1
+ */
+@Test(groups = "functional", testName = "query.clustered.ClusteredQueryTest")
+public class ClusteredQueryTest extends MultipleCacheManagersTest {
+
+   private static final int NUM_PERSONS = 10;
+
+   Cache<String, Person> cache1, cache2, cache3;
+
+   @Override
+   protected void createCacheManagers() throws Throwable {
+      FluentConfiguration cacheCfg = getDefaultClusteredConfig(DIST_SYNC).fluent();
+      cacheCfg
+         .indexing()
+         .indexLocalOnly(false)
+         .addProperty("hibernate.search.default.directory_provider", "ram");
+      List<Cache<String, Person>> caches = createClusteredCaches(3, cacheCfg.build());
+      cache1 = caches.get(0);
+      cache2 = caches.get(1);
+      cache3 = caches.get(2);
+
+      for (int i = 0; i < NUM_PERSONS; i++) {
+         // ages all have two digits, so that they sort the same as strings and as numbers
+         Person person = new Person("Person" + i, i % 2 == 0 ? "Eats grass" : "Eats cheese", 20 + i);
+         caches.get(i % caches.size()).put("key" + i, person);
+      }
+   }
+
+   private CacheQuery createClusteredQuery(Cache<String, Person> cache, String searchString) throws ParseException {
+      Query luceneQuery = createQueryParser("blurb").parse(searchString);
+      return Search.getSearchManager(cache).getClusteredQuery(luceneQuery, Person.class);
+   }
+
+   public void testFindsEntriesOfAllNodes() throws ParseException {
+      CacheQuery query = createClusteredQuery(cache1, "eats");
+      List<Object> found = query.list();
+      assert found.size() == NUM_PERSONS : "Expected " + NUM_PERSONS + " results, but found " + found;
+      for (int i = 0; i < NUM_PERSONS; i++) {
+         assert found.contains(cache1.get("key" + i)) : "Missing key" + i + " in " + found;
+      }
+      assert query.getResultSize() == NUM_PERSONS;
+
+      assert createClusteredQuery(cache3, "cheese").getResultSize() == NUM_PERSONS / 2;
+   }
+
+   public void testSortAndPagination() throws ParseException {
+      CacheQuery query = createClusteredQuery(cache2, "eats")
+            .sort(new Sort(new SortField("age", SortField.STRING)))
+            .firstResult(3)
+            .maxResults(4);
+      List<Object> found = query.list();
+      assert found.size() == 4 : "Expected 4 results, but found " + found;
+      for (int i = 0; i < 4; i++) {
+         assert ((Person) found.get(i)).getAge() == 23 + i : "Unexpected order " + found;
+      }
+
+      query.sort(new Sort(new SortField("age", SortField.STRING, true))).firstResult(8);
+      found = query.list();
+      assert found.size() == 2 : "Expected 2 results, but found " + found;
+      assert ((Person) found.get(0)).getAge() == 21;
+      assert ((Person) found.get(1)).getAge() == 20;
+   }
+
+   public void testProjection() throws ParseException {
+      CacheQuery query = createClusteredQuery(cache3, "grass")
+            .sort(new Sort(new SortField("age", SortField.STRING)))
+            .projection("name", "age");
+      List<Object> found = query.list();
+      assert found.size() == NUM_PERSONS / 2 : "Expected " + NUM_PERSONS / 2 + " results, but found " + found;
+      for (int i = 0; i < found.size(); i++) {
+         Object[] row = (Object[]) found.get(i);
+         assert ("Person" + 2 * i).equals(row[0]) : "Unexpected row " + row[0];
+         assert Integer.valueOf(20 + 2 * i).equals(row[1]) : "Unexpected row " + row[1];
+      }
+   }
+
+   public void testIterator() throws ParseException {
+      CacheQuery query = createClusteredQuery(cache1, "cheese")
+            .sort(new Sort(new SortField("age", SortField.STRING)))
+            .maxResults(3);
+      QueryIterator iterator = query.lazyIterator(2);
+      try {
+         int count = 0;
+         while (iterator.hasNext()) {
+            Person person = (Person) iterator.next();
+            assert person.getAge() == 21 + 2 * count : "Unexpected order " + person;
+            count++;
+         }
+         assert count == 3;
+      } finally {
+         iterator.close();
+      }
+   }
+}
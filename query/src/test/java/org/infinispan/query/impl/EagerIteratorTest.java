@@ -28,6 +28,7 @@ import static org.easymock.EasyMock.expect;
 import static org.easymock.EasyMock.getCurrentArguments;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -78,6 +79,16 @@ public class EagerIteratorTest {
          }
       }).anyTimes();
 
+      expect(cache.getAll(EasyMock.<Collection<String>>anyObject())).andAnswer(new IAnswer<Map<String, String>>() {
+         public Map<String, String> answer() throws Throwable {
+            Map<String, String> found = new HashMap<String, String>();
+            for (Object k : (Collection<?>) getCurrentArguments()[0]) {
+               found.put(k.toString(), dummyResults.get(k.toString()));
+            }
+            return found;
+         }
+      }).anyTimes();
+
       iterator = new EagerIterator(keys, cache, fetchSize);
       EasyMock.replay(cache);
    }
@@ -30,6 +30,8 @@ import org.hibernate.search.query.engine.spi.EntityInfo;
 import org.hibernate.search.query.engine.spi.HSQuery;
 import org.infinispan.AdvancedCache;
 import org.infinispan.query.test.Person;
+import org.infinispan.util.concurrent.AbstractInProcessNotifyingFuture;
+import org.infinispan.util.concurrent.NotifyingFuture;
 import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.BeforeTest;
@@ -37,9 +39,11 @@ import org.testng.annotations.Test;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.easymock.EasyMock.*;
 
@@ -57,6 +61,8 @@ public class LazyIteratorTest {
    Person[] persons; //position zero unused!
    List<String> keyList;
    private DocumentExtractor extractor;
+   AtomicInteger bulkLoads;
+   AtomicInteger asyncBulkLoads;
 
    @BeforeTest
    public void setUpBeforeTest() throws Exception {
@@ -91,6 +97,27 @@ public class LazyIteratorTest {
       
       expect(cache.getClassLoader()).andReturn(Thread.currentThread().getContextClassLoader()).anyTimes();
 
+      bulkLoads = new AtomicInteger();
+      expect(cache.getAll(EasyMock.<Collection<String>>anyObject())).andAnswer(new IAnswer<Map<String, Person>>() {
+         public Map<String, Person> answer() throws Throwable {
+            bulkLoads.incrementAndGet();
+            return lookup((Collection<?>) getCurrentArguments()[0]);
+         }
+      }).anyTimes();
+
+      asyncBulkLoads = new AtomicInteger();
+      expect(cache.getAllAsync(EasyMock.<Collection<String>>anyObject())).andAnswer(new IAnswer<NotifyingFuture<Map<String, Person>>>() {
+         public NotifyingFuture<Map<String, Person>> answer() throws Throwable {
+            asyncBulkLoads.incrementAndGet();
+            final Map<String, Person> found = lookup((Collection<?>) getCurrentArguments()[0]);
+            return new AbstractInProcessNotifyingFuture<Map<String, Person>>() {
+               public Map<String, Person> get() {
+                  return found;
+               }
+            };
+         }
+      }).anyTimes();
+
       extractor = createStrictMock(DocumentExtractor.class);
       HSQuery hsQuery = createMock(HSQuery.class);
       expect(hsQuery.queryDocumentExtractor()).andReturn(extractor).once();
@@ -109,6 +136,14 @@ public class LazyIteratorTest {
       iterator = new LazyIterator(hsQuery, cache, fetchSize);
    }
 
+   private Map<String, Person> lookup(Collection<?> keys) {
+      Map<String, Person> found = new HashMap<String, Person>();
+      for (Object k : keys) {
+         found.put(k.toString(), dummyDataMap.get(k.toString()));
+      }
+      return found;
+   }
+
    @AfterMethod(alwaysRun = false)
    public void tearDown() {
       iterator = null;
@@ -315,6 +350,38 @@ public class LazyIteratorTest {
       iterator.close();
    }
 
+   public void testPrefetch() throws IOException {
+      iterator.close();
+
+      DocumentExtractor windowExtractor = createMock(DocumentExtractor.class);
+      HSQuery hsQuery = createMock(HSQuery.class);
+      expect(hsQuery.queryDocumentExtractor()).andReturn(windowExtractor).once();
+      expect(hsQuery.queryResultSize()).andReturn(dummyDataMap.size()).once();
+      expect(windowExtractor.extract(anyInt())).andAnswer(new IAnswer<EntityInfo>() {
+         public EntityInfo answer() throws Throwable {
+            String keyString = keyList.get((Integer) getCurrentArguments()[0]);
+            return new EntityInfoImpl(Person.class, keyString, keyString, new String[0]);
+         }
+      }).anyTimes();
+      windowExtractor.close();
+      expectLastCall().once();
+      EasyMock.replay(windowExtractor, hsQuery);
+
+      LazyIterator windowIterator = new LazyIterator(hsQuery, cache, 3);
+      try {
+         for (int i = 1; i <= 10; i++) {
+            assert windowIterator.next() == persons[i];
+         }
+         assert !windowIterator.hasNext();
+      } finally {
+         windowIterator.close();
+      }
+      // the first window is loaded on demand, the three others while the previous one was being consumed
+      assert bulkLoads.get() == 1 : "Expected 1 synchronous bulk load but was " + bulkLoads.get();
+      assert asyncBulkLoads.get() == 3 : "Expected 3 prefetches but was " + asyncBulkLoads.get();
+      EasyMock.verify(windowExtractor);
+   }
+
    public void testPreviousIndex() {
       iterator.first();
       assert iterator.previousIndex() == -1;
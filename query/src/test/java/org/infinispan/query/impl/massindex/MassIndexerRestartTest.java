@@ -0,0 +1,101 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.query.impl.massindex;
+
+import org.apache.lucene.queryParser.ParseException;
+import org.apache.lucene.search.Query;
+import org.infinispan.Cache;
+import org.infinispan.config.Configuration;
+import org.infinispan.context.Flag;
+import org.infinispan.manager.EmbeddedCacheManager;
+import org.infinispan.query.Search;
+import org.infinispan.query.test.Person;
+import org.infinispan.test.AbstractInfinispanTest;
+import org.infinispan.test.TestingUtil;
+import org.infinispan.test.fwk.TestCacheManagerFactory;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Optional;
+import org.testng.annotations.Parameters;
+import org.testng.annotations.Test;
+
+import static org.infinispan.query.helper.TestQueryHelperFactory.createQueryParser;
+
+/**
+ * Tests that rebuilding the indexes of a node which has just been restarted removes the documents its persistent
+ * indexes still hold for entries which are gone, although the node did not know their type yet.
+ *
+ * @since 5.1
+ */
+@Test(groups = "functional", testName = "query.impl.massindex.MassIndexerRestartTest")
+public class MassIndexerRestartTest extends AbstractInfinispanTest {
+
+   private String indexDirectory;
+   private EmbeddedCacheManager cacheManager;
+
+   @BeforeClass
+   @Parameters({"basedir"})
+   protected void setUpTempDir(@Optional("/tmp") String basedir) {
+      indexDirectory = TestingUtil.tmpDirectory(basedir, this);
+      TestingUtil.recursiveFileRemove(indexDirectory);
+   }
+
+   @AfterClass
+   protected void clearTempDir() {
+      TestingUtil.killCacheManagers(cacheManager);
+      TestingUtil.recursiveFileRemove(indexDirectory);
+   }
+
+   private Cache<String, Person> startCache() {
+      Configuration cfg = new Configuration().fluent()
+         .indexing()
+            .addProperty("hibernate.search.default.directory_provider", "filesystem")
+            .addProperty("hibernate.search.default.indexBase", indexDirectory)
+         .build();
+      cacheManager = TestCacheManagerFactory.createCacheManager(cfg, true);
+      return cacheManager.getCache();
+   }
+
+   private int countPersons(Cache<String, Person> cache) throws ParseException {
+      Query luceneQuery = createQueryParser("blurb").parse("eats");
+      return Search.getSearchManager(cache).getQuery(luceneQuery, Person.class).getResultSize();
+   }
+
+   public void testPurgeRemovesStaleDocumentsAfterRestart() throws Exception {
+      Cache<String, Person> cache = startCache();
+      for (int i = 0; i < 3; i++) {
+         cache.put("key" + i, new Person("Person" + i, "Eats grass", 20 + i));
+      }
+      assert countPersons(cache) == 3;
+      TestingUtil.killCacheManagers(cacheManager);
+
+      // the entries are gone, but not their documents
+      cache = startCache();
+      cache.getAdvancedCache().withFlags(Flag.SKIP_INDEXING).put("key0", new Person("Person0", "Eats grass", 20));
+
+      long indexed = Search.getSearchManager(cache).getMassIndexer().start();
+      assert indexed == 1 : "Expected 1 entry to be indexed, but were " + indexed;
+      int count = countPersons(cache);
+      assert count == 1 : "Expected the stale documents to be purged, but found " + count + " documents";
+   }
+}
@@ -0,0 +1,102 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.query.impl.massindex;
+
+import org.apache.lucene.queryParser.ParseException;
+import org.apache.lucene.search.Query;
+import org.infinispan.Cache;
+import org.infinispan.config.FluentConfiguration;
+import org.infinispan.context.Flag;
+import org.infinispan.query.CacheQuery;
+import org.infinispan.query.MassIndexer;
+import org.infinispan.query.Search;
+import org.infinispan.query.test.Person;
+import org.infinispan.test.MultipleCacheManagersTest;
+import org.testng.annotations.Test;
+
+import java.util.List;
+
+import static org.infinispan.config.Configuration.CacheMode.DIST_SYNC;
+import static org.infinispan.query.helper.TestQueryHelperFactory.createQueryParser;
+
+/**
+ * Tests rebuilding the indexes of a distributed cache from its contents.
+ *
+ * @since 5.1
+ */
+@Test(groups = "functional", testName = "query.impl.massindex.MassIndexerTest")
+public class MassIndexerTest extends MultipleCacheManagersTest {
+
+   private static final int NUM_PERSONS = 50;
+
+   Cache<String, Person> cache1, cache2;
+
+   @Override
+   protected void createCacheManagers() throws Throwable {
+      FluentConfiguration cacheCfg = getDefaultClusteredConfig(DIST_SYNC).fluent();
+      cacheCfg
+         .indexing()
+         .indexLocalOnly(false)
+         .addProperty("hibernate.search.default.directory_provider", "ram");
+      List<Cache<String, Person>> caches = createClusteredCaches(2, cacheCfg.build());
+      cache1 = caches.get(0);
+      cache2 = caches.get(1);
+   }
+
+   private int countPersons(Cache<String, Person> cache) throws ParseException {
+      Query luceneQuery = createQueryParser("blurb").parse("eats");
+      CacheQuery query = Search.getSearchManager(cache).getClusteredQuery(luceneQuery, Person.class);
+      return query.getResultSize();
+   }
+
+   private int countLocalPersons(Cache<String, Person> cache) throws ParseException {
+      Query luceneQuery = createQueryParser("blurb").parse("eats");
+      return Search.getSearchManager(cache).getQuery(luceneQuery, Person.class).getResultSize();
+   }
+
+   public void testRebuildsIndexes() throws Exception {
+      for (int i = 0; i < NUM_PERSONS; i++) {
+         Cache<String, Person> cache = i % 2 == 0 ? cache1 : cache2;
+         cache.getAdvancedCache().withFlags(Flag.SKIP_INDEXING)
+               .put("key" + i, new Person("Person" + i, "Eats grass", 20 + i));
+      }
+      assert countPersons(cache1) == 0;
+
+      MassIndexer massIndexer = Search.getSearchManager(cache2).getMassIndexer().threads(3).batchSize(7);
+      long indexed = massIndexer.start();
+      // with two nodes and two owners, each node owns, and indexes, every entry
+      int expected = NUM_PERSONS * Math.min(cache1.getConfiguration().getNumOwners(), 2);
+      assert indexed == expected : "Expected " + expected + " entries to be indexed, but were " + indexed;
+      assert massIndexer.getIndexedEntries() <= NUM_PERSONS;
+      assert countPersons(cache1) == NUM_PERSONS;
+      // backup owners can answer for their entries once the primary owner fails
+      if (expected == 2 * NUM_PERSONS) {
+         assert countLocalPersons(cache1) == NUM_PERSONS;
+         assert countLocalPersons(cache2) == NUM_PERSONS;
+      }
+
+      // rebuilding again does not index the entries twice
+      Search.getSearchManager(cache1).getMassIndexer().purgeAllOnStart(false).start();
+      assert countPersons(cache2) == NUM_PERSONS;
+   }
+}
@@ -268,6 +268,11 @@ abstract class AbstractProtocolDecoder[K, V <: CacheValue](transport: NettyTrans
       super.channelOpen(ctx, e)
    }
 
+   /**
+    * Returns whether the decoder is waiting for a new request, without any bytes of a previous one left over.
+    */
+   private[core] def isIdle: Boolean = getState == DECODE_HEADER && internalBuffer.readableBytes == 0
+
    def checkpointTo(state: DecoderState): AnyRef = {
       checkpoint(state)
       null // For netty's decoder that mandates a return
@@ -25,7 +25,7 @@ package org.infinispan.server.core
 import java.net.InetSocketAddress
 import org.infinispan.manager.EmbeddedCacheManager
 import org.infinispan.server.core.Main._
-import transport.NettyTransport
+import transport.{ExecutionStage, NettyTransport}
 import org.infinispan.util.{ClusterIdGenerator, TypedProperties, FileLookupFactory}
 import logging.Log
 import org.infinispan.jmx.{JmxUtil, ResourceDMBean}
@@ -42,6 +42,7 @@ abstract class AbstractProtocolServer(threadNamePrefix: String) extends Protocol
    protected var host: String = _
    protected var port: Int = _
    protected var workerThreads: Int = _
+   protected var executionThreads: Int = _
    protected var transport: NettyTransport = _
    protected var cacheManager: EmbeddedCacheManager = _
    protected var versionGenerator: ClusterIdGenerator = _
@@ -74,6 +75,10 @@ abstract class AbstractProtocolServer(threadNamePrefix: String) extends Protocol
 
          val tcpNoDelay = typedProps.getBooleanProperty(PROP_KEY_TCP_NO_DELAY, TCP_NO_DELAY_DEFAULT, true)
 
+         this.executionThreads = typedProps.getIntProperty(PROP_KEY_EXECUTION_THREADS, EXECUTION_THREADS_DEFAULT, true)
+         if (executionThreads < 0)
+            throw new IllegalArgumentException("Execution threads can't be lower than 0: " + executionThreads)
+
          val sendBufSize = typedProps.getIntProperty(PROP_KEY_SEND_BUF_SIZE, SEND_BUF_SIZE_DEFAULT, true)
          if (sendBufSize < 0) {
             throw new IllegalArgumentException("Send buffer size can't be lower than 0: " + sendBufSize)
@@ -86,8 +91,8 @@ abstract class AbstractProtocolServer(threadNamePrefix: String) extends Protocol
 
          if (isDebugEnabled) {
             debugf("Starting server with basic settings: host=%s, port=%d, masterThreads=%s, workerThreads=%d, " +
-                  "idleTimeout=%d, tcpNoDelay=%b, sendBufSize=%d, recvBufSize=%d", host, port,
-                  masterThreads, workerThreads, idleTimeout, tcpNoDelay, sendBufSize, recvBufSize)
+                  "executionThreads=%d, idleTimeout=%d, tcpNoDelay=%b, sendBufSize=%d, recvBufSize=%d", host, port,
+                  masterThreads, workerThreads, executionThreads, idleTimeout, tcpNoDelay, sendBufSize, recvBufSize)
          }
 
          // Start default cache
@@ -103,9 +108,23 @@ abstract class AbstractProtocolServer(threadNamePrefix: String) extends Protocol
    def startTransport(idleTimeout: Int, tcpNoDelay: Boolean, sendBufSize: Int,
          recvBufSize: Int, typedProps: TypedProperties) {
       val address = new InetSocketAddress(host, port)
+      val executionStage =
+         if (executionThreads > 0) {
+            val maxChannelMemory = typedProps.getLongProperty(
+               PROP_KEY_EXECUTION_MAX_CHANNEL_MEMORY, EXECUTION_MAX_CHANNEL_MEMORY_DEFAULT, true)
+            val maxTotalMemory = typedProps.getLongProperty(
+               PROP_KEY_EXECUTION_MAX_TOTAL_MEMORY, EXECUTION_MAX_TOTAL_MEMORY_DEFAULT, true)
+            val inlineReads = typedProps.getBooleanProperty(
+               PROP_KEY_EXECUTION_INLINE_READS, EXECUTION_INLINE_READS_DEFAULT, true)
+            if (isDebugEnabled)
+               debugf("Executing requests with %d threads: maxChannelMemory=%d, maxTotalMemory=%d, inlineReads=%b",
+                  executionThreads, maxChannelMemory, maxTotalMemory, inlineReads)
+            Some(new ExecutionStage(this, executionThreads, maxChannelMemory, maxTotalMemory, inlineReads, threadNamePrefix))
+         } else None
+      val directBuffers = typedProps.getBooleanProperty(PROP_KEY_DIRECT_BUFFERS, DIRECT_BUFFERS_DEFAULT, true)
       transport = new NettyTransport(this, getEncoder, address, workerThreads,
          idleTimeout, threadNamePrefix, tcpNoDelay, sendBufSize, recvBufSize,
-         isGlobalStatsEnabled)
+         isGlobalStatsEnabled, executionStage, directBuffers)
 
       if (isGlobalStatsEnabled) {
          val globalCfg = cacheManager.getGlobalConfiguration
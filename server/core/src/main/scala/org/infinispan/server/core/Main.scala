@@ -60,6 +60,11 @@ object Main extends Log {
    val PROP_KEY_TOPOLOGY_STATE_TRANSFER = "infinispan.server.topology.state_transfer"
    val PROP_KEY_TOPOLOGY_UPDATE_TIMEOUT = "infinispan.server.topology.update_timeout"
    val PROP_KEY_CACHE_MANAGER_CLASS = "infinispan.server.cache_manager_class"
+   val PROP_KEY_EXECUTION_THREADS = "infinispan.server.execution_threads"
+   val PROP_KEY_EXECUTION_MAX_CHANNEL_MEMORY = "infinispan.server.execution_max_channel_memory"
+   val PROP_KEY_EXECUTION_MAX_TOTAL_MEMORY = "infinispan.server.execution_max_total_memory"
+   val PROP_KEY_EXECUTION_INLINE_READS = "infinispan.server.execution_inline_reads"
+   val PROP_KEY_DIRECT_BUFFERS = "infinispan.server.direct_buffers"
    val HOST_DEFAULT = "127.0.0.1"
    val WORKER_THREADS_DEFAULT = 20 * Runtime.getRuntime.availableProcessors()
    val IDLE_TIMEOUT_DEFAULT = -1
@@ -70,6 +75,11 @@ object Main extends Log {
    val TOPO_REPL_TIMEOUT_DEFAULT = 10000L
    val TOPO_UPDATE_TIMEOUT_DEFAULT = 30000L
    val TOPO_STATE_TRANSFER_DEFAULT = true
+   val EXECUTION_THREADS_DEFAULT = 0
+   val EXECUTION_MAX_CHANNEL_MEMORY_DEFAULT = 1024L * 1024
+   val EXECUTION_MAX_TOTAL_MEMORY_DEFAULT = 64L * 1024 * 1024
+   val EXECUTION_INLINE_READS_DEFAULT = true
+   val DIRECT_BUFFERS_DEFAULT = false
 
    /**
     * Server properties.  This object holds all of the required
@@ -183,7 +193,7 @@ object Main extends Log {
    }
 
    private def processCommandLine(args: Array[String]) {
-      val sopts = "-:hD:Vp:l:m:t:c:r:i:n:s:e:o:x:k:u:a:f:d:"
+      val sopts = "-:hD:Vp:l:m:t:c:r:i:n:s:e:o:x:k:u:a:f:d:g:"
       val lopts = Array(
          new LongOpt("help", LongOpt.NO_ARGUMENT, null, 'h'),
          new LongOpt("version", LongOpt.NO_ARGUMENT, null, 'V'),
@@ -202,7 +212,8 @@ object Main extends Log {
          new LongOpt("topo_repl_timeout", LongOpt.REQUIRED_ARGUMENT, null, 'u'),
          new LongOpt("topo_state_transfer", LongOpt.REQUIRED_ARGUMENT, null, 'a'),
          new LongOpt("topo_update_time", LongOpt.REQUIRED_ARGUMENT, null, 'd'),
-         new LongOpt("cache_manager_class", LongOpt.REQUIRED_ARGUMENT, null, 'f')
+         new LongOpt("cache_manager_class", LongOpt.REQUIRED_ARGUMENT, null, 'f'),
+         new LongOpt("execution_threads", LongOpt.REQUIRED_ARGUMENT, null, 'g')
          )
       val getopt = new Getopt("startServer", args, sopts, lopts)
       var code: Int = 0
@@ -232,6 +243,7 @@ object Main extends Log {
             case 'a' => props.setProperty(PROP_KEY_TOPOLOGY_STATE_TRANSFER, getopt.getOptarg)
             case 'd' => props.setProperty(PROP_KEY_TOPOLOGY_UPDATE_TIMEOUT, getopt.getOptarg)
             case 'f' => props.setProperty(PROP_KEY_CACHE_MANAGER_CLASS, getopt.getOptarg)
+            case 'g' => props.setProperty(PROP_KEY_EXECUTION_THREADS, getopt.getOptarg)
             case 'D' => {
                val arg = getopt.getOptarg
                var name = ""
@@ -314,6 +326,11 @@ object Main extends Log {
       println
       println("    -f, --cache_manager_class=<clazz>  Cache manager class name to be used instead of the default one (it has to extend org.infinispan.manager.EmbeddedCacheManager).")
       println
+      println("    -g, --execution_threads=<num>      Number of threads invoking the cache on behalf of decoded requests (default: 0).")
+      println("                                       Requests from a connection are still executed in order, but a slow operation no longer")
+      println("                                       stalls the other connections served by the same worker thread. Passing 0 executes")
+      println("                                       requests on the worker threads.")
+      println
       println("    -D<name>[=<value>]                 Set a system property")
       println
       System.exit(0)
@@ -26,6 +26,7 @@ import org.infinispan.manager.{EmbeddedCacheManager}
 import java.util.Properties
 import org.jboss.netty.handler.codec.oneone.OneToOneEncoder
 import org.jboss.netty.handler.codec.replay.ReplayingDecoder
+import org.jboss.netty.buffer.ChannelBuffer
 
 /**
  * Represents a protocol compliant server.
@@ -65,4 +66,12 @@ trait ProtocolServer {
     * This method cannot return null.
     */
    def getDecoder: ReplayingDecoder[DecoderState]
+
+   /**
+    * Returns whether the given message holds exactly one request, which only reads data held locally. If requests are
+    * executed by a separate pool of threads, such requests are still executed by the thread that read them, as handing
+    * them over would take longer than executing them. The message must not be modified. By default, no request is
+    * considered to be such a fast read.
+    */
+   def isFastRead(buffer: ChannelBuffer): Boolean = false
 }
@@ -0,0 +1,149 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.server.core.transport
+
+import org.jboss.netty.channel._
+import org.jboss.netty.handler.execution.{ChannelEventRunnable, OrderedMemoryAwareThreadPoolExecutor}
+import org.jboss.netty.buffer.ChannelBuffer
+import org.infinispan.server.core.{AbstractProtocolDecoder, ProtocolServer}
+import org.infinispan.server.core.logging.Log
+import java.util.concurrent.{ThreadFactory, TimeUnit}
+import java.util.concurrent.atomic.{AtomicInteger, AtomicLong}
+
+/**
+ * Execution stage sitting in front of the decoder, so that requests are decoded and executed against the cache by a
+ * bounded pool of threads rather than by the Netty worker thread that read them. Otherwise, a single slow operation,
+ * i.e. waiting for a lock, loading from a cache store or replicating synchronously, stalls every other connection
+ * served by the same worker.
+ *
+ * Requests coming from the same connection are still executed one after the other, in the order they were received.
+ * The amount of data queued is bounded, both per connection and overall, and once those limits are reached the
+ * connections are not read any further until the pool catches up.
+ *
+ * Requests that the protocol server considers fast, see {@link ProtocolServer#isFastRead}, are executed by the worker
+ * thread as long as nothing is queued for their connection, as handing them over would take longer than executing
+ * them.
+ *
+ * @since 5.1
+ */
+class ExecutionStage(server: ProtocolServer, val threads: Int, maxChannelMemory: Long, maxTotalMemory: Long,
+                     inlineReads: Boolean, threadNamePrefix: String) extends Log {
+
+   private val executor = new OrderedMemoryAwareThreadPoolExecutor(threads, maxChannelMemory, maxTotalMemory,
+         30, TimeUnit.SECONDS, new ThreadFactory {
+      private val counter = new AtomicInteger
+      override def newThread(r: Runnable): Thread = {
+         val t = new Thread(r, threadNamePrefix + "Executor-" + counter.incrementAndGet)
+         t.setDaemon(true)
+         t
+      }
+   })
+
+   private val queued = new AtomicInteger
+   private val executed, executedInline = new AtomicLong
+   private val totalWaitNanos, maxWaitNanos = new AtomicLong
+
+   /**
+    * Creates the handler for a new connection
+    */
+   def newHandler: ChannelUpstreamHandler = new ExecutionHandler
+
+   def stop {
+      executor.shutdownNow
+   }
+
+   def getQueueDepth: Int = queued.get
+
+   def getExecutedCount: Long = executed.get
+
+   def getExecutedInlineCount: Long = executedInline.get
+
+   def getAverageWaitNanos: Long = {
+      val count = executed.get
+      if (count == 0) 0 else totalWaitNanos.get / count
+   }
+
+   def getMaxWaitNanos: Long = maxWaitNanos.get
+
+   def resetStatistics {
+      executed.set(0)
+      executedInline.set(0)
+      totalWaitNanos.set(0)
+      maxWaitNanos.set(0)
+   }
+
+   private def recordWait(nanos: Long) {
+      executed.incrementAndGet
+      totalWaitNanos.addAndGet(nanos)
+      var max = maxWaitNanos.get
+      while (nanos > max && !maxWaitNanos.compareAndSet(max, nanos)) max = maxWaitNanos.get
+   }
+
+   /**
+    * One instance per connection, so that it knows how many events of its connection are queued.
+    */
+   private class ExecutionHandler extends ChannelUpstreamHandler {
+      private val pending = new AtomicInteger
+
+      override def handleUpstream(ctx: ChannelHandlerContext, e: ChannelEvent) {
+         if (canExecuteInline(ctx, e)) {
+            executedInline.incrementAndGet
+            ctx.sendUpstream(e)
+         } else {
+            pending.incrementAndGet
+            queued.incrementAndGet
+            val enqueued = System.nanoTime
+            executor.execute(new ChannelEventRunnable(ctx, e) {
+               override def run {
+                  queued.decrementAndGet
+                  recordWait(System.nanoTime - enqueued)
+                  try {
+                     super.run
+                  } finally {
+                     pending.decrementAndGet
+                  }
+               }
+            })
+         }
+      }
+
+      private def canExecuteInline(ctx: ChannelHandlerContext, e: ChannelEvent): Boolean = {
+         if (!inlineReads || pending.get != 0) return false
+         e match {
+            case m: MessageEvent => m.getMessage match {
+               // the decoder must not hold part of a previous request, or the message would not start with a header
+               case b: ChannelBuffer => isDecoderIdle(ctx) && server.isFastRead(b)
+               case _ => false
+            }
+            case _ => false
+         }
+      }
+
+      private def isDecoderIdle(ctx: ChannelHandlerContext): Boolean = {
+         ctx.getPipeline.get("decoder") match {
+            case d: AbstractProtocolDecoder[_, _] => d.isIdle
+            case _ => false
+         }
+      }
+   }
+}
@@ -31,18 +31,26 @@ import org.jboss.netty.util.{HashedWheelTimer, Timer}
  * Pipeline factory for Netty based channels. For each pipeline created, a new decoder is created which means that
  * each incoming connection deals with a unique decoder instance. Since the encoder does not maintain any state,
  * a single encoder instance is shared by all incoming connections, if and only if, the protocol mandates an encoder.
+ * If an execution stage is given, its handler is placed ahead of the decoder so that decoding and executing requests
+ * happens off the worker threads.
  *
  * @author Galder Zamarreño
  * @since 4.1
  */
 class NettyChannelPipelineFactory(server: ProtocolServer, encoder: ChannelDownstreamHandler,
-                                  transport: NettyTransport, idleTimeout: Int)
+                                  transport: NettyTransport, idleTimeout: Int,
+                                  executionStage: Option[ExecutionStage])
       extends ChannelPipelineFactory {
 
+   def this(server: ProtocolServer, encoder: ChannelDownstreamHandler, transport: NettyTransport, idleTimeout: Int) =
+      this(server, encoder, transport, idleTimeout, None)
+
    private var timer: Timer = _
 
    override def getPipeline: ChannelPipeline = {
       val pipeline = Channels.pipeline
+      // Requests are decoded and executed by the execution stage's threads, if any, rather than the worker thread
+      executionStage.foreach(stage => pipeline.addLast("executionStage", stage.newHandler))
       pipeline.addLast("decoder", server.getDecoder)
       if (encoder != null)
          pipeline.addLast("encoder", encoder)
@@ -34,11 +34,11 @@ import org.infinispan.util.logging.LogFactory
 import org.jboss.netty.logging.{InternalLoggerFactory, Log4JLoggerFactory}
 import org.infinispan.server.core.logging.Log
 import java.util.concurrent.atomic.AtomicLong
-import org.infinispan.jmx.annotations.{ManagedAttribute, MBean}
+import org.infinispan.jmx.annotations.{ManagedOperation, ManagedAttribute, MBean}
 import org.jboss.netty.channel.{WriteCompletionEvent, MessageEvent, ChannelDownstreamHandler}
-import org.jboss.netty.buffer.ChannelBuffer
+import org.jboss.netty.buffer.{DirectChannelBufferFactory, ChannelBuffer}
 import java.net.{InetSocketAddress, SocketAddress}
-import org.rhq.helpers.pluginAnnotations.agent.{DataType, DisplayType, MeasurementType, Metric}
+import org.rhq.helpers.pluginAnnotations.agent.{Units, Operation, DataType, DisplayType, MeasurementType, Metric}
 
 /**
  * A Netty based transport.
@@ -50,12 +50,20 @@ import org.rhq.helpers.pluginAnnotations.agent.{DataType, DisplayType, Measureme
 class NettyTransport(server: ProtocolServer, encoder: ChannelDownstreamHandler,
                      address: InetSocketAddress, workerThreads: Int,
                      idleTimeout: Int, threadNamePrefix: String, tcpNoDelay: Boolean,
-                     sendBufSize: Int, recvBufSize: Int, isGlobalStatsEnabled: Boolean)
+                     sendBufSize: Int, recvBufSize: Int, isGlobalStatsEnabled: Boolean,
+                     executionStage: Option[ExecutionStage], directBuffers: Boolean)
         extends Transport with Log {
 
+   def this(server: ProtocolServer, encoder: ChannelDownstreamHandler, address: InetSocketAddress, workerThreads: Int,
+            idleTimeout: Int, threadNamePrefix: String, tcpNoDelay: Boolean, sendBufSize: Int, recvBufSize: Int,
+            isGlobalStatsEnabled: Boolean) =
+      this(server, encoder, address, workerThreads, idleTimeout, threadNamePrefix, tcpNoDelay, sendBufSize,
+         recvBufSize, isGlobalStatsEnabled, None, false)
+
+
    private val serverChannels = new DefaultChannelGroup(threadNamePrefix + "-Channels")
    val acceptedChannels = new DefaultChannelGroup(threadNamePrefix + "-Accepted")
-   private val pipeline = new NettyChannelPipelineFactory(server, encoder, this, idleTimeout)
+   private val pipeline = new NettyChannelPipelineFactory(server, encoder, this, idleTimeout, executionStage)
    private val masterExecutor = Executors.newCachedThreadPool
    private val workerExecutor = Executors.newCachedThreadPool
    private val factory = new NioServerSocketChannelFactory(masterExecutor, workerExecutor, workerThreads)
@@ -91,6 +99,9 @@ class NettyTransport(server: ProtocolServer, encoder: ChannelDownstreamHandler,
          bootstrap.setOption("child.sendBufferSize", sendBufSize) // Sets server side send buffer
       if (recvBufSize > 0)
          bootstrap.setOption("receiveBufferSize", recvBufSize) // Sets server side receive buffer
+      // Buffers get carved out of big preallocated chunks of direct memory, which the socket can read from directly
+      if (directBuffers)
+         bootstrap.setOption("child.bufferFactory", DirectChannelBufferFactory.getInstance)
 
       val ch = bootstrap.bind(address)
       serverChannels.add(ch)
@@ -131,6 +142,7 @@ class NettyTransport(server: ProtocolServer, encoder: ChannelDownstreamHandler,
          }
       }
       pipeline.stop
+      executionStage.foreach(_.stop)
       if (isDebugEnabled) debug("Channel group completely closed, release external resources");
       factory.releaseExternalResources();
    }
@@ -173,6 +185,38 @@ class NettyTransport(server: ProtocolServer, encoder: ChannelDownstreamHandler,
    @Metric(displayName = "Receive buffer size", dataType = DataType.TRAIT, displayType = DisplayType.SUMMARY)
    def getReceiveBufferSize = recvBufSize.toString
 
+   @ManagedAttribute(description = "Returns whether buffers are allocated from preallocated direct memory.")
+   @Metric(displayName = "Direct buffers", dataType = DataType.TRAIT, displayType = DisplayType.SUMMARY)
+   def getDirectBuffers = directBuffers.toString
+
+   @ManagedAttribute(description = "Returns the number of threads executing requests off the worker threads.")
+   @Metric(displayName = "Number of execution threads", dataType = DataType.TRAIT, displayType = DisplayType.SUMMARY)
+   def getNumberExecutionThreads = executionStage.map(_.threads).getOrElse(0).toString
+
+   @ManagedAttribute(description = "Returns the number of requests waiting to be executed.")
+   @Metric(displayName = "Execution queue depth", displayType = DisplayType.SUMMARY)
+   def getExecutionQueueDepth = executionStage.map(_.getQueueDepth).getOrElse(0).toString
+
+   @ManagedAttribute(description = "Returns the number of requests executed by the execution threads.")
+   @Metric(displayName = "Number of executed requests", measurementType = MeasurementType.TRENDSUP, displayType = DisplayType.SUMMARY)
+   def getExecutedRequests = executionStage.map(_.getExecutedCount).getOrElse(0L).toString
+
+   @ManagedAttribute(description = "Returns the number of local reads executed by the worker threads directly.")
+   @Metric(displayName = "Number of requests executed inline", measurementType = MeasurementType.TRENDSUP, displayType = DisplayType.SUMMARY)
+   def getExecutedInlineRequests = executionStage.map(_.getExecutedInlineCount).getOrElse(0L).toString
+
+   @ManagedAttribute(description = "Returns the average time, in nanoseconds, requests waited before being executed.")
+   @Metric(displayName = "Average execution wait time", units = Units.NANOSECONDS, displayType = DisplayType.SUMMARY)
+   def getAverageExecutionWaitTime = executionStage.map(_.getAverageWaitNanos).getOrElse(0L).toString
+
+   @ManagedAttribute(description = "Returns the maximum time, in nanoseconds, a request waited before being executed.")
+   @Metric(displayName = "Maximum execution wait time", units = Units.NANOSECONDS, displayType = DisplayType.SUMMARY)
+   def getMaxExecutionWaitTime = executionStage.map(_.getMaxWaitNanos).getOrElse(0L).toString
+
+   @ManagedOperation(description = "Resets the execution statistics")
+   @Operation(displayName = "Reset execution statistics")
+   def resetExecutionStatistics = executionStage.foreach(_.resetStatistics)
+
    private[core] def updateTotalBytesWritten(e: WriteCompletionEvent) =
       incrementTotalBytesWritten(totalBytesWritten, e)
 
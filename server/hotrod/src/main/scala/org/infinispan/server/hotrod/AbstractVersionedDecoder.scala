@@ -52,6 +52,16 @@ abstract class AbstractVersionedDecoder {
     */
    def readParameters(header: HotRodHeader, buffer: ChannelBuffer): (RequestParameters, Boolean)
 
+   /**
+    * Read the keys of an operation on several keys.
+    */
+   def readKeys(header: HotRodHeader, buffer: ChannelBuffer): java.util.List[ByteArrayKey]
+
+   /**
+    * Read the entries of an operation storing several entries, along with the parameters shared by all of them.
+    */
+   def readEntries(header: HotRodHeader, buffer: ChannelBuffer): (RequestParameters, Seq[(ByteArrayKey, Array[Byte])])
+
    /**
     * Read the value part of the operation.
     */
@@ -77,6 +87,16 @@ abstract class AbstractVersionedDecoder {
     */
    def createGetResponse(header: HotRodHeader, v: CacheValue): AnyRef
 
+   /**
+    * Create a response for a get of several keys, holding the entries found.
+    */
+   def createGetAllResponse(header: HotRodHeader, entries: java.util.Map[ByteArrayKey, CacheValue]): AnyRef
+
+   /**
+    * Create a response for an operation storing or removing several entries, which never returns previous values.
+    */
+   def createUpdateAllResponse(header: HotRodHeader): AnyRef
+
    /**
     * Handle a protocol specific header reading.
     */
@@ -46,14 +46,35 @@ import transport.NettyTransport
  * @author Galder Zamarreño
  * @since 4.1
  */
-object Decoder10 extends AbstractVersionedDecoder with Log {
+class Decoder10 extends AbstractVersionedDecoder with Log {
    import OperationResponse._
    import ProtocolFlag._
    type SuitableHeader = HotRodHeader
 
    override def readHeader(buffer: ChannelBuffer, messageId: Long): (HotRodHeader, Boolean) = {
       val streamOp = buffer.readUnsignedByte
-      val (op, endOfOp) = streamOp match {
+      val (op, endOfOp) = readOperation(streamOp, messageId)
+      if (isTraceEnabled) trace("Operation code: %d has been matched to %s", streamOp, op)
+      
+      val cacheName = readString(buffer)
+      val flag = readUnsignedInt(buffer) match {
+         case 0 => NoFlag
+         case 1 => ForceReturnPreviousValue
+      }
+      val clientIntelligence = buffer.readUnsignedByte
+      val topologyId = readUnsignedInt(buffer)
+      // TODO: Use these once transaction support is added
+      val txId = buffer.readByte
+      if (txId != 0) throw new UnsupportedOperationException("Transaction types other than 0 (NO_TX) is not supported at this stage.  Saw TX_ID of " + txId)
+
+      (new HotRodHeader(op, messageId, cacheName, flag, clientIntelligence, topologyId, this), endOfOp)
+   }
+
+   /**
+    * Matches the operation code with the operation, and whether the operation ends with the header.
+    */
+   protected def readOperation(streamOp: Short, messageId: Long): (Enumeration#Value, Boolean) = {
+      streamOp match {
          case 0x01 => (PutRequest, false)
          case 0x03 => (GetRequest, false)
          case 0x05 => (PutIfAbsentRequest, false)
@@ -69,20 +90,6 @@ object Decoder10 extends AbstractVersionedDecoder with Log {
          case 0x19 => (BulkGetRequest, false)
          case _ => throw new HotRodUnknownOperationException("Unknown operation: " + streamOp, messageId)
       }
-      if (isTraceEnabled) trace("Operation code: %d has been matched to %s", streamOp, op)
-      
-      val cacheName = readString(buffer)
-      val flag = readUnsignedInt(buffer) match {
-         case 0 => NoFlag
-         case 1 => ForceReturnPreviousValue
-      }
-      val clientIntelligence = buffer.readUnsignedByte
-      val topologyId = readUnsignedInt(buffer)
-      // TODO: Use these once transaction support is added
-      val txId = buffer.readByte
-      if (txId != 0) throw new UnsupportedOperationException("Transaction types other than 0 (NO_TX) is not supported at this stage.  Saw TX_ID of " + txId)
-
-      (new HotRodHeader(op, messageId, cacheName, flag, clientIntelligence, topologyId, this), endOfOp)
    }
 
    override def readKey(h: HotRodHeader, buffer: ChannelBuffer): (ByteArrayKey, Boolean) = {
@@ -115,6 +122,21 @@ object Decoder10 extends AbstractVersionedDecoder with Log {
       }
    }
 
+   override def readKeys(h: HotRodHeader, buffer: ChannelBuffer): java.util.List[ByteArrayKey] = {
+      val count = readUnsignedInt(buffer)
+      val keys = new java.util.ArrayList[ByteArrayKey](count)
+      for (i <- 0 until count) keys.add(readKey(buffer))
+      keys
+   }
+
+   override def readEntries(h: HotRodHeader, buffer: ChannelBuffer): (RequestParameters, Seq[(ByteArrayKey, Array[Byte])]) = {
+      val lifespan = readLifespanOrMaxIdle(buffer)
+      val maxIdle = readLifespanOrMaxIdle(buffer)
+      val count = readUnsignedInt(buffer)
+      val entries = for (i <- 0 until count) yield (readKey(buffer), readRangedBytes(buffer))
+      (new RequestParameters(-1, lifespan, maxIdle, -1), entries)
+   }
+
    private def readLifespanOrMaxIdle(buffer: ChannelBuffer): Int = {
       val stream = readUnsignedInt(buffer)
       if (stream <= 0) -1 else stream
@@ -154,6 +176,12 @@ object Decoder10 extends AbstractVersionedDecoder with Log {
             h.topologyId, None, 0)
    }
 
+   override def createGetAllResponse(h: HotRodHeader, entries: java.util.Map[ByteArrayKey, CacheValue]): AnyRef =
+      new GetAllResponse(h.messageId, h.cacheName, h.clientIntel, GetAllResponse, Success, h.topologyId, entries)
+
+   override def createUpdateAllResponse(h: HotRodHeader): AnyRef =
+      new Response(h.messageId, h.cacheName, h.clientIntel, toResponse(h.op), Success, h.topologyId)
+
    override def customReadHeader(h: HotRodHeader, buffer: ChannelBuffer, cache: Cache[ByteArrayKey, CacheValue]): AnyRef = {
       h.op match {
          case ClearRequest => {
@@ -252,11 +280,16 @@ object Decoder10 extends AbstractVersionedDecoder with Log {
          case StatsRequest => StatsResponse
          case PingRequest => PingResponse
          case BulkGetRequest => BulkGetResponse
+         case GetAllRequest => GetAllResponse
+         case PutAllRequest => PutAllResponse
+         case RemoveAllRequest => RemoveAllResponse
       }
    }
 
 }
 
+object Decoder10 extends Decoder10
+
 object OperationResponse extends Enumeration {
    type OperationResponse = Enumeration#Value
    val PutResponse = Value(0x02)
@@ -272,6 +305,9 @@ object OperationResponse extends Enumeration {
    val StatsResponse = Value(0x16)
    val PingResponse = Value(0x18)
    val BulkGetResponse = Value(0x1A)
+   val GetAllResponse = Value(0x1C)
+   val PutAllResponse = Value(0x1E)
+   val RemoveAllResponse = Value(0x20)
    val ErrorResponse = Value(0x50)
 }
 
@@ -0,0 +1,44 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.server.hotrod
+
+import HotRodOperation._
+
+/**
+ * HotRod protocol decoder specific for specification version 1.1, which adds the operations reading, storing or
+ * removing several entries with a single request.  Everything else is decoded as in version 1.0, so that clients can
+ * keep sending 1.0 requests to a 1.1 server and only switch to 1.1 for these operations.
+ *
+ * @since 5.1
+ */
+object Decoder11 extends Decoder10 {
+
+   override protected def readOperation(streamOp: Short, messageId: Long): (Enumeration#Value, Boolean) = {
+      streamOp match {
+         case 0x1B => (GetAllRequest, false)
+         case 0x1D => (PutAllRequest, false)
+         case 0x1F => (RemoveAllRequest, false)
+         case _ => super.readOperation(streamOp, messageId)
+      }
+   }
+}
@@ -36,6 +36,9 @@ import org.infinispan.util.ByteArrayKey
 import java.io.{IOException, StreamCorruptedException}
 import org.jboss.netty.buffer.ChannelBuffer
 import org.jboss.netty.channel.Channel
+import org.infinispan.server.hotrod.HotRodOperation._
+import org.infinispan.context.Flag.{SKIP_REMOTE_LOOKUP, SKIP_CACHE_LOAD}
+import java.util.concurrent.TimeUnit.MILLISECONDS
 
 /**
  * Top level Hot Rod decoder that after figuring out the version, delegates the rest of the reading to the
@@ -79,6 +82,7 @@ class HotRodDecoder(cacheManager: EmbeddedCacheManager, transport: NettyTranspor
          val version = buffer.readUnsignedByte
          val decoder = version match {
             case Version10 => Decoder10
+            case Version11 => Decoder11
             case _ => throw new UnknownVersionException("Unknown version:" + version, messageId)
          }
          val (header, endOfOp) = decoder.readHeader(buffer, messageId)
@@ -147,8 +151,46 @@ class HotRodDecoder(cacheManager: EmbeddedCacheManager, transport: NettyTranspor
    override protected def customDecodeHeader(ch: Channel, buffer: ChannelBuffer): AnyRef =
       writeResponse(ch, header.decoder.customReadHeader(header, buffer, cache))
 
-   override protected def customDecodeKey(ch: Channel, buffer: ChannelBuffer): AnyRef =
-      writeResponse(ch, header.decoder.customReadKey(header, buffer, cache))
+   override protected def customDecodeKey(ch: Channel, buffer: ChannelBuffer): AnyRef = {
+      val response = header.op match {
+         case GetAllRequest => getAll(buffer)
+         case PutAllRequest => putAll(buffer)
+         case RemoveAllRequest => removeAll(buffer)
+         case _ => header.decoder.customReadKey(header, buffer, cache)
+      }
+      writeResponse(ch, response)
+   }
+
+   private def getAll(buffer: ChannelBuffer): AnyRef = {
+      val keys = header.decoder.readKeys(header, buffer)
+      header.decoder.createGetAllResponse(header, cache.getAdvancedCache.getAll(keys))
+   }
+
+   private def putAll(buffer: ChannelBuffer): AnyRef = {
+      // the whole request is read before touching the cache, in case the decoder has to replay it
+      val (parameters, entries) = header.decoder.readEntries(header, buffer)
+      val map = new java.util.HashMap[ByteArrayKey, CacheValue](entries.size)
+      for ((k, v) <- entries)
+         map.put(k, header.decoder.createValue(parameters, generateVersion(cache), v))
+      // a single command for all the entries, which only replicates once
+      withoutPreviousValues.putAll(map, toMillis(parameters.lifespan), MILLISECONDS,
+         toMillis(parameters.maxIdle), MILLISECONDS)
+      header.decoder.createUpdateAllResponse(header)
+   }
+
+   private def removeAll(buffer: ChannelBuffer): AnyRef = {
+      val keys = header.decoder.readKeys(header, buffer)
+      val c = withoutPreviousValues
+      val it = keys.iterator
+      while (it.hasNext) c.remove(it.next)
+      header.decoder.createUpdateAllResponse(header)
+   }
+
+   /**
+    * Multi-key updates never return the previous values, so they need not be fetched from other nodes or cache stores
+    */
+   private def withoutPreviousValues: Cache[ByteArrayKey, CacheValue] =
+      cache.getAdvancedCache.withFlags(SKIP_REMOTE_LOOKUP, SKIP_CACHE_LOAD)
 
    override protected def customDecodeValue(ch: Channel, buffer: ChannelBuffer): AnyRef =
       writeResponse(ch, header.decoder.customReadValue(header, buffer, cache))
@@ -201,8 +243,9 @@ class HotRodDecoder(cacheManager: EmbeddedCacheManager, transport: NettyTranspor
 }
 
 object HotRodDecoder extends Log {
-   private val Magic = 0xA0
-   private val Version10 = 10
+   private[hotrod] val Magic = 0xA0
+   private[hotrod] val Version10 = 10
+   private[hotrod] val Version11 = 11
 }
 
 class UnknownVersionException(reason: String, val messageId: Long) extends StreamCorruptedException(reason)
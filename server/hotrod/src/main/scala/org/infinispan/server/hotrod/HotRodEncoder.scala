@@ -32,7 +32,8 @@ import scala.collection.JavaConversions._
 import org.jboss.netty.channel.ChannelHandlerContext
 import org.jboss.netty.handler.codec.oneone.OneToOneEncoder
 import org.jboss.netty.channel.Channel
-import org.jboss.netty.buffer.ChannelBuffer
+import org.jboss.netty.buffer.{HeapChannelBufferFactory, ChannelBufferFactory, ChannelBuffers, ChannelBuffer}
+import collection.mutable.ListBuffer
 import org.infinispan.server.core.transport.ExtendedChannelBuffer._
 
 /**
@@ -53,15 +54,18 @@ class HotRodEncoder(cacheManager: EmbeddedCacheManager) extends OneToOneEncoder
       val isTrace = isTraceEnabled
 
       if (isTrace) trace("Encode msg %s", msg)
-      val buffer: ChannelBuffer = msg match { 
-         case r: Response => writeHeader(r, isTrace, getTopologyResponse(r))
+      val factory = if (ch != null) ch.getConfig.getBufferFactory else HeapChannelBufferFactory.getInstance
+      val out = new ResponseBuffers(factory)
+      msg match {
+         case r: Response => writeHeader(r, isTrace, getTopologyResponse(r), out.current)
       }
+      def buffer = out.current
       msg match {
          case r: ResponseWithPrevious => {
             if (r.previous == None)
                writeUnsignedInt(0, buffer)
             else
-               writeRangedBytes(r.previous.get, buffer)
+               out.writeValue(r.previous.get)
          }
          case s: StatsResponse => {
             writeUnsignedInt(s.stats.size, buffer)
@@ -73,7 +77,7 @@ class HotRodEncoder(cacheManager: EmbeddedCacheManager) extends OneToOneEncoder
          case g: GetWithVersionResponse => {
             if (g.status == Success) {
                buffer.writeLong(g.version)
-               writeRangedBytes(g.data.get, buffer)
+               out.writeValue(g.data.get)
             }
          }
          case g: BulkGetResponse => {
@@ -88,16 +92,24 @@ class HotRodEncoder(cacheManager: EmbeddedCacheManager) extends OneToOneEncoder
                for (entry <- iterator) {
                   buffer.writeByte(1) // Not done
                   writeRangedBytes(entry.getKey.getData, buffer)
-                  writeRangedBytes(entry.getValue.data, buffer)
+                  out.writeValue(entry.getValue.data)
                }
                buffer.writeByte(0) // Done
             }
          }
-         case g: GetResponse => if (g.status == Success) writeRangedBytes(g.data.get, buffer)
+         case g: GetAllResponse => {
+            for (entry <- asScalaIterator(g.entries.entrySet.iterator)) {
+               buffer.writeByte(1) // Not done
+               writeRangedBytes(entry.getKey.getData, buffer)
+               out.writeValue(entry.getValue.data)
+            }
+            buffer.writeByte(0) // Done
+         }
+         case g: GetResponse => if (g.status == Success) out.writeValue(g.data.get)
          case e: ErrorResponse => writeString(e.msg, buffer)
          case _ => if (buffer == null) throw new IllegalArgumentException("Response received is unknown: " + msg);         
       }
-      buffer
+      out.toBuffer
    }
 
    val DEFAULT_HASH_FUNCTION_VERSION: Byte = 2
@@ -125,8 +137,7 @@ class HotRodEncoder(cacheManager: EmbeddedCacheManager) extends OneToOneEncoder
       } else null
    }
 
-   private def writeHeader(r: Response, isTrace: Boolean, topologyResp: AbstractTopologyResponse): ChannelBuffer = {
-      val buffer = dynamicBuffer
+   private def writeHeader(r: Response, isTrace: Boolean, topologyResp: AbstractTopologyResponse, buffer: ChannelBuffer) {
       buffer.writeByte(Magic.byteValue)
       writeUnsignedLong(r.messageId, buffer)
       buffer.writeByte(r.operation.id.byteValue)
@@ -144,7 +155,6 @@ class HotRodEncoder(cacheManager: EmbeddedCacheManager) extends OneToOneEncoder
       } else {
          buffer.writeByte(0) // No topology change
       }
-      buffer
    }
 
    private def writeTopologyHeader(t: TopologyAwareResponse, buffer: ChannelBuffer, isTrace: Boolean) {
@@ -203,4 +213,44 @@ class HotRodEncoder(cacheManager: EmbeddedCacheManager) extends OneToOneEncoder
 
 object HotRodEncoder extends Log {
    private val Magic = 0xA1
+
+   /**
+    * Values at least this big are wrapped into the response rather than copied
+    */
+   private val WrapThreshold = 1024
+
+   /**
+    * Initial capacity of the buffers holding everything in a response but big values
+    */
+   private val InitialCapacity = 128
+
+   /**
+    * Collects a response, copying its fields into the current buffer except for big values, which are wrapped as they
+    * are instead. Otherwise, every big value gets copied, and the response buffer gets resized several times along the
+    * way, which for values of hundreds of kilobytes multiplies the memory bandwidth and garbage per response.
+    */
+   private class ResponseBuffers(factory: ChannelBufferFactory) {
+      private val parts = new ListBuffer[ChannelBuffer]
+      var current: ChannelBuffer = ChannelBuffers.dynamicBuffer(InitialCapacity, factory)
+
+      def writeValue(value: Array[Byte]) {
+         writeUnsignedInt(value.length, current)
+         if (value.length < WrapThreshold) {
+            current.writeBytes(value)
+         } else {
+            parts += current
+            parts += ChannelBuffers.wrappedBuffer(value)
+            current = ChannelBuffers.dynamicBuffer(InitialCapacity, factory)
+         }
+      }
+
+      def toBuffer: ChannelBuffer = {
+         if (parts.isEmpty) {
+            current
+         } else {
+            if (current.readable) parts += current
+            ChannelBuffers.wrappedBuffer(parts: _*)
+         }
+      }
+   }
 }
@@ -44,6 +44,8 @@ import org.infinispan.util.concurrent.TimeoutException
 import org.infinispan.remoting.transport.jgroups.SuspectException
 import org.infinispan.context.Flag
 import org.infinispan.config.{CacheLoaderManagerConfig, Configuration}
+import org.jboss.netty.buffer.ChannelBuffer
+import org.infinispan.server.core.transport.ExtendedChannelBuffer._
 
 /**
  * Hot Rod server, in charge of defining its encoder/decoder and, if clustered, update the topology information
@@ -70,6 +72,41 @@ class HotRodServer extends AbstractProtocolServer("HotRod") with Log {
       hotRodDecoder
    }
 
+   /**
+    * Get, get with version and contains key requests are considered fast reads as long as the key they target is
+    * held in memory by this node, so that the request cannot end up waiting on another node or on a cache store.
+    */
+   override def isFastRead(buffer: ChannelBuffer): Boolean = {
+      val b = buffer.duplicate
+      try {
+         if (b.readUnsignedByte != HotRodDecoder.Magic) return false
+         readUnsignedLong(b) // message id
+         if (b.readUnsignedByte != HotRodDecoder.Version10) return false
+         b.readUnsignedByte match {
+            case 0x03 | 0x0F | 0x11 => // get, contains key and get with version
+            case _ => return false
+         }
+         val cacheName = readString(b)
+         readUnsignedInt(b) // flags
+         b.readUnsignedByte // client intelligence
+         readUnsignedInt(b) // topology id
+         if (b.readByte != 0) return false // transactions are not supported
+         val key = readRangedBytes(b)
+         // Anything else left would be a further request, which has to wait for this one
+         if (b.readable) return false
+         if (cacheName == TopologyCacheName || (!cacheName.isEmpty && !cacheManager.getCacheNames.contains(cacheName)))
+            return false
+         val cache = getCacheInstance(cacheName, cacheManager)
+         val cfg = cache.getConfiguration
+         if (!cfg.getCacheLoaders.isEmpty) return false
+         !cfg.getCacheMode.isDistributed ||
+               cache.getAdvancedCache.getDistributionManager.getLocality(new ByteArrayKey(key)).isLocal
+      } catch {
+         // Not the whole request has been received yet
+         case e: IndexOutOfBoundsException => false
+      }
+   }
+
    override def start(p: Properties, cacheManager: EmbeddedCacheManager) {
       val properties = if (p == null) new Properties else p
       isClustered = cacheManager.getGlobalConfiguration.getTransportClass != null
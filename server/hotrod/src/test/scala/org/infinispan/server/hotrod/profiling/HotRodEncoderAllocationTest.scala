@@ -0,0 +1,78 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.server.hotrod.profiling
+
+import org.infinispan.server.hotrod.{OperationResponse, HotRodEncoder, GetResponse}
+import org.infinispan.server.hotrod.OperationStatus._
+import org.infinispan.server.core.transport.ExtendedChannelBuffer._
+import org.infinispan.test.SingleCacheManagerTest
+import org.infinispan.test.fwk.TestCacheManagerFactory
+import org.infinispan.manager.EmbeddedCacheManager
+import org.jboss.netty.buffer.ChannelBuffer
+import org.testng.annotations.Test
+import java.lang.management.ManagementFactory
+
+/**
+ * Measures the bytes allocated to encode get responses for values of different sizes, comparing the encoder with
+ * a baseline that copies the value into a dynamic buffer, like the encoder used to do.
+ *
+ * @since 5.1
+ */
+@Test(groups = Array("profiling"), testName = "server.hotrod.profiling.HotRodEncoderAllocationTest")
+class HotRodEncoderAllocationTest extends SingleCacheManagerTest {
+   private val Iterations = 1000
+   private val ValueSizes = List(100, 1024, 50 * 1024, 500 * 1024)
+
+   override def createCacheManager: EmbeddedCacheManager = TestCacheManagerFactory.createLocalCacheManager
+
+   def testGetResponseAllocation {
+      val threadBean = ManagementFactory.getThreadMXBean.asInstanceOf[com.sun.management.ThreadMXBean]
+      val encoder = new HotRodEncoder(cacheManager)
+      for (size <- ValueSizes) {
+         val response = new GetResponse(1, "", 1, OperationResponse.GetResponse, Success, 0, Some(new Array[Byte](size)))
+         val copying = measure(threadBean, copy(response))
+         val encoding = measure(threadBean, encoder.encode(null, null, response))
+         log.info("Value of %d bytes: %d bytes allocated per response copying the value, %d bytes with the encoder"
+               .format(size, copying, encoding))
+      }
+   }
+
+   private def measure(threadBean: com.sun.management.ThreadMXBean, encode: => AnyRef): Long = {
+      val threadId = Thread.currentThread.getId
+      for (i <- 0 until Iterations) encode // warm up
+      val before = threadBean.getThreadAllocatedBytes(threadId)
+      for (i <- 0 until Iterations) encode
+      (threadBean.getThreadAllocatedBytes(threadId) - before) / Iterations
+   }
+
+   private def copy(response: GetResponse): ChannelBuffer = {
+      val buffer = dynamicBuffer
+      buffer.writeByte(0xA1.byteValue)
+      writeUnsignedLong(response.messageId, buffer)
+      buffer.writeByte(response.operation.id.byteValue)
+      buffer.writeByte(response.status.id.byteValue)
+      buffer.writeByte(0) // No topology change
+      writeRangedBytes(response.data.get, buffer)
+      buffer
+   }
+}
@@ -0,0 +1,489 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.server.memcached
+
+import logging.Log
+import org.infinispan.server.core.Operation._
+import org.infinispan.server.memcached.MemcachedOperation._
+import org.infinispan.server.core._
+import org.infinispan.server.core.transport.NettyTransport
+import org.infinispan.context.Flag
+import org.infinispan.{AdvancedCache, Version, CacheException, Cache}
+import org.jboss.netty.buffer.{ChannelBuffers, ChannelBuffer}
+import org.jboss.netty.channel.{ExceptionEvent, ChannelHandlerContext, ChannelFutureListener, Channel}
+import java.util.concurrent.{TimeUnit, ScheduledExecutorService}
+import java.io.StreamCorruptedException
+import java.nio.channels.ClosedChannelException
+import collection.mutable.ListBuffer
+import DecoderState._
+
+/**
+ * A decoder for the Memcached binary protocol. Every request starts with a fixed size header carrying the lengths of
+ * the extras, key and value that follow, so requests are read with no text parsing at all, and values are written back
+ * without being copied.
+ *
+ * Quiet operations only send a response back when they fail, or in the case of get operations, when the key is found,
+ * so clients can pipeline them, i.e. a multi-get is a sequence of getq or getkq requests terminated by a noop.
+ *
+ * @since 5.1
+ */
+class MemcachedBinaryDecoder(memcachedCache: Cache[String, MemcachedValue], scheduler: ScheduledExecutorService, transport: NettyTransport)
+      extends AbstractProtocolDecoder[String, MemcachedValue](transport) {
+
+   cache = memcachedCache
+
+   import MemcachedBinaryDecoder._
+
+   type SuitableParameters = MemcachedParameters
+   type SuitableHeader = BinaryRequestHeader
+
+   private lazy val isStatsEnabled = cache.getConfiguration.isExposeJmxStatistics
+   private final val statistics = new MemcachedStatistics
+   import statistics._
+
+   /**
+    * Value stored by the request being decoded, whose version is sent back as CAS
+    */
+   private var stored: MemcachedValue = _
+
+   override def readHeader(b: ChannelBuffer): (Option[BinaryRequestHeader], Boolean) = {
+      val magic = b.readUnsignedByte
+      if (magic != RequestMagic)
+         throw new StreamCorruptedException("Invalid magic byte: " + magic)
+      val opcode = b.readUnsignedByte
+      val keyLength = b.readUnsignedShort
+      val extrasLength = b.readUnsignedByte
+      b.skipBytes(3) // data type and vbucket id, neither of which is used
+      val bodyLength = b.readInt
+      val opaque = b.readInt
+      val cas = b.readLong
+      val valueLength = bodyLength - extrasLength - keyLength
+
+      val command = commands.get(opcode)
+      if (command == None) {
+         b.skipBytes(bodyLength)
+         throw new MemcachedBinaryException(UnknownCommand, opcode, opaque, "Unknown operation: " + opcode)
+      }
+      val (streamOp, quiet, withKey) = command.get
+      // A delete carrying a CAS value only removes the entry if it has not been modified since
+      val op = if (streamOp == RemoveRequest && cas != 0) RemoveIfUnmodifiedRequest else streamOp
+      if (isTraceEnabled) trace("Opcode %d has been matched to %s", opcode, op)
+
+      val isKeyExpected = !keylessOps.contains(op)
+      if (valueLength < 0 || keyLength > MaxKeyLength || (isKeyExpected && keyLength == 0)
+            || (isKeyExpected && valueLength > 0 && !valuedOps.contains(op))
+            || extrasLength != expectedExtrasLength(op, extrasLength)) {
+         b.skipBytes(bodyLength)
+         throw new MemcachedBinaryException(InvalidArguments, opcode, opaque, "Invalid arguments")
+      }
+
+      var flags, delta, initial = 0L
+      var expiration = 0
+      op match {
+         case PutRequest | PutIfAbsentRequest | ReplaceRequest => {
+            flags = b.readUnsignedInt
+            expiration = b.readInt
+         }
+         case IncrementRequest | DecrementRequest => {
+            delta = b.readLong
+            initial = b.readLong
+            expiration = b.readInt
+         }
+         case FlushAllRequest if extrasLength > 0 => expiration = b.readInt
+         case _ => // No extras
+      }
+      // Set and replace requests with a CAS value only succeed if the entry has not been modified since
+      val resolvedOp = if ((op == PutRequest || op == ReplaceRequest) && cas != 0) ReplaceIfUnmodifiedRequest else op
+      if (!isKeyExpected) b.skipBytes(bodyLength - extrasLength) // i.e. stats group, unsupported
+
+      val header = new BinaryRequestHeader(resolvedOp, opcode, opaque, cas, quiet, withKey, keyLength,
+         valueLength, flags, expiration, delta, initial)
+      (Some(header), !isKeyExpected)
+   }
+
+   override def readKey(b: ChannelBuffer): (String, Boolean) = {
+      val keyBytes = new Array[Byte](header.keyLength)
+      b.readBytes(keyBytes)
+      // Keys are read byte to char, like the text protocol does, so that both protocols address the same entries
+      (new String(keyBytes, KeyCharset), header.op == RemoveRequest)
+   }
+
+   override protected def get(buffer: ChannelBuffer): AnyRef = {
+      key = readKey(buffer)._1
+      createGetResponse(key, cache.get(key))
+   }
+
+   override def readParameters(ch: Channel, b: ChannelBuffer): Boolean = {
+      val lifespan = if (header.expiration <= 0) -1 else header.expiration
+      params = new MemcachedParameters(header.valueLength, lifespan, -1, header.cas, header.quiet, header.flags, "", 0)
+      header.op == IncrementRequest || header.op == DecrementRequest
+   }
+
+   override protected def readValue(b: ChannelBuffer) {
+      b.readBytes(rawValue)
+   }
+
+   override def createValue(nextVersion: Long): MemcachedValue = {
+      stored = new MemcachedValue(rawValue, nextVersion, params.flags)
+      stored
+   }
+
+   override def getCache: Cache[String, MemcachedValue] = cache
+
+   override protected def customDecodeHeader(ch: Channel, buffer: ChannelBuffer): AnyRef = {
+      header.op match {
+         case FlushAllRequest => flushAll(ch)
+         case VersionRequest => writeResponse(ch, response(NoError, 0, Version.VERSION.getBytes))
+         case NoopRequest => writeResponse(ch, response(NoError, 0))
+         case QuitRequest => {
+            if (header.quiet) ch.close
+            else ch.write(response(NoError, 0)).addListener(ChannelFutureListener.CLOSE)
+            writeResponse(ch, null)
+         }
+      }
+   }
+
+   override protected def customDecodeKey(ch: Channel, buffer: ChannelBuffer): AnyRef = {
+      header.op match {
+         case AppendRequest | PrependRequest | IncrementRequest | DecrementRequest => {
+            key = readKey(buffer)._1
+            checkpointTo(DECODE_PARAMETERS)
+         }
+         case RemoveIfUnmodifiedRequest => {
+            key = readKey(buffer)._1
+            writeResponse(ch, removeIfUnmodified)
+         }
+      }
+   }
+
+   override protected def customDecodeValue(ch: Channel, buffer: ChannelBuffer): AnyRef = {
+      header.op match {
+         case AppendRequest | PrependRequest => {
+            readValue(buffer)
+            val prev = cache.get(key)
+            val ret =
+               if (prev != null) {
+                  val concatenated = header.op match {
+                     case AppendRequest => prev.data ++ rawValue
+                     case PrependRequest => rawValue ++ prev.data
+                  }
+                  val next = new MemcachedValue(concatenated, generateVersion(cache), prev.flags)
+                  // If there's a concurrent modification on this key, treat it as we couldn't replace it
+                  if (cache.replace(key, prev, next)) successResponse(next.version)
+                  else response(ItemNotStored, 0)
+               } else {
+                  response(ItemNotStored, 0)
+               }
+            writeResponse(ch, ret)
+         }
+         case IncrementRequest | DecrementRequest => writeResponse(ch, incrDecr)
+      }
+   }
+
+   private def removeIfUnmodified: AnyRef = {
+      val prev = cache.get(key)
+      if (prev == null)
+         response(KeyNotFound, 0)
+      else if (prev.version != header.cas || !cache.remove(key, prev))
+         response(KeyExists, 0)
+      else
+         successResponse(0)
+   }
+
+   private def incrDecr: AnyRef = {
+      val op = header.op
+      val prev = cache.get(key)
+      if (prev == null) {
+         if (isStatsEnabled) if (op == IncrementRequest) incrMisses.incrementAndGet else decrMisses.incrementAndGet
+         // An expiration of all ones means that missing counters must not be created
+         if (header.expiration == -1) {
+            response(KeyNotFound, 0)
+         } else {
+            val next = new MemcachedValue(unsigned(header.initial).toString.getBytes, generateVersion(cache), 0)
+            val existing = cache.putIfAbsent(key, next, toMillis(params.lifespan), TimeUnit.MILLISECONDS)
+            if (existing != null)
+               throw new CacheException("Value created since we looked it up in the cache, value is " + existing)
+            counterResponse(header.initial, next.version)
+         }
+      } else {
+         val prevCounter =
+            try {
+               BigInt(new String(prev.data))
+            } catch {
+               case n: NumberFormatException => return response(NonNumericValue, 0)
+            }
+         val delta = unsigned(header.delta)
+         val newCounter = op match {
+            case IncrementRequest => (prevCounter + delta) % TwoToThe64 // wraps around like memcached does
+            case DecrementRequest => if (prevCounter < delta) BigInt(0) else prevCounter - delta
+         }
+         val next = new MemcachedValue(newCounter.toString.getBytes, generateVersion(cache), prev.flags)
+         if (cache.replace(key, prev, next)) {
+            if (isStatsEnabled) if (op == IncrementRequest) incrHits.incrementAndGet else decrHits.incrementAndGet
+            counterResponse(newCounter.longValue, next.version)
+         } else {
+            // If there's a concurrent modification on this key, the spec does not say what to do, so treat it as exceptional
+            throw new CacheException("Value modified since we retrieved from the cache, old value was " + prevCounter)
+         }
+      }
+   }
+
+   private def counterResponse(counter: Long, version: Long): AnyRef = {
+      if (header.quiet) {
+         null
+      } else {
+         val value = new Array[Byte](8)
+         ChannelBuffers.wrappedBuffer(value).setLong(0, counter)
+         response(NoError, version, value)
+      }
+   }
+
+   private def flushAll(ch: Channel): AnyRef = {
+      val flushFunction = (cache: AdvancedCache[String, MemcachedValue]) => cache.withFlags(Flag.CACHE_MODE_LOCAL, Flag.SKIP_CACHE_STORE).clear
+      if (header.expiration == 0)
+         flushFunction(cache.getAdvancedCache)
+      else
+         scheduler.schedule(new DelayedFlushAll(cache, flushFunction), toMillis(header.expiration), TimeUnit.MILLISECONDS)
+      writeResponse(ch, successResponse(0))
+   }
+
+   override def createSuccessResponse(prev: MemcachedValue): AnyRef = {
+      header.op match {
+         case ReplaceIfUnmodifiedRequest => if (isStatsEnabled) replaceIfUnmodifiedHits.incrementAndGet
+         case _ => // No-op
+      }
+      header.op match {
+         case RemoveRequest => successResponse(0)
+         case _ => successResponse(stored.version)
+      }
+   }
+
+   override def createNotExecutedResponse(prev: MemcachedValue): AnyRef = {
+      header.op match {
+         case ReplaceIfUnmodifiedRequest => {
+            if (isStatsEnabled) replaceIfUnmodifiedBadval.incrementAndGet
+            response(KeyExists, 0)
+         }
+         case PutIfAbsentRequest => response(KeyExists, 0)
+         case _ => response(KeyNotFound, 0) // i.e. replace of a missing key
+      }
+   }
+
+   override def createNotExistResponse: AnyRef = {
+      header.op match {
+         case ReplaceIfUnmodifiedRequest => if (isStatsEnabled) replaceIfUnmodifiedMisses.incrementAndGet
+         case _ => // No-op
+      }
+      response(KeyNotFound, 0)
+   }
+
+   override def createGetResponse(k: String, v: MemcachedValue): AnyRef = {
+      val keyBytes = if (header.withKey) k.getBytes(KeyCharset) else Array.empty[Byte]
+      if (v != null) {
+         val extras = new Array[Byte](4)
+         ChannelBuffers.wrappedBuffer(extras).setInt(0, v.flags.toInt)
+         response(header.opcode, NoError, header.opaque, v.version, extras, keyBytes, v.data)
+      } else if (header.quiet) {
+         null
+      } else {
+         response(header.opcode, KeyNotFound, header.opaque, 0, Array.empty, keyBytes, NotFoundMessage)
+      }
+   }
+
+   override def createMultiGetResponse(pairs: Map[String, MemcachedValue]): AnyRef = {
+      // Multi-gets are pipelined quiet gets in the binary protocol, but build one response per entry just in case
+      val responses = new ListBuffer[ChannelBuffer]
+      for ((k, v) <- pairs)
+         responses += createGetResponse(k, v).asInstanceOf[ChannelBuffer]
+      responses.toList
+   }
+
+   override def createStatsResponse: AnyRef = {
+      val responses = new ListBuffer[ChannelBuffer]
+      for ((stat, value) <- statistics.collect(cache, transport))
+         responses += response(header.opcode, NoError, header.opaque, 0, Array.empty, stat.getBytes, value.toString.getBytes)
+      // Stats are terminated by a response with no key and no value
+      responses += response(NoError, 0)
+      responses.toList
+   }
+
+   override def createErrorResponse(t: Throwable): AnyRef = {
+      t match {
+         case m: MemcachedBinaryException => {
+            logExceptionReported(m)
+            response(m.opcode, m.status, m.opaque, 0, Array.empty, Array.empty, m.getMessage.getBytes)
+         }
+         case c: ClosedChannelException => {
+            logExceptionReported(c)
+            null // no-op, only log
+         }
+         case s: StreamCorruptedException => {
+            // Without a valid header, the start of the next request cannot be found, so the channel gets closed
+            logExceptionReported(s)
+            null
+         }
+         case _ => {
+            val (opcode, opaque) = if (header != null) (header.opcode, header.opaque) else (0, 0)
+            response(opcode, InternalError, opaque, 0, Array.empty, Array.empty, t.toString.getBytes)
+         }
+      }
+   }
+
+   override def exceptionCaught(ctx: ChannelHandlerContext, e: ExceptionEvent) {
+      super.exceptionCaught(ctx, e)
+      e.getCause match {
+         case s: StreamCorruptedException => ctx.getChannel.close
+         case _ => // The decoder is ready for the next request
+      }
+   }
+
+   override protected def createServerException(e: Exception, b: ChannelBuffer): (Exception, Boolean) = {
+      e match {
+         case m: MemcachedBinaryException => (m, true) // request already consumed, so carry on with the next one
+         case s: StreamCorruptedException => (s, false)
+         case _ => {
+            val (opcode, opaque) = if (header != null) (header.opcode, header.opaque) else (0, 0)
+            (new MemcachedBinaryException(InternalError, opcode, opaque, e.toString, e), false)
+         }
+      }
+   }
+
+   private def successResponse(cas: Long): AnyRef =
+      if (header.quiet) null else response(NoError, cas)
+
+   private def response(status: Int, cas: Long): ChannelBuffer =
+      response(header.opcode, status, header.opaque, cas, Array.empty, Array.empty, Array.empty)
+
+   private def response(status: Int, cas: Long, value: Array[Byte]): ChannelBuffer =
+      response(header.opcode, status, header.opaque, cas, Array.empty, Array.empty, value)
+
+   private def response(opcode: Int, status: Int, opaque: Int, cas: Long, extras: Array[Byte], key: Array[Byte],
+                        value: Array[Byte]): ChannelBuffer = {
+      val head = ChannelBuffers.buffer(HeaderLength + extras.length + key.length)
+      head.writeByte(ResponseMagic)
+      head.writeByte(opcode)
+      head.writeShort(key.length)
+      head.writeByte(extras.length)
+      head.writeByte(0) // raw bytes data type
+      head.writeShort(status)
+      head.writeInt(extras.length + key.length + value.length)
+      head.writeInt(opaque)
+      head.writeLong(cas)
+      head.writeBytes(extras)
+      head.writeBytes(key)
+      // Wrap rather than copy the value, which is the only part that can be big
+      if (value.length > 0) ChannelBuffers.wrappedBuffer(head, ChannelBuffers.wrappedBuffer(value))
+      else head
+   }
+
+   private def unsigned(l: Long): BigInt = if (l >= 0) BigInt(l) else BigInt(l) + TwoToThe64
+}
+
+object MemcachedBinaryDecoder extends Log {
+   val RequestMagic = 0x80
+   val ResponseMagic = 0x81
+   private val HeaderLength = 24
+   private val MaxKeyLength = 250
+   private val KeyCharset = "ISO-8859-1"
+   private val TwoToThe64 = BigInt(1) << 64
+   private val NotFoundMessage = "Not found".getBytes
+
+   // Response statuses
+   val NoError = 0x0000
+   val KeyNotFound = 0x0001
+   val KeyExists = 0x0002
+   val InvalidArguments = 0x0004
+   val ItemNotStored = 0x0005
+   val NonNumericValue = 0x0006
+   val UnknownCommand = 0x0081
+   val InternalError = 0x0084
+
+   /**
+    * Opcodes mapped to the operation, whether it's quiet and whether the response carries the key
+    */
+   private val commands = Map[Int, (Enumeration#Value, Boolean, Boolean)](
+      0x00 -> (GetRequest, false, false),
+      0x01 -> (PutRequest, false, false),
+      0x02 -> (PutIfAbsentRequest, false, false),
+      0x03 -> (ReplaceRequest, false, false),
+      0x04 -> (RemoveRequest, false, false),
+      0x05 -> (IncrementRequest, false, false),
+      0x06 -> (DecrementRequest, false, false),
+      0x07 -> (QuitRequest, false, false),
+      0x08 -> (FlushAllRequest, false, false),
+      0x09 -> (GetRequest, true, false),
+      0x0A -> (NoopRequest, false, false),
+      0x0B -> (VersionRequest, false, false),
+      0x0C -> (GetRequest, false, true),
+      0x0D -> (GetRequest, true, true),
+      0x0E -> (AppendRequest, false, false),
+      0x0F -> (PrependRequest, false, false),
+      0x10 -> (StatsRequest, false, false),
+      0x11 -> (PutRequest, true, false),
+      0x12 -> (PutIfAbsentRequest, true, false),
+      0x13 -> (ReplaceRequest, true, false),
+      0x14 -> (RemoveRequest, true, false),
+      0x15 -> (IncrementRequest, true, false),
+      0x16 -> (DecrementRequest, true, false),
+      0x17 -> (QuitRequest, true, false),
+      0x18 -> (FlushAllRequest, true, false),
+      0x19 -> (AppendRequest, true, false),
+      0x1A -> (PrependRequest, true, false)
+   )
+
+   private val keylessOps = Set[Enumeration#Value](QuitRequest, FlushAllRequest, NoopRequest, VersionRequest, StatsRequest)
+
+   private val valuedOps = Set[Enumeration#Value](PutRequest, PutIfAbsentRequest, ReplaceRequest, AppendRequest, PrependRequest)
+
+   private def expectedExtrasLength(op: Enumeration#Value, extrasLength: Int): Int = {
+      op match {
+         case PutRequest | ReplaceRequest | PutIfAbsentRequest => 8
+         case IncrementRequest | DecrementRequest => 20
+         case FlushAllRequest => if (extrasLength == 4) 4 else 0 // expiration is optional
+         case _ => 0
+      }
+   }
+}
+
+class BinaryRequestHeader(override val op: Enumeration#Value, val opcode: Int, val opaque: Int, val cas: Long,
+                          val quiet: Boolean, val withKey: Boolean, val keyLength: Int, val valueLength: Int,
+                          val flags: Long, val expiration: Int, val delta: Long, val initial: Long)
+      extends RequestHeader(op) {
+   override def toString = {
+      new StringBuilder().append("BinaryRequestHeader").append("{")
+         .append("op=").append(op)
+         .append(", opcode=").append(opcode)
+         .append(", opaque=").append(opaque)
+         .append(", cas=").append(cas)
+         .append(", quiet=").append(quiet)
+         .append(", withKey=").append(withKey)
+         .append(", keyLength=").append(keyLength)
+         .append(", valueLength=").append(valueLength)
+         .append("}").toString
+   }
+}
+
+class MemcachedBinaryException(val status: Int, val opcode: Int, val opaque: Int, message: String, cause: Throwable)
+      extends Exception(message, cause) {
+   def this(status: Int, opcode: Int, opaque: Int, message: String) = this(status, opcode, opaque, message, null)
+}
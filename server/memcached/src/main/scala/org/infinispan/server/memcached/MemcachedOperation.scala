@@ -34,4 +34,6 @@ object MemcachedOperation extends Enumeration(10) {
    val IncrementRequest, DecrementRequest = Value
    val FlushAllRequest, VersionRequest = Value
    val VerbosityRequest, QuitRequest = Value
+   // Only available in the binary protocol
+   val NoopRequest, RemoveIfUnmodifiedRequest = Value
 }
\ No newline at end of file
@@ -0,0 +1,65 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.server.memcached
+
+import logging.Log
+import org.jboss.netty.handler.codec.replay.ReplayingDecoder
+import org.jboss.netty.buffer.ChannelBuffer
+import org.jboss.netty.channel.{UpstreamMessageEvent, ChannelStateEvent, Channel, ChannelHandlerContext}
+import org.infinispan.server.core.{AbstractProtocolDecoder, DecoderState}
+import org.infinispan.server.core.DecoderState._
+import org.infinispan.server.core.transport.NettyTransport
+
+/**
+ * Chooses the protocol spoken by a connection based on the first byte received, which is the magic byte of every
+ * binary protocol request, and can never start a text protocol command. The selector then replaces itself in the
+ * pipeline with the decoder for that protocol, and hands it over the bytes received so far.
+ *
+ * @since 5.1
+ */
+class MemcachedProtocolSelector(textDecoder: => AbstractProtocolDecoder[String, MemcachedValue],
+                                binaryDecoder: => AbstractProtocolDecoder[String, MemcachedValue],
+                                transport: NettyTransport)
+      extends ReplayingDecoder[DecoderState](DECODE_HEADER, true) with Log {
+
+   override def decode(ctx: ChannelHandlerContext, ch: Channel, buffer: ChannelBuffer, state: DecoderState): AnyRef = {
+      val magic = buffer.getUnsignedByte(buffer.readerIndex)
+      val decoder = if (magic == MemcachedBinaryDecoder.RequestMagic) binaryDecoder else textDecoder
+      if (isTraceEnabled) trace("First byte is %d, so decode with %s", magic, decoder)
+
+      val pipeline = ctx.getPipeline
+      pipeline.replace(this, ctx.getName, decoder)
+      val received = buffer.readBytes(actualReadableBytes)
+      decoder.handleUpstream(pipeline.getContext(decoder),
+         new UpstreamMessageEvent(ch, received, ch.getRemoteAddress))
+      null
+   }
+
+   override def decodeLast(ctx: ChannelHandlerContext, ch: Channel, buffer: ChannelBuffer, state: DecoderState): AnyRef = null // no-op
+
+   override def channelOpen(ctx: ChannelHandlerContext, e: ChannelStateEvent) {
+      // The protocol decoder is not in the pipeline yet when the channel opens, so register the channel on its behalf
+      transport.acceptedChannels.add(e.getChannel)
+      super.channelOpen(ctx, e)
+   }
+}
@@ -31,7 +31,8 @@ import org.infinispan.Cache
 
 /**
  * Memcached server defining its decoder/encoder settings. In fact, Memcached does not use an encoder since there's
- * no really common headers between protocol operations.
+ * no really common headers between protocol operations. Each connection can either use the text or the binary
+ * protocol, which is detected from the first byte received.
  *
  * @author Galder Zamarreño
  * @since 4.1
@@ -48,11 +49,26 @@ class MemcachedServer extends AbstractProtocolServer("Memcached") {
 
    override def getEncoder = null
 
-   override def getDecoder: MemcachedDecoder = {
+   override def getDecoder: MemcachedProtocolSelector = {
+      val memcachedCache = getMemcachedCache
+      new MemcachedProtocolSelector(createTextDecoder(memcachedCache), createBinaryDecoder(memcachedCache), transport)
+   }
+
+   protected def getMemcachedCache: Cache[String, MemcachedValue] = {
       val cm = getCacheManager
       // Define the Memcached cache as clone of the default one
       cm.defineConfiguration(cacheName, new Configuration)
-      val dec = new MemcachedDecoder(cm.getCache(cacheName), scheduler, transport)
+      cm.getCache(cacheName)
+   }
+
+   private def createTextDecoder(memcachedCache: Cache[String, MemcachedValue]): MemcachedDecoder = {
+      val dec = new MemcachedDecoder(memcachedCache, scheduler, transport)
+      dec.versionGenerator = this.versionGenerator
+      dec
+   }
+
+   private def createBinaryDecoder(memcachedCache: Cache[String, MemcachedValue]): MemcachedBinaryDecoder = {
+      val dec = new MemcachedBinaryDecoder(memcachedCache, scheduler, transport)
       dec.versionGenerator = this.versionGenerator
       dec
    }
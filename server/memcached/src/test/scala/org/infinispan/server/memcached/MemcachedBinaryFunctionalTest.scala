@@ -0,0 +1,211 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.server.memcached
+
+import java.lang.reflect.Method
+import org.testng.Assert._
+import org.testng.annotations.Test
+import net.spy.memcached.{CASResponse, MemcachedClient}
+import java.util.concurrent.TimeUnit
+import java.net.Socket
+import java.io.{DataInputStream, DataOutputStream, ByteArrayOutputStream}
+import scala.collection.JavaConversions._
+import org.infinispan.Version
+
+/**
+ * Tests the Memcached binary protocol against Infinispan Memcached server.
+ *
+ * @since 5.1
+ */
+@Test(groups = Array("functional"), testName = "server.memcached.MemcachedBinaryFunctionalTest")
+class MemcachedBinaryFunctionalTest extends MemcachedSingleNodeTest {
+
+   override protected def createClient: MemcachedClient = createMemcachedBinaryClient(60000, server.getPort)
+
+   def testSetBasic(m: Method) {
+      val f = client.set(k(m), 0, v(m))
+      assertTrue(f.get(timeout, TimeUnit.SECONDS).booleanValue)
+      assertEquals(client.get(k(m)), v(m))
+   }
+
+   def testGetNotFound(m: Method) {
+      assertNull(client.get(k(m)))
+   }
+
+   def testGetMultipleKeys(m: Method) {
+      for (i <- 1 to 3)
+         assertTrue(client.set(k(m, "k" + i + "-"), 0, v(m, "v" + i + "-")).get(timeout, TimeUnit.SECONDS).booleanValue)
+      val keys = List(k(m, "k1-"), k(m, "k2-"), k(m, "k3-"), k(m, "k4-"))
+      val values = client.getBulk(keys)
+      assertEquals(values.size, 3)
+      for (i <- 1 to 3)
+         assertEquals(values.get(k(m, "k" + i + "-")), v(m, "v" + i + "-"))
+   }
+
+   def testNotAddIfPresent(m: Method) {
+      assertTrue(client.add(k(m), 0, v(m)).get(timeout, TimeUnit.SECONDS).booleanValue)
+      assertFalse(client.add(k(m), 0, v(m, "v1-")).get(timeout, TimeUnit.SECONDS).booleanValue)
+      assertEquals(client.get(k(m)), v(m))
+   }
+
+   def testNotReplaceIfNotPresent(m: Method) {
+      assertFalse(client.replace(k(m), 0, v(m)).get(timeout, TimeUnit.SECONDS).booleanValue)
+      assertNull(client.get(k(m)))
+   }
+
+   def testAppendAndPrepend(m: Method) {
+      assertTrue(client.set(k(m), 0, "b").get(timeout, TimeUnit.SECONDS).booleanValue)
+      assertTrue(client.append(0, k(m), "c").get(timeout, TimeUnit.SECONDS).booleanValue)
+      assertTrue(client.prepend(0, k(m), "a").get(timeout, TimeUnit.SECONDS).booleanValue)
+      assertEquals(client.get(k(m)), "abc")
+      assertFalse(client.append(0, k(m, "k1-"), "c").get(timeout, TimeUnit.SECONDS).booleanValue)
+   }
+
+   def testCas(m: Method) {
+      assertTrue(client.set(k(m), 0, v(m)).get(timeout, TimeUnit.SECONDS).booleanValue)
+      val value = client.gets(k(m))
+      assertEquals(value.getValue, v(m))
+      assertTrue(value.getCas != 0)
+      assertEquals(client.cas(k(m), value.getCas, v(m, "v1-")), CASResponse.OK)
+      assertEquals(client.cas(k(m), value.getCas, v(m, "v2-")), CASResponse.EXISTS)
+      assertEquals(client.cas(k(m, "k1-"), value.getCas, v(m, "v2-")), CASResponse.NOT_FOUND)
+      assertEquals(client.get(k(m)), v(m, "v1-"))
+   }
+
+   def testDelete(m: Method) {
+      assertTrue(client.set(k(m), 0, v(m)).get(timeout, TimeUnit.SECONDS).booleanValue)
+      assertTrue(client.delete(k(m)).get(timeout, TimeUnit.SECONDS).booleanValue)
+      assertNull(client.get(k(m)))
+      assertFalse(client.delete(k(m)).get(timeout, TimeUnit.SECONDS).booleanValue)
+   }
+
+   def testIncrementAndDecrement(m: Method) {
+      assertTrue(client.set(k(m), 0, "1").get(timeout, TimeUnit.SECONDS).booleanValue)
+      assertEquals(client.incr(k(m), 4), 5)
+      assertEquals(client.decr(k(m), 2), 3)
+      assertEquals(client.decr(k(m), 10), 0)
+      assertEquals(client.get(k(m)), "0")
+   }
+
+   def testIncrementNotExist(m: Method) {
+      assertEquals(client.incr(k(m), 1), -1)
+      assertEquals(client.incr(k(m), 1, 10), 10)
+      assertEquals(client.incr(k(m), 1, 10), 11)
+   }
+
+   def testIncrementWrapsAround(m: Method) {
+      assertTrue(client.set(k(m), 0, "18446744073709551615").get(timeout, TimeUnit.SECONDS).booleanValue)
+      assertEquals(client.incr(k(m), 2), 1)
+   }
+
+   def testVersion {
+      val versions = client.getVersions
+      assertEquals(versions.size, 1)
+      assertEquals(versions.values.iterator.next, Version.VERSION)
+   }
+
+   def testTextAndBinaryConnections(m: Method) {
+      assertStored(send("set %s 0 0 %d\r\n%s\r\n".format(k(m), v(m).length, v(m))))
+      assertEquals(client.get(k(m)), v(m))
+   }
+
+   def testQuietGetsTerminatedByNoop(m: Method) {
+      assertTrue(client.set(k(m), 0, v(m)).get(timeout, TimeUnit.SECONDS).booleanValue)
+      val socket = new Socket(server.getHost, server.getPort)
+      try {
+         val request = new ByteArrayOutputStream
+         writeRequest(request, 0x0D, k(m, "missing-"), 1) // getkq for a missing key, so no response expected
+         writeRequest(request, 0x0D, k(m), 2) // getkq
+         writeRequest(request, 0x0A, "", 3) // noop
+         socket.getOutputStream.write(request.toByteArray)
+
+         val in = new DataInputStream(socket.getInputStream)
+         val (opcode, status, opaque, key, value) = readResponse(in)
+         assertEquals(opcode, 0x0D)
+         assertEquals(status, 0)
+         assertEquals(opaque, 2)
+         assertEquals(key, k(m))
+         assertEquals(value, v(m))
+         val (noopOpcode, noopStatus, noopOpaque, _, _) = readResponse(in)
+         assertEquals(noopOpcode, 0x0A)
+         assertEquals(noopStatus, 0)
+         assertEquals(noopOpaque, 3)
+      } finally {
+         socket.close
+      }
+   }
+
+   def testUnknownCommand(m: Method) {
+      val socket = new Socket(server.getHost, server.getPort)
+      try {
+         val request = new ByteArrayOutputStream
+         writeRequest(request, 0x70, k(m), 1)
+         writeRequest(request, 0x0A, "", 2) // noop, to check the connection is still usable
+         socket.getOutputStream.write(request.toByteArray)
+
+         val in = new DataInputStream(socket.getInputStream)
+         val (_, status, opaque, _, _) = readResponse(in)
+         assertEquals(status, 0x0081)
+         assertEquals(opaque, 1)
+         val (noopOpcode, noopStatus, _, _, _) = readResponse(in)
+         assertEquals(noopOpcode, 0x0A)
+         assertEquals(noopStatus, 0)
+      } finally {
+         socket.close
+      }
+   }
+
+   private def writeRequest(os: ByteArrayOutputStream, opcode: Int, key: String, opaque: Int) {
+      val out = new DataOutputStream(os)
+      out.writeByte(0x80)
+      out.writeByte(opcode)
+      out.writeShort(key.length)
+      out.writeByte(0) // extras length
+      out.writeByte(0) // data type
+      out.writeShort(0) // vbucket id
+      out.writeInt(key.length)
+      out.writeInt(opaque)
+      out.writeLong(0) // cas
+      out.write(key.getBytes)
+      out.flush
+   }
+
+   private def readResponse(in: DataInputStream): (Int, Int, Int, String, String) = {
+      assertEquals(in.readUnsignedByte, 0x81)
+      val opcode = in.readUnsignedByte
+      val keyLength = in.readUnsignedShort
+      val extrasLength = in.readUnsignedByte
+      in.readUnsignedByte // data type
+      val status = in.readUnsignedShort
+      val bodyLength = in.readInt
+      val opaque = in.readInt
+      in.readLong // cas
+      in.skipBytes(extrasLength)
+      val key = new Array[Byte](keyLength)
+      in.readFully(key)
+      val value = new Array[Byte](bodyLength - extrasLength - keyLength)
+      in.readFully(value)
+      (opcode, status, opaque, new String(key), new String(value))
+   }
+
+}
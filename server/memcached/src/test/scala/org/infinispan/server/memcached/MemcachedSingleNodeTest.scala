@@ -47,11 +47,13 @@ abstract class MemcachedSingleNodeTest extends SingleCacheManagerTest with Memca
    override def createCacheManager: EmbeddedCacheManager = {
       cacheManager = createTestCacheManager
       memcachedServer = startMemcachedTextServer(cacheManager)
-      memcachedClient = createMemcachedClient(60000, server.getPort)
+      memcachedClient = createClient
       cache = cacheManager.getCache(MemcachedServer.cacheName)
       return cacheManager
    }
 
+   protected def createClient: MemcachedClient = createMemcachedClient(60000, server.getPort)
+
    protected def createTestCacheManager: EmbeddedCacheManager = TestCacheManagerFactory.createLocalCacheManager
 
    @AfterClass(alwaysRun = true)
@@ -0,0 +1,115 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.server.memcached.profiling
+
+import org.infinispan.server.memcached.test.MemcachedTestingUtil
+import org.infinispan.server.memcached.MemcachedServer
+import org.infinispan.test.AbstractCacheTest
+import org.infinispan.test.fwk.TestCacheManagerFactory
+import org.infinispan.manager.EmbeddedCacheManager
+import org.infinispan.test.TestingUtil
+import org.testng.annotations.{AfterClass, BeforeClass, Test}
+import net.spy.memcached.MemcachedClient
+import java.util.concurrent.{Executors, CountDownLatch, TimeUnit}
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Compares the throughput of the text and binary Memcached protocols against the same server, with a number of
+ * clients issuing a mix of gets and sets over a fixed set of keys.
+ *
+ * @since 5.1
+ */
+@Test(groups = Array("profiling"), testName = "server.memcached.profiling.MemcachedProtocolPerformanceTest")
+class MemcachedProtocolPerformanceTest extends AbstractCacheTest with MemcachedTestingUtil {
+   private val Clients = 8
+   private val Keys = 1000
+   private val ValueSize = 512
+   private val WritePercentage = 10
+   private val Duration = TimeUnit.SECONDS.toMillis(30)
+   private val WarmUp = TimeUnit.SECONDS.toMillis(10)
+
+   private var cacheManager: EmbeddedCacheManager = _
+   private var server: MemcachedServer = _
+
+   @BeforeClass
+   def setUp {
+      cacheManager = TestCacheManagerFactory.createLocalCacheManager
+      server = startMemcachedTextServer(cacheManager)
+   }
+
+   @AfterClass(alwaysRun = true)
+   def tearDown {
+      server.stop
+      TestingUtil.killCacheManagers(cacheManager)
+   }
+
+   def testTextProtocol = run("text", createMemcachedClient(60000, server.getPort))
+
+   def testBinaryProtocol = run("binary", createMemcachedBinaryClient(60000, server.getPort))
+
+   private def run(protocol: String, newClient: => MemcachedClient) {
+      val clients = (1 to Clients).map(_ => newClient)
+      try {
+         val value = "v" * ValueSize
+         for (i <- 0 until Keys)
+            clients(0).set("key" + i, 0, value).get(60, TimeUnit.SECONDS)
+         execute(clients, value, WarmUp)
+         val ops = execute(clients, value, Duration)
+         log.info("%s protocol: %d clients executed %d operations in %d ms, %d ops/s".format(
+            protocol, Clients, ops, Duration, ops * 1000 / Duration))
+      } finally {
+         clients.foreach(_.shutdown)
+      }
+   }
+
+   private def execute(clients: Seq[MemcachedClient], value: String, duration: Long): Long = {
+      val executor = Executors.newFixedThreadPool(Clients)
+      val ops = new AtomicLong
+      val done = new CountDownLatch(Clients)
+      val end = System.currentTimeMillis + duration
+      for (client <- clients) {
+         executor.execute(new Runnable {
+            override def run {
+               val random = new java.util.Random
+               var count = 0L
+               try {
+                  while (System.currentTimeMillis < end) {
+                     val key = "key" + random.nextInt(Keys)
+                     if (random.nextInt(100) < WritePercentage)
+                        client.set(key, 0, value).get(60, TimeUnit.SECONDS)
+                     else
+                        client.get(key)
+                     count += 1
+                  }
+               } finally {
+                  ops.addAndGet(count)
+                  done.countDown
+               }
+            }
+         })
+      }
+      done.await
+      executor.shutdown
+      ops.get
+   }
+}
@@ -0,0 +1,378 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.tree;
+
+import org.infinispan.AdvancedCache;
+import org.infinispan.Cache;
+import org.infinispan.CacheException;
+import org.infinispan.atomic.AtomicHashMap;
+import org.infinispan.atomic.AtomicMap;
+import org.infinispan.atomic.AtomicMapLookup;
+import org.infinispan.batch.BatchContainer;
+import org.infinispan.container.entries.CacheEntry;
+import org.infinispan.context.Flag;
+import org.infinispan.transaction.LocalTransaction;
+import org.infinispan.transaction.TransactionTable;
+import org.infinispan.tree.logging.Log;
+import org.infinispan.util.concurrent.locks.LockManager;
+import org.infinispan.util.logging.LogFactory;
+
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.SystemException;
+import javax.transaction.Transaction;
+import javax.transaction.TransactionManager;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The data, or the structure, of a node of a fine-grained tree cache, see {@link
+ * TreeCacheFactory#createFineGrainedTreeCache(Cache)}. Each attribute, or child, is stored under a {@link NodeKey} of
+ * its own, so that writing it only locks that key. The key of the data, or of the structure, of the node holds an index
+ * of their names, an {@link AtomicMap} which is only used to list them.
+ * <p/>
+ * Names are added to the index by a transaction of their own, which only locks the index while it commits, rather than
+ * for as long as the transaction writing the attribute or the child lasts. The index may hence name entries that were
+ * not committed yet, or whose transaction failed, so entries are looked up before being listed. Names of removed
+ * entries are removed from the index once the transaction removing the entries has committed, and names added by a
+ * transaction that rolls back are removed once it has rolled back.
+ * <p/>
+ * Reads never acquire any lock. Unlike AtomicMaps, this map doesn't support null values.
+ *
+ * @since 5.1
+ */
+class FineGrainedNodeMap<K, V> extends AbstractMap<K, V> implements AtomicMap<K, V> {
+   private static final Log log = LogFactory.getLog(FineGrainedNodeMap.class, Log.class);
+
+   private final Cache<NodeKey, Object> cache;
+   private final NodeKey indexKey;
+   private final NodeKey.Type entryType;
+   private final BatchContainer batchContainer;
+   private final TransactionManager tm;
+   private final TransactionTable transactionTable;
+   private final LockManager lockManager;
+
+   @SuppressWarnings("unchecked")
+   FineGrainedNodeMap(Cache<NodeKey, ?> cache, NodeKey indexKey, BatchContainer batchContainer) {
+      this.cache = (Cache<NodeKey, Object>) cache;
+      this.indexKey = indexKey;
+      this.entryType = indexKey.getContents() == NodeKey.Type.DATA ? NodeKey.Type.ATTRIBUTE : NodeKey.Type.CHILD;
+      this.batchContainer = batchContainer;
+      AdvancedCache<?, ?> advancedCache = cache.getAdvancedCache();
+      tm = advancedCache.getTransactionManager();
+      transactionTable = advancedCache.getComponentRegistry().getComponent(TransactionTable.class);
+      lockManager = advancedCache.getLockManager();
+   }
+
+   // readers
+
+   @Override
+   @SuppressWarnings("unchecked")
+   public V get(Object key) {
+      return (V) cache.get(entryKey(key));
+   }
+
+   @Override
+   public boolean containsKey(Object key) {
+      return cache.containsKey(entryKey(key));
+   }
+
+   @Override
+   public Set<K> keySet() {
+      return Collections.unmodifiableSet(snapshot().keySet());
+   }
+
+   @Override
+   public Collection<V> values() {
+      return Collections.unmodifiableCollection(snapshot().values());
+   }
+
+   @Override
+   public Set<Entry<K, V>> entrySet() {
+      return Collections.unmodifiableMap(snapshot()).entrySet();
+   }
+
+   /**
+    * Looks up the entries named by the index, as well as those written by the current transaction, which the index may
+    * not show yet, i.e. with repeatable reads.
+    */
+   @SuppressWarnings("unchecked")
+   private Map<K, V> snapshot() {
+      Set<Object> names = new HashSet<Object>(AtomicMapLookup.<NodeKey, Object, Boolean>getReadOnlyAtomicMap(cache, indexKey).keySet());
+      LocalTransaction localTx = localTransaction(currentTransaction());
+      if (localTx != null) {
+         for (Map.Entry<Object, CacheEntry> e : localTx.getLookedUpEntries().entrySet()) {
+            if (e.getValue().isChanged() && isEntryKey(e.getKey())) names.add(((NodeKey) e.getKey()).getName());
+         }
+      }
+      Map<K, V> snapshot = new HashMap<K, V>();
+      for (Object name : names) {
+         Object value = cache.get(entryKey(name));
+         if (value != null) snapshot.put((K) name, (V) value);
+      }
+      return snapshot;
+   }
+
+   // writers
+
+   @Override
+   @SuppressWarnings("unchecked")
+   public V put(K key, V value) {
+      batchContainer.startBatch(true);
+      try {
+         V oldValue = (V) cache.put(entryKey(key), value);
+         index(Collections.singleton(key));
+         return oldValue;
+      }
+      finally {
+         batchContainer.endBatch(true, true);
+      }
+   }
+
+   @Override
+   public void putAll(Map<? extends K, ? extends V> map) {
+      if (map.isEmpty()) return;
+      batchContainer.startBatch(true);
+      try {
+         Map<NodeKey, Object> entries = new HashMap<NodeKey, Object>();
+         for (Map.Entry<? extends K, ? extends V> e : map.entrySet()) entries.put(entryKey(e.getKey()), e.getValue());
+         cache.putAll(entries);
+         index(map.keySet());
+      }
+      finally {
+         batchContainer.endBatch(true, true);
+      }
+   }
+
+   @Override
+   @SuppressWarnings("unchecked")
+   public V remove(Object key) {
+      batchContainer.startBatch(true);
+      try {
+         V oldValue = (V) cache.remove(entryKey(key));
+         if (oldValue != null) unindexOnCompletion(Collections.singleton(key), Status.STATUS_COMMITTED);
+         return oldValue;
+      }
+      finally {
+         batchContainer.endBatch(true, true);
+      }
+   }
+
+   @Override
+   public void clear() {
+      batchContainer.startBatch(true);
+      try {
+         List<Object> removed = new ArrayList<Object>();
+         for (Object name : snapshot().keySet()) {
+            if (cache.remove(entryKey(name)) != null) removed.add(name);
+         }
+         if (!removed.isEmpty()) unindexOnCompletion(removed, Status.STATUS_COMMITTED);
+      }
+      finally {
+         batchContainer.endBatch(true, true);
+      }
+   }
+
+   // index maintenance
+
+   /**
+    * Adds the names missing from the index, once their entries have been written, so that {@link #unindex(Collection)}
+    * either waits for the transaction writing them to commit or has removed them from the index before.
+    */
+   private void index(Collection<?> names) {
+      Transaction tx = currentTransaction();
+      if (tx == null || ownsIndex(tx)) {
+         // e.g. the node was created by the current transaction, which holds the lock on the index until it completes
+         AtomicMap<Object, Boolean> map = AtomicMapLookup.getAtomicMap(cache, indexKey);
+         for (Object name : names) {
+            if (!map.containsKey(name)) map.put(name, Boolean.TRUE);
+         }
+      } else {
+         // which names are missing is only decided in a transaction of its own: with repeatable reads, the current
+         // transaction may still see names that were unindexed since
+         List<Object> added;
+         try {
+            added = updateIndexInOwnTransaction(names, true);
+         }
+         catch (RuntimeException e) {
+            throw e;
+         }
+         catch (Exception e) {
+            throw new CacheException("Unable to add " + names + " to the index stored under " + indexKey, e);
+         }
+         if (!added.isEmpty()) unindexOnCompletion(added, Status.STATUS_ROLLEDBACK);
+      }
+   }
+
+   /**
+    * Removes names from the index once the current transaction completes with the given status, if their entries don't
+    * exist at that point.
+    */
+   private void unindexOnCompletion(Collection<?> names, int status) {
+      Transaction tx = currentTransaction();
+      if (tx == null) {
+         if (status == Status.STATUS_COMMITTED) unindex(names);
+         return;
+      }
+      try {
+         tx.registerSynchronization(new Unindexer(names, status));
+      }
+      catch (Exception e) {
+         throw new CacheException("Unable to register the removal of " + names + " from the index stored under " + indexKey, e);
+      }
+   }
+
+   private void unindex(Collection<?> names) {
+      try {
+         updateIndexInOwnTransaction(names, false);
+      }
+      catch (Exception e) {
+         // the index may name entries that don't exist anyway
+         log.failedUnindexing(names, indexKey, e);
+      }
+   }
+
+   /**
+    * Modifies the index without going through an AtomicMap proxy, which would take part in the batch of the suspended
+    * transaction, and commit it if that batch is completing already.
+    *
+    * @return the names added to, or removed from, the index
+    */
+   @SuppressWarnings("unchecked")
+   private List<Object> updateIndexInOwnTransaction(Collection<?> names, boolean add) throws Exception {
+      Transaction suspended = tm.suspend();
+      try {
+         if (add && !hasUnindexedNames(names)) return Collections.emptyList();
+         tm.begin();
+         boolean success = false;
+         try {
+            AdvancedCache<NodeKey, Object> lockingCache = cache.getAdvancedCache().withFlags(Flag.FORCE_WRITE_LOCK);
+            List<Object> changed = new ArrayList<Object>();
+            AtomicHashMap<Object, Boolean> index;
+            if (add) {
+               index = (AtomicHashMap<Object, Boolean>) lockingCache.get(indexKey);
+               for (Object name : names) {
+                  if (index == null || !index.containsKey(name)) changed.add(name);
+               }
+            } else {
+               for (Object name : names) {
+                  // an entry is only unindexed once its lock is acquired, i.e. after any transaction writing it commits
+                  if (lockingCache.get(entryKey(name)) == null) changed.add(name);
+               }
+               // the index is locked last, as transactions adding names lock it while holding the locks of the entries
+               index = changed.isEmpty() ? null : (AtomicHashMap<Object, Boolean>) lockingCache.get(indexKey);
+            }
+            if (!changed.isEmpty()) {
+               if (index != null || add) {
+                  AtomicHashMap<Object, Boolean> copy = index == null ? new AtomicHashMap<Object, Boolean>(true) : index.copyForWrite();
+                  copy.initForWriting();
+                  for (Object name : changed) {
+                     if (add) copy.put(name, Boolean.TRUE);
+                     else copy.remove(name);
+                  }
+                  cache.put(indexKey, copy);
+               }
+            }
+            success = true;
+            return changed;
+         }
+         finally {
+            if (success) tm.commit();
+            else tm.rollback();
+         }
+      }
+      finally {
+         if (suspended != null) tm.resume(suspended);
+      }
+   }
+
+   /**
+    * Checks the committed index, without locking it, so that writing entries that are indexed already doesn't lock the
+    * index.  A name seen here can't be unindexed before the entry written by the suspended transaction is committed, as
+    * unindexing it waits for the lock of the entry.
+    */
+   @SuppressWarnings("unchecked")
+   private boolean hasUnindexedNames(Collection<?> names) {
+      Map<Object, Boolean> index = (Map<Object, Boolean>) cache.get(indexKey);
+      if (index == null) return true;
+      for (Object name : names) {
+         if (!index.containsKey(name)) return true;
+      }
+      return false;
+   }
+
+   private boolean ownsIndex(Transaction tx) {
+      LocalTransaction localTx = localTransaction(tx);
+      return localTx != null && lockManager.ownsLock(indexKey, localTx.getGlobalTransaction());
+   }
+
+   private Transaction currentTransaction() {
+      try {
+         Transaction tx = tm.getTransaction();
+         return tx != null ? tx : batchContainer.getBatchTransaction();
+      }
+      catch (SystemException e) {
+         throw new CacheException("Unable to get the current transaction", e);
+      }
+   }
+
+   private LocalTransaction localTransaction(Transaction tx) {
+      return tx == null ? null : transactionTable.getLocalTransaction(tx);
+   }
+
+   private NodeKey entryKey(Object name) {
+      return new NodeKey(indexKey.getFqn(), entryType, name);
+   }
+
+   private boolean isEntryKey(Object key) {
+      if (!(key instanceof NodeKey)) return false;
+      NodeKey nodeKey = (NodeKey) key;
+      return nodeKey.getContents() == entryType && nodeKey.getFqn().equals(indexKey.getFqn());
+   }
+
+   private class Unindexer implements Synchronization {
+      private final Collection<?> names;
+      private final int status;
+
+      Unindexer(Collection<?> names, int status) {
+         this.names = names;
+         this.status = status;
+      }
+
+      @Override
+      public void beforeCompletion() {
+      }
+
+      @Override
+      public void afterCompletion(int status) {
+         if (status == this.status) unindex(names);
+      }
+   }
+}
@@ -24,7 +24,6 @@ package org.infinispan.tree;
 
 import org.infinispan.Cache;
 import org.infinispan.atomic.AtomicMap;
-import org.infinispan.atomic.AtomicHashMapProxy;
 import org.infinispan.batch.BatchContainer;
 import org.infinispan.context.Flag;
 import org.infinispan.context.InvocationContextContainer;
@@ -38,7 +37,7 @@ import java.util.Map;
 import java.util.Set;
 
 /**
- * Implementation backed by an {@link AtomicMap}
+ * Implementation backed by an {@link AtomicMap}, or by a {@link FineGrainedNodeMap} in fine-grained tree caches
  *
  * @author Manik Surtani (<a href="mailto:manik AT jboss DOT org">manik AT jboss DOT org</a>)
  * @since 4.0
@@ -48,7 +47,11 @@ public class NodeImpl<K, V> extends TreeStructureSupport implements Node<K, V> {
    NodeKey dataKey, structureKey;
 
    public NodeImpl(Fqn fqn, Cache<?, ?> cache, BatchContainer batchContainer, InvocationContextContainer icc) {
-      super(cache, batchContainer, icc);
+      this(fqn, cache, batchContainer, icc, false);
+   }
+
+   public NodeImpl(Fqn fqn, Cache<?, ?> cache, BatchContainer batchContainer, InvocationContextContainer icc, boolean fineGrained) {
+      super(cache, batchContainer, icc, fineGrained);
       this.fqn = fqn;
       dataKey = new NodeKey(fqn, NodeKey.Type.DATA);
       structureKey = new NodeKey(fqn, NodeKey.Type.STRUCTURE);
@@ -56,7 +59,7 @@ public class NodeImpl<K, V> extends TreeStructureSupport implements Node<K, V> {
 
    public Node<K, V> getParent() {
       if (fqn.isRoot()) return this;
-      return new NodeImpl<K, V>(fqn.getParent(), cache, batchContainer, icc);
+      return new NodeImpl<K, V>(fqn.getParent(), cache, batchContainer, icc, fineGrained);
    }
 
    public Node<K, V> getParent(Flag... flags) {
@@ -69,7 +72,7 @@ public class NodeImpl<K, V> extends TreeStructureSupport implements Node<K, V> {
       try {
          Set<Node<K, V>> result = new HashSet<Node<K, V>>();
          for (Fqn f : getStructure().values()) {
-            NodeImpl<K, V> n = new NodeImpl<K, V>(f, cache, batchContainer, icc);
+            NodeImpl<K, V> n = new NodeImpl<K, V>(f, cache, batchContainer, icc, fineGrained);
             result.add(n);
          }
          return Immutables.immutableSetWrap(result);
@@ -134,7 +137,7 @@ public class NodeImpl<K, V> extends TreeStructureSupport implements Node<K, V> {
          //2) then create the structure and data maps
          createNodeInCache(absoluteChildFqn);
 
-         return new NodeImpl<K, V>(absoluteChildFqn, cache, batchContainer, icc);
+         return new NodeImpl<K, V>(absoluteChildFqn, cache, batchContainer, icc, fineGrained);
       }
       finally {
          endAtomic();
@@ -161,7 +164,7 @@ public class NodeImpl<K, V> extends TreeStructureSupport implements Node<K, V> {
          AtomicMap<Object, Fqn> s = getStructure();
          Fqn childFqn = s.remove(childName);
          if (childFqn != null) {
-            Node<K, V> child = new NodeImpl<K, V>(childFqn, cache, batchContainer, icc);
+            Node<K, V> child = new NodeImpl<K, V>(childFqn, cache, batchContainer, icc, fineGrained);
             child.removeChildren();
             child.clearData();  // this is necessary in case we have a remove and then an add on the same node, in the same tx.
             cache.remove(new NodeKey(childFqn, NodeKey.Type.DATA));
@@ -185,7 +188,7 @@ public class NodeImpl<K, V> extends TreeStructureSupport implements Node<K, V> {
       startAtomic();
       try {
          if (hasChild(f))
-            return new NodeImpl<K, V>(Fqn.fromRelativeFqn(fqn, f), cache, batchContainer, icc);
+            return new NodeImpl<K, V>(Fqn.fromRelativeFqn(fqn, f), cache, batchContainer, icc, fineGrained);
          else
             return null;
       }
@@ -203,7 +206,7 @@ public class NodeImpl<K, V> extends TreeStructureSupport implements Node<K, V> {
       startAtomic();
       try {
          if (hasChild(name))
-            return new NodeImpl<K, V>(Fqn.fromRelativeElements(fqn, name), cache, batchContainer, icc);
+            return new NodeImpl<K, V>(Fqn.fromRelativeElements(fqn, name), cache, batchContainer, icc, fineGrained);
          else
             return null;
       }
@@ -220,8 +223,7 @@ public class NodeImpl<K, V> extends TreeStructureSupport implements Node<K, V> {
    public V put(K key, V value) {
       startAtomic();
       try {
-         AtomicHashMapProxy<K, V> map = (AtomicHashMapProxy<K, V>) getDataInternal();
-         return map.put(key, value);
+         return getDataInternal().put(key, value);
       }
       finally {
          endAtomic();
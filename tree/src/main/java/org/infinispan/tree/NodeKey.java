@@ -23,6 +23,8 @@
 
 package org.infinispan.tree;
 
+import static org.infinispan.tree.NodeKey.Type.ATTRIBUTE;
+import static org.infinispan.tree.NodeKey.Type.CHILD;
 import static org.infinispan.tree.NodeKey.Type.DATA;
 import static org.infinispan.tree.NodeKey.Type.STRUCTURE;
 
@@ -35,7 +37,8 @@ import org.infinispan.marshall.AbstractExternalizer;
 import org.infinispan.util.Util;
 
 /**
- * A class that represents the key to a node
+ * A class that represents the key to a node. Keys of type {@link Type#ATTRIBUTE} and {@link Type#CHILD}, used by fine
+ * grained tree caches only, also hold the name of the attribute, or of the child, they are the key to.
  *
  * @author Manik Surtani
  * @since 4.0
@@ -43,14 +46,20 @@ import org.infinispan.util.Util;
 public class NodeKey {
    final Fqn fqn;
    final Type contents;
+   final Object name;
 
    public static enum Type {
-      DATA, STRUCTURE
+      DATA, STRUCTURE, ATTRIBUTE, CHILD
    }
 
    public NodeKey(Fqn fqn, Type contents) {
+      this(fqn, contents, null);
+   }
+
+   public NodeKey(Fqn fqn, Type contents, Object name) {
       this.contents = contents;
       this.fqn = fqn;
+      this.name = name;
    }
    
    public Fqn getFqn() {
@@ -61,6 +70,14 @@ public class NodeKey {
       return contents;
    }
 
+   /**
+    * @return the name of the attribute or of the child, or null if this is the key to the data or the structure of a
+    *         node
+    */
+   public Object getName() {
+      return name;
+   }
+
    public boolean equals(Object o) {
       if (this == o) return true;
       if (o == null || getClass() != o.getClass()) return false;
@@ -69,12 +86,14 @@ public class NodeKey {
 
       if (contents != key.contents) return false;
       if (!Util.safeEquals(fqn, key.fqn)) return false;
+      if (!Util.safeEquals(name, key.name)) return false;
 
       return true;
    }
 
    public int hashCode() {
       int h = fqn != null ? fqn.hashCode() : 1;
+      if (name != null) h = 31 * h + name.hashCode();
       h += ~(h << 9);
       h ^= (h >>> 14);
       h += (h << 4);
@@ -86,12 +105,15 @@ public class NodeKey {
       return "NodeKey{" +
             "contents=" + contents +
             ", fqn=" + fqn +
+            (name == null ? "" : ", name=" + name) +
             '}';
    }
 
    public static class Externalizer extends AbstractExternalizer<NodeKey> {
       private static final byte DATA_BYTE = 1;
       private static final byte STRUCTURE_BYTE = 2;
+      private static final byte ATTRIBUTE_BYTE = 3;
+      private static final byte CHILD_BYTE = 4;
 
       @Override
       public void writeObject(ObjectOutput output, NodeKey key) throws IOException {
@@ -104,8 +126,15 @@ public class NodeKey {
             case STRUCTURE:
                type = STRUCTURE_BYTE;
                break;
+            case ATTRIBUTE:
+               type = ATTRIBUTE_BYTE;
+               break;
+            case CHILD:
+               type = CHILD_BYTE;
+               break;
          }
          output.write(type);
+         if (key.name != null) output.writeObject(key.name);
       }
       
       @Override
@@ -120,8 +149,15 @@ public class NodeKey {
             case STRUCTURE_BYTE:
                type = STRUCTURE;
                break;
+            case ATTRIBUTE_BYTE:
+               type = ATTRIBUTE;
+               break;
+            case CHILD_BYTE:
+               type = CHILD;
+               break;
          }
-         return new NodeKey(fqn, type);
+         Object name = type == ATTRIBUTE || type == CHILD ? input.readObject() : null;
+         return new NodeKey(fqn, type, name);
       }
 
       @Override
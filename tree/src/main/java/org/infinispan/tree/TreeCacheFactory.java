@@ -42,6 +42,31 @@ public class TreeCacheFactory {
     */
 
    public <K, V> TreeCache<K, V> createTreeCache(Cache<K, V> cache) {
+      validate(cache);
+      return new TreeCacheImpl<K, V>(cache);
+   }
+
+   /**
+    * Creates a TreeCache instance which stores each attribute and each child of a node under a cache key of its own,
+    * rather than in an {@link org.infinispan.atomic.AtomicMap} holding all the data, or all the children, of the node.
+    * Transactions writing different attributes of a node, or adding or removing different children of a node, hence
+    * don't wait for each other, and reading the data or the children of a node doesn't lock anything.
+    * <p/>
+    * Both kinds of tree caches store nodes differently, so a cache must only ever be used by one of them. Unlike the
+    * default tree cache, this one doesn't support null attribute values.
+    *
+    * @param cache
+    * @return instance of a fine-grained {@link TreeCache}
+    * @throws NullPointerException   if the cache parameter is null
+    * @throws ConfigurationException if the invocation batching configuration is not enabled.
+    * @since 5.1
+    */
+   public <K, V> TreeCache<K, V> createFineGrainedTreeCache(Cache<K, V> cache) {
+      validate(cache);
+      return new TreeCacheImpl<K, V>(cache, true);
+   }
+
+   private void validate(Cache<?, ?> cache) {
 
       // Validation to make sure that the cache is not null.
 
@@ -55,7 +80,5 @@ public class TreeCacheFactory {
          throw new ConfigurationException("invocationBatching is not enabled. Make sure this is enabled by" +
                " calling config.setInvocationBatchingEnabled(true)");
       }
-
-      return new TreeCacheImpl<K, V>(cache);
    }
 }
@@ -43,8 +43,16 @@ public class TreeCacheImpl<K, V> extends TreeStructureSupport implements TreeCac
    private static final boolean trace = log.isTraceEnabled();
 
    public TreeCacheImpl(Cache<?, ?> cache) {
+      this(cache, false);
+   }
+
+   /**
+    * @param fineGrained if true, the attributes and the children of each node are stored under cache keys of their own,
+    *                    see {@link TreeCacheFactory#createFineGrainedTreeCache(Cache)}
+    */
+   public TreeCacheImpl(Cache<?, ?> cache, boolean fineGrained) {
       super(cache, ((AdvancedCache) cache).getBatchContainer(),
-            ((AdvancedCache) cache).getInvocationContextContainer());
+            ((AdvancedCache) cache).getInvocationContextContainer(), fineGrained);
       if (cache.getConfiguration().isIndexingEnabled())
          throw new ConfigurationException("TreeCache cannot be used with a Cache instance configured to use indexing!");
       assertBatchingSupported(cache.getConfiguration());
@@ -52,7 +60,7 @@ public class TreeCacheImpl<K, V> extends TreeStructureSupport implements TreeCac
    }
 
    public Node<K, V> getRoot() {
-      return new NodeImpl<K, V>(Fqn.ROOT, cache, batchContainer, icc);
+      return new NodeImpl<K, V>(Fqn.ROOT, cache, batchContainer, icc, fineGrained);
    }
 
    public Node<K, V> getRoot(Flag... flags) {
@@ -187,7 +195,7 @@ public class TreeCacheImpl<K, V> extends TreeStructureSupport implements TreeCac
       startAtomic();
       try {
          if (exists(fqn))
-            return new NodeImpl<K, V>(fqn, cache, batchContainer, icc);
+            return new NodeImpl<K, V>(fqn, cache, batchContainer, icc, fineGrained);
          else return null;
       }
       finally {
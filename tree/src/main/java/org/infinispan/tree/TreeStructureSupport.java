@@ -39,12 +39,21 @@ public class TreeStructureSupport extends AutoBatchSupport {
    protected final Cache<NodeKey, AtomicMap<?, ?>> cache;
    protected final InvocationContextContainer icc;
    protected final TreeContextContainer tcc = new TreeContextContainer();
+   /**
+    * Whether attributes and children are stored under keys of their own, see {@link FineGrainedNodeMap}
+    */
+   protected final boolean fineGrained;
 
-   @SuppressWarnings("unchecked")
    public TreeStructureSupport(Cache<?, ?> cache, BatchContainer batchContainer, InvocationContextContainer icc) {
+      this(cache, batchContainer, icc, false);
+   }
+
+   @SuppressWarnings("unchecked")
+   public TreeStructureSupport(Cache<?, ?> cache, BatchContainer batchContainer, InvocationContextContainer icc, boolean fineGrained) {
       this.cache = new CacheAdapter((Cache<NodeKey, AtomicMap<?, ?>>) cache, tcc, icc);
       this.batchContainer = batchContainer;
       this.icc = icc;
+      this.fineGrained = fineGrained;
    }
 
    public boolean exists(Fqn f) {
@@ -71,12 +80,13 @@ public class TreeStructureSupport extends AutoBatchSupport {
          if (!fqn.isRoot()) {
             if (!exists(parent)) createNodeInCache(parent);
             AtomicMap<Object, Fqn> parentStructure = getStructure(parent);
-            // don't lock parents for child insert/removes!
-            icc.getInvocationContext().setFlags(Flag.SKIP_LOCKING);
+            // don't lock parents for child insert/removes!  Fine-grained structures only lock the child's own key.
+            if (!fineGrained) icc.getInvocationContext().setFlags(Flag.SKIP_LOCKING);
             parentStructure.put(fqn.getLastElement(), fqn);
          }
-         getAtomicMap(structureKey);
-         getAtomicMap(dataKey);
+         // in fine-grained mode, these hold the indexes of the node's children and attributes
+         AtomicMapLookup.getAtomicMap(cache, structureKey);
+         AtomicMapLookup.getAtomicMap(cache, dataKey);
          if (log.isTraceEnabled()) log.tracef("Created node %s", fqn);
          return true;
       }
@@ -124,6 +134,7 @@ public class TreeStructureSupport extends AutoBatchSupport {
    }
 
    protected final <K, V> AtomicMap<K, V> getAtomicMap(NodeKey key) {
+      if (fineGrained) return new FineGrainedNodeMap<K, V>(cache, key, batchContainer);
       return AtomicMapLookup.getAtomicMap(cache, key);
    }
 
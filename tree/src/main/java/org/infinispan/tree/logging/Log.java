@@ -22,8 +22,16 @@
 
 package org.infinispan.tree.logging;
 
+import org.infinispan.tree.NodeKey;
+import org.jboss.logging.Cause;
+import org.jboss.logging.LogMessage;
+import org.jboss.logging.Message;
 import org.jboss.logging.MessageLogger;
 
+import java.util.Collection;
+
+import static org.jboss.logging.Logger.Level.WARN;
+
 /**
  * Log abstraction for the tree module. For this module, message ids
  * ranging from 1001 to 2000 inclusively have been reserved.
@@ -33,4 +41,8 @@ import org.jboss.logging.MessageLogger;
  */
 @MessageLogger(projectCode = "ISPN")
 public interface Log extends org.infinispan.util.logging.Log {
+
+   @LogMessage(level = WARN)
+   @Message(value = "Failed removing %s from the index stored under %s, which keeps listing them until they get removed again", id = 1001)
+   void failedUnindexing(Collection<?> names, NodeKey indexKey, @Cause Exception e);
 }
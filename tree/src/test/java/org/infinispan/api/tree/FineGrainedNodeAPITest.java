@@ -0,0 +1,176 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.api.tree;
+
+import org.infinispan.Cache;
+import org.infinispan.atomic.AtomicMapLookup;
+import org.infinispan.config.Configuration;
+import org.infinispan.manager.EmbeddedCacheManager;
+import org.infinispan.test.TestingUtil;
+import org.infinispan.test.fwk.TestCacheManagerFactory;
+import org.infinispan.tree.Fqn;
+import org.infinispan.tree.Node;
+import org.infinispan.tree.NodeKey;
+import org.infinispan.tree.TreeCache;
+import org.infinispan.tree.TreeCacheFactory;
+import org.infinispan.util.concurrent.IsolationLevel;
+import org.testng.annotations.Test;
+
+import javax.transaction.Transaction;
+import javax.transaction.TransactionManager;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.infinispan.tree.NodeKey.Type.DATA;
+import static org.infinispan.tree.NodeKey.Type.STRUCTURE;
+import static org.testng.AssertJUnit.*;
+
+/**
+ * Runs the {@link Node}-centric tests against a fine-grained tree cache, and checks that writes to the same node don't
+ * lock each other out.
+ *
+ * @since 5.1
+ */
+@Test(groups = "functional", testName = "api.tree.FineGrainedNodeAPITest")
+public class FineGrainedNodeAPITest extends NodeAPITest {
+
+   @Override
+   protected EmbeddedCacheManager createCacheManager() throws Exception {
+      Configuration c = getDefaultStandaloneConfig(true);
+      c.setInvocationBatchingEnabled(true);
+      // fail fast, rather than wait, if a transaction gets blocked by another one
+      c.setLockAcquisitionTimeout(500);
+      EmbeddedCacheManager cm = TestCacheManagerFactory.createCacheManager(c, true);
+      cache = new TreeCacheFactory().createFineGrainedTreeCache(cm.getCache());
+      tm = TestingUtil.getTransactionManager(cache.getCache());
+      return cm;
+   }
+
+   public void testConcurrentWritesToSameNode() throws Exception {
+      cache.put(A, "k", "v");
+      Node<Object, Object> nodeA = cache.getNode(A);
+
+      tm.begin();
+      nodeA.addChild(B);
+      nodeA.put("k1", "v1");
+      Transaction tx1 = tm.suspend();
+
+      tm.begin();
+      nodeA.addChild(C);
+      nodeA.put("k2", "v2");
+      assertEquals(2, nodeA.getData().size());
+      Transaction tx2 = tm.suspend();
+
+      // uncommitted children and attributes are not visible to other transactions
+      assertEquals(1, nodeA.getData().size());
+      assertTrue(nodeA.getChildrenNames().isEmpty());
+
+      tm.resume(tx1);
+      tm.commit();
+      tm.resume(tx2);
+      tm.commit();
+
+      Set<Object> childrenNames = new HashSet<Object>();
+      childrenNames.add(B.getLastElement());
+      childrenNames.add(C.getLastElement());
+      assertEquals(childrenNames, nodeA.getChildrenNames());
+      assertEquals(3, nodeA.getData().size());
+      assertEquals("v1", nodeA.get("k1"));
+      assertEquals("v2", nodeA.get("k2"));
+   }
+
+   public void testRolledBackWritesAreUnindexed() throws Exception {
+      Node<Object, Object> rootNode = cache.getRoot();
+
+      tm.begin();
+      rootNode.addChild(A);
+      rootNode.put("k", "v");
+      // indexed already, but not visible to other transactions
+      assertEquals(1, getIndex(STRUCTURE).size());
+      tm.rollback();
+
+      assertFalse(rootNode.hasChild(A));
+      assertTrue(rootNode.getChildrenNames().isEmpty());
+      assertTrue(rootNode.getData().isEmpty());
+      assertTrue(getIndex(STRUCTURE).isEmpty());
+      assertTrue(getIndex(DATA).isEmpty());
+   }
+
+   public void testRemovedNamesAreUnindexed() throws Exception {
+      Node<Object, Object> rootNode = cache.getRoot();
+      rootNode.addChild(A);
+      rootNode.put("k", "v");
+
+      assertEquals(1, getIndex(STRUCTURE).size());
+      assertEquals(1, getIndex(DATA).size());
+
+      // the names stay in the index until the transactions removing the entries commit
+      tm.begin();
+      rootNode.removeChild(A);
+      rootNode.remove("k");
+      assertEquals(1, getIndex(STRUCTURE).size());
+      tm.commit();
+
+      assertTrue(getIndex(STRUCTURE).isEmpty());
+      assertTrue(getIndex(DATA).isEmpty());
+   }
+
+   public void testNameUnindexedSinceRepeatableReadIsIndexedAgain() throws Exception {
+      Configuration c = getDefaultStandaloneConfig(true);
+      c.setInvocationBatchingEnabled(true);
+      c.setIsolationLevel(IsolationLevel.REPEATABLE_READ);
+      c.setLockAcquisitionTimeout(500);
+      EmbeddedCacheManager cm = TestCacheManagerFactory.createCacheManager(c, true);
+      try {
+         TreeCache<Object, Object> rrCache = new TreeCacheFactory().createFineGrainedTreeCache(cm.<Object, Object>getCache());
+         TransactionManager rrTm = TestingUtil.getTransactionManager(rrCache.getCache());
+         Node<Object, Object> nodeA = rrCache.getRoot().addChild(A);
+         nodeA.put("k", "v");
+
+         rrTm.begin();
+         // the index, which names k, is now part of what this transaction reads
+         assertEquals(1, nodeA.getData().size());
+         Transaction tx = rrTm.suspend();
+
+         nodeA.remove("k");
+         assertTrue(nodeA.getKeys().isEmpty());
+
+         rrTm.resume(tx);
+         nodeA.put("k", "v2");
+         rrTm.commit();
+
+         assertEquals("v2", nodeA.get("k"));
+         assertEquals(1, nodeA.getKeys().size());
+         assertEquals("v2", nodeA.getData().get("k"));
+      } finally {
+         TestingUtil.killCacheManagers(cm);
+      }
+   }
+
+   @SuppressWarnings("unchecked")
+   private Map<Object, Boolean> getIndex(NodeKey.Type type) {
+      Cache<NodeKey, Object> c = (Cache<NodeKey, Object>) cache.getCache();
+      return AtomicMapLookup.getReadOnlyAtomicMap(c, new NodeKey(Fqn.ROOT, type));
+   }
+}
@@ -0,0 +1,152 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.profiling;
+
+import org.infinispan.Cache;
+import org.infinispan.config.Configuration;
+import org.infinispan.manager.EmbeddedCacheManager;
+import org.infinispan.test.AbstractInfinispanTest;
+import org.infinispan.test.TestingUtil;
+import org.infinispan.test.fwk.TestCacheManagerFactory;
+import org.infinispan.tree.Fqn;
+import org.infinispan.tree.Node;
+import org.infinispan.tree.TreeCache;
+import org.infinispan.tree.TreeCacheFactory;
+import org.infinispan.util.logging.Log;
+import org.infinispan.util.logging.LogFactory;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import javax.transaction.TransactionManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Compares the throughput of transactions which concurrently add a child to, and write an attribute of, the same
+ * parent node, in a default tree cache, whose nodes are locked as a whole, and in a fine-grained tree cache.
+ *
+ * @since 5.1
+ */
+@Test(groups = "profiling", testName = "profiling.TreeSharedParentWritesTest")
+public class TreeSharedParentWritesTest extends AbstractInfinispanTest {
+
+   private static final Log log = LogFactory.getLog(TreeSharedParentWritesTest.class);
+
+   private static final int[] THREAD_COUNTS = {1, 2, 4, 8, 16};
+   private static final long DURATION_MILLIS = 10000;
+
+   private EmbeddedCacheManager cacheManager;
+   private Cache<Object, Object> cache;
+   private TransactionManager tm;
+
+   @BeforeMethod
+   public void setUp() {
+      Configuration cfg = new Configuration();
+      cfg.setInvocationBatchingEnabled(true);
+      cfg.setConcurrencyLevel(1000);
+      cfg.setLockAcquisitionTimeout(120000);
+      cacheManager = TestCacheManagerFactory.createCacheManager(cfg, true);
+      cache = cacheManager.getCache();
+      tm = TestingUtil.getTransactionManager(cache);
+   }
+
+   @AfterMethod(alwaysRun = true)
+   public void tearDown() {
+      TestingUtil.killCacheManagers(cacheManager);
+   }
+
+   public void testAtomicMapNodes() throws Exception {
+      run("AtomicMap nodes", new TreeCacheFactory().<Object, Object>createTreeCache(cache));
+   }
+
+   public void testFineGrainedNodes() throws Exception {
+      run("Fine-grained nodes", new TreeCacheFactory().<Object, Object>createFineGrainedTreeCache(cache));
+   }
+
+   private void run(String label, TreeCache<Object, Object> treeCache) throws Exception {
+      for (int threads : THREAD_COUNTS) {
+         Fqn parentFqn = Fqn.fromElements("parent" + threads);
+         treeCache.put(parentFqn, "created", System.currentTimeMillis());
+         Node<Object, Object> parent = treeCache.getNode(parentFqn);
+
+         long txs = run(threads, parent);
+         log.infof("%s, %d threads: %d transactions/s", label, threads, txs * 1000 / DURATION_MILLIS);
+
+         // every transaction added a child, and lock-free reads must list all of them
+         int children = parent.getChildrenNames().size();
+         assert children == txs : "Expected " + txs + " children but got " + children;
+         assert parent.getData().size() == threads + 1;
+      }
+   }
+
+   private long run(int threads, final Node<Object, Object> parent) throws InterruptedException {
+      final AtomicBoolean running = new AtomicBoolean(true);
+      final CountDownLatch start = new CountDownLatch(1);
+      final long[] counts = new long[threads];
+      List<Thread> workers = new ArrayList<Thread>(threads);
+      for (int t = 0; t < threads; t++) {
+         final int index = t;
+         Thread worker = new Thread("TreeSharedParentWrites-" + t) {
+            @Override
+            public void run() {
+               try {
+                  start.await();
+                  long count = 0;
+                  while (running.get()) {
+                     tm.begin();
+                     boolean success = false;
+                     try {
+                        Node<Object, Object> child = parent.addChild(Fqn.fromElements(index + "-" + count));
+                        child.put("count", count);
+                        parent.put("lastCount-" + index, count);
+                        success = true;
+                     } finally {
+                        if (success) tm.commit();
+                        else tm.rollback();
+                     }
+                     count++;
+                  }
+                  counts[index] = count;
+               } catch (Exception e) {
+                  log.error("Transaction failed", e);
+               }
+            }
+         };
+         worker.start();
+         workers.add(worker);
+      }
+      start.countDown();
+      TimeUnit.MILLISECONDS.sleep(DURATION_MILLIS);
+      running.set(false);
+      long total = 0;
+      for (int t = 0; t < threads; t++) {
+         workers.get(t).join();
+         total += counts[t];
+      }
+      return total;
+   }
+}